@@ -0,0 +1,181 @@
+package benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import interfaces.Accionable;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import servicio.GestorTareasColumnar;
+import servicio.GestorTareasConcurrente;
+import servicio.GestorTareasServicio;
+
+/**
+ * Benchmarks de las operaciones principales de {@link Accionable}.
+ * 
+ * <p>
+ * Cada benchmark se ejecuta sobre un gestor precargado con la cantidad de
+ * tareas indicada en {@link Poblacion#tareas}, repartidas en una tarea de
+ * cada {@value Poblacion#TAREAS_POR_USUARIO} por usuario. La población se
+ * reconstruye en cada iteración para que las operaciones que crean datos
+ * no distorsionen las mediciones siguientes.
+ * </p>
+ * 
+ * <p>
+ * El número de hilos se fija al lanzar la ejecución (ver
+ * {@link EjecutarBenchmarks}); la implementación secuencial solo debe
+ * medirse con un hilo.
+ * </p>
+ */
+
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccionableBenchmark {
+	
+	/**
+	 * Gestor precargado compartido por todos los hilos del benchmark.
+	 */
+	@State(Scope.Benchmark)
+	public static class Poblacion {
+		
+		/** Tareas asignadas en promedio a cada usuario */
+		static final int TAREAS_POR_USUARIO = 50;
+		
+		/** Número de tareas precargadas */
+		@Param({ "1000", "100000", "1000000" })
+		public int tareas;
+		
+		/** Implementación de {@link Accionable} a medir */
+		@Param({ "secuencial", "concurrente", "columnar" })
+		public String implementacion;
+		
+		Accionable gestor;
+		
+		/** Ids de los usuarios precargados */
+		int[] idsUsuario;
+		
+		/** Tareas precargadas */
+		Tarea[] tareasCargadas;
+		
+		/** Id del dueño de cada tarea de {@link #tareasCargadas} */
+		int[] duenios;
+		
+		@Setup(Level.Iteration)
+		public void cargar() {
+			gestor = crearGestor(implementacion);
+			
+			int cantidadUsuarios = Math.max(1, tareas / TAREAS_POR_USUARIO);
+			idsUsuario = new int[cantidadUsuarios];
+			for (int i = 0; i < cantidadUsuarios; i++) {
+				TipoUsuario tipo = TipoUsuario.values()[i % TipoUsuario.values().length];
+				idsUsuario[i] = gestor.crearUsuario("Usuario " + i, tipo).getId();
+			}
+			
+			tareasCargadas = new Tarea[tareas];
+			duenios = new int[tareas];
+			for (int i = 0; i < tareas; i++) {
+				Prioridad prioridad = (i % 4 == 0) ? Prioridad.URGENTE : Prioridad.NORMAL;
+				Tarea tarea = gestor.crearTarea("Tarea " + i, prioridad);
+				int duenio = idsUsuario[i % cantidadUsuarios];
+				gestor.agregarTareaAUsuario(duenio, tarea);
+				tareasCargadas[i] = tarea;
+				duenios[i] = duenio;
+			}
+		}
+	}
+	
+	/**
+	 * Crea la implementación de {@link Accionable} indicada por nombre.
+	 * 
+	 * @param implementacion secuencial, concurrente o columnar
+	 * @return gestor vacío
+	 */
+	static Accionable crearGestor(String implementacion) {
+		switch (implementacion) {
+			case "concurrente":
+				return new GestorTareasConcurrente();
+			case "columnar":
+				return new GestorTareasColumnar();
+			default:
+				return new GestorTareasServicio();
+		}
+	}
+	
+	@Benchmark
+	public Usuario crearUsuario(Poblacion p) {
+		return p.gestor.crearUsuario("Nuevo", TipoUsuario.ESTUDIANTE);
+	}
+	
+	@Benchmark
+	public Tarea crearYAgregarTarea(Poblacion p) {
+		int duenio = p.idsUsuario[ThreadLocalRandom.current().nextInt(p.idsUsuario.length)];
+		Tarea tarea = p.gestor.crearTarea("Nueva", Prioridad.NORMAL);
+		p.gestor.agregarTareaAUsuario(duenio, tarea);
+		return tarea;
+	}
+	
+	@Benchmark
+	public Usuario buscarUsuario(Poblacion p) {
+		return p.gestor.buscarUsuario(p.idsUsuario[ThreadLocalRandom.current().nextInt(p.idsUsuario.length)]);
+	}
+	
+	@Benchmark
+	public boolean marcarTareaComoCompletada(Poblacion p) {
+		int i = ThreadLocalRandom.current().nextInt(p.tareasCargadas.length);
+		return p.gestor.marcarTareaComoCompletada(p.duenios[i], p.tareasCargadas[i].getId());
+	}
+	
+	/**
+	 * Elimina una tarea al azar y la vuelve a agregar para mantener
+	 * constante el tamaño de la población.
+	 */
+	@Benchmark
+	public boolean eliminarTareaDeUsuario(Poblacion p) {
+		int i = ThreadLocalRandom.current().nextInt(p.tareasCargadas.length);
+		boolean eliminada = p.gestor.eliminarTareaDeUsuario(p.duenios[i], p.tareasCargadas[i].getId());
+		if (eliminada) {
+			p.gestor.agregarTareaAUsuario(p.duenios[i], p.tareasCargadas[i]);
+		}
+		return eliminada;
+	}
+	
+	@Benchmark
+	public void listarTareasPorTipoUsuario(Poblacion p, Blackhole bh) {
+		TipoUsuario tipo = TipoUsuario.values()[ThreadLocalRandom.current().nextInt(TipoUsuario.values().length)];
+		List<Tarea> tareas = p.gestor.listarTareasPorTipoUsuario(tipo);
+		for (Tarea tarea : tareas) {
+			bh.consume(tarea);
+		}
+	}
+	
+	/**
+	 * Busca una tarea por su número: cruza la lista enorme del término
+	 * "tarea" con la de un número concreto.
+	 */
+	@Benchmark
+	public List<Tarea> buscarTareas(Poblacion p) {
+		int i = ThreadLocalRandom.current().nextInt(p.tareasCargadas.length);
+		return p.gestor.buscarTareas("tarea " + i, null, null, null, 10);
+	}
+
+}
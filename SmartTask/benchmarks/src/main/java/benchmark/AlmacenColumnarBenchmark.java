@@ -0,0 +1,95 @@
+package benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import interfaces.Accionable;
+import modelo.EstadoTarea;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import servicio.GestorTareasColumnar;
+
+/**
+ * Compara el recorrido completo de tareas entre el modelo de objetos y el
+ * almacén columnar.
+ * 
+ * <p>
+ * El recorrido cuenta las tareas activas y urgentes de un tipo de usuario:
+ * en el modelo de objetos visita cada {@link Tarea}; en el columnar solo lee
+ * la columna de marcas. La huella de memoria se mide aparte con
+ * {@link MedirMemoria}.
+ * </p>
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class AlmacenColumnarBenchmark {
+	
+	@State(Scope.Benchmark)
+	public static class Poblacion {
+		
+		@Param({ "1000000", "10000000" })
+		public int tareas;
+		
+		@Param({ "secuencial", "columnar" })
+		public String implementacion;
+		
+		Accionable gestor;
+		
+		@Setup(Level.Trial)
+		public void cargar() {
+			gestor = AccionableBenchmark.crearGestor(implementacion);
+			MedirMemoria.poblar(gestor, tareas);
+		}
+		
+		@TearDown(Level.Trial)
+		public void cerrar() throws Exception {
+			if (gestor instanceof AutoCloseable cerrable) {
+				cerrable.close();
+			}
+		}
+	}
+	
+	@Benchmark
+	public int recorridoCompleto(Poblacion p) {
+		if (p.gestor instanceof GestorTareasColumnar columnar) {
+			return columnar.contarTareas(TipoUsuario.PROFESOR, EstadoTarea.ACTIVA, Prioridad.URGENTE);
+		}
+		
+		int total = 0;
+		for (Usuario usuario : p.gestor.listarUsuariosPorTipo(TipoUsuario.PROFESOR)) {
+			for (Tarea tarea : usuario.getTareas()) {
+				if (tarea.getEstado() == EstadoTarea.ACTIVA && tarea.getPrioridad() == Prioridad.URGENTE) {
+					total++;
+				}
+			}
+		}
+		return total;
+	}
+	
+	@Benchmark
+	public List<Tarea> listarTareasPorTipoUsuario(Poblacion p) {
+		// El modelo de objetos devuelve una vista; se copia para comparar a igual trabajo
+		return List.copyOf(p.gestor.listarTareasPorTipoUsuario(TipoUsuario.ESTUDIANTE));
+	}
+
+}
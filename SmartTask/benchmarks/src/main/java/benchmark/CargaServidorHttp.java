@@ -0,0 +1,204 @@
+package benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import servicio.GestorTareasConcurrente;
+import servidor.ServidorHttp;
+
+/**
+ * Prueba de carga de la API HTTP con muchas conexiones abiertas a la vez.
+ * 
+ * <p>
+ * Uso: {@code java -cp target/benchmarks.jar benchmark.CargaServidorHttp
+ * [conexiones] [peticiones] [encadenadas] [host:puerto]}. Por defecto abre
+ * 10.000 conexiones keep-alive, cada una atendida por un hilo virtual, y
+ * envía 100 peticiones por conexión, de {@code encadenadas} en
+ * {@code encadenadas} sin esperar respuesta (1 por defecto, sin
+ * pipelining). Sin {@code host:puerto} levanta el servidor en el mismo
+ * proceso, sobre un {@link GestorTareasConcurrente} poblado con
+ * {@link MedirMemoria#poblar}. Informa las peticiones por segundo y las
+ * latencias p50, p99 y máxima.
+ * </p>
+ * 
+ * <p>
+ * En el mismo proceso cada conexión ocupa dos descriptores de archivo,
+ * uno por extremo, así que 10.000 conexiones necesitan un
+ * {@code ulimit -n} de más de 20.000.
+ * </p>
+ */
+
+public final class CargaServidorHttp {
+	
+	/** Tareas con las que se puebla el servidor del mismo proceso */
+	private static final int TAREAS = 100_000;
+	
+	private CargaServidorHttp() {
+	}
+	
+	public static void main(String[] args) throws Exception {
+		int conexiones = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+		int peticiones = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int encadenadas = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+		
+		ServidorHttp servidor = null;
+		InetSocketAddress direccion;
+		if (args.length > 3) {
+			String[] partes = args[3].split(":");
+			direccion = new InetSocketAddress(partes[0], Integer.parseInt(partes[1]));
+		} else {
+			// Como el lanzador: sin límite de conexiones inactivas y sin Nagle (ver ServidorHttp)
+			System.getProperties().putIfAbsent("sun.net.httpserver.maxIdleConnections", "100000");
+			System.getProperties().putIfAbsent("sun.net.httpserver.nodelay", "true");
+			GestorTareasConcurrente gestor = new GestorTareasConcurrente();
+			MedirMemoria.poblar(gestor, TAREAS);
+			servidor = new ServidorHttp(gestor, new InetSocketAddress("127.0.0.1", 0));
+			direccion = new InetSocketAddress("127.0.0.1", servidor.getPuerto());
+		}
+		
+		try {
+			medir(direccion, conexiones, peticiones, Math.max(1, encadenadas));
+		} finally {
+			if (servidor != null) {
+				servidor.close();
+			}
+		}
+	}
+	
+	private static void medir(InetSocketAddress direccion, int conexiones, int peticiones, int encadenadas) throws Exception {
+		int usuarios = Math.max(1, TAREAS / 50);
+		CountDownLatch conectadas = new CountDownLatch(conexiones);
+		CountDownLatch inicio = new CountDownLatch(1);
+		List<Future<long[]>> resultados = new ArrayList<>(conexiones);
+		
+		long tiempo;
+		try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int c = 0; c < conexiones; c++) {
+				int usuario = c % usuarios + 1;
+				resultados.add(hilos.submit(() -> {
+					try (Socket conexion = new Socket()) {
+						try {
+							conexion.connect(direccion);
+						} finally {
+							conectadas.countDown();
+						}
+						conexion.setTcpNoDelay(true);
+						inicio.await();
+						return recorrer(conexion, usuario, peticiones, encadenadas);
+					}
+				}));
+			}
+			
+			// El reloj arranca con todas las conexiones abiertas
+			conectadas.await();
+			System.out.printf("conexiones abiertas: %,d%n", conexiones);
+			tiempo = System.nanoTime();
+			inicio.countDown();
+			
+			for (Future<long[]> resultado : resultados) {
+				resultado.get();
+			}
+			tiempo = System.nanoTime() - tiempo;
+		}
+		
+		long[] latencias = new long[conexiones * peticiones];
+		int total = 0;
+		for (Future<long[]> resultado : resultados) {
+			long[] propias = resultado.get();
+			System.arraycopy(propias, 0, latencias, total, propias.length);
+			total += propias.length;
+		}
+		Arrays.sort(latencias, 0, total);
+		
+		System.out.printf("peticiones=%,d encadenadas=%d tiempo=%.2f s%n", total, encadenadas, tiempo / 1e9);
+		System.out.printf("peticiones/s=%,.0f p50=%.2f ms p99=%.2f ms max=%.2f ms%n",
+				total / (tiempo / 1e9), percentil(latencias, total, 0.50), percentil(latencias, total, 0.99),
+				latencias[total - 1] / 1e6);
+	}
+	
+	/**
+	 * Envía las peticiones de una conexión: tres consultas del usuario por
+	 * cada alta de tarea.
+	 * 
+	 * @return latencia de cada petición, en nanosegundos
+	 */
+	private static long[] recorrer(Socket conexion, int usuario, int peticiones, int encadenadas) throws IOException {
+		byte[] consulta = ("GET /usuarios/" + usuario + " HTTP/1.1\r\nHost: carga\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+		String cuerpo = "{\"descripcion\":\"Tarea de carga\",\"prioridad\":\"NORMAL\"}";
+		byte[] alta = ("POST /usuarios/" + usuario + "/tareas HTTP/1.1\r\nHost: carga\r\nContent-Length: " + cuerpo.length()
+				+ "\r\n\r\n" + cuerpo).getBytes(StandardCharsets.US_ASCII);
+		
+		OutputStream salida = conexion.getOutputStream();
+		InputStream entrada = new BufferedInputStream(conexion.getInputStream());
+		long[] latencias = new long[peticiones];
+		
+		for (int enviadas = 0; enviadas < peticiones;) {
+			int lote = Math.min(encadenadas, peticiones - enviadas);
+			long envio = System.nanoTime();
+			for (int i = 0; i < lote; i++) {
+				salida.write((enviadas + i) % 4 == 3 ? alta : consulta);
+			}
+			salida.flush();
+			
+			for (int i = 0; i < lote; i++) {
+				int estado = leerRespuesta(entrada);
+				if (estado >= 400) {
+					throw new IOException("Respuesta inesperada: " + estado);
+				}
+				latencias[enviadas + i] = System.nanoTime() - envio;
+			}
+			enviadas += lote;
+		}
+		return latencias;
+	}
+	
+	/**
+	 * Lee una respuesta con {@code Content-Length} y descarta el cuerpo.
+	 * 
+	 * @return código de estado
+	 */
+	private static int leerRespuesta(InputStream entrada) throws IOException {
+		StringBuilder linea = new StringBuilder(64);
+		int estado = -1;
+		long longitud = 0;
+		
+		while (true) {
+			linea.setLength(0);
+			for (int b = entrada.read(); b != '\n'; b = entrada.read()) {
+				if (b < 0) {
+					throw new IOException("Conexión cerrada por el servidor.");
+				}
+				if (b != '\r') {
+					linea.append((char) b);
+				}
+			}
+			if (linea.length() == 0) {
+				break;
+			}
+			if (estado < 0) {
+				estado = Integer.parseInt(linea, 9, 12, 10);
+			} else if (linea.length() > 15 && linea.substring(0, 15).equalsIgnoreCase("Content-Length:")) {
+				longitud = Long.parseLong(linea.substring(15).trim());
+			}
+		}
+		entrada.skipNBytes(longitud);
+		return estado;
+	}
+	
+	private static double percentil(long[] ordenadas, int total, double fraccion) {
+		return ordenadas[Math.min(total - 1, (int) (total * fraccion))] / 1e6;
+	}
+
+}
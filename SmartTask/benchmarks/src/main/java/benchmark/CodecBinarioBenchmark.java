@@ -0,0 +1,143 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import modelo.FormatoIntercambio;
+import modelo.Prioridad;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import servicio.CodecBinario;
+import servicio.GestorTareasServicio;
+
+/**
+ * Compara el formato binario con la exportación e importación JSON Lines
+ * del mismo estado.
+ * 
+ * <p>
+ * La lectura binaria solo construye los usuarios y sus tareas; la
+ * importación JSON además los agrega a un gestor nuevo, que es la única
+ * forma de leer ese formato.
+ * </p>
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBinarioBenchmark {
+	
+	@State(Scope.Benchmark)
+	public static class Poblacion {
+		
+		@Param({ "100000" })
+		public int tareas;
+		
+		@Param({ "false", "true" })
+		public boolean directo;
+		
+		GestorTareasServicio gestor;
+		List<Usuario> usuarios;
+		int bytes;
+		ByteBuffer codificado;
+		String json;
+		
+		@Setup(Level.Trial)
+		public void cargar() throws IOException {
+			gestor = new GestorTareasServicio();
+			Usuario usuario = null;
+			for (int i = 0; i < tareas; i++) {
+				if (i % 50 == 0) {
+					usuario = gestor.crearUsuario("Usuario " + i, TipoUsuario.values()[i % 3]);
+				}
+				Prioridad prioridad = i % 7 == 0 ? Prioridad.URGENTE : Prioridad.NORMAL;
+				gestor.agregarTareaAUsuario(usuario.getId(), gestor.crearTarea("Tarea número " + i, prioridad));
+			}
+			usuarios = gestor.listarUsuarios();
+			
+			CodecBinario codec = new CodecBinario();
+			bytes = CodecBinario.CABECERA;
+			for (Usuario u : usuarios) {
+				bytes += codec.tamanio(u);
+			}
+			codificado = directo ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+			codec.escribirCabecera(codificado);
+			for (Usuario u : usuarios) {
+				codec.escribir(codificado, u);
+			}
+			codificado.flip();
+			
+			StringWriter salida = new StringWriter();
+			gestor.exportar(salida, FormatoIntercambio.JSON_LINES);
+			json = salida.toString();
+		}
+	}
+	
+	/**
+	 * El codec y el búfer de escritura no se comparten entre hilos.
+	 */
+	@State(Scope.Thread)
+	public static class Hilo {
+		
+		CodecBinario codec;
+		ByteBuffer bufer;
+		
+		@Setup(Level.Trial)
+		public void preparar(Poblacion p) {
+			codec = new CodecBinario();
+			bufer = p.directo ? ByteBuffer.allocateDirect(p.bytes) : ByteBuffer.allocate(p.bytes);
+		}
+	}
+	
+	@Benchmark
+	public int codificarBinario(Poblacion p, Hilo h) {
+		ByteBuffer bufer = h.bufer.clear();
+		h.codec.escribirCabecera(bufer);
+		for (Usuario usuario : p.usuarios) {
+			h.codec.escribir(bufer, usuario);
+		}
+		return bufer.position();
+	}
+	
+	@Benchmark
+	public int decodificarBinario(Poblacion p, Hilo h) {
+		ByteBuffer bufer = p.codificado.duplicate();
+		h.codec.leerCabecera(bufer);
+		int tareas = 0;
+		while (bufer.hasRemaining()) {
+			tareas += h.codec.leerUsuario(bufer).getTareas().size();
+		}
+		return tareas;
+	}
+	
+	@Benchmark
+	public int exportarJson(Poblacion p) throws IOException {
+		StringWriter salida = new StringWriter(p.json.length());
+		p.gestor.exportar(salida, FormatoIntercambio.JSON_LINES);
+		return salida.getBuffer().length();
+	}
+	
+	@Benchmark
+	public int importarJson(Poblacion p) throws IOException {
+		return new GestorTareasServicio().importar(new StringReader(p.json), FormatoIntercambio.JSON_LINES);
+	}
+
+}
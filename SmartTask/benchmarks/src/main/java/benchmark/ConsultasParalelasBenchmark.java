@@ -0,0 +1,137 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import interfaces.Accionable;
+import modelo.EstadoTarea;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+
+/**
+ * Mide la aceleración de {@link Accionable#consultarTareas} con el número de
+ * hilos del pool de consultas.
+ * 
+ * <p>
+ * Cada combinación de parámetros se ejecuta en su propia JVM, así que el
+ * paralelismo se fija con la propiedad {@code smarttask.consultas.paralelismo}
+ * antes de la primera consulta. La aceleración es el cociente entre el tiempo
+ * con {@code paralelismo=1} y el tiempo con N hilos; {@link #filtrarListado}
+ * da la referencia del recorrido secuencial sin el reparto. Se lanza con
+ * {@code -Dhilos=1}, ya que los hilos los pone el pool y no JMH.
+ * </p>
+ * 
+ * <p>
+ * Con {@code sesgado=true} un único usuario tiene la mitad de las tareas,
+ * para comprobar que el reparto por número de tareas no se desequilibra.
+ * </p>
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ConsultasParalelasBenchmark {
+	
+	@State(Scope.Benchmark)
+	public static class Poblacion {
+		
+		@Param({ "10000000" })
+		public int tareas;
+		
+		@Param({ "secuencial", "concurrente", "columnar" })
+		public String implementacion;
+		
+		@Param({ "1", "2", "4", "8", "16", "32" })
+		public int paralelismo;
+		
+		@Param({ "false", "true" })
+		public boolean sesgado;
+		
+		Accionable gestor;
+		
+		@Setup(Level.Trial)
+		public void cargar() {
+			System.setProperty("smarttask.consultas.paralelismo", String.valueOf(paralelismo));
+			gestor = AccionableBenchmark.crearGestor(implementacion);
+			
+			int cantidadUsuarios = Math.max(1, tareas / AccionableBenchmark.Poblacion.TAREAS_POR_USUARIO);
+			int[] idsUsuario = new int[cantidadUsuarios];
+			for (int i = 0; i < cantidadUsuarios; i++) {
+				idsUsuario[i] = gestor.crearUsuario("Usuario " + i, TipoUsuario.values()[i % TipoUsuario.values().length]).getId();
+			}
+			
+			// Se agregan por lotes de un mismo usuario para acelerar la carga
+			List<List<Tarea>> lotes = new ArrayList<>();
+			for (int i = 0; i < cantidadUsuarios; i++) {
+				lotes.add(new ArrayList<>());
+			}
+			for (int i = 0; i < tareas; i++) {
+				Prioridad prioridad = (i % 4 == 0) ? Prioridad.URGENTE : Prioridad.NORMAL;
+				int usuario = sesgado && i % 2 == 0 ? 0 : i % cantidadUsuarios;
+				lotes.get(usuario).add(gestor.crearTarea("Tarea número " + i, prioridad));
+			}
+			for (int i = 0; i < cantidadUsuarios; i++) {
+				gestor.agregarTareasAUsuario(idsUsuario[i], lotes.get(i));
+				lotes.set(i, null);
+			}
+		}
+		
+		@TearDown(Level.Trial)
+		public void cerrar() throws Exception {
+			if (gestor instanceof AutoCloseable cerrable) {
+				cerrable.close();
+			}
+		}
+	}
+	
+	private static boolean urgenteActiva(Tarea tarea) {
+		return tarea.getPrioridad() == Prioridad.URGENTE && tarea.getEstado() == EstadoTarea.ACTIVA;
+	}
+	
+	@Benchmark
+	public long filtrar(Poblacion p) {
+		return p.gestor.consultarTareas(null, tareas -> tareas.filter(ConsultasParalelasBenchmark::urgenteActiva).count());
+	}
+	
+	@Benchmark
+	public Map<Prioridad, Integer> agregar(Poblacion p) {
+		return p.gestor.consultarTareas(null, tareas -> tareas.collect(Collectors.groupingBy(
+				Tarea::getPrioridad, () -> new EnumMap<>(Prioridad.class),
+				Collectors.summingInt(t -> t.getDescripcion().length()))));
+	}
+	
+	@Benchmark
+	public long filtrarListado(Poblacion p) {
+		long total = 0;
+		for (TipoUsuario tipo : TipoUsuario.values()) {
+			for (Tarea tarea : p.gestor.listarTareasPorTipoUsuario(tipo)) {
+				if (urgenteActiva(tarea)) {
+					total++;
+				}
+			}
+		}
+		return total;
+	}
+
+}
@@ -0,0 +1,56 @@
+package benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Punto de entrada de los benchmarks.
+ * 
+ * <p>
+ * Ejecuta {@link AccionableBenchmark} para cada número de hilos indicado en
+ * la propiedad de sistema {@code hilos} (por defecto {@code 1,4,16}). Con un
+ * hilo se miden ambas implementaciones; con más hilos solo la concurrente,
+ * ya que {@code GestorTareasServicio} no es segura entre hilos.
+ * </p>
+ * 
+ * <p>
+ * Los argumentos se interpretan como opciones de JMH (por ejemplo
+ * {@code -p tareas=1000} o {@code AccionableBenchmark.buscarUsuario}) y los
+ * resultados se escriben en {@code resultados-<hilos>.json}.
+ * </p>
+ */
+
+public final class EjecutarBenchmarks {
+	
+	private EjecutarBenchmarks() {
+	}
+	
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions opcionesLinea = new CommandLineOptions(args);
+		
+		for (String valor : System.getProperty("hilos", "1,4,16").split(",")) {
+			int hilos = Integer.parseInt(valor.trim());
+			
+			ChainedOptionsBuilder opciones = new OptionsBuilder()
+					.parent(opcionesLinea)
+					.threads(hilos)
+					.resultFormat(ResultFormatType.JSON)
+					.result("resultados-" + hilos + ".json");
+			
+			if (opcionesLinea.getIncludes().isEmpty()) {
+				opciones.include(AccionableBenchmark.class.getSimpleName());
+			}
+			if (hilos > 1) {
+				opciones.param("implementacion", "concurrente");
+			}
+			
+			new Runner(opciones.build()).run();
+		}
+	}
+
+}
@@ -0,0 +1,82 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import interfaces.Accionable;
+import interfaces.Suscripcion;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+
+/**
+ * Mide lo que añade la publicación de eventos a las operaciones que
+ * modifican tareas, con y sin un suscriptor.
+ * 
+ * <p>
+ * El suscriptor solo cuenta los eventos, así que la diferencia entre
+ * {@code suscrito=false} y {@code suscrito=true} es el coste de publicar.
+ * </p>
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventosBenchmark {
+	
+	@State(Scope.Benchmark)
+	public static class Poblacion {
+		
+		@Param({ "secuencial", "concurrente" })
+		public String implementacion;
+		
+		@Param({ "false", "true" })
+		public boolean suscrito;
+		
+		Accionable gestor;
+		int usuarioId;
+		Suscripcion suscripcion;
+		long recibidos;
+		
+		@Setup(Level.Iteration)
+		public void preparar() {
+			gestor = AccionableBenchmark.crearGestor(implementacion);
+			usuarioId = gestor.crearUsuario("Usuario", TipoUsuario.TRABAJADOR).getId();
+			if (suscrito) {
+				suscripcion = gestor.suscribir(lote -> recibidos += lote.getTamanio(), 1024);
+			}
+		}
+		
+		@TearDown(Level.Iteration)
+		public void cerrar() {
+			if (suscripcion != null) {
+				suscripcion.close();
+				suscripcion = null;
+			}
+		}
+	}
+	
+	@Benchmark
+	public Tarea crearAgregarYCompletar(Poblacion p) {
+		Tarea tarea = p.gestor.crearTarea("Nueva", Prioridad.NORMAL);
+		p.gestor.agregarTareaAUsuario(p.usuarioId, tarea);
+		p.gestor.marcarTareaComoCompletada(p.usuarioId, tarea.getId());
+		return tarea;
+	}
+
+}
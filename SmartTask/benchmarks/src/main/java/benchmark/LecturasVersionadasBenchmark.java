@@ -0,0 +1,120 @@
+package benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import interfaces.Accionable;
+import modelo.Prioridad;
+import modelo.Tarea;
+import servicio.GestorTareasConcurrente;
+import servicio.GestorTareasServicio;
+
+/**
+ * Mide cómo escalan las lecturas de listados con {@value #LECTORES} hilos
+ * lectores mientras {@value #ESCRITORES} hilos escriben sin pausa.
+ * 
+ * <p>
+ * Los lectores listan y recorren las tareas de un usuario al azar; los
+ * escritores agregan o eliminan tareas manteniendo unas 50 por usuario.
+ * Con {@code versionado} los lectores leen de la última versión publicada
+ * sin bloqueo y los escritores se sincronizan solo entre sí; con
+ * {@code sincronizado} el mismo gestor sin versiones se protege con un
+ * único cerrojo, y {@code concurrente} usa {@link GestorTareasConcurrente},
+ * que copia la lista bajo el cerrojo de la franja del usuario. Se lanza
+ * con {@code -Dhilos=1}, ya que los hilos los fija el grupo.
+ * </p>
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LecturasVersionadasBenchmark {
+	
+	static final int LECTORES = 32;
+	static final int ESCRITORES = 2;
+	
+	@State(Scope.Group)
+	public static class Poblacion {
+		
+		@Param({ "versionado", "sincronizado", "concurrente" })
+		public String implementacion;
+		
+		Accionable gestor;
+		int usuarios;
+		
+		/** Cerrojo de las escrituras y, sin versiones, también de las lecturas */
+		final Object cerrojo = new Object();
+		
+		@Setup(Level.Iteration)
+		public void cargar() {
+			gestor = implementacion.equals("concurrente") ? new GestorTareasConcurrente()
+					: new GestorTareasServicio(implementacion.equals("versionado"));
+			usuarios = 10_000;
+			MedirMemoria.poblar(gestor, usuarios * 50);
+		}
+	}
+	
+	@Benchmark
+	@Group("mixto")
+	@GroupThreads(LECTORES)
+	public long leer(Poblacion p) {
+		int usuario = ThreadLocalRandom.current().nextInt(p.usuarios) + 1;
+		if (p.implementacion.equals("sincronizado")) {
+			synchronized (p.cerrojo) {
+				return sumarIds(p.gestor.listarTareasDeUsuario(usuario));
+			}
+		}
+		return sumarIds(p.gestor.listarTareasDeUsuario(usuario));
+	}
+	
+	@Benchmark
+	@Group("mixto")
+	@GroupThreads(ESCRITORES)
+	public void escribir(Poblacion p) {
+		ThreadLocalRandom azar = ThreadLocalRandom.current();
+		int usuario = azar.nextInt(p.usuarios) + 1;
+		if (p.implementacion.equals("concurrente")) {
+			escribir(p.gestor, usuario, azar);
+			return;
+		}
+		synchronized (p.cerrojo) {
+			escribir(p.gestor, usuario, azar);
+		}
+	}
+	
+	private static void escribir(Accionable gestor, int usuario, ThreadLocalRandom azar) {
+		List<Tarea> tareas = gestor.listarTareasDeUsuario(usuario);
+		if (tareas.size() < 50 || azar.nextBoolean()) {
+			gestor.agregarTareaAUsuario(usuario, gestor.crearTarea("Nueva", Prioridad.NORMAL));
+		} else {
+			gestor.eliminarTareaDeUsuario(usuario, tareas.get(azar.nextInt(tareas.size())).getId());
+		}
+	}
+	
+	private static long sumarIds(List<Tarea> tareas) {
+		long suma = 0;
+		for (Tarea tarea : tareas) {
+			suma += tarea.getId();
+		}
+		return suma;
+	}
+
+}
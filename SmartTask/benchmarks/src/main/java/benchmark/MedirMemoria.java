@@ -0,0 +1,91 @@
+package benchmark;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import interfaces.Accionable;
+import modelo.Prioridad;
+import modelo.TipoUsuario;
+
+/**
+ * Mide la memoria de heap y fuera del heap que ocupa cada implementación
+ * tras cargar la misma población de tareas.
+ * 
+ * <p>
+ * Uso: {@code java -Xmx8g -cp target/benchmarks.jar benchmark.MedirMemoria [tareas]}.
+ * La memoria fuera del heap del almacén columnar se informa como la memoria
+ * directa reservada (columnas y textos).
+ * </p>
+ */
+
+public final class MedirMemoria {
+	
+	/** Tareas asignadas en promedio a cada usuario */
+	private static final int TAREAS_POR_USUARIO = 50;
+	
+	private MedirMemoria() {
+	}
+	
+	public static void main(String[] args) throws Exception {
+		int tareas = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		
+		for (String implementacion : new String[] { "secuencial", "columnar" }) {
+			long heapAntes = heapUsado();
+			long directaAntes = memoriaDirecta();
+			
+			Accionable gestor = AccionableBenchmark.crearGestor(implementacion);
+			poblar(gestor, tareas);
+			
+			long heap = heapUsado() - heapAntes;
+			long directa = memoriaDirecta() - directaAntes;
+			System.out.printf("%-11s tareas=%,d heap=%,d bytes (%.1f B/tarea) fuera de heap=%,d bytes%n",
+					implementacion, tareas, heap, (double) heap / tareas, directa);
+			
+			if (gestor instanceof AutoCloseable cerrable) {
+				cerrable.close();
+			}
+			gestor = null;
+		}
+	}
+	
+	/**
+	 * Carga la población usada en las mediciones.
+	 * 
+	 * @param gestor gestor vacío
+	 * @param tareas número de tareas
+	 */
+	static void poblar(Accionable gestor, int tareas) {
+		int cantidadUsuarios = Math.max(1, tareas / TAREAS_POR_USUARIO);
+		int[] idsUsuario = new int[cantidadUsuarios];
+		for (int i = 0; i < cantidadUsuarios; i++) {
+			TipoUsuario tipo = TipoUsuario.values()[i % TipoUsuario.values().length];
+			idsUsuario[i] = gestor.crearUsuario("Usuario " + i, tipo).getId();
+		}
+		
+		for (int i = 0; i < tareas; i++) {
+			Prioridad prioridad = (i % 4 == 0) ? Prioridad.URGENTE : Prioridad.NORMAL;
+			int duenio = idsUsuario[i % cantidadUsuarios];
+			gestor.agregarTareaAUsuario(duenio, gestor.crearTarea("Tarea número " + i, prioridad));
+			if (i % 3 == 0) {
+				gestor.marcarTareaComoCompletada(duenio, i + 1);
+			}
+		}
+	}
+	
+	private static long heapUsado() {
+		MemoryMXBean memoria = ManagementFactory.getMemoryMXBean();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return memoria.getHeapMemoryUsage().getUsed();
+	}
+	
+	private static long memoriaDirecta() {
+		return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+				.filter(b -> b.getName().equals("direct"))
+				.mapToLong(BufferPoolMXBean::getMemoryUsed)
+				.sum();
+	}
+
+}
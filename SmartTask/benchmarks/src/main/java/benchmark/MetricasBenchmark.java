@@ -0,0 +1,76 @@
+package benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import interfaces.Accionable;
+import modelo.Usuario;
+import servicio.GestorTareasMedido;
+import servicio.Histograma;
+
+/**
+ * Mide lo que añade {@link GestorTareasMedido} a cada llamada.
+ * 
+ * <p>
+ * {@code buscarUsuario} es la operación más barata del gestor, así que la
+ * diferencia entre {@code medido=false} y {@code medido=true} es
+ * prácticamente el coste de medir. {@code registrar} mide solo el
+ * histograma.
+ * </p>
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricasBenchmark {
+	
+	@State(Scope.Benchmark)
+	public static class Poblacion {
+		
+		@Param({ "secuencial", "concurrente" })
+		public String implementacion;
+		
+		@Param({ "false", "true" })
+		public boolean medido;
+		
+		Accionable gestor;
+		int usuarios;
+		Histograma histograma;
+		
+		@Setup
+		public void preparar() {
+			gestor = AccionableBenchmark.crearGestor(implementacion);
+			if (medido) {
+				gestor = new GestorTareasMedido(gestor);
+			}
+			usuarios = 10_000;
+			MedirMemoria.poblar(gestor, usuarios * 50);
+			histograma = new Histograma();
+		}
+	}
+	
+	@Benchmark
+	public Usuario buscarUsuario(Poblacion p) {
+		return p.gestor.buscarUsuario(ThreadLocalRandom.current().nextInt(p.usuarios) + 1);
+	}
+	
+	@Benchmark
+	public void registrar(Poblacion p) {
+		p.histograma.registrar(ThreadLocalRandom.current().nextInt(1 << 20));
+	}
+
+}
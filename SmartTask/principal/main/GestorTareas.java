@@ -1,9 +1,22 @@
 package main;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
 
+import servicio.GestorTareasConcurrente;
+import servicio.GestorTareasMedido;
 import servicio.GestorTareasServicio;
+import servidor.ServidorHttp;
 import interfaces.Accionable;
 import modelo.Prioridad;
 import modelo.Tarea;
@@ -30,8 +43,28 @@ public class GestorTareas {
 	
 	private static final Scanner scanner = new Scanner(System.in);
 	private static final Accionable gestor = new GestorTareasServicio();
+	private static final SalidaConsola salida = new SalidaConsola(System.out);
 ;
-	public static void main(String[] args) {
+	/**
+	 * Inicia el menú interactivo, o el modo por lotes con
+	 * {@code --lote [archivo]}: sin archivo, las órdenes se leen de la
+	 * entrada estándar. Ver {@link ModoLote}. Con
+	 * {@code --servidor [puerto]} atiende la API HTTP en el puerto indicado,
+	 * 8080 por defecto. Ver {@link ServidorHttp}.
+	 * 
+	 * @param args argumentos de la línea de órdenes
+	 * @throws IOException si falla la lectura del lote o no se puede abrir
+	 *         el puerto
+	 */
+	public static void main(String[] args) throws IOException {
+		
+		if (args.length > 0 && args[0].equals("--lote")) {
+			System.exit(ejecutarLote(args.length > 1 ? args[1] : null));
+		}
+		if (args.length > 0 && args[0].equals("--servidor")) {
+			ejecutarServidor(args.length > 1 ? Integer.parseInt(args[1]) : 8080);
+			return;
+		}
 		
 		int opcion;
 		
@@ -76,6 +109,59 @@ public class GestorTareas {
 
 	}
 	
+	/**
+	 * Ejecuta un lote de órdenes desde un archivo o la entrada estándar.
+	 * La entrada y la salida se leen y escriben en UTF-8.
+	 * 
+	 * @return código de salida: 0 si todas las órdenes terminaron bien
+	 */
+	private static int ejecutarLote(String archivo) throws IOException {
+		Writer salida = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+		
+		try (Reader entrada = archivo == null
+				? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+				: Files.newBufferedReader(Path.of(archivo), StandardCharsets.UTF_8)) {
+			return ModoLote.ejecutar(gestor, entrada, salida) == 0 ? 0 : 1;
+		}
+	}
+	
+	/**
+	 * Atiende la API HTTP sobre un gestor concurrente hasta que se detiene
+	 * el proceso. Las métricas del gestor se publican en JMX y en
+	 * {@code /metricas}.
+	 */
+	private static void ejecutarServidor(int puerto) throws IOException {
+		ajustarServidorJdk();
+		CountDownLatch detenido = new CountDownLatch(1);
+		GestorTareasMedido medido = new GestorTareasMedido(new GestorTareasConcurrente());
+		medido.registrarJmx("servidor");
+		ServidorHttp servidor = new ServidorHttp(medido, new InetSocketAddress(puerto));
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			servidor.close();
+			medido.close();
+			detenido.countDown();
+		}));
+		System.out.println("Servidor escuchando en el puerto " + servidor.getPuerto());
+		
+		try {
+			detenido.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Ajusta el servidor HTTP del JDK para muchas conexiones keep-alive: no
+	 * cerrar las inactivas a partir de 200 y desactivar el algoritmo de
+	 * Nagle, que retiene cada respuesta unos 40 ms hasta el ACK retardado
+	 * del cliente. Son propiedades de toda la JVM que se leen al crear el
+	 * primer servidor; se respetan las indicadas con {@code -D}.
+	 */
+	private static void ajustarServidorJdk() {
+		System.getProperties().putIfAbsent("sun.net.httpserver.maxIdleConnections", "100000");
+		System.getProperties().putIfAbsent("sun.net.httpserver.nodelay", "true");
+	}
+	
 	private static void mostrarMenu() {
 		System.out.println("\nGestor de tareas:");
         System.out.println("1. Crear usuario");
@@ -113,7 +199,7 @@ public class GestorTareas {
 			return;
 		}
 		
-		usuarios.forEach(System.out::println);
+		listar(usuarios);
 	}
 	
 	private static void agregarTarea() {
@@ -153,7 +239,10 @@ public class GestorTareas {
 			return;
 		}
 		
-		tareas.forEach(System.out::println);
+		for (Tarea tarea : tareas) {
+			salida.linea(tarea);
+		}
+		salida.vaciar();
 	}
 	
 	private static void marcarTarea() {
@@ -193,9 +282,7 @@ public class GestorTareas {
 		int opcionTipo = leerEntero("Opción: ");
 		TipoUsuario tipoSeleccionado = TipoUsuario.values()[opcionTipo - 1];
 		
-		gestor.listarUsuarios().stream()
-				.filter(u -> u.getTipo() == tipoSeleccionado)
-				.forEach(System.out::println);
+		listar(gestor.listarUsuariosPorTipo(tipoSeleccionado));
 	}
 	
 	private static void listarTareasPorTipoUsuario() {
@@ -215,7 +302,17 @@ public class GestorTareas {
 	        return;
 	    }
 
-	    tareas.forEach(System.out::println);
+	    for (Tarea tarea : tareas) {
+	        salida.linea(tarea);
+	    }
+	    salida.vaciar();
+	}
+	
+	private static void listar(List<Usuario> usuarios) {
+		for (Usuario usuario : usuarios) {
+			salida.linea(usuario);
+		}
+		salida.vaciar();
 	}
 
 	
@@ -0,0 +1,402 @@
+package main;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+import interfaces.Accionable;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+
+/**
+ * Ejecuta por lotes las órdenes de un archivo o de la entrada estándar,
+ * sin menú, para usar el gestor desde scripts.
+ * 
+ * <p>
+ * Cada línea es una orden con sus argumentos separados por espacios o
+ * tabuladores. Los nombres y descripciones van al final y llegan hasta el
+ * fin de la línea, por lo que no necesitan comillas. Se ignoran las líneas
+ * vacías y las que empiezan por {@code #}. Las órdenes son:
+ * </p>
+ * <ul>
+ *     <li>{@code usuario <tipo> <nombre>}</li>
+ *     <li>{@code tarea <usuario> <prioridad> <descripción>}</li>
+ *     <li>{@code completar <usuario> <tarea>} y {@code eliminar <usuario> <tarea>}</li>
+ *     <li>{@code usuarios}, {@code usuarios-tipo <tipo>}, {@code tareas <usuario>}
+ *     y {@code tareas-tipo <tipo>}</li>
+ * </ul>
+ * 
+ * <p>
+ * Cada orden termina con exactamente una línea de resultado: {@code ok},
+ * seguido del id creado o del número de filas listadas antes; {@code no}
+ * si la tarea no existe; o {@code error <línea> <mensaje>}. Un error no
+ * detiene el lote. Las filas de usuarios son
+ * {@code usuario <id> <tipo> <tareas> <nombre>} y las de tareas
+ * {@code tarea <id> <prioridad> <estado> <descripción>}. Por ejemplo:
+ * </p>
+ * 
+ * <pre>
+ * usuario PROFESOR Ana Pérez          ok 1
+ * tarea 1 URGENTE Corregir examen     ok 2
+ * completar 1 9                       no
+ * usuarios-tipo PROFESOR              usuario 1 PROFESOR 1 Ana Pérez
+ *                                     ok 1
+ * </pre>
+ * 
+ * <p>
+ * La entrada se lee con un búfer propio en lugar de {@code Scanner}: los
+ * números y los nombres de órdenes y enumerados se reconocen sobre los
+ * caracteres, y solo se crean cadenas para nombres y descripciones. La
+ * salida se escribe por bloques a través de {@link SalidaConsola}.
+ * </p>
+ */
+
+public final class ModoLote {
+	
+	private static final int BUFER = 1 << 16;
+	
+	private static final TipoUsuario[] TIPOS = TipoUsuario.values();
+	private static final Prioridad[] PRIORIDADES = Prioridad.values();
+	
+	/**
+	 * Órdenes reconocidas.
+	 */
+	private enum Orden {
+		USUARIO("usuario"),
+		TAREA("tarea"),
+		COMPLETAR("completar"),
+		ELIMINAR("eliminar"),
+		USUARIOS("usuarios"),
+		TAREAS("tareas"),
+		USUARIOS_TIPO("usuarios-tipo"),
+		TAREAS_TIPO("tareas-tipo");
+		
+		private final String palabra;
+		
+		Orden(String palabra) {
+			this.palabra = palabra;
+		}
+	}
+	
+	private static final Orden[] ORDENES = Orden.values();
+	
+	private final Accionable gestor;
+	private final Reader entrada;
+	private final SalidaConsola salida;
+	
+	private final char[] bufer = new char[BUFER];
+	private int posicion;
+	private int limite;
+	
+	/** Línea actual, sin el salto */
+	private char[] linea = new char[256];
+	private int largo;
+	
+	/** Posición de lectura dentro de {@link #linea} */
+	private int cursor;
+	
+	/** Inicio y fin de la última palabra leída */
+	private int inicioPalabra;
+	private int finPalabra;
+	
+	private int numeroLinea;
+	private int errores;
+	
+	private ModoLote(Accionable gestor, Reader entrada, Writer salida) {
+		this.gestor = gestor;
+		this.entrada = entrada;
+		this.salida = new SalidaConsola(salida);
+	}
+	
+	/**
+	 * Ejecuta todas las órdenes de la entrada.
+	 * 
+	 * @param gestor gestor sobre el que se ejecutan
+	 * @param entrada órdenes, una por línea; no se cierra
+	 * @param salida resultados, uno por orden; se vacía pero no se cierra
+	 * @return número de órdenes que terminaron con error
+	 * @throws IOException si falla la lectura o la escritura
+	 * @throws IllegalArgumentException si algún argumento es null
+	 */
+	public static int ejecutar(Accionable gestor, Reader entrada, Writer salida) throws IOException {
+		if (gestor == null || entrada == null || salida == null) {
+			throw new IllegalArgumentException("Gestor, entrada o salida no válidos.");
+		}
+		
+		ModoLote lote = new ModoLote(gestor, entrada, salida);
+		while (lote.leerLinea()) {
+			lote.ejecutarLinea();
+		}
+		lote.salida.vaciar();
+		return lote.errores;
+	}
+	
+	private void ejecutarLinea() {
+		cursor = 0;
+		if (!palabra() || linea[inicioPalabra] == '#') {
+			return;
+		}
+		
+		try {
+			switch (orden()) {
+				case USUARIO: {
+					TipoUsuario tipo = constante(TIPOS, "Tipo de usuario");
+					Usuario usuario = gestor.crearUsuario(resto("Nombre"), tipo);
+					ok().append(' ').append(usuario.getId());
+					break;
+				}
+				case TAREA: {
+					int usuarioId = entero("Id de usuario");
+					Prioridad prioridad = constante(PRIORIDADES, "Prioridad");
+					String descripcion = resto("Descripción");
+					if (gestor.buscarUsuario(usuarioId) == null) {
+						throw new IllegalArgumentException("Usuario no encontrado: " + usuarioId);
+					}
+					Tarea tarea = gestor.crearTarea(descripcion, prioridad);
+					gestor.agregarTareaAUsuario(usuarioId, tarea);
+					ok().append(' ').append(tarea.getId());
+					break;
+				}
+				case COMPLETAR: {
+					int usuarioId = entero("Id de usuario");
+					int tareaId = entero("Id de tarea");
+					finDeOrden();
+					resultado(gestor.marcarTareaComoCompletada(usuarioId, tareaId));
+					break;
+				}
+				case ELIMINAR: {
+					int usuarioId = entero("Id de usuario");
+					int tareaId = entero("Id de tarea");
+					finDeOrden();
+					resultado(gestor.eliminarTareaDeUsuario(usuarioId, tareaId));
+					break;
+				}
+				case USUARIOS:
+					finDeOrden();
+					usuarios(gestor.listarUsuarios());
+					break;
+				case TAREAS: {
+					int usuarioId = entero("Id de usuario");
+					finDeOrden();
+					List<Tarea> tareas = gestor.listarTareasDeUsuario(usuarioId);
+					if (tareas == null) {
+						throw new IllegalArgumentException("Usuario no encontrado: " + usuarioId);
+					}
+					tareas(tareas);
+					break;
+				}
+				case USUARIOS_TIPO: {
+					TipoUsuario tipo = constante(TIPOS, "Tipo de usuario");
+					finDeOrden();
+					usuarios(gestor.listarUsuariosPorTipo(tipo));
+					break;
+				}
+				case TAREAS_TIPO: {
+					TipoUsuario tipo = constante(TIPOS, "Tipo de usuario");
+					finDeOrden();
+					tareas(gestor.listarTareasPorTipoUsuario(tipo));
+					break;
+				}
+				default:
+					throw new IllegalStateException();
+			}
+		} catch (IllegalArgumentException e) {
+			errores++;
+			salida.texto().append("error ").append(numeroLinea).append(' ').append(e.getMessage());
+		}
+		salida.terminarLinea();
+	}
+	
+	// Resultados
+	
+	private StringBuilder ok() {
+		return salida.texto().append("ok");
+	}
+	
+	private void resultado(boolean hecho) {
+		salida.texto().append(hecho ? "ok" : "no");
+	}
+	
+	private void usuarios(List<Usuario> usuarios) {
+		StringBuilder texto = salida.texto();
+		for (Usuario usuario : usuarios) {
+			texto.append("usuario ").append(usuario.getId())
+					.append(' ').append(usuario.getTipo().name())
+					.append(' ').append(usuario.getTareas().size())
+					.append(' ').append(usuario.getNombre());
+			salida.terminarLinea();
+		}
+		ok().append(' ').append(usuarios.size());
+	}
+	
+	private void tareas(List<Tarea> tareas) {
+		StringBuilder texto = salida.texto();
+		for (Tarea tarea : tareas) {
+			texto.append("tarea ").append(tarea.getId())
+					.append(' ').append(tarea.getPrioridad().name())
+					.append(' ').append(tarea.getEstado().name())
+					.append(' ').append(tarea.getDescripcion());
+			salida.terminarLinea();
+		}
+		ok().append(' ').append(tareas.size());
+	}
+	
+	// Lectura
+	
+	/**
+	 * Copia la siguiente línea de la entrada en {@link #linea}.
+	 * 
+	 * @return false si no quedan líneas
+	 */
+	private boolean leerLinea() throws IOException {
+		largo = 0;
+		while (true) {
+			if (posicion == limite) {
+				limite = entrada.read(bufer, 0, bufer.length);
+				posicion = 0;
+				if (limite <= 0) {
+					limite = 0;
+					if (largo == 0) {
+						return false;
+					}
+					break;
+				}
+			}
+			
+			int inicio = posicion;
+			while (posicion < limite && bufer[posicion] != '\n') {
+				posicion++;
+			}
+			int copiados = posicion - inicio;
+			if (largo + copiados > linea.length) {
+				linea = Arrays.copyOf(linea, Math.max(linea.length * 2, largo + copiados));
+			}
+			System.arraycopy(bufer, inicio, linea, largo, copiados);
+			largo += copiados;
+			
+			if (posicion < limite) {
+				posicion++;
+				break;
+			}
+		}
+		
+		numeroLinea++;
+		if (largo > 0 && linea[largo - 1] == '\r') {
+			largo--;
+		}
+		return true;
+	}
+	
+	/**
+	 * Avanza hasta la siguiente palabra y la delimita.
+	 * 
+	 * @return false si no quedan palabras en la línea
+	 */
+	private boolean palabra() {
+		while (cursor < largo && espacio(linea[cursor])) {
+			cursor++;
+		}
+		inicioPalabra = cursor;
+		while (cursor < largo && !espacio(linea[cursor])) {
+			cursor++;
+		}
+		finPalabra = cursor;
+		return finPalabra > inicioPalabra;
+	}
+	
+	private static boolean espacio(char c) {
+		return c == ' ' || c == '\t';
+	}
+	
+	private boolean palabraEs(String texto) {
+		int longitud = finPalabra - inicioPalabra;
+		if (longitud != texto.length()) {
+			return false;
+		}
+		for (int i = 0; i < longitud; i++) {
+			if (linea[inicioPalabra + i] != texto.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private String palabraActual() {
+		return new String(linea, inicioPalabra, finPalabra - inicioPalabra);
+	}
+	
+	private Orden orden() {
+		for (Orden orden : ORDENES) {
+			if (palabraEs(orden.palabra)) {
+				return orden;
+			}
+		}
+		throw new IllegalArgumentException("Orden desconocida: " + palabraActual());
+	}
+	
+	private <E extends Enum<E>> E constante(E[] constantes, String nombre) {
+		if (!palabra()) {
+			throw new IllegalArgumentException(nombre + " requerido.");
+		}
+		for (E constante : constantes) {
+			if (palabraEs(constante.name())) {
+				return constante;
+			}
+		}
+		throw new IllegalArgumentException(nombre + " no válido: " + palabraActual());
+	}
+	
+	private int entero(String nombre) {
+		if (!palabra()) {
+			throw new IllegalArgumentException(nombre + " requerido.");
+		}
+		
+		boolean negativo = linea[inicioPalabra] == '-';
+		int inicio = negativo ? inicioPalabra + 1 : inicioPalabra;
+		if (inicio == finPalabra || finPalabra - inicio > 10) {
+			throw new IllegalArgumentException(nombre + " no válido: " + palabraActual());
+		}
+		
+		long valor = 0;
+		for (int i = inicio; i < finPalabra; i++) {
+			char c = linea[i];
+			if (c < '0' || c > '9') {
+				throw new IllegalArgumentException(nombre + " no válido: " + palabraActual());
+			}
+			valor = valor * 10 + (c - '0');
+		}
+		valor = negativo ? -valor : valor;
+		if (valor < Integer.MIN_VALUE || valor > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(nombre + " no válido: " + palabraActual());
+		}
+		return (int) valor;
+	}
+	
+	/** Devuelve el resto de la línea sin los espacios de los extremos */
+	private String resto(String nombre) {
+		int inicio = cursor;
+		int fin = largo;
+		while (inicio < fin && espacio(linea[inicio])) {
+			inicio++;
+		}
+		while (fin > inicio && espacio(linea[fin - 1])) {
+			fin--;
+		}
+		if (inicio == fin) {
+			throw new IllegalArgumentException(nombre + " vacío.");
+		}
+		cursor = largo;
+		return new String(linea, inicio, fin - inicio);
+	}
+	
+	private void finDeOrden() {
+		if (palabra()) {
+			throw new IllegalArgumentException("Argumento de más: " + palabraActual());
+		}
+	}
+
+}
@@ -0,0 +1,122 @@
+package main;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+import modelo.Tarea;
+import modelo.Usuario;
+
+/**
+ * Salida por lotes para los listados de la consola.
+ * 
+ * <p>
+ * Las líneas se agregan a un {@link StringBuilder} reutilizado con
+ * {@link Tarea#escribir(StringBuilder)} y {@link Usuario#escribir(StringBuilder)},
+ * sin pasar por {@code String.format} ni crear una cadena por línea, y se
+ * envían a la consola en bloques de {@value #LOTE} caracteres. Escribe a
+ * través de {@code System.out}, así que no se mezcla con el resto de
+ * mensajes siempre que se llame a {@link #vaciar()} al terminar cada
+ * listado.
+ * </p>
+ */
+
+final class SalidaConsola {
+	
+	/** Caracteres acumulados antes de escribir en la consola */
+	private static final int LOTE = 1 << 16;
+	
+	private static final String SALTO = System.lineSeparator();
+	
+	private final Writer destino;
+	
+	/** Líneas pendientes de escribir */
+	private final StringBuilder pendiente;
+	
+	/** Copia de {@link #pendiente} para escribirla sin crear cadenas */
+	private char[] copia;
+	
+	/**
+	 * Construye una salida sobre el flujo indicado.
+	 * 
+	 * @param salida flujo de la consola, normalmente {@code System.out}
+	 */
+	SalidaConsola(PrintStream salida) {
+		this(new OutputStreamWriter(salida, salida.charset()));
+	}
+	
+	/**
+	 * Construye una salida sobre un destino cualquiera, por ejemplo para
+	 * el modo por lotes.
+	 * 
+	 * @param destino destino del texto; se vacía pero no se cierra
+	 */
+	SalidaConsola(Writer destino) {
+		this.destino = destino;
+		this.pendiente = new StringBuilder(LOTE + 256);
+		this.copia = new char[LOTE + 256];
+	}
+	
+	void linea(Tarea tarea) {
+		tarea.escribir(pendiente);
+		terminarLinea();
+	}
+	
+	void linea(Usuario usuario) {
+		usuario.escribir(pendiente);
+		terminarLinea();
+	}
+	
+	/**
+	 * Devuelve el texto de la línea en curso para agregarle campos. La
+	 * línea se cierra con {@link #terminarLinea()}.
+	 * 
+	 * @return texto pendiente de escribir
+	 */
+	StringBuilder texto() {
+		return pendiente;
+	}
+	
+	/**
+	 * Cierra la línea en curso.
+	 */
+	void terminarLinea() {
+		pendiente.append(SALTO);
+		enviarSiLleno();
+	}
+	
+	/**
+	 * Escribe las líneas pendientes y vacía la consola.
+	 */
+	void vaciar() {
+		enviar();
+		try {
+			destino.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private void enviarSiLleno() {
+		if (pendiente.length() >= LOTE) {
+			enviar();
+		}
+	}
+	
+	private void enviar() {
+		int largo = pendiente.length();
+		if (copia.length < largo) {
+			copia = new char[largo];
+		}
+		pendiente.getChars(0, largo, copia, 0);
+		pendiente.setLength(0);
+		try {
+			destino.write(copia, 0, largo);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
@@ -1,7 +1,16 @@
 package interfaces;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
+import modelo.ContadorTareas;
+import modelo.EstadoTarea;
+import modelo.FormatoIntercambio;
+import modelo.Pagina;
 import modelo.Prioridad;
 import modelo.Tarea;
 import modelo.TipoUsuario;
@@ -43,6 +52,14 @@ public interface Accionable {
 	 */
 	List<Usuario> listarUsuarios();
 	
+	/**
+	 * Devuelve los usuarios de un tipo específico, en orden de creación.
+	 * 
+	 * @param tipo tipo de usuario a filtrar
+	 * @return lista de usuarios de ese tipo
+	 */
+	List<Usuario> listarUsuariosPorTipo(TipoUsuario tipo);
+	
 	// Gestión de tareas 
 	
 	/**
@@ -100,5 +117,310 @@ public interface Accionable {
 	 */
 	List<Tarea> listarTareasPorTipoUsuario(TipoUsuario tipo);
 	
+	/**
+	 * Devuelve solo las tareas de un usuario con el estado indicado.
+	 * 
+	 * @param usuarioId identificador del usuario
+	 * @param estado estado de las tareas
+	 * @return lista de tareas o null si el usuario no existe
+	 */
+	List<Tarea> listarTareasDeUsuario(int usuarioId, EstadoTarea estado);
+	
+	/**
+	 * Devuelve solo las tareas de un usuario con la prioridad indicada.
+	 * 
+	 * @param usuarioId identificador del usuario
+	 * @param prioridad prioridad de las tareas
+	 * @return lista de tareas o null si el usuario no existe
+	 */
+	List<Tarea> listarTareasDeUsuario(int usuarioId, Prioridad prioridad);
+	
+	// Listados paginados
+	
+	/**
+	 * Devuelve una página de usuarios en orden de id.
+	 * 
+	 * @param cursor {@link Pagina#INICIO} o el cursor de la página anterior
+	 * @param limite número máximo de usuarios
+	 * @return página de usuarios
+	 * @throws IllegalArgumentException si el cursor o el límite no son válidos
+	 */
+	Pagina<Usuario> listarUsuarios(long cursor, int limite);
+	
+	/**
+	 * Devuelve una página de las tareas de un usuario en orden de id.
+	 * 
+	 * @param usuarioId identificador del usuario
+	 * @param cursor {@link Pagina#INICIO} o el cursor de la página anterior
+	 * @param limite número máximo de tareas
+	 * @return página de tareas o null si el usuario no existe
+	 * @throws IllegalArgumentException si el cursor o el límite no son válidos
+	 */
+	Pagina<Tarea> listarTareasDeUsuario(int usuarioId, long cursor, int limite);
+	
+	/**
+	 * Devuelve una página de las tareas de los usuarios de un tipo, en
+	 * orden de id de usuario y, dentro de cada usuario, de id de tarea.
+	 * 
+	 * @param tipo tipo de usuario
+	 * @param cursor {@link Pagina#INICIO} o el cursor de la página anterior
+	 * @param limite número máximo de tareas
+	 * @return página de tareas
+	 * @throws IllegalArgumentException si el cursor o el límite no son válidos
+	 */
+	Pagina<Tarea> listarTareasPorTipoUsuario(TipoUsuario tipo, long cursor, int limite);
+	
+	/**
+	 * Recorre los usuarios en orden de id sin copiar la lista completa. El
+	 * recorrido es débilmente consistente: los usuarios creados mientras
+	 * tanto pueden aparecer o no, pero ninguno se repite.
+	 * 
+	 * @return stream secuencial de usuarios
+	 */
+	Stream<Usuario> recorrerUsuarios();
+	
+	/**
+	 * Recorre las tareas de los usuarios de un tipo en el orden de
+	 * {@link #listarTareasPorTipoUsuario(TipoUsuario, long, int)}, pidiendo
+	 * páginas a medida que se consumen. El recorrido es débilmente
+	 * consistente.
+	 * 
+	 * @param tipo tipo de usuario
+	 * @return stream secuencial de tareas
+	 */
+	Stream<Tarea> recorrerTareasPorTipoUsuario(TipoUsuario tipo);
+	
+	// Consultas paralelas
+	
+	/**
+	 * Evalúa una consulta sobre las tareas de los usuarios de un tipo, o de
+	 * todos los usuarios si el tipo es null.
+	 * 
+	 * <p>
+	 * Las tareas llegan en el orden de {@link #listarTareasPorTipoUsuario}
+	 * (por id de usuario si el tipo es null). A partir de unas decenas de
+	 * miles de tareas el stream es paralelo, se reparte por número de tareas
+	 * y no de usuarios, y se evalúa en un pool de hilos propio de las
+	 * consultas; por debajo es secuencial y se evalúa en el hilo que llama.
+	 * La consulta no debe modificar el gestor.
+	 * </p>
+	 * 
+	 * @param tipo tipo de usuario, o null para todos
+	 * @param consulta función que reduce el stream de tareas a un resultado
+	 * @return resultado de la consulta
+	 */
+	<R> R consultarTareas(TipoUsuario tipo, Function<? super Stream<Tarea>, ? extends R> consulta);
+	
+	// Búsqueda
+	
+	/**
+	 * Busca tareas asignadas por palabras de su descripción, sin
+	 * distinguir mayúsculas ni tildes.
+	 * 
+	 * <p>
+	 * Los términos separados por espacios deben aparecer todos; dos
+	 * términos unidos por {@code OR} son alternativas y un término
+	 * terminado en {@code *} busca por prefijo. Los resultados salen en el
+	 * orden de la cola de trabajo (activas urgentes primero) y, dentro de
+	 * cada grupo, en el orden en que se asignaron.
+	 * </p>
+	 * 
+	 * @param consulta términos a buscar
+	 * @param estado estado de las tareas, o null para cualquiera
+	 * @param prioridad prioridad de las tareas, o null para cualquiera
+	 * @param tipo tipo de usuario dueño, o null para cualquiera
+	 * @param limite número máximo de resultados
+	 * @return tareas encontradas, como mucho {@code limite}
+	 * @throws IllegalArgumentException si la consulta no tiene términos o
+	 * el límite no es positivo
+	 */
+	List<Tarea> buscarTareas(String consulta, EstadoTarea estado, Prioridad prioridad, TipoUsuario tipo, int limite);
+	
+	// Cola de trabajo
+	
+	/**
+	 * Consulta la siguiente tarea activa a atender entre todos los usuarios,
+	 * sin reclamarla. Las urgentes van primero y, a igual prioridad, las
+	 * creadas antes.
+	 * 
+	 * @return tarea o null si no hay tareas pendientes
+	 */
+	Tarea verSiguienteTarea();
+	
+	/**
+	 * Consulta la siguiente tarea activa a atender de un usuario, sin
+	 * reclamarla.
+	 * 
+	 * @param usuarioId identificador del usuario
+	 * @return tarea o null si el usuario no tiene tareas pendientes
+	 */
+	Tarea verSiguienteTarea(int usuarioId);
+	
+	/**
+	 * Reclama la siguiente tarea activa a atender entre todos los usuarios.
+	 * Una tarea reclamada no se vuelve a entregar salvo que se libere.
+	 * 
+	 * @return tarea reclamada o null si no hay tareas pendientes
+	 */
+	Tarea tomarSiguienteTarea();
+	
+	/**
+	 * Reclama la siguiente tarea activa a atender de un usuario.
+	 * 
+	 * @param usuarioId identificador del usuario
+	 * @return tarea reclamada o null si el usuario no tiene tareas pendientes
+	 */
+	Tarea tomarSiguienteTarea(int usuarioId);
+	
+	/**
+	 * Devuelve a la cola una tarea reclamada que no se llegó a completar.
+	 * 
+	 * @param tareaId identificador de la tarea
+	 * @return true si la tarea volvió a la cola
+	 */
+	boolean liberarTarea(int tareaId);
+	
+	// Estadísticas
+	
+	/**
+	 * Devuelve el conteo de todas las tareas asignadas a usuarios.
+	 * 
+	 * @return contador global, actualizado en cada cambio
+	 */
+	ContadorTareas contarTareas();
+	
+	/**
+	 * Devuelve el conteo de las tareas de un usuario.
+	 * 
+	 * @param usuarioId identificador del usuario
+	 * @return contador del usuario o null si el usuario no existe
+	 */
+	ContadorTareas contarTareasDeUsuario(int usuarioId);
+	
+	/**
+	 * Devuelve el conteo de las tareas de los usuarios de un tipo.
+	 * 
+	 * @param tipo tipo de usuario
+	 * @return contador del tipo, actualizado en cada cambio
+	 */
+	ContadorTareas contarTareasPorTipoUsuario(TipoUsuario tipo);
+	
+	// Carga masiva
+	
+	/**
+	 * Reserva en un solo paso un rango de identificadores de tarea
+	 * consecutivos, que no volverán a generarse.
+	 * 
+	 * @param cantidad número de identificadores a reservar
+	 * @return primer identificador del rango
+	 * @throws IllegalArgumentException si la cantidad es negativa o agota
+	 * los identificadores
+	 */
+	int reservarIdsTareas(int cantidad);
+	
+	/**
+	 * Asocia varias tareas a un usuario, reservando antes el espacio
+	 * necesario en su lista de tareas.
+	 * 
+	 * @param usuarioId identificador del usuario
+	 * @param tareas tareas a asociar, en orden
+	 * @throws IllegalArgumentException si el usuario no existe
+	 */
+	void agregarTareasAUsuario(int usuarioId, List<Tarea> tareas);
+	
+	/**
+	 * Importa usuarios y tareas leyendo la entrada por partes, sin
+	 * cargarla entera en memoria.
+	 * 
+	 * <p>
+	 * Los usuarios y las tareas reciben identificadores nuevos; los ids de
+	 * la entrada solo sirven para relacionarlos. Una tarea se asigna al
+	 * usuario declarado antes en la misma entrada con ese id o, si no hay
+	 * ninguno, al usuario ya existente con ese id. La importación no es
+	 * atómica: si la entrada tiene un error, lo leído hasta entonces puede
+	 * quedar importado.
+	 * </p>
+	 * 
+	 * @param entrada texto a importar
+	 * @param formato formato del texto
+	 * @return número de tareas importadas
+	 * @throws IOException si falla la lectura
+	 * @throws IllegalArgumentException si la entrada está mal formada o
+	 * menciona un usuario inexistente
+	 */
+	int importar(Reader entrada, FormatoIntercambio formato) throws IOException;
+	
+	/**
+	 * Exporta todos los usuarios, cada uno seguido de sus tareas, en un
+	 * texto que {@link #importar(Reader, FormatoIntercambio)} puede leer.
+	 * La salida no se cierra.
+	 * 
+	 * @param salida destino del texto
+	 * @param formato formato del texto
+	 * @throws IOException si falla la escritura
+	 */
+	void exportar(Writer salida, FormatoIntercambio formato) throws IOException;
+	
+	// Eventos
+	
+	/**
+	 * Suscribe un oyente a los cambios de tareas hechos a partir de ahora:
+	 * creación con {@link #crearTarea}, asignación a un usuario, paso a
+	 * completada y eliminación.
+	 * 
+	 * <p>
+	 * Los eventos se entregan por lotes desde un hilo propio de la
+	 * suscripción. Las operaciones del gestor nunca esperan al oyente: si
+	 * se retrasa demasiado se descartan los eventos más antiguos y se le
+	 * avisa con {@link OyenteTareas#alPerder}.
+	 * </p>
+	 * 
+	 * @param oyente oyente de los eventos
+	 * @param loteMaximo número máximo de eventos por lote
+	 * @return suscripción, que debe cerrarse para detener su hilo
+	 * @throws IllegalArgumentException si el oyente es null o el lote no es positivo
+	 */
+	Suscripcion suscribir(OyenteTareas oyente, int loteMaximo);
+	
+	// Vencimientos
+	
+	/**
+	 * Fija el vencimiento de una tarea y empieza a vigilarlo, reemplazando
+	 * el que tuviera.
+	 * 
+	 * <p>
+	 * Si la tarea es normal y la antelación es positiva, se escala al
+	 * llegar a {@code venceEn - antelacion}: se sigue contando como normal,
+	 * pero en la cola de trabajo se atiende como urgente. Al llegar al
+	 * vencimiento con la tarea aún activa se avisa de que venció. Completar
+	 * o eliminar la tarea deja de vigilarla.
+	 * </p>
+	 * 
+	 * @param usuarioId identificador del dueño de la tarea
+	 * @param tareaId identificador de la tarea
+	 * @param venceEn vencimiento en milisegundos desde la época, o 0 para quitarlo
+	 * @param antelacion milisegundos antes del vencimiento en que se escala, o 0
+	 * @return true si la tarea existe y pertenece al usuario
+	 * @throws IllegalArgumentException si el vencimiento o la antelación son negativos
+	 */
+	boolean fijarVencimiento(int usuarioId, int tareaId, long venceEn, long antelacion);
+	
+	/**
+	 * Aplica los escalados y vencimientos alcanzados hasta el instante
+	 * indicado y avisa de cada uno al oyente. El coste depende de los
+	 * temporizadores alcanzados, no del total de tareas vigiladas.
+	 * 
+	 * <p>
+	 * Los avisos nunca llegan antes de tiempo, y como mucho una décima de
+	 * segundo tarde respecto a la revisión que los alcanza. Una tarea
+	 * vigilada recibe cada aviso una sola vez.
+	 * </p>
+	 * 
+	 * @param ahora instante actual en milisegundos desde la época
+	 * @param oyente receptor de los avisos
+	 * @return número de avisos entregados
+	 * @throws IllegalArgumentException si el oyente es null
+	 */
+	int revisarVencimientos(long ahora, OyenteVencimientos oyente);
 
 }
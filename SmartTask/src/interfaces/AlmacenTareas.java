@@ -0,0 +1,312 @@
+package interfaces;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import modelo.EstadoTarea;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.Usuario;
+
+/**
+ * Almacén de usuarios y tareas por identificador, sobre el que se apoya el
+ * gestor.
+ * 
+ * <p>
+ * Guarda los datos de cada usuario (id, nombre y tipo) y cada tarea con el
+ * id de su dueño. Las lecturas y escrituras por lotes permiten a las
+ * implementaciones agrupar los accesos, y
+ * {@link #recorrerTareas(Filtro, Destino)} aplica el filtro dentro del
+ * almacén, antes de construir las tareas que no lo cumplen.
+ * </p>
+ * 
+ * <p>
+ * Según la implementación, los objetos devueltos son los mismos que se
+ * guardaron (en memoria) o copias nuevas en cada lectura (en archivo); en
+ * el segundo caso, modificar un objeto no cambia el almacén hasta volver a
+ * guardarlo. Los errores de entrada y salida de las operaciones se lanzan
+ * como {@link java.io.UncheckedIOException}. Salvo que se indique lo
+ * contrario, las implementaciones no son seguras para uso concurrente.
+ * </p>
+ */
+
+public interface AlmacenTareas extends Closeable {
+	
+	// Usuarios
+	
+	/**
+	 * Guarda los datos de un usuario. Si ya existe uno con el mismo id, se
+	 * actualiza su nombre.
+	 * 
+	 * @param usuario usuario a guardar; sus tareas se guardan aparte
+	 * @throws IllegalArgumentException si ya existe con otro tipo
+	 */
+	void guardarUsuario(Usuario usuario);
+	
+	/**
+	 * Busca un usuario por su identificador.
+	 * 
+	 * @param id identificador del usuario
+	 * @return usuario, o null si no existe
+	 */
+	Usuario cargarUsuario(int id);
+	
+	/**
+	 * Recorre todos los usuarios. El orden depende de la implementación.
+	 * 
+	 * @param destino recibe cada usuario
+	 */
+	void recorrerUsuarios(Consumer<? super Usuario> destino);
+	
+	/**
+	 * Recorre en orden de id los usuarios con id mayor o igual que el
+	 * indicado, para leerlos por páginas sin pasar por los anteriores.
+	 * 
+	 * @param desdeId menor id a entregar
+	 * @param destino recibe cada usuario; si devuelve false el recorrido se
+	 * detiene
+	 */
+	void recorrerUsuarios(int desdeId, Predicate<? super Usuario> destino);
+	
+	/**
+	 * Devuelve la cantidad de usuarios guardados.
+	 * 
+	 * @return cantidad de usuarios
+	 */
+	int contarUsuarios();
+	
+	// Tareas
+	
+	/**
+	 * Guarda el estado actual de varias tareas como del usuario indicado,
+	 * reemplazando las que ya existan con el mismo id.
+	 * 
+	 * @param usuarioId identificador del dueño
+	 * @param tareas tareas a guardar
+	 * @throws IllegalArgumentException si el usuario no existe
+	 */
+	void guardarTareas(int usuarioId, List<Tarea> tareas);
+	
+	/**
+	 * Busca una tarea por su identificador.
+	 * 
+	 * @param id identificador de la tarea
+	 * @return tarea, o null si no existe
+	 */
+	Tarea cargarTarea(int id);
+	
+	/**
+	 * Busca varias tareas por su identificador.
+	 * 
+	 * @param ids identificadores, en cualquier orden y con repeticiones
+	 * @return tarea de cada id en el mismo orden, o null las que no existen
+	 */
+	List<Tarea> cargarTareas(int[] ids);
+	
+	/**
+	 * Elimina una tarea.
+	 * 
+	 * @param id identificador de la tarea
+	 * @return true si existía
+	 */
+	boolean eliminarTarea(int id);
+	
+	/**
+	 * Recorre las tareas que cumplen el filtro, con el id de su dueño. Si
+	 * el filtro fija el dueño, las tareas se entregan en orden de id, así
+	 * que el destino puede detener el recorrido en cuanto tenga las que
+	 * necesita; si no, el orden depende de la implementación.
+	 * 
+	 * @param filtro condiciones de las tareas
+	 * @param destino recibe cada tarea; si devuelve false el recorrido se
+	 * detiene
+	 * @return tareas entregadas al destino
+	 */
+	int recorrerTareas(Filtro filtro, Destino destino);
+	
+	/**
+	 * Devuelve la cantidad de tareas guardadas.
+	 * 
+	 * @return cantidad de tareas
+	 */
+	int contarTareas();
+	
+	/**
+	 * Lleva a almacenamiento estable los cambios pendientes, si el almacén
+	 * tiene uno.
+	 * 
+	 * @throws IOException si falla la escritura
+	 */
+	void sincronizar() throws IOException;
+	
+	/**
+	 * Recibe las tareas de un recorrido.
+	 */
+	@FunctionalInterface
+	interface Destino {
+		
+		/**
+		 * Recibe una tarea.
+		 * 
+		 * @param usuarioId identificador del dueño
+		 * @param tarea tarea que cumple el filtro
+		 * @return true para seguir recorriendo
+		 */
+		boolean aceptar(int usuarioId, Tarea tarea);
+	}
+	
+	/**
+	 * Condiciones de un recorrido de tareas. Es inmutable: cada método
+	 * devuelve un filtro nuevo con la condición agregada.
+	 * 
+	 * <p>
+	 * El dueño, el estado, la prioridad y el rango de ids los comprueba el
+	 * almacén sobre sus propios datos, sin construir la tarea; la condición
+	 * de {@link #donde(Predicate)} se evalúa después sobre la tarea ya
+	 * construida.
+	 * </p>
+	 */
+	final class Filtro {
+		
+		/** Filtro que acepta todas las tareas */
+		public static final Filtro TODAS = new Filtro(false, 0, null, null, Integer.MIN_VALUE, Integer.MAX_VALUE, null);
+		
+		private final boolean conUsuario;
+		private final int usuarioId;
+		private final EstadoTarea estado;
+		private final Prioridad prioridad;
+		private final int desdeId;
+		private final int hastaId;
+		private final Predicate<? super Tarea> condicion;
+		
+		private Filtro(boolean conUsuario, int usuarioId, EstadoTarea estado, Prioridad prioridad, int desdeId,
+				int hastaId, Predicate<? super Tarea> condicion) {
+			this.conUsuario = conUsuario;
+			this.usuarioId = usuarioId;
+			this.estado = estado;
+			this.prioridad = prioridad;
+			this.desdeId = desdeId;
+			this.hastaId = hastaId;
+			this.condicion = condicion;
+		}
+		
+		/**
+		 * Limita el recorrido a las tareas de un usuario.
+		 * 
+		 * @param usuarioId identificador del dueño
+		 * @return filtro nuevo
+		 */
+		public Filtro deUsuario(int usuarioId) {
+			return new Filtro(true, usuarioId, estado, prioridad, desdeId, hastaId, condicion);
+		}
+		
+		/**
+		 * Limita el recorrido a las tareas con un estado.
+		 * 
+		 * @param estado estado de las tareas (null para cualquiera)
+		 * @return filtro nuevo
+		 */
+		public Filtro conEstado(EstadoTarea estado) {
+			return new Filtro(conUsuario, usuarioId, estado, prioridad, desdeId, hastaId, condicion);
+		}
+		
+		/**
+		 * Limita el recorrido a las tareas con una prioridad.
+		 * 
+		 * @param prioridad prioridad de las tareas (null para cualquiera)
+		 * @return filtro nuevo
+		 */
+		public Filtro conPrioridad(Prioridad prioridad) {
+			return new Filtro(conUsuario, usuarioId, estado, prioridad, desdeId, hastaId, condicion);
+		}
+		
+		/**
+		 * Limita el recorrido a un rango de ids.
+		 * 
+		 * @param desde menor id, incluido
+		 * @param hasta mayor id, incluido
+		 * @return filtro nuevo
+		 * @throws IllegalArgumentException si el rango está invertido
+		 */
+		public Filtro entreIds(int desde, int hasta) {
+			if (desde > hasta) {
+				throw new IllegalArgumentException("Rango de ids no válido: " + desde + " > " + hasta);
+			}
+			return new Filtro(conUsuario, usuarioId, estado, prioridad, desde, hasta, condicion);
+		}
+		
+		/**
+		 * Agrega una condición sobre la tarea construida, que se combina
+		 * con las anteriores.
+		 * 
+		 * @param condicion condición adicional
+		 * @return filtro nuevo
+		 */
+		public Filtro donde(Predicate<? super Tarea> condicion) {
+			Predicate<? super Tarea> anterior = this.condicion;
+			Predicate<? super Tarea> combinada = anterior == null ? condicion
+					: tarea -> anterior.test(tarea) && condicion.test(tarea);
+			return new Filtro(conUsuario, usuarioId, estado, prioridad, desdeId, hastaId, combinada);
+		}
+		
+		/** @return true si el filtro limita el dueño */
+		public boolean tieneUsuario() {
+			return conUsuario;
+		}
+		
+		/** @return dueño de las tareas, si {@link #tieneUsuario()} */
+		public int getUsuarioId() {
+			return usuarioId;
+		}
+		
+		/** @return estado de las tareas, o null para cualquiera */
+		public EstadoTarea getEstado() {
+			return estado;
+		}
+		
+		/** @return prioridad de las tareas, o null para cualquiera */
+		public Prioridad getPrioridad() {
+			return prioridad;
+		}
+		
+		/** @return menor id aceptado */
+		public int getDesdeId() {
+			return desdeId;
+		}
+		
+		/** @return mayor id aceptado */
+		public int getHastaId() {
+			return hastaId;
+		}
+		
+		/**
+		 * Comprueba las condiciones que no necesitan la tarea construida.
+		 * 
+		 * @param usuarioId dueño de la tarea
+		 * @param tareaId identificador de la tarea
+		 * @param estado estado de la tarea
+		 * @param prioridad prioridad de la tarea
+		 * @return true si las cumple
+		 */
+		public boolean aceptaDatos(int usuarioId, int tareaId, EstadoTarea estado, Prioridad prioridad) {
+			return (!conUsuario || this.usuarioId == usuarioId)
+					&& tareaId >= desdeId && tareaId <= hastaId
+					&& (this.estado == null || this.estado == estado)
+					&& (this.prioridad == null || this.prioridad == prioridad);
+		}
+		
+		/**
+		 * Comprueba la condición sobre la tarea construida.
+		 * 
+		 * @param tarea tarea que ya cumple el resto del filtro
+		 * @return true si cumple la condición, o si no hay condición
+		 */
+		public boolean aceptaTarea(Tarea tarea) {
+			return condicion == null || condicion.test(tarea);
+		}
+	}
+
+}
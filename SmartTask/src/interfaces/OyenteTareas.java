@@ -0,0 +1,35 @@
+package interfaces;
+
+import modelo.LoteEventos;
+
+/**
+ * Recibe los eventos de tareas de un gestor suscrito con
+ * {@link Accionable#suscribir}.
+ * 
+ * <p>
+ * Los métodos se llaman siempre desde el hilo propio de la suscripción,
+ * nunca desde el que modificó la tarea.
+ * </p>
+ */
+
+@FunctionalInterface
+public interface OyenteTareas {
+	
+	/**
+	 * Procesa un lote de eventos, en orden de publicación.
+	 * 
+	 * @param lote eventos; solo es válido durante la llamada
+	 */
+	void alRecibir(LoteEventos lote);
+	
+	/**
+	 * Avisa de que se han descartado eventos porque el oyente se quedó
+	 * demasiado atrás. Por defecto no hace nada; un oyente que necesite un
+	 * estado exacto debe volver a consultarlo al gestor.
+	 * 
+	 * @param cantidad eventos descartados
+	 */
+	default void alPerder(long cantidad) {
+	}
+
+}
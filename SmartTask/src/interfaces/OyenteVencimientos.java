@@ -0,0 +1,36 @@
+package interfaces;
+
+import modelo.Tarea;
+
+/**
+ * Recibe los escalados y vencimientos de tareas detectados por
+ * {@link Accionable#revisarVencimientos}.
+ * 
+ * <p>
+ * Los métodos se llaman desde el hilo que revisa los vencimientos, después
+ * de aplicar el cambio en el gestor.
+ * </p>
+ */
+
+@FunctionalInterface
+public interface OyenteVencimientos {
+	
+	/**
+	 * Avisa de que una tarea activa alcanzó su vencimiento.
+	 * 
+	 * @param usuarioId identificador del dueño de la tarea
+	 * @param tarea tarea vencida
+	 */
+	void alVencer(int usuarioId, Tarea tarea);
+	
+	/**
+	 * Avisa de que una tarea normal se escaló por acercarse su vencimiento
+	 * y pasa a atenderse como urgente. Por defecto no hace nada.
+	 * 
+	 * @param usuarioId identificador del dueño de la tarea
+	 * @param tarea tarea escalada
+	 */
+	default void alEscalar(int usuarioId, Tarea tarea) {
+	}
+
+}
@@ -0,0 +1,30 @@
+package interfaces;
+
+/**
+ * Suscripción de un {@link OyenteTareas} a los eventos de un gestor.
+ */
+
+public interface Suscripcion extends AutoCloseable {
+	
+	/**
+	 * Devuelve el número de eventos entregados al oyente.
+	 * 
+	 * @return eventos entregados
+	 */
+	long getEntregados();
+	
+	/**
+	 * Devuelve el número de eventos descartados por retraso del oyente.
+	 * 
+	 * @return eventos perdidos
+	 */
+	long getPerdidos();
+	
+	/**
+	 * Entrega los eventos ya publicados, detiene el hilo de la suscripción
+	 * y espera a que termine.
+	 */
+	@Override
+	void close();
+
+}
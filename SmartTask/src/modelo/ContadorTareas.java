@@ -0,0 +1,207 @@
+package modelo;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Conteo incremental de tareas por estado y prioridad.
+ * 
+ * <p>
+ * Cada usuario mantiene su propio contador, que se actualiza al agregar,
+ * completar o eliminar tareas. Un contador puede tener un contador padre
+ * (por ejemplo, el de su tipo de usuario o el global del sistema), al que
+ * se propaga cada cambio, de modo que todas las consultas son O(1).
+ * </p>
+ * 
+ * <p>
+ * Los conteos son atómicos para que un mismo contador padre pueda ser
+ * compartido por usuarios modificados desde hilos distintos.
+ * </p>
+ * 
+ * <p>
+ * Fuera de este paquete los contadores son de solo lectura: quien los
+ * consulta no puede alterar los agregados del servicio. Las
+ * implementaciones del servicio que guardan las tareas fuera de
+ * {@link Usuario} los actualizan a través de un {@link Acumulador}, que
+ * no se expone con el contador.
+ * </p>
+ */
+
+public final class ContadorTareas {
+	
+	private static final int PRIORIDADES = Prioridad.values().length;
+	
+	/** Conteo por combinación de estado y prioridad */
+	private final AtomicIntegerArray conteos;
+	
+	/** Contador al que se propagan los cambios, o null */
+	private volatile ContadorTareas padre;
+	
+	/**
+	 * Construye un contador vacío sin contador padre.
+	 */
+	public ContadorTareas() {
+		this(null);
+	}
+	
+	/**
+	 * Construye un contador vacío.
+	 * 
+	 * @param padre contador al que se propagan los cambios (puede ser null)
+	 */
+	ContadorTareas(ContadorTareas padre) {
+		this.conteos = new AtomicIntegerArray(EstadoTarea.values().length * PRIORIDADES);
+		this.padre = padre;
+	}
+	
+	/**
+	 * Devuelve el número total de tareas.
+	 * 
+	 * @return total de tareas
+	 */
+	public int total() {
+		int total = 0;
+		for (int i = 0; i < conteos.length(); i++) {
+			total += conteos.get(i);
+		}
+		return total;
+	}
+	
+	/**
+	 * Devuelve el número de tareas con un estado.
+	 * 
+	 * @param estado estado a contar
+	 * @return cantidad de tareas
+	 */
+	public int contar(EstadoTarea estado) {
+		int total = 0;
+		for (Prioridad prioridad : Prioridad.values()) {
+			total += contar(estado, prioridad);
+		}
+		return total;
+	}
+	
+	/**
+	 * Devuelve el número de tareas con una prioridad.
+	 * 
+	 * @param prioridad prioridad a contar
+	 * @return cantidad de tareas
+	 */
+	public int contar(Prioridad prioridad) {
+		int total = 0;
+		for (EstadoTarea estado : EstadoTarea.values()) {
+			total += contar(estado, prioridad);
+		}
+		return total;
+	}
+	
+	/**
+	 * Devuelve el número de tareas con un estado y una prioridad.
+	 * 
+	 * @param estado estado a contar
+	 * @param prioridad prioridad a contar
+	 * @return cantidad de tareas
+	 */
+	public int contar(EstadoTarea estado, Prioridad prioridad) {
+		return conteos.get(posicion(estado, prioridad));
+	}
+	
+	/**
+	 * Cambia el contador padre, trasladando los conteos actuales.
+	 * 
+	 * @param nuevoPadre nuevo contador padre (puede ser null)
+	 */
+	void setPadre(ContadorTareas nuevoPadre) {
+		for (EstadoTarea estado : EstadoTarea.values()) {
+			for (Prioridad prioridad : Prioridad.values()) {
+				int cantidad = contar(estado, prioridad);
+				if (cantidad != 0) {
+					if (padre != null) {
+						padre.sumar(estado, prioridad, -cantidad);
+					}
+					if (nuevoPadre != null) {
+						nuevoPadre.sumar(estado, prioridad, cantidad);
+					}
+				}
+			}
+		}
+		this.padre = nuevoPadre;
+	}
+	
+	/**
+	 * Suma una cantidad (positiva o negativa) a una combinación de estado y
+	 * prioridad, y la propaga al contador padre.
+	 * 
+	 * @param estado estado de las tareas
+	 * @param prioridad prioridad de las tareas
+	 * @param cantidad cantidad a sumar
+	 */
+	void sumar(EstadoTarea estado, Prioridad prioridad, int cantidad) {
+		int i = posicion(estado, prioridad);
+		for (ContadorTareas c = this; c != null; c = c.padre) {
+			c.conteos.addAndGet(i, cantidad);
+		}
+	}
+	
+	private static int posicion(EstadoTarea estado, Prioridad prioridad) {
+		return estado.ordinal() * PRIORIDADES + prioridad.ordinal();
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("Total: %d | Activas: %d | Completadas: %d | Normales: %d | Urgentes: %d",
+				total(),
+				contar(EstadoTarea.ACTIVA),
+				contar(EstadoTarea.COMPLETADA),
+				contar(Prioridad.NORMAL),
+				contar(Prioridad.URGENTE));
+	}
+	
+	/**
+	 * Contador que se puede actualizar desde fuera del paquete. Quien lo
+	 * crea lo conserva y entrega solo {@link #getContador()}, de lectura.
+	 */
+	public static final class Acumulador {
+		
+		private final ContadorTareas contador;
+		
+		/**
+		 * Construye un acumulador vacío sin acumulador padre.
+		 */
+		public Acumulador() {
+			this(null);
+		}
+		
+		/**
+		 * Construye un acumulador vacío.
+		 * 
+		 * @param padre acumulador al que se propagan los cambios (puede ser null)
+		 */
+		public Acumulador(Acumulador padre) {
+			this.contador = new ContadorTareas(padre == null ? null : padre.contador);
+		}
+		
+		/**
+		 * Suma una cantidad (positiva o negativa) a una combinación de
+		 * estado y prioridad, y la propaga al acumulador padre.
+		 * 
+		 * @param estado estado de las tareas
+		 * @param prioridad prioridad de las tareas
+		 * @param cantidad cantidad a sumar
+		 */
+		public void sumar(EstadoTarea estado, Prioridad prioridad, int cantidad) {
+			contador.sumar(estado, prioridad, cantidad);
+		}
+		
+		/**
+		 * Devuelve el contador, que refleja cada suma y no se puede
+		 * modificar fuera de este paquete.
+		 * 
+		 * @return contador de lectura
+		 */
+		public ContadorTareas getContador() {
+			return contador;
+		}
+		
+	}
+
+}
@@ -0,0 +1,34 @@
+package modelo;
+
+/**
+ * Formatos de texto para importar y exportar usuarios y tareas en bloque.
+ * 
+ * <p>
+ * Ambos formatos tienen un registro por línea. Un registro de usuario
+ * declara su id, tipo y nombre; un registro de tarea indica el id de su
+ * usuario, su id, prioridad, estado y descripción.
+ * </p>
+ */
+
+public enum FormatoIntercambio {
+	
+	/**
+	 * Valores separados por comas, con comillas dobles cuando el texto
+	 * contiene comas, comillas o saltos de línea:
+	 * <pre>
+	 * usuario,1,PROFESOR,Ana
+	 * tarea,1,7,URGENTE,ACTIVA,"Corregir examen, grupo B"
+	 * </pre>
+	 */
+	CSV,
+	
+	/**
+	 * Un objeto JSON por línea:
+	 * <pre>
+	 * {"registro":"usuario","id":1,"tipo":"PROFESOR","nombre":"Ana"}
+	 * {"registro":"tarea","usuario":1,"id":7,"prioridad":"URGENTE","estado":"ACTIVA","descripcion":"Corregir examen"}
+	 * </pre>
+	 */
+	JSON_LINES
+
+}
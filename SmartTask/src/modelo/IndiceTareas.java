@@ -0,0 +1,713 @@
+package modelo;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import util.MapaEnteros;
+
+/**
+ * Índice invertido de las descripciones de las tareas.
+ *
+ * <p>
+ * Las descripciones se dividen en términos (secuencias de letras y dígitos)
+ * sin distinguir mayúsculas ni tildes, de modo que "Revisión" y "revision"
+ * son el mismo término. Cada término guarda la lista ordenada de las
+ * entradas del índice que lo contienen. Una tarea ocupa una entrada; al
+ * cambiar su descripción o eliminarla, su entrada queda obsoleta y las
+ * listas se depuran en bloque cuando las entradas obsoletas superan a las
+ * vigentes.
+ * </p>
+ *
+ * <p>
+ * Junto a cada entrada se guardan el dueño, el tipo del dueño, la
+ * prioridad y el estado de la tarea, para filtrar sin consultar el modelo.
+ * Los usuarios vinculados con {@link Usuario#vincularIndice(IndiceTareas)}
+ * mantienen el índice al día; los almacenes que no usan objetos
+ * {@link Tarea} pueden actualizarlo directamente.
+ * </p>
+ *
+ * <p>
+ * Las búsquedas pueden ejecutarse en paralelo entre sí; las modificaciones
+ * son excluyentes.
+ * </p>
+ */
+
+public final class IndiceTareas {
+
+	/** Marca de fin de una lista de entradas */
+	private static final int FIN = Integer.MAX_VALUE;
+
+	/** Entradas obsoletas toleradas antes de depurar */
+	private static final int MARGEN_OBSOLETAS = 1024;
+
+	/** Cláusulas que puede dar una cadena de alternativas al repartirse */
+	private static final int MAXIMO_CLAUSULAS = 64;
+
+	// Bits de la marca de cada entrada
+	private static final int URGENTE = 1;
+	private static final int COMPLETADA = 1 << 1;
+	private static final int VIGENTE = 1 << 2;
+	private static final int DESPLAZAMIENTO_TIPO = 3;
+
+	/** Rangos del orden de resultados: activas urgentes, activas normales, etc. */
+	private static final int RANGOS = 4;
+
+	/** Carácter de cada código sin tilde y en minúscula, hasta el latín extendido */
+	private static final char[] PLEGADO = new char[0x250];
+
+	static {
+		for (char c = 0; c < PLEGADO.length; c++) {
+			String descompuesto = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+			PLEGADO[c] = Character.toLowerCase(descompuesto.charAt(0));
+		}
+	}
+
+	/** Lista de entradas de cada término */
+	private final HashMap<String, Entradas> terminos;
+	
+	/** Los mismos términos en orden alfabético, para buscar por prefijo */
+	private final TreeMap<String, Entradas> terminosOrdenados;
+
+	/** Entrada vigente de cada tarea: id de la tarea a su entrada */
+	private final MapaEnteros entradaDeTarea;
+
+	// Datos de cada entrada
+	private int[] tareas;
+	private int[] duenios;
+	private int[] cantidadTerminos;
+	private byte[] marcas;
+
+	/** Entradas usadas, incluidas las obsoletas */
+	private int entradas;
+
+	/** Referencias a entradas en todas las listas de términos */
+	private long referencias;
+
+	/** Referencias a entradas obsoletas */
+	private long obsoletas;
+
+	private final ReentrantReadWriteLock cerrojo;
+
+	/**
+	 * Construye un índice vacío.
+	 */
+	public IndiceTareas() {
+		this.terminos = new HashMap<>();
+		this.terminosOrdenados = new TreeMap<>();
+		this.entradaDeTarea = new MapaEnteros();
+		this.tareas = new int[16];
+		this.duenios = new int[16];
+		this.cantidadTerminos = new int[16];
+		this.marcas = new byte[16];
+		this.cerrojo = new ReentrantReadWriteLock();
+	}
+
+	/**
+	 * Divide un texto en términos sin mayúsculas ni tildes, sin repetir.
+	 *
+	 * @param texto texto a dividir
+	 * @return términos en orden de aparición
+	 */
+	public static List<String> terminos(String texto) {
+		List<String> resultado = new ArrayList<>();
+		StringBuilder termino = new StringBuilder();
+
+		for (int i = 0; i <= texto.length(); i++) {
+			char c = i < texto.length() ? texto.charAt(i) : ' ';
+
+			if (Character.isLetterOrDigit(c)) {
+				termino.append(c < PLEGADO.length ? PLEGADO[c] : Character.toLowerCase(c));
+			} else if (Character.getType(c) != Character.NON_SPACING_MARK && termino.length() > 0) {
+				String nuevo = termino.toString();
+				if (!resultado.contains(nuevo)) {
+					resultado.add(nuevo);
+				}
+				termino.setLength(0);
+			}
+		}
+		return resultado;
+	}
+
+	/**
+	 * Indexa una tarea. Si ya estaba indexada, se reemplazan sus datos.
+	 *
+	 * @param tareaId identificador de la tarea
+	 * @param usuarioId identificador del dueño
+	 * @param tipo tipo del dueño
+	 * @param prioridad prioridad de la tarea
+	 * @param estado estado de la tarea
+	 * @param descripcion descripción de la tarea
+	 */
+	public void agregar(int tareaId, int usuarioId, TipoUsuario tipo, Prioridad prioridad,
+			EstadoTarea estado, String descripcion) {
+		int marca = VIGENTE
+				| (prioridad == Prioridad.URGENTE ? URGENTE : 0)
+				| (estado == EstadoTarea.COMPLETADA ? COMPLETADA : 0)
+				| (tipo.ordinal() << DESPLAZAMIENTO_TIPO);
+
+		cerrojo.writeLock().lock();
+		try {
+			descartar(tareaId);
+			indexar(tareaId, usuarioId, marca, descripcion);
+			depurarSiHaceFalta();
+		} finally {
+			cerrojo.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Quita una tarea del índice.
+	 *
+	 * @param tareaId identificador de la tarea
+	 * @return true si la tarea estaba indexada
+	 */
+	public boolean quitar(int tareaId) {
+		cerrojo.writeLock().lock();
+		try {
+			boolean quitada = descartar(tareaId);
+			depurarSiHaceFalta();
+			return quitada;
+		} finally {
+			cerrojo.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Vuelve a indexar una tarea con su nueva descripción, conservando el
+	 * resto de sus datos.
+	 *
+	 * @param tareaId identificador de la tarea
+	 * @param descripcion nueva descripción
+	 */
+	public void cambiarDescripcion(int tareaId, String descripcion) {
+		cerrojo.writeLock().lock();
+		try {
+			int entrada = entradaDeTarea.get(tareaId);
+			if (entrada == MapaEnteros.NO_ENCONTRADO) {
+				return;
+			}
+
+			int usuarioId = duenios[entrada];
+			int marca = marcas[entrada];
+			descartar(tareaId);
+			indexar(tareaId, usuarioId, marca, descripcion);
+			depurarSiHaceFalta();
+		} finally {
+			cerrojo.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Actualiza el estado guardado de una tarea.
+	 *
+	 * @param tareaId identificador de la tarea
+	 * @param estado nuevo estado
+	 */
+	public void cambiarEstado(int tareaId, EstadoTarea estado) {
+		cerrojo.writeLock().lock();
+		try {
+			int entrada = entradaDeTarea.get(tareaId);
+			if (entrada != MapaEnteros.NO_ENCONTRADO) {
+				int marca = marcas[entrada] & ~COMPLETADA;
+				marcas[entrada] = (byte) (estado == EstadoTarea.COMPLETADA ? marca | COMPLETADA : marca);
+			}
+		} finally {
+			cerrojo.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Devuelve el dueño de una tarea indexada.
+	 *
+	 * @param tareaId identificador de la tarea
+	 * @return identificador del usuario o -1 si la tarea no está indexada
+	 */
+	public int duenioDe(int tareaId) {
+		cerrojo.readLock().lock();
+		try {
+			int entrada = entradaDeTarea.get(tareaId);
+			return entrada == MapaEnteros.NO_ENCONTRADO ? -1 : duenios[entrada];
+		} finally {
+			cerrojo.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Devuelve el número de tareas indexadas.
+	 *
+	 * @return tareas indexadas
+	 */
+	public int size() {
+		cerrojo.readLock().lock();
+		try {
+			return entradaDeTarea.size();
+		} finally {
+			cerrojo.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Busca las tareas cuya descripción cumple la consulta.
+	 *
+	 * <p>
+	 * La consulta es una lista de términos separados por espacios que deben
+	 * aparecer todos. Dos términos unidos por {@code OR} son alternativas, y
+	 * un término terminado en {@code *} coincide con cualquier término que
+	 * empiece igual. Por ejemplo, {@code "corregir examen OR parcial*"}
+	 * busca tareas con "corregir" y con "examen" o algún término que empiece
+	 * por "parcial". Una palabra que se divide en varios términos, como
+	 * {@code "pre-entrega"}, exige todos ellos también dentro de una
+	 * alternativa: {@code "final OR pre-entrega"} busca "final" o bien "pre"
+	 * y "entrega".
+	 * </p>
+	 *
+	 * <p>
+	 * Los resultados salen en el orden de la cola de trabajo: activas
+	 * urgentes, activas normales, completadas urgentes y completadas
+	 * normales; dentro de cada grupo, en el orden en que se indexaron. El
+	 * recorrido termina en cuanto el primer grupo posible tiene
+	 * {@code limite} resultados.
+	 * </p>
+	 *
+	 * @param consulta términos a buscar
+	 * @param estado estado de las tareas, o null para cualquiera
+	 * @param prioridad prioridad de las tareas, o null para cualquiera
+	 * @param tipo tipo del dueño, o null para cualquiera
+	 * @param limite número máximo de resultados
+	 * @return identificadores de las tareas encontradas
+	 * @throws IllegalArgumentException si la consulta no tiene términos, si
+	 * una cadena de alternativas da más de {@value #MAXIMO_CLAUSULAS}
+	 * cláusulas o si el límite no es positivo
+	 */
+	public int[] buscar(String consulta, EstadoTarea estado, Prioridad prioridad, TipoUsuario tipo, int limite) {
+		if (limite <= 0) {
+			throw new IllegalArgumentException("El límite debe ser positivo.");
+		}
+		List<List<Termino>> clausulas = interpretar(consulta);
+
+		int mascara = VIGENTE;
+		int esperado = VIGENTE;
+		if (estado != null) {
+			mascara |= COMPLETADA;
+			esperado |= estado == EstadoTarea.COMPLETADA ? COMPLETADA : 0;
+		}
+		if (prioridad != null) {
+			mascara |= URGENTE;
+			esperado |= prioridad == Prioridad.URGENTE ? URGENTE : 0;
+		}
+		if (tipo != null) {
+			mascara |= 0b11 << DESPLAZAMIENTO_TIPO;
+			esperado |= tipo.ordinal() << DESPLAZAMIENTO_TIPO;
+		}
+
+		// Primer grupo en el que pueden caer resultados con estos filtros
+		int primerRango = (estado == EstadoTarea.COMPLETADA ? 2 : 0) + (prioridad == Prioridad.NORMAL ? 1 : 0);
+
+		cerrojo.readLock().lock();
+		try {
+			Cursor[] cursores = new Cursor[clausulas.size()];
+			for (int i = 0; i < cursores.length; i++) {
+				cursores[i] = cursor(clausulas.get(i));
+				if (cursores[i] == null) {
+					return new int[0];
+				}
+			}
+			Arrays.sort(cursores, (a, b) -> Long.compare(a.tamanio, b.tamanio));
+
+			int[][] porRango = new int[RANGOS][limite];
+			int[] cantidadPorRango = new int[RANGOS];
+			int candidata = 0;
+
+			recorrido:
+			while (true) {
+				candidata = cursores[0].avanzar(candidata);
+				if (candidata == FIN) {
+					break;
+				}
+				for (int i = 1; i < cursores.length; i++) {
+					int siguiente = cursores[i].avanzar(candidata);
+					if (siguiente != candidata) {
+						candidata = siguiente;
+						continue recorrido;
+					}
+				}
+
+				int marca = marcas[candidata];
+				if ((marca & mascara) == esperado) {
+					int rango = ((marca & COMPLETADA) != 0 ? 2 : 0) + ((marca & URGENTE) != 0 ? 0 : 1);
+					if (cantidadPorRango[rango] < limite) {
+						porRango[rango][cantidadPorRango[rango]++] = tareas[candidata];
+						if (cantidadPorRango[primerRango] == limite) {
+							break;
+						}
+					}
+				}
+				candidata++;
+			}
+
+			int[] resultado = new int[limite];
+			int cantidad = 0;
+			for (int rango = 0; rango < RANGOS && cantidad < limite; rango++) {
+				int copiar = Math.min(cantidadPorRango[rango], limite - cantidad);
+				System.arraycopy(porRango[rango], 0, resultado, cantidad, copiar);
+				cantidad += copiar;
+			}
+			return cantidad == limite ? resultado : Arrays.copyOf(resultado, cantidad);
+		} finally {
+			cerrojo.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Convierte la consulta en cláusulas que deben cumplirse todas; cada
+	 * cláusula es una lista de términos alternativos.
+	 *
+	 * <p>
+	 * Cada palabra exige todos sus términos, así que una cadena de palabras
+	 * unidas por {@code OR} se reparte: {@code "a OR b-c"} equivale a
+	 * {@code (a OR b) AND (a OR c)}, con una cláusula por cada forma de
+	 * elegir un término de cada palabra.
+	 * </p>
+	 */
+	private static List<List<Termino>> interpretar(String consulta) {
+		if (consulta == null) {
+			throw new IllegalArgumentException("La consulta no puede estar vacía.");
+		}
+
+		List<List<Termino>> clausulas = new ArrayList<>();
+		// Cláusulas de la cadena de alternativas en curso
+		List<List<Termino>> cadena = new ArrayList<>();
+		boolean alternativa = false;
+
+		for (String palabra : consulta.trim().split("\\s+")) {
+			if (palabra.equals("OR")) {
+				alternativa = !cadena.isEmpty();
+				continue;
+			}
+
+			boolean prefijo = palabra.endsWith("*");
+			List<String> partes = terminos(prefijo ? palabra.substring(0, palabra.length() - 1) : palabra);
+
+			if (!partes.isEmpty()) {
+				if (!alternativa) {
+					clausulas.addAll(cadena);
+					cadena = List.of(List.of());
+				}
+
+				List<List<Termino>> repartida = new ArrayList<>();
+				for (List<Termino> clausula : cadena) {
+					for (int i = 0; i < partes.size(); i++) {
+						List<Termino> ampliada = new ArrayList<>(clausula);
+						ampliada.add(new Termino(partes.get(i), prefijo && i == partes.size() - 1));
+						repartida.add(ampliada);
+					}
+				}
+				if (repartida.size() > MAXIMO_CLAUSULAS) {
+					throw new IllegalArgumentException("La consulta tiene demasiadas alternativas.");
+				}
+				cadena = repartida;
+			}
+			alternativa = false;
+		}
+		clausulas.addAll(cadena);
+
+		if (clausulas.isEmpty()) {
+			throw new IllegalArgumentException("La consulta no puede estar vacía.");
+		}
+		return clausulas;
+	}
+
+	/**
+	 * Construye el cursor de una cláusula, o null si ningún término existe.
+	 */
+	private Cursor cursor(List<Termino> clausula) {
+		List<Cursor> listas = new ArrayList<>();
+
+		for (Termino termino : clausula) {
+			if (termino.prefijo) {
+				String hasta = termino.texto + Character.MAX_VALUE;
+				for (Entradas lista : terminosOrdenados.subMap(termino.texto, true, hasta, true).values()) {
+					listas.add(new CursorLista(lista));
+				}
+			} else {
+				Entradas lista = terminos.get(termino.texto);
+				if (lista != null) {
+					listas.add(new CursorLista(lista));
+				}
+			}
+		}
+
+		if (listas.isEmpty()) {
+			return null;
+		}
+		return listas.size() == 1 ? listas.get(0) : new CursorUnion(listas);
+	}
+
+	/**
+	 * Agrega una entrada vigente. Se invoca con el bloqueo de escritura.
+	 */
+	private void indexar(int tareaId, int usuarioId, int marca, String descripcion) {
+		if (entradas == tareas.length) {
+			int capacidad = entradas * 2;
+			tareas = Arrays.copyOf(tareas, capacidad);
+			duenios = Arrays.copyOf(duenios, capacidad);
+			cantidadTerminos = Arrays.copyOf(cantidadTerminos, capacidad);
+			marcas = Arrays.copyOf(marcas, capacidad);
+		}
+
+		int entrada = entradas++;
+		List<String> propios = terminos(descripcion);
+		for (String termino : propios) {
+			Entradas lista = terminos.get(termino);
+			if (lista == null) {
+				lista = new Entradas();
+				terminos.put(termino, lista);
+				terminosOrdenados.put(termino, lista);
+			}
+			lista.agregar(entrada);
+		}
+
+		tareas[entrada] = tareaId;
+		duenios[entrada] = usuarioId;
+		cantidadTerminos[entrada] = propios.size();
+		marcas[entrada] = (byte) marca;
+		referencias += propios.size();
+		entradaDeTarea.put(tareaId, entrada);
+	}
+
+	/**
+	 * Deja obsoleta la entrada de una tarea. Se invoca con el bloqueo de
+	 * escritura.
+	 */
+	private boolean descartar(int tareaId) {
+		int entrada = entradaDeTarea.remove(tareaId);
+		if (entrada == MapaEnteros.NO_ENCONTRADO) {
+			return false;
+		}
+
+		marcas[entrada] &= ~VIGENTE;
+		obsoletas += cantidadTerminos[entrada];
+		return true;
+	}
+
+	/**
+	 * Renumera las entradas vigentes y quita las obsoletas de todas las
+	 * listas cuando superan a las vigentes.
+	 */
+	private void depurarSiHaceFalta() {
+		if (obsoletas <= MARGEN_OBSOLETAS || obsoletas * 2 <= referencias) {
+			return;
+		}
+
+		int[] nueva = new int[entradas];
+		int vigentes = 0;
+		for (int entrada = 0; entrada < entradas; entrada++) {
+			if ((marcas[entrada] & VIGENTE) != 0) {
+				nueva[entrada] = vigentes;
+				tareas[vigentes] = tareas[entrada];
+				duenios[vigentes] = duenios[entrada];
+				cantidadTerminos[vigentes] = cantidadTerminos[entrada];
+				marcas[vigentes] = marcas[entrada];
+				entradaDeTarea.put(tareas[vigentes], vigentes);
+				vigentes++;
+			} else {
+				nueva[entrada] = -1;
+			}
+		}
+
+		Iterator<Entradas> listas = terminosOrdenados.values().iterator();
+		while (listas.hasNext()) {
+			Entradas lista = listas.next();
+			lista.renumerar(nueva);
+			if (lista.tamanio == 0) {
+				listas.remove();
+			}
+		}
+		terminos.values().removeIf(lista -> lista.tamanio == 0);
+
+		entradas = vigentes;
+		referencias -= obsoletas;
+		obsoletas = 0;
+	}
+
+	/**
+	 * Término de una consulta.
+	 */
+	private static final class Termino {
+		final String texto;
+		final boolean prefijo;
+
+		Termino(String texto, boolean prefijo) {
+			this.texto = texto;
+			this.prefijo = prefijo;
+		}
+	}
+
+	/**
+	 * Lista ordenada de las entradas que contienen un término.
+	 */
+	private static final class Entradas {
+
+		int[] datos = new int[2];
+		int tamanio;
+
+		void agregar(int entrada) {
+			if (tamanio == datos.length) {
+				datos = Arrays.copyOf(datos, tamanio * 2);
+			}
+			datos[tamanio++] = entrada;
+		}
+
+		void renumerar(int[] nueva) {
+			int destino = 0;
+			for (int i = 0; i < tamanio; i++) {
+				int entrada = nueva[datos[i]];
+				if (entrada >= 0) {
+					datos[destino++] = entrada;
+				}
+			}
+			tamanio = destino;
+			if (datos.length > 2 * tamanio + 2) {
+				datos = Arrays.copyOf(datos, Math.max(2, tamanio));
+			}
+		}
+	}
+
+	/**
+	 * Recorrido en orden creciente de un conjunto de entradas.
+	 */
+	private abstract static class Cursor {
+
+		/** Número de entradas, para ordenar las cláusulas */
+		long tamanio;
+
+		/** Entrada actual, o {@link IndiceTareas#FIN} */
+		abstract int actual();
+
+		/**
+		 * Avanza hasta la primera entrada mayor o igual que el objetivo.
+		 *
+		 * @return esa entrada o {@link IndiceTareas#FIN}
+		 */
+		abstract int avanzar(int objetivo);
+	}
+
+	/**
+	 * Cursor sobre la lista de un término, con búsqueda exponencial.
+	 */
+	private static final class CursorLista extends Cursor {
+
+		private final int[] datos;
+		private final int limite;
+		private int posicion;
+
+		CursorLista(Entradas lista) {
+			this.datos = lista.datos;
+			this.limite = lista.tamanio;
+			this.tamanio = lista.tamanio;
+		}
+
+		@Override
+		int actual() {
+			return posicion < limite ? datos[posicion] : FIN;
+		}
+
+		@Override
+		int avanzar(int objetivo) {
+			if (posicion >= limite || datos[posicion] >= objetivo) {
+				return actual();
+			}
+
+			// Duplica el salto hasta pasar el objetivo y luego busca en binario
+			int desde = posicion + 1;
+			int salto = 1;
+			int hasta = desde;
+			while (hasta < limite && datos[hasta] < objetivo) {
+				desde = hasta + 1;
+				hasta += salto;
+				salto <<= 1;
+			}
+			hasta = Math.min(hasta, limite);
+
+			while (desde < hasta) {
+				int medio = (desde + hasta) >>> 1;
+				if (datos[medio] < objetivo) {
+					desde = medio + 1;
+				} else {
+					hasta = medio;
+				}
+			}
+			posicion = desde;
+			return actual();
+		}
+	}
+
+	/**
+	 * Cursor sobre la unión de varias listas, con un montículo por entrada
+	 * actual.
+	 */
+	private static final class CursorUnion extends Cursor {
+
+		private final Cursor[] monticulo;
+
+		CursorUnion(List<Cursor> listas) {
+			this.monticulo = listas.toArray(new Cursor[0]);
+			for (Cursor lista : monticulo) {
+				this.tamanio += lista.tamanio;
+			}
+			for (int i = monticulo.length / 2 - 1; i >= 0; i--) {
+				hundir(i);
+			}
+		}
+
+		@Override
+		int actual() {
+			return monticulo[0].actual();
+		}
+
+		@Override
+		int avanzar(int objetivo) {
+			while (monticulo[0].actual() < objetivo) {
+				monticulo[0].avanzar(objetivo);
+				hundir(0);
+			}
+			return monticulo[0].actual();
+		}
+
+		private void hundir(int i) {
+			Cursor elemento = monticulo[i];
+			int valor = elemento.actual();
+			int mitad = monticulo.length >>> 1;
+
+			while (i < mitad) {
+				int hijo = 2 * i + 1;
+				if (hijo + 1 < monticulo.length && monticulo[hijo + 1].actual() < monticulo[hijo].actual()) {
+					hijo++;
+				}
+				if (valor <= monticulo[hijo].actual()) {
+					break;
+				}
+				monticulo[i] = monticulo[hijo];
+				i = hijo;
+			}
+			monticulo[i] = elemento;
+		}
+	}
+
+	@Override
+	public String toString() {
+		cerrojo.readLock().lock();
+		try {
+			return "IndiceTareas[tareas=" + entradaDeTarea.size() + ", terminos=" + terminos.size() + "]";
+		} finally {
+			cerrojo.readLock().unlock();
+		}
+	}
+
+}
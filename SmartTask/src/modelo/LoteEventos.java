@@ -0,0 +1,96 @@
+package modelo;
+
+import java.util.Objects;
+
+/**
+ * Lote de eventos de tareas entregado a un suscriptor.
+ * 
+ * <p>
+ * Cada evento se guarda como un único {@code long} con su tipo, el id de
+ * la tarea y el id del usuario (0 si la tarea aún no tiene dueño), para
+ * que publicarlo no reserve memoria. Los arreglos se reutilizan entre
+ * lotes, así que un lote solo es válido mientras se procesa.
+ * </p>
+ */
+
+public final class LoteEventos {
+	
+	private static final TipoEvento[] TIPOS = TipoEvento.values();
+	
+	private static final long MASCARA_ID = 0x7FFFFFFFL;
+	
+	private final long[] eventos;
+	private final long[] secuencias;
+	private final int tamanio;
+	
+	/**
+	 * Construye un lote sobre los primeros elementos de los arreglos.
+	 * 
+	 * @param eventos eventos codificados con {@link #codificar}
+	 * @param secuencias número de secuencia de cada evento
+	 * @param tamanio número de eventos del lote
+	 */
+	public LoteEventos(long[] eventos, long[] secuencias, int tamanio) {
+		this.eventos = eventos;
+		this.secuencias = secuencias;
+		this.tamanio = tamanio;
+	}
+	
+	/**
+	 * Codifica un evento en un {@code long}.
+	 * 
+	 * @param tipo tipo de evento
+	 * @param tareaId id de la tarea, no negativo
+	 * @param usuarioId id del usuario, o 0 si no tiene dueño
+	 * @return evento codificado
+	 */
+	public static long codificar(TipoEvento tipo, int tareaId, int usuarioId) {
+		return ((long) tipo.ordinal() << 62) | ((usuarioId & MASCARA_ID) << 31) | (tareaId & MASCARA_ID);
+	}
+	
+	public int getTamanio() {
+		return tamanio;
+	}
+	
+	public TipoEvento getTipo(int i) {
+		return TIPOS[(int) (evento(i) >>> 62)];
+	}
+	
+	public int getTareaId(int i) {
+		return (int) (evento(i) & MASCARA_ID);
+	}
+	
+	public int getUsuarioId(int i) {
+		return (int) ((evento(i) >>> 31) & MASCARA_ID);
+	}
+	
+	/**
+	 * Devuelve el número de secuencia de un evento. Las secuencias crecen
+	 * en el orden de publicación; un salto indica eventos perdidos.
+	 * 
+	 * @param i posición en el lote
+	 * @return número de secuencia
+	 */
+	public long getSecuencia(int i) {
+		Objects.checkIndex(i, tamanio);
+		return secuencias[i];
+	}
+	
+	private long evento(int i) {
+		Objects.checkIndex(i, tamanio);
+		return eventos[i];
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder texto = new StringBuilder("[");
+		for (int i = 0; i < tamanio; i++) {
+			if (i > 0) {
+				texto.append(", ");
+			}
+			texto.append(getTipo(i)).append(' ').append(getTareaId(i)).append('/').append(getUsuarioId(i));
+		}
+		return texto.append(']').toString();
+	}
+
+}
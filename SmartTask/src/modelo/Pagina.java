@@ -0,0 +1,111 @@
+package modelo;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Página de resultados de un listado paginado por identificador.
+ * 
+ * <p>
+ * Cada página indica el cursor con el que pedir la siguiente. El cursor
+ * guarda el identificador del último elemento devuelto, no una posición,
+ * por lo que las altas y bajas entre página y página no hacen repetir ni
+ * saltar los elementos que siguen existiendo. Un cursor solo debe usarse
+ * con el mismo listado que lo devolvió.
+ * </p>
+ * 
+ * @param <T> tipo de los elementos
+ */
+
+public final class Pagina<T> {
+	
+	/** Cursor para pedir la primera página */
+	public static final long INICIO = 0;
+	
+	/** Cursor que indica que no hay más páginas */
+	public static final long FIN = -1;
+	
+	private final List<T> elementos;
+	private final long siguiente;
+	
+	/**
+	 * Construye una página.
+	 * 
+	 * @param elementos elementos de la página
+	 * @param siguiente cursor de la siguiente página o {@link #FIN}
+	 */
+	public Pagina(List<T> elementos, long siguiente) {
+		this.elementos = Collections.unmodifiableList(elementos);
+		this.siguiente = siguiente;
+	}
+	
+	/**
+	 * Combina los ids de usuario y de tarea en un cursor, para listados
+	 * ordenados por usuario y, dentro de cada usuario, por tarea.
+	 * 
+	 * @param usuarioId id del usuario
+	 * @param tareaId id de la tarea
+	 * @return cursor combinado
+	 */
+	public static long cursor(int usuarioId, int tareaId) {
+		return ((long) usuarioId << 32) | (tareaId & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * Devuelve el id de usuario de un cursor combinado.
+	 * 
+	 * @param cursor cursor de {@link #cursor(int, int)}
+	 * @return id del usuario
+	 */
+	public static int usuarioDe(long cursor) {
+		return (int) (cursor >>> 32);
+	}
+	
+	/**
+	 * Devuelve el id de tarea de un cursor combinado.
+	 * 
+	 * @param cursor cursor de {@link #cursor(int, int)}
+	 * @return id de la tarea
+	 */
+	public static int tareaDe(long cursor) {
+		return (int) cursor;
+	}
+	
+	/**
+	 * Devuelve los elementos de la página.
+	 * 
+	 * @return lista no modificable
+	 */
+	public List<T> getElementos() {
+		return elementos;
+	}
+	
+	/**
+	 * Devuelve el cursor de la siguiente página.
+	 * 
+	 * <p>
+	 * Una página llena siempre devuelve un cursor, aunque la siguiente
+	 * pueda resultar vacía.
+	 * </p>
+	 * 
+	 * @return cursor o {@link #FIN} si no hay más elementos
+	 */
+	public long getSiguiente() {
+		return siguiente;
+	}
+	
+	/**
+	 * Indica si es la última página.
+	 * 
+	 * @return true si no hay más elementos
+	 */
+	public boolean esUltima() {
+		return siguiente == FIN;
+	}
+	
+	@Override
+	public String toString() {
+		return "Pagina[elementos=" + elementos.size() + ", siguiente=" + siguiente + "]";
+	}
+
+}
@@ -30,6 +30,27 @@ public abstract class Tarea {
 	/** Estado actual de la tarea */
 	private EstadoTarea estado;
 	
+	/** Instante de creación, en milisegundos desde la época */
+	private final long creadaEn;
+	
+	/** Instante en que se completó, o 0 si sigue activa */
+	private long completadaEn;
+	
+	/** Instante de vencimiento, o 0 si no tiene */
+	private long venceEn;
+	
+	/** Indica si se atiende como urgente por acercarse su vencimiento */
+	private boolean escalada;
+	
+	/** Usuario al que está asignada la tarea, o null si no tiene */
+	Usuario duenio;
+	
+	/** Tarea anterior del mismo grupo (estado y prioridad) en su usuario */
+	Tarea anteriorEnGrupo;
+	
+	/** Tarea siguiente del mismo grupo (estado y prioridad) en su usuario */
+	Tarea siguienteEnGrupo;
+	
 	/**
 	 * Constructor de la tarea 
 	 * 
@@ -39,13 +60,31 @@ public abstract class Tarea {
 	 */
 	
 	public Tarea(int id, String descripcion) {
+		this(id, descripcion, System.currentTimeMillis());
+	}
+	
+	/**
+	 * Constructor de la tarea con su instante de creación, por ejemplo al
+	 * restaurarla.
+	 * 
+	 * @param id identificador único de la tarea asignado externamente
+	 * @param descripcion descripción de la tarea (no puede ser null ni vacía)
+	 * @param creadaEn instante de creación en milisegundos desde la época
+	 * @throws IllegalArgumentException si la descripción o el instante son inválidos
+	 */
+	
+	public Tarea(int id, String descripcion, long creadaEn) {
 		if (descripcion == null || descripcion.trim().isEmpty()) {
 			throw new IllegalArgumentException("La descripción no puede estar vacía.");
 		}
+		if (creadaEn < 0) {
+			throw new IllegalArgumentException("El instante de creación no puede ser negativo.");
+		}
 		
 		this.id = id;
 		this.descripcion = descripcion.trim();
 		this.estado = EstadoTarea.ACTIVA; // Las tareas inician activas por defecto
+		this.creadaEn = creadaEn;
 	}
 	
 	/**
@@ -71,6 +110,11 @@ public abstract class Tarea {
 	/**
 	 * Modifica la descripción de la tarea.
 	 * 
+	 * <p>
+	 * Si la tarea está asignada a un usuario, se actualiza el índice de
+	 * descripciones al que esté vinculado.
+	 * </p>
+	 * 
 	 * @param descripcion nueva descripción (no puede ser null ni vacía)
 	 * @throws IllegalArgumentException si la descripción es inválida
 	 */
@@ -79,6 +123,10 @@ public abstract class Tarea {
 			throw new IllegalArgumentException("La descripcion no puede estar vacía.");
 		}
 		this.descripcion = descripcion.trim();
+		
+		if (duenio != null) {
+			duenio.cambiarDescripcion(this);
+		}
 	}
 	
 	/**
@@ -91,10 +139,126 @@ public abstract class Tarea {
 	}
 	
 	/**
-	 * Marca la tarea como completada.
+	 * Marca la tarea como completada en el instante actual.
+	 * 
+	 * <p>
+	 * Si la tarea está asignada a un usuario, se actualizan sus conteos.
+	 * </p>
 	 */
 	public void marcarComoCompletada() {
+		marcarComoCompletada(System.currentTimeMillis());
+	}
+	
+	/**
+	 * Marca la tarea como completada en el instante indicado. Si ya estaba
+	 * completada no cambia nada.
+	 * 
+	 * @param instante instante de finalización en milisegundos desde la época
+	 * @throws IllegalArgumentException si el instante es negativo
+	 */
+	public void marcarComoCompletada(long instante) {
+		if (instante < 0) {
+			throw new IllegalArgumentException("El instante de finalización no puede ser negativo.");
+		}
+		if (estado == EstadoTarea.COMPLETADA) {
+			return;
+		}
+		
+		EstadoTarea anterior = estado;
 		this.estado = EstadoTarea.COMPLETADA;
+		this.completadaEn = instante;
+		
+		if (duenio != null) {
+			duenio.cambiarEstado(this, anterior);
+		}
+	}
+	
+	/**
+	 * Obtiene el instante de creación de la tarea.
+	 * 
+	 * @return milisegundos desde la época
+	 */
+	public long getCreadaEn() {
+		return creadaEn;
+	}
+	
+	/**
+	 * Obtiene el instante en que se completó la tarea.
+	 * 
+	 * @return milisegundos desde la época, o 0 si sigue activa
+	 */
+	public long getCompletadaEn() {
+		return completadaEn;
+	}
+	
+	/**
+	 * Obtiene el vencimiento de la tarea.
+	 * 
+	 * @return milisegundos desde la época, o 0 si no tiene vencimiento
+	 */
+	public long getVenceEn() {
+		return venceEn;
+	}
+	
+	/**
+	 * Fija el vencimiento de la tarea.
+	 * 
+	 * <p>
+	 * Solo cambia el dato: para que el vencimiento se vigile hay que fijarlo
+	 * a través del gestor.
+	 * </p>
+	 * 
+	 * @param venceEn milisegundos desde la época, o 0 para quitarlo
+	 * @throws IllegalArgumentException si el instante es negativo
+	 */
+	public void setVenceEn(long venceEn) {
+		if (venceEn < 0) {
+			throw new IllegalArgumentException("El vencimiento no puede ser negativo.");
+		}
+		this.venceEn = venceEn;
+	}
+	
+	/**
+	 * Indica si la tarea sigue activa después de su vencimiento.
+	 * 
+	 * @param ahora instante de referencia en milisegundos desde la época
+	 * @return true si tiene vencimiento, está activa y ya venció
+	 */
+	public boolean estaVencida(long ahora) {
+		return venceEn != 0 && estado == EstadoTarea.ACTIVA && ahora >= venceEn;
+	}
+	
+	/**
+	 * Indica si la tarea se escaló por acercarse su vencimiento.
+	 * 
+	 * @return true si está escalada
+	 */
+	public boolean isEscalada() {
+		return escalada;
+	}
+	
+	/**
+	 * Escala una tarea normal activa para que se atienda como urgente. Su
+	 * prioridad no cambia, por lo que sigue contándose como normal.
+	 * 
+	 * @return true si la tarea pasó a estar escalada
+	 */
+	public boolean escalar() {
+		if (escalada || estado != EstadoTarea.ACTIVA || getPrioridad() == Prioridad.URGENTE) {
+			return false;
+		}
+		escalada = true;
+		return true;
+	}
+	
+	/**
+	 * Indica si la tarea se atiende como urgente: por su prioridad o por
+	 * estar escalada.
+	 * 
+	 * @return true si es urgente o está escalada
+	 */
+	public boolean esUrgente() {
+		return escalada || getPrioridad() == Prioridad.URGENTE;
 	}
 	
 	/**
@@ -108,6 +272,21 @@ public abstract class Tarea {
 	 */
 	public abstract Prioridad getPrioridad();
 	
+	/**
+	 * Agrega la información de la tarea al texto indicado, con el mismo
+	 * formato que {@link #toString()} pero sin crear cadenas intermedias,
+	 * para listar muchas tareas reutilizando el mismo búfer.
+	 * 
+	 * @param destino texto al que se agrega
+	 * @return el mismo texto
+	 */
+	public StringBuilder escribir(StringBuilder destino) {
+		return destino.append("ID: ").append(id)
+				.append(" | Descripción: ").append(descripcion)
+				.append(" | Prioridad: ").append(getPrioridad().name())
+				.append(" | Estado: ").append(estado.name());
+	}
+	
 	/**
 	 * Mostrar información de la tarea.
 	 * 
@@ -115,13 +294,7 @@ public abstract class Tarea {
 	 */
 	@Override
 	public String toString() {
-		return String.format(
-				"ID: %d | Descripción: %s | Prioridad: %s | Estado: %s",
-				id,
-				descripcion,
-				getPrioridad(),
-				estado
-		);
+		return escribir(new StringBuilder(64 + descripcion.length())).toString();
 	}
 	
 	/**
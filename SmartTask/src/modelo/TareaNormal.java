@@ -22,6 +22,18 @@ public class TareaNormal extends Tarea {
 		super(id, descripcion);
 	}
 	
+	/**
+	 * Construye una tarea normal con su instante de creación.
+	 * 
+	 * @param id identificador único asignado externamente
+	 * @param descripcion descripción de la tarea
+	 * @param creadaEn instante de creación en milisegundos desde la época
+	 */
+	
+	public TareaNormal(int id, String descripcion, long creadaEn) {
+		super(id, descripcion, creadaEn);
+	}
+	
 	/**
 	 * Devuelve la prioridad de la tarea.
 	 * 
@@ -22,6 +22,18 @@ public class TareaUrgente extends Tarea{
 		super(id, descripcion);
 	}
 	
+	/**
+	 * Construye una tarea urgente con su instante de creación.
+	 * 
+	 * @param id identificador único asignado externamente
+	 * @param descripcion descripción de la tarea
+	 * @param creadaEn instante de creación en milisegundos desde la época
+	 */
+	
+	public TareaUrgente(int id, String descripcion, long creadaEn) {
+		super(id, descripcion, creadaEn);
+	}
+	
 	/**
 	 * Devueve la prioridad de la tarea.
 	 * 
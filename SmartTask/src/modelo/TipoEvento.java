@@ -0,0 +1,11 @@
+package modelo;
+
+/**
+ * Representa los cambios de una tarea que se notifican a los suscriptores
+ * de eventos.
+ */
+
+public enum TipoEvento {
+	CREADA, ASIGNADA, COMPLETADA, ELIMINADA
+
+}
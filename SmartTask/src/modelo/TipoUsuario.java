@@ -1,5 +1,7 @@
 package modelo;
 
+import java.util.Locale;
+
 /**
  * Representa los distintos tipos de usuario del sistema.
  */
@@ -7,6 +9,9 @@ package modelo;
 public enum TipoUsuario {
 	PROFESOR, ESTUDIANTE, TRABAJADOR;
 	
+	/** Nombre formateado, calculado una sola vez */
+	private final String nombreFormateado = name().charAt(0) + name().substring(1).toLowerCase(Locale.ROOT);
+	
 	/**
 	 * Devuelve una representación formateada del tipo de usuario.
 	 * 
@@ -14,6 +19,6 @@ public enum TipoUsuario {
 	 */
 	
 	public String getNombreFormateado() {
-		return this.name().charAt(0) + this.name().substring(1).toLowerCase();
+		return nombreFormateado;
 	}
 }
@@ -1,9 +1,19 @@
 package modelo;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+
+import util.MapaEnteros;
+import util.VectorPersistente;
 
 /**
  * Clase abstracta que representa un usuario del sistema.
@@ -25,8 +35,58 @@ public abstract class Usuario {
 	/** Tipo de usuario */
 	private final TipoUsuario tipo;
 	
-	/** Lista de tareas asociadas al usuario */
-	private final List<Tarea> tareas;
+	/** Capacidad inicial del arreglo de tareas */
+	private static final int CAPACIDAD_INICIAL = 8;
+	
+	/**
+	 * Tareas asociadas al usuario en orden de inserción.
+	 * 
+	 * <p>
+	 * Las tareas eliminadas dejan su posición a null hasta la siguiente
+	 * compactación, lo que evita desplazar el arreglo en cada borrado.
+	 * </p>
+	 */
+	private Tarea[] tareas;
+	
+	/** Posiciones usadas de {@link #tareas}, incluidas las eliminadas */
+	private int ocupadas;
+	
+	/** Número de tareas vigentes */
+	private int vigentes;
+	
+	/** Mayor id de tarea agregado desde que el usuario quedó sin tareas */
+	private int mayorId;
+	
+	/** Indica si {@link #tareas} está en orden creciente de id */
+	private boolean ordenadasPorId;
+	
+	/** Índice de tareas: id de la tarea a su posición en {@link #tareas} */
+	private final MapaEnteros indiceTareas;
+	
+	/** Vista no modificable de las tareas */
+	private final VistaTareas vista;
+	
+	/**
+	 * Versión inmutable de {@link #tareas}, con los mismos huecos en las
+	 * mismas posiciones, o null si el usuario no publica versiones.
+	 */
+	private volatile VectorPersistente<Tarea> version;
+	
+	/** Conteo de tareas del usuario por estado y prioridad */
+	private final ContadorTareas contador;
+	
+	/**
+	 * Primera tarea de cada grupo (estado y prioridad). Las tareas de un
+	 * mismo grupo forman una lista doblemente enlazada a través de
+	 * {@link Tarea#anteriorEnGrupo} y {@link Tarea#siguienteEnGrupo}.
+	 */
+	private final Tarea[] primeraDeGrupo;
+	
+	/** Última tarea de cada grupo (estado y prioridad) */
+	private final Tarea[] ultimaDeGrupo;
+	
+	/** Índice de descripciones que se mantiene al día, o null */
+	private IndiceTareas indice;
 	
 	/**
 	 * Construye un nuevo usuario.
@@ -45,7 +105,14 @@ public abstract class Usuario {
 		this.id = id;
 		this.nombre = nombre.trim();
 		this.tipo = tipo;
-		this.tareas = new ArrayList<>();
+		this.tareas = new Tarea[CAPACIDAD_INICIAL];
+		this.mayorId = Integer.MIN_VALUE;
+		this.ordenadasPorId = true;
+		this.indiceTareas = new MapaEnteros();
+		this.vista = new VistaTareas();
+		this.contador = new ContadorTareas();
+		this.primeraDeGrupo = new Tarea[EstadoTarea.values().length * Prioridad.values().length];
+		this.ultimaDeGrupo = new Tarea[primeraDeGrupo.length];
 	}
 	
 	/**
@@ -92,24 +159,298 @@ public abstract class Usuario {
 	 * 
 	 * <p>
 	 * Se retrona una lista inmodificable para proteger el encapsulamiento.
+	 * La lista refleja los cambios posteriores del usuario.
 	 * </p>
 	 * 
 	 * @return lista de tareas
 	 */
 	public List<Tarea> getTareas(){
-		return Collections.unmodifiableList(tareas);
+		return vista;
+	}
+	
+	/**
+	 * Compacta el arreglo de tareas si tiene huecos, para que el acceso por
+	 * posición de {@link #getTareas()} vuelva a ser O(1). Es una escritura:
+	 * no debe coincidir con lecturas de otros hilos.
+	 */
+	public void compactarTareas() {
+		if (ocupadas != vigentes) {
+			compactar();
+		}
+	}
+	
+	/**
+	 * Empieza a mantener una versión inmutable de las tareas, que cada
+	 * cambio reemplaza por otra que comparte con la anterior todo lo que no
+	 * cambió. No tiene efecto si ya se mantenía.
+	 */
+	public void versionarTareas() {
+		if (version == null) {
+			version = VectorPersistente.de(tareas, ocupadas);
+		}
+	}
+	
+	/**
+	 * Devuelve la versión actual de las tareas del usuario.
+	 * 
+	 * <p>
+	 * A diferencia de {@link #getTareas()}, la lista no cambia aunque el
+	 * usuario cambie después, no se copia y puede leerse desde cualquier
+	 * hilo sin sincronización. Las tareas en sí son las mismas, así que su
+	 * estado sí refleja los cambios posteriores.
+	 * </p>
+	 * 
+	 * @return tareas en orden de inserción, o null si no se llamó antes a
+	 * {@link #versionarTareas()}
+	 */
+	public VectorPersistente<Tarea> getVersionTareas() {
+		return version;
+	}
+	
+	/**
+	 * Devuelve el conteo de tareas del usuario por estado y prioridad.
+	 * 
+	 * @return contador de tareas, actualizado en cada cambio
+	 */
+	public ContadorTareas getContador() {
+		return contador;
+	}
+	
+	/**
+	 * Vincula el contador del usuario a un contador agregado (por ejemplo,
+	 * el de su tipo de usuario), trasladando los conteos actuales.
+	 * 
+	 * @param agregado contador al que se propagan los cambios (puede ser null)
+	 */
+	public void vincularContador(ContadorTareas agregado) {
+		contador.setPadre(agregado);
+	}
+	
+	/**
+	 * Vincula el usuario a un índice de descripciones, indexando sus tareas
+	 * actuales. Desde entonces, agregar, eliminar, completar o cambiar la
+	 * descripción de sus tareas actualiza el índice.
+	 * 
+	 * @param indice índice a mantener (puede ser null para desvincular)
+	 */
+	public void vincularIndice(IndiceTareas indice) {
+		this.indice = indice;
+		
+		if (indice != null) {
+			for (int i = 0; i < ocupadas; i++) {
+				if (tareas[i] != null) {
+					indexar(tareas[i]);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Recorre solo las tareas del usuario con el estado indicado, sin
+	 * filtrar la lista completa.
+	 * 
+	 * <p>
+	 * Las tareas se devuelven agrupadas por prioridad y, dentro de cada
+	 * prioridad, en el orden en que llegaron a ese estado. El usuario no
+	 * debe modificarse durante el recorrido.
+	 * </p>
+	 * 
+	 * @param estado estado de las tareas
+	 * @return tareas con ese estado
+	 */
+	public Iterable<Tarea> tareasConEstado(EstadoTarea estado) {
+		int[] grupos = new int[Prioridad.values().length];
+		for (Prioridad prioridad : Prioridad.values()) {
+			grupos[prioridad.ordinal()] = grupo(estado, prioridad);
+		}
+		return () -> new IteradorGrupos(grupos);
+	}
+	
+	/**
+	 * Recorre solo las tareas del usuario con la prioridad indicada, sin
+	 * filtrar la lista completa.
+	 * 
+	 * <p>
+	 * Las tareas activas se devuelven antes que las completadas. El usuario
+	 * no debe modificarse durante el recorrido.
+	 * </p>
+	 * 
+	 * @param prioridad prioridad de las tareas
+	 * @return tareas con esa prioridad
+	 */
+	public Iterable<Tarea> tareasConPrioridad(Prioridad prioridad) {
+		int[] grupos = new int[EstadoTarea.values().length];
+		for (EstadoTarea estado : EstadoTarea.values()) {
+			grupos[estado.ordinal()] = grupo(estado, prioridad);
+		}
+		return () -> new IteradorGrupos(grupos);
 	}
 	
 	/**
 	 * Agrega una tarea al usuario.
 	 * 
+	 * <p>
+	 * Si el usuario ya tiene una tarea con el mismo identificador,
+	 * no se agrega de nuevo.
+	 * </p>
+	 * 
 	 * @param tarea tarea por agregar
+	 * @throws IllegalArgumentException si la tarea pertenece a otro usuario
 	 */
 	
 	public void agregarTarea(Tarea tarea) {
-		if (tarea != null) {
-			tareas.add(tarea);
+		if (tarea == null || indiceTareas.contiene(tarea.getId())) {
+			return;
+		}
+		if (tarea.duenio != null) {
+			throw new IllegalArgumentException("La tarea ya pertenece a otro usuario.");
 		}
+		
+		if (ocupadas == tareas.length) {
+			if (ocupadas - vigentes > vigentes) {
+				compactar();
+			} else {
+				tareas = Arrays.copyOf(tareas, tareas.length * 2);
+			}
+		}
+		
+		if (vigentes == 0) {
+			mayorId = Integer.MIN_VALUE;
+			ordenadasPorId = true;
+		}
+		ordenadasPorId &= tarea.getId() > mayorId;
+		mayorId = Math.max(mayorId, tarea.getId());
+		
+		indiceTareas.put(tarea.getId(), ocupadas);
+		tareas[ocupadas++] = tarea;
+		vigentes++;
+		vista.registrarCambio();
+		if (version != null) {
+			version = version.asignar(ocupadas - 1, tarea);
+		}
+		
+		tarea.duenio = this;
+		enlazar(tarea, grupo(tarea.getEstado(), tarea.getPrioridad()));
+		contador.sumar(tarea.getEstado(), tarea.getPrioridad(), 1);
+		
+		if (indice != null) {
+			indexar(tarea);
+		}
+	}
+	
+	/**
+	 * Reserva espacio para agregar la cantidad indicada de tareas sin
+	 * volver a agrandar el arreglo ni el índice, por ejemplo antes de una
+	 * carga masiva.
+	 * 
+	 * @param adicionales número de tareas que se van a agregar
+	 * @throws IllegalArgumentException si la cantidad es negativa
+	 */
+	public void asegurarCapacidad(int adicionales) {
+		if (adicionales < 0) {
+			throw new IllegalArgumentException("La cantidad no puede ser negativa.");
+		}
+		
+		if (ocupadas != vigentes) {
+			compactar();
+		}
+		
+		int necesarias = vigentes + adicionales;
+		if (necesarias > tareas.length) {
+			tareas = Arrays.copyOf(tareas, necesarias);
+		}
+		indiceTareas.asegurarCapacidad(necesarias);
+	}
+	
+	/**
+	 * Devuelve, en orden creciente de id, las tareas con id mayor que el
+	 * indicado, para recorrer las tareas por páginas. Las localiza como
+	 * {@link #tareasDesde(int)}.
+	 * 
+	 * @param despuesDeId id a partir del cual listar, sin incluirlo
+	 * @param limite número máximo de tareas
+	 * @return nueva lista de tareas
+	 * @throws IllegalArgumentException si el límite es negativo
+	 */
+	public List<Tarea> tareasDespuesDe(int despuesDeId, int limite) {
+		if (limite < 0) {
+			throw new IllegalArgumentException("El límite no puede ser negativo.");
+		}
+		
+		List<Tarea> resultado = new ArrayList<>(Math.min(limite, vigentes));
+		if (despuesDeId == Integer.MAX_VALUE) {
+			return resultado;
+		}
+		
+		for (Tarea tarea : tareasDesde(despuesDeId + 1)) {
+			if (resultado.size() == limite) {
+				break;
+			}
+			resultado.add(tarea);
+		}
+		return resultado;
+	}
+	
+	/**
+	 * Recorre en orden creciente de id las tareas con id mayor o igual que
+	 * el indicado, por ejemplo para entregar solo las que caben en una
+	 * página.
+	 * 
+	 * <p>
+	 * Si las tareas se agregaron en orden de id (lo habitual) se localiza
+	 * el inicio con una búsqueda binaria y se recorren sin copiarlas; si
+	 * no, se recorre una copia ordenada. Como con {@link #getTareas()}, el
+	 * usuario no debe cambiar durante el recorrido.
+	 * </p>
+	 * 
+	 * @param desdeId menor id a recorrer
+	 * @return tareas desde el id indicado
+	 */
+	public Iterable<Tarea> tareasDesde(int desdeId) {
+		if (!ordenadasPorId) {
+			List<Tarea> ordenadas = new ArrayList<>();
+			for (int i = 0; i < ocupadas; i++) {
+				if (tareas[i] != null && tareas[i].getId() >= desdeId) {
+					ordenadas.add(tareas[i]);
+				}
+			}
+			ordenadas.sort(Comparator.comparingInt(Tarea::getId));
+			return ordenadas;
+		}
+		
+		// Los huecos se saltan sin compactar, para que la lectura no modifique el arreglo
+		int desde = 0;
+		int hasta = ocupadas;
+		while (desde < hasta) {
+			int medio = (desde + hasta) >>> 1;
+			int vigente = siguienteVigente(medio, hasta);
+			if (vigente < hasta && tareas[vigente].getId() < desdeId) {
+				desde = vigente + 1;
+			} else {
+				hasta = medio;
+			}
+		}
+		int primera = desde;
+		
+		return () -> new Iterator<>() {
+			
+			private int posicion = siguienteVigente(primera, ocupadas);
+			
+			@Override
+			public boolean hasNext() {
+				return posicion < ocupadas;
+			}
+			
+			@Override
+			public Tarea next() {
+				if (posicion >= ocupadas) {
+					throw new NoSuchElementException();
+				}
+				Tarea tarea = tareas[posicion];
+				posicion = siguienteVigente(posicion + 1, ocupadas);
+				return tarea;
+			}
+		};
 	}
 	
 	/** 
@@ -119,10 +460,13 @@ public abstract class Usuario {
 	 * @return la tarea si existe, o null si no se encuentra
 	 */
 	public Tarea buscarTarea(int id) {
-        return tareas.stream()
-                .filter(t -> t.getId() == id)
-                .findFirst()
-                .orElse(null);
+		int posicion = indiceTareas.get(id);
+		
+		if (posicion == MapaEnteros.NO_ENCONTRADO) {
+			return null;
+		}
+		
+		return tareas[posicion];
     }
 	
 	/**
@@ -132,7 +476,270 @@ public abstract class Usuario {
 	 * @return true si la tarea fue eliminada, false si no se encontró
 	 */
 	public boolean eliminarTarea(int id) {
-		return tareas.removeIf(tarea -> tarea.getId() == id);
+		int posicion = indiceTareas.remove(id);
+		
+		if (posicion == MapaEnteros.NO_ENCONTRADO) {
+			return false;
+		}
+		
+		Tarea tarea = tareas[posicion];
+		tareas[posicion] = null;
+		vigentes--;
+		vista.registrarCambio();
+		if (version != null) {
+			version = version.quitar(posicion);
+		}
+		
+		desenlazar(tarea, grupo(tarea.getEstado(), tarea.getPrioridad()));
+		contador.sumar(tarea.getEstado(), tarea.getPrioridad(), -1);
+		tarea.duenio = null;
+		
+		if (indice != null) {
+			indice.quitar(id);
+		}
+		
+		// Se compacta cuando los huecos superan a las tareas vigentes
+		if (ocupadas - vigentes > Math.max(vigentes, CAPACIDAD_INICIAL)) {
+			compactar();
+		}
+		return true;
+	}
+	
+	/**
+	 * Actualiza grupos y conteos cuando una tarea del usuario cambia de
+	 * estado. Es invocado por la propia tarea.
+	 * 
+	 * @param tarea tarea que cambió
+	 * @param anterior estado previo de la tarea
+	 */
+	void cambiarEstado(Tarea tarea, EstadoTarea anterior) {
+		Prioridad prioridad = tarea.getPrioridad();
+		
+		desenlazar(tarea, grupo(anterior, prioridad));
+		enlazar(tarea, grupo(tarea.getEstado(), prioridad));
+		contador.sumar(anterior, prioridad, -1);
+		contador.sumar(tarea.getEstado(), prioridad, 1);
+		
+		if (indice != null) {
+			indice.cambiarEstado(tarea.getId(), tarea.getEstado());
+		}
+	}
+	
+	/**
+	 * Actualiza el índice cuando una tarea del usuario cambia de
+	 * descripción. Es invocado por la propia tarea.
+	 * 
+	 * @param tarea tarea que cambió
+	 */
+	void cambiarDescripcion(Tarea tarea) {
+		if (indice != null) {
+			indice.cambiarDescripcion(tarea.getId(), tarea.getDescripcion());
+		}
+	}
+	
+	private void indexar(Tarea tarea) {
+		indice.agregar(tarea.getId(), id, tipo, tarea.getPrioridad(), tarea.getEstado(), tarea.getDescripcion());
+	}
+	
+	private static int grupo(EstadoTarea estado, Prioridad prioridad) {
+		return estado.ordinal() * Prioridad.values().length + prioridad.ordinal();
+	}
+	
+	/** Agrega la tarea al final de la lista enlazada de su grupo */
+	private void enlazar(Tarea tarea, int grupo) {
+		Tarea ultima = ultimaDeGrupo[grupo];
+		tarea.anteriorEnGrupo = ultima;
+		tarea.siguienteEnGrupo = null;
+		
+		if (ultima == null) {
+			primeraDeGrupo[grupo] = tarea;
+		} else {
+			ultima.siguienteEnGrupo = tarea;
+		}
+		ultimaDeGrupo[grupo] = tarea;
+	}
+	
+	/** Quita la tarea de la lista enlazada de su grupo */
+	private void desenlazar(Tarea tarea, int grupo) {
+		if (tarea.anteriorEnGrupo == null) {
+			primeraDeGrupo[grupo] = tarea.siguienteEnGrupo;
+		} else {
+			tarea.anteriorEnGrupo.siguienteEnGrupo = tarea.siguienteEnGrupo;
+		}
+		
+		if (tarea.siguienteEnGrupo == null) {
+			ultimaDeGrupo[grupo] = tarea.anteriorEnGrupo;
+		} else {
+			tarea.siguienteEnGrupo.anteriorEnGrupo = tarea.anteriorEnGrupo;
+		}
+		
+		tarea.anteriorEnGrupo = null;
+		tarea.siguienteEnGrupo = null;
+	}
+	
+	/**
+	 * Iterador que recorre en orden las listas enlazadas de varios grupos.
+	 */
+	private final class IteradorGrupos implements Iterator<Tarea> {
+		
+		private final int[] grupos;
+		private int siguienteGrupo;
+		private Tarea siguiente;
+		
+		IteradorGrupos(int[] grupos) {
+			this.grupos = grupos;
+			avanzarGrupo();
+		}
+		
+		@Override
+		public boolean hasNext() {
+			return siguiente != null;
+		}
+		
+		@Override
+		public Tarea next() {
+			if (siguiente == null) {
+				throw new NoSuchElementException();
+			}
+			Tarea actual = siguiente;
+			siguiente = actual.siguienteEnGrupo;
+			if (siguiente == null) {
+				avanzarGrupo();
+			}
+			return actual;
+		}
+		
+		private void avanzarGrupo() {
+			while (siguiente == null && siguienteGrupo < grupos.length) {
+				siguiente = primeraDeGrupo[grupos[siguienteGrupo++]];
+			}
+		}
+	}
+	
+	/**
+	 * Mueve las tareas vigentes al inicio del arreglo, conservando el orden,
+	 * y actualiza sus posiciones en el índice y en la versión.
+	 */
+	private void compactar() {
+		int destino = 0;
+		
+		for (int i = 0; i < ocupadas; i++) {
+			Tarea tarea = tareas[i];
+			if (tarea != null) {
+				if (destino != i) {
+					tareas[destino] = tarea;
+					indiceTareas.put(tarea.getId(), destino);
+				}
+				destino++;
+			}
+		}
+		
+		Arrays.fill(tareas, destino, ocupadas, null);
+		ocupadas = destino;
+		
+		if (version != null) {
+			version = VectorPersistente.de(tareas, ocupadas);
+		}
+	}
+	
+	/**
+	 * Devuelve la primera posición con tarea vigente a partir de desde, o
+	 * hasta si no hay ninguna antes.
+	 */
+	private int siguienteVigente(int desde, int hasta) {
+		while (desde < hasta && tareas[desde] == null) {
+			desde++;
+		}
+		return desde;
+	}
+	
+	/**
+	 * Vista de solo lectura sobre el arreglo de tareas.
+	 * 
+	 * <p>
+	 * Las lecturas nunca modifican el arreglo, así que varios hilos pueden
+	 * leer a la vez mientras no haya escrituras; solo las escrituras lo
+	 * compactan. Sin huecos el acceso por posición es O(1); con huecos se
+	 * cuentan las tareas vigentes, y el iterador los salta. Por eso no
+	 * declara {@link java.util.RandomAccess}: quien lea por posición debe
+	 * compactar antes con {@link Usuario#compactarTareas()}.
+	 * </p>
+	 */
+	private final class VistaTareas extends AbstractList<Tarea> {
+		
+		@Override
+		public Tarea get(int index) {
+			Objects.checkIndex(index, vigentes);
+			if (ocupadas == vigentes) {
+				return tareas[index];
+			}
+			
+			int posicion = siguienteVigente(0, ocupadas);
+			for (int i = 0; i < index; i++) {
+				posicion = siguienteVigente(posicion + 1, ocupadas);
+			}
+			return tareas[posicion];
+		}
+		
+		@Override
+		public Iterator<Tarea> iterator() {
+			return new Iterator<>() {
+				
+				private final int esperado = modCount;
+				private int posicion = siguienteVigente(0, ocupadas);
+				
+				@Override
+				public boolean hasNext() {
+					return posicion < ocupadas;
+				}
+				
+				@Override
+				public Tarea next() {
+					if (modCount != esperado) {
+						throw new ConcurrentModificationException();
+					}
+					if (posicion >= ocupadas) {
+						throw new NoSuchElementException();
+					}
+					Tarea tarea = tareas[posicion];
+					posicion = siguienteVigente(posicion + 1, ocupadas);
+					return tarea;
+				}
+			};
+		}
+		
+		@Override
+		public Spliterator<Tarea> spliterator() {
+			// Con huecos, el reparto por posiciones costaría una búsqueda por elemento
+			return ocupadas == vigentes
+					? super.spliterator()
+					: Spliterators.spliterator(iterator(), vigentes, Spliterator.ORDERED | Spliterator.NONNULL);
+		}
+		
+		@Override
+		public int size() {
+			return vigentes;
+		}
+		
+		/** Invalida los iteradores abiertos sobre la vista */
+		private void registrarCambio() {
+			modCount++;
+		}
+	}
+	
+	/**
+	 * Agrega la información básica del usuario al texto indicado, con el
+	 * mismo formato que {@link #toString()} pero sin crear cadenas
+	 * intermedias.
+	 * 
+	 * @param destino texto al que se agrega
+	 * @return el mismo texto
+	 */
+	public StringBuilder escribir(StringBuilder destino) {
+		return destino.append("ID: ").append(id)
+				.append(" | Nombre: ").append(nombre)
+				.append(" | Tipo: ").append(tipo.getNombreFormateado())
+				.append("| Total tareas: ").append(vigentes);
 	}
 	
 	/**
@@ -142,11 +749,7 @@ public abstract class Usuario {
      */
     @Override
     public String toString() {
-        return String.format("ID: %d | Nombre: %s | Tipo: %s| Total tareas: %d",
-                id, 
-                nombre, 
-                tipo.getNombreFormateado(),
-                tareas.size());
+        return escribir(new StringBuilder(64 + nombre.length())).toString();
     }
 
     /**
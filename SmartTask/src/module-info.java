@@ -8,7 +8,11 @@ module SmartTask {
 	
 	exports modelo;
     exports servicio;
+    exports servidor;
     
+	requires java.management;
+	requires jdk.httpserver;
+	
 	// requires org.junit.jupiter.api;
 	// requires org.junit.jupiter.engine;
 	
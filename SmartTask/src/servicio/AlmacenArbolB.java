@@ -0,0 +1,396 @@
+package servicio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import interfaces.AlmacenTareas;
+import modelo.EstadoTarea;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.Usuario;
+
+/**
+ * Almacén en un archivo de páginas con árboles B+, de modo que los datos
+ * no tienen que caber en memoria.
+ * 
+ * <p>
+ * El archivo guarda tres árboles ({@link ArbolBMas}) que comparten un pool
+ * de páginas de tamaño fijo ({@link PoolPaginas}), así que la memoria que
+ * usa el almacén no depende de cuántos datos tenga:
+ * </p>
+ * 
+ * <pre>
+ * usuarios:   id del usuario → registro del usuario, sin tareas
+ * tareas:     id de la tarea → dueño (int), estado (byte), prioridad (byte), registro de la tarea
+ * porUsuario: dueño y id de la tarea → nada
+ * </pre>
+ * 
+ * <p>
+ * Los registros usan el formato de {@link CodecBinario}. El dueño, el
+ * estado y la prioridad se repiten delante del registro de la tarea para
+ * que {@link #recorrerTareas(Filtro, Destino)} descarte las que no cumplen
+ * el filtro sin decodificarlas, y el árbol {@code porUsuario} permite
+ * recorrer las tareas de un usuario en orden de id sin recorrer las demás.
+ * La página 0 guarda la cabecera: la marca, el formato, las raíces de los
+ * árboles, la lista de páginas libres y los contadores.
+ * </p>
+ * 
+ * <p>
+ * Cada lectura devuelve objetos nuevos, y {@link #cargarUsuario(int)}
+ * devuelve el usuario sin tareas. Las páginas modificadas se escriben al
+ * desalojarlas del pool y todas al {@link #sincronizar() sincronizar} o
+ * cerrar; no hay registro de escritura anticipada, así que si el proceso
+ * termina entre una sincronización y otra el archivo puede quedar
+ * inconsistente. Esta clase no es segura para uso concurrente.
+ * </p>
+ */
+
+public class AlmacenArbolB implements AlmacenTareas {
+	
+	/** Marca de inicio del archivo ("STKA") */
+	public static final int MARCA = 0x53544B41;
+	
+	/** Versión del formato que se escribe */
+	public static final byte VERSION = 1;
+	
+	/** Páginas en memoria por defecto */
+	public static final int PAGINAS_EN_MEMORIA = 1024;
+	
+	/** Bytes delante del registro de una tarea: dueño, estado y prioridad */
+	private static final int DATOS_TAREA = Integer.BYTES + 2;
+	
+	/** Ids de tarea de un dueño que se buscan juntos al recorrerlas */
+	private static final int LOTE_IDS = 256;
+	
+	private static final EstadoTarea[] ESTADOS = EstadoTarea.values();
+	private static final Prioridad[] PRIORIDADES = Prioridad.values();
+	
+	private final PoolPaginas pool;
+	private final FileChannel canal;
+	private final CodecBinario codec = new CodecBinario();
+	
+	private final ArbolBMas usuarios;
+	private final ArbolBMas tareas;
+	private final ArbolBMas porUsuario;
+	
+	private int cantidadUsuarios;
+	private int cantidadTareas;
+	
+	private AlmacenArbolB(FileChannel canal, PoolPaginas pool, int raizUsuarios, int raizTareas,
+			int raizPorUsuario, int cantidadUsuarios, int cantidadTareas) {
+		this.canal = canal;
+		this.pool = pool;
+		this.usuarios = new ArbolBMas(pool, raizUsuarios);
+		this.tareas = new ArbolBMas(pool, raizTareas);
+		this.porUsuario = new ArbolBMas(pool, raizPorUsuario);
+		this.cantidadUsuarios = cantidadUsuarios;
+		this.cantidadTareas = cantidadTareas;
+	}
+	
+	/**
+	 * Abre un almacén con {@value #PAGINAS_EN_MEMORIA} páginas en memoria.
+	 * 
+	 * @param archivo archivo del almacén; se crea si no existe
+	 * @return almacén abierto
+	 * @throws IOException si no se puede abrir o no es un almacén válido
+	 */
+	public static AlmacenArbolB abrir(Path archivo) throws IOException {
+		return abrir(archivo, PAGINAS_EN_MEMORIA);
+	}
+	
+	/**
+	 * Abre un almacén.
+	 * 
+	 * @param archivo archivo del almacén; se crea si no existe
+	 * @param paginasEnMemoria páginas de {@value PoolPaginas#TAMANIO_PAGINA}
+	 * bytes que se mantienen en memoria, al menos 8
+	 * @return almacén abierto
+	 * @throws IOException si no se puede abrir o no es un almacén válido
+	 * @throws IllegalArgumentException si las páginas en memoria son menos de 8
+	 */
+	public static AlmacenArbolB abrir(Path archivo, int paginasEnMemoria) throws IOException {
+		FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			if (canal.size() == 0) {
+				PoolPaginas pool = new PoolPaginas(canal, paginasEnMemoria, 1, 0);
+				AlmacenArbolB almacen = new AlmacenArbolB(canal, pool, ArbolBMas.crear(pool), ArbolBMas.crear(pool),
+						ArbolBMas.crear(pool), 0, 0);
+				almacen.sincronizar();
+				return almacen;
+			}
+			
+			ByteBuffer cabecera = ByteBuffer.allocate(37);
+			while (cabecera.hasRemaining() && canal.read(cabecera, cabecera.position()) >= 0) {
+				// Sigue leyendo hasta completar la cabecera o llegar al final
+			}
+			if (cabecera.hasRemaining() || cabecera.getInt(0) != MARCA) {
+				throw new IOException("Almacén no válido: " + archivo);
+			}
+			if (cabecera.get(4) != VERSION || cabecera.getInt(5) != PoolPaginas.TAMANIO_PAGINA) {
+				throw new IOException("Versión de almacén no soportada: " + cabecera.get(4));
+			}
+			
+			PoolPaginas pool = new PoolPaginas(canal, paginasEnMemoria, cabecera.getInt(9), cabecera.getInt(13));
+			return new AlmacenArbolB(canal, pool, cabecera.getInt(17), cabecera.getInt(21), cabecera.getInt(25),
+					cabecera.getInt(29), cabecera.getInt(33));
+		} catch (IOException | RuntimeException e) {
+			canal.close();
+			throw e;
+		}
+	}
+	
+	// Usuarios
+	
+	@Override
+	public void guardarUsuario(Usuario usuario) {
+		Usuario existente = cargarUsuario(usuario.getId());
+		
+		if (existente != null && existente.getTipo() != usuario.getTipo()) {
+			throw new IllegalArgumentException("El usuario " + usuario.getId() + " ya existe con otro tipo.");
+		}
+		
+		ByteBuffer registro = ByteBuffer.allocate(codec.tamanio(FabricaModelo.nuevoUsuario(usuario.getId(),
+				usuario.getNombre(), usuario.getTipo())));
+		codec.escribir(registro, usuario, List.of());
+		if (usuarios.poner(usuario.getId(), registro.array())) {
+			cantidadUsuarios++;
+		}
+	}
+	
+	@Override
+	public Usuario cargarUsuario(int id) {
+		byte[] registro = usuarios.buscar(id);
+		
+		if (registro == null) {
+			return null;
+		}
+		
+		return codec.leerUsuario(ByteBuffer.wrap(registro));
+	}
+	
+	@Override
+	public void recorrerUsuarios(Consumer<? super Usuario> destino) {
+		usuarios.recorrer(Integer.MIN_VALUE, Integer.MAX_VALUE, (id, registro) -> {
+			destino.accept(codec.leerUsuario(registro));
+			return true;
+		});
+	}
+	
+	@Override
+	public void recorrerUsuarios(int desdeId, Predicate<? super Usuario> destino) {
+		usuarios.recorrer(desdeId, Integer.MAX_VALUE, (id, registro) -> destino.test(codec.leerUsuario(registro)));
+	}
+	
+	@Override
+	public int contarUsuarios() {
+		return cantidadUsuarios;
+	}
+	
+	// Tareas
+	
+	/**
+	 * {@inheritDoc} Las tareas se escriben en orden de id, para que las
+	 * consecutivas modifiquen las mismas hojas.
+	 */
+	@Override
+	public void guardarTareas(int usuarioId, List<Tarea> tareas) {
+		if (usuarios.buscar(usuarioId) == null) {
+			throw new IllegalArgumentException("Usuario no encontrado.");
+		}
+		
+		Tarea[] ordenadas = tareas.toArray(new Tarea[0]);
+		Arrays.sort(ordenadas, (a, b) -> Integer.compare(a.getId(), b.getId()));
+		
+		for (Tarea tarea : ordenadas) {
+			ByteBuffer registro = ByteBuffer.allocate(DATOS_TAREA + codec.tamanio(tarea));
+			registro.putInt(usuarioId)
+					.put((byte) tarea.getEstado().ordinal())
+					.put((byte) tarea.getPrioridad().ordinal());
+			codec.escribir(registro, tarea);
+			
+			byte[] anterior = this.tareas.buscar(tarea.getId());
+			if (anterior == null) {
+				cantidadTareas++;
+			} else if (ByteBuffer.wrap(anterior).getInt(0) != usuarioId) {
+				porUsuario.quitar(clavePorUsuario(ByteBuffer.wrap(anterior).getInt(0), tarea.getId()));
+			}
+			this.tareas.poner(tarea.getId(), registro.array());
+			porUsuario.poner(clavePorUsuario(usuarioId, tarea.getId()), new byte[0]);
+		}
+	}
+	
+	@Override
+	public Tarea cargarTarea(int id) {
+		byte[] registro = tareas.buscar(id);
+		
+		if (registro == null) {
+			return null;
+		}
+		
+		return codec.leerTarea(ByteBuffer.wrap(registro, DATOS_TAREA, registro.length - DATOS_TAREA));
+	}
+	
+	/**
+	 * {@inheritDoc} Los ids se buscan ordenados, de modo que los que caen
+	 * en la misma hoja la leen una sola vez.
+	 */
+	@Override
+	public List<Tarea> cargarTareas(int[] ids) {
+		long[] claves = Arrays.stream(ids).distinct().sorted().asLongStream().toArray();
+		Tarea[] encontradas = new Tarea[claves.length];
+		int[] siguiente = new int[1];
+		
+		tareas.buscarVarias(claves, (clave, registro) -> {
+			while (claves[siguiente[0]] != clave) {
+				siguiente[0]++;
+			}
+			encontradas[siguiente[0]] = codec.leerTarea(registro.position(registro.position() + DATOS_TAREA));
+			return true;
+		});
+		
+		List<Tarea> resultado = new ArrayList<>(ids.length);
+		for (int id : ids) {
+			resultado.add(encontradas[Arrays.binarySearch(claves, id)]);
+		}
+		return resultado;
+	}
+	
+	@Override
+	public boolean eliminarTarea(int id) {
+		byte[] registro = tareas.buscar(id);
+		
+		if (registro == null) {
+			return false;
+		}
+		
+		tareas.quitar(id);
+		porUsuario.quitar(clavePorUsuario(ByteBuffer.wrap(registro).getInt(0), id));
+		cantidadTareas--;
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc} Con dueño se recorre su rango de {@code porUsuario} y
+	 * se buscan sus tareas en orden; sin dueño se recorre el rango de ids
+	 * del árbol de tareas. En los dos casos el resto de condiciones se
+	 * comprueba sobre los bytes que preceden al registro.
+	 */
+	@Override
+	public int recorrerTareas(Filtro filtro, Destino destino) {
+		int[] entregadas = new int[1];
+		ArbolBMas.Visitante visitante = (clave, registro) -> {
+			int posicion = registro.position();
+			int usuarioId = registro.getInt(posicion);
+			EstadoTarea estado = ESTADOS[registro.get(posicion + 4)];
+			Prioridad prioridad = PRIORIDADES[registro.get(posicion + 5)];
+			if (!filtro.aceptaDatos(usuarioId, (int) clave, estado, prioridad)) {
+				return true;
+			}
+			
+			Tarea tarea = codec.leerTarea(registro.position(posicion + DATOS_TAREA));
+			if (!filtro.aceptaTarea(tarea)) {
+				return true;
+			}
+			entregadas[0]++;
+			return destino.aceptar(usuarioId, tarea);
+		};
+		
+		if (!filtro.tieneUsuario()) {
+			tareas.recorrer(filtro.getDesdeId(), filtro.getHastaId(), visitante);
+			return entregadas[0];
+		}
+		
+		// Los ids del dueño se leen por lotes, para no recorrer el resto del
+		// rango si el destino se detiene antes
+		boolean[] seguir = {true};
+		ArbolBMas.Visitante hastaDetenerse = (clave, registro) -> seguir[0] = visitante.visitar(clave, registro);
+		long[] lote = new long[LOTE_IDS];
+		long[] ultima = new long[1];
+		long desde = clavePorUsuario(filtro.getUsuarioId(), filtro.getDesdeId());
+		long hasta = clavePorUsuario(filtro.getUsuarioId(), filtro.getHastaId());
+		while (seguir[0]) {
+			int[] leidos = new int[1];
+			porUsuario.recorrer(desde, hasta, (clave, nada) -> {
+				lote[leidos[0]++] = (int) clave ^ Integer.MIN_VALUE;
+				ultima[0] = clave;
+				return leidos[0] < lote.length;
+			});
+			tareas.buscarVarias(Arrays.copyOf(lote, leidos[0]), hastaDetenerse);
+			
+			if (leidos[0] < lote.length || ultima[0] == hasta) {
+				break;
+			}
+			desde = ultima[0] + 1;
+		}
+		return entregadas[0];
+	}
+	
+	/**
+	 * Clave del árbol {@code porUsuario}: el dueño en la mitad alta y el id
+	 * de la tarea en la baja, con el signo invertido para que los negativos
+	 * queden antes.
+	 */
+	private static long clavePorUsuario(int usuarioId, int tareaId) {
+		return ((long) usuarioId << 32) | ((tareaId ^ 0x80000000L) & 0xFFFFFFFFL);
+	}
+	
+	@Override
+	public int contarTareas() {
+		return cantidadTareas;
+	}
+	
+	/** @return páginas leídas del archivo desde que se abrió */
+	public long getPaginasLeidas() {
+		return pool.getLecturas();
+	}
+	
+	/** @return páginas escritas en el archivo desde que se abrió */
+	public long getPaginasEscritas() {
+		return pool.getEscrituras();
+	}
+	
+	/**
+	 * Escribe la cabecera y las páginas modificadas y fuerza el archivo a
+	 * disco.
+	 */
+	@Override
+	public void sincronizar() throws IOException {
+		ByteBuffer cabecera = pool.fijar(0);
+		cabecera.putInt(0, MARCA)
+				.put(4, VERSION)
+				.putInt(5, PoolPaginas.TAMANIO_PAGINA)
+				.putInt(9, pool.getPaginas())
+				.putInt(13, pool.getPrimeraLibre())
+				.putInt(17, usuarios.getRaiz())
+				.putInt(21, tareas.getRaiz())
+				.putInt(25, porUsuario.getRaiz())
+				.putInt(29, cantidadUsuarios)
+				.putInt(33, cantidadTareas);
+		pool.soltar(0, true);
+		
+		pool.vaciar();
+		canal.force(true);
+	}
+	
+	/**
+	 * Sincroniza y cierra el archivo.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			sincronizar();
+		} finally {
+			pool.close();
+		}
+	}
+
+}
@@ -0,0 +1,624 @@
+package servicio;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import interfaces.AlmacenTareas;
+import modelo.Tarea;
+import modelo.Usuario;
+import util.MapaEnteros;
+
+/**
+ * Caché de usuarios con sus tareas delante de otro almacén, normalmente
+ * uno en disco como {@link AlmacenArbolB}.
+ * 
+ * <p>
+ * Guarda en memoria los usuarios más usados, cada uno con todas sus
+ * tareas, hasta un máximo de bytes estimados: como un usuario puede tener
+ * una tarea o cien mil, limitar la cantidad de usuarios no acotaría la
+ * memoria. Qué usuarios se conservan lo decide la política W-TinyLFU: los
+ * nuevos entran en una ventana LRU del 1 % de la capacidad, y al salir de
+ * ella compiten con el usuario que saldría de la parte principal, que se
+ * queda el de mayor frecuencia de acceso estimada
+ * ({@link SketchFrecuencias}). La parte principal es una LRU segmentada:
+ * los usuarios entran a prueba y pasan a la zona protegida (el 80 %) al
+ * volver a usarse. Así, un recorrido por muchos usuarios que se leen una
+ * sola vez no desaloja a los que se usan siempre.
+ * </p>
+ * 
+ * <p>
+ * Los cambios de tareas de un usuario en caché se escriben en el almacén
+ * de respaldo más tarde: al desalojarlo, al acumularse más pendientes que
+ * el máximo indicado, al sincronizar o cerrar, y antes de las operaciones
+ * que el respaldo debe responder con todos los datos, como contar o
+ * recorrer todas las tareas. Varios cambios de la misma tarea se escriben
+ * una sola vez, y si el respaldo falla al escribirlos siguen pendientes
+ * hasta el siguiente intento. Los usuarios y las eliminaciones se escriben
+ * en el acto.
+ * </p>
+ * 
+ * <p>
+ * La caché guarda copias: {@link #cargarUsuario(int)} devuelve el usuario
+ * en caché con sus tareas, que no debe modificarse, y los cambios solo se
+ * registran a través de {@link #guardarTareas(int, List)}. Esta clase no
+ * es segura para uso concurrente.
+ * </p>
+ */
+
+public class AlmacenCacheado implements AlmacenTareas {
+	
+	/** Tareas pendientes de escribir por defecto antes de escribirlas todas */
+	public static final int PENDIENTES_POR_DEFECTO = 10_000;
+	
+	/** Bytes estimados de un usuario sin tareas ni nombre, con sus índices */
+	private static final long BYTES_USUARIO = 256;
+	
+	/** Bytes estimados de una tarea sin su descripción, con su lugar en los índices del usuario */
+	private static final long BYTES_TAREA = 120;
+	
+	private static final int FUERA = -1;
+	private static final int VENTANA = 0;
+	private static final int PRUEBA = 1;
+	private static final int PROTEGIDA = 2;
+	
+	private final AlmacenTareas respaldo;
+	private final long maximoBytes;
+	private final long maximoVentana;
+	private final long maximoProtegida;
+	private final int maximoPendientes;
+	
+	/** Usuarios en caché por id */
+	private final Map<Integer, Entrada> entradas;
+	
+	/** Usuarios de la ventana, a prueba y protegidos, del menos al más reciente */
+	private final Lista[] regiones;
+	
+	private final SketchFrecuencias frecuencias;
+	
+	/** Tareas cambiadas aún no escritas: id de la tarea a id de su dueño */
+	private final MapaEnteros pendientes;
+	
+	/** Bytes estimados de los usuarios en caché */
+	private long bytes;
+	
+	private long aciertos;
+	private long fallos;
+	private long desalojos;
+	private long rechazos;
+	private long tareasEscritas;
+	
+	/**
+	 * Construye la caché con {@value #PENDIENTES_POR_DEFECTO} tareas
+	 * pendientes como máximo.
+	 * 
+	 * @param respaldo almacén con todos los datos
+	 * @param maximoBytes memoria estimada máxima de los usuarios en caché
+	 * @throws IllegalArgumentException si el máximo no es positivo
+	 */
+	public AlmacenCacheado(AlmacenTareas respaldo, long maximoBytes) {
+		this(respaldo, maximoBytes, PENDIENTES_POR_DEFECTO);
+	}
+	
+	/**
+	 * Construye la caché.
+	 * 
+	 * @param respaldo almacén con todos los datos
+	 * @param maximoBytes memoria estimada máxima de los usuarios en caché
+	 * @param maximoPendientes tareas cambiadas que se acumulan antes de
+	 * escribirlas todas; 0 para escribir cada cambio en el acto
+	 * @throws IllegalArgumentException si el máximo de bytes no es positivo
+	 * o el de pendientes es negativo
+	 */
+	public AlmacenCacheado(AlmacenTareas respaldo, long maximoBytes, int maximoPendientes) {
+		if (maximoBytes <= 0) {
+			throw new IllegalArgumentException("El máximo de bytes debe ser positivo: " + maximoBytes);
+		}
+		if (maximoPendientes < 0) {
+			throw new IllegalArgumentException("El máximo de pendientes no puede ser negativo: " + maximoPendientes);
+		}
+		
+		this.respaldo = respaldo;
+		this.maximoBytes = maximoBytes;
+		this.maximoVentana = Math.max(1, maximoBytes / 100);
+		this.maximoProtegida = (maximoBytes - maximoVentana) * 8 / 10;
+		this.maximoPendientes = maximoPendientes;
+		this.entradas = new HashMap<>();
+		this.regiones = new Lista[] { new Lista(), new Lista(), new Lista() };
+		// Se siguen más claves de las que caben, para que las de un recorrido no saturen los contadores
+		this.frecuencias = new SketchFrecuencias((int) Math.min(Integer.MAX_VALUE, 4 * (maximoBytes / BYTES_USUARIO)));
+		this.pendientes = new MapaEnteros();
+	}
+	
+	// Usuarios
+	
+	/**
+	 * {@inheritDoc} Si el usuario está en caché, también se cambia su nombre
+	 * en ella.
+	 */
+	@Override
+	public void guardarUsuario(Usuario usuario) {
+		respaldo.guardarUsuario(usuario);
+		
+		Entrada entrada = entradas.get(usuario.getId());
+		if (entrada != null) {
+			redimensionar(entrada, 2L * (usuario.getNombre().length() - entrada.usuario.getNombre().length()));
+			entrada.usuario.setNombre(usuario.getNombre());
+			equilibrar();
+		}
+	}
+	
+	/**
+	 * {@inheritDoc} El usuario se devuelve con sus tareas, y si no estaba
+	 * en caché se carga del respaldo y se ofrece a la caché.
+	 */
+	@Override
+	public Usuario cargarUsuario(int id) {
+		Entrada entrada = obtener(id);
+		return entrada == null ? null : entrada.usuario;
+	}
+	
+	@Override
+	public void recorrerUsuarios(Consumer<? super Usuario> destino) {
+		respaldo.recorrerUsuarios(destino);
+	}
+	
+	@Override
+	public void recorrerUsuarios(int desdeId, Predicate<? super Usuario> destino) {
+		respaldo.recorrerUsuarios(desdeId, destino);
+	}
+	
+	@Override
+	public int contarUsuarios() {
+		return respaldo.contarUsuarios();
+	}
+	
+	// Tareas
+	
+	/**
+	 * {@inheritDoc} Si el usuario cabe en la caché, las tareas se copian en
+	 * ella y se escriben en el respaldo más tarde; si no, se escriben en el
+	 * acto.
+	 */
+	@Override
+	public void guardarTareas(int usuarioId, List<Tarea> tareas) {
+		Entrada entrada = obtener(usuarioId);
+		
+		if (entrada == null) {
+			throw new IllegalArgumentException("Usuario no encontrado.");
+		}
+		if (entrada.region == FUERA) {
+			respaldo.guardarTareas(usuarioId, tareas);
+			return;
+		}
+		
+		for (Tarea tarea : tareas) {
+			int id = tarea.getId();
+			if (pendientes.contiene(id) && pendientes.get(id) != usuarioId) {
+				// La tarea pendiente cambió de dueño
+				Entrada anterior = entradas.get(pendientes.remove(id));
+				anterior.pendientes--;
+				quitarTarea(anterior, id);
+			}
+			
+			quitarTarea(entrada, id);
+			Tarea copia = FabricaModelo.copiarTarea(tarea);
+			entrada.usuario.agregarTarea(copia);
+			redimensionar(entrada, estimar(copia));
+			
+			if (!pendientes.contiene(id)) {
+				pendientes.put(id, usuarioId);
+				entrada.pendientes++;
+			}
+		}
+		
+		if (pendientes.size() > maximoPendientes) {
+			escribirPendientes();
+		}
+		equilibrar();
+	}
+	
+	/**
+	 * {@inheritDoc} Las tareas con cambios pendientes se leen de la caché y
+	 * el resto del respaldo.
+	 */
+	@Override
+	public Tarea cargarTarea(int id) {
+		if (pendientes.contiene(id)) {
+			return entradas.get(pendientes.get(id)).usuario.buscarTarea(id);
+		}
+		return respaldo.cargarTarea(id);
+	}
+	
+	/**
+	 * {@inheritDoc} Las que no tienen cambios pendientes se piden al
+	 * respaldo en un solo lote.
+	 */
+	@Override
+	public List<Tarea> cargarTareas(int[] ids) {
+		int[] restantes = new int[ids.length];
+		int cantidad = 0;
+		for (int id : ids) {
+			if (!pendientes.contiene(id)) {
+				restantes[cantidad++] = id;
+			}
+		}
+		
+		List<Tarea> delRespaldo = respaldo.cargarTareas(Arrays.copyOf(restantes, cantidad));
+		List<Tarea> resultado = new ArrayList<>(ids.length);
+		int siguiente = 0;
+		for (int id : ids) {
+			resultado.add(pendientes.contiene(id) ? cargarTarea(id) : delRespaldo.get(siguiente++));
+		}
+		return resultado;
+	}
+	
+	@Override
+	public boolean eliminarTarea(int id) {
+		Entrada[] duenio = new Entrada[1];
+		boolean existia = false;
+		
+		if (pendientes.contiene(id)) {
+			duenio[0] = entradas.get(pendientes.remove(id));
+			duenio[0].pendientes--;
+			existia = true;
+		} else {
+			// Se busca el dueño en el respaldo por si está en caché
+			respaldo.recorrerTareas(Filtro.TODAS.entreIds(id, id), (usuarioId, tarea) -> {
+				duenio[0] = entradas.get(usuarioId);
+				return false;
+			});
+		}
+		
+		if (duenio[0] != null) {
+			quitarTarea(duenio[0], id);
+		}
+		return respaldo.eliminarTarea(id) || existia;
+	}
+	
+	/**
+	 * {@inheritDoc} Si el filtro fija el dueño, se recorre su copia en
+	 * caché, cargándola si hace falta; si no, se escriben antes los cambios
+	 * pendientes y se recorre el respaldo.
+	 */
+	@Override
+	public int recorrerTareas(Filtro filtro, Destino destino) {
+		if (!filtro.tieneUsuario()) {
+			escribirPendientes();
+			return respaldo.recorrerTareas(filtro, destino);
+		}
+		
+		Entrada entrada = obtener(filtro.getUsuarioId());
+		if (entrada == null) {
+			return 0;
+		}
+		
+		Usuario usuario = entrada.usuario;
+		int entregadas = 0;
+		for (Tarea tarea : AlmacenMemoria.candidatas(usuario, filtro)) {
+			if (filtro.aceptaDatos(usuario.getId(), tarea.getId(), tarea.getEstado(), tarea.getPrioridad())
+					&& filtro.aceptaTarea(tarea)) {
+				entregadas++;
+				if (!destino.aceptar(usuario.getId(), tarea)) {
+					return entregadas;
+				}
+			}
+		}
+		return entregadas;
+	}
+	
+	@Override
+	public int contarTareas() {
+		escribirPendientes();
+		return respaldo.contarTareas();
+	}
+	
+	// Política de la caché
+	
+	/**
+	 * Devuelve la entrada de un usuario, cargándola del respaldo si no está
+	 * en caché. Si no cabe o pierde la admisión se devuelve igualmente,
+	 * fuera de la caché.
+	 */
+	private Entrada obtener(int id) {
+		frecuencias.incrementar(id);
+		
+		Entrada entrada = entradas.get(id);
+		if (entrada != null) {
+			aciertos++;
+			alAcceder(entrada);
+			return entrada;
+		}
+		
+		fallos++;
+		Usuario guardado = respaldo.cargarUsuario(id);
+		if (guardado == null) {
+			return null;
+		}
+		
+		List<Tarea> tareas = new ArrayList<>();
+		respaldo.recorrerTareas(Filtro.TODAS.deUsuario(id), (usuarioId, tarea) -> tareas.add(tarea));
+		
+		Usuario usuario = FabricaModelo.nuevoUsuario(id, guardado.getNombre(), guardado.getTipo());
+		usuario.asegurarCapacidad(tareas.size());
+		for (Tarea tarea : tareas) {
+			usuario.agregarTarea(FabricaModelo.copiarTarea(tarea));
+		}
+		
+		entrada = new Entrada(usuario, estimar(usuario));
+		if (entrada.bytes > maximoBytes) {
+			rechazos++;
+			return entrada;
+		}
+		
+		entradas.put(id, entrada);
+		regiones[VENTANA].agregar(entrada, VENTANA);
+		bytes += entrada.bytes;
+		equilibrar();
+		return entrada;
+	}
+	
+	/**
+	 * Mueve al final de su región a un usuario usado, o lo asciende a la
+	 * zona protegida si estaba a prueba.
+	 */
+	private void alAcceder(Entrada entrada) {
+		int region = entrada.region;
+		regiones[region].quitar(entrada);
+		
+		if (region != PRUEBA) {
+			regiones[region].agregar(entrada, region);
+			return;
+		}
+		
+		regiones[PROTEGIDA].agregar(entrada, PROTEGIDA);
+		while (regiones[PROTEGIDA].bytes > maximoProtegida && regiones[PROTEGIDA].primera != entrada) {
+			Entrada degradada = regiones[PROTEGIDA].primera;
+			regiones[PROTEGIDA].quitar(degradada);
+			regiones[PRUEBA].agregar(degradada, PRUEBA);
+		}
+	}
+	
+	/**
+	 * Pasa a prueba los usuarios que desbordan la ventana y desaloja hasta
+	 * volver al máximo de bytes. Cada usuario que sale de la ventana compite
+	 * con el más antiguo a prueba y se desaloja el de menor frecuencia.
+	 */
+	private void equilibrar() {
+		Entrada candidata = null;
+		while (regiones[VENTANA].bytes > maximoVentana) {
+			Entrada saliente = regiones[VENTANA].primera;
+			regiones[VENTANA].quitar(saliente);
+			regiones[PRUEBA].agregar(saliente, PRUEBA);
+			if (candidata == null) {
+				candidata = saliente;
+			}
+		}
+		
+		while (bytes > maximoBytes) {
+			Entrada victima = regiones[PRUEBA].primera;
+			if (victima == null) {
+				victima = regiones[PROTEGIDA].primera != null ? regiones[PROTEGIDA].primera : regiones[VENTANA].primera;
+			}
+			
+			if (candidata == null || victima == candidata || victima.region != PRUEBA) {
+				if (victima == candidata) {
+					candidata = candidata.siguiente;
+				}
+				desalojar(victima);
+			} else if (frecuencias.frecuencia(candidata.usuario.getId()) > frecuencias.frecuencia(victima.usuario.getId())) {
+				desalojar(victima);
+			} else {
+				Entrada siguiente = candidata.siguiente;
+				desalojar(candidata);
+				candidata = siguiente;
+			}
+		}
+	}
+	
+	private void desalojar(Entrada entrada) {
+		escribirPendientes(entrada);
+		regiones[entrada.region].quitar(entrada);
+		entradas.remove(entrada.usuario.getId());
+		bytes -= entrada.bytes;
+		entrada.region = FUERA;
+		desalojos++;
+	}
+	
+	private void quitarTarea(Entrada entrada, int id) {
+		Tarea tarea = entrada.usuario.buscarTarea(id);
+		if (tarea != null) {
+			entrada.usuario.eliminarTarea(id);
+			redimensionar(entrada, -estimar(tarea));
+		}
+	}
+	
+	private void redimensionar(Entrada entrada, long diferencia) {
+		entrada.bytes += diferencia;
+		if (entrada.region != FUERA) {
+			regiones[entrada.region].bytes += diferencia;
+			bytes += diferencia;
+		}
+	}
+	
+	private static long estimar(Usuario usuario) {
+		long total = BYTES_USUARIO + 2L * usuario.getNombre().length();
+		for (Tarea tarea : usuario.getTareas()) {
+			total += estimar(tarea);
+		}
+		return total;
+	}
+	
+	private static long estimar(Tarea tarea) {
+		return BYTES_TAREA + 2L * tarea.getDescripcion().length();
+	}
+	
+	// Escritura diferida
+	
+	/**
+	 * Escribe en el respaldo todos los cambios de tareas pendientes.
+	 */
+	public void escribirPendientes() {
+		if (pendientes.isEmpty()) {
+			return;
+		}
+		for (Entrada entrada : entradas.values()) {
+			escribirPendientes(entrada);
+		}
+	}
+	
+	private void escribirPendientes(Entrada entrada) {
+		if (entrada.pendientes == 0) {
+			return;
+		}
+		
+		int usuarioId = entrada.usuario.getId();
+		// Se escriben copias, por si el respaldo guarda los propios objetos
+		List<Tarea> cambiadas = new ArrayList<>(entrada.pendientes);
+		for (Tarea tarea : entrada.usuario.getTareas()) {
+			if (pendientes.contiene(tarea.getId()) && pendientes.get(tarea.getId()) == usuarioId) {
+				cambiadas.add(FabricaModelo.copiarTarea(tarea));
+			}
+		}
+		
+		// Si el respaldo falla, los cambios siguen pendientes para el siguiente intento
+		respaldo.guardarTareas(usuarioId, cambiadas);
+		for (Tarea tarea : cambiadas) {
+			pendientes.remove(tarea.getId());
+		}
+		tareasEscritas += cambiadas.size();
+		entrada.pendientes = 0;
+	}
+	
+	// Estadísticas
+	
+	/** @return usuarios pedidos que estaban en caché */
+	public long getAciertos() {
+		return aciertos;
+	}
+	
+	/** @return usuarios pedidos que no estaban en caché */
+	public long getFallos() {
+		return fallos;
+	}
+	
+	/** @return usuarios desalojados, incluidos los que no superaron la admisión */
+	public long getDesalojos() {
+		return desalojos;
+	}
+	
+	/** @return usuarios cargados que no cabían en la caché */
+	public long getRechazos() {
+		return rechazos;
+	}
+	
+	/** @return tareas escritas en el respaldo de forma diferida */
+	public long getTareasEscritas() {
+		return tareasEscritas;
+	}
+	
+	/** @return tareas con cambios pendientes de escribir */
+	public int getPendientes() {
+		return pendientes.size();
+	}
+	
+	/** @return usuarios en caché */
+	public int getUsuariosEnCache() {
+		return entradas.size();
+	}
+	
+	/** @return bytes estimados de los usuarios en caché */
+	public long getBytes() {
+		return bytes;
+	}
+	
+	/** @return máximo de bytes estimados */
+	public long getMaximoBytes() {
+		return maximoBytes;
+	}
+	
+	/**
+	 * Escribe los cambios pendientes y sincroniza el respaldo.
+	 */
+	@Override
+	public void sincronizar() throws IOException {
+		escribirPendientes();
+		respaldo.sincronizar();
+	}
+	
+	/**
+	 * Escribe los cambios pendientes y cierra el respaldo.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			escribirPendientes();
+		} finally {
+			respaldo.close();
+		}
+	}
+	
+	/**
+	 * Usuario en caché, enlazado en la lista de su región.
+	 */
+	private static final class Entrada {
+		
+		final Usuario usuario;
+		long bytes;
+		int region = FUERA;
+		int pendientes;
+		Entrada anterior;
+		Entrada siguiente;
+		
+		Entrada(Usuario usuario, long bytes) {
+			this.usuario = usuario;
+			this.bytes = bytes;
+		}
+	}
+	
+	/**
+	 * Lista doblemente enlazada de las entradas de una región, del menos al
+	 * más recientemente usado, con la suma de sus bytes.
+	 */
+	private static final class Lista {
+		
+		Entrada primera;
+		Entrada ultima;
+		long bytes;
+		
+		void agregar(Entrada entrada, int region) {
+			entrada.region = region;
+			entrada.anterior = ultima;
+			entrada.siguiente = null;
+			if (ultima == null) {
+				primera = entrada;
+			} else {
+				ultima.siguiente = entrada;
+			}
+			ultima = entrada;
+			bytes += entrada.bytes;
+		}
+		
+		void quitar(Entrada entrada) {
+			if (entrada.anterior == null) {
+				primera = entrada.siguiente;
+			} else {
+				entrada.anterior.siguiente = entrada.siguiente;
+			}
+			if (entrada.siguiente == null) {
+				ultima = entrada.anterior;
+			} else {
+				entrada.siguiente.anterior = entrada.anterior;
+			}
+			entrada.anterior = null;
+			entrada.siguiente = null;
+			bytes -= entrada.bytes;
+		}
+	}
+
+}
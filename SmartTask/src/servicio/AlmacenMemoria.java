@@ -0,0 +1,272 @@
+package servicio;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import interfaces.AlmacenTareas;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import util.MapaEnteros;
+
+/**
+ * Almacén en memoria, el que usa {@link GestorTareasServicio} por defecto.
+ * 
+ * <p>
+ * Guarda los propios objetos: los usuarios en una lista con un índice por
+ * id y agrupados por tipo, y las tareas dentro de su usuario, así que
+ * leer no copia nada y los cambios sobre los objetos ya son el estado del
+ * almacén. Como las tareas se localizan a través de su dueño, buscar o
+ * eliminar una tarea solo por su id recorre los usuarios; filtrar por
+ * dueño, estado o prioridad usa los grupos que mantiene cada usuario.
+ * </p>
+ */
+
+public class AlmacenMemoria implements AlmacenTareas {
+	
+	/** Usuarios en orden de registro */
+	private final List<Usuario> usuarios;
+	
+	/** Índice de usuarios: id del usuario a su posición en {@link #usuarios} */
+	private final MapaEnteros indiceUsuarios;
+	
+	/** Usuarios agrupados por tipo, en orden de registro */
+	private final Map<TipoUsuario, List<Usuario>> usuariosPorTipo;
+	
+	/** Si los usuarios se registraron en orden de id (lo habitual) */
+	private boolean ordenadosPorId;
+	
+	/**
+	 * Construye un almacén vacío.
+	 */
+	public AlmacenMemoria() {
+		this.usuarios = new ArrayList<>();
+		this.indiceUsuarios = new MapaEnteros();
+		this.usuariosPorTipo = new EnumMap<>(TipoUsuario.class);
+		for (TipoUsuario tipo : TipoUsuario.values()) {
+			this.usuariosPorTipo.put(tipo, new ArrayList<>());
+		}
+		this.ordenadosPorId = true;
+	}
+	
+	// Usuarios
+	
+	@Override
+	public void guardarUsuario(Usuario usuario) {
+		Usuario existente = cargarUsuario(usuario.getId());
+		
+		if (existente == null) {
+			ordenadosPorId &= usuarios.isEmpty() || usuario.getId() > usuarios.get(usuarios.size() - 1).getId();
+			indiceUsuarios.put(usuario.getId(), usuarios.size());
+			usuarios.add(usuario);
+			usuariosPorTipo.get(usuario.getTipo()).add(usuario);
+			return;
+		}
+		if (existente.getTipo() != usuario.getTipo()) {
+			throw new IllegalArgumentException("El usuario " + usuario.getId() + " ya existe con otro tipo.");
+		}
+		existente.setNombre(usuario.getNombre());
+	}
+	
+	@Override
+	public Usuario cargarUsuario(int id) {
+		int posicion = indiceUsuarios.get(id);
+		
+		if (posicion == MapaEnteros.NO_ENCONTRADO) {
+			return null;
+		}
+		
+		return usuarios.get(posicion);
+	}
+	
+	@Override
+	public void recorrerUsuarios(Consumer<? super Usuario> destino) {
+		usuarios.forEach(destino);
+	}
+	
+	/**
+	 * {@inheritDoc} Si los usuarios se registraron en orden de id, el
+	 * primero se localiza con una búsqueda binaria; si no, se recorre una
+	 * copia ordenada.
+	 */
+	@Override
+	public void recorrerUsuarios(int desdeId, Predicate<? super Usuario> destino) {
+		List<Usuario> ordenados = usuarios;
+		if (!ordenadosPorId) {
+			ordenados = new ArrayList<>(usuarios);
+			ordenados.sort(Comparator.comparingInt(Usuario::getId));
+		}
+		
+		for (int i = Paginacion.primeroDespuesDe(ordenados, desdeId - 1L); i < ordenados.size(); i++) {
+			if (!destino.test(ordenados.get(i))) {
+				return;
+			}
+		}
+	}
+	
+	@Override
+	public int contarUsuarios() {
+		return usuarios.size();
+	}
+	
+	/**
+	 * Comprueba si existe un usuario.
+	 * 
+	 * @param id identificador del usuario
+	 * @return true si existe
+	 */
+	boolean contieneUsuario(int id) {
+		return indiceUsuarios.contiene(id);
+	}
+	
+	/**
+	 * Devuelve la lista de usuarios en orden de registro, sin copiarla.
+	 * 
+	 * @return lista interna de usuarios; no debe modificarse
+	 */
+	List<Usuario> usuarios() {
+		return usuarios;
+	}
+	
+	/**
+	 * Devuelve una vista no modificable de los usuarios de un tipo.
+	 * 
+	 * @param tipo tipo de usuario
+	 * @return usuarios del tipo en orden de registro, vacía si el tipo es null
+	 */
+	List<Usuario> usuariosDeTipo(TipoUsuario tipo) {
+		List<Usuario> grupo = usuariosPorTipo.get(tipo);
+		
+		if (grupo == null) {
+			return Collections.emptyList();
+		}
+		
+		return Collections.unmodifiableList(grupo);
+	}
+	
+	// Tareas
+	
+	@Override
+	public void guardarTareas(int usuarioId, List<Tarea> tareas) {
+		Usuario usuario = cargarUsuario(usuarioId);
+		
+		if (usuario == null) {
+			throw new IllegalArgumentException("Usuario no encontrado.");
+		}
+		
+		usuario.asegurarCapacidad(tareas.size());
+		for (Tarea tarea : tareas) {
+			Tarea existente = usuario.buscarTarea(tarea.getId());
+			if (existente == tarea) {
+				continue;
+			}
+			if (existente != null) {
+				usuario.eliminarTarea(tarea.getId());
+			}
+			usuario.agregarTarea(tarea);
+		}
+	}
+	
+	@Override
+	public Tarea cargarTarea(int id) {
+		for (Usuario usuario : usuarios) {
+			Tarea tarea = usuario.buscarTarea(id);
+			if (tarea != null) {
+				return tarea;
+			}
+		}
+		return null;
+	}
+	
+	@Override
+	public List<Tarea> cargarTareas(int[] ids) {
+		List<Tarea> tareas = new ArrayList<>(ids.length);
+		for (int id : ids) {
+			tareas.add(cargarTarea(id));
+		}
+		return tareas;
+	}
+	
+	@Override
+	public boolean eliminarTarea(int id) {
+		for (Usuario usuario : usuarios) {
+			if (usuario.eliminarTarea(id)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	@Override
+	public int recorrerTareas(Filtro filtro, Destino destino) {
+		List<Usuario> duenios = usuarios;
+		if (filtro.tieneUsuario()) {
+			Usuario usuario = cargarUsuario(filtro.getUsuarioId());
+			duenios = usuario == null ? List.of() : List.of(usuario);
+		}
+		
+		int entregadas = 0;
+		for (Usuario usuario : duenios) {
+			for (Tarea tarea : candidatas(usuario, filtro)) {
+				if (filtro.aceptaDatos(usuario.getId(), tarea.getId(), tarea.getEstado(), tarea.getPrioridad())
+						&& filtro.aceptaTarea(tarea)) {
+					entregadas++;
+					if (!destino.aceptar(usuario.getId(), tarea)) {
+						return entregadas;
+					}
+				}
+			}
+		}
+		return entregadas;
+	}
+	
+	/**
+	 * Devuelve en orden de id las tareas del usuario que hay que comprobar:
+	 * las de los grupos del estado o la prioridad si el filtro los fija, y
+	 * si no, las que empiezan en el menor id del filtro.
+	 */
+	static Iterable<Tarea> candidatas(Usuario usuario, Filtro filtro) {
+		if (filtro.getEstado() == null && filtro.getPrioridad() == null) {
+			return usuario.tareasDesde(filtro.getDesdeId());
+		}
+		
+		List<Tarea> grupo = new ArrayList<>();
+		for (Tarea tarea : filtro.getEstado() != null
+				? usuario.tareasConEstado(filtro.getEstado())
+				: usuario.tareasConPrioridad(filtro.getPrioridad())) {
+			grupo.add(tarea);
+		}
+		grupo.sort(Comparator.comparingInt(Tarea::getId));
+		return grupo;
+	}
+	
+	@Override
+	public int contarTareas() {
+		int total = 0;
+		for (Usuario usuario : usuarios) {
+			total += usuario.getTareas().size();
+		}
+		return total;
+	}
+	
+	/**
+	 * No hace nada: el almacén no tiene almacenamiento estable.
+	 */
+	@Override
+	public void sincronizar() {
+	}
+	
+	/**
+	 * No hace nada: el almacén no retiene recursos.
+	 */
+	@Override
+	public void close() {
+	}
+
+}
@@ -0,0 +1,146 @@
+package servicio;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Reparto de los usuarios entre los fragmentos de un
+ * {@link GestorTareasFragmentado} por hashing consistente de su id.
+ * 
+ * <p>
+ * Cada fragmento ocupa {@value #NODOS_VIRTUALES} puntos de un anillo de 64
+ * bits, y un id pertenece al fragmento del primer punto que sigue a su
+ * hash. Con tantos puntos por fragmento el reparto es casi uniforme, y
+ * como los puntos de un fragmento solo dependen de su número, un anillo
+ * con un fragmento más solo cambia de dueño alrededor de 1/N de los ids.
+ * Cada fragmento genera los ids de sus usuarios saltando los que no le
+ * pertenecen, así que el dueño de un usuario se calcula a partir de su id
+ * sin consultar a nadie.
+ * </p>
+ * 
+ * <p>
+ * Una tarea se guarda con su usuario, no según su id, así que sus ids solo
+ * deben ser únicos: cada fragmento los genera seguidos dentro de su propio
+ * rango, lo que permite reservar bloques consecutivos sin coordinarse con
+ * los demás. Los ids positivos se reparten a partes iguales entre los
+ * fragmentos, así que con uno solo se dispone de todos.
+ * </p>
+ */
+
+final class AnilloFragmentos {
+	
+	/** Puntos de cada fragmento en el anillo */
+	static final int NODOS_VIRTUALES = 64;
+	
+	/** Fragmentos como máximo, con rangos de al menos 2^24 ids de tarea */
+	static final int MAXIMO_FRAGMENTOS = 128;
+	
+	/** Separa los hashes de los puntos de los de los ids */
+	private static final long SEMILLA_PUNTOS = 0x5DEECE66DL;
+	
+	/** Puntos del anillo en orden creciente */
+	private final long[] puntos;
+	
+	/** Fragmento de cada punto */
+	private final int[] duenios;
+	
+	private final int fragmentos;
+	
+	/** Ids de tarea del rango de cada fragmento */
+	private final int tareasPorFragmento;
+	
+	/**
+	 * Construye el anillo.
+	 * 
+	 * @param fragmentos número de fragmentos
+	 * @throws IllegalArgumentException si no está entre 1 y
+	 * {@value #MAXIMO_FRAGMENTOS}
+	 */
+	AnilloFragmentos(int fragmentos) {
+		if (fragmentos < 1 || fragmentos > MAXIMO_FRAGMENTOS) {
+			throw new IllegalArgumentException("Número de fragmentos no válido: " + fragmentos);
+		}
+		
+		long[] hashes = new long[fragmentos * NODOS_VIRTUALES];
+		for (int i = 0; i < hashes.length; i++) {
+			long nodo = ((long) (i / NODOS_VIRTUALES) << 32) | (i % NODOS_VIRTUALES);
+			hashes[i] = mezclar(nodo ^ SEMILLA_PUNTOS);
+		}
+		int[] orden = IntStream.range(0, hashes.length).boxed()
+				.sorted(Comparator.comparingLong(i -> hashes[i]))
+				.mapToInt(Integer::intValue)
+				.toArray();
+		
+		this.puntos = new long[hashes.length];
+		this.duenios = new int[hashes.length];
+		for (int i = 0; i < orden.length; i++) {
+			puntos[i] = hashes[orden[i]];
+			duenios[i] = orden[i] / NODOS_VIRTUALES;
+		}
+		this.fragmentos = fragmentos;
+		this.tareasPorFragmento = Integer.MAX_VALUE / fragmentos;
+	}
+	
+	/**
+	 * @return número de fragmentos
+	 */
+	int getFragmentos() {
+		return fragmentos;
+	}
+	
+	/**
+	 * Devuelve el fragmento al que pertenece un id de usuario.
+	 * 
+	 * @param usuarioId id del usuario
+	 * @return número del fragmento
+	 */
+	int fragmentoDe(int usuarioId) {
+		int posicion = Arrays.binarySearch(puntos, mezclar(usuarioId));
+		if (posicion < 0) {
+			posicion = -posicion - 1;
+		}
+		return duenios[posicion == puntos.length ? 0 : posicion];
+	}
+	
+	/**
+	 * Busca el primer id de usuario del fragmento a partir de uno dado.
+	 * 
+	 * @param fragmento número del fragmento
+	 * @param desde primer id candidato
+	 * @return id del fragmento, mayor o igual que {@code desde}
+	 * @throws IllegalStateException si no quedan ids para el fragmento
+	 */
+	int siguienteUsuario(int fragmento, int desde) {
+		for (long id = desde; id <= Integer.MAX_VALUE; id++) {
+			if (fragmentoDe((int) id) == fragmento) {
+				return (int) id;
+			}
+		}
+		throw new IllegalStateException("Ids de usuario agotados en el fragmento " + fragmento);
+	}
+	
+	/**
+	 * @param fragmento número del fragmento
+	 * @return primer id de tarea del rango del fragmento
+	 */
+	int primeraTarea(int fragmento) {
+		return fragmento == 0 ? 1 : fragmento * tareasPorFragmento;
+	}
+	
+	/**
+	 * @param fragmento número del fragmento
+	 * @return primer id de tarea que ya no es del fragmento
+	 */
+	int limiteTareas(int fragmento) {
+		return fragmento == fragmentos - 1 ? Integer.MAX_VALUE : (fragmento + 1) * tareasPorFragmento;
+	}
+	
+	/** Finalizador de SplitMix64 */
+	private static long mezclar(long valor) {
+		valor = (valor ^ (valor >>> 30)) * 0xBF58476D1CE4E5B9L;
+		valor = (valor ^ (valor >>> 27)) * 0x94D049BB133111EBL;
+		return valor ^ (valor >>> 31);
+	}
+
+}
@@ -0,0 +1,640 @@
+package servicio;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Árbol B+ de claves {@code long} y valores binarios guardado en páginas
+ * de un {@link PoolPaginas}.
+ * 
+ * <p>
+ * Los nodos internos guardan solo claves e hijos, hasta
+ * {@value #MAXIMO_CLAVES_INTERNO} por página, así que con millones de
+ * claves el árbol tiene tres o cuatro niveles y buscar una clave lee otras
+ * tantas páginas. Las hojas están enlazadas en orden para recorrer rangos.
+ * Cada hoja es una página con ranuras ordenadas (clave, posición y
+ * longitud del valor) al principio y los valores al final; los valores de
+ * más de {@value #MAXIMO_EN_LINEA} bytes se guardan en una cadena de
+ * páginas de desborde y la hoja solo guarda su referencia.
+ * </p>
+ * 
+ * <p>
+ * Las búsquedas leen las páginas sin copiarlas. Las escrituras decodifican
+ * la hoja, la modifican y la vuelven a escribir entera; si no cabe se
+ * divide en dos, y al agregar detrás de la última clave la hoja llena se
+ * queda como está y la clave pasa a una hoja nueva, de modo que insertar
+ * en orden deja las hojas llenas. Borrar no fusiona nodos: las hojas que
+ * se vacían se reutilizan al insertar de nuevo en su rango. Esta clase no
+ * es segura para uso concurrente.
+ * </p>
+ */
+
+final class ArbolBMas {
+	
+	/** Mayor valor que se guarda dentro de la hoja */
+	static final int MAXIMO_EN_LINEA = 1024;
+	
+	private static final byte HOJA = 1;
+	private static final byte INTERNO = 2;
+	private static final byte DESBORDE = 3;
+	
+	/** Tipo (1), cantidad (2) y siguiente página (4), con relleno */
+	private static final int CABECERA = 16;
+	
+	/** Ranura de hoja: clave, posición y longitud; o de nodo interno: clave e hijo */
+	private static final int RANURA = 12;
+	
+	/** Bit de la longitud que indica un valor desbordado */
+	private static final int MARCA_DESBORDE = 0x8000;
+	
+	/** Referencia a un valor desbordado: primera página y longitud */
+	private static final int REFERENCIA = 8;
+	
+	private static final int MAXIMO_CLAVES_INTERNO = (PoolPaginas.TAMANIO_PAGINA - CABECERA - 4) / RANURA;
+	
+	private static final int DATOS_DESBORDE = PoolPaginas.TAMANIO_PAGINA - CABECERA;
+	
+	private static final int PROFUNDIDAD_MAXIMA = 16;
+	
+	/**
+	 * Recibe los valores de un recorrido.
+	 */
+	@FunctionalInterface
+	interface Visitante {
+		
+		/**
+		 * Recibe una entrada.
+		 * 
+		 * @param clave clave de la entrada
+		 * @param valor valor entre la posición y el límite; solo es válido
+		 * durante la llamada
+		 * @return true para seguir recorriendo
+		 */
+		boolean visitar(long clave, ByteBuffer valor);
+	}
+	
+	private final PoolPaginas pool;
+	
+	/** Página de la raíz */
+	private int raiz;
+	
+	/**
+	 * Abre un árbol ya creado.
+	 * 
+	 * @param pool páginas del archivo
+	 * @param raiz página de la raíz
+	 */
+	ArbolBMas(PoolPaginas pool, int raiz) {
+		this.pool = pool;
+		this.raiz = raiz;
+	}
+	
+	/**
+	 * Crea un árbol vacío.
+	 * 
+	 * @param pool páginas del archivo
+	 * @return página de su raíz
+	 */
+	static int crear(PoolPaginas pool) {
+		int pagina = pool.reservar();
+		ByteBuffer contenido = pool.fijar(pagina);
+		try {
+			escribirHoja(contenido, new Hoja(0), 0, 0, 0);
+		} finally {
+			pool.soltar(pagina, true);
+		}
+		return pagina;
+	}
+	
+	/** @return página de la raíz, que cambia cuando la raíz se divide */
+	int getRaiz() {
+		return raiz;
+	}
+	
+	// Lectura
+	
+	/**
+	 * Busca el valor de una clave.
+	 * 
+	 * @param clave clave a buscar
+	 * @return copia del valor, o null si la clave no existe
+	 */
+	byte[] buscar(long clave) {
+		byte[][] encontrado = new byte[1][];
+		recorrer(clave, clave, (c, valor) -> {
+			encontrado[0] = new byte[valor.remaining()];
+			valor.get(encontrado[0]);
+			return false;
+		});
+		return encontrado[0];
+	}
+	
+	/**
+	 * Busca varias claves en orden creciente, aprovechando la hoja de la
+	 * anterior mientras la siguiente siga en su rango.
+	 * 
+	 * @param claves claves en orden creciente
+	 * @param visitante recibe las que existen, en orden
+	 */
+	void buscarVarias(long[] claves, Visitante visitante) {
+		int hoja = 0;
+		ByteBuffer contenido = null;
+		try {
+			for (long clave : claves) {
+				if (hoja != 0 && (cantidad(contenido) == 0 || clave > claveHoja(contenido, cantidad(contenido) - 1))) {
+					pool.soltar(hoja, false);
+					hoja = 0;
+				}
+				if (hoja == 0) {
+					hoja = descender(clave, null);
+					contenido = pool.fijar(hoja);
+				}
+				
+				int ranura = primeraNoMenor(contenido, clave);
+				if (ranura < cantidad(contenido) && claveHoja(contenido, ranura) == clave) {
+					if (!visitante.visitar(clave, valor(contenido, ranura))) {
+						return;
+					}
+				}
+			}
+		} finally {
+			if (hoja != 0) {
+				pool.soltar(hoja, false);
+			}
+		}
+	}
+	
+	/**
+	 * Recorre en orden las claves de un rango.
+	 * 
+	 * @param desde menor clave, incluida
+	 * @param hasta mayor clave, incluida
+	 * @param visitante recibe cada entrada; no debe modificar el árbol
+	 */
+	void recorrer(long desde, long hasta, Visitante visitante) {
+		int hoja = descender(desde, null);
+		int ranura = -1;
+		
+		while (hoja != 0) {
+			ByteBuffer contenido = pool.fijar(hoja);
+			int siguiente;
+			try {
+				int cantidad = cantidad(contenido);
+				ranura = ranura < 0 ? primeraNoMenor(contenido, desde) : 0;
+				for (; ranura < cantidad; ranura++) {
+					long clave = claveHoja(contenido, ranura);
+					if (clave > hasta || !visitante.visitar(clave, valor(contenido, ranura))) {
+						return;
+					}
+				}
+				siguiente = contenido.getInt(3);
+			} finally {
+				pool.soltar(hoja, false);
+			}
+			hoja = siguiente;
+		}
+	}
+	
+	/**
+	 * Baja desde la raíz hasta la hoja que contendría la clave, anotando
+	 * las páginas internas del camino si se indica dónde.
+	 */
+	private int descender(long clave, int[] camino) {
+		int pagina = raiz;
+		int nivel = 0;
+		
+		while (true) {
+			ByteBuffer contenido = pool.fijar(pagina);
+			int hijo;
+			try {
+				if (contenido.get(0) == HOJA) {
+					return pagina;
+				}
+				hijo = hijo(contenido, primeraMayor(contenido, clave));
+			} finally {
+				pool.soltar(pagina, false);
+			}
+			
+			if (camino != null) {
+				camino[nivel] = pagina;
+			}
+			nivel++;
+			pagina = hijo;
+		}
+	}
+	
+	/** Valor de una ranura de hoja, desbordado o no */
+	private ByteBuffer valor(ByteBuffer hoja, int ranura) {
+		int base = CABECERA + ranura * RANURA;
+		int posicion = hoja.getShort(base + 8) & 0xFFFF;
+		int longitud = hoja.getShort(base + 10) & 0xFFFF;
+		
+		if ((longitud & MARCA_DESBORDE) == 0) {
+			return hoja.duplicate().limit(posicion + longitud).position(posicion);
+		}
+		return ByteBuffer.wrap(leerDesborde(hoja.getInt(posicion), hoja.getInt(posicion + 4)));
+	}
+	
+	// Escritura
+	
+	/**
+	 * Guarda el valor de una clave, reemplazando el anterior si existía.
+	 * 
+	 * @param clave clave de la entrada
+	 * @param valor valor a guardar
+	 * @return true si la clave no existía
+	 */
+	boolean poner(long clave, byte[] valor) {
+		boolean desbordado = valor.length > MAXIMO_EN_LINEA;
+		byte[] guardado = desbordado ? escribirDesborde(valor) : valor;
+		
+		int[] camino = new int[PROFUNDIDAD_MAXIMA];
+		int hoja = descender(clave, camino);
+		int niveles = profundidad(camino);
+		
+		Hoja entradas = leerHoja(hoja);
+		int ranura = entradas.buscar(clave);
+		boolean nueva = ranura < 0;
+		if (nueva) {
+			ranura = -ranura - 1;
+			entradas.insertar(ranura, clave, guardado, desbordado);
+		} else {
+			liberarValor(entradas, ranura);
+			entradas.valores[ranura] = guardado;
+			entradas.desbordados[ranura] = desbordado;
+		}
+		
+		if (entradas.bytes(0, entradas.cantidad) <= PoolPaginas.TAMANIO_PAGINA) {
+			escribirHoja(hoja, entradas, 0, entradas.cantidad, entradas.siguiente);
+			return nueva;
+		}
+		
+		// La hoja no cabe: se divide y se sube la primera clave de la derecha
+		int corte = ranura == entradas.cantidad - 1 && entradas.siguiente == 0
+				? ranura
+				: entradas.corte();
+		int derecha = pool.reservar();
+		escribirHoja(derecha, entradas, corte, entradas.cantidad, entradas.siguiente);
+		escribirHoja(hoja, entradas, 0, corte, derecha);
+		
+		subir(camino, niveles, entradas.claves[corte], derecha);
+		return nueva;
+	}
+	
+	/**
+	 * Inserta en los nodos del camino, de abajo arriba, la clave separadora
+	 * y la página nueva que dejó una división, dividiendo a su vez los
+	 * nodos que se llenen.
+	 */
+	private void subir(int[] camino, int niveles, long separador, int nuevaPagina) {
+		for (int nivel = niveles - 1; nivel >= 0; nivel--) {
+			int pagina = camino[nivel];
+			Interno nodo = leerInterno(pagina);
+			nodo.insertar(separador, nuevaPagina);
+			
+			if (nodo.cantidad <= MAXIMO_CLAVES_INTERNO) {
+				escribirInterno(pagina, nodo, 0, nodo.cantidad);
+				return;
+			}
+			
+			int medio = nodo.cantidad / 2;
+			int derecha = pool.reservar();
+			escribirInterno(derecha, nodo, medio + 1, nodo.cantidad);
+			escribirInterno(pagina, nodo, 0, medio);
+			separador = nodo.claves[medio];
+			nuevaPagina = derecha;
+		}
+		
+		// Se dividió la raíz: el árbol crece un nivel
+		Interno nuevaRaiz = new Interno(1);
+		nuevaRaiz.hijos[0] = raiz;
+		nuevaRaiz.insertar(separador, nuevaPagina);
+		int pagina = pool.reservar();
+		escribirInterno(pagina, nuevaRaiz, 0, 1);
+		raiz = pagina;
+	}
+	
+	/**
+	 * Elimina una clave.
+	 * 
+	 * @param clave clave a eliminar
+	 * @return true si existía
+	 */
+	boolean quitar(long clave) {
+		int hoja = descender(clave, null);
+		Hoja entradas = leerHoja(hoja);
+		int ranura = entradas.buscar(clave);
+		
+		if (ranura < 0) {
+			return false;
+		}
+		
+		liberarValor(entradas, ranura);
+		entradas.quitar(ranura);
+		escribirHoja(hoja, entradas, 0, entradas.cantidad, entradas.siguiente);
+		return true;
+	}
+	
+	// Páginas de desborde
+	
+	/** Escribe un valor en una cadena de páginas y devuelve su referencia */
+	private byte[] escribirDesborde(byte[] valor) {
+		int primera = 0;
+		int anterior = 0;
+		
+		for (int desde = 0; desde < valor.length; desde += DATOS_DESBORDE) {
+			int bytes = Math.min(DATOS_DESBORDE, valor.length - desde);
+			int pagina = pool.reservar();
+			ByteBuffer contenido = pool.fijar(pagina);
+			contenido.put(0, DESBORDE);
+			contenido.putInt(5, bytes);
+			contenido.put(CABECERA, valor, desde, bytes);
+			pool.soltar(pagina, true);
+			
+			if (anterior == 0) {
+				primera = pagina;
+			} else {
+				pool.fijar(anterior).putInt(1, pagina);
+				pool.soltar(anterior, true);
+			}
+			anterior = pagina;
+		}
+		
+		return ByteBuffer.allocate(REFERENCIA).putInt(0, primera).putInt(4, valor.length).array();
+	}
+	
+	private byte[] leerDesborde(int pagina, int longitud) {
+		byte[] valor = new byte[longitud];
+		int leidos = 0;
+		
+		while (leidos < longitud) {
+			ByteBuffer contenido = pool.fijar(pagina);
+			int siguiente;
+			try {
+				int bytes = contenido.getInt(5);
+				contenido.get(CABECERA, valor, leidos, bytes);
+				leidos += bytes;
+				siguiente = contenido.getInt(1);
+			} finally {
+				pool.soltar(pagina, false);
+			}
+			pagina = siguiente;
+		}
+		return valor;
+	}
+	
+	/** Devuelve al pool las páginas de desborde de una entrada, si las tiene */
+	private void liberarValor(Hoja entradas, int ranura) {
+		if (!entradas.desbordados[ranura]) {
+			return;
+		}
+		
+		int pagina = ByteBuffer.wrap(entradas.valores[ranura]).getInt(0);
+		while (pagina != 0) {
+			int siguiente = pool.fijar(pagina).getInt(1);
+			pool.soltar(pagina, false);
+			pool.liberar(pagina);
+			pagina = siguiente;
+		}
+	}
+	
+	// Formato de las páginas
+	
+	private static int cantidad(ByteBuffer pagina) {
+		return pagina.getShort(1) & 0xFFFF;
+	}
+	
+	private static long claveHoja(ByteBuffer hoja, int ranura) {
+		return hoja.getLong(CABECERA + ranura * RANURA);
+	}
+	
+	private static long claveInterna(ByteBuffer nodo, int i) {
+		return nodo.getLong(CABECERA + 4 + i * RANURA);
+	}
+	
+	/** Hijo {@code i} de un nodo interno: el 0 antes de la primera clave, el i tras la clave i - 1 */
+	private static int hijo(ByteBuffer nodo, int i) {
+		return i == 0 ? nodo.getInt(CABECERA) : nodo.getInt(CABECERA + 4 + (i - 1) * RANURA + 8);
+	}
+	
+	/** Primera ranura de la hoja con clave mayor o igual que la indicada */
+	private static int primeraNoMenor(ByteBuffer hoja, long clave) {
+		int desde = 0;
+		int hasta = cantidad(hoja);
+		while (desde < hasta) {
+			int medio = (desde + hasta) >>> 1;
+			if (claveHoja(hoja, medio) < clave) {
+				desde = medio + 1;
+			} else {
+				hasta = medio;
+			}
+		}
+		return desde;
+	}
+	
+	/** Cantidad de claves del nodo interno menores o iguales que la indicada */
+	private static int primeraMayor(ByteBuffer nodo, long clave) {
+		int desde = 0;
+		int hasta = cantidad(nodo);
+		while (desde < hasta) {
+			int medio = (desde + hasta) >>> 1;
+			if (claveInterna(nodo, medio) <= clave) {
+				desde = medio + 1;
+			} else {
+				hasta = medio;
+			}
+		}
+		return desde;
+	}
+	
+	private static int profundidad(int[] camino) {
+		int niveles = 0;
+		while (niveles < camino.length && camino[niveles] != 0) {
+			niveles++;
+		}
+		return niveles;
+	}
+	
+	private Hoja leerHoja(int pagina) {
+		ByteBuffer contenido = pool.fijar(pagina);
+		try {
+			int cantidad = cantidad(contenido);
+			Hoja hoja = new Hoja(cantidad + 1);
+			for (int i = 0; i < cantidad; i++) {
+				int base = CABECERA + i * RANURA;
+				int posicion = contenido.getShort(base + 8) & 0xFFFF;
+				int longitud = contenido.getShort(base + 10) & 0xFFFF;
+				boolean desbordado = (longitud & MARCA_DESBORDE) != 0;
+				byte[] valor = new byte[desbordado ? REFERENCIA : longitud];
+				contenido.get(posicion, valor);
+				hoja.insertar(i, contenido.getLong(base), valor, desbordado);
+			}
+			hoja.siguiente = contenido.getInt(3);
+			return hoja;
+		} finally {
+			pool.soltar(pagina, false);
+		}
+	}
+	
+	private void escribirHoja(int pagina, Hoja hoja, int desde, int hasta, int siguiente) {
+		ByteBuffer contenido = pool.fijar(pagina);
+		try {
+			escribirHoja(contenido, hoja, desde, hasta, siguiente);
+		} finally {
+			pool.soltar(pagina, true);
+		}
+	}
+	
+	private static void escribirHoja(ByteBuffer contenido, Hoja hoja, int desde, int hasta, int siguiente) {
+		contenido.put(0, HOJA);
+		contenido.putShort(1, (short) (hasta - desde));
+		contenido.putInt(3, siguiente);
+		
+		int fin = PoolPaginas.TAMANIO_PAGINA;
+		for (int i = desde; i < hasta; i++) {
+			byte[] valor = hoja.valores[i];
+			fin -= valor.length;
+			contenido.put(fin, valor);
+			
+			int base = CABECERA + (i - desde) * RANURA;
+			contenido.putLong(base, hoja.claves[i]);
+			contenido.putShort(base + 8, (short) fin);
+			contenido.putShort(base + 10, (short) (hoja.desbordados[i] ? MARCA_DESBORDE : valor.length));
+		}
+	}
+	
+	private Interno leerInterno(int pagina) {
+		ByteBuffer contenido = pool.fijar(pagina);
+		try {
+			int cantidad = cantidad(contenido);
+			Interno nodo = new Interno(cantidad + 1);
+			nodo.cantidad = cantidad;
+			nodo.hijos[0] = contenido.getInt(CABECERA);
+			for (int i = 0; i < cantidad; i++) {
+				nodo.claves[i] = claveInterna(contenido, i);
+				nodo.hijos[i + 1] = hijo(contenido, i + 1);
+			}
+			return nodo;
+		} finally {
+			pool.soltar(pagina, false);
+		}
+	}
+	
+	/** Escribe las claves {@code desde..hasta-1} del nodo, con sus hijos {@code desde..hasta} */
+	private void escribirInterno(int pagina, Interno nodo, int desde, int hasta) {
+		ByteBuffer contenido = pool.fijar(pagina);
+		try {
+			contenido.put(0, INTERNO);
+			contenido.putShort(1, (short) (hasta - desde));
+			contenido.putInt(CABECERA, nodo.hijos[desde]);
+			for (int i = desde; i < hasta; i++) {
+				int base = CABECERA + 4 + (i - desde) * RANURA;
+				contenido.putLong(base, nodo.claves[i]);
+				contenido.putInt(base + 8, nodo.hijos[i + 1]);
+			}
+		} finally {
+			pool.soltar(pagina, true);
+		}
+	}
+	
+	/**
+	 * Hoja decodificada: las entradas en orden de clave.
+	 */
+	private static final class Hoja {
+		
+		long[] claves;
+		byte[][] valores;
+		boolean[] desbordados;
+		int cantidad;
+		int siguiente;
+		
+		Hoja(int capacidad) {
+			claves = new long[Math.max(1, capacidad)];
+			valores = new byte[claves.length][];
+			desbordados = new boolean[claves.length];
+		}
+		
+		/** Posición de la clave, o {@code -(posición de inserción) - 1} */
+		int buscar(long clave) {
+			return Arrays.binarySearch(claves, 0, cantidad, clave);
+		}
+		
+		void insertar(int posicion, long clave, byte[] valor, boolean desbordado) {
+			if (cantidad == claves.length) {
+				claves = Arrays.copyOf(claves, cantidad * 2);
+				valores = Arrays.copyOf(valores, cantidad * 2);
+				desbordados = Arrays.copyOf(desbordados, cantidad * 2);
+			}
+			System.arraycopy(claves, posicion, claves, posicion + 1, cantidad - posicion);
+			System.arraycopy(valores, posicion, valores, posicion + 1, cantidad - posicion);
+			System.arraycopy(desbordados, posicion, desbordados, posicion + 1, cantidad - posicion);
+			claves[posicion] = clave;
+			valores[posicion] = valor;
+			desbordados[posicion] = desbordado;
+			cantidad++;
+		}
+		
+		void quitar(int posicion) {
+			System.arraycopy(claves, posicion + 1, claves, posicion, cantidad - posicion - 1);
+			System.arraycopy(valores, posicion + 1, valores, posicion, cantidad - posicion - 1);
+			System.arraycopy(desbordados, posicion + 1, desbordados, posicion, cantidad - posicion - 1);
+			cantidad--;
+			valores[cantidad] = null;
+		}
+		
+		/** Bytes que ocupan las entradas {@code desde..hasta-1} en una página */
+		int bytes(int desde, int hasta) {
+			int bytes = CABECERA;
+			for (int i = desde; i < hasta; i++) {
+				bytes += RANURA + valores[i].length;
+			}
+			return bytes;
+		}
+		
+		/** Primera entrada de la mitad derecha, repartiendo los bytes */
+		int corte() {
+			int total = bytes(0, cantidad);
+			int acumulado = CABECERA;
+			for (int i = 0; i < cantidad; i++) {
+				acumulado += RANURA + valores[i].length;
+				if (acumulado * 2 >= total) {
+					return Math.max(1, Math.min(i + 1, cantidad - 1));
+				}
+			}
+			return cantidad / 2;
+		}
+	}
+	
+	/**
+	 * Nodo interno decodificado: {@code cantidad} claves y una más de hijos.
+	 */
+	private static final class Interno {
+		
+		long[] claves;
+		int[] hijos;
+		int cantidad;
+		
+		Interno(int capacidad) {
+			claves = new long[capacidad];
+			hijos = new int[capacidad + 1];
+		}
+		
+		/** Inserta la clave separadora con la página a su derecha */
+		void insertar(long clave, int derecha) {
+			int posicion = 0;
+			while (posicion < cantidad && claves[posicion] <= clave) {
+				posicion++;
+			}
+			if (cantidad == claves.length) {
+				claves = Arrays.copyOf(claves, cantidad * 2);
+				hijos = Arrays.copyOf(hijos, cantidad * 2 + 1);
+			}
+			System.arraycopy(claves, posicion, claves, posicion + 1, cantidad - posicion);
+			System.arraycopy(hijos, posicion + 1, hijos, posicion + 2, cantidad - posicion);
+			claves[posicion] = clave;
+			hijos[posicion + 1] = derecha;
+			cantidad++;
+		}
+	}
+
+}
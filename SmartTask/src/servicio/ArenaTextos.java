@@ -0,0 +1,76 @@
+package servicio;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Área de textos UTF-8 contiguos guardada fuera del heap.
+ * 
+ * <p>
+ * Cada texto se identifica con una referencia {@code long} que combina el
+ * bloque (32 bits altos) y la posición dentro de él (32 bits bajos). El
+ * espacio de los textos descartados no se reutiliza.
+ * </p>
+ */
+
+final class ArenaTextos {
+	
+	/** Tamaño de bloque por defecto */
+	private static final int TAMANIO_BLOQUE = 4 << 20;
+	
+	private final AsignadorBloques asignador;
+	private final List<ByteBuffer> bloques;
+	
+	/** Bytes reservados en total, para ubicar el siguiente bloque */
+	private long reservado;
+	
+	/**
+	 * Construye un área vacía.
+	 * 
+	 * @param asignador origen de los bloques
+	 */
+	ArenaTextos(AsignadorBloques asignador) {
+		this.asignador = asignador;
+		this.bloques = new ArrayList<>();
+	}
+	
+	/**
+	 * Guarda un texto.
+	 * 
+	 * @param texto texto a guardar
+	 * @return referencia al texto
+	 */
+	long guardar(String texto) {
+		byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+		int necesario = 4 + bytes.length;
+		
+		ByteBuffer actual = bloques.isEmpty() ? null : bloques.get(bloques.size() - 1);
+		if (actual == null || actual.remaining() < necesario) {
+			int tamanio = Math.max(TAMANIO_BLOQUE, necesario);
+			actual = asignador.reservar("arena", reservado, tamanio);
+			reservado += tamanio;
+			bloques.add(actual);
+		}
+		
+		int posicion = actual.position();
+		actual.putInt(bytes.length).put(bytes);
+		return ((long) (bloques.size() - 1) << 32) | posicion;
+	}
+	
+	/**
+	 * Lee un texto guardado.
+	 * 
+	 * @param referencia referencia devuelta por {@link #guardar(String)}
+	 * @return texto
+	 */
+	String leer(long referencia) {
+		ByteBuffer bloque = bloques.get((int) (referencia >>> 32));
+		int posicion = (int) referencia;
+		byte[] bytes = new byte[bloque.getInt(posicion)];
+		bloque.get(posicion + 4, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,85 @@
+package servicio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reserva bloques de memoria fuera del heap para el almacén columnar.
+ * 
+ * <p>
+ * Sin directorio, los bloques son búferes directos. Con directorio, cada
+ * columna se respalda con un archivo propio que se mapea en memoria por
+ * regiones, de modo que el sistema operativo puede paginar los datos que no
+ * se usan. Los archivos son de trabajo: se eliminan al cerrar y su contenido
+ * no se recupera en un arranque posterior.
+ * </p>
+ */
+
+final class AsignadorBloques implements Closeable {
+	
+	/** Directorio de los archivos mapeados, o null para búferes directos */
+	private final Path directorio;
+	
+	/** Archivo abierto por nombre de columna */
+	private final Map<String, FileChannel> canales;
+	
+	/**
+	 * Construye un asignador.
+	 * 
+	 * @param directorio directorio para mapear archivos, o null
+	 */
+	AsignadorBloques(Path directorio) {
+		this.directorio = directorio;
+		this.canales = new HashMap<>();
+	}
+	
+	/**
+	 * Reserva un bloque de memoria con todos sus bytes a cero.
+	 * 
+	 * @param nombre nombre de la columna a la que pertenece
+	 * @param posicion posición del bloque dentro de la columna
+	 * @param tamanio tamaño en bytes
+	 * @return bloque reservado
+	 * @throws UncheckedIOException si no se puede mapear el archivo
+	 */
+	ByteBuffer reservar(String nombre, long posicion, int tamanio) {
+		if (directorio == null) {
+			return ByteBuffer.allocateDirect(tamanio);
+		}
+		
+		try {
+			FileChannel canal = canales.get(nombre);
+			if (canal == null) {
+				Files.createDirectories(directorio);
+				canal = FileChannel.open(directorio.resolve(nombre + ".col"),
+						StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.DELETE_ON_CLOSE);
+				canales.put(nombre, canal);
+			}
+			return canal.map(FileChannel.MapMode.READ_WRITE, posicion, tamanio);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * Cierra y elimina los archivos mapeados. Las regiones ya mapeadas se
+	 * liberan cuando dejan de estar referenciadas.
+	 */
+	@Override
+	public void close() throws IOException {
+		for (FileChannel canal : canales.values()) {
+			canal.close();
+		}
+		canales.clear();
+	}
+
+}
@@ -0,0 +1,311 @@
+package servicio;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import interfaces.OyenteTareas;
+import interfaces.Suscripcion;
+import modelo.LoteEventos;
+import modelo.TipoEvento;
+
+/**
+ * Bus de eventos de tareas sobre un búfer circular sin cerrojos.
+ * 
+ * <p>
+ * Publicar reserva una secuencia con un incremento atómico y escribe el
+ * evento en su ranura; si no hay suscriptores no hace nada. Los
+ * publicadores nunca esperan a los consumidores: la ranura se sobrescribe
+ * aunque algún consumidor no la haya leído.
+ * </p>
+ * 
+ * <p>
+ * Cada suscripción tiene su hilo, que lee por lotes lo publicado desde su
+ * última lectura y se lo entrega al oyente. Un consumidor que se queda más
+ * de una vuelta atrás salta a los eventos más antiguos que siguen en el
+ * búfer y recibe la cantidad descartada en {@link OyenteTareas#alPerder}.
+ * El tamaño máximo de lote limita lo que el oyente procesa de una vez.
+ * </p>
+ */
+
+final class BusEventos {
+	
+	/** Ranuras del búfer por defecto */
+	static final int CAPACIDAD = 1 << 16;
+	
+	/** Acceso con orden de memoria a las ranuras */
+	private static final VarHandle RANURAS = MethodHandles.arrayElementVarHandle(long[].class);
+	
+	/** Marca de una ranura que se está escribiendo */
+	private static final long ESCRIBIENDO = -1;
+	
+	/** Esperas activas antes de ceder el procesador y luego dormir */
+	private static final int ESPERAS_ACTIVAS = 100;
+	private static final int ESPERAS_CEDIDAS = 200;
+	
+	/** Espera máxima de un consumidor sin eventos */
+	private static final long ESPERA_MAXIMA_NANOS = 1_000_000;
+	
+	private static final AtomicInteger HILOS = new AtomicInteger();
+	
+	/**
+	 * Dos posiciones por ranura: la secuencia publicada en ella y el
+	 * evento, contiguas para leerlas de la misma línea de caché.
+	 */
+	private final long[] ranuras;
+	
+	private final int mascara;
+	
+	/** Siguiente secuencia a reservar */
+	private final AtomicLong cursor;
+	
+	/** Consumidores activos; se reemplaza al suscribir o cancelar */
+	private volatile Consumidor[] consumidores;
+	
+	BusEventos() {
+		this(CAPACIDAD);
+	}
+	
+	/**
+	 * @param capacidad ranuras del búfer, potencia de dos
+	 * @throws IllegalArgumentException si la capacidad no es potencia de dos
+	 */
+	BusEventos(int capacidad) {
+		if (capacidad <= 0 || Integer.bitCount(capacidad) != 1) {
+			throw new IllegalArgumentException("La capacidad debe ser potencia de dos.");
+		}
+		
+		this.ranuras = new long[capacidad * 2];
+		for (int i = 0; i < ranuras.length; i += 2) {
+			ranuras[i] = ESCRIBIENDO;
+		}
+		this.mascara = capacidad - 1;
+		this.cursor = new AtomicLong();
+		this.consumidores = new Consumidor[0];
+	}
+	
+	/**
+	 * Publica un evento si hay suscriptores.
+	 * 
+	 * @param tipo tipo de evento
+	 * @param tareaId id de la tarea
+	 * @param usuarioId id del usuario, o 0 si no tiene dueño
+	 */
+	void publicar(TipoEvento tipo, int tareaId, int usuarioId) {
+		if (consumidores.length == 0) {
+			return;
+		}
+		
+		long secuencia = cursor.getAndIncrement();
+		int ranura = (int) (secuencia & mascara) << 1;
+		
+		RANURAS.setOpaque(ranuras, ranura, ESCRIBIENDO);
+		VarHandle.storeStoreFence();
+		RANURAS.setOpaque(ranuras, ranura + 1, LoteEventos.codificar(tipo, tareaId, usuarioId));
+		RANURAS.setRelease(ranuras, ranura, secuencia);
+	}
+	
+	/**
+	 * Suscribe un oyente a partir de los eventos publicados desde ahora.
+	 * 
+	 * @param oyente oyente de los eventos
+	 * @param loteMaximo número máximo de eventos por lote
+	 * @return suscripción, que debe cerrarse para detener su hilo
+	 * @throws IllegalArgumentException si el oyente es null o el lote no es positivo
+	 */
+	Suscripcion suscribir(OyenteTareas oyente, int loteMaximo) {
+		if (oyente == null) {
+			throw new IllegalArgumentException("El oyente no puede ser null.");
+		}
+		if (loteMaximo <= 0) {
+			throw new IllegalArgumentException("El tamaño de lote debe ser positivo.");
+		}
+		
+		Consumidor consumidor;
+		synchronized (this) {
+			consumidor = new Consumidor(oyente, loteMaximo, cursor.get());
+			Consumidor[] actuales = consumidores;
+			Consumidor[] nuevos = Arrays.copyOf(actuales, actuales.length + 1);
+			nuevos[actuales.length] = consumidor;
+			consumidores = nuevos;
+		}
+		consumidor.hilo.start();
+		return consumidor;
+	}
+	
+	private synchronized void quitar(Consumidor consumidor) {
+		Consumidor[] actuales = consumidores;
+		for (int i = 0; i < actuales.length; i++) {
+			if (actuales[i] == consumidor) {
+				Consumidor[] nuevos = Arrays.copyOf(actuales, actuales.length - 1);
+				System.arraycopy(actuales, i + 1, nuevos, i, actuales.length - i - 1);
+				consumidores = nuevos;
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Hilo lector de una suscripción.
+	 */
+	private final class Consumidor implements Suscripcion, Runnable {
+		
+		private final OyenteTareas oyente;
+		private final Thread hilo;
+		
+		/** Lote en curso, reutilizado entre lecturas */
+		private final long[] eventos;
+		private final long[] secuencias;
+		
+		/** Siguiente secuencia a leer; solo la usa el hilo del consumidor */
+		private long siguiente;
+		
+		/** Eventos descartados pendientes de avisar al oyente */
+		private long perdidosSinAvisar;
+		
+		// Escritos solo por el hilo del consumidor
+		private volatile long entregados;
+		private volatile long perdidos;
+		
+		private volatile boolean activo;
+		
+		Consumidor(OyenteTareas oyente, int loteMaximo, long desde) {
+			this.oyente = oyente;
+			this.eventos = new long[loteMaximo];
+			this.secuencias = new long[loteMaximo];
+			this.siguiente = desde;
+			this.activo = true;
+			this.hilo = new Thread(this, "smarttask-eventos-" + HILOS.incrementAndGet());
+			this.hilo.setDaemon(true);
+		}
+		
+		@Override
+		public void run() {
+			int esperas = 0;
+			while (activo) {
+				if (entregar()) {
+					esperas = 0;
+				} else {
+					esperar(esperas++);
+				}
+			}
+			while (entregar()) {
+				// Vacía lo publicado antes del cierre
+			}
+		}
+		
+		/**
+		 * Lee y entrega un lote.
+		 * 
+		 * @return false si no había nada que entregar
+		 */
+		private boolean entregar() {
+			int leidos = leer();
+			
+			if (perdidosSinAvisar > 0) {
+				long cantidad = perdidosSinAvisar;
+				perdidosSinAvisar = 0;
+				perdidos += cantidad;
+				avisar(() -> oyente.alPerder(cantidad));
+			}
+			if (leidos > 0) {
+				entregados += leidos;
+				avisar(() -> oyente.alRecibir(new LoteEventos(eventos, secuencias, leidos)));
+			}
+			return leidos > 0;
+		}
+		
+		/**
+		 * Llama al oyente; un fallo suyo no detiene la suscripción.
+		 */
+		private void avisar(Runnable llamada) {
+			try {
+				llamada.run();
+			} catch (RuntimeException e) {
+				hilo.getUncaughtExceptionHandler().uncaughtException(hilo, e);
+			}
+		}
+		
+		/**
+		 * Copia al lote los eventos publicados a partir de
+		 * {@link #siguiente}, hasta llenarlo o llegar a uno que aún se está
+		 * escribiendo.
+		 */
+		private int leer() {
+			long publicado = cursor.get();
+			int capacidad = mascara + 1;
+			if (publicado - siguiente > capacidad) {
+				perdidosSinAvisar += publicado - capacidad - siguiente;
+				siguiente = publicado - capacidad;
+			}
+			
+			int leidos = 0;
+			while (leidos < eventos.length && siguiente < publicado) {
+				int ranura = (int) (siguiente & mascara) << 1;
+				long antes = (long) RANURAS.getAcquire(ranuras, ranura);
+				if (antes < siguiente) {
+					// Reservada pero sin publicar todavía
+					break;
+				}
+				
+				long evento = (long) RANURAS.getOpaque(ranuras, ranura + 1);
+				VarHandle.loadLoadFence();
+				long despues = (long) RANURAS.getOpaque(ranuras, ranura);
+				
+				if (antes == siguiente && despues == siguiente) {
+					eventos[leidos] = evento;
+					secuencias[leidos] = siguiente;
+					leidos++;
+				} else {
+					// Sobrescrita por un publicador una vuelta por delante
+					perdidosSinAvisar++;
+				}
+				siguiente++;
+			}
+			return leidos;
+		}
+		
+		private void esperar(int esperas) {
+			if (esperas < ESPERAS_ACTIVAS) {
+				Thread.onSpinWait();
+			} else if (esperas < ESPERAS_CEDIDAS) {
+				Thread.yield();
+			} else {
+				int desplazamiento = Math.min(esperas - ESPERAS_CEDIDAS, 10);
+				LockSupport.parkNanos(Math.min(ESPERA_MAXIMA_NANOS, 1000L << desplazamiento));
+			}
+		}
+		
+		@Override
+		public long getEntregados() {
+			return entregados;
+		}
+		
+		@Override
+		public long getPerdidos() {
+			return perdidos;
+		}
+		
+		@Override
+		public void close() {
+			if (!activo) {
+				return;
+			}
+			
+			activo = false;
+			quitar(this);
+			LockSupport.unpark(hilo);
+			if (Thread.currentThread() != hilo) {
+				try {
+					hilo.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+}
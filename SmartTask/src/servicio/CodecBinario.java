@@ -0,0 +1,602 @@
+package servicio;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import modelo.EstadoTarea;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+
+/**
+ * Formato binario compacto y versionado para usuarios y tareas, pensado
+ * para enviar estado entre procesos o guardarlo en disco.
+ * 
+ * <p>
+ * Un flujo empieza con una cabecera ({@link #MARCA} y {@link #VERSION}) y
+ * sigue con registros. Cada registro es su longitud en bytes (varint), un
+ * byte de tipo ({@link #USUARIO} o {@link #TAREA}) y el cuerpo:
+ * </p>
+ * 
+ * <pre>
+ * usuario: id (varint), tipo (byte), nombre, número de tareas (varint), tareas
+ * tarea:   id (varint), prioridad (byte), estado (byte), marcas (byte),
+ *          creada en (varint), [completada en], [vence en], descripción
+ * </pre>
+ * 
+ * <p>
+ * Los textos son su longitud en bytes (varint) seguida de su UTF-8. Los
+ * enumerados se guardan por ordinal. Los instantes de finalización y
+ * vencimiento solo aparecen si la tarea está completada o tiene
+ * vencimiento, y se guardan como diferencia con el de creación en zigzag,
+ * por lo que ocupan 3 o 4 bytes en lugar de 8.
+ * </p>
+ * 
+ * <p>
+ * Se codifica y decodifica directamente sobre el {@link ByteBuffer}, sin
+ * arreglos intermedios. Al leer en secuencia el búfer avanza registro a
+ * registro, y {@link #registroCompleto(ByteBuffer)} permite alimentarlo a
+ * trozos desde un canal. Como cada registro lleva su longitud,
+ * {@link #indexar(ByteBuffer)} localiza todos sin decodificarlos y los
+ * métodos con posición absoluta leen uno cualquiera sin mover el búfer.
+ * </p>
+ * 
+ * <p>
+ * Los textos de búferes directos se decodifican en un arreglo de caracteres
+ * que el codec reutiliza, así que cada hilo debe usar su propio codec.
+ * </p>
+ */
+
+public final class CodecBinario {
+	
+	/** Marca de inicio de un flujo ("STKB") */
+	public static final int MARCA = 0x53544B42;
+	
+	/** Versión del formato que se escribe */
+	public static final byte VERSION = 1;
+	
+	/** Bytes de la cabecera */
+	public static final int CABECERA = Integer.BYTES + 1;
+	
+	/** Tipo de registro de un usuario con sus tareas */
+	public static final int USUARIO = 1;
+	
+	/** Tipo de registro de una tarea suelta */
+	public static final int TAREA = 2;
+	
+	/** Tipo devuelto cuando el registro aún no está completo en el búfer */
+	public static final int INCOMPLETO = -1;
+	
+	private static final int MARCA_ESCALADA = 1;
+	private static final int MARCA_VENCIMIENTO = 1 << 1;
+	
+	private static final Prioridad[] PRIORIDADES = Prioridad.values();
+	private static final EstadoTarea[] ESTADOS = EstadoTarea.values();
+	private static final TipoUsuario[] TIPOS = TipoUsuario.values();
+	
+	/** Caracteres de los textos leídos de búferes directos */
+	private char[] caracteres = new char[64];
+	
+	// Escritura
+	
+	/**
+	 * Escribe la cabecera de un flujo.
+	 * 
+	 * @param destino búfer de destino
+	 * @throws BufferOverflowException si no cabe
+	 */
+	public void escribirCabecera(ByteBuffer destino) {
+		destino.putInt(MARCA).put(VERSION);
+	}
+	
+	/**
+	 * Calcula los bytes que ocupa el registro de un usuario con sus tareas.
+	 * 
+	 * @param usuario usuario a medir
+	 * @return bytes del registro, incluida su longitud
+	 */
+	public int tamanio(Usuario usuario) {
+		return conLongitud(cuerpo(usuario, usuario.getTareas()));
+	}
+	
+	/**
+	 * Calcula los bytes que ocupa el registro de una tarea suelta.
+	 * 
+	 * @param tarea tarea a medir
+	 * @return bytes del registro, incluida su longitud
+	 */
+	public int tamanio(Tarea tarea) {
+		return conLongitud(1 + cuerpo(tarea));
+	}
+	
+	/**
+	 * Escribe un usuario con sus tareas actuales.
+	 * 
+	 * @param destino búfer de destino
+	 * @param usuario usuario a escribir
+	 * @throws BufferOverflowException si no cabe; el búfer no se modifica
+	 */
+	public void escribir(ByteBuffer destino, Usuario usuario) {
+		escribir(destino, usuario, usuario.getTareas());
+	}
+	
+	/**
+	 * Escribe un usuario con las tareas indicadas, por ejemplo las que
+	 * devuelve {@link interfaces.Accionable#listarTareasDeUsuario(int)}.
+	 * 
+	 * @param destino búfer de destino
+	 * @param usuario usuario a escribir
+	 * @param tareas tareas del usuario
+	 * @throws BufferOverflowException si no cabe; el búfer no se modifica
+	 */
+	public void escribir(ByteBuffer destino, Usuario usuario, List<Tarea> tareas) {
+		int longitud = cuerpo(usuario, tareas);
+		reservar(destino, longitud);
+		
+		destino.put((byte) USUARIO);
+		escribirVarint(destino, usuario.getId());
+		destino.put((byte) usuario.getTipo().ordinal());
+		escribirTexto(destino, usuario.getNombre());
+		escribirVarint(destino, tareas.size());
+		for (Tarea tarea : tareas) {
+			escribirCuerpo(destino, tarea);
+		}
+	}
+	
+	/**
+	 * Escribe una tarea suelta.
+	 * 
+	 * @param destino búfer de destino
+	 * @param tarea tarea a escribir
+	 * @throws BufferOverflowException si no cabe; el búfer no se modifica
+	 */
+	public void escribir(ByteBuffer destino, Tarea tarea) {
+		reservar(destino, 1 + cuerpo(tarea));
+		destino.put((byte) TAREA);
+		escribirCuerpo(destino, tarea);
+	}
+	
+	/**
+	 * Comprueba que cabe el registro y escribe su longitud.
+	 */
+	private static void reservar(ByteBuffer destino, int longitud) {
+		if (destino.remaining() < longitudVarint(longitud) + longitud) {
+			throw new BufferOverflowException();
+		}
+		escribirVarint(destino, longitud);
+	}
+	
+	private static int conLongitud(int longitud) {
+		return longitudVarint(longitud) + longitud;
+	}
+	
+	/** Bytes del tipo y el cuerpo de un usuario */
+	private static int cuerpo(Usuario usuario, List<Tarea> tareas) {
+		int bytes = 1 + longitudVarint(usuario.getId()) + 1 + longitudTexto(usuario.getNombre())
+				+ longitudVarint(tareas.size());
+		for (Tarea tarea : tareas) {
+			bytes += cuerpo(tarea);
+		}
+		return bytes;
+	}
+	
+	/** Bytes del cuerpo de una tarea */
+	private static int cuerpo(Tarea tarea) {
+		int bytes = longitudVarint(tarea.getId()) + 3 + longitudVarint(tarea.getCreadaEn());
+		if (tarea.getEstado() == EstadoTarea.COMPLETADA) {
+			bytes += longitudVarint(zigzag(tarea.getCompletadaEn() - tarea.getCreadaEn()));
+		}
+		if (tarea.getVenceEn() != 0) {
+			bytes += longitudVarint(zigzag(tarea.getVenceEn() - tarea.getCreadaEn()));
+		}
+		return bytes + longitudTexto(tarea.getDescripcion());
+	}
+	
+	private static void escribirCuerpo(ByteBuffer destino, Tarea tarea) {
+		int marcas = (tarea.isEscalada() ? MARCA_ESCALADA : 0) | (tarea.getVenceEn() != 0 ? MARCA_VENCIMIENTO : 0);
+		
+		escribirVarint(destino, tarea.getId());
+		destino.put((byte) tarea.getPrioridad().ordinal());
+		destino.put((byte) tarea.getEstado().ordinal());
+		destino.put((byte) marcas);
+		escribirVarint(destino, tarea.getCreadaEn());
+		if (tarea.getEstado() == EstadoTarea.COMPLETADA) {
+			escribirVarint(destino, zigzag(tarea.getCompletadaEn() - tarea.getCreadaEn()));
+		}
+		if (tarea.getVenceEn() != 0) {
+			escribirVarint(destino, zigzag(tarea.getVenceEn() - tarea.getCreadaEn()));
+		}
+		escribirTexto(destino, tarea.getDescripcion());
+	}
+	
+	// Lectura
+	
+	/**
+	 * Lee y comprueba la cabecera de un flujo.
+	 * 
+	 * @param origen búfer de origen
+	 * @throws IllegalArgumentException si no es una cabecera válida o su versión no está soportada
+	 */
+	public void leerCabecera(ByteBuffer origen) {
+		if (origen.remaining() < CABECERA || origen.getInt() != MARCA) {
+			throw new IllegalArgumentException("No es un flujo binario de SmartTask.");
+		}
+		byte version = origen.get();
+		if (version != VERSION) {
+			throw new IllegalArgumentException("Versión de formato binario no soportada: " + version);
+		}
+	}
+	
+	/**
+	 * Indica si el búfer tiene completo el siguiente registro, para leer
+	 * de un canal a trozos.
+	 * 
+	 * @param origen búfer de origen, que no se modifica
+	 * @return tipo del registro, o {@link #INCOMPLETO} si faltan bytes
+	 * @throws IllegalArgumentException si la longitud no es válida
+	 */
+	public int registroCompleto(ByteBuffer origen) {
+		int posicion = origen.position();
+		int longitud = 0;
+		for (int desplazamiento = 0;; desplazamiento += 7) {
+			if (posicion == origen.limit()) {
+				return INCOMPLETO;
+			}
+			if (desplazamiento == 35) {
+				throw new IllegalArgumentException("Longitud de registro no válida.");
+			}
+			byte b = origen.get(posicion++);
+			longitud |= (b & 0x7F) << desplazamiento;
+			if (b >= 0) {
+				break;
+			}
+		}
+		if (longitud <= 0) {
+			throw new IllegalArgumentException("Longitud de registro no válida.");
+		}
+		return origen.limit() - posicion < longitud ? INCOMPLETO : origen.get(posicion);
+	}
+	
+	/**
+	 * Lee el siguiente registro, que debe ser un usuario, y avanza el búfer.
+	 * 
+	 * @param origen búfer de origen
+	 * @return nuevo usuario con sus tareas
+	 * @throws IllegalArgumentException si el registro no es un usuario válido
+	 */
+	public Usuario leerUsuario(ByteBuffer origen) {
+		int fin = abrir(origen, USUARIO);
+		int limite = origen.limit();
+		origen.limit(fin);
+		try {
+			int id = leerVarint(origen);
+			TipoUsuario tipo = enumerado(TIPOS, origen.get());
+			Usuario usuario = FabricaModelo.nuevoUsuario(id, leerTexto(origen), tipo);
+			
+			int cantidad = leerVarint(origen);
+			if (cantidad < 0 || cantidad > origen.remaining()) {
+				throw new IllegalArgumentException("Número de tareas no válido: " + cantidad);
+			}
+			usuario.asegurarCapacidad(cantidad);
+			for (int i = 0; i < cantidad; i++) {
+				usuario.agregarTarea(leerCuerpo(origen));
+			}
+			cerrar(origen);
+			return usuario;
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Registro de usuario truncado.");
+		} finally {
+			origen.limit(limite);
+		}
+	}
+	
+	/**
+	 * Lee el siguiente registro, que debe ser una tarea suelta, y avanza el
+	 * búfer.
+	 * 
+	 * @param origen búfer de origen
+	 * @return nueva tarea, sin usuario
+	 * @throws IllegalArgumentException si el registro no es una tarea válida
+	 */
+	public Tarea leerTarea(ByteBuffer origen) {
+		int fin = abrir(origen, TAREA);
+		int limite = origen.limit();
+		origen.limit(fin);
+		try {
+			Tarea tarea = leerCuerpo(origen);
+			cerrar(origen);
+			return tarea;
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Registro de tarea truncado.");
+		} finally {
+			origen.limit(limite);
+		}
+	}
+	
+	/**
+	 * Lee el usuario que empieza en una posición, sin mover el búfer.
+	 * 
+	 * @param origen búfer de origen
+	 * @param posicion posición del registro, por ejemplo de {@link #indexar(ByteBuffer)}
+	 * @return nuevo usuario con sus tareas
+	 * @throws IllegalArgumentException si ahí no hay un usuario válido
+	 */
+	public Usuario leerUsuario(ByteBuffer origen, int posicion) {
+		return leerUsuario(origen.duplicate().position(posicion));
+	}
+	
+	/**
+	 * Lee la tarea que empieza en una posición, sin mover el búfer.
+	 * 
+	 * @param origen búfer de origen
+	 * @param posicion posición del registro, por ejemplo de {@link #indexar(ByteBuffer)}
+	 * @return nueva tarea, sin usuario
+	 * @throws IllegalArgumentException si ahí no hay una tarea válida
+	 */
+	public Tarea leerTarea(ByteBuffer origen, int posicion) {
+		return leerTarea(origen.duplicate().position(posicion));
+	}
+	
+	/**
+	 * Salta el siguiente registro sin decodificarlo.
+	 * 
+	 * @param origen búfer de origen
+	 * @return tipo del registro saltado
+	 * @throws IllegalArgumentException si el registro no está completo
+	 */
+	public int saltar(ByteBuffer origen) {
+		int tipo = registroCompleto(origen);
+		if (tipo == INCOMPLETO) {
+			throw new IllegalArgumentException("Registro truncado.");
+		}
+		int longitud = leerVarint(origen);
+		origen.position(origen.position() + longitud);
+		return tipo;
+	}
+	
+	/**
+	 * Localiza los registros desde la posición actual hasta el límite,
+	 * leyendo solo sus longitudes. El búfer no se modifica.
+	 * 
+	 * @param origen búfer de origen, situado tras la cabecera
+	 * @return posición absoluta de cada registro
+	 * @throws IllegalArgumentException si el último registro está truncado
+	 */
+	public int[] indexar(ByteBuffer origen) {
+		ByteBuffer recorrido = origen.duplicate();
+		int[] posiciones = new int[16];
+		int cantidad = 0;
+		while (recorrido.hasRemaining()) {
+			if (cantidad == posiciones.length) {
+				posiciones = Arrays.copyOf(posiciones, cantidad * 2);
+			}
+			posiciones[cantidad++] = recorrido.position();
+			saltar(recorrido);
+		}
+		return Arrays.copyOf(posiciones, cantidad);
+	}
+	
+	/**
+	 * Lee la longitud y el tipo de un registro completo.
+	 * 
+	 * @return posición en la que termina el registro
+	 */
+	private int abrir(ByteBuffer origen, int esperado) {
+		int tipo = registroCompleto(origen);
+		if (tipo == INCOMPLETO) {
+			throw new IllegalArgumentException("Registro truncado.");
+		}
+		if (tipo != esperado) {
+			throw new IllegalArgumentException("Tipo de registro inesperado: " + tipo);
+		}
+		int longitud = leerVarint(origen);
+		int fin = origen.position() + longitud;
+		origen.get();
+		return fin;
+	}
+	
+	/** Comprueba que se consumió el registro entero */
+	private static void cerrar(ByteBuffer origen) {
+		if (origen.hasRemaining()) {
+			throw new IllegalArgumentException("El registro tiene bytes de más.");
+		}
+	}
+	
+	private Tarea leerCuerpo(ByteBuffer origen) {
+		int id = leerVarint(origen);
+		Prioridad prioridad = enumerado(PRIORIDADES, origen.get());
+		EstadoTarea estado = enumerado(ESTADOS, origen.get());
+		int marcas = origen.get();
+		long creadaEn = leerVarlong(origen);
+		long completadaEn = estado == EstadoTarea.COMPLETADA ? creadaEn + deZigzag(leerVarlong(origen)) : 0;
+		long venceEn = (marcas & MARCA_VENCIMIENTO) != 0 ? creadaEn + deZigzag(leerVarlong(origen)) : 0;
+		
+		Tarea tarea = FabricaModelo.nuevaTarea(id, leerTexto(origen), prioridad, creadaEn);
+		tarea.setVenceEn(venceEn);
+		if ((marcas & MARCA_ESCALADA) != 0) {
+			tarea.escalar();
+		}
+		if (estado == EstadoTarea.COMPLETADA) {
+			tarea.marcarComoCompletada(completadaEn);
+		}
+		return tarea;
+	}
+	
+	private static <E> E enumerado(E[] valores, byte ordinal) {
+		if (ordinal < 0 || ordinal >= valores.length) {
+			throw new IllegalArgumentException("Valor de enumerado no válido: " + ordinal);
+		}
+		return valores[ordinal];
+	}
+	
+	// Textos
+	
+	/** Bytes de un texto en UTF-8, incluida su longitud */
+	private static int longitudTexto(String texto) {
+		int bytes = longitudUtf8(texto);
+		return longitudVarint(bytes) + bytes;
+	}
+	
+	/**
+	 * Cuenta los bytes UTF-8 de un texto. Los sustitutos sueltos cuentan
+	 * como un byte, ya que se escriben como '?' igual que
+	 * {@link String#getBytes(java.nio.charset.Charset)}.
+	 */
+	private static int longitudUtf8(String texto) {
+		int largo = texto.length();
+		int bytes = largo;
+		for (int i = 0; i < largo; i++) {
+			char c = texto.charAt(i);
+			if (c >= 0x80) {
+				if (c < 0x800) {
+					bytes++;
+				} else if (!Character.isSurrogate(c)) {
+					bytes += 2;
+				} else if (Character.isHighSurrogate(c) && i + 1 < largo && Character.isLowSurrogate(texto.charAt(i + 1))) {
+					bytes += 2;
+					i++;
+				}
+			}
+		}
+		return bytes;
+	}
+	
+	private static void escribirTexto(ByteBuffer destino, String texto) {
+		escribirVarint(destino, longitudUtf8(texto));
+		
+		int largo = texto.length();
+		for (int i = 0; i < largo; i++) {
+			char c = texto.charAt(i);
+			if (c < 0x80) {
+				destino.put((byte) c);
+			} else if (c < 0x800) {
+				destino.put((byte) (0xC0 | c >> 6));
+				destino.put((byte) (0x80 | c & 0x3F));
+			} else if (!Character.isSurrogate(c)) {
+				destino.put((byte) (0xE0 | c >> 12));
+				destino.put((byte) (0x80 | c >> 6 & 0x3F));
+				destino.put((byte) (0x80 | c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < largo && Character.isLowSurrogate(texto.charAt(i + 1))) {
+				int punto = Character.toCodePoint(c, texto.charAt(++i));
+				destino.put((byte) (0xF0 | punto >> 18));
+				destino.put((byte) (0x80 | punto >> 12 & 0x3F));
+				destino.put((byte) (0x80 | punto >> 6 & 0x3F));
+				destino.put((byte) (0x80 | punto & 0x3F));
+			} else {
+				destino.put((byte) '?');
+			}
+		}
+	}
+	
+	/**
+	 * Lee un texto. De un búfer con arreglo se construye la cadena
+	 * directamente sobre sus bytes; de uno directo, se decodifica en
+	 * {@link #caracteres}.
+	 */
+	private String leerTexto(ByteBuffer origen) {
+		int bytes = leerVarint(origen);
+		if (bytes < 0 || bytes > origen.remaining()) {
+			throw new IllegalArgumentException("Longitud de texto no válida: " + bytes);
+		}
+		
+		int posicion = origen.position();
+		origen.position(posicion + bytes);
+		if (origen.hasArray()) {
+			return new String(origen.array(), origen.arrayOffset() + posicion, bytes, StandardCharsets.UTF_8);
+		}
+		
+		if (caracteres.length < bytes) {
+			caracteres = new char[Math.max(bytes, caracteres.length * 2)];
+		}
+		int largo = 0;
+		int fin = posicion + bytes;
+		while (posicion < fin) {
+			int b = origen.get(posicion++);
+			if (b >= 0) {
+				caracteres[largo++] = (char) b;
+				continue;
+			}
+			
+			int continuaciones = b >= (byte) 0xF0 ? 3 : b >= (byte) 0xE0 ? 2 : b >= (byte) 0xC0 ? 1 : -1;
+			if (continuaciones < 0 || posicion + continuaciones > fin) {
+				throw new IllegalArgumentException("Texto UTF-8 no válido.");
+			}
+			int punto = b & (0x3F >> continuaciones);
+			for (int i = 0; i < continuaciones; i++) {
+				int siguiente = origen.get(posicion++);
+				if ((siguiente & 0xC0) != 0x80) {
+					throw new IllegalArgumentException("Texto UTF-8 no válido.");
+				}
+				punto = punto << 6 | siguiente & 0x3F;
+			}
+			largo += Character.toChars(punto, caracteres, largo);
+		}
+		return new String(caracteres, 0, largo);
+	}
+	
+	// Enteros de longitud variable
+	
+	private static int longitudVarint(long valor) {
+		return valor == 0 ? 1 : (63 - Long.numberOfLeadingZeros(valor)) / 7 + 1;
+	}
+	
+	private static int longitudVarint(int valor) {
+		return longitudVarint(valor & 0xFFFFFFFFL);
+	}
+	
+	/** Escribe un entero sin signo en grupos de 7 bits, del menos significativo al más */
+	private static void escribirVarint(ByteBuffer destino, int valor) {
+		while ((valor & ~0x7F) != 0) {
+			destino.put((byte) (valor & 0x7F | 0x80));
+			valor >>>= 7;
+		}
+		destino.put((byte) valor);
+	}
+	
+	private static void escribirVarint(ByteBuffer destino, long valor) {
+		while ((valor & ~0x7FL) != 0) {
+			destino.put((byte) (valor & 0x7F | 0x80));
+			valor >>>= 7;
+		}
+		destino.put((byte) valor);
+	}
+	
+	private static int leerVarint(ByteBuffer origen) {
+		int valor = 0;
+		for (int desplazamiento = 0; desplazamiento < 35; desplazamiento += 7) {
+			byte b = origen.get();
+			valor |= (b & 0x7F) << desplazamiento;
+			if (b >= 0) {
+				return valor;
+			}
+		}
+		throw new IllegalArgumentException("Entero de longitud variable no válido.");
+	}
+	
+	private static long leerVarlong(ByteBuffer origen) {
+		long valor = 0;
+		for (int desplazamiento = 0; desplazamiento < 70; desplazamiento += 7) {
+			byte b = origen.get();
+			valor |= (long) (b & 0x7F) << desplazamiento;
+			if (b >= 0) {
+				return valor;
+			}
+		}
+		throw new IllegalArgumentException("Entero de longitud variable no válido.");
+	}
+	
+	/** Pasa enteros con signo a sin signo para que los pequeños ocupen poco */
+	private static long zigzag(long valor) {
+		return (valor << 1) ^ (valor >> 63);
+	}
+	
+	private static long deZigzag(long valor) {
+		return (valor >>> 1) ^ -(valor & 1);
+	}
+
+}
@@ -0,0 +1,281 @@
+package servicio;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import interfaces.AlmacenTareas;
+import modelo.EstadoTarea;
+import modelo.Tarea;
+import util.MapaEnteros;
+import util.MonticuloLargos;
+
+/**
+ * Cola de trabajo de {@link GestorTareasServicio} cuando las tareas viven
+ * en un {@link AlmacenTareas}.
+ * 
+ * <p>
+ * Ofrece las operaciones de {@link PlanificadorTareas} con el mismo orden
+ * (urgentes y escaladas primero y, a igual prioridad, la de menor id),
+ * pero sin guardar las tareas: la cola global es un montículo de claves
+ * primitivas, como en {@link GestorTareasColumnar}, y por cada tarea en
+ * cola solo se conserva el id de su dueño. Las tareas se leen del almacén
+ * al entregarlas, y la siguiente de un usuario se busca entre sus tareas
+ * activas del almacén. Así la memoria de la cola es de unos pocos enteros
+ * por tarea activa.
+ * </p>
+ * 
+ * <p>
+ * Las tareas que se completan o eliminan deben descartarse con
+ * {@link #descartar(int)}. Sus claves quedan obsoletas en el montículo y
+ * se depuran cuando superan a las vigentes. Esta clase no es segura para
+ * uso concurrente.
+ * </p>
+ */
+
+final class ColaAlmacen {
+
+	/** Claves obsoletas toleradas antes de depurar el montículo */
+	private static final int MARGEN_COLA = 1024;
+
+	/** Clave que indica que no hay ninguna */
+	private static final long NINGUNA = -1;
+
+	private final AlmacenTareas almacen;
+
+	/** Claves de {@link #clave(int, boolean)} de las tareas en cola */
+	private final MonticuloLargos cola;
+
+	/** Dueño de cada tarea en cola, por id de tarea */
+	private final MapaEnteros enCola;
+
+	/** Tareas en cola o reclamadas que salen como urgentes, por id */
+	private final MapaEnteros urgentes;
+
+	/** Dueño de cada tarea reclamada, por id de tarea */
+	private final Map<Integer, Integer> reclamadas;
+
+	/**
+	 * Construye una cola vacía sobre un almacén.
+	 * 
+	 * @param almacen almacén del que se leen las tareas
+	 */
+	ColaAlmacen(AlmacenTareas almacen) {
+		this.almacen = almacen;
+		this.cola = new MonticuloLargos();
+		this.enCola = new MapaEnteros();
+		this.urgentes = new MapaEnteros();
+		this.reclamadas = new HashMap<>();
+	}
+
+	/**
+	 * Agrega a la cola una tarea activa. Si ya estaba en la cola o
+	 * reclamada, se ignora.
+	 * 
+	 * @param usuarioId identificador del dueño
+	 * @param tarea tarea a encolar; no se guarda
+	 */
+	void encolar(int usuarioId, Tarea tarea) {
+		int id = tarea.getId();
+		if (tarea.getEstado() != EstadoTarea.ACTIVA || enCola.contiene(id) || reclamadas.containsKey(id)) {
+			return;
+		}
+
+		enCola.put(id, usuarioId);
+		if (tarea.esUrgente()) {
+			urgentes.put(id, 0);
+		}
+		cola.agregar(clave(id, tarea.esUrgente()));
+	}
+
+	/**
+	 * Quita una tarea de la cola y de las reclamadas.
+	 * 
+	 * @param tareaId identificador de la tarea
+	 */
+	void descartar(int tareaId) {
+		enCola.remove(tareaId);
+		urgentes.remove(tareaId);
+		reclamadas.remove(tareaId);
+		depurarSiHaceFalta();
+	}
+
+	/**
+	 * @return siguiente tarea de todos los usuarios sin sacarla, o null
+	 */
+	Tarea ver() {
+		long clave = cima();
+		return clave == NINGUNA ? null : leer((int) clave);
+	}
+
+	/**
+	 * @param usuarioId identificador del usuario
+	 * @return siguiente tarea del usuario sin sacarla, o null
+	 */
+	Tarea ver(int usuarioId) {
+		long clave = cimaDeUsuario(usuarioId);
+		return clave == NINGUNA ? null : leer((int) clave);
+	}
+
+	/**
+	 * @return siguiente tarea de todos los usuarios, ya reclamada, o null
+	 */
+	Tarea tomar() {
+		long clave = cima();
+		if (clave == NINGUNA) {
+			return null;
+		}
+
+		cola.sacarMinimo();
+		return reclamar((int) clave);
+	}
+
+	/**
+	 * @param usuarioId identificador del usuario
+	 * @return siguiente tarea del usuario, ya reclamada, o null
+	 */
+	Tarea tomar(int usuarioId) {
+		long clave = cimaDeUsuario(usuarioId);
+		return clave == NINGUNA ? null : reclamar((int) clave);
+	}
+
+	/**
+	 * @param tareaId identificador de la tarea
+	 * @return tarea reclamada, o null si no estaba en la cola
+	 */
+	Tarea tomarTarea(int tareaId) {
+		return enCola.contiene(tareaId) ? reclamar(tareaId) : null;
+	}
+
+	/**
+	 * @return ids de las tareas reclamadas, ordenados
+	 */
+	int[] reclamadas() {
+		return reclamadas.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+	}
+
+	/**
+	 * Devuelve a la cola una tarea reclamada. Como las completadas y
+	 * eliminadas se descartan, toda tarea reclamada sigue activa.
+	 * 
+	 * @param tareaId identificador de la tarea
+	 * @return true si la tarea volvió a la cola
+	 */
+	boolean liberar(int tareaId) {
+		Integer usuarioId = reclamadas.remove(tareaId);
+		if (usuarioId == null) {
+			return false;
+		}
+
+		enCola.put(tareaId, usuarioId);
+		cola.agregar(clave(tareaId, urgentes.contiene(tareaId)));
+		return true;
+	}
+
+	/**
+	 * Hace salir como urgente una tarea que se acaba de escalar. Su clave
+	 * normal queda obsoleta; si está reclamada, sale como urgente al
+	 * liberarla.
+	 * 
+	 * @param tareaId identificador de la tarea
+	 */
+	void escalar(int tareaId) {
+		if (urgentes.contiene(tareaId) || (!enCola.contiene(tareaId) && !reclamadas.containsKey(tareaId))) {
+			return;
+		}
+
+		urgentes.put(tareaId, 0);
+		if (enCola.contiene(tareaId)) {
+			cola.agregar(clave(tareaId, true));
+		}
+	}
+
+	/**
+	 * Pasa una tarea en cola a reclamadas y la lee del almacén. Su clave,
+	 * si sigue en el montículo, queda obsoleta.
+	 */
+	private Tarea reclamar(int tareaId) {
+		int usuarioId = enCola.remove(tareaId);
+		reclamadas.put(tareaId, usuarioId);
+		depurarSiHaceFalta();
+		return leer(tareaId, usuarioId);
+	}
+
+	private Tarea leer(int tareaId) {
+		return leer(tareaId, enCola.get(tareaId));
+	}
+
+	/**
+	 * Lee una copia de la tarea del almacén, por su dueño e id.
+	 */
+	private Tarea leer(int tareaId, int usuarioId) {
+		Tarea[] leida = new Tarea[1];
+		almacen.recorrerTareas(AlmacenTareas.Filtro.TODAS.deUsuario(usuarioId).entreIds(tareaId, tareaId),
+				(duenio, tarea) -> {
+					leida[0] = FabricaModelo.copiarTarea(tarea);
+					return false;
+				});
+		return leida[0];
+	}
+
+	/**
+	 * Descarta las claves obsoletas de la cima y devuelve la primera
+	 * vigente, o {@link #NINGUNA}.
+	 */
+	private long cima() {
+		while (!cola.isEmpty()) {
+			long clave = cola.minimo();
+			if (vigente(clave)) {
+				return clave;
+			}
+			cola.sacarMinimo();
+		}
+		return NINGUNA;
+	}
+
+	/**
+	 * Busca entre las tareas activas del usuario en el almacén la de menor
+	 * clave que siga en cola.
+	 */
+	private long cimaDeUsuario(int usuarioId) {
+		long[] mejor = { NINGUNA };
+		almacen.recorrerTareas(AlmacenTareas.Filtro.TODAS.deUsuario(usuarioId).conEstado(EstadoTarea.ACTIVA),
+				(duenio, tarea) -> {
+					int id = tarea.getId();
+					if (enCola.contiene(id)) {
+						long clave = clave(id, urgentes.contiene(id));
+						if (mejor[0] == NINGUNA || clave < mejor[0]) {
+							mejor[0] = clave;
+						}
+					}
+					return true;
+				});
+		return mejor[0];
+	}
+
+	/**
+	 * Indica si una clave corresponde a una tarea en cola. La clave normal
+	 * de una tarea escalada queda obsoleta.
+	 */
+	private boolean vigente(long clave) {
+		int id = (int) clave;
+		return enCola.contiene(id) && urgentes.contiene(id) == (clave >>> 32 == 0);
+	}
+
+	/**
+	 * Depura el montículo cuando las claves obsoletas superan a las
+	 * vigentes.
+	 */
+	private void depurarSiHaceFalta() {
+		if (cola.size() > 2 * enCola.size() + MARGEN_COLA) {
+			cola.retener(this::vigente);
+		}
+	}
+
+	/**
+	 * Clave de orden de la cola: urgentes primero y luego por id.
+	 */
+	private static long clave(int tareaId, boolean urgente) {
+		return ((urgente ? 0L : 1L) << 32) | (tareaId & 0xFFFFFFFFL);
+	}
+
+}
@@ -0,0 +1,80 @@
+package servicio;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Columna de valores primitivos de ancho fijo guardada fuera del heap.
+ * 
+ * <p>
+ * Los valores se guardan en bloques de {@link #FILAS_POR_BLOQUE} filas que
+ * se reservan a medida que crece la columna, de modo que nunca hay que
+ * copiar los datos existentes.
+ * </p>
+ */
+
+final class Columna {
+	
+	/** Filas por bloque (potencia de dos) */
+	static final int FILAS_POR_BLOQUE = 1 << 16;
+	
+	private static final int DESPLAZAMIENTO = Integer.numberOfTrailingZeros(FILAS_POR_BLOQUE);
+	private static final int MASCARA = FILAS_POR_BLOQUE - 1;
+	
+	private final String nombre;
+	private final int ancho;
+	private final AsignadorBloques asignador;
+	private final List<ByteBuffer> bloques;
+	
+	/**
+	 * Construye una columna vacía.
+	 * 
+	 * @param nombre nombre de la columna
+	 * @param ancho bytes por valor (1, 4 u 8)
+	 * @param asignador origen de los bloques
+	 */
+	Columna(String nombre, int ancho, AsignadorBloques asignador) {
+		this.nombre = nombre;
+		this.ancho = ancho;
+		this.asignador = asignador;
+		this.bloques = new ArrayList<>();
+	}
+	
+	/**
+	 * Garantiza que existe espacio para la fila indicada.
+	 * 
+	 * @param fila fila que se va a escribir
+	 */
+	void asegurar(int fila) {
+		while ((fila >>> DESPLAZAMIENTO) >= bloques.size()) {
+			long posicion = (long) bloques.size() * FILAS_POR_BLOQUE * ancho;
+			bloques.add(asignador.reservar(nombre, posicion, FILAS_POR_BLOQUE * ancho));
+		}
+	}
+	
+	byte getByte(int fila) {
+		return bloques.get(fila >>> DESPLAZAMIENTO).get(fila & MASCARA);
+	}
+	
+	void putByte(int fila, byte valor) {
+		bloques.get(fila >>> DESPLAZAMIENTO).put(fila & MASCARA, valor);
+	}
+	
+	int getInt(int fila) {
+		return bloques.get(fila >>> DESPLAZAMIENTO).getInt((fila & MASCARA) << 2);
+	}
+	
+	void putInt(int fila, int valor) {
+		bloques.get(fila >>> DESPLAZAMIENTO).putInt((fila & MASCARA) << 2, valor);
+	}
+	
+	long getLong(int fila) {
+		return bloques.get(fila >>> DESPLAZAMIENTO).getLong((fila & MASCARA) << 3);
+	}
+	
+	void putLong(int fila, long valor) {
+		bloques.get(fila >>> DESPLAZAMIENTO).putLong((fila & MASCARA) << 3, valor);
+	}
+
+}
@@ -0,0 +1,402 @@
+package servicio;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import modelo.ContadorTareas;
+import modelo.EstadoTarea;
+import modelo.Pagina;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+
+/**
+ * Extremo de una conexión TCP entre {@link FragmentoRemoto} y
+ * {@link ServidorFragmento}, con los búferes y el codec para escribir y
+ * leer sus mensajes.
+ * 
+ * <p>
+ * Cada mensaje es su longitud (int), un byte con la operación pedida o el
+ * estado de la respuesta y los datos. Los enteros van en big-endian, los
+ * textos como su longitud en bytes (-1 si son null) y su UTF-8, los
+ * enumerados por ordinal (-1 si son null), y los usuarios y las tareas con
+ * {@link CodecBinario}, precedidos de un byte que indica si hay valor. Una
+ * petición se escribe entera en el búfer de salida antes de enviarla, y una
+ * respuesta se recibe entera antes de leerla.
+ * </p>
+ * 
+ * <p>
+ * Tras una petición {@link #SUSCRIBIR} correcta la conexión deja de
+ * atender peticiones y el servidor envía por ella, según se publican, los
+ * lotes de eventos ({@link #EVENTOS}: cantidad y, por evento, el evento
+ * codificado y su secuencia) y los avisos de eventos descartados
+ * ({@link #PERDIDOS}). Cuando el cliente cierra su lado de escritura, el
+ * servidor envía lo que quedaba publicado y cierra la conexión.
+ * </p>
+ * 
+ * <p>
+ * La conexión no es segura para uso concurrente: cada una atiende una
+ * petición cada vez. En una suscripción un hilo puede leer mientras otro
+ * escribe.
+ * </p>
+ */
+
+final class ConexionFragmento implements Closeable {
+	
+	// Operaciones
+	
+	static final byte IDENTIFICAR = 1;
+	static final byte CREAR_USUARIO = 2;
+	static final byte BUSCAR_USUARIO = 3;
+	static final byte LISTAR_USUARIOS = 4;
+	static final byte PAGINA_USUARIOS = 5;
+	static final byte CREAR_TAREA = 6;
+	static final byte RESERVAR_IDS = 7;
+	static final byte AGREGAR_TAREAS = 8;
+	static final byte LISTAR_TAREAS_USUARIO = 9;
+	static final byte PAGINA_TAREAS_USUARIO = 10;
+	static final byte COMPLETAR = 11;
+	static final byte ELIMINAR = 12;
+	static final byte TAREAS_POR_TIPO = 13;
+	static final byte BUSCAR_TAREAS = 14;
+	static final byte SIGUIENTE = 15;
+	static final byte SIGUIENTE_USUARIO = 16;
+	static final byte LIBERAR = 17;
+	static final byte CONTAR = 18;
+	static final byte CONTAR_USUARIO = 19;
+	static final byte CONTAR_TIPO = 20;
+	static final byte FIJAR_VENCIMIENTO = 21;
+	static final byte REVISAR_VENCIMIENTOS = 22;
+	static final byte TOMAR_TAREA = 23;
+	static final byte SUSCRIBIR = 24;
+	
+	// Estados de las respuestas
+	
+	static final byte CORRECTO = 0;
+	static final byte ARGUMENTO_NO_VALIDO = 1;
+	static final byte ERROR = 2;
+	
+	// Mensajes de una suscripción
+	
+	static final byte EVENTOS = 3;
+	static final byte PERDIDOS = 4;
+	
+	/** Mayor mensaje admitido */
+	private static final int MAXIMO_MENSAJE = 1 << 30;
+	
+	private static final Prioridad[] PRIORIDADES = Prioridad.values();
+	private static final EstadoTarea[] ESTADOS = EstadoTarea.values();
+	private static final TipoUsuario[] TIPOS = TipoUsuario.values();
+	
+	private final SocketChannel canal;
+	private final CodecBinario codec;
+	private ByteBuffer salida;
+	private ByteBuffer entrada;
+	
+	/**
+	 * Envuelve un canal conectado en modo bloqueante.
+	 * 
+	 * @param canal canal conectado
+	 * @throws IOException si no se pueden cambiar sus opciones
+	 */
+	ConexionFragmento(SocketChannel canal) throws IOException {
+		canal.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		this.canal = canal;
+		this.codec = new CodecBinario();
+		this.salida = ByteBuffer.allocate(8192);
+		this.entrada = ByteBuffer.allocate(8192);
+	}
+	
+	@Override
+	public void close() throws IOException {
+		canal.close();
+	}
+	
+	/**
+	 * Cierra el lado de escritura, para que el otro extremo reciba el fin
+	 * de la conexión sin dejar de poder contestar.
+	 * 
+	 * @throws IOException si el canal ya está cerrado
+	 */
+	void terminarEnvio() throws IOException {
+		canal.shutdownOutput();
+	}
+	
+	// Envío y recepción
+	
+	/**
+	 * Empieza un mensaje nuevo en el búfer de salida.
+	 * 
+	 * @param tipo operación o estado de la respuesta
+	 */
+	void empezar(byte tipo) {
+		salida.clear();
+		salida.putInt(0).put(tipo);
+	}
+	
+	/**
+	 * Completa la longitud del mensaje y lo envía entero.
+	 * 
+	 * @throws IOException si falla la escritura
+	 */
+	void enviar() throws IOException {
+		salida.putInt(0, salida.position() - Integer.BYTES).flip();
+		while (salida.hasRemaining()) {
+			canal.write(salida);
+		}
+	}
+	
+	/**
+	 * Recibe un mensaje entero y deja el búfer de entrada al principio de
+	 * sus datos.
+	 * 
+	 * @return operación o estado del mensaje, o -1 si el otro extremo cerró
+	 * la conexión entre dos mensajes
+	 * @throws IOException si falla la lectura, la conexión se corta a mitad
+	 * de un mensaje o su longitud no es válida
+	 */
+	int recibir() throws IOException {
+		if (!leer(Integer.BYTES, true)) {
+			return -1;
+		}
+		int longitud = entrada.getInt();
+		if (longitud < 1 || longitud > MAXIMO_MENSAJE) {
+			throw new IOException("Longitud de mensaje no válida: " + longitud);
+		}
+		leer(longitud, false);
+		return entrada.get();
+	}
+	
+	/**
+	 * Lee del canal exactamente los bytes indicados.
+	 * 
+	 * @return false si el canal terminó antes del primer byte y se admitía
+	 */
+	private boolean leer(int bytes, boolean admitirFin) throws IOException {
+		if (entrada.capacity() < bytes) {
+			entrada = ByteBuffer.allocate(Math.max(bytes, entrada.capacity() * 2));
+		}
+		entrada.clear().limit(bytes);
+		while (entrada.hasRemaining()) {
+			if (canal.read(entrada) < 0) {
+				if (admitirFin && entrada.position() == 0) {
+					return false;
+				}
+				throw new EOFException("Conexión cerrada a mitad de un mensaje.");
+			}
+		}
+		entrada.flip();
+		return true;
+	}
+	
+	/** Agranda el búfer de salida si no caben los bytes indicados */
+	private void asegurar(int bytes) {
+		if (salida.remaining() < bytes) {
+			ByteBuffer mayor = ByteBuffer.allocate(Math.max(salida.capacity() * 2, salida.position() + bytes));
+			salida = mayor.put(salida.flip());
+		}
+	}
+	
+	// Escritura
+	
+	/**
+	 * Deja sitio para un entero que se conocerá después.
+	 * 
+	 * @return posición del entero, para {@link #fijarEntero(int, int)}
+	 */
+	int reservarEntero() {
+		int posicion = salida.position();
+		entero(0);
+		return posicion;
+	}
+	
+	void fijarEntero(int posicion, int valor) {
+		salida.putInt(posicion, valor);
+	}
+	
+	void entero(int valor) {
+		asegurar(Integer.BYTES);
+		salida.putInt(valor);
+	}
+	
+	void largo(long valor) {
+		asegurar(Long.BYTES);
+		salida.putLong(valor);
+	}
+	
+	void logico(boolean valor) {
+		asegurar(1);
+		salida.put((byte) (valor ? 1 : 0));
+	}
+	
+	void texto(String texto) {
+		if (texto == null) {
+			entero(-1);
+			return;
+		}
+		byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+		entero(bytes.length);
+		asegurar(bytes.length);
+		salida.put(bytes);
+	}
+	
+	void enumerado(Enum<?> valor) {
+		asegurar(1);
+		salida.put((byte) (valor == null ? -1 : valor.ordinal()));
+	}
+	
+	void tarea(Tarea tarea) {
+		logico(tarea != null);
+		if (tarea != null) {
+			asegurar(codec.tamanio(tarea));
+			codec.escribir(salida, tarea);
+		}
+	}
+	
+	void usuario(Usuario usuario) {
+		logico(usuario != null);
+		if (usuario != null) {
+			asegurar(codec.tamanio(usuario));
+			codec.escribir(salida, usuario);
+		}
+	}
+	
+	/**
+	 * Escribe una lista de tareas, o -1 si es null.
+	 */
+	void tareas(List<Tarea> tareas) {
+		entero(tareas == null ? -1 : tareas.size());
+		if (tareas != null) {
+			for (Tarea tarea : tareas) {
+				asegurar(codec.tamanio(tarea));
+				codec.escribir(salida, tarea);
+			}
+		}
+	}
+	
+	void usuarios(List<Usuario> usuarios) {
+		entero(usuarios.size());
+		for (Usuario usuario : usuarios) {
+			asegurar(codec.tamanio(usuario));
+			codec.escribir(salida, usuario);
+		}
+	}
+	
+	void contador(ContadorTareas contador) {
+		logico(contador != null);
+		if (contador != null) {
+			for (EstadoTarea estado : ESTADOS) {
+				for (Prioridad prioridad : PRIORIDADES) {
+					entero(contador.contar(estado, prioridad));
+				}
+			}
+		}
+	}
+	
+	// Lectura
+	
+	int leerEntero() {
+		return entrada.getInt();
+	}
+	
+	long leerLargo() {
+		return entrada.getLong();
+	}
+	
+	boolean leerLogico() {
+		return entrada.get() != 0;
+	}
+	
+	String leerTexto() {
+		int longitud = entrada.getInt();
+		if (longitud < 0) {
+			return null;
+		}
+		String texto = new String(entrada.array(), entrada.arrayOffset() + entrada.position(), longitud,
+				StandardCharsets.UTF_8);
+		entrada.position(entrada.position() + longitud);
+		return texto;
+	}
+	
+	TipoUsuario leerTipo() {
+		return enumerado(TIPOS, entrada.get());
+	}
+	
+	EstadoTarea leerEstado() {
+		return enumerado(ESTADOS, entrada.get());
+	}
+	
+	Prioridad leerPrioridad() {
+		return enumerado(PRIORIDADES, entrada.get());
+	}
+	
+	Tarea leerTarea() {
+		return leerLogico() ? codec.leerTarea(entrada) : null;
+	}
+	
+	Usuario leerUsuario() {
+		return leerLogico() ? codec.leerUsuario(entrada) : null;
+	}
+	
+	/**
+	 * @return lista de tareas, o null si se escribió null
+	 */
+	List<Tarea> leerTareas() {
+		int cantidad = entrada.getInt();
+		if (cantidad < 0) {
+			return null;
+		}
+		List<Tarea> tareas = new ArrayList<>(Math.min(cantidad, entrada.remaining()));
+		for (int i = 0; i < cantidad; i++) {
+			tareas.add(codec.leerTarea(entrada));
+		}
+		return tareas;
+	}
+	
+	List<Usuario> leerUsuarios() {
+		int cantidad = entrada.getInt();
+		List<Usuario> usuarios = new ArrayList<>(Math.min(cantidad, entrada.remaining()));
+		for (int i = 0; i < cantidad; i++) {
+			usuarios.add(codec.leerUsuario(entrada));
+		}
+		return usuarios;
+	}
+	
+	Pagina<Tarea> leerPaginaTareas() {
+		List<Tarea> tareas = leerTareas();
+		long siguiente = entrada.getLong();
+		return tareas == null ? null : new Pagina<>(tareas, siguiente);
+	}
+	
+	ContadorTareas leerContador() {
+		if (!leerLogico()) {
+			return null;
+		}
+		ContadorTareas.Acumulador contador = new ContadorTareas.Acumulador();
+		for (EstadoTarea estado : ESTADOS) {
+			for (Prioridad prioridad : PRIORIDADES) {
+				contador.sumar(estado, prioridad, entrada.getInt());
+			}
+		}
+		return contador.getContador();
+	}
+	
+	private static <E> E enumerado(E[] valores, byte ordinal) {
+		if (ordinal == -1) {
+			return null;
+		}
+		if (ordinal < 0 || ordinal >= valores.length) {
+			throw new IllegalArgumentException("Ordinal no válido: " + ordinal);
+		}
+		return valores[ordinal];
+	}
+
+}
@@ -0,0 +1,244 @@
+package servicio;
+
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Evaluación de consultas sobre todas las tareas de un grupo de usuarios,
+ * común a las implementaciones de {@link interfaces.Accionable}.
+ * 
+ * <p>
+ * Las tareas se ven como una secuencia de segmentos, uno por usuario, y se
+ * reparten por posición global: cada división parte el rango restante por
+ * la mitad del número de tareas, aunque caiga dentro de un mismo usuario.
+ * Así un usuario con muchas más tareas que el resto no deja a un hilo con
+ * casi todo el trabajo.
+ * </p>
+ * 
+ * <p>
+ * Las consultas paralelas se evalúan en un {@link ForkJoinPool} propio, para
+ * no competir con el pool común ni bloquearlo. Su paralelismo es el número
+ * de procesadores, o el de la propiedad de sistema
+ * {@value #PROPIEDAD_PARALELISMO} si se indica antes de la primera consulta.
+ * </p>
+ */
+
+final class ConsultasParalelas {
+	
+	/** Tareas a partir de las cuales la consulta se evalúa en paralelo */
+	static final long UMBRAL_PARALELO = 1 << 15;
+	
+	/** Propiedad de sistema con el paralelismo del pool de consultas */
+	static final String PROPIEDAD_PARALELISMO = "smarttask.consultas.paralelismo";
+	
+	/** Posiciones que se leen de una vez de un segmento */
+	private static final int TAMANIO_BLOQUE = 256;
+	
+	private ConsultasParalelas() {
+	}
+	
+	/**
+	 * Lee las tareas de un segmento.
+	 */
+	@FunctionalInterface
+	interface Lector {
+		
+		/**
+		 * Copia las tareas vigentes de las posiciones indicadas de un
+		 * segmento. Si el segmento se ha acortado se copian las que queden.
+		 * 
+		 * @param segmento número de segmento
+		 * @param desde primera posición, incluida
+		 * @param hasta última posición, excluida
+		 * @param destino arreglo de al menos {@code hasta - desde} elementos
+		 * @return número de tareas copiadas al inicio de {@code destino}
+		 */
+		int leer(int segmento, int desde, int hasta, Object[] destino);
+	}
+	
+	/**
+	 * Evalúa una consulta sobre las tareas de los segmentos indicados. Por
+	 * debajo de {@link #UMBRAL_PARALELO} el stream es secuencial y se evalúa
+	 * en el hilo que llama.
+	 * 
+	 * @param tamanios número de posiciones de cada segmento
+	 * @param lector acceso a las tareas de los segmentos
+	 * @param consulta función que reduce el stream a un resultado
+	 * @return resultado de la consulta
+	 */
+	static <T, R> R ejecutar(int[] tamanios, Lector lector, Function<? super Stream<T>, ? extends R> consulta) {
+		long[] acumulado = new long[tamanios.length + 1];
+		for (int i = 0; i < tamanios.length; i++) {
+			acumulado[i + 1] = acumulado[i] + tamanios[i];
+		}
+		
+		long total = acumulado[tamanios.length];
+		Reparto<T> reparto = new Reparto<>(acumulado, lector, 0, total);
+		
+		if (total < UMBRAL_PARALELO) {
+			return consulta.apply(StreamSupport.stream(reparto, false));
+		}
+		return Pool.INSTANCIA.submit(() -> consulta.apply(StreamSupport.stream(reparto, true))).join();
+	}
+	
+	/**
+	 * Pool de las consultas, creado en la primera consulta paralela.
+	 */
+	private static final class Pool {
+		
+		static final ForkJoinPool INSTANCIA = crear();
+		
+		private static ForkJoinPool crear() {
+			int paralelismo = Integer.getInteger(PROPIEDAD_PARALELISMO, Runtime.getRuntime().availableProcessors());
+			if (paralelismo <= 0) {
+				throw new IllegalArgumentException("El paralelismo de las consultas debe ser positivo.");
+			}
+			
+			return new ForkJoinPool(paralelismo, pool -> {
+				ForkJoinWorkerThread hilo = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				hilo.setName("smarttask-consulta-" + hilo.getPoolIndex());
+				return hilo;
+			}, null, false);
+		}
+	}
+	
+	/**
+	 * Recorrido divisible de un rango de posiciones globales.
+	 * 
+	 * <p>
+	 * Las tareas se leen por bloques de {@value #TAMANIO_BLOQUE} posiciones
+	 * para amortizar el acceso a cada segmento, que en algunas
+	 * implementaciones requiere un cerrojo. La consistencia es débil: se
+	 * entregan las tareas presentes al leer cada bloque.
+	 * </p>
+	 */
+	private static final class Reparto<T> implements Spliterator<T> {
+		
+		/** Posición global del inicio de cada segmento, y el total al final */
+		private final long[] acumulado;
+		
+		private final Lector lector;
+		
+		/** Rango pendiente de leer */
+		private long desde;
+		private final long hasta;
+		
+		/** Segmento que contiene {@link #desde}, o -1 si hay que buscarlo */
+		private int segmento;
+		
+		/** Tareas leídas del último bloque y cuántas se han entregado */
+		private Object[] bloque;
+		private int leidas;
+		private int entregadas;
+		
+		Reparto(long[] acumulado, Lector lector, long desde, long hasta) {
+			this.acumulado = acumulado;
+			this.lector = lector;
+			this.desde = desde;
+			this.hasta = hasta;
+			this.segmento = -1;
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public boolean tryAdvance(Consumer<? super T> accion) {
+			while (entregadas == leidas) {
+				if (!leerBloque()) {
+					return false;
+				}
+			}
+			
+			accion.accept((T) bloque[entregadas++]);
+			return true;
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public void forEachRemaining(Consumer<? super T> accion) {
+			do {
+				while (entregadas < leidas) {
+					accion.accept((T) bloque[entregadas++]);
+				}
+			} while (leerBloque());
+		}
+		
+		/**
+		 * Lee el siguiente bloque, sin pasar del final del segmento actual.
+		 * 
+		 * @return false si no quedan posiciones
+		 */
+		private boolean leerBloque() {
+			if (desde >= hasta) {
+				return false;
+			}
+			if (bloque == null) {
+				bloque = new Object[TAMANIO_BLOQUE];
+			}
+			if (segmento < 0) {
+				segmento = buscarSegmento(desde);
+			}
+			while (acumulado[segmento + 1] <= desde) {
+				segmento++;
+			}
+			
+			long inicio = acumulado[segmento];
+			long fin = Math.min(Math.min(acumulado[segmento + 1], hasta), desde + TAMANIO_BLOQUE);
+			leidas = lector.leer(segmento, (int) (desde - inicio), (int) (fin - inicio), bloque);
+			entregadas = 0;
+			desde = fin;
+			return true;
+		}
+		
+		/**
+		 * Busca el último segmento que empieza en la posición indicada o
+		 * antes.
+		 */
+		private int buscarSegmento(long posicion) {
+			int bajo = 0;
+			int alto = acumulado.length - 2;
+			while (bajo < alto) {
+				int medio = (bajo + alto + 1) >>> 1;
+				if (acumulado[medio] <= posicion) {
+					bajo = medio;
+				} else {
+					alto = medio - 1;
+				}
+			}
+			return bajo;
+		}
+		
+		/**
+		 * Divide por la mitad de las posiciones pendientes. No se divide con
+		 * un bloque a medio entregar ni por debajo de dos bloques.
+		 */
+		@Override
+		public Spliterator<T> trySplit() {
+			long mitad = (desde + hasta) >>> 1;
+			if (entregadas < leidas || mitad - desde < TAMANIO_BLOQUE) {
+				return null;
+			}
+			
+			Reparto<T> prefijo = new Reparto<>(acumulado, lector, desde, mitad);
+			prefijo.segmento = segmento;
+			desde = mitad;
+			segmento = -1;
+			return prefijo;
+		}
+		
+		@Override
+		public long estimateSize() {
+			return hasta - desde + (leidas - entregadas);
+		}
+		
+		@Override
+		public int characteristics() {
+			return ORDERED | NONNULL;
+		}
+	}
+
+}
@@ -0,0 +1,128 @@
+package servicio;
+
+import modelo.EstadoTarea;
+import modelo.Estudiante;
+import modelo.Prioridad;
+import modelo.Profesor;
+import modelo.Tarea;
+import modelo.TareaNormal;
+import modelo.TareaUrgente;
+import modelo.TipoUsuario;
+import modelo.Trabajador;
+import modelo.Usuario;
+
+/**
+ * Crea instancias concretas de usuarios y tareas a partir de su tipo.
+ * 
+ * <p>
+ * Es compartida por las implementaciones de la capa de servicio para que
+ * la correspondencia entre tipo y clase concreta esté en un solo lugar.
+ * </p>
+ */
+
+final class FabricaModelo {
+	
+	private FabricaModelo() {
+	}
+	
+	/**
+	 * Crea un usuario del tipo indicado.
+	 * 
+	 * @param id identificador ya generado
+	 * @param nombre nombre del usuario
+	 * @param tipo tipo de usuario
+	 * @return usuario creado
+	 * @throws IllegalArgumentException si el tipo no es válido
+	 */
+	static Usuario nuevoUsuario(int id, String nombre, TipoUsuario tipo) {
+		if (tipo == null) {
+			throw new IllegalArgumentException("Tipo de usuario no válido.");
+		}
+		
+		switch (tipo) {
+			case PROFESOR:
+				return new Profesor(id, nombre);
+			case ESTUDIANTE:
+				return new Estudiante(id, nombre);
+			case TRABAJADOR:
+				return new Trabajador(id, nombre);
+			default:
+				throw new IllegalArgumentException("Tipo de usuario no válido.");
+		}
+	}
+	
+	/**
+	 * Crea una tarea con la prioridad indicada.
+	 * 
+	 * @param id identificador ya generado
+	 * @param descripcion descripción de la tarea
+	 * @param prioridad prioridad de la tarea
+	 * @return tarea creada
+	 * @throws IllegalArgumentException si la prioridad no es válida
+	 */
+	static Tarea nuevaTarea(int id, String descripcion, Prioridad prioridad) {
+		return nuevaTarea(id, descripcion, prioridad, System.currentTimeMillis());
+	}
+	
+	/**
+	 * Crea una tarea con la prioridad y el instante de creación indicados,
+	 * por ejemplo al restaurarla o reconstruirla desde sus columnas.
+	 * 
+	 * @param id identificador ya generado
+	 * @param descripcion descripción de la tarea
+	 * @param prioridad prioridad de la tarea
+	 * @param creadaEn instante de creación en milisegundos desde la época
+	 * @return tarea creada
+	 * @throws IllegalArgumentException si la prioridad no es válida
+	 */
+	static Tarea nuevaTarea(int id, String descripcion, Prioridad prioridad, long creadaEn) {
+		if (prioridad == null) {
+			throw new IllegalArgumentException("Prioridad no válida.");
+		}
+		
+		switch (prioridad) {
+			case NORMAL:
+				return new TareaNormal(id, descripcion, creadaEn);
+			case URGENTE:
+				return new TareaUrgente(id, descripcion, creadaEn);
+			default:
+				throw new IllegalArgumentException("Prioridad no válida.");
+		}
+	}
+	
+	/**
+	 * Crea una copia de una tarea sin usuario, con su estado, vencimiento y
+	 * escalado, para guardarla sin quitársela a su dueño.
+	 * 
+	 * @param tarea tarea a copiar
+	 * @return copia sin usuario
+	 */
+	static Tarea copiarTarea(Tarea tarea) {
+		Tarea copia = nuevaTarea(tarea.getId(), tarea.getDescripcion(), tarea.getPrioridad(), tarea.getCreadaEn());
+		copia.setVenceEn(tarea.getVenceEn());
+		if (tarea.isEscalada()) {
+			copia.escalar();
+		}
+		if (tarea.getEstado() == EstadoTarea.COMPLETADA) {
+			copia.marcarComoCompletada(tarea.getCompletadaEn());
+		}
+		return copia;
+	}
+	
+	/**
+	 * Copia un usuario con copias de todas sus tareas, para entregarlo sin
+	 * compartir su estado con el original.
+	 * 
+	 * @param usuario usuario a copiar
+	 * @return copia independiente
+	 */
+	static Usuario copiarUsuario(Usuario usuario) {
+		Usuario copia = nuevoUsuario(usuario.getId(), usuario.getNombre(), usuario.getTipo());
+		copia.asegurarCapacidad(usuario.getTareas().size());
+		for (Tarea tarea : usuario.getTareas()) {
+			copia.agregarTarea(copiarTarea(tarea));
+		}
+		return copia;
+	}
+
+}
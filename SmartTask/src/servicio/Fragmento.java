@@ -0,0 +1,139 @@
+package servicio;
+
+import java.io.Closeable;
+import java.util.List;
+
+import interfaces.OyenteTareas;
+import interfaces.OyenteVencimientos;
+import interfaces.Suscripcion;
+import modelo.ContadorTareas;
+import modelo.EstadoTarea;
+import modelo.Pagina;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+
+/**
+ * Operaciones que {@link GestorTareasFragmentado} pide a cada uno de sus
+ * fragmentos, dentro del mismo proceso ({@link FragmentoLocal}) o a través
+ * de un socket ({@link FragmentoRemoto}).
+ * 
+ * <p>
+ * Las implementaciones son seguras para uso concurrente y devuelven listas
+ * propias, que el llamador puede combinar sin copiarlas. Las operaciones
+ * tienen el significado de las de {@link interfaces.Accionable} con el
+ * mismo nombre, restringidas a los usuarios del fragmento.
+ * </p>
+ */
+
+interface Fragmento extends Closeable {
+	
+	Usuario crearUsuario(String nombre, TipoUsuario tipo);
+	
+	Usuario buscarUsuario(int id);
+	
+	/**
+	 * @param tipo tipo de usuario, o null para todos
+	 * @return usuarios del fragmento en orden de id
+	 */
+	List<Usuario> listarUsuarios(TipoUsuario tipo);
+	
+	Pagina<Usuario> listarUsuarios(long cursor, int limite);
+	
+	Tarea crearTarea(String descripcion, Prioridad prioridad);
+	
+	int reservarIdsTareas(int cantidad);
+	
+	void agregarTareasAUsuario(int usuarioId, List<Tarea> tareas);
+	
+	/**
+	 * @param usuarioId id del usuario
+	 * @param estado estado de las tareas, o null para cualquiera
+	 * @param prioridad prioridad de las tareas, o null para cualquiera; se
+	 * ignora si se indica el estado
+	 * @return tareas o null si el usuario no existe
+	 */
+	List<Tarea> listarTareasDeUsuario(int usuarioId, EstadoTarea estado, Prioridad prioridad);
+	
+	Pagina<Tarea> listarTareasDeUsuario(int usuarioId, long cursor, int limite);
+	
+	boolean marcarTareaComoCompletada(int usuarioId, int tareaId);
+	
+	boolean eliminarTareaDeUsuario(int usuarioId, int tareaId);
+	
+	/**
+	 * Devuelve las tareas de los usuarios de un tipo que siguen a un
+	 * cursor, agrupadas por usuario para poder mezclarlas con las de otros
+	 * fragmentos.
+	 * 
+	 * @param tipo tipo de usuario, o null para todos
+	 * @param cursor cursor de {@link Pagina#cursor(int, int)} o
+	 * {@link Pagina#INICIO}
+	 * @param limite número máximo de tareas entre todos los grupos
+	 * @return grupos no vacíos en orden de id de usuario
+	 */
+	List<Grupo> listarTareasPorTipoUsuario(TipoUsuario tipo, long cursor, int limite);
+	
+	List<Tarea> buscarTareas(String consulta, EstadoTarea estado, Prioridad prioridad, TipoUsuario tipo, int limite);
+	
+	/**
+	 * @param tomar true para sacar la tarea de la cola
+	 * @return siguiente tarea de todo el fragmento, o null si no hay
+	 */
+	Tarea siguienteTarea(boolean tomar);
+	
+	/**
+	 * @param usuarioId id del usuario
+	 * @param tomar true para sacar la tarea de la cola
+	 * @return siguiente tarea del usuario, o null si no hay
+	 */
+	Tarea siguienteTarea(int usuarioId, boolean tomar);
+	
+	/**
+	 * Toma una tarea concreta si sigue en la cola, para reclamar la cima
+	 * consultada antes sin que otro despachador se la lleve en medio.
+	 * 
+	 * @param tareaId id de la tarea
+	 * @return tarea reclamada, o null si ya no estaba en la cola
+	 */
+	Tarea tomarTarea(int tareaId);
+	
+	boolean liberarTarea(int tareaId);
+	
+	ContadorTareas contarTareas();
+	
+	ContadorTareas contarTareasDeUsuario(int usuarioId);
+	
+	ContadorTareas contarTareasPorTipoUsuario(TipoUsuario tipo);
+	
+	boolean fijarVencimiento(int usuarioId, int tareaId, long venceEn, long antelacion);
+	
+	int revisarVencimientos(long ahora, OyenteVencimientos oyente);
+	
+	/**
+	 * Suscribe un oyente a los eventos del fragmento, que se le entregan
+	 * desde un hilo propio de la suscripción.
+	 * 
+	 * @param oyente oyente de los eventos
+	 * @param loteMaximo número máximo de eventos por lote
+	 * @return suscripción, que debe cerrarse para detener su hilo
+	 */
+	Suscripcion suscribir(OyenteTareas oyente, int loteMaximo);
+	
+	/**
+	 * Tareas consecutivas de un usuario dentro de un listado.
+	 */
+	final class Grupo {
+		
+		final int usuarioId;
+		final List<Tarea> tareas;
+		
+		Grupo(int usuarioId, List<Tarea> tareas) {
+			this.usuarioId = usuarioId;
+			this.tareas = tareas;
+		}
+	
+	}
+
+}
@@ -0,0 +1,212 @@
+package servicio;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import interfaces.OyenteTareas;
+import interfaces.OyenteVencimientos;
+import interfaces.Suscripcion;
+import modelo.ContadorTareas;
+import modelo.EstadoTarea;
+import modelo.Pagina;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+
+/**
+ * Fragmento que vive en el mismo proceso: un {@link GestorTareasServicio}
+ * propio protegido por su propio cerrojo.
+ * 
+ * <p>
+ * Como en {@link GestorTareasPersistente}, todas las operaciones están
+ * sincronizadas; los fragmentos no comparten cerrojo, así que las
+ * operaciones sobre usuarios de fragmentos distintos no se esperan. Como
+ * en los fragmentos remotos, los usuarios y las tareas devueltos son
+ * copias hechas antes de soltar el cerrojo, así que recorrerlos no compite
+ * con las escrituras del fragmento.
+ * </p>
+ */
+
+final class FragmentoLocal implements Fragmento {
+	
+	private final GestorTareasServicio gestor;
+	
+	/**
+	 * Crea un fragmento vacío.
+	 * 
+	 * @param anillo reparto de ids entre los fragmentos
+	 * @param fragmento número de este fragmento en el anillo
+	 */
+	FragmentoLocal(AnilloFragmentos anillo, int fragmento) {
+		this.gestor = new GestorTareasServicio();
+		gestor.fragmentar(anillo, fragmento);
+	}
+	
+	@Override
+	public synchronized Usuario crearUsuario(String nombre, TipoUsuario tipo) {
+		return FabricaModelo.copiarUsuario(gestor.crearUsuario(nombre, tipo));
+	}
+	
+	@Override
+	public synchronized Usuario buscarUsuario(int id) {
+		Usuario usuario = gestor.buscarUsuario(id);
+		return usuario == null ? null : FabricaModelo.copiarUsuario(usuario);
+	}
+	
+	@Override
+	public synchronized List<Usuario> listarUsuarios(TipoUsuario tipo) {
+		return copiarUsuarios(tipo == null ? gestor.listarUsuarios() : gestor.listarUsuariosPorTipo(tipo));
+	}
+	
+	@Override
+	public synchronized Pagina<Usuario> listarUsuarios(long cursor, int limite) {
+		Pagina<Usuario> pagina = gestor.listarUsuarios(cursor, limite);
+		return new Pagina<>(copiarUsuarios(pagina.getElementos()), pagina.getSiguiente());
+	}
+	
+	@Override
+	public synchronized Tarea crearTarea(String descripcion, Prioridad prioridad) {
+		return gestor.crearTarea(descripcion, prioridad);
+	}
+	
+	@Override
+	public synchronized int reservarIdsTareas(int cantidad) {
+		return gestor.reservarIdsTareas(cantidad);
+	}
+	
+	@Override
+	public synchronized void agregarTareasAUsuario(int usuarioId, List<Tarea> tareas) {
+		gestor.agregarTareasAUsuario(usuarioId, tareas);
+	}
+	
+	@Override
+	public synchronized List<Tarea> listarTareasDeUsuario(int usuarioId, EstadoTarea estado, Prioridad prioridad) {
+		List<Tarea> tareas;
+		if (estado != null) {
+			tareas = gestor.listarTareasDeUsuario(usuarioId, estado);
+		} else if (prioridad != null) {
+			tareas = gestor.listarTareasDeUsuario(usuarioId, prioridad);
+		} else {
+			tareas = gestor.listarTareasDeUsuario(usuarioId);
+		}
+		return tareas == null ? null : copiarTareas(tareas);
+	}
+	
+	@Override
+	public synchronized Pagina<Tarea> listarTareasDeUsuario(int usuarioId, long cursor, int limite) {
+		Pagina<Tarea> pagina = gestor.listarTareasDeUsuario(usuarioId, cursor, limite);
+		return pagina == null ? null : new Pagina<>(copiarTareas(pagina.getElementos()), pagina.getSiguiente());
+	}
+	
+	@Override
+	public synchronized boolean marcarTareaComoCompletada(int usuarioId, int tareaId) {
+		return gestor.marcarTareaComoCompletada(usuarioId, tareaId);
+	}
+	
+	@Override
+	public synchronized boolean eliminarTareaDeUsuario(int usuarioId, int tareaId) {
+		return gestor.eliminarTareaDeUsuario(usuarioId, tareaId);
+	}
+	
+	@Override
+	public synchronized List<Grupo> listarTareasPorTipoUsuario(TipoUsuario tipo, long cursor, int limite) {
+		List<Grupo> grupos = new ArrayList<>();
+		int usuarioDesde = Pagina.usuarioDe(cursor);
+		List<Usuario> usuarios = tipo == null ? gestor.listarUsuarios() : gestor.listarUsuariosPorTipo(tipo);
+		
+		int restantes = limite;
+		for (int i = Paginacion.primeroDespuesDe(usuarios, usuarioDesde - 1L); i < usuarios.size() && restantes > 0; i++) {
+			Usuario usuario = usuarios.get(i);
+			int tareaDesde = usuario.getId() == usuarioDesde ? Pagina.tareaDe(cursor) : Integer.MIN_VALUE;
+			
+			List<Tarea> propias = usuario.tareasDespuesDe(tareaDesde, restantes);
+			if (!propias.isEmpty()) {
+				grupos.add(new Grupo(usuario.getId(), copiarTareas(propias)));
+				restantes -= propias.size();
+			}
+		}
+		return grupos;
+	}
+	
+	@Override
+	public synchronized List<Tarea> buscarTareas(String consulta, EstadoTarea estado, Prioridad prioridad,
+			TipoUsuario tipo, int limite) {
+		return copiarTareas(gestor.buscarTareas(consulta, estado, prioridad, tipo, limite));
+	}
+	
+	@Override
+	public synchronized Tarea siguienteTarea(boolean tomar) {
+		return copiar(tomar ? gestor.tomarSiguienteTarea() : gestor.verSiguienteTarea());
+	}
+	
+	@Override
+	public synchronized Tarea siguienteTarea(int usuarioId, boolean tomar) {
+		return copiar(tomar ? gestor.tomarSiguienteTarea(usuarioId) : gestor.verSiguienteTarea(usuarioId));
+	}
+	
+	@Override
+	public synchronized Tarea tomarTarea(int tareaId) {
+		return copiar(gestor.tomarTarea(tareaId));
+	}
+	
+	@Override
+	public synchronized boolean liberarTarea(int tareaId) {
+		return gestor.liberarTarea(tareaId);
+	}
+	
+	@Override
+	public synchronized ContadorTareas contarTareas() {
+		return gestor.contarTareas();
+	}
+	
+	@Override
+	public synchronized ContadorTareas contarTareasDeUsuario(int usuarioId) {
+		return gestor.contarTareasDeUsuario(usuarioId);
+	}
+	
+	@Override
+	public synchronized ContadorTareas contarTareasPorTipoUsuario(TipoUsuario tipo) {
+		return gestor.contarTareasPorTipoUsuario(tipo);
+	}
+	
+	@Override
+	public synchronized boolean fijarVencimiento(int usuarioId, int tareaId, long venceEn, long antelacion) {
+		return gestor.fijarVencimiento(usuarioId, tareaId, venceEn, antelacion);
+	}
+	
+	@Override
+	public synchronized int revisarVencimientos(long ahora, OyenteVencimientos oyente) {
+		return gestor.revisarVencimientos(ahora, oyente);
+	}
+	
+	@Override
+	public Suscripcion suscribir(OyenteTareas oyente, int loteMaximo) {
+		return gestor.suscribir(oyente, loteMaximo);
+	}
+	
+	@Override
+	public void close() {
+	}
+	
+	private static Tarea copiar(Tarea tarea) {
+		return tarea == null ? null : FabricaModelo.copiarTarea(tarea);
+	}
+	
+	private static List<Tarea> copiarTareas(List<Tarea> tareas) {
+		List<Tarea> copias = new ArrayList<>(tareas.size());
+		for (Tarea tarea : tareas) {
+			copias.add(FabricaModelo.copiarTarea(tarea));
+		}
+		return copias;
+	}
+	
+	private static List<Usuario> copiarUsuarios(List<Usuario> usuarios) {
+		List<Usuario> copias = new ArrayList<>(usuarios.size());
+		for (Usuario usuario : usuarios) {
+			copias.add(FabricaModelo.copiarUsuario(usuario));
+		}
+		return copias;
+	}
+
+}
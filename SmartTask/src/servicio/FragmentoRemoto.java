@@ -0,0 +1,525 @@
+package servicio;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import interfaces.OyenteTareas;
+import interfaces.OyenteVencimientos;
+import interfaces.Suscripcion;
+import modelo.ContadorTareas;
+import modelo.EstadoTarea;
+import modelo.LoteEventos;
+import modelo.Pagina;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+
+/**
+ * Fragmento atendido por un {@link ServidorFragmento}, posiblemente en
+ * otra JVM del mismo equipo.
+ * 
+ * <p>
+ * Cada petición usa una conexión libre de un conjunto que crece según la
+ * concurrencia, así que varios hilos pueden llamar a la vez sin esperarse
+ * entre sí. Los usuarios y las tareas devueltos son copias: cambiarlos no
+ * cambia los del servidor. Los avisos de
+ * {@link #revisarVencimientos(long, OyenteVencimientos)} se entregan en
+ * este proceso cuando responde el servidor.
+ * </p>
+ * 
+ * <p>
+ * Cada suscripción usa una conexión propia, fuera del conjunto, por la que
+ * el servidor envía los lotes según se publican; un hilo de este proceso
+ * los lee y se los entrega al oyente. Los eventos perdidos en el servidor
+ * llegan como avisos de {@link OyenteTareas#alPerder(long)}.
+ * </p>
+ */
+
+final class FragmentoRemoto implements Fragmento {
+	
+	/** Escritura de los argumentos de una petición */
+	@FunctionalInterface
+	private interface Peticion {
+		void escribir(ConexionFragmento conexion);
+	}
+	
+	/** Lectura del resultado de una respuesta correcta */
+	@FunctionalInterface
+	private interface Respuesta<T> {
+		T leer(ConexionFragmento conexion);
+	}
+	
+	/** Aviso de vencimiento recibido del servidor */
+	private static final class Aviso {
+		
+		final boolean escalada;
+		final int usuarioId;
+		final Tarea tarea;
+		
+		Aviso(boolean escalada, int usuarioId, Tarea tarea) {
+			this.escalada = escalada;
+			this.usuarioId = usuarioId;
+			this.tarea = tarea;
+		}
+	
+	}
+	
+	/** Espera al servidor al cerrar una suscripción antes de cortarla */
+	private static final long ESPERA_CIERRE_MS = 5_000;
+	
+	private static final AtomicInteger HILOS = new AtomicInteger();
+	
+	private final InetSocketAddress direccion;
+	
+	/** Conexiones abiertas que no atienden ninguna petición */
+	private final ConcurrentLinkedDeque<ConexionFragmento> libres;
+	
+	/** Suscripciones abiertas, para cerrarlas con el fragmento */
+	private final Set<SuscripcionRemota> suscripciones;
+	
+	private volatile boolean cerrado;
+	
+	/**
+	 * Conecta con un servidor y comprueba que atiende el fragmento esperado.
+	 * 
+	 * @param direccion dirección del servidor
+	 * @param fragmento número de fragmento esperado
+	 * @param fragmentos número total de fragmentos esperado
+	 * @throws IOException si no se puede conectar o el servidor atiende otro
+	 * fragmento
+	 */
+	FragmentoRemoto(InetSocketAddress direccion, int fragmento, int fragmentos) throws IOException {
+		this.direccion = direccion;
+		this.libres = new ConcurrentLinkedDeque<>();
+		this.suscripciones = ConcurrentHashMap.newKeySet();
+		
+		int[] identidad;
+		try {
+			identidad = pedir(ConexionFragmento.IDENTIFICAR, conexion -> { },
+					conexion -> new int[] { conexion.leerEntero(), conexion.leerEntero() });
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		if (identidad[0] != fragmento || identidad[1] != fragmentos) {
+			close();
+			throw new IOException("El servidor de " + direccion + " atiende el fragmento " + identidad[0] + " de "
+					+ identidad[1] + ", no el " + fragmento + " de " + fragmentos);
+		}
+	}
+	
+	/**
+	 * Envía una petición y lee su respuesta.
+	 * 
+	 * @throws IllegalArgumentException si el servidor rechazó los argumentos
+	 * @throws IllegalStateException si la operación falló en el servidor
+	 * @throws UncheckedIOException si falla la conexión
+	 */
+	private <T> T pedir(byte operacion, Peticion peticion, Respuesta<T> respuesta) {
+		if (cerrado) {
+			throw new IllegalStateException("Fragmento cerrado.");
+		}
+		
+		ConexionFragmento conexion = libres.pollFirst();
+		try {
+			if (conexion == null) {
+				conexion = new ConexionFragmento(SocketChannel.open(direccion));
+			}
+			conexion.empezar(operacion);
+			peticion.escribir(conexion);
+			conexion.enviar();
+			
+			int estado = conexion.recibir();
+			if (estado == -1) {
+				throw new IOException("El servidor de " + direccion + " cerró la conexión.");
+			}
+			T resultado = estado == ConexionFragmento.CORRECTO ? respuesta.leer(conexion) : null;
+			String mensaje = estado == ConexionFragmento.CORRECTO ? null : conexion.leerTexto();
+			libres.offerFirst(conexion);
+			
+			if (estado == ConexionFragmento.ARGUMENTO_NO_VALIDO) {
+				throw new IllegalArgumentException(mensaje);
+			}
+			if (estado != ConexionFragmento.CORRECTO) {
+				throw new IllegalStateException(mensaje);
+			}
+			return resultado;
+		} catch (IOException e) {
+			cerrar(conexion);
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private static void cerrar(ConexionFragmento conexion) {
+		if (conexion != null) {
+			try {
+				conexion.close();
+			} catch (IOException e) {
+				// La conexión ya no se usa
+			}
+		}
+	}
+	
+	@Override
+	public Usuario crearUsuario(String nombre, TipoUsuario tipo) {
+		return pedir(ConexionFragmento.CREAR_USUARIO, conexion -> {
+			conexion.texto(nombre);
+			conexion.enumerado(tipo);
+		}, ConexionFragmento::leerUsuario);
+	}
+	
+	@Override
+	public Usuario buscarUsuario(int id) {
+		return pedir(ConexionFragmento.BUSCAR_USUARIO, conexion -> conexion.entero(id), ConexionFragmento::leerUsuario);
+	}
+	
+	@Override
+	public List<Usuario> listarUsuarios(TipoUsuario tipo) {
+		return pedir(ConexionFragmento.LISTAR_USUARIOS, conexion -> conexion.enumerado(tipo),
+				ConexionFragmento::leerUsuarios);
+	}
+	
+	@Override
+	public Pagina<Usuario> listarUsuarios(long cursor, int limite) {
+		return pedir(ConexionFragmento.PAGINA_USUARIOS, conexion -> {
+			conexion.largo(cursor);
+			conexion.entero(limite);
+		}, conexion -> {
+			List<Usuario> usuarios = conexion.leerUsuarios();
+			return new Pagina<>(usuarios, conexion.leerLargo());
+		});
+	}
+	
+	@Override
+	public Tarea crearTarea(String descripcion, Prioridad prioridad) {
+		return pedir(ConexionFragmento.CREAR_TAREA, conexion -> {
+			conexion.texto(descripcion);
+			conexion.enumerado(prioridad);
+		}, ConexionFragmento::leerTarea);
+	}
+	
+	@Override
+	public int reservarIdsTareas(int cantidad) {
+		return pedir(ConexionFragmento.RESERVAR_IDS, conexion -> conexion.entero(cantidad),
+				ConexionFragmento::leerEntero);
+	}
+	
+	@Override
+	public void agregarTareasAUsuario(int usuarioId, List<Tarea> tareas) {
+		pedir(ConexionFragmento.AGREGAR_TAREAS, conexion -> {
+			conexion.entero(usuarioId);
+			conexion.tareas(tareas);
+		}, conexion -> null);
+	}
+	
+	@Override
+	public List<Tarea> listarTareasDeUsuario(int usuarioId, EstadoTarea estado, Prioridad prioridad) {
+		return pedir(ConexionFragmento.LISTAR_TAREAS_USUARIO, conexion -> {
+			conexion.entero(usuarioId);
+			conexion.enumerado(estado);
+			conexion.enumerado(prioridad);
+		}, ConexionFragmento::leerTareas);
+	}
+	
+	@Override
+	public Pagina<Tarea> listarTareasDeUsuario(int usuarioId, long cursor, int limite) {
+		return pedir(ConexionFragmento.PAGINA_TAREAS_USUARIO, conexion -> {
+			conexion.entero(usuarioId);
+			conexion.largo(cursor);
+			conexion.entero(limite);
+		}, ConexionFragmento::leerPaginaTareas);
+	}
+	
+	@Override
+	public boolean marcarTareaComoCompletada(int usuarioId, int tareaId) {
+		return pedir(ConexionFragmento.COMPLETAR, conexion -> {
+			conexion.entero(usuarioId);
+			conexion.entero(tareaId);
+		}, ConexionFragmento::leerLogico);
+	}
+	
+	@Override
+	public boolean eliminarTareaDeUsuario(int usuarioId, int tareaId) {
+		return pedir(ConexionFragmento.ELIMINAR, conexion -> {
+			conexion.entero(usuarioId);
+			conexion.entero(tareaId);
+		}, ConexionFragmento::leerLogico);
+	}
+	
+	@Override
+	public List<Grupo> listarTareasPorTipoUsuario(TipoUsuario tipo, long cursor, int limite) {
+		return pedir(ConexionFragmento.TAREAS_POR_TIPO, conexion -> {
+			conexion.enumerado(tipo);
+			conexion.largo(cursor);
+			conexion.entero(limite);
+		}, conexion -> {
+			int cantidad = conexion.leerEntero();
+			List<Grupo> grupos = new ArrayList<>(cantidad);
+			for (int i = 0; i < cantidad; i++) {
+				int usuarioId = conexion.leerEntero();
+				grupos.add(new Grupo(usuarioId, conexion.leerTareas()));
+			}
+			return grupos;
+		});
+	}
+	
+	@Override
+	public List<Tarea> buscarTareas(String consulta, EstadoTarea estado, Prioridad prioridad, TipoUsuario tipo,
+			int limite) {
+		return pedir(ConexionFragmento.BUSCAR_TAREAS, conexion -> {
+			conexion.texto(consulta);
+			conexion.enumerado(estado);
+			conexion.enumerado(prioridad);
+			conexion.enumerado(tipo);
+			conexion.entero(limite);
+		}, ConexionFragmento::leerTareas);
+	}
+	
+	@Override
+	public Tarea siguienteTarea(boolean tomar) {
+		return pedir(ConexionFragmento.SIGUIENTE, conexion -> conexion.logico(tomar), ConexionFragmento::leerTarea);
+	}
+	
+	@Override
+	public Tarea siguienteTarea(int usuarioId, boolean tomar) {
+		return pedir(ConexionFragmento.SIGUIENTE_USUARIO, conexion -> {
+			conexion.entero(usuarioId);
+			conexion.logico(tomar);
+		}, ConexionFragmento::leerTarea);
+	}
+	
+	@Override
+	public Tarea tomarTarea(int tareaId) {
+		return pedir(ConexionFragmento.TOMAR_TAREA, conexion -> conexion.entero(tareaId), ConexionFragmento::leerTarea);
+	}
+	
+	@Override
+	public boolean liberarTarea(int tareaId) {
+		return pedir(ConexionFragmento.LIBERAR, conexion -> conexion.entero(tareaId), ConexionFragmento::leerLogico);
+	}
+	
+	@Override
+	public ContadorTareas contarTareas() {
+		return pedir(ConexionFragmento.CONTAR, conexion -> { }, ConexionFragmento::leerContador);
+	}
+	
+	@Override
+	public ContadorTareas contarTareasDeUsuario(int usuarioId) {
+		return pedir(ConexionFragmento.CONTAR_USUARIO, conexion -> conexion.entero(usuarioId),
+				ConexionFragmento::leerContador);
+	}
+	
+	@Override
+	public ContadorTareas contarTareasPorTipoUsuario(TipoUsuario tipo) {
+		return pedir(ConexionFragmento.CONTAR_TIPO, conexion -> conexion.enumerado(tipo),
+				ConexionFragmento::leerContador);
+	}
+	
+	@Override
+	public boolean fijarVencimiento(int usuarioId, int tareaId, long venceEn, long antelacion) {
+		return pedir(ConexionFragmento.FIJAR_VENCIMIENTO, conexion -> {
+			conexion.entero(usuarioId);
+			conexion.entero(tareaId);
+			conexion.largo(venceEn);
+			conexion.largo(antelacion);
+		}, ConexionFragmento::leerLogico);
+	}
+	
+	@Override
+	public int revisarVencimientos(long ahora, OyenteVencimientos oyente) {
+		List<Aviso> avisos = new ArrayList<>();
+		int revisadas = pedir(ConexionFragmento.REVISAR_VENCIMIENTOS, conexion -> conexion.largo(ahora), conexion -> {
+			int cantidad = conexion.leerEntero();
+			for (int i = 0; i < cantidad; i++) {
+				avisos.add(new Aviso(conexion.leerLogico(), conexion.leerEntero(), conexion.leerTarea()));
+			}
+			return conexion.leerEntero();
+		});
+		
+		// Los avisos se entregan cuando la conexión ya vuelve a estar libre
+		for (Aviso aviso : avisos) {
+			if (aviso.escalada) {
+				oyente.alEscalar(aviso.usuarioId, aviso.tarea);
+			} else {
+				oyente.alVencer(aviso.usuarioId, aviso.tarea);
+			}
+		}
+		return revisadas;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @throws IllegalArgumentException si el oyente es null o el servidor
+	 * rechaza el tamaño de lote
+	 * @throws UncheckedIOException si no se puede abrir la conexión
+	 */
+	@Override
+	public Suscripcion suscribir(OyenteTareas oyente, int loteMaximo) {
+		if (oyente == null) {
+			throw new IllegalArgumentException("El oyente no puede ser null.");
+		}
+		if (cerrado) {
+			throw new IllegalStateException("Fragmento cerrado.");
+		}
+		
+		ConexionFragmento conexion = null;
+		int estado;
+		String mensaje = null;
+		try {
+			conexion = new ConexionFragmento(SocketChannel.open(direccion));
+			conexion.empezar(ConexionFragmento.SUSCRIBIR);
+			conexion.entero(loteMaximo);
+			conexion.enviar();
+			
+			estado = conexion.recibir();
+			if (estado == -1) {
+				throw new IOException("El servidor de " + direccion + " cerró la conexión.");
+			}
+			if (estado != ConexionFragmento.CORRECTO) {
+				mensaje = conexion.leerTexto();
+				cerrar(conexion);
+			}
+		} catch (IOException e) {
+			cerrar(conexion);
+			throw new UncheckedIOException(e);
+		}
+		if (estado == ConexionFragmento.ARGUMENTO_NO_VALIDO) {
+			throw new IllegalArgumentException(mensaje);
+		}
+		if (estado != ConexionFragmento.CORRECTO) {
+			throw new IllegalStateException(mensaje);
+		}
+		
+		SuscripcionRemota suscripcion = new SuscripcionRemota(conexion, oyente, loteMaximo);
+		suscripciones.add(suscripcion);
+		suscripcion.hilo.start();
+		return suscripcion;
+	}
+	
+	@Override
+	public void close() {
+		cerrado = true;
+		for (ConexionFragmento conexion; (conexion = libres.pollFirst()) != null;) {
+			cerrar(conexion);
+		}
+		for (SuscripcionRemota suscripcion : suscripciones) {
+			suscripcion.close();
+		}
+	}
+	
+	/**
+	 * Suscripción sobre una conexión propia, con un hilo que lee los
+	 * mensajes del servidor y se los entrega al oyente.
+	 */
+	private final class SuscripcionRemota implements Suscripcion, Runnable {
+		
+		private final ConexionFragmento conexion;
+		private final OyenteTareas oyente;
+		private final Thread hilo;
+		
+		/** Lote en curso, reutilizado entre mensajes */
+		private final long[] eventos;
+		private final long[] secuencias;
+		
+		// Escritos solo por el hilo de la suscripción
+		private volatile long entregados;
+		private volatile long perdidos;
+		
+		SuscripcionRemota(ConexionFragmento conexion, OyenteTareas oyente, int loteMaximo) {
+			this.conexion = conexion;
+			this.oyente = oyente;
+			this.eventos = new long[loteMaximo];
+			this.secuencias = new long[loteMaximo];
+			this.hilo = new Thread(this, "smarttask-fragmento-eventos-" + HILOS.incrementAndGet());
+			this.hilo.setDaemon(true);
+		}
+		
+		@Override
+		public void run() {
+			try {
+				for (int tipo; (tipo = conexion.recibir()) != -1;) {
+					if (tipo == ConexionFragmento.EVENTOS) {
+						int cantidad = conexion.leerEntero();
+						if (cantidad < 0 || cantidad > eventos.length) {
+							throw new IOException("Tamaño de lote no válido: " + cantidad);
+						}
+						for (int i = 0; i < cantidad; i++) {
+							eventos[i] = conexion.leerLargo();
+							secuencias[i] = conexion.leerLargo();
+						}
+						entregados += cantidad;
+						avisar(() -> oyente.alRecibir(new LoteEventos(eventos, secuencias, cantidad)));
+					} else if (tipo == ConexionFragmento.PERDIDOS) {
+						long cantidad = conexion.leerLargo();
+						perdidos += cantidad;
+						avisar(() -> oyente.alPerder(cantidad));
+					}
+				}
+			} catch (IOException e) {
+				// El servidor se cerró o se cortó la suscripción
+			} finally {
+				suscripciones.remove(this);
+				cerrar(conexion);
+			}
+		}
+		
+		/**
+		 * Llama al oyente; un fallo suyo no detiene la suscripción.
+		 */
+		private void avisar(Runnable llamada) {
+			try {
+				llamada.run();
+			} catch (RuntimeException e) {
+				hilo.getUncaughtExceptionHandler().uncaughtException(hilo, e);
+			}
+		}
+		
+		@Override
+		public long getEntregados() {
+			return entregados;
+		}
+		
+		@Override
+		public long getPerdidos() {
+			return perdidos;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * <p>
+		 * Cierra el lado de escritura para que el servidor envíe lo
+		 * pendiente y cierre la conexión; si no lo hace a tiempo, la corta.
+		 * </p>
+		 */
+		@Override
+		public void close() {
+			try {
+				conexion.terminarEnvio();
+			} catch (IOException e) {
+				// La conexión ya estaba cerrada
+			}
+			if (Thread.currentThread() == hilo) {
+				return;
+			}
+			try {
+				hilo.join(ESPERA_CIERRE_MS);
+				cerrar(conexion);
+				hilo.join();
+			} catch (InterruptedException e) {
+				cerrar(conexion);
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+}
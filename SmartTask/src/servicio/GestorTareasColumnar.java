@@ -0,0 +1,941 @@
+package servicio;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import interfaces.Accionable;
+import interfaces.OyenteTareas;
+import interfaces.OyenteVencimientos;
+import interfaces.Suscripcion;
+import modelo.ContadorTareas;
+import modelo.EstadoTarea;
+import modelo.FormatoIntercambio;
+import modelo.IndiceTareas;
+import modelo.Pagina;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoEvento;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import util.MapaEnteros;
+import util.MonticuloLargos;
+
+/**
+ * Implementación del gestor de tareas con almacenamiento columnar fuera del
+ * heap, pensada para decenas de millones de tareas.
+ * 
+ * <p>
+ * Las tareas asignadas no se guardan como objetos: sus campos de ancho fijo
+ * (id, dueño, instantes de creación, finalización y vencimiento, y una marca
+ * con prioridad, estado y tipo del dueño) se guardan en columnas de memoria
+ * directa o mapeada, y las descripciones en un área
+ * de textos aparte. Cada consulta construye objetos {@link Tarea} nuevos a
+ * partir de las columnas; son copias, por lo que modificarlas no cambia lo
+ * guardado. Los cambios deben hacerse a través de {@link Accionable}.
+ * </p>
+ * 
+ * <p>
+ * Los usuarios sí se guardan como objetos, pero sin tareas: sus tareas se
+ * consultan con {@link #listarTareasDeUsuario(int)}. En la cola de trabajo,
+ * la consulta por usuario recorre las tareas de ese usuario. Esta clase no
+ * es segura para uso concurrente.
+ * </p>
+ */
+
+public class GestorTareasColumnar implements Accionable, AutoCloseable {
+	
+	// Bits de la columna de marcas
+	private static final int URGENTE = 1;
+	private static final int COMPLETADA = 1 << 1;
+	private static final int ELIMINADA = 1 << 2;
+	private static final int RECLAMADA = 1 << 3;
+	private static final int DESPLAZAMIENTO_TIPO = 4;
+	private static final int ESCALADA = 1 << 6;
+	
+	/** Entradas de cola obsoletas toleradas antes de depurar el montículo */
+	private static final int MARGEN_COLA = 1024;
+	
+	private final AsignadorBloques asignador;
+	
+	// Columnas de tareas, una fila por tarea asignada
+	private final Columna ids;
+	private final Columna duenios;
+	private final Columna marcas;
+	private final Columna textos;
+	private final Columna creadas;
+	private final Columna completadas;
+	private final Columna vencimientos;
+	private final ArenaTextos arena;
+	
+	/** Filas usadas */
+	private int filas;
+	
+	/** Índice de tareas vigentes: id de la tarea a su fila */
+	private final MapaEnteros indiceTareas;
+	
+	/** Índice de descripciones de las tareas vigentes */
+	private final IndiceTareas indiceDescripciones;
+	
+	/** Eventos de cambios de tareas para los suscriptores */
+	private final BusEventos eventos;
+	
+	/** Vencimientos vigilados de las tareas asignadas */
+	private final Vencimientos vigilados;
+	
+	/** Usuarios registrados, en orden de creación */
+	private final List<Usuario> usuarios;
+	
+	/** Filas de cada usuario, en la misma posición que en {@link #usuarios} */
+	private final List<FilasDeUsuario> filasDeUsuarios;
+	
+	/** Índice de usuarios: id del usuario a su posición en {@link #usuarios} */
+	private final MapaEnteros indiceUsuarios;
+	
+	/** Usuarios agrupados por tipo, en orden de creación */
+	private final Map<TipoUsuario, List<Usuario>> usuariosPorTipo;
+	
+	/** Conteo global de tareas asignadas */
+	private final ContadorTareas.Acumulador contadorGlobal;
+	
+	/** Conteo de tareas por tipo de usuario, vinculado al global */
+	private final Map<TipoUsuario, ContadorTareas.Acumulador> contadoresPorTipo;
+	
+	/** Cola de trabajo: claves de {@link #clave(int, boolean)} */
+	private final MonticuloLargos cola;
+	
+	/** Contador auto-incremental para usuarios */
+	private int contadorUsuarios;
+	
+	/** Contador auto-incremental para tareas */
+	private int contadorTareas;
+	
+	/**
+	 * Construye un gestor con columnas en memoria directa.
+	 */
+	public GestorTareasColumnar() {
+		this(null);
+	}
+	
+	/**
+	 * Construye un gestor con columnas mapeadas sobre archivos de trabajo
+	 * en el directorio indicado.
+	 * 
+	 * @param directorio directorio de trabajo, o null para memoria directa
+	 */
+	public GestorTareasColumnar(Path directorio) {
+		this.asignador = new AsignadorBloques(directorio);
+		this.ids = new Columna("ids", Integer.BYTES, asignador);
+		this.duenios = new Columna("duenios", Integer.BYTES, asignador);
+		this.marcas = new Columna("marcas", Byte.BYTES, asignador);
+		this.textos = new Columna("textos", Long.BYTES, asignador);
+		this.creadas = new Columna("creadas", Long.BYTES, asignador);
+		this.completadas = new Columna("completadas", Long.BYTES, asignador);
+		this.vencimientos = new Columna("vencimientos", Long.BYTES, asignador);
+		this.arena = new ArenaTextos(asignador);
+		this.indiceTareas = new MapaEnteros();
+		this.indiceDescripciones = new IndiceTareas();
+		this.eventos = new BusEventos();
+		this.vigilados = new Vencimientos();
+		
+		this.usuarios = new ArrayList<>();
+		this.filasDeUsuarios = new ArrayList<>();
+		this.indiceUsuarios = new MapaEnteros();
+		this.usuariosPorTipo = new EnumMap<>(TipoUsuario.class);
+		this.contadorGlobal = new ContadorTareas.Acumulador();
+		this.contadoresPorTipo = new EnumMap<>(TipoUsuario.class);
+		for (TipoUsuario tipo : TipoUsuario.values()) {
+			this.usuariosPorTipo.put(tipo, new ArrayList<>());
+			this.contadoresPorTipo.put(tipo, new ContadorTareas.Acumulador(contadorGlobal));
+		}
+		
+		this.cola = new MonticuloLargos();
+		this.contadorUsuarios = 1;
+		this.contadorTareas = 1;
+	}
+	
+	/**
+	 * Libera los archivos de trabajo, si los hay.
+	 * 
+	 * @throws IOException si falla el cierre
+	 */
+	@Override
+	public void close() throws IOException {
+		asignador.close();
+	}
+	
+	// Gestión de usuarios
+
+	@Override
+	public Usuario crearUsuario(String nombre, TipoUsuario tipo) {
+		int idGenerado = contadorUsuarios++;
+		Usuario usuario = FabricaModelo.nuevoUsuario(idGenerado, nombre, tipo);
+		
+		indiceUsuarios.put(idGenerado, usuarios.size());
+		usuarios.add(usuario);
+		filasDeUsuarios.add(new FilasDeUsuario(new ContadorTareas.Acumulador(contadoresPorTipo.get(tipo))));
+		usuariosPorTipo.get(tipo).add(usuario);
+		return usuario;
+	}
+
+	@Override
+	public Usuario buscarUsuario(int id) {
+		int posicion = indiceUsuarios.get(id);
+		return posicion == MapaEnteros.NO_ENCONTRADO ? null : usuarios.get(posicion);
+	}
+
+	@Override
+	public List<Usuario> listarUsuarios() {
+		return new ArrayList<>(usuarios); // copia defensiva
+	}
+
+	@Override
+	public List<Usuario> listarUsuariosPorTipo(TipoUsuario tipo) {
+		List<Usuario> grupo = usuariosPorTipo.get(tipo);
+		return grupo == null ? Collections.emptyList() : Collections.unmodifiableList(grupo);
+	}
+	
+	// Gestión de tareas
+
+	@Override
+	public Tarea crearTarea(String descripcion, Prioridad prioridad) {
+		int idGenerado = contadorTareas++;
+		eventos.publicar(TipoEvento.CREADA, idGenerado, 0);
+		return FabricaModelo.nuevaTarea(idGenerado, descripcion, prioridad);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Los datos de la tarea se copian a las columnas; el objeto recibido no
+	 * queda vinculado al almacén. Una tarea con un id ya asignado se ignora.
+	 * </p>
+	 */
+	@Override
+	public void agregarTareaAUsuario(int usuarioId, Tarea tarea) {
+		int posicion = indiceUsuarios.get(usuarioId);
+		
+		if (posicion == MapaEnteros.NO_ENCONTRADO) {
+			throw new IllegalArgumentException("Usuario no encontrado.");
+		}
+		if (tarea == null || indiceTareas.contiene(tarea.getId())) {
+			return;
+		}
+		
+		Usuario usuario = usuarios.get(posicion);
+		boolean urgente = tarea.getPrioridad() == Prioridad.URGENTE;
+		boolean completada = tarea.getEstado() == EstadoTarea.COMPLETADA;
+		int marca = (urgente ? URGENTE : 0)
+				| (completada ? COMPLETADA : 0)
+				| (tarea.isEscalada() ? ESCALADA : 0)
+				| (usuario.getTipo().ordinal() << DESPLAZAMIENTO_TIPO);
+		
+		int fila = filas++;
+		ids.asegurar(fila);
+		duenios.asegurar(fila);
+		marcas.asegurar(fila);
+		textos.asegurar(fila);
+		creadas.asegurar(fila);
+		completadas.asegurar(fila);
+		vencimientos.asegurar(fila);
+		ids.putInt(fila, tarea.getId());
+		duenios.putInt(fila, usuarioId);
+		marcas.putByte(fila, (byte) marca);
+		textos.putLong(fila, arena.guardar(tarea.getDescripcion()));
+		creadas.putLong(fila, tarea.getCreadaEn());
+		completadas.putLong(fila, tarea.getCompletadaEn());
+		vencimientos.putLong(fila, tarea.getVenceEn());
+		
+		indiceTareas.put(tarea.getId(), fila);
+		FilasDeUsuario propias = filasDeUsuarios.get(posicion);
+		propias.agregar(fila);
+		propias.contador.sumar(tarea.getEstado(), tarea.getPrioridad(), 1);
+		indiceDescripciones.agregar(tarea.getId(), usuarioId, usuario.getTipo(), tarea.getPrioridad(),
+				tarea.getEstado(), tarea.getDescripcion());
+		
+		if (!completada) {
+			cola.agregar(clave(tarea.getId(), tarea.esUrgente()));
+			if (tarea.getVenceEn() != 0) {
+				vigilados.programar(usuarioId, tarea.getId(), tarea.getVenceEn(), 0);
+			}
+		}
+		eventos.publicar(TipoEvento.ASIGNADA, tarea.getId(), usuarioId);
+	}
+
+	@Override
+	public List<Tarea> listarTareasDeUsuario(int usuarioId) {
+		FilasDeUsuario propias = filasDe(usuarioId);
+		
+		if (propias == null) {
+			return null;
+		}
+		
+		List<Tarea> lista = new ArrayList<>(propias.tamanio - propias.eliminadas);
+		for (int i = 0; i < propias.tamanio; i++) {
+			int fila = propias.filas[i];
+			if ((marcas.getByte(fila) & ELIMINADA) == 0) {
+				lista.add(materializar(fila));
+			}
+		}
+		return lista;
+	}
+
+	@Override
+	public boolean marcarTareaComoCompletada(int usuarioId, int tareaId) {
+		int fila = filaDe(usuarioId, tareaId);
+		
+		if (fila == MapaEnteros.NO_ENCONTRADO) {
+			return false;
+		}
+		
+		int marca = marcas.getByte(fila);
+		if ((marca & COMPLETADA) == 0) {
+			marcas.putByte(fila, (byte) (marca | COMPLETADA));
+			completadas.putLong(fila, System.currentTimeMillis());
+			vigilados.cancelar(tareaId);
+			ContadorTareas.Acumulador contador = filasDe(usuarioId).contador;
+			contador.sumar(EstadoTarea.ACTIVA, prioridad(marca), -1);
+			contador.sumar(EstadoTarea.COMPLETADA, prioridad(marca), 1);
+			indiceDescripciones.cambiarEstado(tareaId, EstadoTarea.COMPLETADA);
+			depurarColaSiHaceFalta();
+			eventos.publicar(TipoEvento.COMPLETADA, tareaId, usuarioId);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean eliminarTareaDeUsuario(int usuarioId, int tareaId) {
+		int fila = filaDe(usuarioId, tareaId);
+		
+		if (fila == MapaEnteros.NO_ENCONTRADO) {
+			return false;
+		}
+		
+		int marca = marcas.getByte(fila);
+		marcas.putByte(fila, (byte) (marca | ELIMINADA));
+		indiceTareas.remove(tareaId);
+		vigilados.cancelar(tareaId);
+		indiceDescripciones.quitar(tareaId);
+		
+		FilasDeUsuario propias = filasDe(usuarioId);
+		propias.eliminadas++;
+		propias.contador.sumar(estado(marca), prioridad(marca), -1);
+		if (propias.eliminadas > Math.max(propias.tamanio / 2, 8)) {
+			propias.compactar();
+		}
+		depurarColaSiHaceFalta();
+		eventos.publicar(TipoEvento.ELIMINADA, tareaId, usuarioId);
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Recorre los usuarios del tipo y construye sus tareas desde las
+	 * columnas.
+	 * </p>
+	 */
+	@Override
+	public List<Tarea> listarTareasPorTipoUsuario(TipoUsuario tipo) {
+		List<Tarea> lista = new ArrayList<>(contarTareasPorTipoUsuario(tipo).total());
+		for (Usuario usuario : listarUsuariosPorTipo(tipo)) {
+			lista.addAll(listarTareasDeUsuario(usuario.getId()));
+		}
+		return lista;
+	}
+
+	@Override
+	public List<Tarea> listarTareasDeUsuario(int usuarioId, EstadoTarea estado) {
+		return filtrarTareasDeUsuario(usuarioId, COMPLETADA, estado == EstadoTarea.COMPLETADA ? COMPLETADA : 0);
+	}
+
+	@Override
+	public List<Tarea> listarTareasDeUsuario(int usuarioId, Prioridad prioridad) {
+		return filtrarTareasDeUsuario(usuarioId, URGENTE, prioridad == Prioridad.URGENTE ? URGENTE : 0);
+	}
+	
+	/**
+	 * Cuenta recorriendo solo la columna de marcas las tareas vigentes que
+	 * cumplen los filtros indicados.
+	 * 
+	 * @param tipo tipo del dueño, o null para cualquiera
+	 * @param estado estado, o null para cualquiera
+	 * @param prioridad prioridad, o null para cualquiera
+	 * @return cantidad de tareas
+	 */
+	public int contarTareas(TipoUsuario tipo, EstadoTarea estado, Prioridad prioridad) {
+		int mascara = ELIMINADA;
+		int esperado = 0;
+		if (tipo != null) {
+			mascara |= 0b11 << DESPLAZAMIENTO_TIPO;
+			esperado |= tipo.ordinal() << DESPLAZAMIENTO_TIPO;
+		}
+		if (estado != null) {
+			mascara |= COMPLETADA;
+			esperado |= estado == EstadoTarea.COMPLETADA ? COMPLETADA : 0;
+		}
+		if (prioridad != null) {
+			mascara |= URGENTE;
+			esperado |= prioridad == Prioridad.URGENTE ? URGENTE : 0;
+		}
+		
+		int total = 0;
+		for (int fila = 0; fila < filas; fila++) {
+			if ((marcas.getByte(fila) & mascara) == esperado) {
+				total++;
+			}
+		}
+		return total;
+	}
+	
+	// Listados paginados
+	
+	@Override
+	public Pagina<Usuario> listarUsuarios(long cursor, int limite) {
+		Paginacion.comprobar(cursor, limite);
+		if (cursor == Pagina.FIN) {
+			return new Pagina<>(new ArrayList<>(), Pagina.FIN);
+		}
+		
+		int desde = Paginacion.primeroDespuesDe(usuarios, cursor);
+		List<Usuario> elementos = new ArrayList<>(usuarios.subList(desde, Math.min(usuarios.size(), desde + limite)));
+		long ultimo = elementos.isEmpty() ? cursor : elementos.get(elementos.size() - 1).getId();
+		return Paginacion.pagina(elementos, limite, ultimo);
+	}
+	
+	@Override
+	public Pagina<Tarea> listarTareasDeUsuario(int usuarioId, long cursor, int limite) {
+		Paginacion.comprobar(cursor, limite);
+		
+		FilasDeUsuario propias = filasDe(usuarioId);
+		
+		if (propias == null) {
+			return null;
+		}
+		if (cursor == Pagina.FIN) {
+			return new Pagina<>(new ArrayList<>(), Pagina.FIN);
+		}
+		
+		List<Tarea> elementos = tareasDespuesDe(propias, Paginacion.idDesde(cursor), limite);
+		long ultimo = elementos.isEmpty() ? cursor : elementos.get(elementos.size() - 1).getId();
+		return Paginacion.pagina(elementos, limite, ultimo);
+	}
+	
+	@Override
+	public Pagina<Tarea> listarTareasPorTipoUsuario(TipoUsuario tipo, long cursor, int limite) {
+		Paginacion.comprobar(cursor, limite);
+		
+		List<Tarea> elementos = new ArrayList<>();
+		long ultimo = cursor;
+		List<Usuario> grupo = usuariosPorTipo.get(tipo);
+		if (cursor == Pagina.FIN || grupo == null) {
+			return new Pagina<>(elementos, Pagina.FIN);
+		}
+		
+		int usuarioDesde = Pagina.usuarioDe(cursor);
+		
+		for (int i = Paginacion.primeroDespuesDe(grupo, usuarioDesde - 1L); i < grupo.size() && elementos.size() < limite; i++) {
+			Usuario usuario = grupo.get(i);
+			int tareaDesde = usuario.getId() == usuarioDesde ? Pagina.tareaDe(cursor) : Integer.MIN_VALUE;
+			
+			List<Tarea> propias = tareasDespuesDe(filasDe(usuario.getId()), tareaDesde, limite - elementos.size());
+			if (!propias.isEmpty()) {
+				elementos.addAll(propias);
+				ultimo = Pagina.cursor(usuario.getId(), propias.get(propias.size() - 1).getId());
+			}
+		}
+		return Paginacion.pagina(elementos, limite, ultimo);
+	}
+	
+	@Override
+	public Stream<Usuario> recorrerUsuarios() {
+		return Paginacion.stream(cursor -> listarUsuarios(cursor, Paginacion.TAMANIO_PAGINA));
+	}
+	
+	@Override
+	public Stream<Tarea> recorrerTareasPorTipoUsuario(TipoUsuario tipo) {
+		return Paginacion.stream(cursor -> listarTareasPorTipoUsuario(tipo, cursor, Paginacion.TAMANIO_PAGINA));
+	}
+	
+	// Consultas paralelas
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Las posiciones son las filas de cada usuario, incluidas las
+	 * eliminadas pendientes de compactar, que se saltan al leer.
+	 * </p>
+	 */
+	@Override
+	public <R> R consultarTareas(TipoUsuario tipo, Function<? super Stream<Tarea>, ? extends R> consulta) {
+		List<Usuario> grupo = tipo == null ? usuarios : listarUsuariosPorTipo(tipo);
+		
+		FilasDeUsuario[] segmentos = new FilasDeUsuario[grupo.size()];
+		int[] tamanios = new int[segmentos.length];
+		for (int i = 0; i < segmentos.length; i++) {
+			segmentos[i] = filasDe(grupo.get(i).getId());
+			tamanios[i] = segmentos[i].tamanio;
+		}
+		
+		return ConsultasParalelas.ejecutar(tamanios, (segmento, desde, hasta, destino) -> {
+			int[] filasSegmento = segmentos[segmento].filas;
+			int copiadas = 0;
+			for (int i = desde; i < hasta; i++) {
+				int fila = filasSegmento[i];
+				if ((marcas.getByte(fila) & ELIMINADA) == 0) {
+					destino[copiadas++] = materializar(fila);
+				}
+			}
+			return copiadas;
+		}, consulta);
+	}
+	
+	// Búsqueda
+	
+	@Override
+	public List<Tarea> buscarTareas(String consulta, EstadoTarea estado, Prioridad prioridad, TipoUsuario tipo, int limite) {
+		int[] ids = indiceDescripciones.buscar(consulta, estado, prioridad, tipo, limite);
+		
+		List<Tarea> encontradas = new ArrayList<>(ids.length);
+		for (int id : ids) {
+			encontradas.add(materializar(indiceTareas.get(id)));
+		}
+		return encontradas;
+	}
+	
+	// Cola de trabajo
+
+	@Override
+	public Tarea verSiguienteTarea() {
+		int fila = cimaCola();
+		return fila == MapaEnteros.NO_ENCONTRADO ? null : materializar(fila);
+	}
+
+	@Override
+	public Tarea verSiguienteTarea(int usuarioId) {
+		int fila = siguienteDeUsuario(usuarioId);
+		return fila == MapaEnteros.NO_ENCONTRADO ? null : materializar(fila);
+	}
+
+	@Override
+	public Tarea tomarSiguienteTarea() {
+		int fila = cimaCola();
+		
+		if (fila == MapaEnteros.NO_ENCONTRADO) {
+			return null;
+		}
+		
+		cola.sacarMinimo();
+		marcas.putByte(fila, (byte) (marcas.getByte(fila) | RECLAMADA));
+		return materializar(fila);
+	}
+
+	@Override
+	public Tarea tomarSiguienteTarea(int usuarioId) {
+		int fila = siguienteDeUsuario(usuarioId);
+		
+		if (fila == MapaEnteros.NO_ENCONTRADO) {
+			return null;
+		}
+		
+		// Su entrada en la cola global queda obsoleta al estar reclamada
+		marcas.putByte(fila, (byte) (marcas.getByte(fila) | RECLAMADA));
+		depurarColaSiHaceFalta();
+		return materializar(fila);
+	}
+
+	@Override
+	public boolean liberarTarea(int tareaId) {
+		int fila = indiceTareas.get(tareaId);
+		
+		if (fila == MapaEnteros.NO_ENCONTRADO) {
+			return false;
+		}
+		
+		int marca = marcas.getByte(fila);
+		if ((marca & RECLAMADA) == 0 || (marca & COMPLETADA) != 0) {
+			return false;
+		}
+		
+		marcas.putByte(fila, (byte) (marca & ~RECLAMADA));
+		cola.agregar(clave(tareaId, urgente(marca)));
+		return true;
+	}
+	
+	// Estadísticas
+
+	@Override
+	public ContadorTareas contarTareas() {
+		return contadorGlobal.getContador();
+	}
+
+	@Override
+	public ContadorTareas contarTareasDeUsuario(int usuarioId) {
+		FilasDeUsuario propias = filasDe(usuarioId);
+		return propias == null ? null : propias.contador.getContador();
+	}
+
+	@Override
+	public ContadorTareas contarTareasPorTipoUsuario(TipoUsuario tipo) {
+		return contadoresPorTipo.get(tipo).getContador();
+	}
+	
+	// Acceso a las columnas
+	
+	// Carga masiva
+	
+	@Override
+	public int reservarIdsTareas(int cantidad) {
+		if (cantidad < 0 || contadorTareas > Integer.MAX_VALUE - cantidad) {
+			throw new IllegalArgumentException("Cantidad de identificadores no válida.");
+		}
+		
+		int primero = contadorTareas;
+		contadorTareas += cantidad;
+		return primero;
+	}
+	
+	@Override
+	public void agregarTareasAUsuario(int usuarioId, List<Tarea> tareas) {
+		FilasDeUsuario propias = filasDe(usuarioId);
+		
+		if (propias == null) {
+			throw new IllegalArgumentException("Usuario no encontrado.");
+		}
+		
+		propias.asegurarCapacidad(tareas.size());
+		indiceTareas.asegurarCapacidad(indiceTareas.size() + tareas.size());
+		for (Tarea tarea : tareas) {
+			agregarTareaAUsuario(usuarioId, tarea);
+		}
+	}
+	
+	@Override
+	public int importar(Reader entrada, FormatoIntercambio formato) throws IOException {
+		return Intercambio.importar(this, entrada, formato);
+	}
+	
+	@Override
+	public void exportar(Writer salida, FormatoIntercambio formato) throws IOException {
+		Intercambio.exportar(this, salida, formato);
+	}
+	
+	// Eventos
+	
+	@Override
+	public Suscripcion suscribir(OyenteTareas oyente, int loteMaximo) {
+		return eventos.suscribir(oyente, loteMaximo);
+	}
+	
+	// Vencimientos
+	
+	@Override
+	public boolean fijarVencimiento(int usuarioId, int tareaId, long venceEn, long antelacion) {
+		Vencimientos.comprobar(venceEn, antelacion);
+		
+		int fila = filaDe(usuarioId, tareaId);
+		
+		if (fila == MapaEnteros.NO_ENCONTRADO) {
+			return false;
+		}
+		
+		int marca = marcas.getByte(fila);
+		vencimientos.putLong(fila, venceEn);
+		vigilados.programar(usuarioId, tareaId, (marca & COMPLETADA) == 0 ? venceEn : 0,
+				Vencimientos.escalarEn(urgente(marca), venceEn, antelacion));
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Las tareas que recibe el oyente son copias construidas desde las
+	 * columnas, como en las consultas.
+	 * </p>
+	 */
+	@Override
+	public int revisarVencimientos(long ahora, OyenteVencimientos oyente) {
+		Vencimientos.comprobar(oyente);
+		
+		int avisos = 0;
+		for (long disparo : vigilados.revisar(ahora)) {
+			int usuarioId = Vencimientos.usuarioDe(disparo);
+			int tareaId = Vencimientos.tareaDe(disparo);
+			int fila = filaDe(usuarioId, tareaId);
+			
+			if (fila == MapaEnteros.NO_ENCONTRADO || (marcas.getByte(fila) & COMPLETADA) != 0) {
+				continue;
+			}
+			
+			int marca = marcas.getByte(fila);
+			if (Vencimientos.esEscalado(disparo) && !urgente(marca)) {
+				marcas.putByte(fila, (byte) (marca | ESCALADA));
+				if ((marca & RECLAMADA) == 0) {
+					cola.agregar(clave(tareaId, true));
+				}
+				oyente.alEscalar(usuarioId, materializar(fila));
+				avisos++;
+			}
+			
+			long venceEn = vencimientos.getLong(fila);
+			if (venceEn != 0 && ahora >= venceEn) {
+				oyente.alVencer(usuarioId, materializar(fila));
+				avisos++;
+			} else if (Vencimientos.esEscalado(disparo)) {
+				vigilados.programar(usuarioId, tareaId, venceEn, 0);
+			}
+		}
+		return avisos;
+	}
+	
+	/**
+	 * Construye una tarea a partir de su fila.
+	 */
+	private Tarea materializar(int fila) {
+		int marca = marcas.getByte(fila);
+		Tarea tarea = FabricaModelo.nuevaTarea(ids.getInt(fila), arena.leer(textos.getLong(fila)), prioridad(marca),
+				creadas.getLong(fila));
+		tarea.setVenceEn(vencimientos.getLong(fila));
+		if ((marca & ESCALADA) != 0) {
+			tarea.escalar();
+		}
+		if ((marca & COMPLETADA) != 0) {
+			tarea.marcarComoCompletada(completadas.getLong(fila));
+		}
+		return tarea;
+	}
+	
+	/**
+	 * Indica si la tarea se atiende como urgente en la cola.
+	 */
+	private static boolean urgente(int marca) {
+		return (marca & (URGENTE | ESCALADA)) != 0;
+	}
+	
+	private static Prioridad prioridad(int marca) {
+		return (marca & URGENTE) != 0 ? Prioridad.URGENTE : Prioridad.NORMAL;
+	}
+	
+	private static EstadoTarea estado(int marca) {
+		return (marca & COMPLETADA) != 0 ? EstadoTarea.COMPLETADA : EstadoTarea.ACTIVA;
+	}
+	
+	private FilasDeUsuario filasDe(int usuarioId) {
+		int posicion = indiceUsuarios.get(usuarioId);
+		return posicion == MapaEnteros.NO_ENCONTRADO ? null : filasDeUsuarios.get(posicion);
+	}
+	
+	/**
+	 * Devuelve la fila de una tarea vigente del usuario indicado.
+	 */
+	private int filaDe(int usuarioId, int tareaId) {
+		int fila = indiceTareas.get(tareaId);
+		
+		if (fila == MapaEnteros.NO_ENCONTRADO || duenios.getInt(fila) != usuarioId) {
+			return MapaEnteros.NO_ENCONTRADO;
+		}
+		return fila;
+	}
+	
+	private List<Tarea> filtrarTareasDeUsuario(int usuarioId, int mascara, int esperado) {
+		FilasDeUsuario propias = filasDe(usuarioId);
+		
+		if (propias == null) {
+			return null;
+		}
+		
+		mascara |= ELIMINADA;
+		List<Tarea> lista = new ArrayList<>();
+		for (int i = 0; i < propias.tamanio; i++) {
+			int fila = propias.filas[i];
+			if ((marcas.getByte(fila) & mascara) == esperado) {
+				lista.add(materializar(fila));
+			}
+		}
+		return lista;
+	}
+	
+	/**
+	 * Lista por id las tareas vigentes de un usuario posteriores a un id.
+	 * Si las filas están en orden de id se busca el inicio por bisección;
+	 * si no, se ordenan las candidatas como claves id-fila.
+	 */
+	private List<Tarea> tareasDespuesDe(FilasDeUsuario propias, int despuesDeId, int limite) {
+		List<Tarea> lista = new ArrayList<>(Math.min(limite, 16));
+		
+		if (propias.ordenadas) {
+			int desde = 0;
+			int hasta = propias.tamanio;
+			while (desde < hasta) {
+				int medio = (desde + hasta) >>> 1;
+				if (ids.getInt(propias.filas[medio]) <= despuesDeId) {
+					desde = medio + 1;
+				} else {
+					hasta = medio;
+				}
+			}
+			for (int i = desde; i < propias.tamanio && lista.size() < limite; i++) {
+				int fila = propias.filas[i];
+				if ((marcas.getByte(fila) & ELIMINADA) == 0) {
+					lista.add(materializar(fila));
+				}
+			}
+			return lista;
+		}
+		
+		long[] candidatas = new long[propias.tamanio];
+		int cantidad = 0;
+		for (int i = 0; i < propias.tamanio; i++) {
+			int fila = propias.filas[i];
+			int id = ids.getInt(fila);
+			if (id > despuesDeId && (marcas.getByte(fila) & ELIMINADA) == 0) {
+				candidatas[cantidad++] = ((long) id << 32) | fila;
+			}
+		}
+		Arrays.sort(candidatas, 0, cantidad);
+		for (int i = 0; i < cantidad && i < limite; i++) {
+			lista.add(materializar((int) candidatas[i]));
+		}
+		return lista;
+	}
+	
+	// Cola de trabajo sobre las columnas
+	
+	/**
+	 * Clave de orden de la cola: urgentes primero y luego por id.
+	 */
+	private static long clave(int tareaId, boolean urgente) {
+		return ((urgente ? 0L : 1L) << 32) | (tareaId & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * Indica si una entrada de la cola corresponde a una tarea pendiente.
+	 * La entrada normal de una tarea escalada queda obsoleta.
+	 */
+	private boolean enCola(long clave) {
+		int fila = indiceTareas.get((int) clave);
+		
+		if (fila == MapaEnteros.NO_ENCONTRADO) {
+			return false;
+		}
+		
+		int marca = marcas.getByte(fila);
+		return (marca & (COMPLETADA | RECLAMADA)) == 0 && urgente(marca) == (clave >>> 32 == 0);
+	}
+	
+	/**
+	 * Descarta las entradas obsoletas de la cima y devuelve la fila de la
+	 * primera vigente.
+	 */
+	private int cimaCola() {
+		while (!cola.isEmpty()) {
+			long clave = cola.minimo();
+			if (enCola(clave)) {
+				return indiceTareas.get((int) clave);
+			}
+			cola.sacarMinimo();
+		}
+		return MapaEnteros.NO_ENCONTRADO;
+	}
+	
+	/**
+	 * Busca entre las tareas del usuario la siguiente pendiente.
+	 */
+	private int siguienteDeUsuario(int usuarioId) {
+		FilasDeUsuario propias = filasDe(usuarioId);
+		
+		if (propias == null) {
+			return MapaEnteros.NO_ENCONTRADO;
+		}
+		
+		int mejor = MapaEnteros.NO_ENCONTRADO;
+		long mejorClave = Long.MAX_VALUE;
+		for (int i = 0; i < propias.tamanio; i++) {
+			int fila = propias.filas[i];
+			int marca = marcas.getByte(fila);
+			if ((marca & (ELIMINADA | COMPLETADA | RECLAMADA)) == 0) {
+				long clave = clave(ids.getInt(fila), urgente(marca));
+				if (clave < mejorClave) {
+					mejorClave = clave;
+					mejor = fila;
+				}
+			}
+		}
+		return mejor;
+	}
+	
+	/**
+	 * Depura el montículo cuando las entradas obsoletas superan a las
+	 * tareas activas.
+	 */
+	private void depurarColaSiHaceFalta() {
+		if (cola.size() > 2 * contadorGlobal.getContador().contar(EstadoTarea.ACTIVA) + MARGEN_COLA) {
+			cola.retener(this::enCola);
+		}
+	}
+	
+	/**
+	 * Filas de las tareas de un usuario, en orden de inserción. Las filas
+	 * eliminadas se saltan y se compactan en bloque.
+	 */
+	private final class FilasDeUsuario {
+		
+		int[] filas = new int[4];
+		int tamanio;
+		int eliminadas;
+		final ContadorTareas.Acumulador contador;
+		
+		/** Mayor id agregado y si las filas siguen en orden de id */
+		int mayorId;
+		boolean ordenadas = true;
+		
+		FilasDeUsuario(ContadorTareas.Acumulador contador) {
+			this.contador = contador;
+		}
+		
+		void asegurarCapacidad(int adicionales) {
+			if (tamanio + adicionales > filas.length) {
+				filas = Arrays.copyOf(filas, tamanio + adicionales);
+			}
+		}
+		
+		void agregar(int fila) {
+			if (tamanio == filas.length) {
+				filas = Arrays.copyOf(filas, tamanio * 2);
+			}
+			int id = ids.getInt(fila);
+			if (tamanio == 0) {
+				ordenadas = true;
+			} else if (id < mayorId) {
+				ordenadas = false;
+			}
+			mayorId = tamanio == 0 ? id : Math.max(mayorId, id);
+			filas[tamanio++] = fila;
+		}
+		
+		void compactar() {
+			int destino = 0;
+			for (int i = 0; i < tamanio; i++) {
+				if ((marcas.getByte(filas[i]) & ELIMINADA) == 0) {
+					filas[destino++] = filas[i];
+				}
+			}
+			tamanio = destino;
+			eliminadas = 0;
+		}
+	}
+
+}
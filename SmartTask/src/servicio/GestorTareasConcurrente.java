@@ -0,0 +1,798 @@
+package servicio;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import interfaces.Accionable;
+import interfaces.OyenteTareas;
+import interfaces.OyenteVencimientos;
+import interfaces.Suscripcion;
+import modelo.ContadorTareas;
+import modelo.EstadoTarea;
+import modelo.FormatoIntercambio;
+import modelo.IndiceTareas;
+import modelo.Pagina;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoEvento;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+
+/**
+ * Implementación del gestor de tareas segura para uso concurrente.
+ * 
+ * <p>
+ * A diferencia de {@link GestorTareasServicio}, puede ser usada desde
+ * varios hilos a la vez:
+ * </p>
+ * <ul>
+ * 	<li>Los identificadores se generan con contadores atómicos.</li>
+ * 	<li>Los usuarios se guardan en un mapa concurrente por id.</li>
+ * 	<li>Las operaciones sobre las tareas de un usuario se protegen con un
+ * 	conjunto fijo de cerrojos (franjas) elegido por el id del usuario.</li>
+ * </ul>
+ * 
+ * <p>
+ * Como los ids de usuario son consecutivos, usuarios cuyos ids difieren en
+ * menos que el número de franjas nunca comparten cerrojo de franja. Aun
+ * así, las escrituras sobre usuarios distintos no son independientes:
+ * cada asignación, cambio de estado o eliminación actualiza también el
+ * índice de descripciones, la cola de trabajo y los vencimientos, que son
+ * únicos para todo el gestor y tienen cada uno su propio cerrojo, tomado
+ * brevemente mientras se sostiene el de la franja. Esas secciones se
+ * ejecutan de una en una, así que con muchos hilos escribiendo son las que
+ * limitan el rendimiento. Las listas de tareas devueltas son copias
+ * tomadas bajo el cerrojo correspondiente.
+ * </p>
+ */
+
+public class GestorTareasConcurrente implements Accionable {
+	
+	/** Usuarios registrados por id */
+	private final ConcurrentMap<Integer, Usuario> usuarios;
+	
+	/** Usuarios agrupados por tipo y ordenados por id */
+	private final Map<TipoUsuario, ConcurrentSkipListMap<Integer, Usuario>> usuariosPorTipo;
+	
+	/** Cerrojos que protegen las tareas de los usuarios */
+	private final ReentrantLock[] franjas;
+	
+	/** Máscara para elegir la franja (número de franjas - 1) */
+	private final int mascaraFranjas;
+	
+	/** Cola de tareas activas por prioridad */
+	private final PlanificadorTareas planificador;
+	
+	/** Índice de descripciones de las tareas asignadas */
+	private final IndiceTareas indiceDescripciones;
+	
+	/** Eventos de cambios de tareas para los suscriptores */
+	private final BusEventos eventos;
+	
+	/** Vencimientos vigilados de las tareas asignadas */
+	private final Vencimientos vencimientos;
+	
+	/** Conteo global de tareas asignadas */
+	private final ContadorTareas.Acumulador contadorGlobal;
+	
+	/** Conteo de tareas por tipo de usuario, vinculado al global */
+	private final Map<TipoUsuario, ContadorTareas.Acumulador> contadoresPorTipo;
+	
+	/** Contador auto-incremental para usuarios */
+	private final AtomicInteger contadorUsuarios;
+	
+	/** Contador auto-incremental para tareas */
+	private final AtomicInteger contadorTareas;
+	
+	/**
+	 * Constructor del gestor con un número de franjas proporcional a los
+	 * procesadores disponibles.
+	 */
+	public GestorTareasConcurrente() {
+		this(Runtime.getRuntime().availableProcessors() * 16);
+	}
+	
+	/**
+	 * Constructor del gestor.
+	 * 
+	 * @param franjas número mínimo de cerrojos; se redondea a potencia de dos
+	 * @throws IllegalArgumentException si el número de franjas no es positivo
+	 */
+	public GestorTareasConcurrente(int franjas) {
+		if (franjas <= 0) {
+			throw new IllegalArgumentException("El número de franjas debe ser positivo.");
+		}
+		
+		int cantidad = Integer.highestOneBit(franjas);
+		if (cantidad < franjas) {
+			cantidad <<= 1;
+		}
+		
+		this.usuarios = new ConcurrentHashMap<>();
+		this.usuariosPorTipo = new EnumMap<>(TipoUsuario.class);
+		for (TipoUsuario tipo : TipoUsuario.values()) {
+			this.usuariosPorTipo.put(tipo, new ConcurrentSkipListMap<>());
+		}
+		this.planificador = new PlanificadorTareas();
+		this.indiceDescripciones = new IndiceTareas();
+		this.eventos = new BusEventos();
+		this.vencimientos = new Vencimientos();
+		this.contadorGlobal = new ContadorTareas.Acumulador();
+		this.contadoresPorTipo = new EnumMap<>(TipoUsuario.class);
+		for (TipoUsuario tipo : TipoUsuario.values()) {
+			this.contadoresPorTipo.put(tipo, new ContadorTareas.Acumulador(contadorGlobal));
+		}
+		this.franjas = new ReentrantLock[cantidad];
+		for (int i = 0; i < cantidad; i++) {
+			this.franjas[i] = new ReentrantLock();
+		}
+		this.mascaraFranjas = cantidad - 1;
+		this.contadorUsuarios = new AtomicInteger(1);
+		this.contadorTareas = new AtomicInteger(1);
+	}
+	
+	// Gestión de usuarios
+
+	@Override
+	public Usuario crearUsuario(String nombre, TipoUsuario tipo) {
+		int idGenerado = contadorUsuarios.getAndIncrement();
+		Usuario usuario = FabricaModelo.nuevoUsuario(idGenerado, nombre, tipo);
+		usuario.vincularContador(contadoresPorTipo.get(tipo).getContador());
+		usuario.vincularIndice(indiceDescripciones);
+		
+		usuarios.put(idGenerado, usuario);
+		usuariosPorTipo.get(tipo).put(idGenerado, usuario);
+		return usuario;
+	}
+
+	@Override
+	public Usuario buscarUsuario(int id) {
+		return usuarios.get(id);
+	}
+
+	/**
+	 * Devuelve los usuarios registrados ordenados por id, que coincide con
+	 * el orden de creación.
+	 * 
+	 * @return copia de la lista de usuarios
+	 */
+	@Override
+	public List<Usuario> listarUsuarios() {
+		List<Usuario> lista = new ArrayList<>(usuarios.values());
+		lista.sort(Comparator.comparingInt(Usuario::getId));
+		return lista;
+	}
+	
+	@Override
+	public List<Usuario> listarUsuariosPorTipo(TipoUsuario tipo) {
+		ConcurrentSkipListMap<Integer, Usuario> grupo = usuariosPorTipo.get(tipo);
+		
+		if (grupo == null) {
+			return Collections.emptyList();
+		}
+		
+		return new ArrayList<>(grupo.values());
+	}
+	
+	// Gestión de tareas
+
+	@Override
+	public Tarea crearTarea(String descripcion, Prioridad prioridad) {
+		int idGenerado = contadorTareas.getAndIncrement();
+		eventos.publicar(TipoEvento.CREADA, idGenerado, 0);
+		return FabricaModelo.nuevaTarea(idGenerado, descripcion, prioridad);
+	}
+
+	@Override
+	public void agregarTareaAUsuario(int usuarioId, Tarea tarea) {
+		
+		Usuario usuario = buscarUsuario(usuarioId);
+		
+		if (usuario == null) {
+			throw new IllegalArgumentException("Usuario no encontrado.");
+		}
+		
+		ReentrantLock cerrojo = franja(usuarioId);
+		cerrojo.lock();
+		try {
+			usuario.agregarTarea(tarea);
+			if (tarea != null && usuario.buscarTarea(tarea.getId()) == tarea) {
+				// Bajo el cerrojo, para que una eliminación concurrente la descarte después
+				planificador.encolar(usuario, tarea);
+				vigilar(usuarioId, tarea);
+				eventos.publicar(TipoEvento.ASIGNADA, tarea.getId(), usuarioId);
+			}
+		} finally {
+			cerrojo.unlock();
+		}
+	}
+
+	@Override
+	public List<Tarea> listarTareasDeUsuario(int usuarioId) {
+		
+		Usuario usuario = buscarUsuario(usuarioId);
+		
+		if (usuario == null) {
+			return null;
+		}
+		
+		return copiarTareas(usuario);
+	}
+
+	@Override
+	public boolean marcarTareaComoCompletada(int usuarioId, int tareaId) {
+		
+		Usuario usuario = buscarUsuario(usuarioId);
+		
+		if (usuario == null) {
+			return false;
+		}
+		
+		ReentrantLock cerrojo = franja(usuarioId);
+		cerrojo.lock();
+		try {
+			Tarea tarea = usuario.buscarTarea(tareaId);
+			
+			if (tarea == null) {
+				return false;
+			}
+			
+			if (tarea.getEstado() == EstadoTarea.ACTIVA) {
+				tarea.marcarComoCompletada();
+				eventos.publicar(TipoEvento.COMPLETADA, tareaId, usuarioId);
+			}
+		} finally {
+			cerrojo.unlock();
+		}
+		
+		planificador.descartar(tareaId);
+		vencimientos.cancelar(tareaId);
+		return true;
+	}
+
+	@Override
+	public boolean eliminarTareaDeUsuario(int usuarioId, int tareaId) {
+		
+		Usuario usuario = buscarUsuario(usuarioId);
+		
+		if (usuario == null) {
+			return false;
+		}
+		
+		ReentrantLock cerrojo = franja(usuarioId);
+		cerrojo.lock();
+		boolean eliminada;
+		try {
+			eliminada = usuario.eliminarTarea(tareaId);
+			if (eliminada) {
+				eventos.publicar(TipoEvento.ELIMINADA, tareaId, usuarioId);
+			}
+		} finally {
+			cerrojo.unlock();
+		}
+		
+		if (eliminada) {
+			planificador.descartar(tareaId);
+			vencimientos.cancelar(tareaId);
+		}
+		return eliminada;
+	}
+	
+	@Override
+	public List<Tarea> listarTareasPorTipoUsuario(TipoUsuario tipo) {
+		
+		List<Tarea> resultado = new ArrayList<>();
+		
+		for (Usuario usuario : listarUsuariosPorTipo(tipo)) {
+			resultado.addAll(copiarTareas(usuario));
+		}
+		
+		return resultado;
+	}
+	
+	@Override
+	public List<Tarea> listarTareasDeUsuario(int usuarioId, EstadoTarea estado) {
+		
+		Usuario usuario = buscarUsuario(usuarioId);
+		
+		if (usuario == null) {
+			return null;
+		}
+		
+		ReentrantLock cerrojo = franja(usuarioId);
+		cerrojo.lock();
+		try {
+			return copiar(usuario.tareasConEstado(estado), usuario.getContador().contar(estado));
+		} finally {
+			cerrojo.unlock();
+		}
+	}
+	
+	@Override
+	public List<Tarea> listarTareasDeUsuario(int usuarioId, Prioridad prioridad) {
+		
+		Usuario usuario = buscarUsuario(usuarioId);
+		
+		if (usuario == null) {
+			return null;
+		}
+		
+		ReentrantLock cerrojo = franja(usuarioId);
+		cerrojo.lock();
+		try {
+			return copiar(usuario.tareasConPrioridad(prioridad), usuario.getContador().contar(prioridad));
+		} finally {
+			cerrojo.unlock();
+		}
+	}
+	
+	// Listados paginados
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Mezcla en orden de id los grupos por tipo, que ya están ordenados,
+	 * sin recorrer los usuarios anteriores al cursor.
+	 * </p>
+	 */
+	@Override
+	public Pagina<Usuario> listarUsuarios(long cursor, int limite) {
+		Paginacion.comprobar(cursor, limite);
+		
+		List<Usuario> elementos = new ArrayList<>();
+		if (cursor == Pagina.FIN || cursor >= Integer.MAX_VALUE) {
+			return new Pagina<>(elementos, Pagina.FIN);
+		}
+		
+		List<Iterator<Usuario>> grupos = new ArrayList<>();
+		Usuario[] cabezas = new Usuario[TipoUsuario.values().length];
+		for (ConcurrentSkipListMap<Integer, Usuario> grupo : usuariosPorTipo.values()) {
+			Iterator<Usuario> iterador = grupo.tailMap((int) cursor, false).values().iterator();
+			cabezas[grupos.size()] = iterador.hasNext() ? iterador.next() : null;
+			grupos.add(iterador);
+		}
+		
+		while (elementos.size() < limite) {
+			int menor = -1;
+			for (int i = 0; i < grupos.size(); i++) {
+				if (cabezas[i] != null && (menor < 0 || cabezas[i].getId() < cabezas[menor].getId())) {
+					menor = i;
+				}
+			}
+			if (menor < 0) {
+				break;
+			}
+			elementos.add(cabezas[menor]);
+			cabezas[menor] = grupos.get(menor).hasNext() ? grupos.get(menor).next() : null;
+		}
+		
+		long ultimo = elementos.isEmpty() ? cursor : elementos.get(elementos.size() - 1).getId();
+		return Paginacion.pagina(elementos, limite, ultimo);
+	}
+	
+	@Override
+	public Pagina<Tarea> listarTareasDeUsuario(int usuarioId, long cursor, int limite) {
+		Paginacion.comprobar(cursor, limite);
+		
+		Usuario usuario = buscarUsuario(usuarioId);
+		
+		if (usuario == null) {
+			return null;
+		}
+		if (cursor == Pagina.FIN) {
+			return new Pagina<>(new ArrayList<>(), Pagina.FIN);
+		}
+		
+		List<Tarea> elementos = tareasDespuesDe(usuario, Paginacion.idDesde(cursor), limite);
+		long ultimo = elementos.isEmpty() ? cursor : elementos.get(elementos.size() - 1).getId();
+		return Paginacion.pagina(elementos, limite, ultimo);
+	}
+	
+	@Override
+	public Pagina<Tarea> listarTareasPorTipoUsuario(TipoUsuario tipo, long cursor, int limite) {
+		Paginacion.comprobar(cursor, limite);
+		
+		List<Tarea> elementos = new ArrayList<>();
+		long ultimo = cursor;
+		ConcurrentSkipListMap<Integer, Usuario> grupo = usuariosPorTipo.get(tipo);
+		if (cursor == Pagina.FIN || grupo == null) {
+			return new Pagina<>(elementos, Pagina.FIN);
+		}
+		
+		int usuarioDesde = Pagina.usuarioDe(cursor);
+		for (Usuario usuario : grupo.tailMap(usuarioDesde, true).values()) {
+			if (elementos.size() == limite) {
+				break;
+			}
+			int tareaDesde = usuario.getId() == usuarioDesde ? Pagina.tareaDe(cursor) : Integer.MIN_VALUE;
+			
+			List<Tarea> propias = tareasDespuesDe(usuario, tareaDesde, limite - elementos.size());
+			if (!propias.isEmpty()) {
+				elementos.addAll(propias);
+				ultimo = Pagina.cursor(usuario.getId(), propias.get(propias.size() - 1).getId());
+			}
+		}
+		return Paginacion.pagina(elementos, limite, ultimo);
+	}
+	
+	@Override
+	public Stream<Usuario> recorrerUsuarios() {
+		return Paginacion.stream(cursor -> listarUsuarios(cursor, Paginacion.TAMANIO_PAGINA));
+	}
+	
+	@Override
+	public Stream<Tarea> recorrerTareasPorTipoUsuario(TipoUsuario tipo) {
+		return Paginacion.stream(cursor -> listarTareasPorTipoUsuario(tipo, cursor, Paginacion.TAMANIO_PAGINA));
+	}
+	
+	// Consultas paralelas
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Cada bloque de tareas de un usuario se compacta y se copia bajo el
+	 * cerrojo de su franja, así que la consulta ve los cambios concurrentes de forma
+	 * débilmente consistente.
+	 * </p>
+	 */
+	@Override
+	public <R> R consultarTareas(TipoUsuario tipo, Function<? super Stream<Tarea>, ? extends R> consulta) {
+		List<Usuario> grupo = tipo == null ? listarUsuarios() : listarUsuariosPorTipo(tipo);
+		
+		int[] tamanios = new int[grupo.size()];
+		for (int i = 0; i < tamanios.length; i++) {
+			Usuario usuario = grupo.get(i);
+			ReentrantLock cerrojo = franja(usuario.getId());
+			cerrojo.lock();
+			try {
+				usuario.compactarTareas();
+				tamanios[i] = usuario.getTareas().size();
+			} finally {
+				cerrojo.unlock();
+			}
+		}
+		
+		return ConsultasParalelas.ejecutar(tamanios, (segmento, desde, hasta, destino) -> {
+			Usuario usuario = grupo.get(segmento);
+			ReentrantLock cerrojo = franja(usuario.getId());
+			cerrojo.lock();
+			try {
+				// Sin huecos, cada lectura por posición es O(1)
+				usuario.compactarTareas();
+				List<Tarea> tareas = usuario.getTareas();
+				int fin = Math.min(hasta, tareas.size());
+				for (int i = desde; i < fin; i++) {
+					destino[i - desde] = tareas.get(i);
+				}
+				return Math.max(0, fin - desde);
+			} finally {
+				cerrojo.unlock();
+			}
+		}, consulta);
+	}
+	
+	// Búsqueda
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * El índice se consulta sin tomar cerrojos de usuario; después cada
+	 * tarea encontrada se busca bajo el cerrojo de la franja de su dueño.
+	 * Las tareas eliminadas entre ambos pasos se omiten.
+	 * </p>
+	 */
+	@Override
+	public List<Tarea> buscarTareas(String consulta, EstadoTarea estado, Prioridad prioridad, TipoUsuario tipo, int limite) {
+		int[] ids = indiceDescripciones.buscar(consulta, estado, prioridad, tipo, limite);
+		
+		List<Tarea> encontradas = new ArrayList<>(ids.length);
+		for (int id : ids) {
+			Usuario usuario = buscarUsuario(indiceDescripciones.duenioDe(id));
+			if (usuario == null) {
+				continue;
+			}
+			
+			ReentrantLock cerrojo = franja(usuario.getId());
+			cerrojo.lock();
+			try {
+				Tarea tarea = usuario.buscarTarea(id);
+				if (tarea != null) {
+					encontradas.add(tarea);
+				}
+			} finally {
+				cerrojo.unlock();
+			}
+		}
+		return encontradas;
+	}
+	
+	// Cola de trabajo
+	
+	@Override
+	public Tarea verSiguienteTarea() {
+		return planificador.ver();
+	}
+	
+	@Override
+	public Tarea verSiguienteTarea(int usuarioId) {
+		return planificador.ver(usuarioId);
+	}
+	
+	@Override
+	public Tarea tomarSiguienteTarea() {
+		return planificador.tomar();
+	}
+	
+	@Override
+	public Tarea tomarSiguienteTarea(int usuarioId) {
+		return planificador.tomar(usuarioId);
+	}
+	
+	@Override
+	public boolean liberarTarea(int tareaId) {
+		return planificador.liberar(tareaId);
+	}
+	
+	// Estadísticas
+	
+	@Override
+	public ContadorTareas contarTareas() {
+		return contadorGlobal.getContador();
+	}
+	
+	@Override
+	public ContadorTareas contarTareasDeUsuario(int usuarioId) {
+		
+		Usuario usuario = buscarUsuario(usuarioId);
+		
+		if (usuario == null) {
+			return null;
+		}
+		
+		return usuario.getContador();
+	}
+	
+	@Override
+	public ContadorTareas contarTareasPorTipoUsuario(TipoUsuario tipo) {
+		return contadoresPorTipo.get(tipo).getContador();
+	}
+	
+	// Carga masiva
+	
+	@Override
+	public int reservarIdsTareas(int cantidad) {
+		if (cantidad < 0) {
+			throw new IllegalArgumentException("Cantidad de identificadores no válida.");
+		}
+		
+		while (true) {
+			int primero = contadorTareas.get();
+			if (primero > Integer.MAX_VALUE - cantidad) {
+				throw new IllegalArgumentException("Cantidad de identificadores no válida.");
+			}
+			if (contadorTareas.compareAndSet(primero, primero + cantidad)) {
+				return primero;
+			}
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Todas las tareas se agregan y se encolan bajo una sola toma del
+	 * cerrojo de la franja del usuario.
+	 * </p>
+	 */
+	@Override
+	public void agregarTareasAUsuario(int usuarioId, List<Tarea> tareas) {
+		
+		Usuario usuario = buscarUsuario(usuarioId);
+		
+		if (usuario == null) {
+			throw new IllegalArgumentException("Usuario no encontrado.");
+		}
+		
+		ReentrantLock cerrojo = franja(usuarioId);
+		cerrojo.lock();
+		try {
+			usuario.asegurarCapacidad(tareas.size());
+			for (Tarea tarea : tareas) {
+				usuario.agregarTarea(tarea);
+				if (tarea != null && usuario.buscarTarea(tarea.getId()) == tarea) {
+					planificador.encolar(usuario, tarea);
+					vigilar(usuarioId, tarea);
+					eventos.publicar(TipoEvento.ASIGNADA, tarea.getId(), usuarioId);
+				}
+			}
+		} finally {
+			cerrojo.unlock();
+		}
+	}
+	
+	@Override
+	public int importar(Reader entrada, FormatoIntercambio formato) throws IOException {
+		return Intercambio.importar(this, entrada, formato);
+	}
+	
+	@Override
+	public void exportar(Writer salida, FormatoIntercambio formato) throws IOException {
+		Intercambio.exportar(this, salida, formato);
+	}
+	
+	// Eventos
+	
+	@Override
+	public Suscripcion suscribir(OyenteTareas oyente, int loteMaximo) {
+		return eventos.suscribir(oyente, loteMaximo);
+	}
+	
+	// Vencimientos
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * El vencimiento se fija y se programa bajo el cerrojo de la franja del
+	 * usuario, para que una eliminación concurrente lo cancele después.
+	 * </p>
+	 */
+	@Override
+	public boolean fijarVencimiento(int usuarioId, int tareaId, long venceEn, long antelacion) {
+		Vencimientos.comprobar(venceEn, antelacion);
+		
+		Usuario usuario = buscarUsuario(usuarioId);
+		
+		if (usuario == null) {
+			return false;
+		}
+		
+		ReentrantLock cerrojo = franja(usuarioId);
+		cerrojo.lock();
+		try {
+			Tarea tarea = usuario.buscarTarea(tareaId);
+			
+			if (tarea == null) {
+				return false;
+			}
+			
+			tarea.setVenceEn(venceEn);
+			long vigilado = tarea.getEstado() == EstadoTarea.ACTIVA ? venceEn : 0;
+			vencimientos.programar(usuarioId, tareaId, vigilado,
+					Vencimientos.escalarEn(tarea.esUrgente(), venceEn, antelacion));
+		} finally {
+			cerrojo.unlock();
+		}
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Cada tarea se comprueba y se escala bajo el cerrojo de su franja; el
+	 * oyente se llama sin cerrojos tomados. Si varios hilos revisan a la
+	 * vez, cada aviso lo entrega solo uno de ellos.
+	 * </p>
+	 */
+	@Override
+	public int revisarVencimientos(long ahora, OyenteVencimientos oyente) {
+		Vencimientos.comprobar(oyente);
+		
+		int avisos = 0;
+		for (long disparo : vencimientos.revisar(ahora)) {
+			int usuarioId = Vencimientos.usuarioDe(disparo);
+			int tareaId = Vencimientos.tareaDe(disparo);
+			Usuario usuario = buscarUsuario(usuarioId);
+			
+			if (usuario == null) {
+				continue;
+			}
+			
+			Tarea tarea;
+			boolean escalada = false;
+			boolean vencida;
+			ReentrantLock cerrojo = franja(usuarioId);
+			cerrojo.lock();
+			try {
+				tarea = usuario.buscarTarea(tareaId);
+				if (tarea == null || tarea.getEstado() != EstadoTarea.ACTIVA) {
+					continue;
+				}
+				if (Vencimientos.esEscalado(disparo)) {
+					escalada = tarea.escalar();
+				}
+				vencida = tarea.estaVencida(ahora);
+				if (!vencida && Vencimientos.esEscalado(disparo)) {
+					vencimientos.programar(usuarioId, tareaId, tarea.getVenceEn(), 0);
+				}
+			} finally {
+				cerrojo.unlock();
+			}
+			
+			if (escalada) {
+				planificador.escalar(tareaId);
+				oyente.alEscalar(usuarioId, tarea);
+				avisos++;
+			}
+			if (vencida) {
+				oyente.alVencer(usuarioId, tarea);
+				avisos++;
+			}
+		}
+		return avisos;
+	}
+	
+	/**
+	 * Vigila el vencimiento de una tarea activa recién asignada que ya lo
+	 * traía fijado.
+	 */
+	private void vigilar(int usuarioId, Tarea tarea) {
+		if (tarea.getVenceEn() != 0 && tarea.getEstado() == EstadoTarea.ACTIVA) {
+			vencimientos.programar(usuarioId, tarea.getId(), tarea.getVenceEn(), 0);
+		}
+	}
+	
+	/**
+	 * Copia en una lista las tareas de un recorrido de tamaño conocido.
+	 */
+	private static List<Tarea> copiar(Iterable<Tarea> tareas, int cantidad) {
+		List<Tarea> lista = new ArrayList<>(cantidad);
+		for (Tarea tarea : tareas) {
+			lista.add(tarea);
+		}
+		return lista;
+	}
+	
+	/**
+	 * Copia las tareas de un usuario bajo el cerrojo de su franja.
+	 */
+	private List<Tarea> copiarTareas(Usuario usuario) {
+		ReentrantLock cerrojo = franja(usuario.getId());
+		cerrojo.lock();
+		try {
+			return List.copyOf(usuario.getTareas());
+		} finally {
+			cerrojo.unlock();
+		}
+	}
+	
+	/**
+	 * Lista por id las tareas de un usuario bajo el cerrojo de su franja.
+	 */
+	private List<Tarea> tareasDespuesDe(Usuario usuario, int despuesDeId, int limite) {
+		ReentrantLock cerrojo = franja(usuario.getId());
+		cerrojo.lock();
+		try {
+			return usuario.tareasDespuesDe(despuesDeId, limite);
+		} finally {
+			cerrojo.unlock();
+		}
+	}
+	
+	/**
+	 * Devuelve el cerrojo que protege las tareas del usuario indicado.
+	 */
+	private ReentrantLock franja(int usuarioId) {
+		return franjas[usuarioId & mascaraFranjas];
+	}
+
+}
@@ -0,0 +1,608 @@
+package servicio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import interfaces.Accionable;
+import interfaces.OyenteTareas;
+import interfaces.OyenteVencimientos;
+import interfaces.Suscripcion;
+import modelo.ContadorTareas;
+import modelo.EstadoTarea;
+import modelo.FormatoIntercambio;
+import modelo.Pagina;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+
+/**
+ * Gestor de tareas repartido entre varios fragmentos independientes, cada
+ * uno con sus propios usuarios, su propia memoria y su propio cerrojo.
+ * 
+ * <p>
+ * Cada usuario vive en el fragmento que le asigna el hashing consistente
+ * de su id ({@link AnilloFragmentos}), así que las operaciones sobre un
+ * usuario y sus tareas van directamente a un solo fragmento. Los
+ * fragmentos generan los ids sin coordinarse: cada uno crea solo ids de
+ * usuario que el anillo le asigna e ids de tarea de su propio rango. Los
+ * usuarios y las tareas nuevos se crean en un fragmento elegido al azar, y
+ * una tarea creada en un fragmento puede asignarse a un usuario de otro.
+ * </p>
+ * 
+ * <p>
+ * Los listados y conteos globales se piden a todos los fragmentos en
+ * paralelo, en hilos virtuales, y sus resultados se mezclan en el orden
+ * que indica {@link Accionable}. Los listados paginados piden a cada
+ * fragmento una página del mismo tamaño a partir del mismo cursor, y la
+ * página mezclada es la parte inicial de todas ellas. La cola de trabajo
+ * global consulta la siguiente tarea de cada fragmento y reclama la mejor
+ * por su id; si otro despachador se la lleva antes, vuelve a consultar.
+ * </p>
+ * 
+ * <p>
+ * Los fragmentos pueden estar en este proceso o en servidores
+ * {@link ServidorFragmento} de otras JVM; en ese caso los usuarios y las
+ * tareas devueltos son copias y los eventos llegan por una conexión
+ * propia de cada suscripción. El número de fragmentos es fijo: el anillo
+ * no mueve usuarios entre fragmentos. Es seguro para uso concurrente.
+ * </p>
+ */
+
+public class GestorTareasFragmentado implements Accionable, Closeable {
+	
+	/** Orden de la cola de trabajo: urgentes primero y, luego, por id */
+	private static final Comparator<Tarea> ORDEN_COLA = Comparator
+			.comparingInt((Tarea t) -> t.esUrgente() ? 0 : 1)
+			.thenComparingInt(Tarea::getId);
+	
+	/** Orden de las búsquedas: activas urgentes, activas normales, etc. */
+	private static final Comparator<Tarea> ORDEN_BUSQUEDA = Comparator
+			.comparingInt((Tarea t) -> (t.getEstado() == EstadoTarea.COMPLETADA ? 2 : 0)
+					+ (t.getPrioridad() == Prioridad.URGENTE ? 0 : 1))
+			.thenComparingInt(Tarea::getId);
+	
+	private static final Comparator<Usuario> POR_ID = Comparator.comparingInt(Usuario::getId);
+	
+	private final AnilloFragmentos anillo;
+	private final Fragmento[] fragmentos;
+	
+	/** Hilos de las consultas a todos los fragmentos */
+	private final ExecutorService hilos;
+	
+	/**
+	 * Crea un gestor con sus fragmentos en este proceso.
+	 * 
+	 * @param fragmentos número de fragmentos
+	 * @throws IllegalArgumentException si no está entre 1 y 128
+	 */
+	public GestorTareasFragmentado(int fragmentos) {
+		this(new AnilloFragmentos(fragmentos));
+	}
+	
+	private GestorTareasFragmentado(AnilloFragmentos anillo) {
+		this(anillo, new Fragmento[anillo.getFragmentos()]);
+		for (int i = 0; i < fragmentos.length; i++) {
+			fragmentos[i] = new FragmentoLocal(anillo, i);
+		}
+	}
+	
+	private GestorTareasFragmentado(AnilloFragmentos anillo, Fragmento[] fragmentos) {
+		this.anillo = anillo;
+		this.fragmentos = fragmentos;
+		this.hilos = Executors.newVirtualThreadPerTaskExecutor();
+	}
+	
+	/**
+	 * Crea un gestor sobre fragmentos atendidos por servidores
+	 * {@link ServidorFragmento}.
+	 * 
+	 * @param direcciones dirección del servidor de cada fragmento, en orden
+	 * de número de fragmento
+	 * @return gestor conectado
+	 * @throws IOException si no se puede conectar con algún servidor o no
+	 * atiende el fragmento esperado
+	 * @throws IllegalArgumentException si no hay entre 1 y 128 direcciones
+	 */
+	public static GestorTareasFragmentado conectar(List<InetSocketAddress> direcciones) throws IOException {
+		AnilloFragmentos anillo = new AnilloFragmentos(direcciones.size());
+		Fragmento[] remotos = new Fragmento[direcciones.size()];
+		try {
+			for (int i = 0; i < remotos.length; i++) {
+				remotos[i] = new FragmentoRemoto(direcciones.get(i), i, remotos.length);
+			}
+		} catch (IOException e) {
+			for (Fragmento remoto : remotos) {
+				if (remoto != null) {
+					remoto.close();
+				}
+			}
+			throw e;
+		}
+		return new GestorTareasFragmentado(anillo, remotos);
+	}
+	
+	/**
+	 * @return número de fragmentos
+	 */
+	public int getFragmentos() {
+		return fragmentos.length;
+	}
+	
+	/**
+	 * Devuelve el fragmento en el que vive un usuario.
+	 * 
+	 * @param usuarioId id del usuario
+	 * @return número del fragmento, desde 0
+	 */
+	public int fragmentoDe(int usuarioId) {
+		return anillo.fragmentoDe(usuarioId);
+	}
+	
+	/**
+	 * Espera a las consultas en curso y cierra las conexiones y las
+	 * suscripciones de los fragmentos remotos.
+	 */
+	@Override
+	public void close() throws IOException {
+		hilos.close();
+		for (Fragmento fragmento : fragmentos) {
+			fragmento.close();
+		}
+	}
+	
+	private Fragmento de(int usuarioId) {
+		return fragmentos[anillo.fragmentoDe(usuarioId)];
+	}
+	
+	private Fragmento cualquiera() {
+		return fragmentos[ThreadLocalRandom.current().nextInt(fragmentos.length)];
+	}
+	
+	/**
+	 * Ejecuta una operación en todos los fragmentos a la vez.
+	 * 
+	 * @return resultado de cada fragmento, en orden de número de fragmento
+	 */
+	private <T> List<T> enTodos(Function<Fragmento, T> operacion) {
+		if (fragmentos.length == 1) {
+			return List.of(operacion.apply(fragmentos[0]));
+		}
+		
+		List<Future<T>> pendientes = new ArrayList<>(fragmentos.length);
+		for (Fragmento fragmento : fragmentos) {
+			pendientes.add(hilos.submit(() -> operacion.apply(fragmento)));
+		}
+		
+		List<T> resultados = new ArrayList<>(fragmentos.length);
+		try {
+			for (Future<T> pendiente : pendientes) {
+				resultados.add(pendiente.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Consulta a los fragmentos interrumpida.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException causa) {
+				throw causa;
+			}
+			if (e.getCause() instanceof Error error) {
+				throw error;
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+		return resultados;
+	}
+	
+	private static <T> List<T> unir(List<List<T>> listas, Comparator<? super T> orden) {
+		List<T> todos = new ArrayList<>(listas.stream().mapToInt(List::size).sum());
+		for (List<T> lista : listas) {
+			todos.addAll(lista);
+		}
+		todos.sort(orden);
+		return todos;
+	}
+	
+	private static ContadorTareas sumar(List<ContadorTareas> contadores) {
+		ContadorTareas.Acumulador total = new ContadorTareas.Acumulador();
+		for (ContadorTareas contador : contadores) {
+			for (EstadoTarea estado : EstadoTarea.values()) {
+				for (Prioridad prioridad : Prioridad.values()) {
+					total.sumar(estado, prioridad, contador.contar(estado, prioridad));
+				}
+			}
+		}
+		return total.getContador();
+	}
+	
+	// Gestión de usuarios
+	
+	@Override
+	public Usuario crearUsuario(String nombre, TipoUsuario tipo) {
+		return cualquiera().crearUsuario(nombre, tipo);
+	}
+	
+	@Override
+	public Usuario buscarUsuario(int id) {
+		return de(id).buscarUsuario(id);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Los usuarios de todos los fragmentos salen en orden de id.
+	 * </p>
+	 */
+	@Override
+	public List<Usuario> listarUsuarios() {
+		return unir(enTodos(fragmento -> fragmento.listarUsuarios(null)), POR_ID);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Como los ids de cada fragmento crecen con el tiempo pero se
+	 * intercalan entre fragmentos, los usuarios salen en orden de id, que
+	 * solo coincide con el de creación dentro de cada fragmento.
+	 * </p>
+	 */
+	@Override
+	public List<Usuario> listarUsuariosPorTipo(TipoUsuario tipo) {
+		if (tipo == null) {
+			throw new IllegalArgumentException("Tipo de usuario no válido.");
+		}
+		return unir(enTodos(fragmento -> fragmento.listarUsuarios(tipo)), POR_ID);
+	}
+	
+	// Gestión de tareas
+	
+	@Override
+	public Tarea crearTarea(String descripcion, Prioridad prioridad) {
+		return cualquiera().crearTarea(descripcion, prioridad);
+	}
+	
+	@Override
+	public void agregarTareaAUsuario(int usuarioId, Tarea tarea) {
+		de(usuarioId).agregarTareasAUsuario(usuarioId, tarea == null ? List.of() : List.of(tarea));
+	}
+	
+	@Override
+	public List<Tarea> listarTareasDeUsuario(int usuarioId) {
+		return de(usuarioId).listarTareasDeUsuario(usuarioId, null, null);
+	}
+	
+	@Override
+	public boolean marcarTareaComoCompletada(int usuarioId, int tareaId) {
+		return de(usuarioId).marcarTareaComoCompletada(usuarioId, tareaId);
+	}
+	
+	@Override
+	public boolean eliminarTareaDeUsuario(int usuarioId, int tareaId) {
+		return de(usuarioId).eliminarTareaDeUsuario(usuarioId, tareaId);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Las tareas salen en orden de id de usuario y, dentro de cada usuario,
+	 * de id de tarea, como en el listado paginado.
+	 * </p>
+	 */
+	@Override
+	public List<Tarea> listarTareasPorTipoUsuario(TipoUsuario tipo) {
+		if (tipo == null) {
+			throw new IllegalArgumentException("Tipo de usuario no válido.");
+		}
+		return tareas(tipo);
+	}
+	
+	/** Todas las tareas de un tipo de usuario, o de todos si es null */
+	private List<Tarea> tareas(TipoUsuario tipo) {
+		List<Fragmento.Grupo> grupos = unirGrupos(
+				enTodos(fragmento -> fragmento.listarTareasPorTipoUsuario(tipo, Pagina.INICIO, Integer.MAX_VALUE)));
+		List<Tarea> tareas = new ArrayList<>(grupos.stream().mapToInt(grupo -> grupo.tareas.size()).sum());
+		for (Fragmento.Grupo grupo : grupos) {
+			tareas.addAll(grupo.tareas);
+		}
+		return tareas;
+	}
+	
+	private static List<Fragmento.Grupo> unirGrupos(List<List<Fragmento.Grupo>> porFragmento) {
+		return unir(porFragmento, Comparator.comparingInt(grupo -> grupo.usuarioId));
+	}
+	
+	@Override
+	public List<Tarea> listarTareasDeUsuario(int usuarioId, EstadoTarea estado) {
+		if (estado == null) {
+			throw new IllegalArgumentException("Estado no válido.");
+		}
+		return de(usuarioId).listarTareasDeUsuario(usuarioId, estado, null);
+	}
+	
+	@Override
+	public List<Tarea> listarTareasDeUsuario(int usuarioId, Prioridad prioridad) {
+		if (prioridad == null) {
+			throw new IllegalArgumentException("Prioridad no válida.");
+		}
+		return de(usuarioId).listarTareasDeUsuario(usuarioId, null, prioridad);
+	}
+	
+	// Listados paginados
+	
+	@Override
+	public Pagina<Usuario> listarUsuarios(long cursor, int limite) {
+		Paginacion.comprobar(cursor, limite);
+		if (cursor == Pagina.FIN) {
+			return new Pagina<>(new ArrayList<>(), Pagina.FIN);
+		}
+		
+		List<Usuario> todos = unir(enTodos(fragmento -> fragmento.listarUsuarios(cursor, limite).getElementos()),
+				POR_ID);
+		List<Usuario> elementos = new ArrayList<>(todos.subList(0, Math.min(limite, todos.size())));
+		long ultimo = elementos.isEmpty() ? cursor : elementos.get(elementos.size() - 1).getId();
+		return Paginacion.pagina(elementos, limite, ultimo);
+	}
+	
+	@Override
+	public Pagina<Tarea> listarTareasDeUsuario(int usuarioId, long cursor, int limite) {
+		return de(usuarioId).listarTareasDeUsuario(usuarioId, cursor, limite);
+	}
+	
+	@Override
+	public Pagina<Tarea> listarTareasPorTipoUsuario(TipoUsuario tipo, long cursor, int limite) {
+		Paginacion.comprobar(cursor, limite);
+		if (tipo == null) {
+			throw new IllegalArgumentException("Tipo de usuario no válido.");
+		}
+		if (cursor == Pagina.FIN) {
+			return new Pagina<>(new ArrayList<>(), Pagina.FIN);
+		}
+		
+		List<Tarea> elementos = new ArrayList<>(Math.min(limite, Paginacion.TAMANIO_PAGINA));
+		long ultimo = cursor;
+		for (Fragmento.Grupo grupo : unirGrupos(
+				enTodos(fragmento -> fragmento.listarTareasPorTipoUsuario(tipo, cursor, limite)))) {
+			if (elementos.size() == limite) {
+				break;
+			}
+			List<Tarea> propias = grupo.tareas.subList(0, Math.min(grupo.tareas.size(), limite - elementos.size()));
+			elementos.addAll(propias);
+			ultimo = Pagina.cursor(grupo.usuarioId, propias.get(propias.size() - 1).getId());
+		}
+		return Paginacion.pagina(elementos, limite, ultimo);
+	}
+	
+	@Override
+	public Stream<Usuario> recorrerUsuarios() {
+		return Paginacion.stream(cursor -> listarUsuarios(cursor, Paginacion.TAMANIO_PAGINA));
+	}
+	
+	@Override
+	public Stream<Tarea> recorrerTareasPorTipoUsuario(TipoUsuario tipo) {
+		return Paginacion.stream(cursor -> listarTareasPorTipoUsuario(tipo, cursor, Paginacion.TAMANIO_PAGINA));
+	}
+	
+	// Consultas paralelas
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Las tareas se reúnen primero de todos los fragmentos, en paralelo, y
+	 * la consulta se evalúa sobre un stream paralelo de la lista unida.
+	 * </p>
+	 */
+	@Override
+	public <R> R consultarTareas(TipoUsuario tipo, Function<? super Stream<Tarea>, ? extends R> consulta) {
+		return consulta.apply(tareas(tipo).parallelStream());
+	}
+	
+	// Búsqueda
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Cada fragmento devuelve hasta {@code limite} resultados; se mezclan
+	 * por grupo de la cola de trabajo y, dentro de cada grupo, por id.
+	 * </p>
+	 */
+	@Override
+	public List<Tarea> buscarTareas(String consulta, EstadoTarea estado, Prioridad prioridad, TipoUsuario tipo,
+			int limite) {
+		List<Tarea> todas = unir(
+				enTodos(fragmento -> fragmento.buscarTareas(consulta, estado, prioridad, tipo, limite)),
+				ORDEN_BUSQUEDA);
+		return new ArrayList<>(todas.subList(0, Math.min(limite, todas.size())));
+	}
+	
+	// Cola de trabajo
+	
+	@Override
+	public Tarea verSiguienteTarea() {
+		List<Tarea> siguientes = enTodos(fragmento -> fragmento.siguienteTarea(false));
+		int mejor = mejor(siguientes);
+		return mejor < 0 ? null : siguientes.get(mejor);
+	}
+	
+	@Override
+	public Tarea verSiguienteTarea(int usuarioId) {
+		return de(usuarioId).siguienteTarea(usuarioId, false);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Se consultan las cimas de todos los fragmentos a la vez y se reclama
+	 * la mejor por su id. Si otro despachador la tomó entre la consulta y
+	 * la reclamación, se vuelve a consultar.
+	 * </p>
+	 */
+	@Override
+	public Tarea tomarSiguienteTarea() {
+		while (true) {
+			List<Tarea> siguientes = enTodos(fragmento -> fragmento.siguienteTarea(false));
+			int mejor = mejor(siguientes);
+			if (mejor < 0) {
+				return null;
+			}
+			Tarea tomada = fragmentos[mejor].tomarTarea(siguientes.get(mejor).getId());
+			if (tomada != null) {
+				return tomada;
+			}
+		}
+	}
+	
+	@Override
+	public Tarea tomarSiguienteTarea(int usuarioId) {
+		return de(usuarioId).siguienteTarea(usuarioId, true);
+	}
+	
+	/**
+	 * @param siguientes cima de cada fragmento, null si su cola está vacía
+	 * @return fragmento con la mejor siguiente tarea, o -1 si todas las
+	 * colas están vacías
+	 */
+	private static int mejor(List<Tarea> siguientes) {
+		int mejor = -1;
+		for (int i = 0; i < siguientes.size(); i++) {
+			Tarea tarea = siguientes.get(i);
+			if (tarea != null && (mejor < 0 || ORDEN_COLA.compare(tarea, siguientes.get(mejor)) < 0)) {
+				mejor = i;
+			}
+		}
+		return mejor;
+	}
+	
+	@Override
+	public boolean liberarTarea(int tareaId) {
+		return enTodos(fragmento -> fragmento.liberarTarea(tareaId)).contains(true);
+	}
+	
+	// Estadísticas
+	
+	@Override
+	public ContadorTareas contarTareas() {
+		return sumar(enTodos(Fragmento::contarTareas));
+	}
+	
+	@Override
+	public ContadorTareas contarTareasDeUsuario(int usuarioId) {
+		return de(usuarioId).contarTareasDeUsuario(usuarioId);
+	}
+	
+	@Override
+	public ContadorTareas contarTareasPorTipoUsuario(TipoUsuario tipo) {
+		if (tipo == null) {
+			throw new IllegalArgumentException("Tipo de usuario no válido.");
+		}
+		return sumar(enTodos(fragmento -> fragmento.contarTareasPorTipoUsuario(tipo)));
+	}
+	
+	// Carga masiva
+	
+	@Override
+	public int reservarIdsTareas(int cantidad) {
+		return cualquiera().reservarIdsTareas(cantidad);
+	}
+	
+	@Override
+	public void agregarTareasAUsuario(int usuarioId, List<Tarea> tareas) {
+		de(usuarioId).agregarTareasAUsuario(usuarioId, tareas);
+	}
+	
+	// Intercambio
+	
+	@Override
+	public int importar(Reader entrada, FormatoIntercambio formato) throws IOException {
+		return Intercambio.importar(this, entrada, formato);
+	}
+	
+	@Override
+	public void exportar(Writer salida, FormatoIntercambio formato) throws IOException {
+		Intercambio.exportar(this, salida, formato);
+	}
+	
+	// Eventos
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * El oyente se suscribe a cada fragmento, y cada uno le entrega sus
+	 * lotes desde su propio hilo, así que debe ser seguro para uso
+	 * concurrente.
+	 * </p>
+	 */
+	@Override
+	public Suscripcion suscribir(OyenteTareas oyente, int loteMaximo) {
+		List<Suscripcion> suscripciones = new ArrayList<>(fragmentos.length);
+		try {
+			for (Fragmento fragmento : fragmentos) {
+				suscripciones.add(fragmento.suscribir(oyente, loteMaximo));
+			}
+		} catch (RuntimeException e) {
+			suscripciones.forEach(Suscripcion::close);
+			throw e;
+		}
+		
+		return new Suscripcion() {
+			@Override
+			public long getEntregados() {
+				return suscripciones.stream().mapToLong(Suscripcion::getEntregados).sum();
+			}
+			
+			@Override
+			public long getPerdidos() {
+				return suscripciones.stream().mapToLong(Suscripcion::getPerdidos).sum();
+			}
+			
+			@Override
+			public void close() {
+				suscripciones.forEach(Suscripcion::close);
+			}
+		};
+	}
+	
+	// Vencimientos
+	
+	@Override
+	public boolean fijarVencimiento(int usuarioId, int tareaId, long venceEn, long antelacion) {
+		return de(usuarioId).fijarVencimiento(usuarioId, tareaId, venceEn, antelacion);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Los fragmentos se revisan uno tras otro, para que el oyente reciba
+	 * los avisos desde un solo hilo.
+	 * </p>
+	 */
+	@Override
+	public int revisarVencimientos(long ahora, OyenteVencimientos oyente) {
+		int revisadas = 0;
+		for (Fragmento fragmento : fragmentos) {
+			revisadas += fragmento.revisarVencimientos(ahora, oyente);
+		}
+		return revisadas;
+	}
+
+}
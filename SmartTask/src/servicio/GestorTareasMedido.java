@@ -0,0 +1,889 @@
+package servicio;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Stream;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import interfaces.Accionable;
+import interfaces.OyenteTareas;
+import interfaces.OyenteVencimientos;
+import interfaces.Suscripcion;
+import modelo.ContadorTareas;
+import modelo.EstadoTarea;
+import modelo.FormatoIntercambio;
+import modelo.Pagina;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+
+/**
+ * Decorador de {@link Accionable} que mide cada operación: llamadas,
+ * errores, latencias y, en las que devuelven o reciben colecciones, el
+ * tamaño de los datos.
+ * 
+ * <p>
+ * Cada operación cuenta todas sus llamadas y errores y tiene un
+ * {@link Histograma} de latencias en nanosegundos y, si corresponde, otro
+ * de tamaños. Leer el reloj dos veces cuesta unos 50 ns, más que muchas
+ * de las operaciones, así que las latencias se toman de una muestra al
+ * azar de una de cada {@value #MUESTREO} llamadas por defecto; el resto
+ * solo suma un contador. Las operaciones que devuelven un {@link Stream}
+ * miden solo su creación, no el recorrido.
+ * </p>
+ * 
+ * <p>
+ * Además calcula, al consultarlos, indicadores del contenido: usuarios,
+ * tareas activas y completadas y distribución de tareas por usuario. Las
+ * métricas se pueden leer como texto con {@link #volcar()} o por JMX
+ * registrándolas con {@link #registrarJmx(String)}.
+ * </p>
+ * 
+ * <p>
+ * El decorador es tan seguro para uso concurrente como el gestor que
+ * envuelve. Cerrarlo solo lo quita de JMX; el gestor envuelto debe
+ * cerrarse aparte.
+ * </p>
+ */
+
+public final class GestorTareasMedido implements Accionable, MetricasGestorMXBean, AutoCloseable {
+	
+	/**
+	 * Operaciones medidas. Las sobrecargas con el mismo significado, como
+	 * las dos formas de tomar la siguiente tarea, comparten operación.
+	 */
+	public enum Operacion {
+		CREAR_USUARIO(false),
+		BUSCAR_USUARIO(false),
+		LISTAR_USUARIOS(true),
+		LISTAR_USUARIOS_POR_TIPO(true),
+		CREAR_TAREA(false),
+		AGREGAR_TAREA_A_USUARIO(false),
+		LISTAR_TAREAS_DE_USUARIO(true),
+		MARCAR_TAREA_COMO_COMPLETADA(false),
+		ELIMINAR_TAREA_DE_USUARIO(false),
+		LISTAR_TAREAS_POR_TIPO_USUARIO(true),
+		LISTAR_TAREAS_DE_USUARIO_POR_ESTADO(true),
+		LISTAR_TAREAS_DE_USUARIO_POR_PRIORIDAD(true),
+		PAGINAR_USUARIOS(true),
+		PAGINAR_TAREAS_DE_USUARIO(true),
+		PAGINAR_TAREAS_POR_TIPO_USUARIO(true),
+		RECORRER_USUARIOS(false),
+		RECORRER_TAREAS_POR_TIPO_USUARIO(false),
+		CONSULTAR_TAREAS(false),
+		BUSCAR_TAREAS(true),
+		VER_SIGUIENTE_TAREA(false),
+		TOMAR_SIGUIENTE_TAREA(false),
+		LIBERAR_TAREA(false),
+		CONTAR_TAREAS(false),
+		CONTAR_TAREAS_DE_USUARIO(false),
+		CONTAR_TAREAS_POR_TIPO_USUARIO(false),
+		RESERVAR_IDS_TAREAS(true),
+		AGREGAR_TAREAS_A_USUARIO(true),
+		IMPORTAR(true),
+		EXPORTAR(false),
+		SUSCRIBIR(false),
+		FIJAR_VENCIMIENTO(false),
+		REVISAR_VENCIMIENTOS(true);
+		
+		private final boolean conTamanio;
+		
+		Operacion(boolean conTamanio) {
+			this.conTamanio = conTamanio;
+		}
+		
+		/**
+		 * Indica si la operación registra el tamaño de sus datos: elementos
+		 * devueltos, tareas recibidas, ids reservados o avisos entregados.
+		 * 
+		 * @return true si tiene histograma de tamaños
+		 */
+		public boolean tieneTamanio() {
+			return conTamanio;
+		}
+	}
+	
+	/**
+	 * Mediciones de una operación.
+	 */
+	private static final class Medicion {
+		
+		final LongAdder llamadas = new LongAdder();
+		final LongAdder errores = new LongAdder();
+		
+		/** Latencias de las llamadas de la muestra */
+		final Histograma latencias = new Histograma();
+		
+		/** Tamaños de los datos, o null si la operación no los tiene */
+		final Histograma tamanios;
+		
+		Medicion(Operacion operacion) {
+			this.tamanios = operacion.tieneTamanio() ? new Histograma() : null;
+		}
+	}
+	
+	/** Llamadas por cada una cuya latencia se mide, por defecto */
+	public static final int MUESTREO = 8;
+	
+	/** Inicio de una llamada que no está en la muestra */
+	private static final long SIN_MUESTRA = Long.MIN_VALUE;
+	
+	private static final Operacion[] OPERACIONES = Operacion.values();
+	
+	private final Accionable gestor;
+	private final Medicion[] mediciones;
+	
+	/** Máscara sobre un número al azar que elige las llamadas de la muestra */
+	private final int mascaraMuestreo;
+	
+	/** Nombre con el que está registrado en JMX, o null */
+	private ObjectName nombreJmx;
+	
+	/**
+	 * Construye el decorador sobre un gestor, midiendo la latencia de una
+	 * de cada {@value #MUESTREO} llamadas.
+	 * 
+	 * @param gestor gestor a medir
+	 * @throws IllegalArgumentException si el gestor es null
+	 */
+	public GestorTareasMedido(Accionable gestor) {
+		this(gestor, MUESTREO);
+	}
+	
+	/**
+	 * Construye el decorador sobre un gestor.
+	 * 
+	 * @param gestor gestor a medir
+	 * @param muestreo llamadas por cada una cuya latencia se mide, potencia
+	 * de dos; 1 mide todas
+	 * @throws IllegalArgumentException si el gestor es null o el muestreo
+	 * no es una potencia de dos positiva
+	 */
+	public GestorTareasMedido(Accionable gestor, int muestreo) {
+		if (gestor == null) {
+			throw new IllegalArgumentException("El gestor no puede ser null.");
+		}
+		if (muestreo <= 0 || Integer.bitCount(muestreo) != 1) {
+			throw new IllegalArgumentException("El muestreo debe ser una potencia de dos positiva: " + muestreo);
+		}
+		
+		this.gestor = gestor;
+		this.mascaraMuestreo = muestreo - 1;
+		this.mediciones = new Medicion[OPERACIONES.length];
+		for (Operacion operacion : OPERACIONES) {
+			mediciones[operacion.ordinal()] = new Medicion(operacion);
+		}
+	}
+	
+	// Lectura de las métricas
+	
+	/**
+	 * Devuelve las llamadas a una operación, incluidas las que fallaron.
+	 * 
+	 * @param operacion operación medida
+	 * @return cantidad de llamadas
+	 */
+	public long llamadas(Operacion operacion) {
+		return mediciones[operacion.ordinal()].llamadas.sum();
+	}
+	
+	/**
+	 * Devuelve las latencias de la muestra de llamadas a una operación, en
+	 * nanosegundos.
+	 * 
+	 * @param operacion operación medida
+	 * @return resumen de las latencias
+	 */
+	public Histograma.Resumen latencias(Operacion operacion) {
+		return mediciones[operacion.ordinal()].latencias.resumen();
+	}
+	
+	/**
+	 * Devuelve los tamaños de los datos de una operación.
+	 * 
+	 * @param operacion operación medida
+	 * @return resumen de los tamaños
+	 * @throws IllegalArgumentException si la operación no registra tamaños
+	 */
+	public Histograma.Resumen tamanios(Operacion operacion) {
+		if (!operacion.tieneTamanio()) {
+			throw new IllegalArgumentException("La operación " + operacion + " no registra tamaños.");
+		}
+		return mediciones[operacion.ordinal()].tamanios.resumen();
+	}
+	
+	/**
+	 * Devuelve las llamadas a una operación que terminaron con una
+	 * excepción.
+	 * 
+	 * @param operacion operación medida
+	 * @return cantidad de errores
+	 */
+	public long errores(Operacion operacion) {
+		return mediciones[operacion.ordinal()].errores.sum();
+	}
+	
+	/**
+	 * Calcula la distribución de tareas por usuario recorriendo los
+	 * usuarios. Su conteo es la cantidad de usuarios.
+	 * 
+	 * @return resumen de las tareas por usuario
+	 */
+	public Histograma.Resumen tareasPorUsuario() {
+		Histograma tareas = new Histograma(1);
+		try (Stream<Usuario> usuarios = gestor.recorrerUsuarios()) {
+			usuarios.forEach(usuario -> {
+				ContadorTareas contador = gestor.contarTareasDeUsuario(usuario.getId());
+				tareas.registrar(contador == null ? 0 : contador.total());
+			});
+		}
+		return tareas.resumen();
+	}
+	
+	@Override
+	public Map<String, Long> getLlamadas() {
+		Map<String, Long> llamadas = new LinkedHashMap<>();
+		for (Operacion operacion : OPERACIONES) {
+			long conteo = llamadas(operacion);
+			if (conteo > 0) {
+				llamadas.put(operacion.name(), conteo);
+			}
+		}
+		return llamadas;
+	}
+	
+	@Override
+	public Map<String, Long> getErrores() {
+		Map<String, Long> errores = new LinkedHashMap<>();
+		for (Operacion operacion : OPERACIONES) {
+			if (llamadas(operacion) > 0) {
+				errores.put(operacion.name(), errores(operacion));
+			}
+		}
+		return errores;
+	}
+	
+	@Override
+	public Map<String, Double> getLatenciaMediaMicros() {
+		return porOperacion(resumen -> resumen.media() / 1_000);
+	}
+	
+	@Override
+	public Map<String, Double> getLatenciaP50Micros() {
+		return porOperacion(resumen -> resumen.percentil(0.50) / 1_000.0);
+	}
+	
+	@Override
+	public Map<String, Double> getLatenciaP99Micros() {
+		return porOperacion(resumen -> resumen.percentil(0.99) / 1_000.0);
+	}
+	
+	@Override
+	public Map<String, Double> getLatenciaMaximaMicros() {
+		return porOperacion(resumen -> resumen.maximo() / 1_000.0);
+	}
+	
+	@Override
+	public Map<String, Double> getTamanioMedio() {
+		Map<String, Double> tamanios = new LinkedHashMap<>();
+		for (Operacion operacion : OPERACIONES) {
+			if (operacion.tieneTamanio()) {
+				Histograma.Resumen resumen = tamanios(operacion);
+				if (resumen.conteo() > 0) {
+					tamanios.put(operacion.name(), resumen.media());
+				}
+			}
+		}
+		return tamanios;
+	}
+	
+	/** Aplica un cálculo a las latencias de cada operación llamada */
+	private Map<String, Double> porOperacion(ToDoubleFunction<Histograma.Resumen> calculo) {
+		Map<String, Double> valores = new LinkedHashMap<>();
+		for (Operacion operacion : OPERACIONES) {
+			Histograma.Resumen resumen = latencias(operacion);
+			if (resumen.conteo() > 0) {
+				valores.put(operacion.name(), calculo.applyAsDouble(resumen));
+			}
+		}
+		return valores;
+	}
+	
+	@Override
+	public long getUsuarios() {
+		return tareasPorUsuario().conteo();
+	}
+	
+	@Override
+	public long getTareasActivas() {
+		return gestor.contarTareas().contar(EstadoTarea.ACTIVA);
+	}
+	
+	@Override
+	public long getTareasCompletadas() {
+		return gestor.contarTareas().contar(EstadoTarea.COMPLETADA);
+	}
+	
+	@Override
+	public double getFraccionCompletadas() {
+		ContadorTareas contador = gestor.contarTareas();
+		int total = contador.total();
+		return total == 0 ? 0 : (double) contador.contar(EstadoTarea.COMPLETADA) / total;
+	}
+	
+	@Override
+	public long getTareasPorUsuarioP50() {
+		return tareasPorUsuario().percentil(0.50);
+	}
+	
+	@Override
+	public long getTareasPorUsuarioP99() {
+		return tareasPorUsuario().percentil(0.99);
+	}
+	
+	@Override
+	public long getTareasPorUsuarioMaximo() {
+		return tareasPorUsuario().maximo();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Cada línea de operación lleva el nombre, las llamadas, los errores,
+	 * la latencia media, p50, p99 y máxima en microsegundos y, si la
+	 * operación registra tamaños, el tamaño medio. Solo aparecen las
+	 * operaciones llamadas alguna vez. Siguen los indicadores de usuarios y
+	 * tareas.
+	 * </p>
+	 */
+	@Override
+	public String volcar() {
+		StringBuilder texto = new StringBuilder(4096);
+		texto.append(String.format(Locale.ROOT, "%-38s %12s %8s %10s %10s %10s %10s %10s%n",
+				"operacion", "llamadas", "errores", "media_us", "p50_us", "p99_us", "max_us", "tamanio"));
+		
+		for (Operacion operacion : OPERACIONES) {
+			Histograma.Resumen latencias = latencias(operacion);
+			if (llamadas(operacion) == 0) {
+				continue;
+			}
+			String tamanio = operacion.tieneTamanio() ? String.format(Locale.ROOT, "%.1f", tamanios(operacion).media()) : "-";
+			texto.append(String.format(Locale.ROOT, "%-38s %12d %8d %10.2f %10.2f %10.2f %10.2f %10s%n",
+					operacion.name(), llamadas(operacion), errores(operacion), latencias.media() / 1_000,
+					latencias.percentil(0.50) / 1_000.0, latencias.percentil(0.99) / 1_000.0,
+					latencias.maximo() / 1_000.0, tamanio));
+		}
+		
+		ContadorTareas contador = gestor.contarTareas();
+		Histograma.Resumen porUsuario = tareasPorUsuario();
+		int total = contador.total();
+		texto.append(String.format(Locale.ROOT, "usuarios=%d tareas=%d activas=%d completadas=%d fraccion_completadas=%.3f%n",
+				porUsuario.conteo(), total, contador.contar(EstadoTarea.ACTIVA), contador.contar(EstadoTarea.COMPLETADA),
+				total == 0 ? 0.0 : (double) contador.contar(EstadoTarea.COMPLETADA) / total));
+		texto.append(String.format(Locale.ROOT, "tareas_por_usuario media=%.1f p50=%d p99=%d max=%d%n",
+				porUsuario.media(), porUsuario.percentil(0.50), porUsuario.percentil(0.99), porUsuario.maximo()));
+		return texto.toString();
+	}
+	
+	@Override
+	public void reiniciar() {
+		for (Medicion medicion : mediciones) {
+			medicion.llamadas.reset();
+			medicion.errores.reset();
+			medicion.latencias.reiniciar();
+			if (medicion.tamanios != null) {
+				medicion.tamanios.reiniciar();
+			}
+		}
+	}
+	
+	// JMX
+	
+	/**
+	 * Registra las métricas en el servidor de MBeans de la plataforma como
+	 * {@code SmartTask:type=GestorTareas,name=<nombre>}.
+	 * 
+	 * @param nombre nombre del gestor
+	 * @return nombre del MBean registrado
+	 * @throws IllegalArgumentException si el nombre no es válido o ya está
+	 * registrado
+	 * @throws IllegalStateException si este gestor ya está registrado
+	 */
+	public synchronized ObjectName registrarJmx(String nombre) {
+		if (nombreJmx != null) {
+			throw new IllegalStateException("Las métricas ya están registradas como " + nombreJmx);
+		}
+		try {
+			ObjectName objeto = new ObjectName("SmartTask:type=GestorTareas,name=" + ObjectName.quote(nombre));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objeto);
+			nombreJmx = objeto;
+			return objeto;
+		} catch (JMException | NullPointerException e) {
+			throw new IllegalArgumentException("No se pueden registrar las métricas como " + nombre + ": " + e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Quita las métricas de JMX si estaban registradas.
+	 */
+	@Override
+	public synchronized void close() {
+		if (nombreJmx == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(nombreJmx);
+		} catch (JMException e) {
+			// Ya no estaba registrado
+		}
+		nombreJmx = null;
+	}
+	
+	// Medición
+	
+	/**
+	 * Empieza a medir una llamada.
+	 * 
+	 * @return instante de inicio si la llamada está en la muestra, o
+	 * {@link #SIN_MUESTRA}
+	 */
+	private long inicio() {
+		return (ThreadLocalRandom.current().nextInt() & mascaraMuestreo) == 0 ? System.nanoTime() : SIN_MUESTRA;
+	}
+	
+	/** Cuenta una llamada terminada y registra su latencia si está en la muestra */
+	private Medicion terminar(Operacion operacion, long inicio) {
+		Medicion medicion = mediciones[operacion.ordinal()];
+		medicion.llamadas.increment();
+		if (inicio != SIN_MUESTRA) {
+			medicion.latencias.registrar(System.nanoTime() - inicio);
+		}
+		return medicion;
+	}
+	
+	private <T> T medir(Operacion operacion, long inicio, T resultado) {
+		terminar(operacion, inicio);
+		return resultado;
+	}
+	
+	private boolean medir(Operacion operacion, long inicio, boolean resultado) {
+		terminar(operacion, inicio);
+		return resultado;
+	}
+	
+	private void medir(Operacion operacion, long inicio) {
+		terminar(operacion, inicio);
+	}
+	
+	/** Mide una operación y registra el tamaño de sus datos */
+	private void medirTamanio(Operacion operacion, long inicio, long tamanio) {
+		terminar(operacion, inicio).tamanios.registrar(tamanio);
+	}
+	
+	private <C extends Collection<?>> C medirColeccion(Operacion operacion, long inicio, C resultado) {
+		medirTamanio(operacion, inicio, resultado == null ? 0 : resultado.size());
+		return resultado;
+	}
+	
+	private <T> Pagina<T> medirPagina(Operacion operacion, long inicio, Pagina<T> resultado) {
+		medirTamanio(operacion, inicio, resultado == null ? 0 : resultado.getElementos().size());
+		return resultado;
+	}
+	
+	/** Mide una llamada que terminó con una excepción y la devuelve para relanzarla */
+	private <E extends Exception> E fallo(Operacion operacion, long inicio, E excepcion) {
+		terminar(operacion, inicio).errores.increment();
+		return excepcion;
+	}
+	
+	// Gestión de usuarios
+	
+	@Override
+	public Usuario crearUsuario(String nombre, TipoUsuario tipo) {
+		long inicio = inicio();
+		try {
+			return medir(Operacion.CREAR_USUARIO, inicio, gestor.crearUsuario(nombre, tipo));
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.CREAR_USUARIO, inicio, e);
+		}
+	}
+	
+	@Override
+	public Usuario buscarUsuario(int id) {
+		long inicio = inicio();
+		try {
+			return medir(Operacion.BUSCAR_USUARIO, inicio, gestor.buscarUsuario(id));
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.BUSCAR_USUARIO, inicio, e);
+		}
+	}
+	
+	@Override
+	public List<Usuario> listarUsuarios() {
+		long inicio = inicio();
+		try {
+			return medirColeccion(Operacion.LISTAR_USUARIOS, inicio, gestor.listarUsuarios());
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.LISTAR_USUARIOS, inicio, e);
+		}
+	}
+	
+	@Override
+	public List<Usuario> listarUsuariosPorTipo(TipoUsuario tipo) {
+		long inicio = inicio();
+		try {
+			return medirColeccion(Operacion.LISTAR_USUARIOS_POR_TIPO, inicio, gestor.listarUsuariosPorTipo(tipo));
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.LISTAR_USUARIOS_POR_TIPO, inicio, e);
+		}
+	}
+	
+	// Gestión de tareas
+	
+	@Override
+	public Tarea crearTarea(String descripcion, Prioridad prioridad) {
+		long inicio = inicio();
+		try {
+			return medir(Operacion.CREAR_TAREA, inicio, gestor.crearTarea(descripcion, prioridad));
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.CREAR_TAREA, inicio, e);
+		}
+	}
+	
+	@Override
+	public void agregarTareaAUsuario(int usuarioId, Tarea tarea) {
+		long inicio = inicio();
+		try {
+			gestor.agregarTareaAUsuario(usuarioId, tarea);
+			medir(Operacion.AGREGAR_TAREA_A_USUARIO, inicio);
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.AGREGAR_TAREA_A_USUARIO, inicio, e);
+		}
+	}
+	
+	@Override
+	public List<Tarea> listarTareasDeUsuario(int usuarioId) {
+		long inicio = inicio();
+		try {
+			return medirColeccion(Operacion.LISTAR_TAREAS_DE_USUARIO, inicio, gestor.listarTareasDeUsuario(usuarioId));
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.LISTAR_TAREAS_DE_USUARIO, inicio, e);
+		}
+	}
+	
+	@Override
+	public boolean marcarTareaComoCompletada(int usuarioId, int tareaId) {
+		long inicio = inicio();
+		try {
+			return medir(Operacion.MARCAR_TAREA_COMO_COMPLETADA, inicio, gestor.marcarTareaComoCompletada(usuarioId, tareaId));
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.MARCAR_TAREA_COMO_COMPLETADA, inicio, e);
+		}
+	}
+	
+	@Override
+	public boolean eliminarTareaDeUsuario(int usuarioId, int tareaId) {
+		long inicio = inicio();
+		try {
+			return medir(Operacion.ELIMINAR_TAREA_DE_USUARIO, inicio, gestor.eliminarTareaDeUsuario(usuarioId, tareaId));
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.ELIMINAR_TAREA_DE_USUARIO, inicio, e);
+		}
+	}
+	
+	@Override
+	public List<Tarea> listarTareasPorTipoUsuario(TipoUsuario tipo) {
+		long inicio = inicio();
+		try {
+			return medirColeccion(Operacion.LISTAR_TAREAS_POR_TIPO_USUARIO, inicio, gestor.listarTareasPorTipoUsuario(tipo));
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.LISTAR_TAREAS_POR_TIPO_USUARIO, inicio, e);
+		}
+	}
+	
+	@Override
+	public List<Tarea> listarTareasDeUsuario(int usuarioId, EstadoTarea estado) {
+		long inicio = inicio();
+		try {
+			return medirColeccion(Operacion.LISTAR_TAREAS_DE_USUARIO_POR_ESTADO, inicio, gestor.listarTareasDeUsuario(usuarioId, estado));
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.LISTAR_TAREAS_DE_USUARIO_POR_ESTADO, inicio, e);
+		}
+	}
+	
+	@Override
+	public List<Tarea> listarTareasDeUsuario(int usuarioId, Prioridad prioridad) {
+		long inicio = inicio();
+		try {
+			return medirColeccion(Operacion.LISTAR_TAREAS_DE_USUARIO_POR_PRIORIDAD, inicio, gestor.listarTareasDeUsuario(usuarioId, prioridad));
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.LISTAR_TAREAS_DE_USUARIO_POR_PRIORIDAD, inicio, e);
+		}
+	}
+	
+	// Paginación
+	
+	@Override
+	public Pagina<Usuario> listarUsuarios(long cursor, int limite) {
+		long inicio = inicio();
+		try {
+			return medirPagina(Operacion.PAGINAR_USUARIOS, inicio, gestor.listarUsuarios(cursor, limite));
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.PAGINAR_USUARIOS, inicio, e);
+		}
+	}
+	
+	@Override
+	public Pagina<Tarea> listarTareasDeUsuario(int usuarioId, long cursor, int limite) {
+		long inicio = inicio();
+		try {
+			return medirPagina(Operacion.PAGINAR_TAREAS_DE_USUARIO, inicio, gestor.listarTareasDeUsuario(usuarioId, cursor, limite));
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.PAGINAR_TAREAS_DE_USUARIO, inicio, e);
+		}
+	}
+	
+	@Override
+	public Pagina<Tarea> listarTareasPorTipoUsuario(TipoUsuario tipo, long cursor, int limite) {
+		long inicio = inicio();
+		try {
+			return medirPagina(Operacion.PAGINAR_TAREAS_POR_TIPO_USUARIO, inicio, gestor.listarTareasPorTipoUsuario(tipo, cursor, limite));
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.PAGINAR_TAREAS_POR_TIPO_USUARIO, inicio, e);
+		}
+	}
+	
+	@Override
+	public Stream<Usuario> recorrerUsuarios() {
+		long inicio = inicio();
+		try {
+			return medir(Operacion.RECORRER_USUARIOS, inicio, gestor.recorrerUsuarios());
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.RECORRER_USUARIOS, inicio, e);
+		}
+	}
+	
+	@Override
+	public Stream<Tarea> recorrerTareasPorTipoUsuario(TipoUsuario tipo) {
+		long inicio = inicio();
+		try {
+			return medir(Operacion.RECORRER_TAREAS_POR_TIPO_USUARIO, inicio, gestor.recorrerTareasPorTipoUsuario(tipo));
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.RECORRER_TAREAS_POR_TIPO_USUARIO, inicio, e);
+		}
+	}
+	
+	// Consultas paralelas
+	
+	@Override
+	public <R> R consultarTareas(TipoUsuario tipo, Function<? super Stream<Tarea>, ? extends R> consulta) {
+		long inicio = inicio();
+		try {
+			return medir(Operacion.CONSULTAR_TAREAS, inicio, gestor.consultarTareas(tipo, consulta));
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.CONSULTAR_TAREAS, inicio, e);
+		}
+	}
+	
+	// Búsqueda
+	
+	@Override
+	public List<Tarea> buscarTareas(String consulta, EstadoTarea estado, Prioridad prioridad, TipoUsuario tipo, int limite) {
+		long inicio = inicio();
+		try {
+			return medirColeccion(Operacion.BUSCAR_TAREAS, inicio, gestor.buscarTareas(consulta, estado, prioridad, tipo, limite));
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.BUSCAR_TAREAS, inicio, e);
+		}
+	}
+	
+	// Cola de trabajo
+	
+	@Override
+	public Tarea verSiguienteTarea() {
+		long inicio = inicio();
+		try {
+			return medir(Operacion.VER_SIGUIENTE_TAREA, inicio, gestor.verSiguienteTarea());
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.VER_SIGUIENTE_TAREA, inicio, e);
+		}
+	}
+	
+	@Override
+	public Tarea verSiguienteTarea(int usuarioId) {
+		long inicio = inicio();
+		try {
+			return medir(Operacion.VER_SIGUIENTE_TAREA, inicio, gestor.verSiguienteTarea(usuarioId));
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.VER_SIGUIENTE_TAREA, inicio, e);
+		}
+	}
+	
+	@Override
+	public Tarea tomarSiguienteTarea() {
+		long inicio = inicio();
+		try {
+			return medir(Operacion.TOMAR_SIGUIENTE_TAREA, inicio, gestor.tomarSiguienteTarea());
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.TOMAR_SIGUIENTE_TAREA, inicio, e);
+		}
+	}
+	
+	@Override
+	public Tarea tomarSiguienteTarea(int usuarioId) {
+		long inicio = inicio();
+		try {
+			return medir(Operacion.TOMAR_SIGUIENTE_TAREA, inicio, gestor.tomarSiguienteTarea(usuarioId));
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.TOMAR_SIGUIENTE_TAREA, inicio, e);
+		}
+	}
+	
+	@Override
+	public boolean liberarTarea(int tareaId) {
+		long inicio = inicio();
+		try {
+			return medir(Operacion.LIBERAR_TAREA, inicio, gestor.liberarTarea(tareaId));
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.LIBERAR_TAREA, inicio, e);
+		}
+	}
+	
+	// Estadísticas
+	
+	@Override
+	public ContadorTareas contarTareas() {
+		long inicio = inicio();
+		try {
+			return medir(Operacion.CONTAR_TAREAS, inicio, gestor.contarTareas());
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.CONTAR_TAREAS, inicio, e);
+		}
+	}
+	
+	@Override
+	public ContadorTareas contarTareasDeUsuario(int usuarioId) {
+		long inicio = inicio();
+		try {
+			return medir(Operacion.CONTAR_TAREAS_DE_USUARIO, inicio, gestor.contarTareasDeUsuario(usuarioId));
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.CONTAR_TAREAS_DE_USUARIO, inicio, e);
+		}
+	}
+	
+	@Override
+	public ContadorTareas contarTareasPorTipoUsuario(TipoUsuario tipo) {
+		long inicio = inicio();
+		try {
+			return medir(Operacion.CONTAR_TAREAS_POR_TIPO_USUARIO, inicio, gestor.contarTareasPorTipoUsuario(tipo));
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.CONTAR_TAREAS_POR_TIPO_USUARIO, inicio, e);
+		}
+	}
+	
+	// Carga masiva
+	
+	@Override
+	public int reservarIdsTareas(int cantidad) {
+		long inicio = inicio();
+		try {
+			int primero = gestor.reservarIdsTareas(cantidad);
+			medirTamanio(Operacion.RESERVAR_IDS_TAREAS, inicio, cantidad);
+			return primero;
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.RESERVAR_IDS_TAREAS, inicio, e);
+		}
+	}
+	
+	@Override
+	public void agregarTareasAUsuario(int usuarioId, List<Tarea> tareas) {
+		long inicio = inicio();
+		try {
+			gestor.agregarTareasAUsuario(usuarioId, tareas);
+			medirTamanio(Operacion.AGREGAR_TAREAS_A_USUARIO, inicio, tareas.size());
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.AGREGAR_TAREAS_A_USUARIO, inicio, e);
+		}
+	}
+	
+	// Intercambio
+	
+	@Override
+	public int importar(Reader entrada, FormatoIntercambio formato) throws IOException {
+		long inicio = inicio();
+		try {
+			int importadas = gestor.importar(entrada, formato);
+			medirTamanio(Operacion.IMPORTAR, inicio, importadas);
+			return importadas;
+		} catch (IOException e) {
+			throw fallo(Operacion.IMPORTAR, inicio, e);
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.IMPORTAR, inicio, e);
+		}
+	}
+	
+	@Override
+	public void exportar(Writer salida, FormatoIntercambio formato) throws IOException {
+		long inicio = inicio();
+		try {
+			gestor.exportar(salida, formato);
+			medir(Operacion.EXPORTAR, inicio);
+		} catch (IOException e) {
+			throw fallo(Operacion.EXPORTAR, inicio, e);
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.EXPORTAR, inicio, e);
+		}
+	}
+	
+	// Eventos
+	
+	@Override
+	public Suscripcion suscribir(OyenteTareas oyente, int loteMaximo) {
+		long inicio = inicio();
+		try {
+			return medir(Operacion.SUSCRIBIR, inicio, gestor.suscribir(oyente, loteMaximo));
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.SUSCRIBIR, inicio, e);
+		}
+	}
+	
+	// Vencimientos
+	
+	@Override
+	public boolean fijarVencimiento(int usuarioId, int tareaId, long venceEn, long antelacion) {
+		long inicio = inicio();
+		try {
+			return medir(Operacion.FIJAR_VENCIMIENTO, inicio, gestor.fijarVencimiento(usuarioId, tareaId, venceEn, antelacion));
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.FIJAR_VENCIMIENTO, inicio, e);
+		}
+	}
+	
+	@Override
+	public int revisarVencimientos(long ahora, OyenteVencimientos oyente) {
+		long inicio = inicio();
+		try {
+			int avisos = gestor.revisarVencimientos(ahora, oyente);
+			medirTamanio(Operacion.REVISAR_VENCIMIENTOS, inicio, avisos);
+			return avisos;
+		} catch (RuntimeException e) {
+			throw fallo(Operacion.REVISAR_VENCIMIENTOS, inicio, e);
+		}
+	}
+
+}
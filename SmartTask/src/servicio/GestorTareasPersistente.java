@@ -0,0 +1,681 @@
+package servicio;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import interfaces.Accionable;
+import interfaces.OyenteTareas;
+import interfaces.OyenteVencimientos;
+import interfaces.Suscripcion;
+import modelo.ContadorTareas;
+import modelo.EstadoTarea;
+import modelo.FormatoIntercambio;
+import modelo.Pagina;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+
+/**
+ * Gestor de tareas con persistencia en disco.
+ * 
+ * <p>
+ * Mantiene el estado en un {@link GestorTareasServicio} y guarda cada
+ * operación que lo modifica en un registro binario de solo anexado
+ * ({@link RegistroOperaciones}). Cada cierta cantidad de operaciones escribe
+ * una instantánea completa y empieza un nuevo segmento de registro, de modo
+ * que al arrancar basta con cargar la última instantánea y reproducir los
+ * segmentos posteriores.
+ * </p>
+ * 
+ * <p>
+ * En el directorio se guardan archivos {@code instantanea-N.bin} (estado al
+ * inicio del segmento N) y {@code registro-N.log}. Solo se registran las
+ * operaciones hechas a través de {@link Accionable}, incluidas las
+ * reclamaciones y liberaciones de la cola de trabajo; los cambios hechos
+ * directamente sobre los objetos del modelo no se guardan.
+ * </p>
+ * 
+ * <p>
+ * Las operaciones están sincronizadas. La espera de durabilidad ocurre
+ * fuera del bloqueo, para que las confirmaciones de varios hilos se agrupen
+ * en un mismo forzado a disco.
+ * </p>
+ * 
+ * <p>
+ * Si falla una escritura del registro, las operaciones que modifican el
+ * estado lanzan {@link UncheckedIOException} sin aplicarse, hasta que se
+ * cierre el gestor y se vuelva a abrir.
+ * </p>
+ */
+
+public class GestorTareasPersistente implements Accionable, AutoCloseable {
+	
+	/** Operaciones por defecto entre instantáneas */
+	public static final int OPERACIONES_POR_INSTANTANEA = 1_000_000;
+	
+	/** Intervalo de vaciado en segundo plano en milisegundos */
+	private static final long INTERVALO_VACIADO_MS = 10;
+	
+	private static final String PREFIJO_REGISTRO = "registro-";
+	private static final String SUFIJO_REGISTRO = ".log";
+	private static final String PREFIJO_INSTANTANEA = "instantanea-";
+	private static final String SUFIJO_INSTANTANEA = ".bin";
+	
+	/** Estado en memoria */
+	private final GestorTareasServicio gestor;
+	
+	private final Path directorio;
+	private final PoliticaSincronizacion politica;
+	private final int operacionesPorInstantanea;
+	
+	/** Registro del segmento actual */
+	private RegistroOperaciones registro;
+	
+	/** Número del segmento actual */
+	private long segmento;
+	
+	/** Operaciones registradas desde la última instantánea */
+	private int operacionesRegistradas;
+	
+	/**
+	 * Abre el gestor sobre un directorio con la cantidad de operaciones por
+	 * defecto entre instantáneas.
+	 * 
+	 * @param directorio directorio de datos (se crea si no existe)
+	 * @param politica política de sincronización del registro
+	 * @throws IOException si no se puede recuperar el estado
+	 */
+	public GestorTareasPersistente(Path directorio, PoliticaSincronizacion politica) throws IOException {
+		this(directorio, politica, OPERACIONES_POR_INSTANTANEA);
+	}
+	
+	/**
+	 * Abre el gestor sobre un directorio, recuperando el estado guardado.
+	 * 
+	 * @param directorio directorio de datos (se crea si no existe)
+	 * @param politica política de sincronización del registro
+	 * @param operacionesPorInstantanea operaciones entre instantáneas
+	 * @throws IOException si no se puede recuperar el estado
+	 * @throws IllegalArgumentException si las operaciones no son positivas
+	 */
+	public GestorTareasPersistente(Path directorio, PoliticaSincronizacion politica,
+			int operacionesPorInstantanea) throws IOException {
+		if (operacionesPorInstantanea <= 0) {
+			throw new IllegalArgumentException("Las operaciones por instantánea deben ser positivas.");
+		}
+		
+		this.gestor = new GestorTareasServicio();
+		this.directorio = directorio;
+		this.politica = politica;
+		this.operacionesPorInstantanea = operacionesPorInstantanea;
+		
+		Files.createDirectories(directorio);
+		recuperar();
+	}
+	
+	/**
+	 * Carga la última instantánea, reproduce los segmentos posteriores y
+	 * abre un segmento nuevo.
+	 */
+	private void recuperar() throws IOException {
+		long base = 0;
+		List<Long> instantaneas = numeros(PREFIJO_INSTANTANEA, SUFIJO_INSTANTANEA);
+		if (!instantaneas.isEmpty()) {
+			base = instantaneas.get(instantaneas.size() - 1);
+			Instantanea.leer(archivo(PREFIJO_INSTANTANEA, base, SUFIJO_INSTANTANEA), gestor);
+		}
+		
+		long ultimo = base;
+		for (long numero : numeros(PREFIJO_REGISTRO, SUFIJO_REGISTRO)) {
+			if (numero >= base) {
+				RegistroOperaciones.reproducir(archivo(PREFIJO_REGISTRO, numero, SUFIJO_REGISTRO), gestor);
+				ultimo = Math.max(ultimo, numero);
+			}
+		}
+		
+		segmento = ultimo + 1;
+		registro = abrirRegistro(segmento);
+		borrarAnteriores(base);
+	}
+	
+	/**
+	 * Escribe una instantánea del estado actual y empieza un nuevo segmento
+	 * de registro. Los segmentos e instantáneas anteriores se eliminan.
+	 * 
+	 * <p>
+	 * El segmento nuevo y su instantánea se crean antes de abandonar el
+	 * actual: si algo falla, el gestor sigue registrando en el segmento de
+	 * siempre. Una vez escrita la instantánea, los fallos al cerrar el
+	 * segmento anterior o al borrar archivos viejos no se propagan, porque
+	 * la instantánea ya cubre esas operaciones.
+	 * </p>
+	 * 
+	 * @throws UncheckedIOException si falla la escritura
+	 */
+	public synchronized void crearInstantanea() {
+		long siguiente = segmento + 1;
+		RegistroOperaciones nuevo;
+		try {
+			nuevo = abrirRegistro(siguiente);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		
+		try {
+			Instantanea.escribir(archivo(PREFIJO_INSTANTANEA, siguiente, SUFIJO_INSTANTANEA), gestor);
+		} catch (IOException e) {
+			descartar(nuevo, siguiente, e);
+			throw new UncheckedIOException(e);
+		}
+		
+		RegistroOperaciones anterior = registro;
+		registro = nuevo;
+		segmento = siguiente;
+		operacionesRegistradas = 0;
+		
+		try {
+			anterior.close();
+		} catch (IOException e) {
+			// Sus operaciones ya están en la instantánea
+		}
+		try {
+			borrarAnteriores(siguiente);
+		} catch (IOException e) {
+			// Se vuelve a intentar en la siguiente instantánea o al abrir
+		}
+	}
+	
+	/**
+	 * Cierra y borra un segmento recién abierto cuya instantánea no se pudo
+	 * escribir, para que al recuperar no quede un segmento sin ella.
+	 */
+	private void descartar(RegistroOperaciones nuevo, long numero, IOException causa) {
+		try {
+			nuevo.close();
+			Files.deleteIfExists(archivo(PREFIJO_REGISTRO, numero, SUFIJO_REGISTRO));
+		} catch (IOException e) {
+			causa.addSuppressed(e);
+		}
+	}
+	
+	/**
+	 * Fuerza a disco las operaciones pendientes y cierra el registro.
+	 * 
+	 * @throws IOException si falla la escritura
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		registro.close();
+	}
+	
+	private RegistroOperaciones abrirRegistro(long numero) throws IOException {
+		return new RegistroOperaciones(archivo(PREFIJO_REGISTRO, numero, SUFIJO_REGISTRO), politica, INTERVALO_VACIADO_MS);
+	}
+	
+	private Path archivo(String prefijo, long numero, String sufijo) {
+		return directorio.resolve(String.format("%s%012d%s", prefijo, numero, sufijo));
+	}
+	
+	/**
+	 * Devuelve, ordenados, los números de los archivos con el prefijo y
+	 * sufijo indicados.
+	 */
+	private List<Long> numeros(String prefijo, String sufijo) throws IOException {
+		List<Long> numeros = new ArrayList<>();
+		try (Stream<Path> archivos = Files.list(directorio)) {
+			archivos.map(p -> p.getFileName().toString())
+					.filter(n -> n.startsWith(prefijo) && n.endsWith(sufijo))
+					.forEach(n -> numeros.add(Long.parseLong(n.substring(prefijo.length(), n.length() - sufijo.length()))));
+		}
+		numeros.sort(null);
+		return numeros;
+	}
+	
+	/**
+	 * Elimina los segmentos e instantáneas anteriores al número indicado.
+	 */
+	private void borrarAnteriores(long base) throws IOException {
+		for (long numero : numeros(PREFIJO_REGISTRO, SUFIJO_REGISTRO)) {
+			if (numero < base) {
+				Files.deleteIfExists(archivo(PREFIJO_REGISTRO, numero, SUFIJO_REGISTRO));
+			}
+		}
+		for (long numero : numeros(PREFIJO_INSTANTANEA, SUFIJO_INSTANTANEA)) {
+			if (numero < base) {
+				Files.deleteIfExists(archivo(PREFIJO_INSTANTANEA, numero, SUFIJO_INSTANTANEA));
+			}
+		}
+	}
+	
+	/**
+	 * Cuenta una operación registrada y escribe una instantánea si se
+	 * alcanzó el umbral. Se invoca con el bloqueo tomado.
+	 */
+	private void contarOperacion() {
+		contarOperaciones(1);
+	}
+	
+	/**
+	 * Cuenta varias operaciones registradas de una vez, como las de una
+	 * carga masiva, para no escribir una instantánea a mitad del lote.
+	 * 
+	 * <p>
+	 * La operación que alcanza el umbral ya se aplicó y registró, así que
+	 * un fallo de la instantánea no se le comunica: se vuelve a intentar
+	 * pasada una décima parte del umbral.
+	 * </p>
+	 */
+	private void contarOperaciones(int cantidad) {
+		operacionesRegistradas += cantidad;
+		if (operacionesRegistradas >= operacionesPorInstantanea) {
+			try {
+				crearInstantanea();
+			} catch (UncheckedIOException e) {
+				operacionesRegistradas = operacionesPorInstantanea - Math.max(1, operacionesPorInstantanea / 10);
+			}
+		}
+	}
+	
+	/**
+	 * Espera a que una operación sea duradera según la política.
+	 */
+	private static void confirmar(RegistroOperaciones registro, long posicion) {
+		try {
+			registro.confirmar(posicion);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	// Gestión de usuarios
+
+	@Override
+	public Usuario crearUsuario(String nombre, TipoUsuario tipo) {
+		Usuario usuario;
+		RegistroOperaciones destino;
+		long posicion;
+		
+		synchronized (this) {
+			registro.comprobar();
+			usuario = gestor.crearUsuario(nombre, tipo);
+			destino = registro;
+			posicion = registro.anexarUsuario(usuario.getId(), tipo, usuario.getNombre());
+			contarOperacion();
+		}
+		
+		confirmar(destino, posicion);
+		return usuario;
+	}
+
+	@Override
+	public synchronized Usuario buscarUsuario(int id) {
+		return gestor.buscarUsuario(id);
+	}
+
+	@Override
+	public synchronized List<Usuario> listarUsuarios() {
+		return gestor.listarUsuarios();
+	}
+
+	@Override
+	public synchronized List<Usuario> listarUsuariosPorTipo(TipoUsuario tipo) {
+		return new ArrayList<>(gestor.listarUsuariosPorTipo(tipo));
+	}
+	
+	// Gestión de tareas
+
+	@Override
+	public Tarea crearTarea(String descripcion, Prioridad prioridad) {
+		Tarea tarea;
+		RegistroOperaciones destino;
+		long posicion;
+		
+		synchronized (this) {
+			registro.comprobar();
+			tarea = gestor.crearTarea(descripcion, prioridad);
+			destino = registro;
+			posicion = registro.anexarTareaCreada(tarea.getId());
+			contarOperacion();
+		}
+		
+		confirmar(destino, posicion);
+		return tarea;
+	}
+
+	@Override
+	public void agregarTareaAUsuario(int usuarioId, Tarea tarea) {
+		RegistroOperaciones destino;
+		long posicion;
+		
+		synchronized (this) {
+			registro.comprobar();
+			gestor.agregarTareaAUsuario(usuarioId, tarea);
+			if (tarea == null) {
+				return;
+			}
+			destino = registro;
+			posicion = registro.anexarTareaAgregada(usuarioId, tarea);
+			contarOperacion();
+		}
+		
+		confirmar(destino, posicion);
+	}
+
+	@Override
+	public synchronized List<Tarea> listarTareasDeUsuario(int usuarioId) {
+		List<Tarea> tareas = gestor.listarTareasDeUsuario(usuarioId);
+		return tareas == null ? null : new ArrayList<>(tareas);
+	}
+
+	@Override
+	public boolean marcarTareaComoCompletada(int usuarioId, int tareaId) {
+		return cambiarTarea(RegistroOperaciones.TAREA_COMPLETADA, usuarioId, tareaId);
+	}
+
+	@Override
+	public boolean eliminarTareaDeUsuario(int usuarioId, int tareaId) {
+		return cambiarTarea(RegistroOperaciones.TAREA_ELIMINADA, usuarioId, tareaId);
+	}
+	
+	/**
+	 * Completa o elimina una tarea y registra el cambio si tuvo efecto.
+	 */
+	private boolean cambiarTarea(byte tipo, int usuarioId, int tareaId) {
+		RegistroOperaciones destino;
+		long posicion;
+		
+		synchronized (this) {
+			registro.comprobar();
+			long instante = System.currentTimeMillis();
+			boolean cambiada = tipo == RegistroOperaciones.TAREA_COMPLETADA
+					? gestor.marcarTareaComoCompletada(usuarioId, tareaId, instante)
+					: gestor.eliminarTareaDeUsuario(usuarioId, tareaId);
+			
+			if (!cambiada) {
+				return false;
+			}
+			destino = registro;
+			posicion = tipo == RegistroOperaciones.TAREA_COMPLETADA
+					? registro.anexarTareaCompletada(usuarioId, tareaId, instante)
+					: registro.anexarCambioTarea(tipo, usuarioId, tareaId);
+			contarOperacion();
+		}
+		
+		confirmar(destino, posicion);
+		return true;
+	}
+
+	@Override
+	public synchronized List<Tarea> listarTareasPorTipoUsuario(TipoUsuario tipo) {
+		return new ArrayList<>(gestor.listarTareasPorTipoUsuario(tipo));
+	}
+
+	@Override
+	public synchronized List<Tarea> listarTareasDeUsuario(int usuarioId, EstadoTarea estado) {
+		return gestor.listarTareasDeUsuario(usuarioId, estado);
+	}
+
+	@Override
+	public synchronized List<Tarea> listarTareasDeUsuario(int usuarioId, Prioridad prioridad) {
+		return gestor.listarTareasDeUsuario(usuarioId, prioridad);
+	}
+	
+	// Listados paginados
+	
+	@Override
+	public synchronized Pagina<Usuario> listarUsuarios(long cursor, int limite) {
+		return gestor.listarUsuarios(cursor, limite);
+	}
+	
+	@Override
+	public synchronized Pagina<Tarea> listarTareasDeUsuario(int usuarioId, long cursor, int limite) {
+		return gestor.listarTareasDeUsuario(usuarioId, cursor, limite);
+	}
+	
+	@Override
+	public synchronized Pagina<Tarea> listarTareasPorTipoUsuario(TipoUsuario tipo, long cursor, int limite) {
+		return gestor.listarTareasPorTipoUsuario(tipo, cursor, limite);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Cada página se obtiene con el bloqueo tomado, que se libera entre
+	 * páginas.
+	 * </p>
+	 */
+	@Override
+	public Stream<Usuario> recorrerUsuarios() {
+		return Paginacion.stream(cursor -> listarUsuarios(cursor, Paginacion.TAMANIO_PAGINA));
+	}
+	
+	@Override
+	public Stream<Tarea> recorrerTareasPorTipoUsuario(TipoUsuario tipo) {
+		return Paginacion.stream(cursor -> listarTareasPorTipoUsuario(tipo, cursor, Paginacion.TAMANIO_PAGINA));
+	}
+	
+	// Consultas paralelas
+	
+	@Override
+	public synchronized <R> R consultarTareas(TipoUsuario tipo, Function<? super Stream<Tarea>, ? extends R> consulta) {
+		return gestor.consultarTareas(tipo, consulta);
+	}
+	
+	// Búsqueda
+	
+	@Override
+	public synchronized List<Tarea> buscarTareas(String consulta, EstadoTarea estado, Prioridad prioridad,
+			TipoUsuario tipo, int limite) {
+		return gestor.buscarTareas(consulta, estado, prioridad, tipo, limite);
+	}
+	
+	// Cola de trabajo
+
+	@Override
+	public synchronized Tarea verSiguienteTarea() {
+		return gestor.verSiguienteTarea();
+	}
+
+	@Override
+	public synchronized Tarea verSiguienteTarea(int usuarioId) {
+		return gestor.verSiguienteTarea(usuarioId);
+	}
+
+	@Override
+	public Tarea tomarSiguienteTarea() {
+		return tomar(null);
+	}
+
+	@Override
+	public Tarea tomarSiguienteTarea(int usuarioId) {
+		return tomar(usuarioId);
+	}
+	
+	/**
+	 * Reclama la siguiente tarea, de todos los usuarios o de uno, y
+	 * registra la reclamación por id si hubo tarea.
+	 */
+	private Tarea tomar(Integer usuarioId) {
+		Tarea tarea;
+		RegistroOperaciones destino;
+		long posicion;
+		
+		synchronized (this) {
+			registro.comprobar();
+			tarea = usuarioId == null ? gestor.tomarSiguienteTarea() : gestor.tomarSiguienteTarea(usuarioId);
+			if (tarea == null) {
+				return null;
+			}
+			destino = registro;
+			posicion = registro.anexarReclamacion(RegistroOperaciones.TAREA_TOMADA, tarea.getId());
+			contarOperacion();
+		}
+		
+		confirmar(destino, posicion);
+		return tarea;
+	}
+
+	@Override
+	public boolean liberarTarea(int tareaId) {
+		RegistroOperaciones destino;
+		long posicion;
+		
+		synchronized (this) {
+			registro.comprobar();
+			if (!gestor.liberarTarea(tareaId)) {
+				return false;
+			}
+			destino = registro;
+			posicion = registro.anexarReclamacion(RegistroOperaciones.TAREA_LIBERADA, tareaId);
+			contarOperacion();
+		}
+		
+		confirmar(destino, posicion);
+		return true;
+	}
+	
+	// Estadísticas
+
+	@Override
+	public ContadorTareas contarTareas() {
+		return gestor.contarTareas();
+	}
+
+	@Override
+	public synchronized ContadorTareas contarTareasDeUsuario(int usuarioId) {
+		return gestor.contarTareasDeUsuario(usuarioId);
+	}
+
+	@Override
+	public ContadorTareas contarTareasPorTipoUsuario(TipoUsuario tipo) {
+		return gestor.contarTareasPorTipoUsuario(tipo);
+	}
+	
+	// Carga masiva
+	
+	@Override
+	public int reservarIdsTareas(int cantidad) {
+		int primero;
+		RegistroOperaciones destino;
+		long posicion;
+		
+		synchronized (this) {
+			registro.comprobar();
+			primero = gestor.reservarIdsTareas(cantidad);
+			if (cantidad == 0) {
+				return primero;
+			}
+			// Al reproducir basta con el último id del rango
+			destino = registro;
+			posicion = registro.anexarTareaCreada(primero + cantidad - 1);
+			contarOperacion();
+		}
+		
+		confirmar(destino, posicion);
+		return primero;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Las tareas se registran juntas y se espera una sola confirmación de
+	 * durabilidad para todo el lote.
+	 * </p>
+	 */
+	@Override
+	public void agregarTareasAUsuario(int usuarioId, List<Tarea> tareas) {
+		RegistroOperaciones destino;
+		long posicion = 0;
+		
+		synchronized (this) {
+			registro.comprobar();
+			gestor.agregarTareasAUsuario(usuarioId, tareas);
+			destino = registro;
+			int registradas = 0;
+			for (Tarea tarea : tareas) {
+				if (tarea != null) {
+					posicion = registro.anexarTareaAgregada(usuarioId, tarea);
+					registradas++;
+				}
+			}
+			if (registradas == 0) {
+				return;
+			}
+			contarOperaciones(registradas);
+		}
+		
+		confirmar(destino, posicion);
+	}
+	
+	@Override
+	public int importar(Reader entrada, FormatoIntercambio formato) throws IOException {
+		return Intercambio.importar(this, entrada, formato);
+	}
+	
+	@Override
+	public void exportar(Writer salida, FormatoIntercambio formato) throws IOException {
+		Intercambio.exportar(this, salida, formato);
+	}
+	
+	// Eventos
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Los eventos los publica el gestor en memoria, así que la
+	 * recuperación al abrir no los repite.
+	 * </p>
+	 */
+	@Override
+	public Suscripcion suscribir(OyenteTareas oyente, int loteMaximo) {
+		return gestor.suscribir(oyente, loteMaximo);
+	}
+	
+	// Vencimientos
+	
+	@Override
+	public boolean fijarVencimiento(int usuarioId, int tareaId, long venceEn, long antelacion) {
+		RegistroOperaciones destino;
+		long posicion;
+		
+		synchronized (this) {
+			registro.comprobar();
+			if (!gestor.fijarVencimiento(usuarioId, tareaId, venceEn, antelacion)) {
+				return false;
+			}
+			destino = registro;
+			posicion = registro.anexarVencimiento(usuarioId, tareaId, venceEn, antelacion);
+			contarOperacion();
+		}
+		
+		confirmar(destino, posicion);
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Los escalados no se registran: al abrir se vuelven a vigilar los
+	 * vencimientos guardados, y los que ya pasaron se avisan de nuevo en la
+	 * primera revisión.
+	 * </p>
+	 */
+	@Override
+	public synchronized int revisarVencimientos(long ahora, OyenteVencimientos oyente) {
+		return gestor.revisarVencimientos(ahora, oyente);
+	}
+
+}
@@ -0,0 +1,673 @@
+package servicio;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+import interfaces.Accionable;
+import interfaces.OyenteTareas;
+import interfaces.OyenteVencimientos;
+import interfaces.Suscripcion;
+import modelo.ContadorTareas;
+import modelo.EstadoTarea;
+import modelo.FormatoIntercambio;
+import modelo.Pagina;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+
+/**
+ * Réplica de solo lectura de un {@link GestorTareasReplicado}, normalmente
+ * en otro proceso, que sirve como reserva en caliente.
+ * 
+ * <p>
+ * Un hilo recibe los mensajes del primario y los deja en una cola; otro los
+ * aplica por tandas sobre un {@link GestorTareasServicio} propio, con el
+ * mismo código con el que se reproduce el registro en disco, y confirma al
+ * primario la última operación aplicada. La recepción no espera a la
+ * aplicación, así que una réplica ocupada no frena al primario. Las
+ * consultas de {@link Accionable} se atienden con el estado aplicado; las
+ * operaciones que lo modifican lanzan
+ * {@link UnsupportedOperationException}.
+ * </p>
+ * 
+ * <p>
+ * Si se pierde la conexión, la réplica se reconecta pidiendo las
+ * operaciones posteriores a la última aplicada; las que llegan repetidas se
+ * descartan por su número de secuencia. Si el primario ya no las tiene,
+ * envía una instantánea que sustituye al estado. Un lote que no se puede
+ * aplicar deja el estado en duda: se descarta lo recibido y se pide una
+ * instantánea.
+ * </p>
+ * 
+ * <pre>
+ * java servicio.GestorTareasReplica puerto
+ * </pre>
+ */
+
+public class GestorTareasReplica implements Accionable, AutoCloseable {
+	
+	/** Espera entre intentos de reconexión */
+	private static final long REINTENTO_MS = 100;
+	
+	/** Tamaño inicial del búfer de recepción */
+	private static final int BUFER_LECTURA = 1 << 20;
+	
+	private static final String SOLO_LECTURA = "La réplica es de solo lectura.";
+	
+	private final InetSocketAddress primario;
+	
+	/** Mensajes recibidos y aún no aplicados */
+	private final BlockingQueue<ByteBuffer> recibidos = new LinkedBlockingQueue<>();
+	
+	/** Estado aplicado (protegido por this) */
+	private GestorTareasServicio gestor;
+	
+	private volatile SocketChannel canal;
+	private final Thread receptor;
+	private final Thread aplicador;
+	private volatile boolean cerrado;
+	
+	/** Si se descartan los lotes hasta recibir una instantánea */
+	private volatile boolean esperandoInstantanea;
+	
+	/** Mensaje que se está aplicando, o null */
+	private volatile ByteBuffer aplicando;
+	
+	// Métricas
+	
+	private volatile long secuenciaAplicada;
+	private volatile long secuenciaPrimario;
+	private volatile long instantaneasAplicadas;
+	
+	/**
+	 * Crea una réplica vacía y la conecta al primario, que le envía su
+	 * estado.
+	 * 
+	 * @param primario dirección del primario
+	 * @throws IOException si no se puede conectar
+	 * @throws IllegalArgumentException si la dirección no es válida
+	 */
+	public GestorTareasReplica(InetSocketAddress primario) throws IOException {
+		if (primario == null) {
+			throw new IllegalArgumentException("Dirección no válida.");
+		}
+		
+		this.primario = primario;
+		this.gestor = new GestorTareasServicio();
+		this.canal = conectar(0);
+		
+		this.receptor = new Thread(this::recibir, "replica-recepcion");
+		this.receptor.setDaemon(true);
+		this.aplicador = new Thread(this::aplicar, "replica-aplicacion");
+		this.aplicador.setDaemon(true);
+		receptor.start();
+		aplicador.start();
+	}
+	
+	/**
+	 * @return secuencia de la última operación aplicada
+	 */
+	public long getSecuenciaAplicada() {
+		return secuenciaAplicada;
+	}
+	
+	/**
+	 * @return secuencia del primario según el último mensaje recibido
+	 */
+	public long getSecuenciaPrimario() {
+		return secuenciaPrimario;
+	}
+	
+	/**
+	 * @return operaciones recibidas o anunciadas por el primario que aún no
+	 * se han aplicado
+	 */
+	public long getRetrasoOperaciones() {
+		return Math.max(0, secuenciaPrimario - secuenciaAplicada);
+	}
+	
+	/**
+	 * Tiempo desde que el primario envió el mensaje más antiguo que falta
+	 * por aplicar. Como el primario envía lotes vacíos cuando no tiene
+	 * operaciones, una réplica que no da abasto acumula retraso aunque el
+	 * primario esté parado.
+	 * 
+	 * @return retraso en milisegundos, o 0 si no hay nada por aplicar
+	 */
+	public long getRetrasoMs() {
+		ByteBuffer mensaje = aplicando;
+		if (mensaje == null) {
+			mensaje = recibidos.peek();
+		}
+		if (mensaje == null) {
+			return 0;
+		}
+		return Math.max(0, System.currentTimeMillis() - mensaje.getLong(GestorTareasReplicado.POSICION_ENVIO));
+	}
+	
+	/**
+	 * @return instantáneas recibidas y aplicadas
+	 */
+	public long getInstantaneasAplicadas() {
+		return instantaneasAplicadas;
+	}
+	
+	/**
+	 * @return true si la réplica está conectada al primario
+	 */
+	public boolean isConectada() {
+		SocketChannel actual = canal;
+		return actual != null && actual.isOpen();
+	}
+	
+	/**
+	 * Deja de replicar y descarta lo recibido sin aplicar.
+	 */
+	@Override
+	public void close() {
+		detener();
+	}
+	
+	/**
+	 * Deja de replicar, aplica lo ya recibido y convierte el estado en un
+	 * primario que continúa la secuencia, para que las demás réplicas se
+	 * conecten a él. La réplica no se debe seguir usando.
+	 * 
+	 * @param direccion dirección y puerto del nuevo primario
+	 * @return primario con el estado de la réplica
+	 * @throws IOException si no se puede abrir el puerto o lo recibido no se
+	 * puede aplicar
+	 * @throws IllegalStateException si la réplica esperaba una instantánea y
+	 * su estado no es fiable
+	 */
+	public GestorTareasReplicado promover(InetSocketAddress direccion) throws IOException {
+		detener();
+		
+		synchronized (this) {
+			List<ByteBuffer> resto = new ArrayList<>();
+			recibidos.drainTo(resto);
+			aplicarTanda(resto, new CRC32C());
+			if (esperandoInstantanea) {
+				throw new IllegalStateException("La réplica no tiene un estado coherente.");
+			}
+			return new GestorTareasReplicado(gestor, secuenciaAplicada, direccion,
+					GestorTareasReplicado.CAPACIDAD_HISTORIAL);
+		}
+	}
+	
+	private void detener() {
+		if (cerrado) {
+			return;
+		}
+		cerrado = true;
+		cerrar(canal);
+		receptor.interrupt();
+		aplicador.interrupt();
+		try {
+			receptor.join();
+			aplicador.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	// Recepción
+	
+	/**
+	 * Abre una conexión con el primario y le pide lo posterior a una
+	 * secuencia; -1 pide una instantánea.
+	 */
+	private SocketChannel conectar(long desde) throws IOException {
+		SocketChannel nuevo = SocketChannel.open(primario);
+		try {
+			nuevo.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			ByteBuffer saludo = ByteBuffer.allocate(GestorTareasReplicado.SALUDO);
+			saludo.putInt(GestorTareasReplicado.MARCA).putLong(desde).flip();
+			while (saludo.hasRemaining()) {
+				nuevo.write(saludo);
+			}
+			return nuevo;
+		} catch (IOException e) {
+			nuevo.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Bucle del hilo de recepción: separa los mensajes de cada conexión y
+	 * se reconecta cuando se pierde.
+	 */
+	private void recibir() {
+		ByteBuffer bufer = ByteBuffer.allocate(BUFER_LECTURA);
+		while (!cerrado) {
+			SocketChannel actual = canal;
+			try {
+				bufer.clear();
+				while (actual.read(bufer) >= 0) {
+					bufer = separar(bufer);
+				}
+			} catch (IOException e) {
+				// Conexión perdida o cerrada para pedir una instantánea
+			}
+			cerrar(actual);
+			
+			while (!cerrado) {
+				try {
+					Thread.sleep(REINTENTO_MS);
+					SocketChannel nuevo = conectar(esperandoInstantanea ? -1 : secuenciaAplicada);
+					canal = nuevo;
+					if (cerrado) {
+						cerrar(nuevo);
+					}
+					break;
+				} catch (InterruptedException e) {
+					return;
+				} catch (IOException e) {
+					// El primario aún no acepta conexiones
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Pasa a la cola los mensajes completos del búfer y lo deja listo para
+	 * seguir leyendo; si un mensaje no cabe, devuelve un búfer mayor.
+	 */
+	private ByteBuffer separar(ByteBuffer bufer) throws IOException {
+		bufer.flip();
+		while (bufer.remaining() >= 4) {
+			int longitud = bufer.getInt(bufer.position());
+			if (longitud < GestorTareasReplicado.CABECERA - 4) {
+				throw new IOException("Mensaje de replicación no válido.");
+			}
+			if (bufer.remaining() < 4 + longitud) {
+				break;
+			}
+			
+			ByteBuffer mensaje = ByteBuffer.allocate(4 + longitud);
+			mensaje.put(0, bufer, bufer.position(), 4 + longitud);
+			bufer.position(bufer.position() + 4 + longitud);
+			secuenciaPrimario = mensaje.getLong(GestorTareasReplicado.POSICION_BASE)
+					+ mensaje.getInt(GestorTareasReplicado.POSICION_REGISTROS);
+			recibidos.add(mensaje);
+		}
+		
+		bufer.compact();
+		if (!bufer.hasRemaining()) {
+			bufer = ByteBuffer.allocate(bufer.capacity() * 2).put(bufer.flip());
+		}
+		return bufer;
+	}
+	
+	private static void cerrar(SocketChannel canal) {
+		try {
+			canal.close();
+		} catch (IOException e) {
+			// La conexión ya estaba cerrada
+		}
+	}
+	
+	// Aplicación
+	
+	/**
+	 * Bucle del hilo de aplicación: aplica lo recibido por tandas y
+	 * confirma la secuencia alcanzada.
+	 */
+	private void aplicar() {
+		List<ByteBuffer> tanda = new ArrayList<>();
+		CRC32C crc = new CRC32C();
+		ByteBuffer confirmacion = ByteBuffer.allocate(GestorTareasReplicado.CONFIRMACION);
+		
+		while (true) {
+			try {
+				tanda.add(recibidos.take());
+			} catch (InterruptedException e) {
+				return;
+			}
+			recibidos.drainTo(tanda);
+			aplicando = tanda.get(0);
+			
+			try {
+				synchronized (this) {
+					aplicarTanda(tanda, crc);
+				}
+			} catch (IOException | RuntimeException e) {
+				// El estado ya no es fiable: se pide una instantánea
+				esperandoInstantanea = true;
+				recibidos.clear();
+				cerrar(canal);
+			}
+			aplicando = null;
+			tanda.clear();
+			
+			try {
+				confirmacion.clear();
+				confirmacion.putLong(secuenciaAplicada).flip();
+				canal.write(confirmacion);
+			} catch (IOException e) {
+				// La recepción detecta la desconexión y se reconecta
+			}
+		}
+	}
+	
+	/**
+	 * Aplica los mensajes en orden. Se invoca con el bloqueo tomado.
+	 */
+	private void aplicarTanda(List<ByteBuffer> tanda, CRC32C crc) throws IOException {
+		for (ByteBuffer mensaje : tanda) {
+			byte tipo = mensaje.get(GestorTareasReplicado.POSICION_TIPO);
+			long base = mensaje.getLong(GestorTareasReplicado.POSICION_BASE);
+			mensaje.position(GestorTareasReplicado.CABECERA);
+			
+			if (tipo == GestorTareasReplicado.INSTANTANEA) {
+				GestorTareasServicio nuevo = new GestorTareasServicio();
+				Instantanea.leer(new ByteArrayInputStream(mensaje.array(), mensaje.position(), mensaje.remaining()),
+						nuevo, "primario " + primario);
+				gestor = nuevo;
+				secuenciaAplicada = base;
+				esperandoInstantanea = false;
+				instantaneasAplicadas++;
+			} else if (tipo != GestorTareasReplicado.LOTE) {
+				throw new IOException("Tipo de mensaje desconocido: " + tipo);
+			} else if (!esperandoInstantanea) {
+				aplicarLote(mensaje, base, crc);
+			}
+		}
+	}
+	
+	/**
+	 * Aplica los registros del lote posteriores a la secuencia aplicada.
+	 */
+	private void aplicarLote(ByteBuffer lote, long base, CRC32C crc) throws IOException {
+		if (base > secuenciaAplicada) {
+			throw new IOException("Faltan operaciones entre " + secuenciaAplicada + " y " + base + ".");
+		}
+		
+		long siguiente = base;
+		while (lote.hasRemaining()) {
+			int tamanio = RegistroOperaciones.validar(lote, crc);
+			if (tamanio <= 0) {
+				throw new IOException("Registro no válido en el lote " + base + ".");
+			}
+			
+			int inicio = lote.position() + 4;
+			if (++siguiente > secuenciaAplicada) {
+				lote.position(inicio);
+				RegistroOperaciones.aplicar(lote, inicio + tamanio - 8, gestor);
+				secuenciaAplicada = siguiente;
+			}
+			lote.position(inicio + tamanio - 4);
+		}
+	}
+	
+	private static UnsupportedOperationException soloLectura() {
+		return new UnsupportedOperationException(SOLO_LECTURA);
+	}
+	
+	// Gestión de usuarios
+	
+	@Override
+	public Usuario crearUsuario(String nombre, TipoUsuario tipo) {
+		throw soloLectura();
+	}
+	
+	@Override
+	public synchronized Usuario buscarUsuario(int id) {
+		return gestor.buscarUsuario(id);
+	}
+	
+	@Override
+	public synchronized List<Usuario> listarUsuarios() {
+		return new ArrayList<>(gestor.listarUsuarios());
+	}
+	
+	@Override
+	public synchronized List<Usuario> listarUsuariosPorTipo(TipoUsuario tipo) {
+		return new ArrayList<>(gestor.listarUsuariosPorTipo(tipo));
+	}
+	
+	// Gestión de tareas
+	
+	@Override
+	public Tarea crearTarea(String descripcion, Prioridad prioridad) {
+		throw soloLectura();
+	}
+	
+	@Override
+	public void agregarTareaAUsuario(int usuarioId, Tarea tarea) {
+		throw soloLectura();
+	}
+	
+	@Override
+	public synchronized List<Tarea> listarTareasDeUsuario(int usuarioId) {
+		List<Tarea> tareas = gestor.listarTareasDeUsuario(usuarioId);
+		return tareas == null ? null : new ArrayList<>(tareas);
+	}
+	
+	@Override
+	public boolean marcarTareaComoCompletada(int usuarioId, int tareaId) {
+		throw soloLectura();
+	}
+	
+	@Override
+	public boolean eliminarTareaDeUsuario(int usuarioId, int tareaId) {
+		throw soloLectura();
+	}
+	
+	@Override
+	public synchronized List<Tarea> listarTareasPorTipoUsuario(TipoUsuario tipo) {
+		return new ArrayList<>(gestor.listarTareasPorTipoUsuario(tipo));
+	}
+	
+	@Override
+	public synchronized List<Tarea> listarTareasDeUsuario(int usuarioId, EstadoTarea estado) {
+		return gestor.listarTareasDeUsuario(usuarioId, estado);
+	}
+	
+	@Override
+	public synchronized List<Tarea> listarTareasDeUsuario(int usuarioId, Prioridad prioridad) {
+		return gestor.listarTareasDeUsuario(usuarioId, prioridad);
+	}
+	
+	// Listados paginados
+	
+	@Override
+	public synchronized Pagina<Usuario> listarUsuarios(long cursor, int limite) {
+		return gestor.listarUsuarios(cursor, limite);
+	}
+	
+	@Override
+	public synchronized Pagina<Tarea> listarTareasDeUsuario(int usuarioId, long cursor, int limite) {
+		return gestor.listarTareasDeUsuario(usuarioId, cursor, limite);
+	}
+	
+	@Override
+	public synchronized Pagina<Tarea> listarTareasPorTipoUsuario(TipoUsuario tipo, long cursor, int limite) {
+		return gestor.listarTareasPorTipoUsuario(tipo, cursor, limite);
+	}
+	
+	@Override
+	public Stream<Usuario> recorrerUsuarios() {
+		return Paginacion.stream(cursor -> listarUsuarios(cursor, Paginacion.TAMANIO_PAGINA));
+	}
+	
+	@Override
+	public Stream<Tarea> recorrerTareasPorTipoUsuario(TipoUsuario tipo) {
+		return Paginacion.stream(cursor -> listarTareasPorTipoUsuario(tipo, cursor, Paginacion.TAMANIO_PAGINA));
+	}
+	
+	// Consultas paralelas
+	
+	@Override
+	public synchronized <R> R consultarTareas(TipoUsuario tipo, Function<? super Stream<Tarea>, ? extends R> consulta) {
+		return gestor.consultarTareas(tipo, consulta);
+	}
+	
+	// Búsqueda
+	
+	@Override
+	public synchronized List<Tarea> buscarTareas(String consulta, EstadoTarea estado, Prioridad prioridad,
+			TipoUsuario tipo, int limite) {
+		return gestor.buscarTareas(consulta, estado, prioridad, tipo, limite);
+	}
+	
+	// Cola de trabajo
+	
+	@Override
+	public synchronized Tarea verSiguienteTarea() {
+		return gestor.verSiguienteTarea();
+	}
+	
+	@Override
+	public synchronized Tarea verSiguienteTarea(int usuarioId) {
+		return gestor.verSiguienteTarea(usuarioId);
+	}
+	
+	@Override
+	public Tarea tomarSiguienteTarea() {
+		throw soloLectura();
+	}
+	
+	@Override
+	public Tarea tomarSiguienteTarea(int usuarioId) {
+		throw soloLectura();
+	}
+	
+	@Override
+	public boolean liberarTarea(int tareaId) {
+		throw soloLectura();
+	}
+	
+	// Estadísticas
+	
+	@Override
+	public synchronized ContadorTareas contarTareas() {
+		return gestor.contarTareas();
+	}
+	
+	@Override
+	public synchronized ContadorTareas contarTareasDeUsuario(int usuarioId) {
+		return gestor.contarTareasDeUsuario(usuarioId);
+	}
+	
+	@Override
+	public synchronized ContadorTareas contarTareasPorTipoUsuario(TipoUsuario tipo) {
+		return gestor.contarTareasPorTipoUsuario(tipo);
+	}
+	
+	// Carga masiva
+	
+	@Override
+	public int reservarIdsTareas(int cantidad) {
+		throw soloLectura();
+	}
+	
+	@Override
+	public void agregarTareasAUsuario(int usuarioId, List<Tarea> tareas) {
+		throw soloLectura();
+	}
+	
+	@Override
+	public int importar(Reader entrada, FormatoIntercambio formato) {
+		throw soloLectura();
+	}
+	
+	@Override
+	public void exportar(Writer salida, FormatoIntercambio formato) throws IOException {
+		Intercambio.exportar(this, salida, formato);
+	}
+	
+	// Eventos
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @throws UnsupportedOperationException siempre: el estado de la réplica
+	 * se sustituye al recibir una instantánea y los eventos se perderían
+	 */
+	@Override
+	public Suscripcion suscribir(OyenteTareas oyente, int loteMaximo) {
+		throw new UnsupportedOperationException("La réplica no publica eventos.");
+	}
+	
+	// Vencimientos
+	
+	@Override
+	public boolean fijarVencimiento(int usuarioId, int tareaId, long venceEn, long antelacion) {
+		throw soloLectura();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @throws UnsupportedOperationException siempre: revisar marca las
+	 * tareas como escaladas, y los avisos los da el primario
+	 */
+	@Override
+	public int revisarVencimientos(long ahora, OyenteVencimientos oyente) {
+		throw soloLectura();
+	}
+	
+	/**
+	 * Resume el estado aplicado en una línea: secuencia aplicada, retraso
+	 * en operaciones y CRC-32 de la exportación en JSON Lines.
+	 */
+	private synchronized String resumen() {
+		StringWriter exportado = new StringWriter();
+		try {
+			exportar(exportado, FormatoIntercambio.JSON_LINES);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		CRC32 huella = new CRC32();
+		huella.update(exportado.toString().getBytes(StandardCharsets.UTF_8));
+		return secuenciaAplicada + " " + getRetrasoOperaciones() + " " + Long.toHexString(huella.getValue());
+	}
+	
+	/**
+	 * Replica un primario de la interfaz local hasta que se cierra la
+	 * entrada estándar. Por cada línea leída escribe en la salida estándar
+	 * la secuencia aplicada, el retraso en operaciones y el CRC-32 de la
+	 * exportación en JSON Lines, para comparar el estado desde otro proceso.
+	 * 
+	 * @param args puerto del primario
+	 * @throws IOException si no se puede conectar
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Uso: java servicio.GestorTareasReplica puerto");
+			System.exit(2);
+		}
+		
+		InetSocketAddress primario = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0]));
+		try (GestorTareasReplica replica = new GestorTareasReplica(primario)) {
+			BufferedReader entrada = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+			while (entrada.readLine() != null) {
+				System.out.println(replica.resumen());
+				System.out.flush();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,903 @@
+package servicio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import interfaces.Accionable;
+import interfaces.OyenteTareas;
+import interfaces.OyenteVencimientos;
+import interfaces.Suscripcion;
+import modelo.ContadorTareas;
+import modelo.EstadoTarea;
+import modelo.FormatoIntercambio;
+import modelo.Pagina;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+
+/**
+ * Gestor de tareas que replica su estado en otros procesos enviándoles el
+ * registro de sus operaciones.
+ * 
+ * <p>
+ * Como {@link GestorTareasPersistente}, mantiene el estado en un
+ * {@link GestorTareasServicio} con las operaciones sincronizadas y anota
+ * cada operación que lo modifica con el formato de
+ * {@link RegistroOperaciones}; cada operación anotada recibe un número de
+ * secuencia consecutivo. Las operaciones no esperan a las réplicas: un hilo
+ * de envío recoge lo anotado, lo empaqueta en un lote y lo escribe con un
+ * {@link Selector} en los sockets no bloqueantes de todas las réplicas
+ * ({@link GestorTareasReplica}). Mientras el hilo envía, las operaciones
+ * nuevas se acumulan en el siguiente lote, así que con más carga los lotes
+ * crecen en lugar de multiplicarse los envíos.
+ * </p>
+ * 
+ * <p>
+ * Los últimos lotes se guardan en un historial de tamaño limitado. Una
+ * réplica que se conecta pide los lotes posteriores a la última operación
+ * que tiene; si ya no están en el historial, o si se atrasa tanto que sus
+ * lotes por enviar superan el tamaño del historial, recibe una instantánea
+ * completa ({@link Instantanea}) y sigue con los lotes posteriores. Sin
+ * operaciones, cada {@value #INTERVALO_LATIDO_MS} ms se envía un lote vacío
+ * con la secuencia actual, para que las réplicas midan su retraso.
+ * </p>
+ * 
+ * <p>
+ * Se replican las mismas operaciones que guarda
+ * {@link GestorTareasPersistente}, incluidas las reclamaciones y
+ * liberaciones de la cola de trabajo, y además los escalados que hace
+ * {@link #revisarVencimientos}, para que la réplica atienda la cola en el
+ * mismo orden si se promueve. Los avisos de vencimiento no se replican.
+ * </p>
+ */
+
+public class GestorTareasReplicado implements Accionable, AutoCloseable {
+	
+	/** Tamaño por defecto del historial de lotes en bytes */
+	public static final int CAPACIDAD_HISTORIAL = 16 << 20;
+	
+	/** Intervalo sin operaciones tras el que se envía un lote vacío */
+	static final long INTERVALO_LATIDO_MS = 100;
+	
+	// Protocolo. La réplica saluda con [marca][última secuencia aplicada] y
+	// luego confirma con [secuencia aplicada]. El primario envía mensajes
+	// [longitud][tipo][secuencia base][registros][enviado en][cuerpo], donde
+	// la longitud cubre lo que le sigue y la base es la secuencia anterior al
+	// primer registro. El cuerpo de un lote son registros y el de una
+	// instantánea, la instantánea del estado en la secuencia base.
+	
+	/** Marca del saludo de una réplica ("STKR") */
+	static final int MARCA = 0x53544B52;
+	
+	static final int SALUDO = 4 + 8;
+	static final int CONFIRMACION = 8;
+	
+	static final byte LOTE = 1;
+	static final byte INSTANTANEA = 2;
+	
+	static final int POSICION_TIPO = 4;
+	static final int POSICION_BASE = POSICION_TIPO + 1;
+	static final int POSICION_REGISTROS = POSICION_BASE + 8;
+	static final int POSICION_ENVIO = POSICION_REGISTROS + 4;
+	static final int CABECERA = POSICION_ENVIO + 8;
+	
+	/** Búferes que se escriben a la vez en una réplica */
+	private static final int ESCRITURA_MAXIMA = 64;
+	
+	/** Estado en memoria */
+	private final GestorTareasServicio gestor;
+	
+	private final int capacidadHistorial;
+	
+	/** Registros anotados y aún no empaquetados (protegido por this) */
+	private LoteRegistros pendiente;
+	
+	/** Operaciones anotadas desde el inicio (protegido por this) */
+	private long secuencia;
+	
+	/** Si se despertó al hilo de envío para el lote pendiente (protegido por this) */
+	private boolean avisado;
+	
+	private final Selector selector;
+	private final ServerSocketChannel servidor;
+	private final int puerto;
+	private final Thread envio;
+	private volatile boolean cerrado;
+	
+	// Estado del hilo de envío
+	
+	/** Lote vacío que se intercambia con el pendiente al empaquetar */
+	private LoteRegistros libre;
+	
+	/** Últimos lotes enviados, del más antiguo al más reciente */
+	private final ArrayDeque<Lote> historial = new ArrayDeque<>();
+	
+	private long bytesHistorial;
+	
+	/** Secuencia de la última operación empaquetada */
+	private long secuenciaEnviada;
+	
+	/** Instante del último mensaje enviado a todas las réplicas */
+	private long ultimoEnvio;
+	
+	private final List<Replica> replicas = new ArrayList<>();
+	private final ByteBuffer[] escritura = new ByteBuffer[ESCRITURA_MAXIMA];
+	
+	// Métricas que publica el hilo de envío
+	
+	private volatile int replicasConectadas;
+	private volatile long secuenciaConfirmada;
+	private volatile long instantaneasEnviadas;
+	
+	/**
+	 * Crea un gestor vacío con el historial por defecto y empieza a aceptar
+	 * réplicas.
+	 * 
+	 * @param direccion dirección y puerto; el puerto 0 elige uno libre
+	 * @throws IOException si no se puede abrir el puerto
+	 * @throws IllegalArgumentException si la dirección no es válida
+	 */
+	public GestorTareasReplicado(InetSocketAddress direccion) throws IOException {
+		this(direccion, CAPACIDAD_HISTORIAL);
+	}
+	
+	/**
+	 * Crea un gestor vacío y empieza a aceptar réplicas.
+	 * 
+	 * @param direccion dirección y puerto; el puerto 0 elige uno libre
+	 * @param capacidadHistorial bytes de lotes que se guardan para las
+	 * réplicas que se reconectan o se atrasan
+	 * @throws IOException si no se puede abrir el puerto
+	 * @throws IllegalArgumentException si la dirección o la capacidad no son
+	 * válidas
+	 */
+	public GestorTareasReplicado(InetSocketAddress direccion, int capacidadHistorial) throws IOException {
+		this(new GestorTareasServicio(), 0, direccion, capacidadHistorial);
+	}
+	
+	/**
+	 * Crea un gestor sobre un estado existente, como el de una réplica
+	 * promovida, que continúa su secuencia.
+	 */
+	GestorTareasReplicado(GestorTareasServicio gestor, long secuencia, InetSocketAddress direccion,
+			int capacidadHistorial) throws IOException {
+		if (direccion == null) {
+			throw new IllegalArgumentException("Dirección no válida.");
+		}
+		if (capacidadHistorial <= 0) {
+			throw new IllegalArgumentException("La capacidad del historial debe ser positiva.");
+		}
+		
+		this.gestor = gestor;
+		this.capacidadHistorial = capacidadHistorial;
+		this.secuencia = secuencia;
+		this.secuenciaEnviada = secuencia;
+		this.secuenciaConfirmada = secuencia;
+		this.pendiente = new LoteRegistros(64 * 1024);
+		this.libre = new LoteRegistros(64 * 1024);
+		
+		this.selector = Selector.open();
+		try {
+			this.servidor = ServerSocketChannel.open().bind(direccion);
+			servidor.configureBlocking(false);
+			servidor.register(selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			selector.close();
+			throw e;
+		}
+		this.puerto = ((InetSocketAddress) servidor.getLocalAddress()).getPort();
+		
+		this.envio = new Thread(this::enviar, "replicacion-" + puerto);
+		this.envio.setDaemon(true);
+		this.envio.start();
+	}
+	
+	/**
+	 * @return puerto en el que se aceptan réplicas
+	 */
+	public int getPuerto() {
+		return puerto;
+	}
+	
+	/**
+	 * @return número de operaciones anotadas; la réplica que la alcanza
+	 * tiene el mismo estado
+	 */
+	public synchronized long getSecuencia() {
+		return secuencia;
+	}
+	
+	/**
+	 * @return réplicas conectadas
+	 */
+	public int getReplicas() {
+		return replicasConectadas;
+	}
+	
+	/**
+	 * @return operaciones que la réplica más atrasada aún no ha confirmado,
+	 * o 0 si no hay réplicas
+	 */
+	public long getRetrasoReplicas() {
+		if (replicasConectadas == 0) {
+			return 0;
+		}
+		return Math.max(0, getSecuencia() - secuenciaConfirmada);
+	}
+	
+	/**
+	 * @return instantáneas enviadas a réplicas que no podían seguir con el
+	 * historial
+	 */
+	public long getInstantaneasEnviadas() {
+		return instantaneasEnviadas;
+	}
+	
+	/**
+	 * Envía lo pendiente, deja de aceptar réplicas y cierra sus conexiones.
+	 * Las operaciones posteriores ya no se replican.
+	 */
+	@Override
+	public void close() {
+		if (cerrado) {
+			return;
+		}
+		cerrado = true;
+		selector.wakeup();
+		try {
+			envio.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Cuenta una operación anotada y despierta al hilo de envío si el lote
+	 * estaba vacío. Se invoca con el bloqueo tomado.
+	 */
+	private void contarOperacion() {
+		contarOperaciones(1);
+	}
+	
+	private void contarOperaciones(int cantidad) {
+		secuencia += cantidad;
+		if (!avisado) {
+			avisado = true;
+			selector.wakeup();
+		}
+	}
+	
+	// Envío
+	
+	/**
+	 * Bucle del hilo de envío: atiende los sockets, empaqueta lo anotado y
+	 * lo escribe en las réplicas.
+	 */
+	private void enviar() {
+		try {
+			while (!cerrado) {
+				selector.select(INTERVALO_LATIDO_MS);
+				
+				Iterator<SelectionKey> claves = selector.selectedKeys().iterator();
+				while (claves.hasNext()) {
+					SelectionKey clave = claves.next();
+					claves.remove();
+					if (!clave.isValid()) {
+						continue;
+					}
+					if (clave.isAcceptable()) {
+						aceptar();
+					} else if (clave.isReadable()) {
+						Replica replica = (Replica) clave.attachment();
+						try {
+							leer(replica);
+						} catch (IOException e) {
+							desconectar(replica);
+						}
+					}
+				}
+				
+				empaquetar();
+				if (System.currentTimeMillis() - ultimoEnvio >= INTERVALO_LATIDO_MS) {
+					latido();
+				}
+				escribirTodas();
+				publicarMetricas();
+			}
+			
+			// Lo anotado antes de cerrar se envía a las réplicas conectadas
+			empaquetar();
+			selector.close();
+			for (Replica replica : replicas) {
+				try {
+					replica.canal.configureBlocking(true);
+					while (!replica.salida.isEmpty()) {
+						escribir(replica);
+					}
+				} catch (IOException e) {
+					// La réplica se perdió al cerrar
+				}
+			}
+		} catch (IOException e) {
+			// El selector falló: las réplicas se desconectan
+		} finally {
+			for (Replica replica : new ArrayList<>(replicas)) {
+				desconectar(replica);
+			}
+			replicasConectadas = 0;
+			try {
+				servidor.close();
+				selector.close();
+			} catch (IOException e) {
+				// Ya no se aceptan réplicas
+			}
+		}
+	}
+	
+	private void aceptar() throws IOException {
+		SocketChannel canal = servidor.accept();
+		if (canal == null) {
+			return;
+		}
+		try {
+			canal.configureBlocking(false);
+			canal.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			Replica replica = new Replica(canal);
+			replica.clave = canal.register(selector, SelectionKey.OP_READ, replica);
+			replicas.add(replica);
+		} catch (IOException e) {
+			canal.close();
+		}
+	}
+	
+	/**
+	 * Lee el saludo o las confirmaciones de una réplica.
+	 */
+	private void leer(Replica replica) throws IOException {
+		if (replica.canal.read(replica.entrada) < 0) {
+			throw new EOFException();
+		}
+		replica.entrada.flip();
+		
+		if (!replica.saludada && replica.entrada.remaining() >= SALUDO) {
+			if (replica.entrada.getInt() != MARCA) {
+				throw new IOException("Saludo de réplica no válido.");
+			}
+			saludar(replica, replica.entrada.getLong());
+		}
+		while (replica.saludada && replica.entrada.remaining() >= CONFIRMACION) {
+			replica.confirmada = replica.entrada.getLong();
+		}
+		replica.entrada.compact();
+	}
+	
+	/**
+	 * Pone en cola los lotes que le faltan a una réplica que acaba de
+	 * conectarse o, si ya no están en el historial, una instantánea.
+	 */
+	private void saludar(Replica replica, long desde) throws IOException {
+		replica.saludada = true;
+		replica.confirmada = Math.max(desde, 0);
+		
+		long primera = historial.isEmpty() ? secuenciaEnviada : historial.getFirst().base;
+		if (desde < primera || desde > secuenciaEnviada) {
+			ponerInstantanea(replica);
+			return;
+		}
+		for (Lote lote : historial) {
+			if (lote.base + lote.registros > desde) {
+				encolar(replica, lote.mensaje.duplicate());
+			}
+		}
+	}
+	
+	/**
+	 * Empaqueta las operaciones anotadas en un lote, lo guarda en el
+	 * historial y lo pone en cola para todas las réplicas.
+	 */
+	private void empaquetar() throws IOException {
+		LoteRegistros lleno;
+		long base;
+		synchronized (this) {
+			avisado = false;
+			if (pendiente.getRegistros() == 0) {
+				return;
+			}
+			lleno = pendiente;
+			pendiente = libre;
+			base = secuencia - lleno.getRegistros();
+		}
+		
+		ByteBuffer datos = lleno.getBufer().flip();
+		ByteBuffer mensaje = ByteBuffer.allocate(CABECERA + datos.remaining());
+		cabecera(mensaje, LOTE, base, lleno.getRegistros());
+		mensaje.position(CABECERA);
+		mensaje.put(datos).flip();
+		
+		Lote lote = new Lote(base, lleno.getRegistros(), mensaje);
+		lleno.vaciar();
+		libre = lleno;
+		
+		historial.addLast(lote);
+		bytesHistorial += mensaje.limit();
+		while (bytesHistorial > capacidadHistorial && historial.size() > 1) {
+			bytesHistorial -= historial.removeFirst().mensaje.limit();
+		}
+		secuenciaEnviada = base + lote.registros;
+		
+		for (Replica replica : replicas) {
+			if (replica.saludada) {
+				encolar(replica, mensaje.duplicate());
+			}
+		}
+		ultimoEnvio = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Envía un lote vacío con la secuencia actual a las réplicas al día.
+	 */
+	private void latido() throws IOException {
+		ByteBuffer mensaje = ByteBuffer.allocate(CABECERA);
+		cabecera(mensaje, LOTE, secuenciaEnviada, 0);
+		for (Replica replica : replicas) {
+			if (replica.saludada && replica.salida.isEmpty()) {
+				encolar(replica, mensaje.duplicate());
+			}
+		}
+		ultimoEnvio = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Pone un lote en la cola de una réplica. Si la cola supera el tamaño
+	 * del historial, se descarta y se sustituye por una instantánea.
+	 */
+	private void encolar(Replica replica, ByteBuffer mensaje) throws IOException {
+		replica.salida.addLast(mensaje);
+		replica.bytesEnCola += mensaje.remaining();
+		if (replica.instantanea != null || replica.bytesEnCola <= capacidadHistorial) {
+			return;
+		}
+		
+		// Se conserva el mensaje a medio escribir para no romper el flujo
+		ByteBuffer enCurso = replica.salida.peekFirst();
+		replica.salida.clear();
+		replica.bytesEnCola = 0;
+		if (enCurso.position() > 0) {
+			replica.salida.addLast(enCurso);
+			replica.bytesEnCola = enCurso.limit();
+		}
+		ponerInstantanea(replica);
+	}
+	
+	/**
+	 * Pone en cola una instantánea del estado actual. Se escribe con el
+	 * bloqueo tomado, como {@link GestorTareasPersistente#crearInstantanea()}.
+	 */
+	private void ponerInstantanea(Replica replica) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+		bytes.writeBytes(new byte[CABECERA]);
+		long base;
+		synchronized (this) {
+			Instantanea.escribir(bytes, gestor);
+			base = secuencia;
+		}
+		
+		ByteBuffer mensaje = ByteBuffer.wrap(bytes.toByteArray());
+		cabecera(mensaje, INSTANTANEA, base, 0);
+		replica.instantanea = mensaje;
+		replica.salida.addLast(mensaje);
+		instantaneasEnviadas++;
+	}
+	
+	/**
+	 * Escribe la cabecera de un mensaje que ocupa todo el búfer.
+	 */
+	private static void cabecera(ByteBuffer mensaje, byte tipo, long base, int registros) {
+		mensaje.putInt(0, mensaje.capacity() - 4)
+				.put(POSICION_TIPO, tipo)
+				.putLong(POSICION_BASE, base)
+				.putInt(POSICION_REGISTROS, registros)
+				.putLong(POSICION_ENVIO, System.currentTimeMillis());
+	}
+	
+	private void escribirTodas() {
+		for (Replica replica : new ArrayList<>(replicas)) {
+			try {
+				escribir(replica);
+			} catch (IOException e) {
+				desconectar(replica);
+			}
+		}
+	}
+	
+	/**
+	 * Escribe de una vez los mensajes en cola que acepte el socket y pide
+	 * aviso de escritura si quedan.
+	 */
+	private void escribir(Replica replica) throws IOException {
+		if (replica.salida.isEmpty()) {
+			return;
+		}
+		
+		int cantidad = 0;
+		for (ByteBuffer mensaje : replica.salida) {
+			escritura[cantidad++] = mensaje;
+			if (cantidad == ESCRITURA_MAXIMA) {
+				break;
+			}
+		}
+		replica.canal.write(escritura, 0, cantidad);
+		Arrays.fill(escritura, 0, cantidad, null);
+		
+		while (!replica.salida.isEmpty() && !replica.salida.peekFirst().hasRemaining()) {
+			ByteBuffer enviado = replica.salida.removeFirst();
+			if (enviado == replica.instantanea) {
+				replica.instantanea = null;
+			} else {
+				replica.bytesEnCola -= enviado.limit();
+			}
+		}
+		
+		if (replica.clave.isValid()) {
+			replica.clave.interestOps(replica.salida.isEmpty()
+					? SelectionKey.OP_READ
+					: SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		}
+	}
+	
+	private void desconectar(Replica replica) {
+		replicas.remove(replica);
+		replica.clave.cancel();
+		try {
+			replica.canal.close();
+		} catch (IOException e) {
+			// La réplica ya se había desconectado
+		}
+	}
+	
+	private void publicarMetricas() {
+		int conectadas = 0;
+		long minima = Long.MAX_VALUE;
+		for (Replica replica : replicas) {
+			if (replica.saludada) {
+				conectadas++;
+				minima = Math.min(minima, replica.confirmada);
+			}
+		}
+		secuenciaConfirmada = minima;
+		replicasConectadas = conectadas;
+	}
+	
+	/**
+	 * Lote del historial, con el mensaje listo para enviar.
+	 */
+	private static final class Lote {
+		
+		final long base;
+		final int registros;
+		final ByteBuffer mensaje;
+		
+		Lote(long base, int registros, ByteBuffer mensaje) {
+			this.base = base;
+			this.registros = registros;
+			this.mensaje = mensaje;
+		}
+	
+	}
+	
+	/**
+	 * Conexión con una réplica y sus mensajes por enviar.
+	 */
+	private static final class Replica {
+		
+		final SocketChannel canal;
+		SelectionKey clave;
+		
+		/** Saludo y confirmaciones recibidos */
+		final ByteBuffer entrada = ByteBuffer.allocate(256);
+		
+		/** Mensajes por enviar; el primero puede estar a medio escribir */
+		final ArrayDeque<ByteBuffer> salida = new ArrayDeque<>();
+		
+		/** Bytes de lotes en la cola, sin contar la instantánea */
+		long bytesEnCola;
+		
+		/** Instantánea en la cola aún no escrita del todo, o null */
+		ByteBuffer instantanea;
+		
+		boolean saludada;
+		long confirmada;
+		
+		Replica(SocketChannel canal) {
+			this.canal = canal;
+		}
+	
+	}
+	
+	// Gestión de usuarios
+	
+	@Override
+	public synchronized Usuario crearUsuario(String nombre, TipoUsuario tipo) {
+		Usuario usuario = gestor.crearUsuario(nombre, tipo);
+		pendiente.anexarUsuario(usuario.getId(), tipo, usuario.getNombre());
+		contarOperacion();
+		return usuario;
+	}
+	
+	@Override
+	public synchronized Usuario buscarUsuario(int id) {
+		return gestor.buscarUsuario(id);
+	}
+	
+	@Override
+	public synchronized List<Usuario> listarUsuarios() {
+		return gestor.listarUsuarios();
+	}
+	
+	@Override
+	public synchronized List<Usuario> listarUsuariosPorTipo(TipoUsuario tipo) {
+		return new ArrayList<>(gestor.listarUsuariosPorTipo(tipo));
+	}
+	
+	// Gestión de tareas
+	
+	@Override
+	public synchronized Tarea crearTarea(String descripcion, Prioridad prioridad) {
+		Tarea tarea = gestor.crearTarea(descripcion, prioridad);
+		pendiente.anexarTareaCreada(tarea.getId());
+		contarOperacion();
+		return tarea;
+	}
+	
+	@Override
+	public synchronized void agregarTareaAUsuario(int usuarioId, Tarea tarea) {
+		gestor.agregarTareaAUsuario(usuarioId, tarea);
+		if (tarea != null) {
+			pendiente.anexarTareaAgregada(usuarioId, tarea);
+			contarOperacion();
+		}
+	}
+	
+	@Override
+	public synchronized List<Tarea> listarTareasDeUsuario(int usuarioId) {
+		List<Tarea> tareas = gestor.listarTareasDeUsuario(usuarioId);
+		return tareas == null ? null : new ArrayList<>(tareas);
+	}
+	
+	@Override
+	public synchronized boolean marcarTareaComoCompletada(int usuarioId, int tareaId) {
+		long instante = System.currentTimeMillis();
+		if (!gestor.marcarTareaComoCompletada(usuarioId, tareaId, instante)) {
+			return false;
+		}
+		pendiente.anexarTareaCompletada(usuarioId, tareaId, instante);
+		contarOperacion();
+		return true;
+	}
+	
+	@Override
+	public synchronized boolean eliminarTareaDeUsuario(int usuarioId, int tareaId) {
+		if (!gestor.eliminarTareaDeUsuario(usuarioId, tareaId)) {
+			return false;
+		}
+		pendiente.anexarCambioTarea(RegistroOperaciones.TAREA_ELIMINADA, usuarioId, tareaId);
+		contarOperacion();
+		return true;
+	}
+	
+	@Override
+	public synchronized List<Tarea> listarTareasPorTipoUsuario(TipoUsuario tipo) {
+		return new ArrayList<>(gestor.listarTareasPorTipoUsuario(tipo));
+	}
+	
+	@Override
+	public synchronized List<Tarea> listarTareasDeUsuario(int usuarioId, EstadoTarea estado) {
+		return gestor.listarTareasDeUsuario(usuarioId, estado);
+	}
+	
+	@Override
+	public synchronized List<Tarea> listarTareasDeUsuario(int usuarioId, Prioridad prioridad) {
+		return gestor.listarTareasDeUsuario(usuarioId, prioridad);
+	}
+	
+	// Listados paginados
+	
+	@Override
+	public synchronized Pagina<Usuario> listarUsuarios(long cursor, int limite) {
+		return gestor.listarUsuarios(cursor, limite);
+	}
+	
+	@Override
+	public synchronized Pagina<Tarea> listarTareasDeUsuario(int usuarioId, long cursor, int limite) {
+		return gestor.listarTareasDeUsuario(usuarioId, cursor, limite);
+	}
+	
+	@Override
+	public synchronized Pagina<Tarea> listarTareasPorTipoUsuario(TipoUsuario tipo, long cursor, int limite) {
+		return gestor.listarTareasPorTipoUsuario(tipo, cursor, limite);
+	}
+	
+	@Override
+	public Stream<Usuario> recorrerUsuarios() {
+		return Paginacion.stream(cursor -> listarUsuarios(cursor, Paginacion.TAMANIO_PAGINA));
+	}
+	
+	@Override
+	public Stream<Tarea> recorrerTareasPorTipoUsuario(TipoUsuario tipo) {
+		return Paginacion.stream(cursor -> listarTareasPorTipoUsuario(tipo, cursor, Paginacion.TAMANIO_PAGINA));
+	}
+	
+	// Consultas paralelas
+	
+	@Override
+	public synchronized <R> R consultarTareas(TipoUsuario tipo, Function<? super Stream<Tarea>, ? extends R> consulta) {
+		return gestor.consultarTareas(tipo, consulta);
+	}
+	
+	// Búsqueda
+	
+	@Override
+	public synchronized List<Tarea> buscarTareas(String consulta, EstadoTarea estado, Prioridad prioridad,
+			TipoUsuario tipo, int limite) {
+		return gestor.buscarTareas(consulta, estado, prioridad, tipo, limite);
+	}
+	
+	// Cola de trabajo
+	
+	@Override
+	public synchronized Tarea verSiguienteTarea() {
+		return gestor.verSiguienteTarea();
+	}
+	
+	@Override
+	public synchronized Tarea verSiguienteTarea(int usuarioId) {
+		return gestor.verSiguienteTarea(usuarioId);
+	}
+	
+	@Override
+	public synchronized Tarea tomarSiguienteTarea() {
+		return anotarReclamacion(gestor.tomarSiguienteTarea());
+	}
+	
+	@Override
+	public synchronized Tarea tomarSiguienteTarea(int usuarioId) {
+		return anotarReclamacion(gestor.tomarSiguienteTarea(usuarioId));
+	}
+	
+	private Tarea anotarReclamacion(Tarea tarea) {
+		if (tarea != null) {
+			pendiente.anexarReclamacion(RegistroOperaciones.TAREA_TOMADA, tarea.getId());
+			contarOperacion();
+		}
+		return tarea;
+	}
+	
+	@Override
+	public synchronized boolean liberarTarea(int tareaId) {
+		if (!gestor.liberarTarea(tareaId)) {
+			return false;
+		}
+		pendiente.anexarReclamacion(RegistroOperaciones.TAREA_LIBERADA, tareaId);
+		contarOperacion();
+		return true;
+	}
+	
+	// Estadísticas
+	
+	@Override
+	public ContadorTareas contarTareas() {
+		return gestor.contarTareas();
+	}
+	
+	@Override
+	public synchronized ContadorTareas contarTareasDeUsuario(int usuarioId) {
+		return gestor.contarTareasDeUsuario(usuarioId);
+	}
+	
+	@Override
+	public ContadorTareas contarTareasPorTipoUsuario(TipoUsuario tipo) {
+		return gestor.contarTareasPorTipoUsuario(tipo);
+	}
+	
+	// Carga masiva
+	
+	@Override
+	public synchronized int reservarIdsTareas(int cantidad) {
+		int primero = gestor.reservarIdsTareas(cantidad);
+		if (cantidad > 0) {
+			// Como en el registro en disco, basta con el último id del rango
+			pendiente.anexarTareaCreada(primero + cantidad - 1);
+			contarOperacion();
+		}
+		return primero;
+	}
+	
+	@Override
+	public synchronized void agregarTareasAUsuario(int usuarioId, List<Tarea> tareas) {
+		gestor.agregarTareasAUsuario(usuarioId, tareas);
+		int anotadas = 0;
+		for (Tarea tarea : tareas) {
+			if (tarea != null) {
+				pendiente.anexarTareaAgregada(usuarioId, tarea);
+				anotadas++;
+			}
+		}
+		if (anotadas > 0) {
+			contarOperaciones(anotadas);
+		}
+	}
+	
+	@Override
+	public int importar(Reader entrada, FormatoIntercambio formato) throws IOException {
+		return Intercambio.importar(this, entrada, formato);
+	}
+	
+	@Override
+	public void exportar(Writer salida, FormatoIntercambio formato) throws IOException {
+		Intercambio.exportar(this, salida, formato);
+	}
+	
+	// Eventos
+	
+	@Override
+	public Suscripcion suscribir(OyenteTareas oyente, int loteMaximo) {
+		return gestor.suscribir(oyente, loteMaximo);
+	}
+	
+	// Vencimientos
+	
+	@Override
+	public synchronized boolean fijarVencimiento(int usuarioId, int tareaId, long venceEn, long antelacion) {
+		if (!gestor.fijarVencimiento(usuarioId, tareaId, venceEn, antelacion)) {
+			return false;
+		}
+		pendiente.anexarVencimiento(usuarioId, tareaId, venceEn, antelacion);
+		contarOperacion();
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Cada escalado se anota para las réplicas antes de avisar al oyente.
+	 * </p>
+	 */
+	@Override
+	public synchronized int revisarVencimientos(long ahora, OyenteVencimientos oyente) {
+		Vencimientos.comprobar(oyente);
+		return gestor.revisarVencimientos(ahora, new OyenteVencimientos() {
+			
+			@Override
+			public void alVencer(int usuarioId, Tarea tarea) {
+				oyente.alVencer(usuarioId, tarea);
+			}
+			
+			@Override
+			public void alEscalar(int usuarioId, Tarea tarea) {
+				pendiente.anexarCambioTarea(RegistroOperaciones.TAREA_ESCALADA, usuarioId, tarea.getId());
+				contarOperacion();
+				oyente.alEscalar(usuarioId, tarea);
+			}
+		});
+	}
+
+}
@@ -1,18 +1,32 @@
 package servicio;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import interfaces.Accionable;
-import modelo.Estudiante;
+import interfaces.AlmacenTareas;
+import interfaces.OyenteTareas;
+import interfaces.OyenteVencimientos;
+import interfaces.Suscripcion;
+import modelo.ContadorTareas;
+import modelo.EstadoTarea;
+import modelo.FormatoIntercambio;
+import modelo.IndiceTareas;
+import modelo.Pagina;
 import modelo.Prioridad;
-import modelo.Profesor;
 import modelo.Tarea;
-import modelo.TareaNormal;
-import modelo.TareaUrgente;
+import modelo.TipoEvento;
 import modelo.TipoUsuario;
-import modelo.Trabajador;
 import modelo.Usuario;
+import util.MapaEnteros;
 
 /**
  * Implementación concreta del sistema gestor de tareas.
@@ -26,12 +40,80 @@ import modelo.Usuario;
  * 	<li>Crear tareas indicando su prioridad</li>
  * 	<li>Asociar tareas a usuarios</li>
  * </ul>
+ * 
+ * <p>
+ * Construido con versiones ({@link #GestorTareasServicio(boolean)}), cada
+ * escritura que cambia los usuarios o sus tareas publica además una
+ * {@link VersionGestor} inmutable, y {@link #buscarUsuario(int)},
+ * {@link #listarUsuarios()}, {@link #listarUsuariosPorTipo(TipoUsuario)},
+ * {@link #listarTareasDeUsuario(int)} y
+ * {@link #listarTareasPorTipoUsuario(TipoUsuario)} leen de la última
+ * versión: pueden llamarse desde cualquier hilo sin bloqueo mientras un
+ * único hilo escribe (o varios, sincronizados entre sí), y devuelven listas
+ * que no cambian ni se copian. El resto de operaciones sigue siendo de un
+ * solo hilo.
+ * </p>
+ * 
+ * <p>
+ * Por defecto los usuarios y sus tareas viven en un {@link AlmacenMemoria}.
+ * Construido sobre otro almacén ({@link #GestorTareasServicio(AlmacenTareas)}),
+ * por ejemplo uno en disco como {@link AlmacenArbolB}, el gestor lee de él
+ * los usuarios y las tareas en cada operación y le escribe cada cambio, así
+ * que los datos no tienen que caber en memoria. Solo se mantienen en
+ * memoria el tipo de cada usuario, los contadores, el índice de
+ * descripciones, la cola de trabajo y los vencimientos, que se reconstruyen
+ * al arrancar recorriendo el almacén. La cola ({@link ColaAlmacen}) guarda
+ * unos pocos enteros por tarea activa y lee las tareas del almacén al
+ * entregarlas, pero el índice y los vencimientos siguen creciendo con el
+ * número de tareas: con descripciones o vencimientos el heap acota el
+ * volumen de tareas aunque no tenga que contenerlas. En
+ * ese modo los usuarios y las tareas devueltos son copias, que cambiarlas
+ * no cambia el almacén, y los usuarios de los listados no traen sus
+ * tareas; con un {@link AlmacenCacheado} delante, los usuarios más usados
+ * se leen de memoria. El gestor no sincroniza el almacén, y los escalados
+ * pendientes no se guardan.
+ * </p>
  */
 
 public class GestorTareasServicio implements Accionable {
 	
-	/** Lista de usuarios registrados */
-	private final List<Usuario> usuarios;
+	private static final TipoUsuario[] TIPOS = TipoUsuario.values();
+	
+	/**
+	 * Usuarios registrados, en orden de creación (y de id), con sus tareas,
+	 * o null si viven en {@link #almacen}
+	 */
+	private final AlmacenMemoria memoria;
+	
+	/** Almacén con los usuarios y sus tareas, o null si viven en memoria */
+	private final AlmacenTareas almacen;
+	
+	/** Tipo (ordinal) de cada usuario de {@link #almacen} por id */
+	private final MapaEnteros tiposDeUsuario;
+	
+	/** Cola de tareas activas por prioridad, o null si viven en {@link #almacen} */
+	private final PlanificadorTareas planificador;
+	
+	/** Cola de tareas activas de {@link #almacen}, o null si viven en memoria */
+	private final ColaAlmacen cola;
+	
+	/** Índice de descripciones de las tareas asignadas */
+	private final IndiceTareas indiceDescripciones;
+	
+	/** Eventos de cambios de tareas para los suscriptores */
+	private final BusEventos eventos;
+	
+	/** Vencimientos vigilados de las tareas asignadas */
+	private final Vencimientos vencimientos;
+	
+	/** Conteo global de tareas asignadas */
+	private final ContadorTareas.Acumulador contadorGlobal;
+	
+	/** Conteo de tareas por tipo de usuario, vinculado al global */
+	private final Map<TipoUsuario, ContadorTareas.Acumulador> contadoresPorTipo;
+	
+	/** Última versión publicada, o null si el gestor no publica versiones */
+	private volatile VersionGestor version;
 	
 	/** Contador auto-incremental para usuarios */
 	private int contadorUsuarios;
@@ -39,51 +121,386 @@ public class GestorTareasServicio implements Accionable {
 	/** Contador auto-incremental para tareas */
 	private int contadorTareas;
 	
+	/** Primer id de tarea que el gestor ya no puede generar */
+	private int limiteTareas;
+	
+	/** Anillo que reparte los ids de usuario, o null si se generan seguidos */
+	private AnilloFragmentos anillo;
+	
+	/** Número de este gestor en el anillo */
+	private int fragmento;
+	
 	/**
 	 * Constructor del gestor.
 	 */
 	public GestorTareasServicio() {
-		this.usuarios = new ArrayList<>();
+		this(false);
+	}
+	
+	/**
+	 * Construye el gestor, indicando si publica versiones inmutables para
+	 * las lecturas concurrentes.
+	 * 
+	 * @param versionado true para publicar una {@link VersionGestor} en cada
+	 * escritura
+	 */
+	public GestorTareasServicio(boolean versionado) {
+		this(null, versionado);
+	}
+	
+	/**
+	 * Construye el gestor sobre un almacén, con lo que ya tenga guardado.
+	 * 
+	 * @param almacen almacén de los usuarios y las tareas
+	 */
+	public GestorTareasServicio(AlmacenTareas almacen) {
+		this(almacen, false);
+	}
+	
+	/**
+	 * Construye el gestor, con o sin almacén propio y versiones.
+	 * 
+	 * @param almacen almacén de los usuarios y las tareas, o null para
+	 * tenerlos en memoria
+	 * @param versionado true para publicar una {@link VersionGestor} en cada
+	 * escritura
+	 * @throws IllegalArgumentException si se piden versiones con almacén,
+	 * ya que las versiones comparten los usuarios en memoria
+	 */
+	public GestorTareasServicio(AlmacenTareas almacen, boolean versionado) {
+		if (almacen != null && versionado) {
+			throw new IllegalArgumentException("Las versiones necesitan los usuarios en memoria.");
+		}
+		
+		this.memoria = almacen == null ? new AlmacenMemoria() : null;
+		this.almacen = almacen;
+		this.tiposDeUsuario = almacen == null ? null : new MapaEnteros();
+		this.planificador = almacen == null ? new PlanificadorTareas() : null;
+		this.cola = almacen == null ? null : new ColaAlmacen(almacen);
+		this.indiceDescripciones = new IndiceTareas();
+		this.eventos = new BusEventos();
+		this.vencimientos = new Vencimientos();
+		this.contadorGlobal = new ContadorTareas.Acumulador();
+		this.contadoresPorTipo = new EnumMap<>(TipoUsuario.class);
+		for (TipoUsuario tipo : TipoUsuario.values()) {
+			this.contadoresPorTipo.put(tipo, new ContadorTareas.Acumulador(contadorGlobal));
+		}
 		this.contadorUsuarios = 1;
 		this.contadorTareas = 1;
+		this.limiteTareas = Integer.MAX_VALUE;
+		this.version = versionado ? VersionGestor.VACIA : null;
+		
+		if (almacen != null) {
+			cargar();
+		}
+	}
+	
+	/**
+	 * Reconstruye desde el almacén lo que se mantiene en memoria, sin
+	 * volver a escribir nada ni publicar eventos: el tipo de cada usuario,
+	 * los contadores, el índice, la cola de trabajo y los vencimientos.
+	 */
+	private void cargar() {
+		tiposDeUsuario.asegurarCapacidad(almacen.contarUsuarios());
+		almacen.recorrerUsuarios(usuario -> {
+			tiposDeUsuario.put(usuario.getId(), usuario.getTipo().ordinal());
+			contadorUsuarios = Math.max(contadorUsuarios, usuario.getId() + 1);
+		});
+		
+		almacen.recorrerTareas(AlmacenTareas.Filtro.TODAS, (usuarioId, tarea) -> {
+			if (tiposDeUsuario.contiene(usuarioId)) {
+				registrarTarea(usuarioId, tarea);
+				cola.encolar(usuarioId, tarea);
+				vigilar(usuarioId, tarea);
+				contadorTareas = Math.max(contadorTareas, tarea.getId() + 1);
+			}
+			return true;
+		});
 	}
 	
 	// Gestión de usuarios
 
 	@Override
 	public Usuario crearUsuario(String nombre, TipoUsuario tipo) {
-		int idGenerado = contadorUsuarios++;
-		Usuario usuario;
+		int idGenerado = anillo == null ? contadorUsuarios : anillo.siguienteUsuario(fragmento, contadorUsuarios);
+		contadorUsuarios = idGenerado + 1;
+		return registrarUsuario(FabricaModelo.nuevoUsuario(idGenerado, nombre, tipo));
+	}
+	
+	/**
+	 * Agrega un usuario ya construido al almacén y a los índices.
+	 */
+	private Usuario registrarUsuario(Usuario usuario) {
+		if (almacen != null) {
+			almacen.guardarUsuario(usuario);
+			tiposDeUsuario.put(usuario.getId(), usuario.getTipo().ordinal());
+			return usuario;
+		}
 		
-		switch (tipo) {
-			case PROFESOR:
-				usuario = new Profesor(idGenerado, nombre);
-				break;
-			case ESTUDIANTE:
-				usuario = new Estudiante(idGenerado, nombre);
-				break;
-			case TRABAJADOR:
-				usuario = new Trabajador(idGenerado, nombre);
-				break;
-			default:
-				throw new IllegalArgumentException("Tipo de usuario no válido.");
+		usuario.vincularContador(contadoresPorTipo.get(usuario.getTipo()).getContador());
+		usuario.vincularIndice(indiceDescripciones);
+		
+		memoria.guardarUsuario(usuario);
+		
+		if (version != null) {
+			usuario.versionarTareas();
+			version = version.conUsuario(usuario);
+		}
+		return usuario;
+	}
+	
+	/**
+	 * Escribe el estado actual de una tarea en el almacén, si los usuarios
+	 * viven en uno; si no, la tarea ya es la del usuario.
+	 */
+	private void guardar(int usuarioId, Tarea tarea) {
+		if (almacen != null) {
+			almacen.guardarTareas(usuarioId, List.of(tarea));
+		}
+	}
+	
+	// Lecturas del almacén
+	
+	/**
+	 * @return true si existe el usuario
+	 */
+	private boolean existeUsuario(int id) {
+		return almacen == null ? memoria.contieneUsuario(id) : tiposDeUsuario.contiene(id);
+	}
+	
+	/**
+	 * Devuelve el tipo de un usuario del almacén sin leerlo.
+	 */
+	private TipoUsuario tipoDe(int usuarioId) {
+		return TIPOS[tiposDeUsuario.get(usuarioId)];
+	}
+	
+	/**
+	 * Devuelve un usuario con sus tareas: el propio en memoria, o uno nuevo
+	 * con copias de las tareas leídas del almacén.
+	 */
+	private Usuario usuario(int id) {
+		if (almacen == null) {
+			return memoria.cargarUsuario(id);
+		}
+		
+		Usuario guardado = existeUsuario(id) ? almacen.cargarUsuario(id) : null;
+		if (guardado == null) {
+			return null;
 		}
 		
-		usuarios.add(usuario);
+		List<Tarea> tareas = tareasDelAlmacen(AlmacenTareas.Filtro.TODAS.deUsuario(id));
+		Usuario usuario = FabricaModelo.nuevoUsuario(id, guardado.getNombre(), guardado.getTipo());
+		usuario.asegurarCapacidad(tareas.size());
+		for (Tarea tarea : tareas) {
+			usuario.agregarTarea(tarea);
+		}
 		return usuario;
 	}
+	
+	/**
+	 * Devuelve una tarea de un usuario: la propia en memoria, o una copia
+	 * leída del almacén por su dueño e id.
+	 * 
+	 * @return tarea, o null si el usuario no existe o no la tiene
+	 */
+	private Tarea tareaDe(int usuarioId, int tareaId) {
+		if (almacen == null) {
+			Usuario usuario = memoria.cargarUsuario(usuarioId);
+			return usuario == null ? null : usuario.buscarTarea(tareaId);
+		}
+		
+		List<Tarea> tareas = tareasDelAlmacen(AlmacenTareas.Filtro.TODAS.deUsuario(usuarioId).entreIds(tareaId, tareaId));
+		return tareas.isEmpty() ? null : tareas.get(0);
+	}
+	
+	/**
+	 * Copia las tareas de un recorrido del almacén, sin dueño, para que
+	 * cambiarlas no cambie las que el almacén guarde en memoria.
+	 */
+	private List<Tarea> tareasDelAlmacen(AlmacenTareas.Filtro filtro) {
+		List<Tarea> tareas = new ArrayList<>();
+		almacen.recorrerTareas(filtro, (usuarioId, tarea) -> tareas.add(FabricaModelo.copiarTarea(tarea)));
+		return tareas;
+	}
+	
+	/**
+	 * Lee del almacén los usuarios de un tipo, o todos, en orden de id y
+	 * sin sus tareas.
+	 */
+	private List<Usuario> usuariosDelAlmacen(TipoUsuario tipo) {
+		return usuariosDelAlmacen(tipo, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Lee del almacén, en orden de id y sin sus tareas, hasta un máximo de
+	 * usuarios de un tipo, o de todos, desde el id indicado. El almacén
+	 * deja de recorrer en cuanto los tiene.
+	 */
+	private List<Usuario> usuariosDelAlmacen(TipoUsuario tipo, int desdeId, int limite) {
+		List<Usuario> usuarios = new ArrayList<>();
+		if (limite == 0) {
+			return usuarios;
+		}
+		
+		almacen.recorrerUsuarios(desdeId, guardado -> {
+			if (tipo == null || guardado.getTipo() == tipo) {
+				usuarios.add(FabricaModelo.nuevoUsuario(guardado.getId(), guardado.getNombre(), guardado.getTipo()));
+			}
+			return usuarios.size() < limite;
+		});
+		return usuarios;
+	}
+	
+	/**
+	 * Devuelve, en orden de id, las tareas de un usuario existente con id
+	 * mayor que el indicado, como {@link Usuario#tareasDespuesDe(int, int)}.
+	 * El almacén las entrega en orden de id y deja de recorrer en cuanto
+	 * llegan al límite.
+	 */
+	private List<Tarea> tareasDespuesDe(int usuarioId, int despuesDeId, int limite) {
+		if (almacen == null) {
+			return memoria.cargarUsuario(usuarioId).tareasDespuesDe(despuesDeId, limite);
+		}
+		
+		List<Tarea> tareas = new ArrayList<>(Math.min(limite, Paginacion.TAMANIO_PAGINA));
+		if (despuesDeId == Integer.MAX_VALUE || limite == 0) {
+			return tareas;
+		}
+		
+		almacen.recorrerTareas(AlmacenTareas.Filtro.TODAS.deUsuario(usuarioId).entreIds(despuesDeId + 1, Integer.MAX_VALUE),
+				(duenio, tarea) -> {
+					tareas.add(FabricaModelo.copiarTarea(tarea));
+					return tareas.size() < limite;
+				});
+		return tareas;
+	}
+	
+	// Estructuras en memoria de los usuarios del almacén
+	
+	/**
+	 * Cuenta e indexa una tarea asignada a un usuario del almacén, lo que
+	 * en memoria hace el propio usuario al agregarla.
+	 */
+	private void registrarTarea(int usuarioId, Tarea tarea) {
+		TipoUsuario tipo = tipoDe(usuarioId);
+		contadoresPorTipo.get(tipo).sumar(tarea.getEstado(), tarea.getPrioridad(), 1);
+		indiceDescripciones.agregar(tarea.getId(), usuarioId, tipo, tarea.getPrioridad(), tarea.getEstado(),
+				tarea.getDescripcion());
+	}
+	
+	/**
+	 * Descuenta y quita del índice una tarea eliminada del almacén.
+	 */
+	private void descontarTarea(int usuarioId, Tarea tarea) {
+		contadoresPorTipo.get(tipoDe(usuarioId)).sumar(tarea.getEstado(), tarea.getPrioridad(), -1);
+		indiceDescripciones.quitar(tarea.getId());
+	}
+	
+	/**
+	 * Pasa a completada en los contadores y el índice una tarea del almacén
+	 * que estaba activa.
+	 */
+	private void contarCompletada(int usuarioId, Tarea tarea) {
+		ContadorTareas.Acumulador contador = contadoresPorTipo.get(tipoDe(usuarioId));
+		contador.sumar(EstadoTarea.ACTIVA, tarea.getPrioridad(), -1);
+		contador.sumar(EstadoTarea.COMPLETADA, tarea.getPrioridad(), 1);
+		indiceDescripciones.cambiarEstado(tarea.getId(), EstadoTarea.COMPLETADA);
+	}
+	
+	/**
+	 * Quita una tarea completada o eliminada de la cola de trabajo.
+	 */
+	private void descartarDeCola(int tareaId) {
+		if (almacen == null) {
+			planificador.descartar(tareaId);
+		} else {
+			cola.descartar(tareaId);
+		}
+	}
+	
+	/**
+	 * Reordena en la cola de trabajo una tarea que se acaba de escalar.
+	 */
+	private void escalarEnCola(int tareaId) {
+		if (almacen == null) {
+			planificador.escalar(tareaId);
+		} else {
+			cola.escalar(tareaId);
+		}
+	}
+	
+	/**
+	 * Publica las tareas actuales del usuario en una versión nueva, si el
+	 * gestor publica versiones.
+	 */
+	private void publicarTareas(Usuario usuario) {
+		if (version != null) {
+			version = version.conTareasDe(usuario);
+		}
+	}
+	
+	/**
+	 * Devuelve la última versión publicada de los usuarios y sus tareas,
+	 * para hacer varias lecturas coherentes entre sí desde cualquier hilo.
+	 * 
+	 * @return versión actual
+	 * @throws IllegalStateException si el gestor no publica versiones
+	 */
+	public VersionGestor version() {
+		VersionGestor actual = version;
+		
+		if (actual == null) {
+			throw new IllegalStateException("El gestor no publica versiones.");
+		}
+		return actual;
+	}
 
 	@Override
 	public Usuario buscarUsuario(int id) {
-		return usuarios.stream()
-				.filter(u -> u.getId() == id)
-				.findFirst()
-				.orElse(null);
+		VersionGestor actual = version;
+		
+		if (actual != null) {
+			return actual.buscarUsuario(id);
+		}
+		
+		return usuario(id);
 	}
 
 	@Override
 	public List<Usuario> listarUsuarios() {
-		return new ArrayList<>(usuarios); // copia defensiva
+		VersionGestor actual = version;
+		
+		if (actual != null) {
+			return actual.usuarios();
+		}
+		if (almacen != null) {
+			return usuariosDelAlmacen(null);
+		}
+		
+		return new ArrayList<>(memoria.usuarios()); // copia defensiva
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Devuelve una vista no modificable del grupo de usuarios del tipo,
+	 * sin recorrer ni copiar el resto de usuarios.
+	 * </p>
+	 */
+	@Override
+	public List<Usuario> listarUsuariosPorTipo(TipoUsuario tipo) {
+		VersionGestor actual = version;
+		
+		if (actual != null) {
+			return actual.usuariosPorTipo(tipo);
+		}
+		if (almacen != null) {
+			return Collections.unmodifiableList(usuariosDelAlmacen(tipo));
+		}
+		
+		return memoria.usuariosDeTipo(tipo);
 	}
 	
 	// Gestión de tareas
@@ -91,26 +508,22 @@ public class GestorTareasServicio implements Accionable {
 	@Override
 	public Tarea crearTarea(String descripcion, Prioridad prioridad) {
 		
-		int idGenerado = contadorTareas++;
-		Tarea tarea;
-		
-		switch (prioridad) {
-			case NORMAL:
-				tarea = new TareaNormal(idGenerado, descripcion);
-				break;
-			case URGENTE:
-				tarea = new TareaUrgente(idGenerado, descripcion);
-				break;
-			default:
-				throw new IllegalArgumentException("Prioridad no válida.");
+		if (contadorTareas >= limiteTareas) {
+			throw new IllegalStateException("Ids de tarea agotados.");
 		}
-		
-		return tarea;
+		int idGenerado = contadorTareas++;
+		eventos.publicar(TipoEvento.CREADA, idGenerado, 0);
+		return FabricaModelo.nuevaTarea(idGenerado, descripcion, prioridad);
 	}
 
 	@Override
 	public void agregarTareaAUsuario(int usuarioId, Tarea tarea) {
 		
+		if (almacen != null) {
+			asignarEnAlmacen(usuarioId, tarea == null ? List.of() : List.of(tarea));
+			return;
+		}
+		
 		Usuario usuario = buscarUsuario(usuarioId);
 		
 		if (usuario == null) {
@@ -118,12 +531,27 @@ public class GestorTareasServicio implements Accionable {
 		}
 		
 		usuario.agregarTarea(tarea);
-
+		publicarTareas(usuario);
+		
+		if (tarea != null && usuario.buscarTarea(tarea.getId()) == tarea) {
+			planificador.encolar(usuario, tarea);
+			vigilar(usuarioId, tarea);
+			eventos.publicar(TipoEvento.ASIGNADA, tarea.getId(), usuarioId);
+		}
 	}
 
 	@Override
 	public List<Tarea> listarTareasDeUsuario(int usuarioId) {
 		
+		VersionGestor actual = version;
+		
+		if (actual != null) {
+			return actual.tareasDeUsuario(usuarioId);
+		}
+		if (almacen != null) {
+			return existeUsuario(usuarioId) ? tareasDelAlmacen(AlmacenTareas.Filtro.TODAS.deUsuario(usuarioId)) : null;
+		}
+		
 		Usuario usuario = buscarUsuario(usuarioId);
 		
 		if (usuario == null) {
@@ -135,42 +563,671 @@ public class GestorTareasServicio implements Accionable {
 
 	@Override
 	public boolean marcarTareaComoCompletada(int usuarioId, int tareaId) {
+		return marcarTareaComoCompletada(usuarioId, tareaId, System.currentTimeMillis());
+	}
+	
+	/**
+	 * Marca una tarea como completada en el instante indicado, por ejemplo
+	 * al reproducir el registro.
+	 * 
+	 * @param usuarioId identificador del usuario
+	 * @param tareaId identificador de la tarea
+	 * @param instante instante de finalización
+	 * @return true si la tarea existe y pertenece al usuario
+	 */
+	boolean marcarTareaComoCompletada(int usuarioId, int tareaId, long instante) {
 		
-		Usuario usuario = buscarUsuario(usuarioId);
-		
-		if (usuario == null) {
-			return false;
-		}
-		
-		Tarea tarea = usuario.buscarTarea(tareaId);
+		Tarea tarea = tareaDe(usuarioId, tareaId);
 		
 		if (tarea == null) {
 			return false;
 		}
 		
-		tarea.marcarComoCompletada();
+		if (tarea.getEstado() == EstadoTarea.ACTIVA) {
+			tarea.marcarComoCompletada(instante);
+			if (almacen != null) {
+				guardar(usuarioId, tarea);
+				contarCompletada(usuarioId, tarea);
+			}
+			eventos.publicar(TipoEvento.COMPLETADA, tareaId, usuarioId);
+		}
+		descartarDeCola(tareaId);
+		vencimientos.cancelar(tareaId);
 		return true;
 	}
 
 	@Override
 	public boolean eliminarTareaDeUsuario(int usuarioId, int tareaId) {
 		
+		if (almacen != null) {
+			Tarea tarea = tareaDe(usuarioId, tareaId);
+			if (tarea == null) {
+				return false;
+			}
+			almacen.eliminarTarea(tareaId);
+			descontarTarea(usuarioId, tarea);
+		} else {
+			Usuario usuario = buscarUsuario(usuarioId);
+			
+			if (usuario == null || !usuario.eliminarTarea(tareaId)) {
+				return false;
+			}
+			publicarTareas(usuario);
+		}
+		
+		descartarDeCola(tareaId);
+		vencimientos.cancelar(tareaId);
+		eventos.publicar(TipoEvento.ELIMINADA, tareaId, usuarioId);
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Solo recorre los usuarios del tipo indicado y devuelve una vista no
+	 * modificable que no copia las tareas.
+	 * </p>
+	 */
+	@Override
+	public List<Tarea> listarTareasPorTipoUsuario(TipoUsuario tipo) {
+		VersionGestor actual = version;
+		
+		if (actual != null) {
+			return actual.tareasPorTipoUsuario(tipo);
+		}
+		if (almacen != null) {
+			List<Tarea> tareas = new ArrayList<>();
+			for (Usuario usuario : usuariosDelAlmacen(tipo)) {
+				tareas.addAll(tareasDelAlmacen(AlmacenTareas.Filtro.TODAS.deUsuario(usuario.getId())));
+			}
+			return Collections.unmodifiableList(tareas);
+		}
+		
+		return new VistaTareasDeUsuarios(listarUsuariosPorTipo(tipo));
+	}
+	
+	@Override
+	public List<Tarea> listarTareasDeUsuario(int usuarioId, EstadoTarea estado) {
+		
+		if (almacen != null) {
+			return existeUsuario(usuarioId)
+					? tareasDelAlmacen(AlmacenTareas.Filtro.TODAS.deUsuario(usuarioId).conEstado(estado))
+					: null;
+		}
 		
 		Usuario usuario = buscarUsuario(usuarioId);
 		
 		if (usuario == null) {
+			return null;
+		}
+		
+		return copiar(usuario.tareasConEstado(estado), usuario.getContador().contar(estado));
+	}
+	
+	@Override
+	public List<Tarea> listarTareasDeUsuario(int usuarioId, Prioridad prioridad) {
+		
+		if (almacen != null) {
+			return existeUsuario(usuarioId)
+					? tareasDelAlmacen(AlmacenTareas.Filtro.TODAS.deUsuario(usuarioId).conPrioridad(prioridad))
+					: null;
+		}
+		
+		Usuario usuario = buscarUsuario(usuarioId);
+		
+		if (usuario == null) {
+			return null;
+		}
+		
+		return copiar(usuario.tareasConPrioridad(prioridad), usuario.getContador().contar(prioridad));
+	}
+	
+	// Listados paginados
+	
+	@Override
+	public Pagina<Usuario> listarUsuarios(long cursor, int limite) {
+		Paginacion.comprobar(cursor, limite);
+		if (cursor == Pagina.FIN) {
+			return new Pagina<>(new ArrayList<>(), Pagina.FIN);
+		}
+		
+		List<Usuario> elementos;
+		if (almacen != null) {
+			elementos = cursor >= Integer.MAX_VALUE
+					? new ArrayList<>()
+					: usuariosDelAlmacen(null, (int) cursor + 1, limite);
+		} else {
+			List<Usuario> usuarios = memoria.usuarios();
+			int desde = Paginacion.primeroDespuesDe(usuarios, cursor);
+			elementos = new ArrayList<>(usuarios.subList(desde, Math.min(usuarios.size(), desde + limite)));
+		}
+		long ultimo = elementos.isEmpty() ? cursor : elementos.get(elementos.size() - 1).getId();
+		return Paginacion.pagina(elementos, limite, ultimo);
+	}
+	
+	@Override
+	public Pagina<Tarea> listarTareasDeUsuario(int usuarioId, long cursor, int limite) {
+		Paginacion.comprobar(cursor, limite);
+		
+		if (!existeUsuario(usuarioId)) {
+			return null;
+		}
+		if (cursor == Pagina.FIN) {
+			return new Pagina<>(new ArrayList<>(), Pagina.FIN);
+		}
+		
+		List<Tarea> elementos = tareasDespuesDe(usuarioId, Paginacion.idDesde(cursor), limite);
+		long ultimo = elementos.isEmpty() ? cursor : elementos.get(elementos.size() - 1).getId();
+		return Paginacion.pagina(elementos, limite, ultimo);
+	}
+	
+	@Override
+	public Pagina<Tarea> listarTareasPorTipoUsuario(TipoUsuario tipo, long cursor, int limite) {
+		Paginacion.comprobar(cursor, limite);
+		
+		List<Tarea> elementos = new ArrayList<>();
+		long ultimo = cursor;
+		if (cursor == Pagina.FIN) {
+			return new Pagina<>(elementos, Pagina.FIN);
+		}
+		
+		if (almacen != null) {
+			return tareasDelAlmacenPorTipo(tipo, cursor, limite);
+		}
+		
+		int usuarioDesde = Pagina.usuarioDe(cursor);
+		List<Usuario> grupo = listarUsuariosPorTipo(tipo);
+		
+		for (int i = Paginacion.primeroDespuesDe(grupo, usuarioDesde - 1L); i < grupo.size() && elementos.size() < limite; i++) {
+			Usuario usuario = grupo.get(i);
+			int tareaDesde = usuario.getId() == usuarioDesde ? Pagina.tareaDe(cursor) : Integer.MIN_VALUE;
+			
+			List<Tarea> propias = tareasDespuesDe(usuario.getId(), tareaDesde, limite - elementos.size());
+			if (!propias.isEmpty()) {
+				elementos.addAll(propias);
+				ultimo = Pagina.cursor(usuario.getId(), propias.get(propias.size() - 1).getId());
+			}
+		}
+		return Paginacion.pagina(elementos, limite, ultimo);
+	}
+	
+	/**
+	 * Página de {@link #listarTareasPorTipoUsuario(TipoUsuario, long, int)}
+	 * leída del almacén: los usuarios del tipo se piden por lotes desde el
+	 * del cursor, y de cada uno solo las tareas que faltan para la página.
+	 */
+	private Pagina<Tarea> tareasDelAlmacenPorTipo(TipoUsuario tipo, long cursor, int limite) {
+		List<Tarea> elementos = new ArrayList<>();
+		long ultimo = cursor;
+		int usuarioDesde = Pagina.usuarioDe(cursor);
+		int siguiente = usuarioDesde;
+		
+		while (elementos.size() < limite) {
+			int pedidos = limite - elementos.size();
+			List<Usuario> lote = usuariosDelAlmacen(tipo, siguiente, pedidos);
+			for (Usuario usuario : lote) {
+				if (elementos.size() == limite) {
+					break;
+				}
+				int tareaDesde = usuario.getId() == usuarioDesde ? Pagina.tareaDe(cursor) : Integer.MIN_VALUE;
+				
+				List<Tarea> propias = tareasDespuesDe(usuario.getId(), tareaDesde, limite - elementos.size());
+				if (!propias.isEmpty()) {
+					elementos.addAll(propias);
+					ultimo = Pagina.cursor(usuario.getId(), propias.get(propias.size() - 1).getId());
+				}
+			}
+			
+			// Un lote incompleto es el último del tipo
+			if (lote.size() < pedidos || lote.get(lote.size() - 1).getId() == Integer.MAX_VALUE) {
+				break;
+			}
+			siguiente = lote.get(lote.size() - 1).getId() + 1;
+		}
+		return Paginacion.pagina(elementos, limite, ultimo);
+	}
+	
+	@Override
+	public Stream<Usuario> recorrerUsuarios() {
+		return Paginacion.stream(cursor -> listarUsuarios(cursor, Paginacion.TAMANIO_PAGINA));
+	}
+	
+	@Override
+	public Stream<Tarea> recorrerTareasPorTipoUsuario(TipoUsuario tipo) {
+		return Paginacion.stream(cursor -> listarTareasPorTipoUsuario(tipo, cursor, Paginacion.TAMANIO_PAGINA));
+	}
+	
+	// Consultas paralelas
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Compacta antes las tareas de cada usuario para que los hilos de la
+	 * consulta solo lean; con almacén, las lee antes de cada usuario.
+	 * </p>
+	 */
+	@Override
+	public <R> R consultarTareas(TipoUsuario tipo, Function<? super Stream<Tarea>, ? extends R> consulta) {
+		List<List<Tarea>> listas = new ArrayList<>();
+		if (almacen != null) {
+			for (Usuario usuario : usuariosDelAlmacen(tipo)) {
+				listas.add(tareasDelAlmacen(AlmacenTareas.Filtro.TODAS.deUsuario(usuario.getId())));
+			}
+		} else {
+			for (Usuario usuario : tipo == null ? memoria.usuarios() : listarUsuariosPorTipo(tipo)) {
+				usuario.compactarTareas();
+				listas.add(usuario.getTareas());
+			}
+		}
+		
+		int[] tamanios = new int[listas.size()];
+		for (int i = 0; i < tamanios.length; i++) {
+			tamanios[i] = listas.get(i).size();
+		}
+		
+		return ConsultasParalelas.ejecutar(tamanios, (segmento, desde, hasta, destino) -> {
+			List<Tarea> tareas = listas.get(segmento);
+			for (int i = desde; i < hasta; i++) {
+				destino[i - desde] = tareas.get(i);
+			}
+			return hasta - desde;
+		}, consulta);
+	}
+	
+	// Búsqueda
+	
+	@Override
+	public List<Tarea> buscarTareas(String consulta, EstadoTarea estado, Prioridad prioridad, TipoUsuario tipo, int limite) {
+		int[] ids = indiceDescripciones.buscar(consulta, estado, prioridad, tipo, limite);
+		
+		List<Tarea> encontradas = new ArrayList<>(ids.length);
+		if (almacen != null) {
+			for (Tarea tarea : almacen.cargarTareas(ids)) {
+				if (tarea != null) {
+					encontradas.add(FabricaModelo.copiarTarea(tarea));
+				}
+			}
+			return encontradas;
+		}
+		for (int id : ids) {
+			encontradas.add(buscarUsuario(indiceDescripciones.duenioDe(id)).buscarTarea(id));
+		}
+		return encontradas;
+	}
+	
+	// Cola de trabajo
+	
+	@Override
+	public Tarea verSiguienteTarea() {
+		return almacen == null ? planificador.ver() : cola.ver();
+	}
+	
+	@Override
+	public Tarea verSiguienteTarea(int usuarioId) {
+		return almacen == null ? planificador.ver(usuarioId) : cola.ver(usuarioId);
+	}
+	
+	@Override
+	public Tarea tomarSiguienteTarea() {
+		return almacen == null ? planificador.tomar() : cola.tomar();
+	}
+	
+	@Override
+	public Tarea tomarSiguienteTarea(int usuarioId) {
+		return almacen == null ? planificador.tomar(usuarioId) : cola.tomar(usuarioId);
+	}
+	
+	@Override
+	public boolean liberarTarea(int tareaId) {
+		return almacen == null ? planificador.liberar(tareaId) : cola.liberar(tareaId);
+	}
+	
+	/**
+	 * Saca y reclama una tarea concreta de la cola de trabajo.
+	 * 
+	 * @param tareaId identificador de la tarea
+	 * @return tarea reclamada o null si no estaba en la cola
+	 */
+	Tarea tomarTarea(int tareaId) {
+		return almacen == null ? planificador.tomarTarea(tareaId) : cola.tomarTarea(tareaId);
+	}
+	
+	/**
+	 * @return ids de las tareas reclamadas de la cola de trabajo, ordenados
+	 */
+	int[] getTareasReclamadas() {
+		return almacen == null ? planificador.reclamadas() : cola.reclamadas();
+	}
+	
+	// Estadísticas
+	
+	@Override
+	public ContadorTareas contarTareas() {
+		return contadorGlobal.getContador();
+	}
+	
+	@Override
+	public ContadorTareas contarTareasDeUsuario(int usuarioId) {
+		
+		if (almacen != null) {
+			if (!existeUsuario(usuarioId)) {
+				return null;
+			}
+			ContadorTareas.Acumulador contador = new ContadorTareas.Acumulador();
+			almacen.recorrerTareas(AlmacenTareas.Filtro.TODAS.deUsuario(usuarioId), (duenio, tarea) -> {
+				contador.sumar(tarea.getEstado(), tarea.getPrioridad(), 1);
+				return true;
+			});
+			return contador.getContador();
+		}
+		
+		Usuario usuario = buscarUsuario(usuarioId);
+		
+		if (usuario == null) {
+			return null;
+		}
+		
+		return usuario.getContador();
+	}
+	
+	@Override
+	public ContadorTareas contarTareasPorTipoUsuario(TipoUsuario tipo) {
+		return contadoresPorTipo.get(tipo).getContador();
+	}
+	
+	// Carga masiva
+	
+	@Override
+	public int reservarIdsTareas(int cantidad) {
+		if (cantidad < 0 || contadorTareas > limiteTareas - cantidad) {
+			throw new IllegalArgumentException("Cantidad de identificadores no válida.");
+		}
+		
+		int primero = contadorTareas;
+		contadorTareas += cantidad;
+		return primero;
+	}
+	
+	@Override
+	public void agregarTareasAUsuario(int usuarioId, List<Tarea> tareas) {
+		
+		if (almacen != null) {
+			asignarEnAlmacen(usuarioId, tareas);
+			return;
+		}
+		
+		Usuario usuario = buscarUsuario(usuarioId);
+		
+		if (usuario == null) {
+			throw new IllegalArgumentException("Usuario no encontrado.");
+		}
+		
+		usuario.asegurarCapacidad(tareas.size());
+		for (Tarea tarea : tareas) {
+			usuario.agregarTarea(tarea);
+			
+			if (tarea != null && usuario.buscarTarea(tarea.getId()) == tarea) {
+				planificador.encolar(usuario, tarea);
+				vigilar(usuarioId, tarea);
+				eventos.publicar(TipoEvento.ASIGNADA, tarea.getId(), usuarioId);
+			}
+		}
+		publicarTareas(usuario);
+	}
+	
+	/**
+	 * Asigna tareas a un usuario del almacén. Como
+	 * {@link Usuario#agregarTarea(Tarea)}, ignora las nulas y las que el
+	 * usuario ya tiene; el dueño de cada una se consulta en el índice, sin
+	 * leer el almacén. Las tareas se escriben en un solo lote antes de
+	 * registrarlas en memoria.
+	 * 
+	 * @throws IllegalArgumentException si el usuario no existe o alguna
+	 * tarea ya es de otro usuario
+	 */
+	private void asignarEnAlmacen(int usuarioId, List<Tarea> tareas) {
+		if (!existeUsuario(usuarioId)) {
+			throw new IllegalArgumentException("Usuario no encontrado.");
+		}
+		
+		List<Tarea> nuevas = new ArrayList<>(tareas.size());
+		MapaEnteros vistas = new MapaEnteros(tareas.size());
+		for (Tarea tarea : tareas) {
+			if (tarea == null || vistas.contiene(tarea.getId())) {
+				continue;
+			}
+			int duenio = indiceDescripciones.duenioDe(tarea.getId());
+			if (duenio != -1 && duenio != usuarioId) {
+				throw new IllegalArgumentException("La tarea ya pertenece a otro usuario.");
+			}
+			if (duenio == -1) {
+				vistas.put(tarea.getId(), 0);
+				nuevas.add(tarea);
+			}
+		}
+		if (nuevas.isEmpty()) {
+			return;
+		}
+		
+		almacen.guardarTareas(usuarioId, nuevas);
+		for (Tarea tarea : nuevas) {
+			registrarTarea(usuarioId, tarea);
+			cola.encolar(usuarioId, tarea);
+			vigilar(usuarioId, tarea);
+			eventos.publicar(TipoEvento.ASIGNADA, tarea.getId(), usuarioId);
+		}
+	}
+	
+	@Override
+	public int importar(Reader entrada, FormatoIntercambio formato) throws IOException {
+		return Intercambio.importar(this, entrada, formato);
+	}
+	
+	@Override
+	public void exportar(Writer salida, FormatoIntercambio formato) throws IOException {
+		Intercambio.exportar(this, salida, formato);
+	}
+	
+	// Eventos
+	
+	@Override
+	public Suscripcion suscribir(OyenteTareas oyente, int loteMaximo) {
+		return eventos.suscribir(oyente, loteMaximo);
+	}
+	
+	// Vencimientos
+	
+	@Override
+	public boolean fijarVencimiento(int usuarioId, int tareaId, long venceEn, long antelacion) {
+		Vencimientos.comprobar(venceEn, antelacion);
+		
+		Tarea tarea = tareaDe(usuarioId, tareaId);
+		
+		if (tarea == null) {
 			return false;
 		}
-		return usuario.eliminarTarea(tareaId);
+		
+		tarea.setVenceEn(venceEn);
+		guardar(usuarioId, tarea);
+		boolean activa = tarea.getEstado() == EstadoTarea.ACTIVA;
+		vencimientos.programar(usuarioId, tareaId, activa ? venceEn : 0,
+				Vencimientos.escalarEn(tarea.esUrgente(), venceEn, antelacion));
+		return true;
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Debe llamarse desde el mismo hilo que usa el gestor, ya que esta
+	 * clase no es segura para uso concurrente.
+	 * </p>
+	 */
 	@Override
-	public List<Tarea> listarTareasPorTipoUsuario(TipoUsuario tipo) {
-
-	    return usuarios.stream()
-	            .filter(u -> u.getTipo() == tipo)
-	            .flatMap(u -> u.getTareas().stream())
-	            .toList();
+	public int revisarVencimientos(long ahora, OyenteVencimientos oyente) {
+		Vencimientos.comprobar(oyente);
+		
+		int avisos = 0;
+		for (long disparo : vencimientos.revisar(ahora)) {
+			int usuarioId = Vencimientos.usuarioDe(disparo);
+			Tarea tarea = tareaDe(usuarioId, Vencimientos.tareaDe(disparo));
+			
+			if (tarea == null || tarea.getEstado() != EstadoTarea.ACTIVA) {
+				continue;
+			}
+			
+			if (Vencimientos.esEscalado(disparo)) {
+				if (tarea.escalar()) {
+					guardar(usuarioId, tarea);
+					escalarEnCola(tarea.getId());
+					oyente.alEscalar(usuarioId, tarea);
+					avisos++;
+				}
+				if (!tarea.estaVencida(ahora)) {
+					vencimientos.programar(usuarioId, tarea.getId(), tarea.getVenceEn(), 0);
+					continue;
+				}
+			}
+			if (tarea.estaVencida(ahora)) {
+				oyente.alVencer(usuarioId, tarea);
+				avisos++;
+			}
+		}
+		return avisos;
+	}
+	
+	/**
+	 * Escala una tarea activa como lo hace {@link #revisarVencimientos}, sin
+	 * avisar a ningún oyente, por ejemplo al aplicar un escalado recibido
+	 * del primario. Queda vigilado solo su vencimiento.
+	 * 
+	 * @param usuarioId identificador del dueño
+	 * @param tareaId identificador de la tarea
+	 * @return true si la tarea se escaló
+	 */
+	boolean escalarTarea(int usuarioId, int tareaId) {
+		Tarea tarea = tareaDe(usuarioId, tareaId);
+		
+		if (tarea == null || tarea.getEstado() != EstadoTarea.ACTIVA || !tarea.escalar()) {
+			return false;
+		}
+		
+		guardar(usuarioId, tarea);
+		escalarEnCola(tareaId);
+		vencimientos.programar(usuarioId, tareaId, tarea.getVenceEn(), 0);
+		return true;
+	}
+	
+	/**
+	 * Vigila el vencimiento de una tarea activa recién asignada que ya lo
+	 * traía fijado.
+	 */
+	private void vigilar(int usuarioId, Tarea tarea) {
+		if (tarea.getVenceEn() != 0 && tarea.getEstado() == EstadoTarea.ACTIVA) {
+			vencimientos.programar(usuarioId, tarea.getId(), tarea.getVenceEn(), 0);
+		}
+	}
+	
+	/**
+	 * Devuelve el instante de escalado aún pendiente de una tarea, para
+	 * guardarlo en una instantánea.
+	 * 
+	 * @param tareaId identificador de la tarea
+	 * @return instante de escalado, o 0 si no tiene uno pendiente
+	 */
+	long escaladoPendiente(int tareaId) {
+		return vencimientos.escaladoPendiente(tareaId);
+	}
+	
+	/**
+	 * Copia en una lista las tareas de un recorrido de tamaño conocido.
+	 */
+	private static List<Tarea> copiar(Iterable<Tarea> tareas, int cantidad) {
+		List<Tarea> lista = new ArrayList<>(cantidad);
+		for (Tarea tarea : tareas) {
+			lista.add(tarea);
+		}
+		return lista;
+	}
+	
+	// Restauración
+	
+	/**
+	 * Vuelve a registrar un usuario con su identificador original, por
+	 * ejemplo al cargar una instantánea o reproducir el registro.
+	 * 
+	 * @param id identificador original
+	 * @param nombre nombre del usuario
+	 * @param tipo tipo de usuario
+	 * @return usuario restaurado
+	 * @throws IllegalArgumentException si ya existe un usuario con ese id, o
+	 * si es negativo y el gestor publica versiones
+	 */
+	Usuario restaurarUsuario(int id, String nombre, TipoUsuario tipo) {
+		if (existeUsuario(id)) {
+			throw new IllegalArgumentException("Usuario duplicado: " + id);
+		}
+		if (version != null && id < 0) {
+			throw new IllegalArgumentException("Id de usuario no válido: " + id);
+		}
+		
+		contadorUsuarios = Math.max(contadorUsuarios, id + 1);
+		return registrarUsuario(FabricaModelo.nuevoUsuario(id, nombre, tipo));
+	}
+	
+	/**
+	 * Avanza el contador de tareas para que no vuelva a generar ids ya
+	 * usados.
+	 * 
+	 * @param siguiente siguiente id a generar como mínimo
+	 */
+	void restaurarContadorTareas(int siguiente) {
+		contadorTareas = Math.max(contadorTareas, siguiente);
+	}
+	
+	/**
+	 * Avanza el contador de usuarios para que no vuelva a generar ids ya
+	 * usados.
+	 * 
+	 * @param siguiente siguiente id a generar como mínimo
+	 */
+	void restaurarContadorUsuarios(int siguiente) {
+		contadorUsuarios = Math.max(contadorUsuarios, siguiente);
+	}
+	
+	/**
+	 * Convierte el gestor en un fragmento de {@link GestorTareasFragmentado}:
+	 * desde ahora solo genera los ids de usuario que el anillo le asigna y
+	 * los ids de tarea de su rango.
+	 * 
+	 * @param anillo reparto de ids entre los fragmentos
+	 * @param fragmento número de este gestor en el anillo
+	 */
+	void fragmentar(AnilloFragmentos anillo, int fragmento) {
+		this.anillo = anillo;
+		this.fragmento = fragmento;
+		this.contadorTareas = Math.max(contadorTareas, anillo.primeraTarea(fragmento));
+		this.limiteTareas = anillo.limiteTareas(fragmento);
+	}
+	
+	/**
+	 * Devuelve el siguiente id de usuario que se generará.
+	 * 
+	 * @return siguiente id de usuario
+	 */
+	int getSiguienteIdUsuario() {
+		return contadorUsuarios;
+	}
+	
+	/**
+	 * Devuelve el siguiente id de tarea que se generará.
+	 * 
+	 * @return siguiente id de tarea
+	 */
+	int getSiguienteIdTarea() {
+		return contadorTareas;
 	}
 
 }
@@ -0,0 +1,233 @@
+package servicio;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de valores no negativos con precisión relativa fija, al
+ * estilo de HdrHistogram, pensado para registrar latencias y tamaños desde
+ * muchos hilos con un coste mínimo.
+ * 
+ * <p>
+ * Los valores se agrupan en cubetas logarítmicas divididas en
+ * {@value #SUBCUBETAS} partes iguales, así que un valor y el que se
+ * informa para su cubeta difieren en menos de 1/{@value #SUBCUBETAS} del
+ * valor.
+ * Los valores menores que {@value #SUBCUBETAS} son exactos y los mayores
+ * que {@link #MAXIMO} se cuentan como {@link #MAXIMO}.
+ * </p>
+ * 
+ * <p>
+ * Registrar un valor es un solo incremento atómico sobre la franja de
+ * conteos del hilo que llama, elegida por su id, de modo que hilos
+ * distintos no compiten por la misma línea de caché. Las lecturas suman
+ * las franjas; no detienen a los hilos que registran, por lo que un
+ * {@link Resumen} puede no incluir los valores registrados durante su
+ * construcción.
+ * </p>
+ */
+
+public final class Histograma {
+	
+	/** Bits de precisión dentro de cada potencia de dos */
+	private static final int BITS_SUBCUBETA = 4;
+	
+	/** Partes en que se divide cada potencia de dos */
+	public static final int SUBCUBETAS = 1 << BITS_SUBCUBETA;
+	
+	/** Bits del mayor valor distinguible */
+	private static final int BITS_MAXIMO = 40;
+	
+	/** Mayor valor distinguible, unos 18 minutos si se mide en nanosegundos */
+	public static final long MAXIMO = (1L << BITS_MAXIMO) - 1;
+	
+	private static final int CUBETAS = SUBCUBETAS + (BITS_MAXIMO - BITS_SUBCUBETA) * SUBCUBETAS;
+	
+	/** Conteos de una franja, con relleno para no compartir líneas de caché con la siguiente */
+	private static final int ANCHO_FRANJA = CUBETAS + 8;
+	
+	/** Franjas por defecto: la potencia de dos que cubre los procesadores, hasta 16 */
+	private static final int FRANJAS = Integer.highestOneBit(Math.min(16, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+	
+	private final AtomicLongArray conteos;
+	private final int mascaraFranjas;
+	
+	/**
+	 * Construye un histograma vacío con una franja por procesador.
+	 */
+	public Histograma() {
+		this(FRANJAS);
+	}
+	
+	/**
+	 * Construye un histograma vacío.
+	 * 
+	 * @param franjas franjas de conteos; se redondea a la potencia de dos
+	 * siguiente
+	 * @throws IllegalArgumentException si las franjas no son positivas
+	 */
+	public Histograma(int franjas) {
+		if (franjas <= 0 || franjas > 1 << 16) {
+			throw new IllegalArgumentException("Cantidad de franjas no válida: " + franjas);
+		}
+		
+		int potencia = Integer.highestOneBit(franjas * 2 - 1);
+		this.conteos = new AtomicLongArray(potencia * ANCHO_FRANJA);
+		this.mascaraFranjas = potencia - 1;
+	}
+	
+	/**
+	 * Registra un valor. Los negativos se cuentan como cero.
+	 * 
+	 * @param valor valor a registrar
+	 */
+	public void registrar(long valor) {
+		int franja = (int) Thread.currentThread().threadId() & mascaraFranjas;
+		conteos.getAndIncrement(franja * ANCHO_FRANJA + cubeta(valor));
+	}
+	
+	/**
+	 * Pone todos los conteos a cero. Los valores registrados a la vez desde
+	 * otros hilos pueden conservarse o perderse.
+	 */
+	public void reiniciar() {
+		for (int i = 0; i < conteos.length(); i++) {
+			conteos.set(i, 0);
+		}
+	}
+	
+	/**
+	 * Suma las franjas en un resumen independiente del histograma.
+	 * 
+	 * @return conteos actuales
+	 */
+	public Resumen resumen() {
+		long[] suma = new long[CUBETAS];
+		for (int franja = 0; franja <= mascaraFranjas; franja++) {
+			int base = franja * ANCHO_FRANJA;
+			for (int i = 0; i < CUBETAS; i++) {
+				suma[i] += conteos.get(base + i);
+			}
+		}
+		return new Resumen(suma);
+	}
+	
+	/**
+	 * Calcula la cubeta de un valor: los menores que {@link #SUBCUBETAS}
+	 * tienen una cubeta cada uno; el resto, la subcubeta que indican los
+	 * {@value #BITS_SUBCUBETA} bits que siguen al más alto.
+	 */
+	static int cubeta(long valor) {
+		if (valor < SUBCUBETAS) {
+			return valor < 0 ? 0 : (int) valor;
+		}
+		if (valor > MAXIMO) {
+			valor = MAXIMO;
+		}
+		int exponente = 63 - Long.numberOfLeadingZeros(valor);
+		int subcubeta = (int) (valor >>> (exponente - BITS_SUBCUBETA)) & (SUBCUBETAS - 1);
+		return SUBCUBETAS + ((exponente - BITS_SUBCUBETA) << BITS_SUBCUBETA) + subcubeta;
+	}
+	
+	/** Menor valor de una cubeta */
+	static long desde(int cubeta) {
+		if (cubeta < SUBCUBETAS) {
+			return cubeta;
+		}
+		int exponente = ((cubeta - SUBCUBETAS) >>> BITS_SUBCUBETA) + BITS_SUBCUBETA;
+		long subcubeta = cubeta & (SUBCUBETAS - 1);
+		return (1L << exponente) | (subcubeta << (exponente - BITS_SUBCUBETA));
+	}
+	
+	/** Mayor valor de una cubeta */
+	static long hasta(int cubeta) {
+		return cubeta + 1 < CUBETAS ? desde(cubeta + 1) - 1 : MAXIMO;
+	}
+	
+	/**
+	 * Conteos de un histograma en un momento dado.
+	 */
+	public static final class Resumen {
+		
+		private final long[] conteos;
+		private final long conteo;
+		
+		private Resumen(long[] conteos) {
+			this.conteos = conteos;
+			long conteo = 0;
+			for (long c : conteos) {
+				conteo += c;
+			}
+			this.conteo = conteo;
+		}
+		
+		/**
+		 * Devuelve la cantidad de valores registrados.
+		 * 
+		 * @return cantidad de valores
+		 */
+		public long conteo() {
+			return conteo;
+		}
+		
+		/**
+		 * Devuelve la media, tomando cada valor como el centro de su cubeta.
+		 * 
+		 * @return media, o 0 si no hay valores
+		 */
+		public double media() {
+			if (conteo == 0) {
+				return 0;
+			}
+			double suma = 0;
+			for (int i = 0; i < conteos.length; i++) {
+				if (conteos[i] != 0) {
+					suma += conteos[i] * ((desde(i) + hasta(i)) / 2.0);
+				}
+			}
+			return suma / conteo;
+		}
+		
+		/**
+		 * Devuelve el valor bajo el que queda la fracción indicada de los
+		 * valores registrados, redondeado al mayor valor de su cubeta.
+		 * 
+		 * @param fraccion fracción entre 0 y 1, por ejemplo 0.99
+		 * @return percentil, o 0 si no hay valores
+		 * @throws IllegalArgumentException si la fracción no está entre 0 y 1
+		 */
+		public long percentil(double fraccion) {
+			if (!(fraccion >= 0 && fraccion <= 1)) {
+				throw new IllegalArgumentException("Fracción no válida: " + fraccion);
+			}
+			if (conteo == 0) {
+				return 0;
+			}
+			
+			long posicion = Math.max(1, (long) Math.ceil(fraccion * conteo));
+			long acumulado = 0;
+			for (int i = 0; i < conteos.length; i++) {
+				acumulado += conteos[i];
+				if (acumulado >= posicion) {
+					return hasta(i);
+				}
+			}
+			return MAXIMO;
+		}
+		
+		/**
+		 * Devuelve el mayor valor registrado, redondeado al mayor valor de
+		 * su cubeta.
+		 * 
+		 * @return máximo, o 0 si no hay valores
+		 */
+		public long maximo() {
+			for (int i = conteos.length - 1; i >= 0; i--) {
+				if (conteos[i] != 0) {
+					return hasta(i);
+				}
+			}
+			return 0;
+		}
+	}
+
+}
@@ -0,0 +1,224 @@
+package servicio;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import modelo.EstadoTarea;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+
+/**
+ * Lectura y escritura de instantáneas compactas del estado del gestor.
+ * 
+ * <p>
+ * Una instantánea guarda los contadores de ids y todos los usuarios con sus
+ * tareas, incluidos sus instantes y el escalado pendiente de las que tienen
+ * vencimiento, y los ids de las tareas reclamadas de la cola de trabajo. Se
+ * leen también las de la versión 1, sin instantes, y las de la versión 2,
+ * sin reclamadas. Se escribe en un archivo temporal que se fuerza a disco y luego se
+ * renombra de forma atómica, por lo que una instantánea visible siempre está
+ * completa.
+ * </p>
+ */
+
+final class Instantanea {
+	
+	/** Marca de inicio del archivo ("STK1") */
+	private static final int MARCA = 0x53544B31;
+	
+	/** Marca de fin del archivo */
+	private static final int MARCA_FIN = ~MARCA;
+	
+	private static final byte VERSION = 3;
+	
+	/** Versión sin tareas reclamadas */
+	private static final byte VERSION_SIN_RECLAMADAS = 2;
+	
+	/** Versión sin instantes ni vencimientos */
+	private static final byte VERSION_SIN_INSTANTES = 1;
+	
+	private static final int BUFER = 1 << 20;
+	
+	private Instantanea() {
+	}
+	
+	/**
+	 * Escribe el estado completo del gestor.
+	 * 
+	 * @param archivo archivo destino
+	 * @param gestor gestor a guardar
+	 * @throws IOException si falla la escritura
+	 */
+	static void escribir(Path archivo, GestorTareasServicio gestor) throws IOException {
+		Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+		
+		try (FileChannel canal = FileChannel.open(temporal,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			escribir(Channels.newOutputStream(canal), gestor);
+			canal.force(true);
+		}
+		
+		Files.move(temporal, archivo, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+	
+	/**
+	 * Escribe el estado completo del gestor en un flujo, sin cerrarlo. Lo
+	 * usa también {@link GestorTareasReplicado} para enviar el estado a una
+	 * réplica atrasada.
+	 * 
+	 * @param destino flujo destino
+	 * @param gestor gestor a guardar
+	 * @throws IOException si falla la escritura
+	 */
+	static void escribir(OutputStream destino, GestorTareasServicio gestor) throws IOException {
+		DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(destino, BUFER));
+		
+		List<Usuario> usuarios = gestor.listarUsuarios();
+		salida.writeInt(MARCA);
+		salida.writeByte(VERSION);
+		salida.writeInt(gestor.getSiguienteIdUsuario());
+		salida.writeInt(gestor.getSiguienteIdTarea());
+		salida.writeInt(usuarios.size());
+		
+		for (Usuario usuario : usuarios) {
+			salida.writeInt(usuario.getId());
+			salida.writeByte(usuario.getTipo().ordinal());
+			escribirTexto(salida, usuario.getNombre());
+			
+			List<Tarea> tareas = usuario.getTareas();
+			salida.writeInt(tareas.size());
+			for (Tarea tarea : tareas) {
+				salida.writeInt(tarea.getId());
+				salida.writeByte(tarea.getPrioridad().ordinal());
+				salida.writeByte(tarea.getEstado().ordinal());
+				escribirTexto(salida, tarea.getDescripcion());
+				salida.writeLong(tarea.getCreadaEn());
+				salida.writeLong(tarea.getCompletadaEn());
+				salida.writeLong(tarea.getVenceEn());
+				salida.writeLong(gestor.escaladoPendiente(tarea.getId()));
+				salida.writeBoolean(tarea.isEscalada());
+			}
+		}
+		
+		int[] reclamadas = gestor.getTareasReclamadas();
+		salida.writeInt(reclamadas.length);
+		for (int tareaId : reclamadas) {
+			salida.writeInt(tareaId);
+		}
+		
+		salida.writeInt(MARCA_FIN);
+		salida.flush();
+	}
+	
+	/**
+	 * Carga una instantánea sobre un gestor vacío.
+	 * 
+	 * @param archivo archivo de la instantánea
+	 * @param destino gestor vacío
+	 * @throws IOException si el archivo no se puede leer o no es válido
+	 */
+	static void leer(Path archivo, GestorTareasServicio destino) throws IOException {
+		try (InputStream entrada = Files.newInputStream(archivo)) {
+			leer(entrada, destino, archivo.toString());
+		}
+	}
+	
+	/**
+	 * Carga sobre un gestor vacío la instantánea que ocupa el resto de un
+	 * flujo, sin cerrarlo.
+	 * 
+	 * @param origen flujo con la instantánea
+	 * @param destino gestor vacío
+	 * @param nombre nombre del origen para los mensajes de error
+	 * @throws IOException si el flujo no se puede leer o no es válido
+	 */
+	static void leer(InputStream origen, GestorTareasServicio destino, String nombre) throws IOException {
+		DataInputStream entrada = new DataInputStream(new BufferedInputStream(origen, BUFER));
+		if (entrada.readInt() != MARCA) {
+			throw new IOException("Instantánea no válida: " + nombre);
+		}
+		byte version = entrada.readByte();
+		if (version != VERSION && version != VERSION_SIN_RECLAMADAS && version != VERSION_SIN_INSTANTES) {
+			throw new IOException("Versión de instantánea no soportada: " + version);
+		}
+		boolean conInstantes = version != VERSION_SIN_INSTANTES;
+		
+		int siguienteUsuario = entrada.readInt();
+		int siguienteTarea = entrada.readInt();
+		int cantidadUsuarios = entrada.readInt();
+		
+		for (int u = 0; u < cantidadUsuarios; u++) {
+			int id = entrada.readInt();
+			TipoUsuario tipo = TipoUsuario.values()[entrada.readByte()];
+			Usuario usuario = destino.restaurarUsuario(id, leerTexto(entrada), tipo);
+			
+			int cantidadTareas = entrada.readInt();
+			for (int t = 0; t < cantidadTareas; t++) {
+				int tareaId = entrada.readInt();
+				Prioridad prioridad = Prioridad.values()[entrada.readByte()];
+				EstadoTarea estado = EstadoTarea.values()[entrada.readByte()];
+				String descripcion = leerTexto(entrada);
+				long creadaEn = conInstantes ? entrada.readLong() : 0;
+				long completadaEn = conInstantes ? entrada.readLong() : 0;
+				long venceEn = conInstantes ? entrada.readLong() : 0;
+				long escaladoPendiente = conInstantes ? entrada.readLong() : 0;
+				boolean escalada = conInstantes && entrada.readBoolean();
+				
+				Tarea tarea = FabricaModelo.nuevaTarea(tareaId, descripcion, prioridad, creadaEn);
+				tarea.setVenceEn(venceEn);
+				if (escalada) {
+					tarea.escalar();
+				}
+				if (estado == EstadoTarea.COMPLETADA) {
+					tarea.marcarComoCompletada(completadaEn);
+				}
+				destino.agregarTareaAUsuario(usuario.getId(), tarea);
+				if (escaladoPendiente != 0) {
+					destino.fijarVencimiento(usuario.getId(), tareaId, venceEn, venceEn - escaladoPendiente);
+				}
+			}
+		}
+		
+		if (version == VERSION) {
+			int cantidadReclamadas = entrada.readInt();
+			for (int r = 0; r < cantidadReclamadas; r++) {
+				destino.tomarTarea(entrada.readInt());
+			}
+		}
+		
+		if (entrada.readInt() != MARCA_FIN) {
+			throw new IOException("Instantánea incompleta: " + nombre);
+		}
+		
+		destino.restaurarContadorUsuarios(siguienteUsuario);
+		destino.restaurarContadorTareas(siguienteTarea);
+	}
+	
+	private static void escribirTexto(DataOutputStream salida, String texto) throws IOException {
+		byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+		salida.writeInt(bytes.length);
+		salida.write(bytes);
+	}
+	
+	private static String leerTexto(DataInputStream entrada) throws IOException {
+		byte[] bytes = new byte[entrada.readInt()];
+		entrada.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,739 @@
+package servicio;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import interfaces.Accionable;
+import modelo.EstadoTarea;
+import modelo.FormatoIntercambio;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import util.MapaEnteros;
+
+/**
+ * Importación y exportación en bloque de usuarios y tareas, común a todas
+ * las implementaciones de {@link Accionable}.
+ *
+ * <p>
+ * La importación lee la entrada por lotes de {@link #LOTE} tareas. Por cada
+ * lote reserva los identificadores de una vez con
+ * {@link Accionable#reservarIdsTareas(int)} y asigna las tareas con
+ * {@link Accionable#agregarTareasAUsuario(int, List)}, agrupando las
+ * tareas consecutivas del mismo usuario. Solo se guarda en memoria el lote
+ * actual y la correspondencia entre ids de la entrada y ids nuevos de
+ * usuario.
+ * </p>
+ *
+ * <p>
+ * Los lectores reutilizan sus búferes y reconocen los nombres de los
+ * enumerados sin crear cadenas; solo se crean los textos de nombres y
+ * descripciones.
+ * </p>
+ */
+
+final class Intercambio {
+	
+	/** Tareas leídas antes de asignarlas al gestor */
+	static final int LOTE = 8192;
+	
+	/** Tamaño de los búferes de lectura y escritura */
+	private static final int BUFER = 1 << 16;
+	
+	private Intercambio() {
+	}
+	
+	/**
+	 * Importa usuarios y tareas en el gestor.
+	 *
+	 * @param destino gestor donde se importa
+	 * @param entrada texto a importar
+	 * @param formato formato del texto
+	 * @return número de tareas importadas
+	 * @throws IOException si falla la lectura
+	 * @throws IllegalArgumentException si la entrada está mal formada
+	 */
+	static int importar(Accionable destino, Reader entrada, FormatoIntercambio formato) throws IOException {
+		if (entrada == null || formato == null) {
+			throw new IllegalArgumentException("Entrada o formato no válido.");
+		}
+		
+		Lector lector = formato == FormatoIntercambio.CSV ? new LectorCsv(entrada) : new LectorJson(entrada);
+		Registro registro = new Registro();
+		Lote lote = new Lote();
+		MapaEnteros idsUsuario = new MapaEnteros();
+		int importadas = 0;
+		
+		while (lector.leer(registro)) {
+			if (registro.esUsuario) {
+				Usuario usuario = destino.crearUsuario(registro.texto, registro.tipoUsuario);
+				idsUsuario.put(registro.id, usuario.getId());
+				continue;
+			}
+			
+			int usuarioId = idsUsuario.get(registro.usuario);
+			if (usuarioId == MapaEnteros.NO_ENCONTRADO) {
+				if (destino.buscarUsuario(registro.usuario) == null) {
+					throw lector.error("Usuario no encontrado: " + registro.usuario);
+				}
+				usuarioId = registro.usuario;
+				idsUsuario.put(usuarioId, usuarioId);
+			}
+			lote.agregar(usuarioId, registro);
+			
+			if (lote.tamanio == LOTE) {
+				importadas += lote.asignar(destino);
+			}
+		}
+		
+		return importadas + lote.asignar(destino);
+	}
+	
+	/**
+	 * Exporta todos los usuarios del gestor, cada uno seguido de sus
+	 * tareas.
+	 *
+	 * @param origen gestor a exportar
+	 * @param salida destino del texto; se vacía pero no se cierra
+	 * @param formato formato del texto
+	 * @throws IOException si falla la escritura
+	 */
+	static void exportar(Accionable origen, Writer salida, FormatoIntercambio formato) throws IOException {
+		if (salida == null || formato == null) {
+			throw new IllegalArgumentException("Salida o formato no válido.");
+		}
+		
+		boolean csv = formato == FormatoIntercambio.CSV;
+		Writer destino = salida instanceof BufferedWriter ? salida : new BufferedWriter(salida, BUFER);
+		StringBuilder linea = new StringBuilder(256);
+		
+		for (Usuario usuario : origen.listarUsuarios()) {
+			List<Tarea> tareas = origen.listarTareasDeUsuario(usuario.getId());
+			if (tareas == null) {
+				continue; // eliminado mientras se exportaba
+			}
+			
+			linea.setLength(0);
+			if (csv) {
+				linea.append("usuario,").append(usuario.getId()).append(',')
+						.append(usuario.getTipo().name()).append(',');
+				textoCsv(linea, usuario.getNombre());
+			} else {
+				linea.append("{\"registro\":\"usuario\",\"id\":").append(usuario.getId())
+						.append(",\"tipo\":\"").append(usuario.getTipo().name())
+						.append("\",\"nombre\":");
+				textoJson(linea, usuario.getNombre());
+				linea.append('}');
+			}
+			destino.append(linea).append('\n');
+			
+			for (Tarea tarea : tareas) {
+				linea.setLength(0);
+				if (csv) {
+					linea.append("tarea,").append(usuario.getId()).append(',').append(tarea.getId())
+							.append(',').append(tarea.getPrioridad().name())
+							.append(',').append(tarea.getEstado().name()).append(',');
+					textoCsv(linea, tarea.getDescripcion());
+				} else {
+					linea.append("{\"registro\":\"tarea\",\"usuario\":").append(usuario.getId())
+							.append(",\"id\":").append(tarea.getId())
+							.append(",\"prioridad\":\"").append(tarea.getPrioridad().name())
+							.append("\",\"estado\":\"").append(tarea.getEstado().name())
+							.append("\",\"descripcion\":");
+					textoJson(linea, tarea.getDescripcion());
+					linea.append('}');
+				}
+				destino.append(linea).append('\n');
+			}
+		}
+		
+		destino.flush();
+	}
+	
+	/**
+	 * Agrega un campo de texto CSV, entre comillas solo si hace falta.
+	 */
+	private static void textoCsv(StringBuilder linea, String texto) {
+		boolean comillas = false;
+		for (int i = 0; i < texto.length() && !comillas; i++) {
+			char c = texto.charAt(i);
+			comillas = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		
+		if (!comillas) {
+			linea.append(texto);
+			return;
+		}
+		
+		linea.append('"');
+		for (int i = 0; i < texto.length(); i++) {
+			char c = texto.charAt(i);
+			if (c == '"') {
+				linea.append('"');
+			}
+			linea.append(c);
+		}
+		linea.append('"');
+	}
+	
+	/**
+	 * Agrega una cadena JSON con los caracteres de control escapados.
+	 */
+	private static void textoJson(StringBuilder linea, String texto) {
+		linea.append('"');
+		for (int i = 0; i < texto.length(); i++) {
+			char c = texto.charAt(i);
+			switch (c) {
+				case '"':
+					linea.append("\\\"");
+					break;
+				case '\\':
+					linea.append("\\\\");
+					break;
+				case '\n':
+					linea.append("\\n");
+					break;
+				case '\r':
+					linea.append("\\r");
+					break;
+				case '\t':
+					linea.append("\\t");
+					break;
+				default:
+					if (c < 0x20) {
+						linea.append(String.format("\\u%04x", (int) c));
+					} else {
+						linea.append(c);
+					}
+			}
+		}
+		linea.append('"');
+	}
+	
+	/**
+	 * Registro leído de la entrada. Se reutiliza entre líneas.
+	 */
+	private static final class Registro {
+		boolean esUsuario;
+		int id;
+		int usuario;
+		TipoUsuario tipoUsuario;
+		Prioridad prioridad;
+		EstadoTarea estado;
+		String texto;
+	}
+	
+	/**
+	 * Tareas leídas y aún no asignadas, guardadas por columnas.
+	 */
+	private static final class Lote {
+		
+		final int[] usuarios = new int[LOTE];
+		final String[] descripciones = new String[LOTE];
+		final Prioridad[] prioridades = new Prioridad[LOTE];
+		final EstadoTarea[] estados = new EstadoTarea[LOTE];
+		int tamanio;
+		
+		void agregar(int usuarioId, Registro registro) {
+			usuarios[tamanio] = usuarioId;
+			descripciones[tamanio] = registro.texto;
+			prioridades[tamanio] = registro.prioridad;
+			estados[tamanio] = registro.estado;
+			tamanio++;
+		}
+		
+		/**
+		 * Crea las tareas del lote con un rango de ids reservado y las
+		 * asigna por tramos de un mismo usuario.
+		 *
+		 * @return número de tareas asignadas
+		 */
+		int asignar(Accionable destino) {
+			if (tamanio == 0) {
+				return 0;
+			}
+			
+			int primerId = destino.reservarIdsTareas(tamanio);
+			List<Tarea> tramo = new ArrayList<>();
+			
+			for (int i = 0; i < tamanio; i++) {
+				Tarea tarea = FabricaModelo.nuevaTarea(primerId + i, descripciones[i], prioridades[i]);
+				if (estados[i] == EstadoTarea.COMPLETADA) {
+					tarea.marcarComoCompletada();
+				}
+				tramo.add(tarea);
+				
+				if (i + 1 == tamanio || usuarios[i + 1] != usuarios[i]) {
+					destino.agregarTareasAUsuario(usuarios[i], tramo);
+					tramo.clear();
+				}
+			}
+			
+			int asignadas = tamanio;
+			Arrays.fill(descripciones, 0, tamanio, null);
+			tamanio = 0;
+			return asignadas;
+		}
+	}
+	
+	/**
+	 * Lector de registros sobre un búfer de caracteres propio.
+	 */
+	private abstract static class Lector {
+		
+		/** Fin de la entrada */
+		static final int FIN = -1;
+		
+		private final Reader entrada;
+		private final char[] bufer = new char[BUFER];
+		private int posicion;
+		private int limite;
+		
+		/** Línea actual */
+		private int linea = 1;
+		
+		/** Línea donde empieza el registro actual, para los mensajes de error */
+		private int lineaRegistro = 1;
+		
+		/** Texto del campo o valor actual */
+		final StringBuilder campo = new StringBuilder(256);
+		
+		Lector(Reader entrada) {
+			this.entrada = entrada;
+		}
+		
+		/**
+		 * Lee el siguiente registro.
+		 *
+		 * @param registro registro a completar
+		 * @return false si no quedan registros
+		 */
+		abstract boolean leer(Registro registro) throws IOException;
+		
+		/** Devuelve el siguiente carácter sin consumirlo, o {@link #FIN} */
+		final int mirar() throws IOException {
+			if (posicion == limite) {
+				limite = entrada.read(bufer, 0, bufer.length);
+				posicion = 0;
+				if (limite <= 0) {
+					limite = 0;
+					return FIN;
+				}
+			}
+			return bufer[posicion];
+		}
+		
+		/** Consume el siguiente carácter, o devuelve {@link #FIN} */
+		final int siguiente() throws IOException {
+			int c = mirar();
+			if (c != FIN) {
+				posicion++;
+				if (c == '\n') {
+					linea++;
+				}
+			}
+			return c;
+		}
+		
+		/**
+		 * Salta saltos de línea y espacios entre registros.
+		 *
+		 * @return false si se llegó al final de la entrada
+		 */
+		final boolean saltarLineasVacias() throws IOException {
+			int c = mirar();
+			while (c == '\n' || c == '\r' || c == ' ' || c == '\t') {
+				siguiente();
+				c = mirar();
+			}
+			lineaRegistro = linea;
+			return c != FIN;
+		}
+		
+		final IllegalArgumentException error(String mensaje) {
+			return new IllegalArgumentException("Línea " + lineaRegistro + ": " + mensaje);
+		}
+		
+		/** Interpreta {@link #campo} como entero */
+		final int entero(String nombre) {
+			int longitud = campo.length();
+			boolean negativo = longitud > 0 && campo.charAt(0) == '-';
+			int inicio = negativo ? 1 : 0;
+			
+			if (longitud == inicio || longitud - inicio > 10) {
+				throw error(nombre + " no válido.");
+			}
+			
+			long valor = 0;
+			for (int i = inicio; i < longitud; i++) {
+				char c = campo.charAt(i);
+				if (c < '0' || c > '9') {
+					throw error(nombre + " no válido.");
+				}
+				valor = valor * 10 + (c - '0');
+			}
+			
+			valor = negativo ? -valor : valor;
+			if (valor < Integer.MIN_VALUE || valor > Integer.MAX_VALUE) {
+				throw error(nombre + " no válido.");
+			}
+			return (int) valor;
+		}
+		
+		/** Busca en las constantes el nombre guardado en {@link #campo} */
+		final <E extends Enum<E>> E constante(E[] constantes, String nombre) {
+			for (E constante : constantes) {
+				if (campo.length() == constante.name().length() && constante.name().contentEquals(campo)) {
+					return constante;
+				}
+			}
+			throw error(nombre + " no válido: " + campo);
+		}
+		
+		/** Comprueba que {@link #campo} tenga texto distinto de espacios */
+		final String texto(String nombre) {
+			for (int i = 0; i < campo.length(); i++) {
+				if (!Character.isWhitespace(campo.charAt(i))) {
+					return campo.toString();
+				}
+			}
+			throw error(nombre + " vacío.");
+		}
+		
+		/** Indica si {@link #campo} es igual al texto */
+		final boolean es(String texto) {
+			return campo.length() == texto.length() && texto.contentEquals(campo);
+		}
+	}
+	
+	/**
+	 * Lector de registros separados por comas.
+	 */
+	private static final class LectorCsv extends Lector {
+		
+		/** Indica si el último campo leído terminó el registro */
+		private boolean finDeRegistro;
+		
+		LectorCsv(Reader entrada) {
+			super(entrada);
+		}
+		
+		@Override
+		boolean leer(Registro registro) throws IOException {
+			if (!saltarLineasVacias()) {
+				return false;
+			}
+			
+			campo(false);
+			if (es("usuario")) {
+				registro.esUsuario = true;
+				campo(false);
+				registro.id = entero("Id de usuario");
+				campo(false);
+				registro.tipoUsuario = constante(TipoUsuario.values(), "Tipo de usuario");
+				campo(true);
+				registro.texto = texto("Nombre");
+			} else if (es("tarea")) {
+				registro.esUsuario = false;
+				campo(false);
+				registro.usuario = entero("Id de usuario");
+				campo(false); // id original, no se conserva
+				campo(false);
+				registro.prioridad = constante(Prioridad.values(), "Prioridad");
+				campo(false);
+				registro.estado = constante(EstadoTarea.values(), "Estado");
+				campo(true);
+				registro.texto = texto("Descripción");
+			} else {
+				throw error("Registro desconocido: " + campo);
+			}
+			return true;
+		}
+		
+		/**
+		 * Lee el siguiente campo en {@link #campo}.
+		 *
+		 * @param ultimo si el campo debe ser el último del registro
+		 */
+		private void campo(boolean ultimo) throws IOException {
+			if (finDeRegistro) {
+				finDeRegistro = false;
+				throw error("Faltan campos.");
+			}
+			
+			campo.setLength(0);
+			int c = mirar();
+			
+			if (c == '"') {
+				siguiente();
+				while (true) {
+					c = siguiente();
+					if (c == FIN) {
+						throw error("Comillas sin cerrar.");
+					}
+					if (c == '"') {
+						if (mirar() != '"') {
+							break;
+						}
+						siguiente();
+					}
+					campo.append((char) c);
+				}
+				c = mirar();
+				if (c != ',' && c != '\n' && c != '\r' && c != FIN) {
+					throw error("Texto después de las comillas.");
+				}
+			} else {
+				while (c != ',' && c != '\n' && c != '\r' && c != FIN) {
+					campo.append((char) siguiente());
+					c = mirar();
+				}
+			}
+			
+			if (c == ',') {
+				siguiente();
+				if (ultimo) {
+					throw error("Sobran campos.");
+				}
+				return;
+			}
+			
+			if (c == '\r') {
+				siguiente();
+				if (mirar() == '\n') {
+					siguiente();
+				}
+			} else if (c == '\n') {
+				siguiente();
+			}
+			finDeRegistro = !ultimo;
+		}
+	}
+	
+	/**
+	 * Lector de objetos JSON planos, uno por línea.
+	 */
+	private static final class LectorJson extends Lector {
+		
+		// Claves presentes en el objeto actual
+		private static final int REGISTRO = 1;
+		private static final int ID = 1 << 1;
+		private static final int USUARIO = 1 << 2;
+		private static final int TIPO = 1 << 3;
+		private static final int PRIORIDAD = 1 << 4;
+		private static final int ESTADO = 1 << 5;
+		private static final int TEXTO = 1 << 6;
+		
+		private static final int CLAVES_USUARIO = REGISTRO | ID | TIPO | TEXTO;
+		private static final int CLAVES_TAREA = REGISTRO | USUARIO | PRIORIDAD | ESTADO | TEXTO;
+		
+		LectorJson(Reader entrada) {
+			super(entrada);
+		}
+		
+		@Override
+		boolean leer(Registro registro) throws IOException {
+			if (!saltarLineasVacias()) {
+				return false;
+			}
+			
+			esperar('{');
+			int presentes = 0;
+			boolean esUsuario = false;
+			
+			saltarEspacios();
+			if (mirar() == '}') {
+				throw error("Objeto vacío.");
+			}
+			
+			while (true) {
+				saltarEspacios();
+				cadena();
+				int clave = clave();
+				saltarEspacios();
+				esperar(':');
+				saltarEspacios();
+				
+				switch (clave) {
+					case REGISTRO:
+						cadena();
+						if (es("usuario")) {
+							esUsuario = true;
+						} else if (es("tarea")) {
+							esUsuario = false;
+						} else {
+							throw error("Registro desconocido: " + campo);
+						}
+						break;
+					case ID:
+						numero();
+						registro.id = entero("Id");
+						break;
+					case USUARIO:
+						numero();
+						registro.usuario = entero("Id de usuario");
+						break;
+					case TIPO:
+						cadena();
+						registro.tipoUsuario = constante(TipoUsuario.values(), "Tipo de usuario");
+						break;
+					case PRIORIDAD:
+						cadena();
+						registro.prioridad = constante(Prioridad.values(), "Prioridad");
+						break;
+					case ESTADO:
+						cadena();
+						registro.estado = constante(EstadoTarea.values(), "Estado");
+						break;
+					case TEXTO:
+						cadena();
+						registro.texto = texto("Texto");
+						break;
+					default:
+						valorIgnorado();
+				}
+				presentes |= clave;
+				
+				saltarEspacios();
+				int c = siguiente();
+				if (c == '}') {
+					break;
+				}
+				if (c != ',') {
+					throw error("Se esperaba ',' o '}'.");
+				}
+			}
+			
+			int requeridas = esUsuario ? CLAVES_USUARIO : CLAVES_TAREA;
+			if ((presentes & requeridas) != requeridas) {
+				throw error("Faltan campos.");
+			}
+			registro.esUsuario = esUsuario;
+			
+			saltarEspacios();
+			int c = mirar();
+			if (c != '\n' && c != '\r' && c != FIN) {
+				throw error("Texto después del objeto.");
+			}
+			return true;
+		}
+		
+		/** Reconoce la clave guardada en {@link #campo}; 0 si se ignora */
+		private int clave() {
+			if (es("registro")) {
+				return REGISTRO;
+			} else if (es("id")) {
+				return ID;
+			} else if (es("usuario")) {
+				return USUARIO;
+			} else if (es("tipo")) {
+				return TIPO;
+			} else if (es("prioridad")) {
+				return PRIORIDAD;
+			} else if (es("estado")) {
+				return ESTADO;
+			} else if (es("nombre") || es("descripcion")) {
+				return TEXTO;
+			}
+			return 0;
+		}
+		
+		private void saltarEspacios() throws IOException {
+			int c = mirar();
+			while (c == ' ' || c == '\t') {
+				siguiente();
+				c = mirar();
+			}
+		}
+		
+		private void esperar(char esperado) throws IOException {
+			if (siguiente() != esperado) {
+				throw error("Se esperaba '" + esperado + "'.");
+			}
+		}
+		
+		/** Lee una cadena JSON en {@link #campo}, resolviendo escapes */
+		private void cadena() throws IOException {
+			esperar('"');
+			campo.setLength(0);
+			
+			while (true) {
+				int c = siguiente();
+				if (c == FIN || c == '\n') {
+					throw error("Cadena sin cerrar.");
+				}
+				if (c == '"') {
+					return;
+				}
+				if (c == '\\') {
+					c = siguiente();
+					switch (c) {
+						case '"':
+						case '\\':
+						case '/':
+							break;
+						case 'b':
+							c = '\b';
+							break;
+						case 'f':
+							c = '\f';
+							break;
+						case 'n':
+							c = '\n';
+							break;
+						case 'r':
+							c = '\r';
+							break;
+						case 't':
+							c = '\t';
+							break;
+						case 'u':
+							c = hexadecimal();
+							break;
+						default:
+							throw error("Escape no válido.");
+					}
+				}
+				campo.append((char) c);
+			}
+		}
+		
+		private int hexadecimal() throws IOException {
+			int valor = 0;
+			for (int i = 0; i < 4; i++) {
+				int digito = Character.digit(siguiente(), 16);
+				if (digito < 0) {
+					throw error("Escape no válido.");
+				}
+				valor = (valor << 4) | digito;
+			}
+			return valor;
+		}
+		
+		/** Lee un número, o cualquier literal, en {@link #campo} */
+		private void numero() throws IOException {
+			campo.setLength(0);
+			int c = mirar();
+			while (c != ',' && c != '}' && c != ' ' && c != '\t' && c != '\n' && c != '\r' && c != FIN) {
+				campo.append((char) siguiente());
+				c = mirar();
+			}
+		}
+		
+		/** Salta el valor de una clave desconocida, que debe ser simple */
+		private void valorIgnorado() throws IOException {
+			if (mirar() == '"') {
+				cadena();
+			} else {
+				numero();
+			}
+		}
+	}
+
+}
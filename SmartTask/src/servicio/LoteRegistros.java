@@ -0,0 +1,158 @@
+package servicio;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+import modelo.Tarea;
+import modelo.TipoUsuario;
+
+/**
+ * Registros de operaciones codificados en memoria con el formato de
+ * {@link RegistroOperaciones}, {@code [longitud][tipo][datos][crc32c]}.
+ * 
+ * <p>
+ * Lo usan el registro en disco, que escribe los lotes en su archivo, y
+ * {@link GestorTareasReplicado}, que los envía a las réplicas. El búfer
+ * crece según se necesita. No es seguro para uso concurrente: quien lo
+ * comparte lo protege con su propio cerrojo.
+ * </p>
+ */
+
+final class LoteRegistros {
+	
+	private ByteBuffer bufer;
+	private final CRC32C crc = new CRC32C();
+	
+	/** Registros anexados desde el último vaciado */
+	private int registros;
+	
+	/**
+	 * Crea un lote vacío.
+	 * 
+	 * @param capacidad capacidad inicial del búfer en bytes
+	 */
+	LoteRegistros(int capacidad) {
+		this.bufer = ByteBuffer.allocate(capacidad);
+	}
+	
+	/**
+	 * @return número de registros del lote
+	 */
+	int getRegistros() {
+		return registros;
+	}
+	
+	/**
+	 * @return bytes ocupados por los registros del lote
+	 */
+	int tamanio() {
+		return bufer.position();
+	}
+	
+	/**
+	 * Devuelve el búfer con los registros entre el inicio y su posición.
+	 * Sigue perteneciendo al lote: el llamador no lo guarda después de
+	 * {@link #vaciar()}.
+	 * 
+	 * @return búfer del lote
+	 */
+	ByteBuffer getBufer() {
+		return bufer;
+	}
+	
+	/**
+	 * Descarta los registros conservando la capacidad del búfer.
+	 */
+	void vaciar() {
+		bufer.clear();
+		registros = 0;
+	}
+	
+	// Anexado; cada método devuelve los bytes que ocupa el registro
+	
+	int anexarUsuario(int id, TipoUsuario tipo, String nombre) {
+		byte[] texto = nombre.getBytes(StandardCharsets.UTF_8);
+		int inicio = iniciar(RegistroOperaciones.USUARIO_CREADO, 4 + 1 + 4 + texto.length);
+		bufer.putInt(id).put((byte) tipo.ordinal()).putInt(texto.length).put(texto);
+		return terminar(inicio);
+	}
+	
+	int anexarTareaCreada(int id) {
+		int inicio = iniciar(RegistroOperaciones.TAREA_CREADA, 4);
+		bufer.putInt(id);
+		return terminar(inicio);
+	}
+	
+	int anexarTareaAgregada(int usuarioId, Tarea tarea) {
+		byte[] texto = tarea.getDescripcion().getBytes(StandardCharsets.UTF_8);
+		int inicio = iniciar(RegistroOperaciones.TAREA_AGREGADA, 4 + 4 + 1 + 1 + 4 + texto.length + 8 + 8 + 8);
+		bufer.putInt(usuarioId)
+				.putInt(tarea.getId())
+				.put((byte) tarea.getPrioridad().ordinal())
+				.put((byte) tarea.getEstado().ordinal())
+				.putInt(texto.length)
+				.put(texto)
+				.putLong(tarea.getCreadaEn())
+				.putLong(tarea.getCompletadaEn())
+				.putLong(tarea.getVenceEn());
+		return terminar(inicio);
+	}
+	
+	int anexarTareaCompletada(int usuarioId, int tareaId, long instante) {
+		int inicio = iniciar(RegistroOperaciones.TAREA_COMPLETADA, 4 + 4 + 8);
+		bufer.putInt(usuarioId).putInt(tareaId).putLong(instante);
+		return terminar(inicio);
+	}
+	
+	int anexarVencimiento(int usuarioId, int tareaId, long venceEn, long antelacion) {
+		int inicio = iniciar(RegistroOperaciones.VENCIMIENTO_FIJADO, 4 + 4 + 8 + 8);
+		bufer.putInt(usuarioId).putInt(tareaId).putLong(venceEn).putLong(antelacion);
+		return terminar(inicio);
+	}
+	
+	int anexarCambioTarea(byte tipo, int usuarioId, int tareaId) {
+		int inicio = iniciar(tipo, 8);
+		bufer.putInt(usuarioId).putInt(tareaId);
+		return terminar(inicio);
+	}
+	
+	int anexarReclamacion(byte tipo, int tareaId) {
+		int inicio = iniciar(tipo, 4);
+		bufer.putInt(tareaId);
+		return terminar(inicio);
+	}
+	
+	/**
+	 * Reserva espacio y escribe longitud provisional y tipo.
+	 */
+	private int iniciar(byte tipo, int datos) {
+		int necesario = 4 + 1 + datos + 4;
+		if (bufer.remaining() < necesario) {
+			ByteBuffer mayor = ByteBuffer.allocate(Math.max(bufer.capacity() * 2, bufer.position() + necesario));
+			bufer.flip();
+			mayor.put(bufer);
+			bufer = mayor;
+		}
+		
+		int inicio = bufer.position();
+		bufer.putInt(0).put(tipo);
+		return inicio;
+	}
+	
+	/**
+	 * Completa la longitud y el CRC del registro que empieza en inicio.
+	 */
+	private int terminar(int inicio) {
+		int fin = bufer.position();
+		bufer.putInt(inicio, fin - inicio - 4);
+		
+		crc.reset();
+		crc.update(bufer.array(), bufer.arrayOffset() + inicio + 4, fin - inicio - 4);
+		bufer.putInt((int) crc.getValue());
+		
+		registros++;
+		return bufer.position() - inicio;
+	}
+
+}
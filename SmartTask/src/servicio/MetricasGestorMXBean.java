@@ -0,0 +1,72 @@
+package servicio;
+
+import java.util.Map;
+
+/**
+ * Vista JMX de las métricas de un {@link GestorTareasMedido}.
+ * 
+ * <p>
+ * Los mapas van de la operación, según {@link GestorTareasMedido.Operacion},
+ * a su valor, e incluyen solo las operaciones llamadas alguna vez. Las
+ * latencias son las de la muestra de llamadas medidas. Los indicadores de
+ * usuarios y tareas se calculan en cada lectura recorriendo los usuarios.
+ * </p>
+ */
+
+public interface MetricasGestorMXBean {
+	
+	/** @return llamadas por operación, incluidas las que fallaron */
+	Map<String, Long> getLlamadas();
+	
+	/** @return llamadas que terminaron con una excepción, por operación */
+	Map<String, Long> getErrores();
+	
+	/** @return latencia media por operación, en microsegundos */
+	Map<String, Double> getLatenciaMediaMicros();
+	
+	/** @return latencia p50 por operación, en microsegundos */
+	Map<String, Double> getLatenciaP50Micros();
+	
+	/** @return latencia p99 por operación, en microsegundos */
+	Map<String, Double> getLatenciaP99Micros();
+	
+	/** @return latencia máxima por operación, en microsegundos */
+	Map<String, Double> getLatenciaMaximaMicros();
+	
+	/** @return tamaño medio de los resultados, por operación que los tiene */
+	Map<String, Double> getTamanioMedio();
+	
+	/** @return cantidad de usuarios */
+	long getUsuarios();
+	
+	/** @return tareas activas */
+	long getTareasActivas();
+	
+	/** @return tareas completadas */
+	long getTareasCompletadas();
+	
+	/** @return fracción de las tareas que están completadas, o 0 si no hay tareas */
+	double getFraccionCompletadas();
+	
+	/** @return mediana de tareas por usuario */
+	long getTareasPorUsuarioP50();
+	
+	/** @return percentil 99 de tareas por usuario */
+	long getTareasPorUsuarioP99();
+	
+	/** @return mayor cantidad de tareas de un usuario */
+	long getTareasPorUsuarioMaximo();
+	
+	/**
+	 * Devuelve todas las métricas como texto, una operación por línea.
+	 * 
+	 * @return volcado de las métricas
+	 */
+	String volcar();
+	
+	/**
+	 * Pone a cero los conteos y latencias de las operaciones.
+	 */
+	void reiniciar();
+
+}
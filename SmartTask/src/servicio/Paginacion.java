@@ -0,0 +1,156 @@
+package servicio;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import modelo.Pagina;
+import modelo.Usuario;
+
+/**
+ * Utilidades comunes a los listados paginados de las implementaciones de
+ * {@link interfaces.Accionable}.
+ */
+
+final class Paginacion {
+	
+	/** Elementos pedidos en cada página de los recorridos */
+	static final int TAMANIO_PAGINA = 1024;
+	
+	private Paginacion() {
+	}
+	
+	/**
+	 * Valida los parámetros de un listado paginado.
+	 * 
+	 * @param cursor cursor recibido
+	 * @param limite tamaño de página
+	 * @throws IllegalArgumentException si el cursor o el límite no son válidos
+	 */
+	static void comprobar(long cursor, int limite) {
+		if (cursor < Pagina.FIN) {
+			throw new IllegalArgumentException("Cursor no válido.");
+		}
+		if (limite <= 0) {
+			throw new IllegalArgumentException("El límite debe ser positivo.");
+		}
+	}
+	
+	/**
+	 * Construye una página: si está llena, su cursor es el del último
+	 * elemento; si no, es la última.
+	 * 
+	 * @param elementos elementos de la página
+	 * @param limite tamaño de página pedido
+	 * @param ultimo cursor del último elemento
+	 * @return página
+	 */
+	static <T> Pagina<T> pagina(List<T> elementos, int limite, long ultimo) {
+		return new Pagina<>(elementos, elementos.size() < limite ? Pagina.FIN : ultimo);
+	}
+	
+	/**
+	 * Convierte un cursor simple en el id a partir del cual listar.
+	 * 
+	 * @param cursor cursor no negativo
+	 * @return id, saturado al máximo entero
+	 */
+	static int idDesde(long cursor) {
+		return (int) Math.min(cursor, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Busca en una lista de usuarios ordenada por id la posición del
+	 * primero con id mayor que el indicado.
+	 * 
+	 * @param usuarios usuarios en orden creciente de id
+	 * @param id id de referencia
+	 * @return posición o el tamaño de la lista si no hay ninguno
+	 */
+	static int primeroDespuesDe(List<Usuario> usuarios, long id) {
+		int desde = 0;
+		int hasta = usuarios.size();
+		while (desde < hasta) {
+			int medio = (desde + hasta) >>> 1;
+			if (usuarios.get(medio).getId() <= id) {
+				desde = medio + 1;
+			} else {
+				hasta = medio;
+			}
+		}
+		return desde;
+	}
+	
+	/**
+	 * Crea un stream secuencial que pide las páginas de un listado a medida
+	 * que se consumen.
+	 * 
+	 * <p>
+	 * La consistencia es débil, como la de los iteradores de las
+	 * colecciones concurrentes: cada elemento se entrega como mucho una
+	 * vez, los que existen durante todo el recorrido se entregan siempre, y
+	 * los agregados o quitados mientras tanto pueden aparecer o no. Solo se
+	 * guarda en memoria la página actual.
+	 * </p>
+	 * 
+	 * @param paginas función que devuelve la página siguiente a un cursor
+	 * @return stream de los elementos
+	 */
+	static <T> Stream<T> stream(LongFunction<Pagina<T>> paginas) {
+		return StreamSupport.stream(new Recorrido<>(paginas), false);
+	}
+	
+	/**
+	 * Recorrido secuencial por páginas.
+	 */
+	private static final class Recorrido<T> implements Spliterator<T> {
+		
+		private final LongFunction<Pagina<T>> paginas;
+		
+		/** Elementos pendientes de la página actual */
+		private Iterator<T> actual;
+		
+		/** Cursor de la siguiente página o {@link Pagina#FIN} */
+		private long siguiente;
+		
+		Recorrido(LongFunction<Pagina<T>> paginas) {
+			this.paginas = paginas;
+			this.siguiente = Pagina.INICIO;
+		}
+		
+		@Override
+		public boolean tryAdvance(Consumer<? super T> accion) {
+			while (actual == null || !actual.hasNext()) {
+				if (siguiente == Pagina.FIN) {
+					return false;
+				}
+				Pagina<T> pagina = paginas.apply(siguiente);
+				actual = pagina.getElementos().iterator();
+				siguiente = pagina.getSiguiente();
+			}
+			
+			accion.accept(actual.next());
+			return true;
+		}
+		
+		@Override
+		public Spliterator<T> trySplit() {
+			return null;
+		}
+		
+		@Override
+		public long estimateSize() {
+			return Long.MAX_VALUE;
+		}
+		
+		@Override
+		public int characteristics() {
+			return ORDERED | NONNULL;
+		}
+	}
+
+}
@@ -0,0 +1,314 @@
+package servicio;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import modelo.EstadoTarea;
+import modelo.Tarea;
+import modelo.Usuario;
+
+/**
+ * Cola de trabajo de tareas activas ordenada por prioridad.
+ * 
+ * <p>
+ * Mantiene un montículo global y uno por usuario. Las tareas urgentes y las
+ * escaladas salen antes que las normales y, a igual prioridad, la de menor
+ * id (la creada antes). Ofrece tres operaciones:
+ * </p>
+ * <ul>
+ * 	<li><b>ver</b>: consulta la siguiente tarea sin sacarla.</li>
+ * 	<li><b>tomar</b>: saca la siguiente tarea y la deja reclamada, para que
+ * 	no se entregue a otro despachador.</li>
+ * 	<li><b>liberar</b>: devuelve a la cola una tarea reclamada que sigue
+ * 	activa.</li>
+ * </ul>
+ * 
+ * <p>
+ * Las tareas completadas o eliminadas no se buscan dentro de los
+ * montículos: se descartan de forma diferida cuando llegan a la cima, y los
+ * montículos se reconstruyen cuando las entradas obsoletas superan a las
+ * vigentes. Todas las operaciones están sincronizadas.
+ * </p>
+ */
+
+public final class PlanificadorTareas {
+	
+	/** Obsoletas toleradas antes de plantear una reconstrucción */
+	private static final int MARGEN_RECONSTRUCCION = 64;
+	
+	/** Urgentes y escaladas primero; a igual prioridad, por id de creación */
+	private static final Comparator<Entrada> ORDEN = Comparator
+			.comparingInt((Entrada e) -> e.urgente ? 0 : 1)
+			.thenComparingInt(e -> e.tarea.getId());
+	
+	/** Montículo con las entradas de todos los usuarios */
+	private final PriorityQueue<Entrada> global;
+	
+	/** Montículo de entradas por id de usuario */
+	private final Map<Integer, PriorityQueue<Entrada>> porUsuario;
+	
+	/** Entrada vigente en la cola por id de tarea */
+	private final Map<Integer, Entrada> enCola;
+	
+	/** Entradas reclamadas por id de tarea */
+	private final Map<Integer, Entrada> reclamadas;
+	
+	/**
+	 * Construye un planificador vacío.
+	 */
+	public PlanificadorTareas() {
+		this.global = new PriorityQueue<>(ORDEN);
+		this.porUsuario = new HashMap<>();
+		this.enCola = new HashMap<>();
+		this.reclamadas = new HashMap<>();
+	}
+	
+	/**
+	 * Agrega a la cola una tarea activa asignada a un usuario. Si la tarea
+	 * ya estaba en la cola o reclamada, se ignora.
+	 * 
+	 * @param usuario usuario dueño de la tarea
+	 * @param tarea tarea a encolar
+	 */
+	public void encolar(Usuario usuario, Tarea tarea) {
+		encolar(usuario.getId(), tarea);
+	}
+	
+	/**
+	 * Agrega a la cola una tarea activa asignada a un usuario del que solo
+	 * se conoce el id. Si la tarea ya estaba en la cola o reclamada, se
+	 * ignora.
+	 * 
+	 * @param usuarioId identificador del usuario dueño de la tarea
+	 * @param tarea tarea a encolar
+	 */
+	public synchronized void encolar(int usuarioId, Tarea tarea) {
+		if (tarea.getEstado() != EstadoTarea.ACTIVA
+				|| enCola.containsKey(tarea.getId())
+				|| reclamadas.containsKey(tarea.getId())) {
+			return;
+		}
+		
+		Entrada entrada = new Entrada(usuarioId, tarea);
+		enCola.put(tarea.getId(), entrada);
+		global.add(entrada);
+		porUsuario.computeIfAbsent(usuarioId, id -> new PriorityQueue<>(ORDEN)).add(entrada);
+	}
+	
+	/**
+	 * Quita una tarea de la cola y de las reclamadas, por ejemplo al
+	 * completarla o eliminarla. Su entrada queda obsoleta y se descarta
+	 * más adelante sin recorrer los montículos.
+	 * 
+	 * @param tareaId identificador de la tarea
+	 */
+	public synchronized void descartar(int tareaId) {
+		reclamadas.remove(tareaId);
+		if (enCola.remove(tareaId) != null) {
+			reconstruirSiHaceFalta();
+		}
+	}
+	
+	/**
+	 * Devuelve la siguiente tarea de todos los usuarios sin sacarla.
+	 * 
+	 * @return tarea o null si la cola está vacía
+	 */
+	public synchronized Tarea ver() {
+		Entrada entrada = cima(global);
+		return entrada == null ? null : entrada.tarea;
+	}
+	
+	/**
+	 * Devuelve la siguiente tarea de un usuario sin sacarla.
+	 * 
+	 * @param usuarioId identificador del usuario
+	 * @return tarea o null si el usuario no tiene tareas en cola
+	 */
+	public synchronized Tarea ver(int usuarioId) {
+		Entrada entrada = cima(porUsuario.get(usuarioId));
+		return entrada == null ? null : entrada.tarea;
+	}
+	
+	/**
+	 * Saca y reclama la siguiente tarea de todos los usuarios.
+	 * 
+	 * @return tarea reclamada o null si la cola está vacía
+	 */
+	public synchronized Tarea tomar() {
+		return reclamar(cima(global));
+	}
+	
+	/**
+	 * Saca y reclama la siguiente tarea de un usuario.
+	 * 
+	 * @param usuarioId identificador del usuario
+	 * @return tarea reclamada o null si el usuario no tiene tareas en cola
+	 */
+	public synchronized Tarea tomar(int usuarioId) {
+		return reclamar(cima(porUsuario.get(usuarioId)));
+	}
+	
+	/**
+	 * Saca y reclama una tarea concreta si sigue en la cola, por ejemplo al
+	 * reproducir una reclamación registrada.
+	 * 
+	 * @param tareaId identificador de la tarea
+	 * @return tarea reclamada o null si no estaba en la cola
+	 */
+	public synchronized Tarea tomarTarea(int tareaId) {
+		Entrada entrada = enCola.get(tareaId);
+		return entrada == null || !vigente(entrada) ? null : reclamar(entrada);
+	}
+	
+	/**
+	 * Devuelve los ids de las tareas reclamadas, ordenados.
+	 * 
+	 * @return ids de las tareas reclamadas
+	 */
+	public synchronized int[] reclamadas() {
+		return reclamadas.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+	}
+	
+	/**
+	 * Devuelve a la cola una tarea reclamada que sigue activa.
+	 * 
+	 * @param tareaId identificador de la tarea
+	 * @return true si la tarea volvió a la cola
+	 */
+	public synchronized boolean liberar(int tareaId) {
+		Entrada entrada = reclamadas.remove(tareaId);
+		
+		if (entrada == null || entrada.tarea.getEstado() != EstadoTarea.ACTIVA) {
+			return false;
+		}
+		
+		Entrada nueva = new Entrada(entrada.usuarioId, entrada.tarea);
+		enCola.put(tareaId, nueva);
+		global.add(nueva);
+		porUsuario.computeIfAbsent(entrada.usuarioId, id -> new PriorityQueue<>(ORDEN)).add(nueva);
+		return true;
+	}
+	
+	/**
+	 * Reordena una tarea que se acaba de escalar para que salga como
+	 * urgente. Su entrada anterior queda obsoleta; si la tarea está
+	 * reclamada, el cambio se aplica al liberarla.
+	 * 
+	 * @param tareaId identificador de la tarea
+	 */
+	public synchronized void escalar(int tareaId) {
+		Entrada entrada = enCola.get(tareaId);
+		
+		if (entrada == null || entrada.urgente || !entrada.tarea.esUrgente()) {
+			return;
+		}
+		
+		Entrada nueva = new Entrada(entrada.usuarioId, entrada.tarea);
+		enCola.put(tareaId, nueva);
+		global.add(nueva);
+		porUsuario.computeIfAbsent(entrada.usuarioId, id -> new PriorityQueue<>(ORDEN)).add(nueva);
+		reconstruirSiHaceFalta();
+	}
+	
+	/**
+	 * Devuelve el número de tareas en cola (sin contar las reclamadas).
+	 * 
+	 * @return tareas pendientes
+	 */
+	public synchronized int pendientes() {
+		return enCola.size();
+	}
+	
+	/**
+	 * Saca la entrada de la cola y la pasa a reclamadas. La entrada sigue
+	 * en el otro montículo, pero ya es obsoleta.
+	 */
+	private Tarea reclamar(Entrada entrada) {
+		if (entrada == null) {
+			return null;
+		}
+		
+		enCola.remove(entrada.tarea.getId());
+		reclamadas.put(entrada.tarea.getId(), entrada);
+		reconstruirSiHaceFalta();
+		return entrada.tarea;
+	}
+	
+	/**
+	 * Devuelve la entrada vigente de la cima, descartando las obsoletas.
+	 */
+	private Entrada cima(PriorityQueue<Entrada> monticulo) {
+		if (monticulo == null) {
+			return null;
+		}
+		
+		Entrada entrada;
+		while ((entrada = monticulo.peek()) != null && !vigente(entrada)) {
+			monticulo.poll();
+			// Una tarea completada fuera del servicio sigue registrada en la cola
+			if (enCola.get(entrada.tarea.getId()) == entrada) {
+				enCola.remove(entrada.tarea.getId());
+			}
+		}
+		return entrada;
+	}
+	
+	private boolean vigente(Entrada entrada) {
+		return enCola.get(entrada.tarea.getId()) == entrada
+				&& entrada.tarea.getEstado() == EstadoTarea.ACTIVA;
+	}
+	
+	/**
+	 * Reconstruye los montículos sin las entradas obsoletas cuando estas
+	 * superan a las vigentes. El coste se amortiza entre los descartes.
+	 */
+	private void reconstruirSiHaceFalta() {
+		if (global.size() - enCola.size() <= enCola.size() + MARGEN_RECONSTRUCCION) {
+			return;
+		}
+		
+		enCola.values().removeIf(entrada -> entrada.tarea.getEstado() != EstadoTarea.ACTIVA);
+		
+		List<Entrada> vigentes = new ArrayList<>(enCola.size());
+		for (Entrada entrada : global) {
+			if (vigente(entrada)) {
+				vigentes.add(entrada);
+			}
+		}
+		global.clear();
+		global.addAll(vigentes);
+		
+		Iterator<PriorityQueue<Entrada>> it = porUsuario.values().iterator();
+		while (it.hasNext()) {
+			PriorityQueue<Entrada> monticulo = it.next();
+			monticulo.removeIf(entrada -> !vigente(entrada));
+			if (monticulo.isEmpty()) {
+				it.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Posición de una tarea en la cola. La urgencia se fija al crearla para
+	 * que el orden del montículo no cambie si la tarea se escala.
+	 */
+	private static final class Entrada {
+		
+		final int usuarioId;
+		final Tarea tarea;
+		final boolean urgente;
+		
+		Entrada(int usuarioId, Tarea tarea) {
+			this.usuarioId = usuarioId;
+			this.tarea = tarea;
+			this.urgente = tarea.esUrgente();
+		}
+	}
+
+}
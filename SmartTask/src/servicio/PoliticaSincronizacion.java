@@ -0,0 +1,27 @@
+package servicio;
+
+/**
+ * Indica cuándo el registro de operaciones fuerza sus datos a disco.
+ */
+
+public enum PoliticaSincronizacion {
+	
+	/**
+	 * Cada operación espera a que su registro esté forzado a disco. Las
+	 * operaciones que llegan a la vez se confirman con un único forzado.
+	 */
+	CADA_ESCRITURA,
+	
+	/**
+	 * Un hilo en segundo plano escribe y fuerza los registros pendientes
+	 * periódicamente. Un fallo puede perder las últimas operaciones.
+	 */
+	POR_LOTES,
+	
+	/**
+	 * Los registros se escriben periódicamente, pero el forzado a disco
+	 * queda a cargo del sistema operativo.
+	 */
+	SISTEMA_OPERATIVO
+
+}
@@ -0,0 +1,296 @@
+package servicio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import util.MapaEnteros;
+
+/**
+ * Conjunto acotado de páginas de un archivo cargadas en memoria, sobre el
+ * que trabaja {@link ArbolBMas}.
+ * 
+ * <p>
+ * Cada página ocupa {@value #TAMANIO_PAGINA} bytes del archivo y se carga
+ * en uno de los marcos del pool al fijarla. Mientras está fijada no puede
+ * desalojarse; al soltarla se indica si se modificó, y las modificadas se
+ * escriben al desalojarlas o al vaciar el pool. Para elegir qué desalojar
+ * se usa el algoritmo del reloj: cada uso marca el marco y la manecilla
+ * desaloja el primero sin marca, quitando las marcas a su paso, lo que se
+ * aproxima a desalojar el menos usado recientemente sin mover listas en
+ * cada acceso.
+ * </p>
+ * 
+ * <p>
+ * El pool también reparte las páginas: reutiliza las liberadas, que forman
+ * una lista enlazada a través de su primer entero, y si no hay ninguna
+ * agrega una al final del archivo. Esta clase no es segura para uso
+ * concurrente.
+ * </p>
+ */
+
+final class PoolPaginas implements Closeable {
+	
+	/** Bytes de cada página */
+	static final int TAMANIO_PAGINA = 8192;
+	
+	/** Marco sin página */
+	private static final int VACIO = -1;
+	
+	/** Marca de página libre en su primer byte */
+	static final byte LIBRE = 0;
+	
+	private final FileChannel canal;
+	
+	/** Contenido de cada marco */
+	private final ByteBuffer[] marcos;
+	
+	/** Página cargada en cada marco, o {@link #VACIO} */
+	private final int[] paginaDe;
+	
+	/** Fijaciones pendientes de soltar de cada marco */
+	private final int[] fijaciones;
+	
+	/** Marcos con cambios aún no escritos */
+	private final boolean[] sucios;
+	
+	/** Marcos usados desde la última pasada de la manecilla */
+	private final boolean[] usados;
+	
+	/** Marco de cada página cargada */
+	private final MapaEnteros marcoDe;
+	
+	/** Próximo marco que revisa el reloj */
+	private int manecilla;
+	
+	/** Páginas del archivo, incluidas las libres */
+	private int paginas;
+	
+	/** Primera página libre, o 0 si no hay ninguna */
+	private int primeraLibre;
+	
+	private long lecturas;
+	private long escrituras;
+	private long aciertos;
+	
+	/**
+	 * Construye el pool sobre un archivo abierto.
+	 * 
+	 * @param canal archivo de páginas, abierto para lectura y escritura
+	 * @param capacidad páginas que caben en memoria
+	 * @param paginas páginas que ya tiene el archivo
+	 * @param primeraLibre primera página de la lista de libres, o 0
+	 * @throws IllegalArgumentException si la capacidad es menor que 8
+	 */
+	PoolPaginas(FileChannel canal, int capacidad, int paginas, int primeraLibre) {
+		if (capacidad < 8) {
+			throw new IllegalArgumentException("El pool necesita al menos 8 páginas: " + capacidad);
+		}
+		
+		this.canal = canal;
+		this.marcos = new ByteBuffer[capacidad];
+		this.paginaDe = new int[capacidad];
+		this.fijaciones = new int[capacidad];
+		this.sucios = new boolean[capacidad];
+		this.usados = new boolean[capacidad];
+		this.marcoDe = new MapaEnteros(capacidad);
+		this.paginas = paginas;
+		this.primeraLibre = primeraLibre;
+		Arrays.fill(paginaDe, VACIO);
+	}
+	
+	/**
+	 * Fija una página, cargándola del archivo si no está en memoria. El
+	 * búfer devuelto se usa con posiciones absolutas y solo es válido hasta
+	 * soltar la página.
+	 * 
+	 * @param pagina número de página
+	 * @return contenido de la página
+	 * @throws IllegalStateException si todas las páginas en memoria están
+	 * fijadas
+	 * @throws UncheckedIOException si falla la lectura o la escritura de la
+	 * página desalojada
+	 */
+	ByteBuffer fijar(int pagina) {
+		int marco = marcoDe.get(pagina);
+		
+		if (marco != MapaEnteros.NO_ENCONTRADO) {
+			aciertos++;
+		} else {
+			marco = desalojar();
+			leer(pagina, marcos[marco]);
+			paginaDe[marco] = pagina;
+			marcoDe.put(pagina, marco);
+		}
+		
+		fijaciones[marco]++;
+		usados[marco] = true;
+		return marcos[marco];
+	}
+	
+	/**
+	 * Suelta una página fijada.
+	 * 
+	 * @param pagina número de página
+	 * @param modificada true si se cambió su contenido
+	 */
+	void soltar(int pagina, boolean modificada) {
+		int marco = marcoDe.get(pagina);
+		fijaciones[marco]--;
+		sucios[marco] |= modificada;
+	}
+	
+	/**
+	 * Reserva una página, reutilizando una libre si la hay, con todos sus
+	 * bytes a cero. La página queda sin fijar.
+	 * 
+	 * @return número de la página reservada
+	 */
+	int reservar() {
+		int pagina;
+		ByteBuffer contenido;
+		if (primeraLibre != 0) {
+			pagina = primeraLibre;
+			contenido = fijar(pagina);
+			primeraLibre = contenido.getInt(1);
+		} else {
+			pagina = paginas++;
+			contenido = fijar(pagina);
+		}
+		
+		Arrays.fill(contenido.array(), (byte) 0);
+		soltar(pagina, true);
+		return pagina;
+	}
+	
+	/**
+	 * Devuelve una página a la lista de libres. No debe estar fijada.
+	 * 
+	 * @param pagina número de página
+	 */
+	void liberar(int pagina) {
+		ByteBuffer contenido = fijar(pagina);
+		contenido.put(0, LIBRE);
+		contenido.putInt(1, primeraLibre);
+		primeraLibre = pagina;
+		soltar(pagina, true);
+	}
+	
+	/**
+	 * Elige un marco para cargar otra página, escribiendo antes la que
+	 * tenía si estaba modificada.
+	 */
+	private int desalojar() {
+		for (int vueltas = 0; vueltas < 2 * marcos.length + 1; vueltas++) {
+			int marco = manecilla;
+			manecilla = (manecilla + 1) % marcos.length;
+			
+			if (marcos[marco] == null) {
+				marcos[marco] = ByteBuffer.allocate(TAMANIO_PAGINA);
+				return marco;
+			}
+			if (fijaciones[marco] > 0) {
+				continue;
+			}
+			if (usados[marco]) {
+				usados[marco] = false;
+				continue;
+			}
+			
+			if (sucios[marco]) {
+				escribir(paginaDe[marco], marcos[marco]);
+				sucios[marco] = false;
+			}
+			marcoDe.remove(paginaDe[marco]);
+			paginaDe[marco] = VACIO;
+			return marco;
+		}
+		throw new IllegalStateException("Todas las páginas en memoria están fijadas.");
+	}
+	
+	/**
+	 * Escribe en el archivo todas las páginas modificadas.
+	 * 
+	 * @throws UncheckedIOException si falla la escritura
+	 */
+	void vaciar() {
+		for (int marco = 0; marco < marcos.length; marco++) {
+			if (sucios[marco]) {
+				escribir(paginaDe[marco], marcos[marco]);
+				sucios[marco] = false;
+			}
+		}
+	}
+	
+	private void leer(int pagina, ByteBuffer destino) {
+		destino.clear();
+		try {
+			long posicion = (long) pagina * TAMANIO_PAGINA;
+			while (destino.hasRemaining()) {
+				int leidos = canal.read(destino, posicion + destino.position());
+				if (leidos < 0) {
+					// Página reservada que aún no llegó al archivo
+					Arrays.fill(destino.array(), destino.position(), TAMANIO_PAGINA, (byte) 0);
+					break;
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		lecturas++;
+	}
+	
+	private void escribir(int pagina, ByteBuffer origen) {
+		ByteBuffer vista = origen.duplicate().clear();
+		try {
+			long posicion = (long) pagina * TAMANIO_PAGINA;
+			while (vista.hasRemaining()) {
+				canal.write(vista, posicion + vista.position());
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		escrituras++;
+	}
+	
+	/** @return páginas del archivo, incluidas las libres */
+	int getPaginas() {
+		return paginas;
+	}
+	
+	/** @return primera página libre, o 0 si no hay ninguna */
+	int getPrimeraLibre() {
+		return primeraLibre;
+	}
+	
+	/** @return páginas leídas del archivo */
+	long getLecturas() {
+		return lecturas;
+	}
+	
+	/** @return páginas escritas en el archivo */
+	long getEscrituras() {
+		return escrituras;
+	}
+	
+	/** @return fijaciones de páginas que ya estaban en memoria */
+	long getAciertos() {
+		return aciertos;
+	}
+	
+	/**
+	 * Escribe las páginas modificadas y cierra el archivo.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			vaciar();
+		} finally {
+			canal.close();
+		}
+	}
+
+}
@@ -0,0 +1,460 @@
+package servicio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+import modelo.EstadoTarea;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+
+/**
+ * Registro binario de operaciones de solo anexado (write-ahead log).
+ * 
+ * <p>
+ * Cada registro tiene la forma {@code [longitud][tipo][datos][crc32c]}, donde
+ * la longitud cubre tipo y datos. Los registros se acumulan en memoria y se
+ * escriben con un {@link FileChannel} en lotes: con
+ * {@link PoliticaSincronizacion#CADA_ESCRITURA}, el primer hilo que confirma
+ * escribe y fuerza todo lo acumulado, de modo que los hilos que llegan a la
+ * vez comparten un único forzado (group commit).
+ * </p>
+ * 
+ * <p>
+ * Si una escritura o un forzado fallan, el registro queda marcado como
+ * fallido: no se sabe qué parte del lote llegó al archivo, así que todo
+ * anexado y confirmación posteriores lanzan el error original en lugar de
+ * añadir registros detrás de uno posiblemente roto.
+ * </p>
+ * 
+ * <p>
+ * Al reproducir, un registro incompleto o con CRC incorrecto se considera el
+ * final del archivo y se trunca, ya que corresponde a una escritura
+ * interrumpida.
+ * </p>
+ * 
+ * <p>
+ * Los campos nuevos de un tipo de registro se añaden al final de sus datos,
+ * de modo que los registros escritos antes se siguen leyendo: los campos
+ * que no tienen toman su valor por defecto.
+ * </p>
+ */
+
+final class RegistroOperaciones implements Closeable {
+	
+	static final byte USUARIO_CREADO = 1;
+	static final byte TAREA_CREADA = 2;
+	static final byte TAREA_AGREGADA = 3;
+	static final byte TAREA_COMPLETADA = 4;
+	static final byte TAREA_ELIMINADA = 5;
+	static final byte VENCIMIENTO_FIJADO = 6;
+	static final byte TAREA_TOMADA = 7;
+	static final byte TAREA_LIBERADA = 8;
+	static final byte TAREA_ESCALADA = 9;
+	
+	/** Bytes acumulados a partir de los cuales se escribe sin esperar al hilo */
+	private static final int LIMITE_PENDIENTE = 1 << 20;
+	
+	/** Tamaño del búfer de lectura al reproducir */
+	private static final int BUFER_LECTURA = 1 << 20;
+	
+	/** Longitud máxima aceptada para un registro al reproducir */
+	private static final int LONGITUD_MAXIMA = 1 << 24;
+	
+	private final FileChannel canal;
+	private final PoliticaSincronizacion politica;
+	
+	/** Registros anexados aún no escritos (protegido por this) */
+	private LoteRegistros pendiente;
+	
+	/** Lote que se está escribiendo (protegido por {@link #escritura}) */
+	private LoteRegistros enEscritura;
+	
+	/** Bytes anexados desde la apertura (protegido por this) */
+	private long anexado;
+	
+	/** Bytes escritos (y forzados, según la política) desde la apertura */
+	private volatile long escrito;
+	
+	/** Serializa las escrituras en el canal */
+	private final Object escritura = new Object();
+	
+	/**
+	 * Monitor con el que espera el hilo vaciador. No se usa interrupción,
+	 * porque interrumpir una escritura en el canal lo cerraría.
+	 */
+	private final Object aviso = new Object();
+	
+	/** Hilo que vacía periódicamente, o null con CADA_ESCRITURA */
+	private final Thread vaciador;
+	
+	/** Fallo de escritura que dejó el registro inutilizable, o null */
+	private volatile IOException fallo;
+	
+	private volatile boolean cerrado;
+	
+	/**
+	 * Abre el registro anexando al final del archivo.
+	 * 
+	 * @param archivo archivo del registro
+	 * @param politica política de sincronización
+	 * @param intervaloMs intervalo de vaciado en segundo plano
+	 * @throws IOException si no se puede abrir el archivo
+	 */
+	RegistroOperaciones(Path archivo, PoliticaSincronizacion politica, long intervaloMs) throws IOException {
+		this.canal = FileChannel.open(archivo,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		this.politica = politica;
+		this.pendiente = new LoteRegistros(64 * 1024);
+		this.enEscritura = new LoteRegistros(64 * 1024);
+		
+		if (politica == PoliticaSincronizacion.CADA_ESCRITURA) {
+			this.vaciador = null;
+		} else {
+			this.vaciador = new Thread(() -> vaciarPeriodicamente(intervaloMs), "registro-" + archivo.getFileName());
+			this.vaciador.setDaemon(true);
+			this.vaciador.start();
+		}
+	}
+	
+	// Anexado
+	
+	synchronized long anexarUsuario(int id, TipoUsuario tipo, String nombre) {
+		comprobar();
+		return anexado += pendiente.anexarUsuario(id, tipo, nombre);
+	}
+	
+	synchronized long anexarTareaCreada(int id) {
+		comprobar();
+		return anexado += pendiente.anexarTareaCreada(id);
+	}
+	
+	synchronized long anexarTareaAgregada(int usuarioId, Tarea tarea) {
+		comprobar();
+		return anexado += pendiente.anexarTareaAgregada(usuarioId, tarea);
+	}
+	
+	synchronized long anexarTareaCompletada(int usuarioId, int tareaId, long instante) {
+		comprobar();
+		return anexado += pendiente.anexarTareaCompletada(usuarioId, tareaId, instante);
+	}
+	
+	synchronized long anexarVencimiento(int usuarioId, int tareaId, long venceEn, long antelacion) {
+		comprobar();
+		return anexado += pendiente.anexarVencimiento(usuarioId, tareaId, venceEn, antelacion);
+	}
+	
+	synchronized long anexarCambioTarea(byte tipo, int usuarioId, int tareaId) {
+		comprobar();
+		return anexado += pendiente.anexarCambioTarea(tipo, usuarioId, tareaId);
+	}
+	
+	synchronized long anexarReclamacion(byte tipo, int tareaId) {
+		comprobar();
+		return anexado += pendiente.anexarReclamacion(tipo, tareaId);
+	}
+	
+	// Escritura
+	
+	/**
+	 * Comprueba que ninguna escritura anterior haya fallado.
+	 * 
+	 * @throws UncheckedIOException con el fallo original si el registro
+	 * quedó inutilizable
+	 */
+	void comprobar() {
+		IOException error = fallo;
+		if (error != null) {
+			throw new UncheckedIOException("El registro de operaciones falló y no admite más escrituras.", error);
+		}
+	}
+	
+	/**
+	 * Espera a que el registro que termina en la posición indicada sea
+	 * duradero según la política.
+	 * 
+	 * @param posicion valor devuelto al anexar
+	 * @throws IOException si falla la escritura
+	 */
+	void confirmar(long posicion) throws IOException {
+		if (escrito >= posicion) {
+			return;
+		}
+		IOException error = fallo;
+		if (error != null) {
+			throw error;
+		}
+		
+		if (politica == PoliticaSincronizacion.CADA_ESCRITURA) {
+			vaciar(posicion, true);
+		} else if (posicion - escrito > LIMITE_PENDIENTE) {
+			vaciar(posicion, false);
+		}
+	}
+	
+	/**
+	 * Escribe todo lo acumulado y, si se indica, lo fuerza a disco.
+	 * 
+	 * @param hasta posición que debe quedar escrita; si ya lo está no se hace nada
+	 * @param forzar si se debe forzar a disco
+	 * @throws IOException si falla la escritura o el forzado, que marcan el
+	 * registro como fallido, o si ya había fallado antes
+	 */
+	private void vaciar(long hasta, boolean forzar) throws IOException {
+		synchronized (escritura) {
+			if (escrito >= hasta) {
+				return;
+			}
+			IOException error = fallo;
+			if (error != null) {
+				throw error;
+			}
+			
+			long limite;
+			synchronized (this) {
+				LoteRegistros lleno = pendiente;
+				pendiente = enEscritura;
+				enEscritura = lleno;
+				limite = anexado;
+			}
+			
+			try {
+				ByteBuffer datos = enEscritura.getBufer().flip();
+				while (datos.hasRemaining()) {
+					canal.write(datos);
+				}
+				if (forzar) {
+					canal.force(false);
+				}
+			} catch (IOException e) {
+				// El lote pudo quedar a medias en el archivo
+				fallo = e;
+				throw e;
+			}
+			enEscritura.vaciar();
+			escrito = limite;
+		}
+	}
+	
+	private void vaciarPeriodicamente(long intervaloMs) {
+		boolean forzar = politica == PoliticaSincronizacion.POR_LOTES;
+		while (!cerrado) {
+			try {
+				synchronized (aviso) {
+					if (!cerrado) {
+						aviso.wait(intervaloMs);
+					}
+				}
+				if (!cerrado) {
+					vaciar(Long.MAX_VALUE, forzar);
+				}
+			} catch (InterruptedException | IOException e) {
+				// Un fallo de escritura ya quedó anotado en fallo
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Escribe y fuerza todo lo pendiente y cierra el archivo. El archivo se
+	 * cierra también si el registro había fallado, y se lanza ese fallo.
+	 * 
+	 * @throws IOException si falla la escritura o el registro ya había fallado
+	 */
+	@Override
+	public void close() throws IOException {
+		if (cerrado) {
+			return;
+		}
+		cerrado = true;
+		
+		if (vaciador != null) {
+			synchronized (aviso) {
+				aviso.notifyAll();
+			}
+			try {
+				vaciador.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		try {
+			vaciar(Long.MAX_VALUE, true);
+		} finally {
+			canal.close();
+		}
+	}
+	
+	// Reproducción
+	
+	/**
+	 * Aplica sobre el gestor todas las operaciones válidas del archivo y
+	 * trunca la cola incompleta o corrupta, si la hay.
+	 * 
+	 * @param archivo archivo del registro
+	 * @param destino gestor sobre el que se aplican las operaciones
+	 * @return número de operaciones aplicadas
+	 * @throws IOException si no se puede leer el archivo
+	 */
+	static long reproducir(Path archivo, GestorTareasServicio destino) throws IOException {
+		long aplicadas = 0;
+		long valido = 0;
+		CRC32C crc = new CRC32C();
+		
+		try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer bufer = ByteBuffer.allocate(BUFER_LECTURA).flip();
+			boolean finArchivo = false;
+			
+			while (true) {
+				int tamanio = validar(bufer, crc);
+				if (tamanio == 0) {
+					if (finArchivo) {
+						break;
+					}
+					
+					// Se compacta y se leen más bytes; el búfer crece si el registro no cabe
+					bufer.compact();
+					if (!bufer.hasRemaining()) {
+						bufer = ByteBuffer.allocate(bufer.capacity() * 2).put(bufer.flip());
+					}
+					finArchivo = canal.read(bufer) < 0;
+					bufer.flip();
+					continue;
+				}
+				
+				if (tamanio < 0) {
+					break;
+				}
+				
+				int inicio = bufer.position() + 4;
+				bufer.position(inicio);
+				aplicar(bufer, inicio + tamanio - 8, destino);
+				bufer.position(inicio + tamanio - 4);
+				
+				valido += tamanio;
+				aplicadas++;
+			}
+			
+			if (canal.size() > valido) {
+				canal.truncate(valido);
+			}
+		}
+		
+		return aplicadas;
+	}
+	
+	/**
+	 * Comprueba el registro que empieza en la posición actual del búfer,
+	 * sin moverla.
+	 * 
+	 * @param bufer búfer con los registros
+	 * @param crc calculador reutilizable del llamador
+	 * @return bytes que ocupa el registro completo, 0 si el búfer no lo
+	 * contiene entero o -1 si la longitud o el CRC no son válidos
+	 */
+	static int validar(ByteBuffer bufer, CRC32C crc) {
+		if (bufer.remaining() < 4) {
+			return 0;
+		}
+		int longitud = bufer.getInt(bufer.position());
+		if (longitud <= 0 || longitud > LONGITUD_MAXIMA) {
+			return -1;
+		}
+		if (bufer.remaining() < 4 + longitud + 4) {
+			return 0;
+		}
+		
+		int inicio = bufer.position() + 4;
+		crc.reset();
+		crc.update(bufer.array(), bufer.arrayOffset() + inicio, longitud);
+		return (int) crc.getValue() == bufer.getInt(inicio + longitud) ? 4 + longitud + 4 : -1;
+	}
+	
+	/**
+	 * Aplica el registro que empieza en la posición actual del búfer y
+	 * termina en {@code fin}, sin el CRC.
+	 * 
+	 * @throws IOException si el registro no es coherente con el destino
+	 */
+	static void aplicar(ByteBuffer bufer, int fin, GestorTareasServicio destino) throws IOException {
+		byte tipo = bufer.get();
+		
+		switch (tipo) {
+			case USUARIO_CREADO: {
+				int id = bufer.getInt();
+				TipoUsuario tipoUsuario = TipoUsuario.values()[bufer.get()];
+				destino.restaurarUsuario(id, leerTexto(bufer), tipoUsuario);
+				break;
+			}
+			case TAREA_CREADA:
+				destino.restaurarContadorTareas(bufer.getInt() + 1);
+				break;
+			case TAREA_AGREGADA: {
+				int usuarioId = bufer.getInt();
+				int tareaId = bufer.getInt();
+				Prioridad prioridad = Prioridad.values()[bufer.get()];
+				EstadoTarea estado = EstadoTarea.values()[bufer.get()];
+				String descripcion = leerTexto(bufer);
+				
+				// Los registros anteriores a los instantes no los tienen
+				boolean conInstantes = fin - bufer.position() >= 3 * 8;
+				long creadaEn = conInstantes ? bufer.getLong() : 0;
+				long completadaEn = conInstantes ? bufer.getLong() : 0;
+				long venceEn = conInstantes ? bufer.getLong() : 0;
+				
+				Tarea tarea = FabricaModelo.nuevaTarea(tareaId, descripcion, prioridad, creadaEn);
+				tarea.setVenceEn(venceEn);
+				if (estado == EstadoTarea.COMPLETADA) {
+					tarea.marcarComoCompletada(completadaEn);
+				}
+				destino.restaurarContadorTareas(tareaId + 1);
+				try {
+					destino.agregarTareaAUsuario(usuarioId, tarea);
+				} catch (IllegalArgumentException e) {
+					throw new IOException("Registro inconsistente: usuario " + usuarioId + " inexistente.", e);
+				}
+				break;
+			}
+			case TAREA_COMPLETADA: {
+				int usuarioId = bufer.getInt();
+				int tareaId = bufer.getInt();
+				long instante = fin - bufer.position() >= 8 ? bufer.getLong() : 0;
+				destino.marcarTareaComoCompletada(usuarioId, tareaId, instante);
+				break;
+			}
+			case TAREA_ELIMINADA:
+				destino.eliminarTareaDeUsuario(bufer.getInt(), bufer.getInt());
+				break;
+			case VENCIMIENTO_FIJADO:
+				destino.fijarVencimiento(bufer.getInt(), bufer.getInt(), bufer.getLong(), bufer.getLong());
+				break;
+			case TAREA_TOMADA:
+				destino.tomarTarea(bufer.getInt());
+				break;
+			case TAREA_LIBERADA:
+				destino.liberarTarea(bufer.getInt());
+				break;
+			case TAREA_ESCALADA:
+				destino.escalarTarea(bufer.getInt(), bufer.getInt());
+				break;
+			default:
+				throw new IOException("Tipo de registro desconocido: " + tipo);
+		}
+	}
+	
+	private static String leerTexto(ByteBuffer bufer) {
+		int longitud = bufer.getInt();
+		String texto = new String(bufer.array(), bufer.arrayOffset() + bufer.position(), longitud, StandardCharsets.UTF_8);
+		bufer.position(bufer.position() + longitud);
+		return texto;
+	}
+
+}
@@ -0,0 +1,371 @@
+package servicio;
+
+import java.util.Arrays;
+
+/**
+ * Rueda jerárquica de temporizadores (hierarchical timing wheel).
+ * 
+ * <p>
+ * El tiempo avanza en ticks de {@code resolucion} milisegundos. La rueda
+ * tiene {@value #NIVELES} niveles de {@value #RANURAS_POR_NIVEL} ranuras:
+ * el nivel 0 guarda los temporizadores de los próximos 64 ticks, uno por
+ * ranura, y cada nivel superior cubre 64 veces más tiempo por ranura. Al
+ * llegar al inicio de una ranura de un nivel superior, sus temporizadores se
+ * reparten en los niveles inferiores (cascada). Un temporizador más lejano
+ * que el alcance de la rueda se guarda en la última ranura alcanzable y se
+ * vuelve a colocar en cada cascada hasta que entra.
+ * </p>
+ * 
+ * <p>
+ * Programar y cancelar cuestan O(1): cada ranura es una lista doblemente
+ * enlazada sobre arreglos primitivos, sin un objeto por temporizador. Cada
+ * temporizador se mueve como mucho una vez por nivel antes de dispararse.
+ * Nunca se dispara antes de su instante y como mucho un tick después del
+ * avance que lo alcanza.
+ * </p>
+ * 
+ * <p>
+ * La rueda no tiene hilo propio: el tiempo lo marca quien llama a
+ * {@link #avanzar(long, Disparo)}. Esta clase no es segura para uso
+ * concurrente.
+ * </p>
+ */
+
+public final class RuedaTemporizadores {
+	
+	/** Bits del índice de ranura de cada nivel */
+	private static final int BITS_NIVEL = 6;
+	
+	private static final int RANURAS_POR_NIVEL = 1 << BITS_NIVEL;
+	
+	private static final int MASCARA_RANURA = RANURAS_POR_NIVEL - 1;
+	
+	private static final int NIVELES = 5;
+	
+	/** Ticks que cubre la rueda completa */
+	private static final long ALCANCE = 1L << (BITS_NIVEL * NIVELES);
+	
+	/** Lista de los temporizadores que se están disparando */
+	private static final int EN_DISPARO = NIVELES * RANURAS_POR_NIVEL;
+	
+	private static final int NINGUNO = -1;
+	
+	/** Ranura de un nodo libre */
+	private static final int LIBRE = -2;
+	
+	private final long resolucion;
+	private final long inicio;
+	
+	// Nodos: posición del temporizador en los arreglos
+	private long[] instantes;
+	private long[] datos;
+	private int[] siguientes;
+	private int[] anteriores;
+	private int[] ranuras;
+	
+	/** Primer nodo de cada ranura y de la lista en disparo */
+	private final int[] cabezas;
+	
+	/** Temporizadores en cada nivel, y en disparo en la última posición */
+	private final int[] porNivel;
+	
+	/** Primer nodo libre, enlazado por {@link #siguientes} */
+	private int libres;
+	
+	/** Nodos usados alguna vez */
+	private int usados;
+	
+	/** Temporizadores pendientes */
+	private int tamanio;
+	
+	/** Siguiente tick a procesar */
+	private long actual;
+	
+	/**
+	 * Recibe los temporizadores que vencen.
+	 */
+	@FunctionalInterface
+	public interface Disparo {
+		
+		/**
+		 * Se invoca cuando vence un temporizador, que ya no está pendiente.
+		 * Puede programar o cancelar otros temporizadores.
+		 * 
+		 * @param instante instante con el que se programó
+		 * @param dato dato asociado al programarlo
+		 */
+		void alVencer(long instante, long dato);
+	}
+	
+	/**
+	 * Construye una rueda vacía.
+	 * 
+	 * @param resolucion milisegundos por tick
+	 * @param inicio instante del tick 0 en milisegundos
+	 * @throws IllegalArgumentException si la resolución no es positiva
+	 */
+	public RuedaTemporizadores(long resolucion, long inicio) {
+		if (resolucion <= 0) {
+			throw new IllegalArgumentException("La resolución debe ser positiva.");
+		}
+		
+		this.resolucion = resolucion;
+		this.inicio = inicio;
+		this.instantes = new long[RANURAS_POR_NIVEL];
+		this.datos = new long[RANURAS_POR_NIVEL];
+		this.siguientes = new int[RANURAS_POR_NIVEL];
+		this.anteriores = new int[RANURAS_POR_NIVEL];
+		this.ranuras = new int[RANURAS_POR_NIVEL];
+		this.cabezas = new int[EN_DISPARO + 1];
+		Arrays.fill(cabezas, NINGUNO);
+		this.porNivel = new int[NIVELES + 1];
+		this.libres = NINGUNO;
+	}
+	
+	/**
+	 * Programa un temporizador. Si el instante ya pasó, vence en el
+	 * siguiente avance.
+	 * 
+	 * @param instante instante de vencimiento en milisegundos
+	 * @param dato dato que se devuelve al vencer
+	 * @return identificador del temporizador, válido hasta que vence o se cancela
+	 */
+	public int programar(long instante, long dato) {
+		int nodo = reservarNodo();
+		instantes[nodo] = instante;
+		datos[nodo] = dato;
+		colocar(nodo);
+		tamanio++;
+		return nodo;
+	}
+	
+	/**
+	 * Cancela un temporizador pendiente.
+	 * 
+	 * @param temporizador identificador devuelto al programar
+	 * @return false si el temporizador no estaba pendiente
+	 */
+	public boolean cancelar(int temporizador) {
+		if (!pendiente(temporizador)) {
+			return false;
+		}
+		
+		desenlazar(temporizador);
+		liberarNodo(temporizador);
+		tamanio--;
+		return true;
+	}
+	
+	/**
+	 * Indica si un temporizador sigue pendiente. Un identificador que ya
+	 * venció o se canceló puede reutilizarse para otro temporizador.
+	 * 
+	 * @param temporizador identificador devuelto al programar
+	 * @return true si está pendiente
+	 */
+	public boolean pendiente(int temporizador) {
+		return temporizador >= 0 && temporizador < usados && ranuras[temporizador] != LIBRE;
+	}
+	
+	/**
+	 * Devuelve el instante de un temporizador pendiente.
+	 * 
+	 * @param temporizador identificador devuelto al programar
+	 * @return instante de vencimiento
+	 * @throws IllegalArgumentException si no está pendiente
+	 */
+	public long getInstante(int temporizador) {
+		comprobarPendiente(temporizador);
+		return instantes[temporizador];
+	}
+	
+	/**
+	 * Devuelve el dato de un temporizador pendiente.
+	 * 
+	 * @param temporizador identificador devuelto al programar
+	 * @return dato asociado
+	 * @throws IllegalArgumentException si no está pendiente
+	 */
+	public long getDato(int temporizador) {
+		comprobarPendiente(temporizador);
+		return datos[temporizador];
+	}
+	
+	/**
+	 * Devuelve el número de temporizadores pendientes.
+	 * 
+	 * @return temporizadores pendientes
+	 */
+	public int size() {
+		return tamanio;
+	}
+	
+	/**
+	 * Avanza la rueda hasta el instante indicado y dispara, en orden de
+	 * tick, los temporizadores vencidos. Los ticks sin temporizadores en
+	 * los niveles inferiores se saltan de una vez.
+	 * 
+	 * @param ahora instante actual en milisegundos
+	 * @param disparo receptor de los temporizadores vencidos
+	 * @return número de temporizadores disparados
+	 */
+	public int avanzar(long ahora, Disparo disparo) {
+		if (ahora < inicio) {
+			return 0;
+		}
+		
+		long objetivo = (ahora - inicio) / resolucion;
+		int disparados = 0;
+		
+		while (actual <= objetivo) {
+			if (tamanio == 0) {
+				actual = objetivo + 1;
+				break;
+			}
+			
+			// Sin temporizadores por debajo de un nivel, hasta su siguiente ranura no pasa nada
+			int vacios = 0;
+			while (vacios < NIVELES && porNivel[vacios] == 0) {
+				vacios++;
+			}
+			long paso = 1L << (BITS_NIVEL * Math.min(vacios, NIVELES - 1));
+			if (vacios > 0 && (actual & (paso - 1)) != 0) {
+				actual = Math.min(objetivo + 1, (actual | (paso - 1)) + 1);
+				continue;
+			}
+			
+			if ((actual & MASCARA_RANURA) == 0) {
+				for (int nivel = 1; nivel < NIVELES; nivel++) {
+					int indice = (int) (actual >>> (BITS_NIVEL * nivel)) & MASCARA_RANURA;
+					cascada(nivel * RANURAS_POR_NIVEL + indice);
+					if (indice != 0) {
+						break;
+					}
+				}
+			}
+			
+			mover((int) (actual & MASCARA_RANURA), EN_DISPARO);
+			actual++;
+			
+			// Los que se programen desde el disparo caen en ticks posteriores
+			int nodo;
+			while ((nodo = cabezas[EN_DISPARO]) != NINGUNO) {
+				long instante = instantes[nodo];
+				long dato = datos[nodo];
+				desenlazar(nodo);
+				liberarNodo(nodo);
+				tamanio--;
+				disparados++;
+				disparo.alVencer(instante, dato);
+			}
+		}
+		return disparados;
+	}
+	
+	/**
+	 * Coloca un nodo en la ranura que le corresponde desde el tick actual.
+	 */
+	private void colocar(int nodo) {
+		long tick = Math.max(tickTecho(instantes[nodo]), actual);
+		long distancia = tick - actual;
+		if (distancia >= ALCANCE) {
+			distancia = ALCANCE - 1;
+			tick = actual + distancia;
+		}
+		
+		int nivel = distancia < RANURAS_POR_NIVEL ? 0 : (63 - Long.numberOfLeadingZeros(distancia)) / BITS_NIVEL;
+		int indice = (int) (tick >>> (BITS_NIVEL * nivel)) & MASCARA_RANURA;
+		enlazar(nodo, nivel * RANURAS_POR_NIVEL + indice);
+	}
+	
+	/**
+	 * Primer tick en el que el instante ya se alcanzó.
+	 */
+	private long tickTecho(long instante) {
+		if (instante <= inicio) {
+			return 0;
+		}
+		long distancia = instante - inicio;
+		return distancia / resolucion + (distancia % resolucion == 0 ? 0 : 1);
+	}
+	
+	/**
+	 * Reparte los nodos de una ranura de un nivel superior.
+	 */
+	private void cascada(int ranura) {
+		int nodo;
+		while ((nodo = cabezas[ranura]) != NINGUNO) {
+			desenlazar(nodo);
+			colocar(nodo);
+		}
+	}
+	
+	/**
+	 * Pasa todos los nodos de una ranura a otra.
+	 */
+	private void mover(int origen, int destino) {
+		int nodo;
+		while ((nodo = cabezas[origen]) != NINGUNO) {
+			desenlazar(nodo);
+			enlazar(nodo, destino);
+		}
+	}
+	
+	private void enlazar(int nodo, int ranura) {
+		int cabeza = cabezas[ranura];
+		siguientes[nodo] = cabeza;
+		anteriores[nodo] = NINGUNO;
+		if (cabeza != NINGUNO) {
+			anteriores[cabeza] = nodo;
+		}
+		cabezas[ranura] = nodo;
+		ranuras[nodo] = ranura;
+		porNivel[ranura / RANURAS_POR_NIVEL]++;
+	}
+	
+	private void desenlazar(int nodo) {
+		int ranura = ranuras[nodo];
+		int anterior = anteriores[nodo];
+		int siguiente = siguientes[nodo];
+		if (anterior == NINGUNO) {
+			cabezas[ranura] = siguiente;
+		} else {
+			siguientes[anterior] = siguiente;
+		}
+		if (siguiente != NINGUNO) {
+			anteriores[siguiente] = anterior;
+		}
+		porNivel[ranura / RANURAS_POR_NIVEL]--;
+	}
+	
+	private int reservarNodo() {
+		if (libres != NINGUNO) {
+			int nodo = libres;
+			libres = siguientes[nodo];
+			return nodo;
+		}
+		
+		if (usados == instantes.length) {
+			int capacidad = usados * 2;
+			instantes = Arrays.copyOf(instantes, capacidad);
+			datos = Arrays.copyOf(datos, capacidad);
+			siguientes = Arrays.copyOf(siguientes, capacidad);
+			anteriores = Arrays.copyOf(anteriores, capacidad);
+			ranuras = Arrays.copyOf(ranuras, capacidad);
+		}
+		return usados++;
+	}
+	
+	private void liberarNodo(int nodo) {
+		ranuras[nodo] = LIBRE;
+		siguientes[nodo] = libres;
+		libres = nodo;
+	}
+	
+	private void comprobarPendiente(int temporizador) {
+		if (!pendiente(temporizador)) {
+			throw new IllegalArgumentException("Temporizador no pendiente: " + temporizador);
+		}
+	}
+
+}
@@ -0,0 +1,416 @@
+package servicio;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import interfaces.OyenteTareas;
+import interfaces.OyenteVencimientos;
+import interfaces.Suscripcion;
+import modelo.LoteEventos;
+import modelo.Pagina;
+import modelo.Tarea;
+import modelo.Usuario;
+
+/**
+ * Servidor TCP que atiende un fragmento de un
+ * {@link GestorTareasFragmentado}, para repartir los fragmentos entre
+ * varias JVM del mismo equipo.
+ * 
+ * <p>
+ * Cada conexión se atiende en su propio hilo virtual, una petición cada
+ * vez; el cliente abre tantas conexiones como peticiones simultáneas
+ * necesite. Cada petición se ejecuta y su respuesta se escribe en el búfer
+ * con el cerrojo del fragmento, de modo que los usuarios y las tareas se
+ * copian en un estado coherente, y se envía después de soltarlo. El
+ * formato de los mensajes es el de {@link ConexionFragmento}.
+ * </p>
+ * 
+ * <p>
+ * Una conexión suscrita a los eventos se queda en ese modo hasta que el
+ * cliente la cierra: el hilo de la suscripción le envía cada lote con el
+ * cerrojo de la conexión, y el de la conexión solo espera el cierre.
+ * </p>
+ * 
+ * <pre>
+ * java servicio.ServidorFragmento fragmento fragmentos [puerto]
+ * </pre>
+ */
+
+public final class ServidorFragmento implements AutoCloseable {
+	
+	/** Conexiones pendientes de aceptar */
+	private static final int COLA_CONEXIONES = 1024;
+	
+	private final int numero;
+	private final int fragmentos;
+	private final FragmentoLocal fragmento;
+	private final ServerSocketChannel servidor;
+	private final int puerto;
+	private final ExecutorService hilos;
+	
+	/** Conexiones abiertas, para cerrarlas con el servidor */
+	private final Set<SocketChannel> conexiones;
+	
+	/**
+	 * Crea un fragmento vacío y empieza a atender conexiones.
+	 * 
+	 * @param fragmento número de este fragmento, desde 0
+	 * @param fragmentos número total de fragmentos
+	 * @param direccion dirección y puerto; el puerto 0 elige uno libre
+	 * @throws IOException si no se puede abrir el puerto
+	 * @throws IllegalArgumentException si los números de fragmento o la
+	 * dirección no son válidos
+	 */
+	public ServidorFragmento(int fragmento, int fragmentos, InetSocketAddress direccion) throws IOException {
+		AnilloFragmentos anillo = new AnilloFragmentos(fragmentos);
+		if (fragmento < 0 || fragmento >= fragmentos) {
+			throw new IllegalArgumentException("Número de fragmento no válido: " + fragmento);
+		}
+		if (direccion == null) {
+			throw new IllegalArgumentException("Dirección no válida.");
+		}
+		
+		this.numero = fragmento;
+		this.fragmentos = fragmentos;
+		this.fragmento = new FragmentoLocal(anillo, fragmento);
+		this.servidor = ServerSocketChannel.open().bind(direccion, COLA_CONEXIONES);
+		this.puerto = ((InetSocketAddress) servidor.getLocalAddress()).getPort();
+		this.conexiones = ConcurrentHashMap.newKeySet();
+		this.hilos = Executors.newVirtualThreadPerTaskExecutor();
+		hilos.submit(this::aceptar);
+	}
+	
+	/**
+	 * @return puerto en el que escucha el servidor
+	 */
+	public int getPuerto() {
+		return puerto;
+	}
+	
+	/**
+	 * Deja de aceptar conexiones, cierra las abiertas y espera a que
+	 * terminen sus hilos.
+	 */
+	@Override
+	public void close() {
+		try {
+			servidor.close();
+		} catch (IOException e) {
+			// El servidor ya no acepta conexiones
+		}
+		for (SocketChannel canal : conexiones) {
+			try {
+				canal.close();
+			} catch (IOException e) {
+				// La conexión ya no se atiende
+			}
+		}
+		hilos.close();
+	}
+	
+	private void aceptar() {
+		while (true) {
+			SocketChannel canal;
+			try {
+				canal = servidor.accept();
+			} catch (IOException e) {
+				return;
+			}
+			
+			conexiones.add(canal);
+			try {
+				hilos.submit(() -> atender(canal));
+			} catch (RejectedExecutionException e) {
+				conexiones.remove(canal);
+				try {
+					canal.close();
+				} catch (IOException cierre) {
+					// El servidor se está cerrando
+				}
+				return;
+			}
+		}
+	}
+	
+	private void atender(SocketChannel canal) {
+		try (ConexionFragmento conexion = new ConexionFragmento(canal)) {
+			for (int operacion; (operacion = conexion.recibir()) != -1;) {
+				if (operacion == ConexionFragmento.SUSCRIBIR) {
+					transmitir(conexion);
+					return;
+				}
+				synchronized (fragmento) {
+					responder(conexion, (byte) operacion);
+				}
+				conexion.enviar();
+			}
+		} catch (IOException e) {
+			// El cliente cerró la conexión o se cerró el servidor
+		} finally {
+			conexiones.remove(canal);
+		}
+	}
+	
+	/**
+	 * Suscribe la conexión a los eventos del fragmento y se los reenvía
+	 * hasta que el cliente cierra su lado. La respuesta se envía con el
+	 * cerrojo de la conexión, así que ningún lote se adelanta a ella.
+	 */
+	private void transmitir(ConexionFragmento conexion) throws IOException {
+		int loteMaximo = conexion.leerEntero();
+		Suscripcion suscripcion = null;
+		try {
+			synchronized (conexion) {
+				try {
+					suscripcion = fragmento.suscribir(new Reenvio(conexion), loteMaximo);
+					conexion.empezar(ConexionFragmento.CORRECTO);
+				} catch (IllegalArgumentException e) {
+					conexion.empezar(ConexionFragmento.ARGUMENTO_NO_VALIDO);
+					conexion.texto(e.getMessage());
+				}
+				conexion.enviar();
+			}
+			while (suscripcion != null && conexion.recibir() != -1) {
+				// El cliente no envía nada más hasta cerrar
+			}
+		} finally {
+			// Entrega lo ya publicado antes de que se cierre la conexión
+			if (suscripcion != null) {
+				suscripcion.close();
+			}
+		}
+	}
+	
+	/**
+	 * Ejecuta una petición y escribe su respuesta, o el error, en el búfer
+	 * de salida.
+	 */
+	private void responder(ConexionFragmento conexion, byte operacion) {
+		try {
+			conexion.empezar(ConexionFragmento.CORRECTO);
+			ejecutar(conexion, operacion);
+		} catch (IllegalArgumentException e) {
+			conexion.empezar(ConexionFragmento.ARGUMENTO_NO_VALIDO);
+			conexion.texto(e.getMessage());
+		} catch (RuntimeException e) {
+			conexion.empezar(ConexionFragmento.ERROR);
+			conexion.texto(e.getMessage() == null ? e.toString() : e.getMessage());
+		}
+	}
+	
+	private void ejecutar(ConexionFragmento conexion, byte operacion) {
+		switch (operacion) {
+			case ConexionFragmento.IDENTIFICAR:
+				conexion.entero(numero);
+				conexion.entero(fragmentos);
+				break;
+			case ConexionFragmento.CREAR_USUARIO:
+				conexion.usuario(fragmento.crearUsuario(conexion.leerTexto(), conexion.leerTipo()));
+				break;
+			case ConexionFragmento.BUSCAR_USUARIO:
+				conexion.usuario(fragmento.buscarUsuario(conexion.leerEntero()));
+				break;
+			case ConexionFragmento.LISTAR_USUARIOS:
+				conexion.usuarios(fragmento.listarUsuarios(conexion.leerTipo()));
+				break;
+			case ConexionFragmento.PAGINA_USUARIOS: {
+				Pagina<Usuario> pagina = fragmento.listarUsuarios(conexion.leerLargo(), conexion.leerEntero());
+				conexion.usuarios(pagina.getElementos());
+				conexion.largo(pagina.getSiguiente());
+				break;
+			}
+			case ConexionFragmento.CREAR_TAREA:
+				conexion.tarea(fragmento.crearTarea(conexion.leerTexto(), conexion.leerPrioridad()));
+				break;
+			case ConexionFragmento.RESERVAR_IDS:
+				conexion.entero(fragmento.reservarIdsTareas(conexion.leerEntero()));
+				break;
+			case ConexionFragmento.AGREGAR_TAREAS:
+				fragmento.agregarTareasAUsuario(conexion.leerEntero(), conexion.leerTareas());
+				break;
+			case ConexionFragmento.LISTAR_TAREAS_USUARIO:
+				conexion.tareas(fragmento.listarTareasDeUsuario(conexion.leerEntero(), conexion.leerEstado(),
+						conexion.leerPrioridad()));
+				break;
+			case ConexionFragmento.PAGINA_TAREAS_USUARIO: {
+				Pagina<Tarea> pagina = fragmento.listarTareasDeUsuario(conexion.leerEntero(), conexion.leerLargo(),
+						conexion.leerEntero());
+				conexion.tareas(pagina == null ? null : pagina.getElementos());
+				conexion.largo(pagina == null ? Pagina.FIN : pagina.getSiguiente());
+				break;
+			}
+			case ConexionFragmento.COMPLETAR:
+				conexion.logico(fragmento.marcarTareaComoCompletada(conexion.leerEntero(), conexion.leerEntero()));
+				break;
+			case ConexionFragmento.ELIMINAR:
+				conexion.logico(fragmento.eliminarTareaDeUsuario(conexion.leerEntero(), conexion.leerEntero()));
+				break;
+			case ConexionFragmento.TAREAS_POR_TIPO: {
+				List<Fragmento.Grupo> grupos = fragmento.listarTareasPorTipoUsuario(conexion.leerTipo(),
+						conexion.leerLargo(), conexion.leerEntero());
+				conexion.entero(grupos.size());
+				for (Fragmento.Grupo grupo : grupos) {
+					conexion.entero(grupo.usuarioId);
+					conexion.tareas(grupo.tareas);
+				}
+				break;
+			}
+			case ConexionFragmento.BUSCAR_TAREAS:
+				conexion.tareas(fragmento.buscarTareas(conexion.leerTexto(), conexion.leerEstado(),
+						conexion.leerPrioridad(), conexion.leerTipo(), conexion.leerEntero()));
+				break;
+			case ConexionFragmento.SIGUIENTE:
+				conexion.tarea(fragmento.siguienteTarea(conexion.leerLogico()));
+				break;
+			case ConexionFragmento.SIGUIENTE_USUARIO:
+				conexion.tarea(fragmento.siguienteTarea(conexion.leerEntero(), conexion.leerLogico()));
+				break;
+			case ConexionFragmento.TOMAR_TAREA:
+				conexion.tarea(fragmento.tomarTarea(conexion.leerEntero()));
+				break;
+			case ConexionFragmento.LIBERAR:
+				conexion.logico(fragmento.liberarTarea(conexion.leerEntero()));
+				break;
+			case ConexionFragmento.CONTAR:
+				conexion.contador(fragmento.contarTareas());
+				break;
+			case ConexionFragmento.CONTAR_USUARIO:
+				conexion.contador(fragmento.contarTareasDeUsuario(conexion.leerEntero()));
+				break;
+			case ConexionFragmento.CONTAR_TIPO:
+				conexion.contador(fragmento.contarTareasPorTipoUsuario(conexion.leerTipo()));
+				break;
+			case ConexionFragmento.FIJAR_VENCIMIENTO:
+				conexion.logico(fragmento.fijarVencimiento(conexion.leerEntero(), conexion.leerEntero(),
+						conexion.leerLargo(), conexion.leerLargo()));
+				break;
+			case ConexionFragmento.REVISAR_VENCIMIENTOS:
+				revisarVencimientos(conexion);
+				break;
+			default:
+				throw new IllegalArgumentException("Operación desconocida: " + operacion);
+		}
+	}
+	
+	/**
+	 * Escribe los avisos de la revisión seguidos del número de tareas
+	 * revisadas, para que el cliente los entregue a su oyente.
+	 */
+	private void revisarVencimientos(ConexionFragmento conexion) {
+		long ahora = conexion.leerLargo();
+		int posicion = conexion.reservarEntero();
+		int[] avisos = new int[1];
+		
+		int revisadas = fragmento.revisarVencimientos(ahora, new OyenteVencimientos() {
+			@Override
+			public void alVencer(int usuarioId, Tarea tarea) {
+				escribir(false, usuarioId, tarea);
+			}
+			
+			@Override
+			public void alEscalar(int usuarioId, Tarea tarea) {
+				escribir(true, usuarioId, tarea);
+			}
+			
+			private void escribir(boolean escalada, int usuarioId, Tarea tarea) {
+				conexion.logico(escalada);
+				conexion.entero(usuarioId);
+				conexion.tarea(tarea);
+				avisos[0]++;
+			}
+		});
+		conexion.fijarEntero(posicion, avisos[0]);
+		conexion.entero(revisadas);
+	}
+	
+	/**
+	 * Oyente que escribe los eventos de una suscripción en su conexión. Si
+	 * un envío falla deja de escribir; la conexión se cierra al terminar la
+	 * suscripción.
+	 */
+	private static final class Reenvio implements OyenteTareas {
+		
+		private final ConexionFragmento conexion;
+		
+		/** Protegido por el cerrojo de la conexión */
+		private boolean cortada;
+		
+		Reenvio(ConexionFragmento conexion) {
+			this.conexion = conexion;
+		}
+		
+		@Override
+		public void alRecibir(LoteEventos lote) {
+			synchronized (conexion) {
+				if (cortada) {
+					return;
+				}
+				conexion.empezar(ConexionFragmento.EVENTOS);
+				conexion.entero(lote.getTamanio());
+				for (int i = 0; i < lote.getTamanio(); i++) {
+					conexion.largo(LoteEventos.codificar(lote.getTipo(i), lote.getTareaId(i), lote.getUsuarioId(i)));
+					conexion.largo(lote.getSecuencia(i));
+				}
+				enviar();
+			}
+		}
+		
+		@Override
+		public void alPerder(long cantidad) {
+			synchronized (conexion) {
+				if (cortada) {
+					return;
+				}
+				conexion.empezar(ConexionFragmento.PERDIDOS);
+				conexion.largo(cantidad);
+				enviar();
+			}
+		}
+		
+		private void enviar() {
+			try {
+				conexion.enviar();
+			} catch (IOException e) {
+				cortada = true;
+			}
+		}
+	
+	}
+	
+	/**
+	 * Arranca un fragmento en la interfaz local y lo atiende hasta que se
+	 * cierra la entrada estándar. Cuando está listo escribe el puerto en la
+	 * salida estándar.
+	 * 
+	 * @param args número de fragmento, número de fragmentos y, opcionalmente,
+	 * puerto
+	 * @throws IOException si no se puede abrir el puerto
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2 || args.length > 3) {
+			System.err.println("Uso: java servicio.ServidorFragmento fragmento fragmentos [puerto]");
+			System.exit(2);
+		}
+		
+		int puerto = args.length == 3 ? Integer.parseInt(args[2]) : 0;
+		InetSocketAddress direccion = new InetSocketAddress(InetAddress.getLoopbackAddress(), puerto);
+		try (ServidorFragmento servidor = new ServidorFragmento(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+				direccion)) {
+			System.out.println(servidor.getPuerto());
+			System.out.flush();
+			while (System.in.read() != -1) {
+				// Se atiende hasta que el proceso padre cierra la entrada
+			}
+		}
+	}
+
+}
@@ -0,0 +1,111 @@
+package servicio;
+
+/**
+ * Estimación aproximada de la frecuencia de acceso de cada clave, con
+ * memoria fija, para decidir qué conserva {@link AlmacenCacheado}.
+ * 
+ * <p>
+ * Es un Count-Min sketch de cuatro filas con contadores de 4 bits: cada
+ * acceso suma uno en un contador de cada fila, elegido con una función de
+ * dispersión distinta, y la frecuencia estimada es el menor de los cuatro,
+ * que solo puede sobrestimar por colisiones. Tras una cantidad de accesos
+ * proporcional al ancho todos los contadores se reducen a la mitad, así
+ * que la estimación olvida la popularidad antigua y se adapta a los
+ * cambios. Esta clase no es segura para uso concurrente.
+ * </p>
+ */
+
+final class SketchFrecuencias {
+	
+	/** Mayor valor de un contador */
+	static final int MAXIMO = 15;
+	
+	private static final int FILAS = 4;
+	
+	/** Contadores de 4 bits por long */
+	private static final int POR_LONG = 16;
+	
+	private static final long[] SEMILLAS = {
+			0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L };
+	
+	/** Contadores de las cuatro filas, una tras otra */
+	private final long[] tabla;
+	
+	/** Contadores por fila menos uno, potencia de dos menos uno */
+	private final int mascara;
+	
+	/** Accesos tras los que se reducen los contadores */
+	private final int periodo;
+	
+	/** Accesos desde la última reducción */
+	private int accesos;
+	
+	/**
+	 * Construye el sketch.
+	 * 
+	 * @param claves claves distintas que se espera seguir; se redondea a
+	 * potencia de dos
+	 */
+	SketchFrecuencias(int claves) {
+		int ancho = Integer.highestOneBit(Math.max(POR_LONG, Math.min(claves, 1 << 24)) - 1) << 1;
+		this.tabla = new long[FILAS * ancho / POR_LONG];
+		this.mascara = ancho - 1;
+		this.periodo = 10 * ancho;
+	}
+	
+	/**
+	 * Anota un acceso a la clave.
+	 * 
+	 * @param clave clave accedida
+	 */
+	void incrementar(int clave) {
+		boolean cambiado = false;
+		for (int fila = 0; fila < FILAS; fila++) {
+			int contador = contador(fila, clave);
+			int indice = contador / POR_LONG;
+			int desplazamiento = (contador % POR_LONG) * 4;
+			if (((tabla[indice] >>> desplazamiento) & MAXIMO) < MAXIMO) {
+				tabla[indice] += 1L << desplazamiento;
+				cambiado = true;
+			}
+		}
+		
+		if (cambiado && ++accesos >= periodo) {
+			reducir();
+		}
+	}
+	
+	/**
+	 * Estima los accesos recientes a la clave.
+	 * 
+	 * @param clave clave a consultar
+	 * @return frecuencia estimada, entre 0 y {@value #MAXIMO}
+	 */
+	int frecuencia(int clave) {
+		int minima = MAXIMO;
+		for (int fila = 0; fila < FILAS; fila++) {
+			int contador = contador(fila, clave);
+			int valor = (int) (tabla[contador / POR_LONG] >>> ((contador % POR_LONG) * 4)) & MAXIMO;
+			minima = Math.min(minima, valor);
+		}
+		return minima;
+	}
+	
+	/**
+	 * Reduce todos los contadores a la mitad.
+	 */
+	private void reducir() {
+		for (int i = 0; i < tabla.length; i++) {
+			tabla[i] = (tabla[i] >>> 1) & 0x7777777777777777L;
+		}
+		accesos /= 2;
+	}
+	
+	/** Posición en la tabla del contador de la clave en una fila */
+	private int contador(int fila, int clave) {
+		long mezcla = (clave + 1L) * SEMILLAS[fila];
+		int indice = (int) (mezcla >>> 40) & mascara;
+		return fila * (mascara + 1) + indice;
+	}
+
+}
@@ -0,0 +1,179 @@
+package servicio;
+
+import java.util.Arrays;
+
+import interfaces.OyenteVencimientos;
+import util.MapaEnteros;
+
+/**
+ * Temporizadores de vencimiento y escalado de las tareas de un gestor,
+ * común a las implementaciones de {@link interfaces.Accionable}.
+ * 
+ * <p>
+ * Cada tarea vigilada tiene como mucho un temporizador pendiente en una
+ * {@link RuedaTemporizadores}: el de escalado, si lo tiene, y después el de
+ * vencimiento, que el gestor programa al escalarla. Los temporizadores no se
+ * disparan solos: el gestor los recoge al revisar los vencimientos y los
+ * aplica fuera de este objeto, que solo guarda ids. Todas las operaciones
+ * están sincronizadas.
+ * </p>
+ */
+
+final class Vencimientos {
+	
+	/** Milisegundos por tick de la rueda */
+	static final long RESOLUCION = 100;
+	
+	/** Marca de los temporizadores de escalado en el dato */
+	private static final long ESCALADO = Long.MIN_VALUE;
+	
+	private final RuedaTemporizadores rueda;
+	
+	/** Temporizador pendiente por id de tarea */
+	private final MapaEnteros temporizadores;
+	
+	/** Disparos de la última revisión, reutilizado entre revisiones */
+	private long[] disparados;
+	private int cantidad;
+	
+	Vencimientos() {
+		this.rueda = new RuedaTemporizadores(RESOLUCION, System.currentTimeMillis());
+		this.temporizadores = new MapaEnteros();
+		this.disparados = new long[16];
+	}
+	
+	/**
+	 * Programa la vigilancia de una tarea y reemplaza la que tuviera.
+	 * 
+	 * @param usuarioId dueño de la tarea
+	 * @param tareaId id de la tarea
+	 * @param venceEn vencimiento, o 0 para dejar de vigilarla
+	 * @param escalarEn instante de escalado, o 0 si no se escala
+	 */
+	synchronized void programar(int usuarioId, int tareaId, long venceEn, long escalarEn) {
+		cancelar(tareaId);
+		if (venceEn == 0) {
+			return;
+		}
+		
+		long dato = ((long) usuarioId << 32) | (tareaId & 0xFFFFFFFFL);
+		int temporizador = escalarEn != 0
+				? rueda.programar(escalarEn, dato | ESCALADO)
+				: rueda.programar(venceEn, dato);
+		temporizadores.put(tareaId, temporizador);
+	}
+	
+	/**
+	 * Deja de vigilar una tarea, por ejemplo al completarla o eliminarla.
+	 * 
+	 * @param tareaId id de la tarea
+	 */
+	synchronized void cancelar(int tareaId) {
+		if (temporizadores.isEmpty()) {
+			return;
+		}
+		
+		int temporizador = temporizadores.remove(tareaId);
+		if (temporizador != MapaEnteros.NO_ENCONTRADO) {
+			rueda.cancelar(temporizador);
+		}
+	}
+	
+	/**
+	 * Devuelve el instante de escalado pendiente de una tarea.
+	 * 
+	 * @param tareaId id de la tarea
+	 * @return instante de escalado, o 0 si no tiene uno pendiente
+	 */
+	synchronized long escaladoPendiente(int tareaId) {
+		int temporizador = temporizadores.get(tareaId);
+		if (temporizador == MapaEnteros.NO_ENCONTRADO || (rueda.getDato(temporizador) & ESCALADO) == 0) {
+			return 0;
+		}
+		return rueda.getInstante(temporizador);
+	}
+	
+	/**
+	 * Avanza hasta el instante indicado y devuelve los temporizadores
+	 * disparados, que dejan de estar pendientes. Cada uno se lee con
+	 * {@link #usuarioDe(long)}, {@link #tareaDe(long)} y
+	 * {@link #esEscalado(long)}.
+	 * 
+	 * @param ahora instante actual en milisegundos
+	 * @return disparos en orden de vencimiento
+	 */
+	synchronized long[] revisar(long ahora) {
+		cantidad = 0;
+		rueda.avanzar(ahora, (instante, dato) -> {
+			if (cantidad == disparados.length) {
+				disparados = Arrays.copyOf(disparados, cantidad * 2);
+			}
+			disparados[cantidad++] = dato;
+			temporizadores.remove(tareaDe(dato));
+		});
+		return Arrays.copyOf(disparados, cantidad);
+	}
+	
+	/**
+	 * Devuelve el número de tareas vigiladas.
+	 * 
+	 * @return tareas con un temporizador pendiente
+	 */
+	synchronized int size() {
+		return rueda.size();
+	}
+	
+	/**
+	 * Comprueba los argumentos de {@link interfaces.Accionable#fijarVencimiento}.
+	 * 
+	 * @throws IllegalArgumentException si alguno es negativo
+	 */
+	static void comprobar(long venceEn, long antelacion) {
+		if (venceEn < 0) {
+			throw new IllegalArgumentException("El vencimiento no puede ser negativo.");
+		}
+		if (antelacion < 0) {
+			throw new IllegalArgumentException("La antelación no puede ser negativa.");
+		}
+	}
+	
+	/**
+	 * Comprueba el oyente de {@link interfaces.Accionable#revisarVencimientos}.
+	 * 
+	 * @throws IllegalArgumentException si es null
+	 */
+	static void comprobar(OyenteVencimientos oyente) {
+		if (oyente == null) {
+			throw new IllegalArgumentException("El oyente no puede ser null.");
+		}
+	}
+	
+	/**
+	 * Calcula cuándo escalar una tarea. Solo se escalan las que aún no se
+	 * atienden como urgentes y tienen vencimiento y antelación.
+	 * 
+	 * @param urgente si la tarea ya es urgente o está escalada
+	 * @param venceEn vencimiento, o 0 si no tiene
+	 * @param antelacion antelación del escalado
+	 * @return instante de escalado, o 0 si no se escala
+	 */
+	static long escalarEn(boolean urgente, long venceEn, long antelacion) {
+		if (urgente || venceEn == 0 || antelacion == 0) {
+			return 0;
+		}
+		return Math.max(1, venceEn - antelacion);
+	}
+	
+	static int usuarioDe(long disparo) {
+		return (int) (disparo >>> 32) & Integer.MAX_VALUE;
+	}
+	
+	static int tareaDe(long disparo) {
+		return (int) disparo;
+	}
+	
+	static boolean esEscalado(long disparo) {
+		return (disparo & ESCALADO) != 0;
+	}
+
+}
@@ -0,0 +1,151 @@
+package servicio;
+
+import java.util.List;
+
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import util.VectorPersistente;
+
+/**
+ * Versión inmutable de los usuarios de un {@link GestorTareasServicio} y de
+ * sus tareas, tal como estaban al publicarse.
+ * 
+ * <p>
+ * Todo lo que contiene son {@link VectorPersistente}: cada escritura del
+ * gestor publica una versión nueva que comparte con la anterior todo lo
+ * que no cambió, así que publicar cuesta O(log n) y leer no bloquea, no
+ * copia y no ve nunca una escritura a medias. Las listas que devuelve no
+ * cambian aunque el gestor siga cambiando; los usuarios y las tareas sí
+ * son los objetos vivos, por lo que su nombre o estado pueden ser
+ * posteriores a la versión.
+ * </p>
+ */
+
+public final class VersionGestor {
+	
+	/** Versión sin usuarios */
+	static final VersionGestor VACIA = new VersionGestor(0, VectorPersistente.vacio(), VectorPersistente.vacio(),
+			VectorPersistente.vacio(), vaciosPorTipo());
+	
+	private final long numero;
+	
+	/** Usuarios en orden de creación */
+	private final VectorPersistente<Usuario> usuarios;
+	
+	/** Usuarios en la posición de su id */
+	private final VectorPersistente<Usuario> usuariosPorId;
+	
+	/** Versión de las tareas de cada usuario, en la posición de su id */
+	private final VectorPersistente<VectorPersistente<Tarea>> tareasPorId;
+	
+	/** Usuarios de cada tipo en orden de creación, por ordinal del tipo */
+	private final VectorPersistente<Usuario>[] usuariosPorTipo;
+	
+	private VersionGestor(long numero, VectorPersistente<Usuario> usuarios, VectorPersistente<Usuario> usuariosPorId,
+			VectorPersistente<VectorPersistente<Tarea>> tareasPorId, VectorPersistente<Usuario>[] usuariosPorTipo) {
+		this.numero = numero;
+		this.usuarios = usuarios;
+		this.usuariosPorId = usuariosPorId;
+		this.tareasPorId = tareasPorId;
+		this.usuariosPorTipo = usuariosPorTipo;
+	}
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static VectorPersistente<Usuario>[] vaciosPorTipo() {
+		VectorPersistente<Usuario>[] vacios = new VectorPersistente[TipoUsuario.values().length];
+		for (int i = 0; i < vacios.length; i++) {
+			vacios[i] = VectorPersistente.vacio();
+		}
+		return vacios;
+	}
+	
+	/**
+	 * Devuelve la versión siguiente con un usuario nuevo, que ya debe
+	 * versionar sus tareas.
+	 */
+	VersionGestor conUsuario(Usuario usuario) {
+		VectorPersistente<Usuario>[] porTipo = usuariosPorTipo.clone();
+		int tipo = usuario.getTipo().ordinal();
+		porTipo[tipo] = porTipo[tipo].agregar(usuario);
+		
+		return new VersionGestor(numero + 1, usuarios.agregar(usuario), usuariosPorId.asignar(usuario.getId(), usuario),
+				tareasPorId.asignar(usuario.getId(), usuario.getVersionTareas()), porTipo);
+	}
+	
+	/**
+	 * Devuelve la versión siguiente con las tareas actuales del usuario, o
+	 * esta misma si no cambiaron.
+	 */
+	VersionGestor conTareasDe(Usuario usuario) {
+		VectorPersistente<VectorPersistente<Tarea>> tareas = tareasPorId.asignar(usuario.getId(),
+				usuario.getVersionTareas());
+		
+		if (tareas == tareasPorId) {
+			return this;
+		}
+		return new VersionGestor(numero + 1, usuarios, usuariosPorId, tareas, usuariosPorTipo);
+	}
+	
+	/**
+	 * Devuelve el número de la versión, que crece con cada escritura
+	 * publicada.
+	 * 
+	 * @return número de versión
+	 */
+	public long getNumero() {
+		return numero;
+	}
+	
+	/**
+	 * Devuelve los usuarios en orden de creación.
+	 * 
+	 * @return lista inmutable de usuarios
+	 */
+	public List<Usuario> usuarios() {
+		return usuarios;
+	}
+	
+	/**
+	 * Devuelve los usuarios de un tipo en orden de creación.
+	 * 
+	 * @param tipo tipo de usuario
+	 * @return lista inmutable de usuarios, vacía si el tipo es null
+	 */
+	public List<Usuario> usuariosPorTipo(TipoUsuario tipo) {
+		return tipo == null ? VectorPersistente.vacio() : usuariosPorTipo[tipo.ordinal()];
+	}
+	
+	/**
+	 * Busca un usuario por su identificador.
+	 * 
+	 * @param id identificador del usuario
+	 * @return usuario, o null si no existía en esta versión
+	 */
+	public Usuario buscarUsuario(int id) {
+		return usuariosPorId.enPosicion(id);
+	}
+	
+	/**
+	 * Devuelve las tareas de un usuario en orden de inserción.
+	 * 
+	 * @param usuarioId identificador del usuario
+	 * @return lista inmutable de tareas, o null si el usuario no existía
+	 * en esta versión
+	 */
+	public List<Tarea> tareasDeUsuario(int usuarioId) {
+		return tareasPorId.enPosicion(usuarioId);
+	}
+	
+	/**
+	 * Devuelve las tareas de los usuarios de un tipo, concatenadas sin
+	 * copiarlas.
+	 * 
+	 * @param tipo tipo de usuario
+	 * @return lista inmutable de tareas
+	 */
+	public List<Tarea> tareasPorTipoUsuario(TipoUsuario tipo) {
+		return new VistaTareasDeUsuarios(usuariosPorTipo(tipo), usuario -> tareasPorId.enPosicion(usuario.getId()));
+	}
+
+}
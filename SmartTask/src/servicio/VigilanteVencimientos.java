@@ -0,0 +1,78 @@
+package servicio;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import interfaces.Accionable;
+import interfaces.OyenteVencimientos;
+
+/**
+ * Revisa periódicamente los vencimientos de un gestor desde un hilo propio.
+ * 
+ * <p>
+ * Hay una sola tarea programada por gestor, sea cual sea el número de
+ * tareas vigiladas: en cada periodo llama a
+ * {@link Accionable#revisarVencimientos} con la hora actual. Solo debe
+ * usarse con gestores seguros para uso concurrente, como
+ * {@link GestorTareasConcurrente} o {@link GestorTareasPersistente}.
+ * </p>
+ */
+
+public final class VigilanteVencimientos implements AutoCloseable {
+	
+	private final ScheduledExecutorService programador;
+	
+	/**
+	 * Empieza a vigilar los vencimientos del gestor.
+	 * 
+	 * @param gestor gestor a revisar
+	 * @param oyente receptor de los avisos, llamado desde el hilo del vigilante
+	 * @param periodoMs milisegundos entre revisiones
+	 * @throws IllegalArgumentException si el gestor o el oyente son null o el periodo no es positivo
+	 */
+	public VigilanteVencimientos(Accionable gestor, OyenteVencimientos oyente, long periodoMs) {
+		if (gestor == null) {
+			throw new IllegalArgumentException("El gestor no puede ser null.");
+		}
+		Vencimientos.comprobar(oyente);
+		if (periodoMs <= 0) {
+			throw new IllegalArgumentException("El periodo debe ser positivo.");
+		}
+		
+		this.programador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+			Thread hilo = new Thread(tarea, "smarttask-vencimientos");
+			hilo.setDaemon(true);
+			return hilo;
+		});
+		programador.scheduleAtFixedRate(() -> revisar(gestor, oyente), periodoMs, periodoMs, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Hace una revisión. Un fallo del oyente no detiene las siguientes.
+	 */
+	private static void revisar(Accionable gestor, OyenteVencimientos oyente) {
+		try {
+			gestor.revisarVencimientos(System.currentTimeMillis(), oyente);
+		} catch (RuntimeException e) {
+			Thread hilo = Thread.currentThread();
+			hilo.getUncaughtExceptionHandler().uncaughtException(hilo, e);
+		}
+	}
+	
+	/**
+	 * Detiene la vigilancia y espera a que termine la revisión en curso.
+	 * No se interrumpe al hilo, ya que el oyente puede estar escribiendo
+	 * en el registro de un gestor persistente.
+	 */
+	@Override
+	public void close() {
+		programador.shutdown();
+		try {
+			programador.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
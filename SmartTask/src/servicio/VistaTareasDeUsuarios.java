@@ -0,0 +1,114 @@
+package servicio;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+import modelo.Tarea;
+import modelo.Usuario;
+
+/**
+ * Vista de solo lectura que concatena las tareas de una lista de usuarios.
+ * 
+ * <p>
+ * No copia ninguna tarea: se recorre directamente sobre las listas de cada
+ * usuario, por lo que refleja los cambios posteriores. El recorrido con
+ * iterador es lineal; el acceso por posición recorre los usuarios hasta
+ * encontrar el que contiene la tarea buscada.
+ * </p>
+ */
+
+final class VistaTareasDeUsuarios extends AbstractList<Tarea> {
+	
+	/** Usuarios cuyas tareas se muestran, en orden */
+	private final List<Usuario> usuarios;
+	
+	/** Lista de tareas que se muestra de cada usuario */
+	private final Function<Usuario, List<Tarea>> tareasDe;
+	
+	/**
+	 * Construye la vista sobre las tareas actuales de los usuarios.
+	 * 
+	 * @param usuarios usuarios cuyas tareas se concatenan
+	 */
+	VistaTareasDeUsuarios(List<Usuario> usuarios) {
+		this(usuarios, Usuario::getTareas);
+	}
+	
+	/**
+	 * Construye la vista sobre las listas de tareas indicadas, por ejemplo
+	 * las de una {@link VersionGestor}.
+	 * 
+	 * @param usuarios usuarios cuyas tareas se concatenan
+	 * @param tareasDe lista de tareas de cada usuario
+	 */
+	VistaTareasDeUsuarios(List<Usuario> usuarios, Function<Usuario, List<Tarea>> tareasDe) {
+		this.usuarios = usuarios;
+		this.tareasDe = tareasDe;
+	}
+	
+	@Override
+	public Tarea get(int index) {
+		if (index >= 0) {
+			int restante = index;
+			for (Usuario usuario : usuarios) {
+				List<Tarea> tareas = tareasDe.apply(usuario);
+				if (restante < tareas.size()) {
+					return tareas.get(restante);
+				}
+				restante -= tareas.size();
+			}
+		}
+		throw new IndexOutOfBoundsException(index);
+	}
+	
+	@Override
+	public int size() {
+		int total = 0;
+		for (Usuario usuario : usuarios) {
+			total += tareasDe.apply(usuario).size();
+		}
+		return total;
+	}
+	
+	@Override
+	public boolean isEmpty() {
+		for (Usuario usuario : usuarios) {
+			if (!tareasDe.apply(usuario).isEmpty()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	@Override
+	public Iterator<Tarea> iterator() {
+		return new Iterator<>() {
+			
+			private final Iterator<Usuario> usuarioActual = usuarios.iterator();
+			private Iterator<Tarea> tareaActual = null;
+			
+			@Override
+			public boolean hasNext() {
+				while (tareaActual == null || !tareaActual.hasNext()) {
+					if (!usuarioActual.hasNext()) {
+						return false;
+					}
+					tareaActual = tareasDe.apply(usuarioActual.next()).iterator();
+				}
+				return true;
+			}
+			
+			@Override
+			public Tarea next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return tareaActual.next();
+			}
+		};
+	}
+
+}
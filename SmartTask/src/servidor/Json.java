@@ -0,0 +1,257 @@
+package servidor;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import modelo.ContadorTareas;
+import modelo.EstadoTarea;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.Usuario;
+
+/**
+ * Escritura de usuarios y tareas en JSON y lectura de los objetos planos
+ * que llegan en las peticiones.
+ */
+
+final class Json {
+	
+	private Json() {
+	}
+	
+	// Escritura
+	
+	static StringBuilder usuario(StringBuilder json, Usuario usuario) {
+		json.append("{\"id\":").append(usuario.getId())
+				.append(",\"tipo\":\"").append(usuario.getTipo().name())
+				.append("\",\"nombre\":");
+		texto(json, usuario.getNombre());
+		return json.append(",\"tareas\":").append(usuario.getTareas().size()).append('}');
+	}
+	
+	static StringBuilder tarea(StringBuilder json, Tarea tarea) {
+		json.append("{\"id\":").append(tarea.getId())
+				.append(",\"prioridad\":\"").append(tarea.getPrioridad().name())
+				.append("\",\"estado\":\"").append(tarea.getEstado().name())
+				.append("\",\"descripcion\":");
+		texto(json, tarea.getDescripcion());
+		return json.append(",\"creadaEn\":").append(tarea.getCreadaEn())
+				.append(",\"completadaEn\":").append(tarea.getCompletadaEn())
+				.append(",\"venceEn\":").append(tarea.getVenceEn())
+				.append(",\"escalada\":").append(tarea.isEscalada())
+				.append('}');
+	}
+	
+	static StringBuilder usuarios(StringBuilder json, List<Usuario> usuarios) {
+		json.append('[');
+		boolean primero = true;
+		for (Usuario usuario : usuarios) {
+			if (!primero) {
+				json.append(',');
+			}
+			usuario(json, usuario);
+			primero = false;
+		}
+		return json.append(']');
+	}
+	
+	static StringBuilder tareas(StringBuilder json, List<Tarea> tareas) {
+		json.append('[');
+		boolean primero = true;
+		for (Tarea tarea : tareas) {
+			if (!primero) {
+				json.append(',');
+			}
+			tarea(json, tarea);
+			primero = false;
+		}
+		return json.append(']');
+	}
+	
+	static StringBuilder contador(StringBuilder json, ContadorTareas contador) {
+		return json.append("{\"total\":").append(contador.total())
+				.append(",\"activas\":").append(contador.contar(EstadoTarea.ACTIVA))
+				.append(",\"completadas\":").append(contador.contar(EstadoTarea.COMPLETADA))
+				.append(",\"normales\":").append(contador.contar(Prioridad.NORMAL))
+				.append(",\"urgentes\":").append(contador.contar(Prioridad.URGENTE))
+				.append('}');
+	}
+	
+	static StringBuilder error(StringBuilder json, String mensaje) {
+		json.append("{\"error\":");
+		texto(json, mensaje == null ? "" : mensaje);
+		return json.append('}');
+	}
+	
+	/**
+	 * Agrega una cadena JSON con las comillas, barras y caracteres de
+	 * control escapados.
+	 */
+	static void texto(StringBuilder json, String texto) {
+		json.append('"');
+		for (int i = 0; i < texto.length(); i++) {
+			char c = texto.charAt(i);
+			switch (c) {
+				case '"':
+					json.append("\\\"");
+					break;
+				case '\\':
+					json.append("\\\\");
+					break;
+				case '\n':
+					json.append("\\n");
+					break;
+				case '\r':
+					json.append("\\r");
+					break;
+				case '\t':
+					json.append("\\t");
+					break;
+				default:
+					if (c < 0x20) {
+						json.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+					} else {
+						json.append(c);
+					}
+			}
+		}
+		json.append('"');
+	}
+	
+	// Lectura
+	
+	/**
+	 * Lee un objeto JSON plano, con valores de texto, número, booleano o
+	 * null. Los valores se devuelven como texto, sin comillas.
+	 * 
+	 * @param texto cuerpo de la petición
+	 * @return valores por nombre
+	 * @throws IllegalArgumentException si no es un objeto plano válido
+	 */
+	static Map<String, String> objeto(String texto) {
+		Lector lector = new Lector(texto);
+		Map<String, String> valores = new HashMap<>();
+		
+		lector.esperar('{');
+		if (!lector.consumir('}')) {
+			do {
+				String clave = lector.cadena();
+				lector.esperar(':');
+				valores.put(clave, lector.valor());
+			} while (lector.consumir(','));
+			lector.esperar('}');
+		}
+		lector.fin();
+		return valores;
+	}
+	
+	/**
+	 * Recorre el texto de un objeto plano.
+	 */
+	private static final class Lector {
+		
+		private final String texto;
+		private int posicion;
+		
+		Lector(String texto) {
+			this.texto = texto;
+		}
+		
+		void esperar(char esperado) {
+			if (!consumir(esperado)) {
+				throw new IllegalArgumentException("JSON no válido: se esperaba '" + esperado + "' en la posición " + posicion + ".");
+			}
+		}
+		
+		boolean consumir(char esperado) {
+			saltarEspacios();
+			if (posicion < texto.length() && texto.charAt(posicion) == esperado) {
+				posicion++;
+				return true;
+			}
+			return false;
+		}
+		
+		void fin() {
+			saltarEspacios();
+			if (posicion != texto.length()) {
+				throw new IllegalArgumentException("JSON no válido: texto de más en la posición " + posicion + ".");
+			}
+		}
+		
+		String valor() {
+			saltarEspacios();
+			if (posicion < texto.length() && texto.charAt(posicion) == '"') {
+				return cadena();
+			}
+			
+			int inicio = posicion;
+			while (posicion < texto.length() && "-+.eE0123456789truefalsn".indexOf(texto.charAt(posicion)) >= 0) {
+				posicion++;
+			}
+			if (inicio == posicion) {
+				throw new IllegalArgumentException("JSON no válido: valor no admitido en la posición " + inicio + ".");
+			}
+			String valor = texto.substring(inicio, posicion);
+			return valor.equals("null") ? null : valor;
+		}
+		
+		String cadena() {
+			esperar('"');
+			StringBuilder cadena = new StringBuilder();
+			while (posicion < texto.length()) {
+				char c = texto.charAt(posicion++);
+				if (c == '"') {
+					return cadena.toString();
+				}
+				if (c != '\\') {
+					cadena.append(c);
+					continue;
+				}
+				if (posicion == texto.length()) {
+					break;
+				}
+				char escape = texto.charAt(posicion++);
+				switch (escape) {
+					case 'n':
+						cadena.append('\n');
+						break;
+					case 'r':
+						cadena.append('\r');
+						break;
+					case 't':
+						cadena.append('\t');
+						break;
+					case 'b':
+						cadena.append('\b');
+						break;
+					case 'f':
+						cadena.append('\f');
+						break;
+					case 'u':
+						if (posicion + 4 > texto.length()) {
+							throw new IllegalArgumentException("JSON no válido: escape unicode incompleto.");
+						}
+						try {
+							cadena.append((char) Integer.parseInt(texto, posicion, posicion + 4, 16));
+						} catch (NumberFormatException e) {
+							throw new IllegalArgumentException("JSON no válido: escape unicode incorrecto.");
+						}
+						posicion += 4;
+						break;
+					default:
+						cadena.append(escape);
+				}
+			}
+			throw new IllegalArgumentException("JSON no válido: cadena sin cerrar.");
+		}
+		
+		private void saltarEspacios() {
+			while (posicion < texto.length() && Character.isWhitespace(texto.charAt(posicion))) {
+				posicion++;
+			}
+		}
+	}
+
+}
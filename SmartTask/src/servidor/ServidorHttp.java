@@ -0,0 +1,466 @@
+package servidor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import interfaces.Accionable;
+import modelo.EstadoTarea;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import servicio.GestorTareasMedido;
+
+/**
+ * Servidor HTTP que expone un {@link Accionable} como API REST con JSON,
+ * sobre el servidor HTTP incluido en el JDK.
+ * 
+ * <p>
+ * Cada petición se atiende en su propio hilo virtual, así que el gestor
+ * debe ser seguro para uso concurrente, como
+ * {@link servicio.GestorTareasConcurrente} o
+ * {@link servicio.GestorTareasPersistente}. Las respuestas llevan siempre
+ * su longitud, por lo que las conexiones se mantienen abiertas entre
+ * peticiones (keep-alive) y admiten peticiones encadenadas sin esperar la
+ * respuesta (pipelining), que se responden en orden.
+ * </p>
+ * 
+ * <pre>
+ * GET    /usuarios[?tipo=]                       lista de usuarios
+ * POST   /usuarios                               {"nombre", "tipo"}: 201 y el usuario
+ * GET    /usuarios/{id}                          usuario, o 404
+ * GET    /usuarios/{id}/tareas[?estado=|?prioridad=]
+ * POST   /usuarios/{id}/tareas                   {"descripcion", "prioridad"}: 201 y la tarea
+ * POST   /usuarios/{id}/tareas/{tarea}/completar 204, o 404
+ * DELETE /usuarios/{id}/tareas/{tarea}           204, o 404
+ * GET    /tareas?tipo=                           tareas de un tipo de usuario
+ * GET    /tareas/buscar?q=[&amp;limite=&amp;estado=&amp;prioridad=&amp;tipo=]
+ * GET    /cola/siguiente[?usuario=]              tarea, o 204 si no hay
+ * POST   /cola/tomar[?usuario=]                  tarea reclamada, o 204 si no hay
+ * POST   /cola/{tarea}/liberar                   204, o 404
+ * GET    /estadisticas                           conteo de tareas
+ * GET    /metricas                               volcado en texto, si el gestor es un {@link GestorTareasMedido}
+ * </pre>
+ * 
+ * <p>
+ * Los errores de los argumentos responden 400 y el cuerpo
+ * {@code {"error": mensaje}}; una ruta desconocida, 404; un método no
+ * admitido en una ruta conocida, 405; y un cuerpo de petición de más de
+ * {@value #CUERPO_MAXIMO} bytes, 413, cerrando la conexión.
+ * </p>
+ * 
+ * <p>
+ * El servidor del JDK cierra las conexiones inactivas que superan
+ * {@code sun.net.httpserver.maxIdleConnections} (200 por defecto), y sin
+ * {@code sun.net.httpserver.nodelay} el algoritmo de Nagle retiene cada
+ * respuesta hasta el ACK retardado del cliente. Son propiedades de toda la
+ * JVM, así que no las cambia este servidor sino quien lanza el proceso.
+ * </p>
+ */
+
+public final class ServidorHttp implements AutoCloseable {
+	
+	/** Tamaño máximo del cuerpo de una petición en bytes */
+	public static final int CUERPO_MAXIMO = 1 << 20;
+	
+	/** Conexiones pendientes de aceptar */
+	private static final int COLA_CONEXIONES = 1 << 14;
+	
+	private static final int OK = 200;
+	private static final int CREADO = 201;
+	private static final int SIN_CONTENIDO = 204;
+	private static final int PETICION_INCORRECTA = 400;
+	private static final int NO_ENCONTRADO = 404;
+	private static final int METODO_NO_PERMITIDO = 405;
+	private static final int CUERPO_DEMASIADO_GRANDE = 413;
+	private static final int ERROR_INTERNO = 500;
+	
+	private static final int LIMITE_BUSQUEDA = 20;
+	
+	private final Accionable gestor;
+	private final ExecutorService hilos;
+	private final HttpServer servidor;
+	
+	/**
+	 * Crea el servidor y empieza a atender peticiones.
+	 * 
+	 * @param gestor gestor seguro para uso concurrente
+	 * @param direccion dirección y puerto; el puerto 0 elige uno libre
+	 * @throws IOException si no se puede abrir el puerto
+	 * @throws IllegalArgumentException si el gestor o la dirección son null
+	 */
+	public ServidorHttp(Accionable gestor, InetSocketAddress direccion) throws IOException {
+		if (gestor == null || direccion == null) {
+			throw new IllegalArgumentException("Gestor o dirección no válidos.");
+		}
+		
+		this.gestor = gestor;
+		this.hilos = Executors.newVirtualThreadPerTaskExecutor();
+		this.servidor = HttpServer.create(direccion, COLA_CONEXIONES);
+		servidor.createContext("/", this::atender);
+		servidor.setExecutor(hilos);
+		servidor.start();
+	}
+	
+	/**
+	 * Devuelve el puerto en el que escucha el servidor.
+	 * 
+	 * @return puerto local
+	 */
+	public int getPuerto() {
+		return servidor.getAddress().getPort();
+	}
+	
+	/**
+	 * Deja de aceptar peticiones y espera a que terminen las que están en
+	 * curso.
+	 */
+	@Override
+	public void close() {
+		servidor.stop(0);
+		hilos.close();
+	}
+	
+	private void atender(HttpExchange intercambio) throws IOException {
+		try (intercambio; InputStream entrada = intercambio.getRequestBody()) {
+			StringBuilder json = new StringBuilder(256);
+			
+			// Se lee el cuerpo entero para que la conexión quede lista para la siguiente petición
+			byte[] leido = longitudDeclarada(intercambio) > CUERPO_MAXIMO ? null : entrada.readNBytes(CUERPO_MAXIMO + 1);
+			if (leido == null || leido.length > CUERPO_MAXIMO) {
+				// El resto del cuerpo no se lee, así que la conexión no se puede reutilizar
+				intercambio.getResponseHeaders().set("Connection", "close");
+				Json.error(json, "El cuerpo supera los " + CUERPO_MAXIMO + " bytes.");
+				responder(intercambio, CUERPO_DEMASIADO_GRANDE, json);
+				return;
+			}
+			String cuerpo = new String(leido, StandardCharsets.UTF_8);
+			
+			String ruta = intercambio.getRequestURI().getRawPath();
+			if (ruta.equals("/metricas") && intercambio.getRequestMethod().equals("GET")
+					&& gestor instanceof GestorTareasMedido medido) {
+				responder(intercambio, OK, "text/plain; charset=utf-8", medido.volcar());
+				return;
+			}
+			
+			int estado;
+			try {
+				estado = enrutar(intercambio.getRequestMethod(), ruta,
+						consulta(intercambio.getRequestURI().getRawQuery()), cuerpo, json);
+			} catch (IllegalArgumentException e) {
+				json.setLength(0);
+				Json.error(json, e.getMessage());
+				estado = PETICION_INCORRECTA;
+			} catch (RuntimeException e) {
+				json.setLength(0);
+				Json.error(json, "Error interno.");
+				estado = ERROR_INTERNO;
+			}
+			responder(intercambio, estado, json);
+		}
+	}
+	
+	/**
+	 * Devuelve la longitud del cuerpo que declara la petición, o -1 si no
+	 * la declara (por ejemplo, con cuerpo por trozos).
+	 */
+	private static long longitudDeclarada(HttpExchange intercambio) {
+		String longitud = intercambio.getRequestHeaders().getFirst("Content-Length");
+		try {
+			return longitud == null ? -1 : Long.parseLong(longitud.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+	
+	private static void responder(HttpExchange intercambio, int estado, StringBuilder json) throws IOException {
+		if (json.length() == 0) {
+			intercambio.sendResponseHeaders(estado, -1);
+			return;
+		}
+		responder(intercambio, estado, "application/json; charset=utf-8", json.toString());
+	}
+	
+	private static void responder(HttpExchange intercambio, int estado, String tipo, String cuerpo) throws IOException {
+		byte[] bytes = cuerpo.getBytes(StandardCharsets.UTF_8);
+		intercambio.getResponseHeaders().set("Content-Type", tipo);
+		intercambio.sendResponseHeaders(estado, bytes.length);
+		try (OutputStream salida = intercambio.getResponseBody()) {
+			salida.write(bytes);
+		}
+	}
+	
+	/**
+	 * Atiende una petición.
+	 * 
+	 * @param json cuerpo de la respuesta, vacío si no tiene
+	 * @return código de estado
+	 */
+	private int enrutar(String metodo, String ruta, Map<String, String> consulta, String cuerpo, StringBuilder json) {
+		List<String> partes = partes(ruta);
+		if (partes.isEmpty()) {
+			return NO_ENCONTRADO;
+		}
+		
+		switch (partes.get(0)) {
+			case "usuarios":
+				return usuarios(metodo, partes, consulta, cuerpo, json);
+			case "tareas":
+				return tareas(metodo, partes, consulta, json);
+			case "cola":
+				return cola(metodo, partes, consulta, json);
+			case "estadisticas":
+				if (partes.size() != 1) {
+					return NO_ENCONTRADO;
+				}
+				if (!metodo.equals("GET")) {
+					return METODO_NO_PERMITIDO;
+				}
+				Json.contador(json, gestor.contarTareas());
+				return OK;
+			default:
+				return NO_ENCONTRADO;
+		}
+	}
+	
+	private int usuarios(String metodo, List<String> partes, Map<String, String> consulta, String cuerpo, StringBuilder json) {
+		if (partes.size() == 1) {
+			if (metodo.equals("GET")) {
+				String tipo = consulta.get("tipo");
+				Json.usuarios(json, tipo == null ? gestor.listarUsuarios()
+						: gestor.listarUsuariosPorTipo(constante(TipoUsuario.class, tipo)));
+				return OK;
+			}
+			if (metodo.equals("POST")) {
+				Map<String, String> datos = Json.objeto(cuerpo);
+				TipoUsuario tipo = constante(TipoUsuario.class, requerido(datos, "tipo"));
+				Json.usuario(json, gestor.crearUsuario(requerido(datos, "nombre"), tipo));
+				return CREADO;
+			}
+			return METODO_NO_PERMITIDO;
+		}
+		
+		int usuarioId = id(partes.get(1));
+		if (usuarioId < 0) {
+			return NO_ENCONTRADO;
+		}
+		
+		if (partes.size() == 2) {
+			if (!metodo.equals("GET")) {
+				return METODO_NO_PERMITIDO;
+			}
+			Usuario usuario = gestor.buscarUsuario(usuarioId);
+			if (usuario == null) {
+				return NO_ENCONTRADO;
+			}
+			Json.usuario(json, usuario);
+			return OK;
+		}
+		
+		if (!partes.get(2).equals("tareas")) {
+			return NO_ENCONTRADO;
+		}
+		
+		if (partes.size() == 3) {
+			if (metodo.equals("GET")) {
+				String estado = consulta.get("estado");
+				String prioridad = consulta.get("prioridad");
+				List<Tarea> tareas = estado != null ? gestor.listarTareasDeUsuario(usuarioId, constante(EstadoTarea.class, estado))
+						: prioridad != null ? gestor.listarTareasDeUsuario(usuarioId, constante(Prioridad.class, prioridad))
+						: gestor.listarTareasDeUsuario(usuarioId);
+				if (tareas == null) {
+					return NO_ENCONTRADO;
+				}
+				Json.tareas(json, tareas);
+				return OK;
+			}
+			if (metodo.equals("POST")) {
+				Map<String, String> datos = Json.objeto(cuerpo);
+				Prioridad prioridad = constante(Prioridad.class, requerido(datos, "prioridad"));
+				String descripcion = requerido(datos, "descripcion");
+				if (gestor.buscarUsuario(usuarioId) == null) {
+					return NO_ENCONTRADO;
+				}
+				Tarea tarea = gestor.crearTarea(descripcion, prioridad);
+				gestor.agregarTareaAUsuario(usuarioId, tarea);
+				Json.tarea(json, tarea);
+				return CREADO;
+			}
+			return METODO_NO_PERMITIDO;
+		}
+		
+		int tareaId = id(partes.get(3));
+		if (tareaId < 0) {
+			return NO_ENCONTRADO;
+		}
+		
+		if (partes.size() == 4) {
+			if (!metodo.equals("DELETE")) {
+				return METODO_NO_PERMITIDO;
+			}
+			return gestor.eliminarTareaDeUsuario(usuarioId, tareaId) ? SIN_CONTENIDO : NO_ENCONTRADO;
+		}
+		
+		if (partes.size() == 5 && partes.get(4).equals("completar")) {
+			if (!metodo.equals("POST")) {
+				return METODO_NO_PERMITIDO;
+			}
+			return gestor.marcarTareaComoCompletada(usuarioId, tareaId) ? SIN_CONTENIDO : NO_ENCONTRADO;
+		}
+		return NO_ENCONTRADO;
+	}
+	
+	private int tareas(String metodo, List<String> partes, Map<String, String> consulta, StringBuilder json) {
+		if (partes.size() == 1) {
+			if (!metodo.equals("GET")) {
+				return METODO_NO_PERMITIDO;
+			}
+			TipoUsuario tipo = constante(TipoUsuario.class, requerido(consulta, "tipo"));
+			Json.tareas(json, gestor.listarTareasPorTipoUsuario(tipo));
+			return OK;
+		}
+		
+		if (partes.size() == 2 && partes.get(1).equals("buscar")) {
+			if (!metodo.equals("GET")) {
+				return METODO_NO_PERMITIDO;
+			}
+			String limite = consulta.get("limite");
+			Json.tareas(json, gestor.buscarTareas(requerido(consulta, "q"),
+					opcional(EstadoTarea.class, consulta.get("estado")),
+					opcional(Prioridad.class, consulta.get("prioridad")),
+					opcional(TipoUsuario.class, consulta.get("tipo")),
+					limite == null ? LIMITE_BUSQUEDA : entero("limite", limite)));
+			return OK;
+		}
+		return NO_ENCONTRADO;
+	}
+	
+	private int cola(String metodo, List<String> partes, Map<String, String> consulta, StringBuilder json) {
+		if (partes.size() == 2 && (partes.get(1).equals("siguiente") || partes.get(1).equals("tomar"))) {
+			boolean tomar = partes.get(1).equals("tomar");
+			if (!metodo.equals(tomar ? "POST" : "GET")) {
+				return METODO_NO_PERMITIDO;
+			}
+			
+			String usuario = consulta.get("usuario");
+			Tarea tarea;
+			if (usuario == null) {
+				tarea = tomar ? gestor.tomarSiguienteTarea() : gestor.verSiguienteTarea();
+			} else {
+				int usuarioId = entero("usuario", usuario);
+				tarea = tomar ? gestor.tomarSiguienteTarea(usuarioId) : gestor.verSiguienteTarea(usuarioId);
+			}
+			if (tarea == null) {
+				return SIN_CONTENIDO;
+			}
+			Json.tarea(json, tarea);
+			return OK;
+		}
+		
+		if (partes.size() == 3 && partes.get(2).equals("liberar")) {
+			int tareaId = id(partes.get(1));
+			if (tareaId < 0) {
+				return NO_ENCONTRADO;
+			}
+			if (!metodo.equals("POST")) {
+				return METODO_NO_PERMITIDO;
+			}
+			return gestor.liberarTarea(tareaId) ? SIN_CONTENIDO : NO_ENCONTRADO;
+		}
+		return NO_ENCONTRADO;
+	}
+	
+	// Argumentos
+	
+	/** Divide la ruta en sus partes no vacías */
+	private static List<String> partes(String ruta) {
+		List<String> partes = new ArrayList<>(6);
+		int inicio = 0;
+		for (int i = 0; i <= ruta.length(); i++) {
+			if (i == ruta.length() || ruta.charAt(i) == '/') {
+				if (i > inicio) {
+					partes.add(ruta.substring(inicio, i));
+				}
+				inicio = i + 1;
+			}
+		}
+		return partes;
+	}
+	
+	private static Map<String, String> consulta(String consulta) {
+		Map<String, String> valores = new HashMap<>();
+		if (consulta == null) {
+			return valores;
+		}
+		for (String par : consulta.split("&")) {
+			int igual = par.indexOf('=');
+			if (igual > 0) {
+				valores.put(URLDecoder.decode(par.substring(0, igual), StandardCharsets.UTF_8),
+						URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8));
+			}
+		}
+		return valores;
+	}
+	
+	/**
+	 * Interpreta un id de la ruta.
+	 * 
+	 * @return id, o -1 si no es un número no negativo
+	 */
+	private static int id(String texto) {
+		if (texto.isEmpty() || texto.length() > 10) {
+			return -1;
+		}
+		long valor = 0;
+		for (int i = 0; i < texto.length(); i++) {
+			char c = texto.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			valor = valor * 10 + (c - '0');
+		}
+		return valor > Integer.MAX_VALUE ? -1 : (int) valor;
+	}
+	
+	private static int entero(String nombre, String texto) {
+		try {
+			return Integer.parseInt(texto);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Valor no válido para " + nombre + ": " + texto);
+		}
+	}
+	
+	private static String requerido(Map<String, String> valores, String nombre) {
+		String valor = valores.get(nombre);
+		if (valor == null) {
+			throw new IllegalArgumentException("Falta " + nombre + ".");
+		}
+		return valor;
+	}
+	
+	private static <E extends Enum<E>> E constante(Class<E> tipo, String nombre) {
+		try {
+			return Enum.valueOf(tipo, nombre);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Valor no válido para " + tipo.getSimpleName() + ": " + nombre);
+		}
+	}
+	
+	private static <E extends Enum<E>> E opcional(Class<E> tipo, String nombre) {
+		return nombre == null ? null : constante(tipo, nombre);
+	}
+
+}
@@ -0,0 +1,223 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import interfaces.AlmacenTareas.Filtro;
+import modelo.EstadoTarea;
+import modelo.Estudiante;
+import modelo.Prioridad;
+import modelo.Profesor;
+import modelo.Tarea;
+import modelo.TareaNormal;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import servicio.AlmacenArbolB;
+import servicio.AlmacenCacheado;
+import servicio.AlmacenMemoria;
+import servicio.GestorTareasServicio;
+
+/**
+ * Pruebas de la caché de usuarios con escritura diferida.
+ */
+class AlmacenCacheadoTest {
+
+    @TempDir
+    Path directorio;
+
+    private static AlmacenMemoria poblar(int usuarios, int tareasPorUsuario) {
+        AlmacenMemoria almacen = new AlmacenMemoria();
+        int tareaId = 1;
+        for (int id = 1; id <= usuarios; id++) {
+            almacen.guardarUsuario(new Estudiante(id, "Usuario " + id));
+            List<Tarea> tareas = new ArrayList<>();
+            for (int i = 0; i < tareasPorUsuario; i++) {
+                tareas.add(new TareaNormal(tareaId, "Tarea " + tareaId));
+                tareaId++;
+            }
+            almacen.guardarTareas(id, tareas);
+        }
+        return almacen;
+    }
+
+    @Test
+    void deberiaContarAciertosYFallosYDevolverElUsuarioConSusTareas() {
+        AlmacenCacheado cache = new AlmacenCacheado(poblar(10, 5), 1 << 20);
+
+        Usuario usuario = cache.cargarUsuario(3);
+        assertEquals(5, usuario.getTareas().size());
+        assertSame(usuario, cache.cargarUsuario(3));
+        assertNull(cache.cargarUsuario(99));
+
+        assertEquals(1, cache.getAciertos());
+        assertEquals(2, cache.getFallos());
+        assertEquals(1, cache.getUsuariosEnCache());
+        assertEquals(List.of(11, 12), ids(cache, Filtro.TODAS.deUsuario(3).entreIds(11, 12)));
+    }
+
+    @Test
+    void deberiaLimitarLaMemoriaPorBytesEstimadosYNoPorUsuarios() {
+        AlmacenMemoria respaldo = poblar(200, 1);
+        List<Tarea> muchas = new ArrayList<>();
+        for (int id = 10_000; id < 30_000; id++) {
+            muchas.add(new TareaNormal(id, "Tarea grande " + id));
+        }
+        respaldo.guardarTareas(1, muchas);
+
+        AlmacenCacheado cache = new AlmacenCacheado(respaldo, 64 * 1024);
+        for (int vuelta = 0; vuelta < 3; vuelta++) {
+            for (int id = 2; id <= 200; id++) {
+                cache.cargarUsuario(id);
+                assertTrue(cache.getBytes() <= cache.getMaximoBytes());
+            }
+        }
+        assertTrue(cache.getUsuariosEnCache() > 50);
+        assertTrue(cache.getDesalojos() > 0);
+
+        // El usuario con 20 001 tareas no cabe: se devuelve sin entrar en la caché
+        assertEquals(20_001, cache.cargarUsuario(1).getTareas().size());
+        assertEquals(1, cache.getRechazos());
+        assertTrue(cache.getBytes() <= cache.getMaximoBytes());
+
+        // Y sus cambios se escriben en el acto
+        Tarea cambiada = new TareaNormal(10_000, "Cambiada");
+        cache.guardarTareas(1, List.of(cambiada));
+        assertEquals("Cambiada", respaldo.cargarTarea(10_000).getDescripcion());
+    }
+
+    @Test
+    void unRecorridoDeUsuariosFriosNoDeberiaDesalojarALosFrecuentes() {
+        AlmacenCacheado cache = new AlmacenCacheado(poblar(5_000, 2), 100 * 1024);
+
+        for (int vuelta = 0; vuelta < 10; vuelta++) {
+            for (int id = 1; id <= 50; id++) {
+                cache.cargarUsuario(id);
+            }
+        }
+        for (int id = 51; id <= 5_000; id++) {
+            cache.cargarUsuario(id);
+        }
+
+        long fallos = cache.getFallos();
+        for (int id = 1; id <= 50; id++) {
+            cache.cargarUsuario(id);
+        }
+        assertEquals(fallos, cache.getFallos());
+    }
+
+    @Test
+    void deberiaDiferirYAgruparLasEscriturasDeTareas() throws IOException {
+        Path archivo = directorio.resolve("cache.db");
+        AlmacenArbolB arbol = AlmacenArbolB.abrir(archivo);
+        arbol.guardarUsuario(new Profesor(1, "Ana"));
+        arbol.guardarTareas(1, List.of(new TareaNormal(1, "Preparar clase")));
+
+        try (AlmacenCacheado cache = new AlmacenCacheado(arbol, 1 << 20)) {
+            Tarea tarea = new TareaNormal(1, "Preparar clase");
+            tarea.setVenceEn(5_000);
+            cache.guardarTareas(1, List.of(tarea));
+            tarea.marcarComoCompletada(6_000);
+            cache.guardarTareas(1, List.of(tarea, new TareaNormal(2, "Corregir")));
+
+            // El respaldo aún no tiene los cambios, pero la caché sí los devuelve
+            assertEquals(EstadoTarea.ACTIVA, arbol.cargarTarea(1).getEstado());
+            assertNull(arbol.cargarTarea(2));
+            assertEquals(2, cache.getPendientes());
+            assertEquals(EstadoTarea.COMPLETADA, cache.cargarTarea(1).getEstado());
+            assertEquals("Corregir", cache.cargarTareas(new int[] { 2, 1 }).get(0).getDescripcion());
+
+            // Eliminar una tarea pendiente la quita de la caché y no llega a escribirse
+            assertTrue(cache.eliminarTarea(2));
+            assertNull(cache.cargarTarea(2));
+
+            cache.sincronizar();
+            assertEquals(0, cache.getPendientes());
+            assertEquals(1, cache.getTareasEscritas());
+            assertEquals(EstadoTarea.COMPLETADA, arbol.cargarTarea(1).getEstado());
+            assertEquals(5_000, arbol.cargarTarea(1).getVenceEn());
+            assertEquals(1, arbol.contarTareas());
+        }
+    }
+
+    @Test
+    void elGestorDeberiaPoderUsarLaCacheComoRespaldo() throws IOException {
+        Path archivo = directorio.resolve("gestor.db");
+        try (AlmacenCacheado cache = new AlmacenCacheado(AlmacenArbolB.abrir(archivo), 1 << 20)) {
+            GestorTareasServicio gestor = new GestorTareasServicio(cache);
+            Usuario ana = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
+            for (int i = 0; i < 100; i++) {
+                gestor.agregarTareaAUsuario(ana.getId(), gestor.crearTarea("Tarea " + i, Prioridad.NORMAL));
+            }
+            for (Tarea tarea : gestor.listarTareasDeUsuario(ana.getId())) {
+                gestor.marcarTareaComoCompletada(ana.getId(), tarea.getId());
+            }
+            // Las cien tareas se crearon y completaron sin escribir nada todavía
+            assertEquals(0, cache.getTareasEscritas());
+        }
+
+        try (AlmacenArbolB arbol = AlmacenArbolB.abrir(archivo)) {
+            GestorTareasServicio gestor = new GestorTareasServicio(arbol);
+            assertEquals(100, gestor.contarTareas().contar(EstadoTarea.COMPLETADA));
+        }
+    }
+
+    @Test
+    void losCambiosDeberianSeguirPendientesSiFallaLaEscrituraEnElRespaldo() {
+        boolean[] fallar = {true};
+        AlmacenMemoria respaldo = new AlmacenMemoria() {
+            @Override
+            public void guardarTareas(int usuarioId, List<Tarea> tareas) {
+                if (fallar[0]) {
+                    throw new UncheckedIOException(new IOException("Disco lleno"));
+                }
+                super.guardarTareas(usuarioId, tareas);
+            }
+        };
+        respaldo.guardarUsuario(new Estudiante(1, "Ana"));
+        AlmacenCacheado cache = new AlmacenCacheado(respaldo, 1 << 20);
+        cache.guardarTareas(1, List.of(new TareaNormal(1, "Primera"), new TareaNormal(2, "Segunda")));
+
+        assertThrows(UncheckedIOException.class, cache::escribirPendientes);
+        assertEquals(2, cache.getPendientes());
+        assertEquals(0, cache.getTareasEscritas());
+
+        fallar[0] = false;
+        cache.escribirPendientes();
+        assertEquals(0, cache.getPendientes());
+        assertEquals(2, cache.getTareasEscritas());
+        assertEquals("Segunda", respaldo.cargarTarea(2).getDescripcion());
+    }
+
+    @Test
+    void elGestorDeberiaLeerDeLaCacheLosUsuariosMasUsados() throws IOException {
+        try (AlmacenCacheado cache = new AlmacenCacheado(AlmacenArbolB.abrir(directorio.resolve("lecturas.db")), 1 << 20)) {
+            GestorTareasServicio gestor = new GestorTareasServicio(cache);
+            Usuario ana = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
+            gestor.agregarTareaAUsuario(ana.getId(), gestor.crearTarea("Preparar clase", Prioridad.NORMAL));
+
+            long fallos = cache.getFallos();
+            long aciertos = cache.getAciertos();
+            for (int i = 0; i < 10; i++) {
+                assertEquals(1, gestor.buscarUsuario(ana.getId()).getTareas().size());
+                assertEquals(1, gestor.listarTareasDeUsuario(ana.getId()).size());
+            }
+            assertEquals(fallos, cache.getFallos());
+            assertTrue(cache.getAciertos() >= aciertos + 20);
+        }
+    }
+
+    private static List<Integer> ids(AlmacenCacheado cache, Filtro filtro) {
+        List<Integer> ids = new ArrayList<>();
+        cache.recorrerTareas(filtro, (usuarioId, tarea) -> ids.add(tarea.getId()));
+        return ids;
+    }
+
+}
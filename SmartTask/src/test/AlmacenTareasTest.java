@@ -0,0 +1,408 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import interfaces.AlmacenTareas;
+import interfaces.AlmacenTareas.Filtro;
+import modelo.EstadoTarea;
+import modelo.Pagina;
+import modelo.Estudiante;
+import modelo.Prioridad;
+import modelo.Profesor;
+import modelo.Tarea;
+import modelo.TareaNormal;
+import modelo.TareaUrgente;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import servicio.AlmacenArbolB;
+import servicio.AlmacenCacheado;
+import servicio.AlmacenMemoria;
+import servicio.GestorTareasServicio;
+
+/**
+ * Pruebas de los almacenes de tareas y del gestor sobre un almacén de
+ * respaldo.
+ */
+class AlmacenTareasTest {
+
+    @TempDir
+    Path directorio;
+
+    private void verificarContrato(AlmacenTareas almacen) {
+        almacen.guardarUsuario(new Profesor(1, "Ana"));
+        almacen.guardarUsuario(new Estudiante(2, "Luis"));
+        almacen.guardarUsuario(new Profesor(1, "Ana María"));
+        assertEquals(2, almacen.contarUsuarios());
+        assertEquals("Ana María", almacen.cargarUsuario(1).getNombre());
+        assertNull(almacen.cargarUsuario(3));
+        assertThrows(IllegalArgumentException.class, () -> almacen.guardarUsuario(new Estudiante(1, "Otra")));
+        assertThrows(IllegalArgumentException.class,
+                () -> almacen.guardarTareas(3, List.of(new TareaNormal(99, "Sin dueño"))));
+
+        List<Tarea> deAna = new ArrayList<>();
+        for (int id = 1; id <= 20; id++) {
+            Tarea tarea = id % 4 == 0 ? new TareaUrgente(id, "Urgente " + id) : new TareaNormal(id, "Normal " + id);
+            if (id % 5 == 0) {
+                tarea.marcarComoCompletada();
+            }
+            deAna.add(tarea);
+        }
+        almacen.guardarTareas(1, deAna);
+        almacen.guardarTareas(2, List.of(new TareaNormal(21, "De Luis"), new TareaUrgente(22, "También de Luis")));
+        assertEquals(22, almacen.contarTareas());
+
+        assertEquals("Normal 7", almacen.cargarTarea(7).getDescripcion());
+        assertNull(almacen.cargarTarea(50));
+        List<Tarea> varias = almacen.cargarTareas(new int[] { 21, 3, 50, 3 });
+        assertEquals("De Luis", varias.get(0).getDescripcion());
+        assertEquals("Normal 3", varias.get(1).getDescripcion());
+        assertNull(varias.get(2));
+        assertEquals("Normal 3", varias.get(3).getDescripcion());
+
+        // Reemplazar una tarea por id no la duplica
+        Tarea cambiada = new TareaNormal(7, "Normal 7 cambiada");
+        cambiada.marcarComoCompletada();
+        almacen.guardarTareas(1, List.of(cambiada));
+        assertEquals(22, almacen.contarTareas());
+        assertEquals(EstadoTarea.COMPLETADA, almacen.cargarTarea(7).getEstado());
+
+        assertEquals(List.of(5, 7, 10, 15, 20), ids(almacen, Filtro.TODAS.conEstado(EstadoTarea.COMPLETADA)));
+        assertEquals(List.of(4, 8, 12, 16, 20, 22), ids(almacen, Filtro.TODAS.conPrioridad(Prioridad.URGENTE)));
+        assertEquals(List.of(22), ids(almacen, Filtro.TODAS.deUsuario(2).conPrioridad(Prioridad.URGENTE)));
+        assertEquals(List.of(10, 11, 12), ids(almacen, Filtro.TODAS.deUsuario(1).entreIds(10, 12)));
+        assertEquals(List.of(21), ids(almacen, Filtro.TODAS.donde(t -> t.getDescripcion().equals("De Luis"))));
+        assertEquals(List.of(), ids(almacen, Filtro.TODAS.deUsuario(3)));
+        assertThrows(IllegalArgumentException.class, () -> Filtro.TODAS.entreIds(5, 4));
+
+        // El destino puede detener el recorrido
+        List<Integer> primeras = new ArrayList<>();
+        assertEquals(3, almacen.recorrerTareas(Filtro.TODAS, (usuarioId, tarea) -> primeras.add(tarea.getId())
+                && primeras.size() < 3));
+        assertEquals(List.of(1, 2, 3), primeras);
+
+        // Con el dueño fijado, las tareas llegan en orden de id aunque se hayan reemplazado
+        assertEquals(List.of(6, 7, 8, 9), idsEnOrden(almacen, Filtro.TODAS.deUsuario(1).entreIds(6, 9)));
+        assertEquals(List.of(5, 7, 10, 15, 20), idsEnOrden(almacen, Filtro.TODAS.deUsuario(1).conEstado(EstadoTarea.COMPLETADA)));
+        List<Integer> desdeSeis = new ArrayList<>();
+        assertEquals(2, almacen.recorrerTareas(Filtro.TODAS.deUsuario(1).entreIds(6, Integer.MAX_VALUE),
+                (usuarioId, tarea) -> desdeSeis.add(tarea.getId()) && desdeSeis.size() < 2));
+        assertEquals(List.of(6, 7), desdeSeis);
+
+        assertTrue(almacen.eliminarTarea(21));
+        assertFalse(almacen.eliminarTarea(21));
+        assertEquals(21, almacen.contarTareas());
+        assertEquals(List.of(22), ids(almacen, Filtro.TODAS.deUsuario(2)));
+
+        List<String> nombres = new ArrayList<>();
+        almacen.recorrerUsuarios(usuario -> nombres.add(usuario.getNombre()));
+        assertEquals(List.of("Ana María", "Luis"), nombres);
+
+        List<Integer> usuarios = new ArrayList<>();
+        almacen.recorrerUsuarios(2, usuario -> usuarios.add(usuario.getId()));
+        almacen.recorrerUsuarios(Integer.MIN_VALUE, usuario -> !usuarios.add(usuario.getId()));
+        assertEquals(List.of(2, 1), usuarios);
+    }
+
+    private static List<Integer> idsEnOrden(AlmacenTareas almacen, Filtro filtro) {
+        List<Integer> ids = new ArrayList<>();
+        almacen.recorrerTareas(filtro, (usuarioId, tarea) -> ids.add(tarea.getId()));
+        return ids;
+    }
+
+    private static List<Integer> ids(AlmacenTareas almacen, Filtro filtro) {
+        List<Integer> ids = new ArrayList<>();
+        almacen.recorrerTareas(filtro, (usuarioId, tarea) -> ids.add(tarea.getId()));
+        ids.sort(null);
+        return ids;
+    }
+
+    @Test
+    void almacenMemoriaDeberiaCumplirElContrato() {
+        verificarContrato(new AlmacenMemoria());
+    }
+
+    @Test
+    void almacenCacheadoDeberiaCumplirElContrato() {
+        verificarContrato(new AlmacenCacheado(new AlmacenMemoria(), 1 << 20));
+    }
+
+    @Test
+    void almacenArbolBDeberiaCumplirElContrato() throws IOException {
+        try (AlmacenArbolB almacen = AlmacenArbolB.abrir(directorio.resolve("contrato.db"))) {
+            verificarContrato(almacen);
+        }
+    }
+
+    @Test
+    void arbolDeberiaCoincidirConUnMapaTrasMuchasOperacionesYAlReabrir() throws IOException {
+        Path archivo = directorio.resolve("azar.db");
+        Random azar = new Random(5);
+        Map<Integer, String> esperado = new TreeMap<>();
+
+        try (AlmacenArbolB almacen = AlmacenArbolB.abrir(archivo, 16)) {
+            almacen.guardarUsuario(new Profesor(1, "Ana"));
+            for (int paso = 0; paso < 30_000; paso++) {
+                int id = azar.nextInt(20_000) + 1;
+                if (azar.nextInt(4) == 0) {
+                    assertEquals(esperado.remove(id) != null, almacen.eliminarTarea(id));
+                } else {
+                    // Algunas descripciones no caben en la hoja y van a páginas de desborde
+                    String descripcion = azar.nextInt(200) == 0 ? "x".repeat(20_000 + id) : "Tarea " + paso;
+                    almacen.guardarTareas(1, List.of(new TareaNormal(id, descripcion)));
+                    esperado.put(id, descripcion);
+                }
+            }
+            assertEquals(esperado.size(), almacen.contarTareas());
+        }
+
+        try (AlmacenArbolB almacen = AlmacenArbolB.abrir(archivo, 16)) {
+            assertEquals(esperado.size(), almacen.contarTareas());
+            List<Integer> ids = new ArrayList<>();
+            List<String> descripciones = new ArrayList<>();
+            almacen.recorrerTareas(Filtro.TODAS.deUsuario(1), (usuarioId, tarea) -> {
+                ids.add(tarea.getId());
+                descripciones.add(tarea.getDescripcion());
+                return true;
+            });
+            assertEquals(new ArrayList<>(esperado.keySet()), ids);
+            assertEquals(new ArrayList<>(esperado.values()), descripciones);
+
+            int[] buscados = azar.ints(500, 1, 20_001).toArray();
+            List<Tarea> encontradas = almacen.cargarTareas(buscados);
+            for (int i = 0; i < buscados.length; i++) {
+                String descripcion = esperado.get(buscados[i]);
+                if (descripcion == null) {
+                    assertNull(encontradas.get(i));
+                } else {
+                    assertEquals(descripcion, encontradas.get(i).getDescripcion());
+                }
+            }
+        }
+    }
+
+    @Test
+    void buscarUnaTareaDeberiaLeerPocasPaginasConUnPoolPequenio() throws IOException {
+        Path archivo = directorio.resolve("grande.db");
+        try (AlmacenArbolB almacen = AlmacenArbolB.abrir(archivo, 8)) {
+            almacen.guardarUsuario(new Estudiante(1, "Luis"));
+            List<Tarea> lote = new ArrayList<>();
+            for (int id = 1; id <= 100_000; id++) {
+                lote.add(new TareaNormal(id, "Descripción de la tarea " + id));
+                if (lote.size() == 1_000) {
+                    almacen.guardarTareas(1, lote);
+                    lote.clear();
+                }
+            }
+        }
+        // Con el pool de 8 páginas el archivo ocupa mucho más de lo que hay en memoria
+        assertTrue(Files.size(archivo) > 100L * 8 * 8192);
+
+        try (AlmacenArbolB almacen = AlmacenArbolB.abrir(archivo, 8)) {
+            Random azar = new Random(3);
+            for (int i = 0; i < 100; i++) {
+                long antes = almacen.getPaginasLeidas();
+                int id = azar.nextInt(100_000) + 1;
+                assertEquals("Descripción de la tarea " + id, almacen.cargarTarea(id).getDescripcion());
+                assertTrue(almacen.getPaginasLeidas() - antes <= 4);
+            }
+        }
+    }
+
+    @Test
+    void gestorDeberiaEscribirEnElRespaldoYCargarloAlArrancar() throws IOException {
+        Path archivo = directorio.resolve("gestor.db");
+        int completada;
+        try (AlmacenArbolB almacen = AlmacenArbolB.abrir(archivo)) {
+            GestorTareasServicio gestor = new GestorTareasServicio(almacen);
+            Usuario ana = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
+            Usuario luis = gestor.crearUsuario("Luis", TipoUsuario.ESTUDIANTE);
+
+            Tarea t1 = gestor.crearTarea("Preparar clase", Prioridad.URGENTE);
+            Tarea t2 = gestor.crearTarea("Corregir", Prioridad.NORMAL);
+            Tarea t3 = gestor.crearTarea("Estudiar", Prioridad.NORMAL);
+            gestor.agregarTareasAUsuario(ana.getId(), List.of(t1, t2));
+            gestor.agregarTareaAUsuario(luis.getId(), t3);
+            gestor.marcarTareaComoCompletada(ana.getId(), t1.getId());
+            gestor.eliminarTareaDeUsuario(ana.getId(), t2.getId());
+            gestor.fijarVencimiento(luis.getId(), t3.getId(), 1_000_000L, 0);
+            completada = t1.getId();
+        }
+
+        try (AlmacenArbolB almacen = AlmacenArbolB.abrir(archivo)) {
+            GestorTareasServicio gestor = new GestorTareasServicio(almacen);
+            assertEquals(List.of("Ana", "Luis"), gestor.listarUsuarios().stream().map(Usuario::getNombre).toList());
+
+            List<Tarea> deAna = gestor.listarTareasDeUsuario(1);
+            assertEquals(1, deAna.size());
+            assertEquals(completada, deAna.get(0).getId());
+            assertEquals(EstadoTarea.COMPLETADA, deAna.get(0).getEstado());
+            assertEquals(1_000_000L, gestor.listarTareasDeUsuario(2).get(0).getVenceEn());
+            assertEquals(2, gestor.contarTareas().total());
+
+            // Solo la tarea activa vuelve a la cola, y los contadores siguen tras los ids guardados
+            assertEquals("Estudiar", gestor.verSiguienteTarea().getDescripcion());
+            assertEquals(3, gestor.crearUsuario("Eva", TipoUsuario.TRABAJADOR).getId());
+            assertEquals(4, gestor.crearTarea("Nueva", Prioridad.NORMAL).getId());
+            assertEquals(3, almacen.contarUsuarios());
+            assertEquals("Eva", almacen.cargarUsuario(3).getNombre());
+        }
+    }
+
+    @Test
+    void gestorDeberiaLeerLosUsuariosYLasTareasDelAlmacenEnCadaOperacion() throws IOException {
+        try (AlmacenArbolB almacen = AlmacenArbolB.abrir(directorio.resolve("lecturas.db"))) {
+            GestorTareasServicio gestor = new GestorTareasServicio(almacen);
+            Usuario ana = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
+            Usuario luis = gestor.crearUsuario("Luis", TipoUsuario.ESTUDIANTE);
+            Tarea t1 = gestor.crearTarea("Preparar clase", Prioridad.NORMAL);
+            Tarea t2 = gestor.crearTarea("Corregir", Prioridad.URGENTE);
+            gestor.agregarTareasAUsuario(ana.getId(), List.of(t1, t2));
+            assertThrows(IllegalArgumentException.class, () -> gestor.agregarTareaAUsuario(luis.getId(), t1));
+
+            // Lo que se escribe en el almacén por fuera se ve en la siguiente lectura
+            Tarea cambiada = new TareaNormal(t1.getId(), "Preparar examen");
+            almacen.guardarTareas(ana.getId(), List.of(cambiada));
+            assertEquals("Preparar examen", gestor.buscarUsuario(ana.getId()).buscarTarea(t1.getId()).getDescripcion());
+
+            // Lo devuelto son copias: cambiarlas no cambia el almacén
+            gestor.listarTareasDeUsuario(ana.getId()).get(0).marcarComoCompletada();
+            assertEquals(EstadoTarea.ACTIVA, almacen.cargarTarea(t1.getId()).getEstado());
+
+            assertTrue(gestor.marcarTareaComoCompletada(ana.getId(), t1.getId()));
+            assertEquals(EstadoTarea.COMPLETADA, almacen.cargarTarea(t1.getId()).getEstado());
+            assertEquals(1, gestor.contarTareasPorTipoUsuario(TipoUsuario.PROFESOR).contar(EstadoTarea.COMPLETADA));
+            assertEquals(1, gestor.contarTareasDeUsuario(ana.getId()).contar(EstadoTarea.ACTIVA));
+            assertEquals(List.of(t2.getId()), ids(gestor.buscarTareas("corregir", null, null, null, 10)));
+            assertEquals(t2.getId(), gestor.verSiguienteTarea().getId());
+            assertFalse(gestor.marcarTareaComoCompletada(luis.getId(), t2.getId()));
+
+            assertTrue(gestor.eliminarTareaDeUsuario(ana.getId(), t2.getId()));
+            assertNull(almacen.cargarTarea(t2.getId()));
+            assertNull(gestor.verSiguienteTarea());
+            assertEquals(1, gestor.contarTareas().total());
+            assertNull(gestor.buscarUsuario(99));
+        }
+    }
+
+    @Test
+    void colaSobreElAlmacenDeberiaEntregarLasTareasLeidasDelAlmacen() throws IOException {
+        try (AlmacenArbolB almacen = AlmacenArbolB.abrir(directorio.resolve("cola.db"))) {
+            GestorTareasServicio gestor = new GestorTareasServicio(almacen);
+            Usuario ana = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
+            Usuario luis = gestor.crearUsuario("Luis", TipoUsuario.ESTUDIANTE);
+            Tarea t1 = gestor.crearTarea("Preparar clase", Prioridad.NORMAL);
+            Tarea t2 = gestor.crearTarea("Corregir", Prioridad.URGENTE);
+            Tarea t3 = gestor.crearTarea("Revisar actas", Prioridad.NORMAL);
+            Tarea t4 = gestor.crearTarea("Estudiar", Prioridad.NORMAL);
+            gestor.agregarTareasAUsuario(ana.getId(), List.of(t1, t2, t3));
+            gestor.agregarTareaAUsuario(luis.getId(), t4);
+
+            // Urgentes primero, y la reclamada deja de verse hasta liberarla
+            assertEquals(t2.getId(), gestor.verSiguienteTarea().getId());
+            assertEquals("Corregir", gestor.tomarSiguienteTarea().getDescripcion());
+            assertEquals(t1.getId(), gestor.verSiguienteTarea().getId());
+
+            // La cola no guarda las tareas: las lee del almacén al entregarlas
+            almacen.guardarTareas(ana.getId(), List.of(new TareaNormal(t1.getId(), "Preparar examen")));
+            assertEquals("Preparar examen", gestor.verSiguienteTarea().getDescripcion());
+
+            // Una tarea escalada pasa delante de las normales, pero no de su dueño
+            long ahora = System.currentTimeMillis();
+            gestor.fijarVencimiento(luis.getId(), t4.getId(), ahora + 600_000L, 300_000L);
+            assertEquals(1, gestor.revisarVencimientos(ahora + 360_000L, (u, t) -> { }));
+            assertEquals(t4.getId(), gestor.verSiguienteTarea().getId());
+            assertTrue(gestor.verSiguienteTarea().isEscalada());
+            assertEquals(t1.getId(), gestor.verSiguienteTarea(ana.getId()).getId());
+
+            assertTrue(gestor.liberarTarea(t2.getId()));
+            assertFalse(gestor.liberarTarea(t2.getId()));
+            assertEquals(t2.getId(), gestor.verSiguienteTarea().getId());
+
+            assertEquals(t2.getId(), gestor.tomarSiguienteTarea(ana.getId()).getId());
+            assertEquals(t1.getId(), gestor.tomarSiguienteTarea(ana.getId()).getId());
+            assertEquals("Revisar actas", gestor.tomarSiguienteTarea(ana.getId()).getDescripcion());
+            assertNull(gestor.tomarSiguienteTarea(ana.getId()));
+
+            assertTrue(gestor.marcarTareaComoCompletada(luis.getId(), t4.getId()));
+            assertTrue(gestor.eliminarTareaDeUsuario(ana.getId(), t3.getId()));
+            assertNull(gestor.verSiguienteTarea());
+            assertTrue(gestor.liberarTarea(t1.getId()));
+            assertFalse(gestor.liberarTarea(t3.getId()));
+            assertEquals("Preparar examen", gestor.tomarSiguienteTarea().getDescripcion());
+        }
+    }
+
+    @Test
+    void recorrerLasTareasDeUnUsuarioDeberiaDetenerseEnCualquierLote() throws IOException {
+        try (AlmacenArbolB almacen = AlmacenArbolB.abrir(directorio.resolve("lotes.db"))) {
+            almacen.guardarUsuario(new Estudiante(1, "Ana"));
+            almacen.guardarUsuario(new Estudiante(2, "Luis"));
+            List<Tarea> tareas = new ArrayList<>();
+            for (int id = 1; id <= 1_000; id++) {
+                tareas.add(new TareaNormal(id, "Tarea " + id));
+            }
+            almacen.guardarTareas(1, tareas);
+            almacen.guardarTareas(2, List.of(new TareaNormal(1_001, "De Luis")));
+
+            List<Integer> todas = idsEnOrden(almacen, Filtro.TODAS.deUsuario(1));
+            assertEquals(1_000, todas.size());
+            assertEquals(1, todas.get(0));
+            assertEquals(1_000, todas.get(999));
+
+            List<Integer> primeras = new ArrayList<>();
+            assertEquals(300, almacen.recorrerTareas(Filtro.TODAS.deUsuario(1).entreIds(2, Integer.MAX_VALUE),
+                    (usuarioId, tarea) -> primeras.add(tarea.getId()) && primeras.size() < 300));
+            assertEquals(2, primeras.get(0));
+            assertEquals(301, primeras.get(299));
+        }
+    }
+
+    @Test
+    void gestorDeberiaPaginarSobreElAlmacenIgualQueSinPaginar() throws IOException {
+        try (AlmacenArbolB almacen = AlmacenArbolB.abrir(directorio.resolve("paginas.db"))) {
+            GestorTareasServicio gestor = new GestorTareasServicio(almacen);
+            for (int u = 0; u < 30; u++) {
+                Usuario usuario = gestor.crearUsuario("Usuario " + u, u % 3 == 0 ? TipoUsuario.PROFESOR : TipoUsuario.ESTUDIANTE);
+                for (int t = 0; t < u % 7; t++) {
+                    gestor.agregarTareaAUsuario(usuario.getId(), gestor.crearTarea("Tarea " + t, Prioridad.NORMAL));
+                }
+            }
+
+            assertEquals(gestor.listarUsuarios().stream().map(Usuario::getId).toList(),
+                    gestor.recorrerUsuarios().map(Usuario::getId).toList());
+            List<Integer> paginadas = new ArrayList<>();
+            long cursor = Pagina.INICIO;
+            do {
+                Pagina<Tarea> pagina = gestor.listarTareasPorTipoUsuario(TipoUsuario.ESTUDIANTE, cursor, 4);
+                assertTrue(pagina.getElementos().size() <= 4);
+                paginadas.addAll(ids(pagina.getElementos()));
+                cursor = pagina.getSiguiente();
+            } while (cursor != Pagina.FIN);
+            assertEquals(ids(gestor.listarTareasPorTipoUsuario(TipoUsuario.ESTUDIANTE)), paginadas);
+            assertEquals(ids(gestor.listarTareasDeUsuario(6)),
+                    ids(gestor.listarTareasDeUsuario(6, Pagina.INICIO, 10).getElementos()));
+        }
+    }
+
+    @Test
+    void gestorNoDeberiaPublicarVersionesSobreUnAlmacen() {
+        assertThrows(IllegalArgumentException.class, () -> new GestorTareasServicio(new AlmacenMemoria(), true));
+    }
+
+    private static List<Integer> ids(List<Tarea> tareas) {
+        return tareas.stream().map(Tarea::getId).toList();
+    }
+
+}
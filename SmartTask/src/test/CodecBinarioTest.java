@@ -0,0 +1,209 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import modelo.EstadoTarea;
+import modelo.FormatoIntercambio;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import servicio.CodecBinario;
+import servicio.GestorTareasServicio;
+
+/**
+ * Pruebas del formato binario de usuarios y tareas.
+ */
+class CodecBinarioTest {
+
+    private final CodecBinario codec = new CodecBinario();
+
+    /**
+     * Crea usuarios de todos los tipos con tareas en todos los estados,
+     * con vencimientos, escaladas y textos fuera de ASCII.
+     */
+    private static GestorTareasServicio poblar(int usuarios, int tareasPorUsuario) {
+        GestorTareasServicio gestor = new GestorTareasServicio();
+        TipoUsuario[] tipos = TipoUsuario.values();
+        String[] descripciones = { "Corregir examen", "Preparar clase de física", "Año nuevo 🎉", "日本語のメモ" };
+        for (int i = 0; i < usuarios; i++) {
+            Usuario usuario = gestor.crearUsuario("Usuario ñ" + i, tipos[i % tipos.length]);
+            for (int j = 0; j < tareasPorUsuario; j++) {
+                Tarea tarea = gestor.crearTarea(descripciones[j % descripciones.length] + " " + j,
+                        j % 3 == 0 ? Prioridad.URGENTE : Prioridad.NORMAL);
+                gestor.agregarTareaAUsuario(usuario.getId(), tarea);
+                if (j % 4 == 1) {
+                    gestor.fijarVencimiento(usuario.getId(), tarea.getId(), tarea.getCreadaEn() + 86_400_000L, 0);
+                    tarea.escalar();
+                }
+                if (j % 2 == 0) {
+                    gestor.marcarTareaComoCompletada(usuario.getId(), tarea.getId());
+                }
+            }
+        }
+        return gestor;
+    }
+
+    private static void assertTareaIgual(Tarea esperada, Tarea leida) {
+        assertEquals(esperada.getId(), leida.getId());
+        assertEquals(esperada.getClass(), leida.getClass());
+        assertEquals(esperada.getDescripcion(), leida.getDescripcion());
+        assertEquals(esperada.getEstado(), leida.getEstado());
+        assertEquals(esperada.getCreadaEn(), leida.getCreadaEn());
+        assertEquals(esperada.getCompletadaEn(), leida.getCompletadaEn());
+        assertEquals(esperada.getVenceEn(), leida.getVenceEn());
+        assertEquals(esperada.isEscalada(), leida.isEscalada());
+    }
+
+    private static void assertUsuarioIgual(Usuario esperado, Usuario leido) {
+        assertEquals(esperado.getId(), leido.getId());
+        assertEquals(esperado.getClass(), leido.getClass());
+        assertEquals(esperado.getNombre(), leido.getNombre());
+        assertEquals(esperado.getTareas().size(), leido.getTareas().size());
+        for (int i = 0; i < esperado.getTareas().size(); i++) {
+            assertTareaIgual(esperado.getTareas().get(i), leido.getTareas().get(i));
+        }
+        assertEquals(esperado.getContador().contar(EstadoTarea.COMPLETADA),
+                leido.getContador().contar(EstadoTarea.COMPLETADA));
+    }
+
+    private ByteBuffer codificar(List<Usuario> usuarios, boolean directo) {
+        int bytes = CodecBinario.CABECERA;
+        for (Usuario usuario : usuarios) {
+            bytes += codec.tamanio(usuario);
+        }
+        ByteBuffer bufer = directo ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+        codec.escribirCabecera(bufer);
+        for (Usuario usuario : usuarios) {
+            codec.escribir(bufer, usuario);
+        }
+        assertFalse(bufer.hasRemaining());
+        return bufer.flip();
+    }
+
+    @Test
+    void deberiaRecuperarUsuariosYTareasEnBuferesConArregloYDirectos() {
+        List<Usuario> usuarios = poblar(6, 9).listarUsuarios();
+
+        for (boolean directo : new boolean[] { false, true }) {
+            ByteBuffer bufer = codificar(usuarios, directo);
+            codec.leerCabecera(bufer);
+            for (Usuario usuario : usuarios) {
+                assertEquals(CodecBinario.USUARIO, codec.registroCompleto(bufer));
+                assertUsuarioIgual(usuario, codec.leerUsuario(bufer));
+            }
+            assertFalse(bufer.hasRemaining());
+        }
+    }
+
+    @Test
+    void deberiaEscribirTareasSueltasYTextosConSustitutosSueltos() {
+        GestorTareasServicio gestor = new GestorTareasServicio();
+        Tarea normal = gestor.crearTarea("Texto \uD83D suelto", Prioridad.NORMAL);
+        Tarea urgente = gestor.crearTarea("Urgente", Prioridad.URGENTE);
+        urgente.marcarComoCompletada(urgente.getCreadaEn() - 5);
+
+        ByteBuffer bufer = ByteBuffer.allocateDirect(codec.tamanio(normal) + codec.tamanio(urgente));
+        codec.escribir(bufer, normal);
+        codec.escribir(bufer, urgente);
+        bufer.flip();
+
+        assertEquals("Texto ? suelto", codec.leerTarea(bufer).getDescripcion());
+        assertTareaIgual(urgente, codec.leerTarea(bufer));
+    }
+
+    @Test
+    void deberiaLeerPorPosicionSinMoverElBufer() {
+        List<Usuario> usuarios = poblar(50, 3).listarUsuarios();
+        ByteBuffer bufer = codificar(usuarios, false);
+        codec.leerCabecera(bufer);
+
+        int[] posiciones = codec.indexar(bufer);
+        assertEquals(usuarios.size(), posiciones.length);
+        assertEquals(CodecBinario.CABECERA, bufer.position());
+
+        for (int i = posiciones.length - 1; i >= 0; i -= 7) {
+            assertUsuarioIgual(usuarios.get(i), codec.leerUsuario(bufer, posiciones[i]));
+        }
+        assertEquals(CodecBinario.CABECERA, bufer.position());
+        assertThrows(IllegalArgumentException.class, () -> codec.leerTarea(bufer, posiciones[0]));
+    }
+
+    @Test
+    void deberiaLeerUnFlujoQueLlegaATrozos() {
+        List<Usuario> usuarios = poblar(20, 5).listarUsuarios();
+        ByteBuffer completo = codificar(usuarios, false);
+
+        // Se entrega de 7 en 7 bytes en un búfer pequeño, como desde un canal
+        ByteBuffer bufer = ByteBuffer.allocate(256);
+        List<Usuario> leidos = new ArrayList<>();
+        boolean cabecera = false;
+        while (completo.hasRemaining()) {
+            int trozo = Math.min(7, completo.remaining());
+            bufer.put(completo.slice(completo.position(), trozo));
+            completo.position(completo.position() + trozo);
+            bufer.flip();
+
+            if (!cabecera && bufer.remaining() >= CodecBinario.CABECERA) {
+                codec.leerCabecera(bufer);
+                cabecera = true;
+            }
+            while (cabecera && codec.registroCompleto(bufer) != CodecBinario.INCOMPLETO) {
+                leidos.add(codec.leerUsuario(bufer));
+            }
+            bufer.compact();
+        }
+
+        assertEquals(usuarios.size(), leidos.size());
+        for (int i = 0; i < usuarios.size(); i++) {
+            assertUsuarioIgual(usuarios.get(i), leidos.get(i));
+        }
+    }
+
+    @Test
+    void deberiaRechazarDatosNoValidos() {
+        Tarea tarea = new GestorTareasServicio().crearTarea("Tarea", Prioridad.NORMAL);
+        ByteBuffer lleno = ByteBuffer.allocate(codec.tamanio(tarea) - 1);
+        assertThrows(BufferOverflowException.class, () -> codec.escribir(lleno, tarea));
+        assertEquals(0, lleno.position());
+
+        ByteBuffer bufer = ByteBuffer.allocate(codec.tamanio(tarea));
+        codec.escribir(bufer, tarea);
+        bufer.flip();
+
+        assertEquals(CodecBinario.INCOMPLETO, codec.registroCompleto(bufer.duplicate().limit(bufer.limit() - 1)));
+        assertThrows(IllegalArgumentException.class, () -> codec.leerTarea(bufer.duplicate().limit(3)));
+        assertThrows(IllegalArgumentException.class, () -> codec.leerUsuario(bufer.duplicate()));
+
+        ByteBuffer prioridad = bufer.duplicate();
+        prioridad.put(3, (byte) 9);
+        assertThrows(IllegalArgumentException.class, () -> codec.leerTarea(prioridad));
+
+        ByteBuffer version = ByteBuffer.allocate(CodecBinario.CABECERA).putInt(CodecBinario.MARCA).put((byte) 9).flip();
+        assertThrows(IllegalArgumentException.class, () -> codec.leerCabecera(version));
+        assertThrows(IllegalArgumentException.class, () -> codec.leerCabecera(ByteBuffer.allocate(2)));
+    }
+
+    @Test
+    void deberiaOcuparMenosQueJsonLines() throws IOException {
+        GestorTareasServicio gestor = poblar(100, 20);
+        StringWriter json = new StringWriter();
+        gestor.exportar(json, FormatoIntercambio.JSON_LINES);
+
+        int binario = codificar(gestor.listarUsuarios(), false).remaining();
+        int texto = json.toString().getBytes(StandardCharsets.UTF_8).length;
+        // El binario lleva además los instantes de cada tarea
+        assertTrue(binario * 3 < texto, binario + " bytes frente a " + texto);
+    }
+
+}
@@ -0,0 +1,131 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import interfaces.Accionable;
+import modelo.EstadoTarea;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import servicio.GestorTareasColumnar;
+import servicio.GestorTareasConcurrente;
+import servicio.GestorTareasPersistente;
+import servicio.GestorTareasServicio;
+import servicio.PoliticaSincronizacion;
+
+/**
+ * Pruebas de las consultas paralelas sobre las tareas de varios usuarios.
+ */
+class ConsultasParalelasTest {
+
+    /** Tareas suficientes para superar el umbral de evaluación paralela */
+    private static final int TAREAS = 50_000;
+
+    @TempDir
+    Path directorio;
+
+    private List<Accionable> gestores() throws IOException {
+        return List.of(new GestorTareasServicio(), new GestorTareasConcurrente(), new GestorTareasColumnar(),
+                new GestorTareasPersistente(directorio, PoliticaSincronizacion.POR_LOTES));
+    }
+
+    /**
+     * Un profesor con casi todas las tareas y varios con pocas, con algunas
+     * completadas y eliminadas.
+     */
+    private static void poblar(Accionable gestor, int cantidad) {
+        List<Usuario> profesores = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            profesores.add(gestor.crearUsuario("Profesor " + i, TipoUsuario.PROFESOR));
+            gestor.crearUsuario("Estudiante " + i, TipoUsuario.ESTUDIANTE);
+        }
+
+        List<Tarea> delGrande = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            Tarea tarea = gestor.crearTarea("Tarea " + i, i % 3 == 0 ? Prioridad.URGENTE : Prioridad.NORMAL);
+            if (i % 100 == 0) {
+                gestor.agregarTareaAUsuario(profesores.get(1 + i / 100 % 19).getId(), tarea);
+            } else {
+                delGrande.add(tarea);
+            }
+        }
+        int grande = profesores.get(0).getId();
+        gestor.agregarTareasAUsuario(grande, delGrande);
+        for (int i = 0; i < delGrande.size(); i += 7) {
+            gestor.marcarTareaComoCompletada(grande, delGrande.get(i).getId());
+        }
+        for (int i = 3; i < delGrande.size(); i += 11) {
+            gestor.eliminarTareaDeUsuario(grande, delGrande.get(i).getId());
+        }
+    }
+
+    private static List<Integer> ids(List<Tarea> tareas) {
+        return tareas.stream().map(Tarea::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    void deberiaCoincidirConElListadoSecuencial() throws IOException {
+        for (Accionable gestor : gestores()) {
+            poblar(gestor, TAREAS);
+            String nombre = gestor.getClass().getSimpleName();
+
+            List<Tarea> esperadas = gestor.listarTareasPorTipoUsuario(TipoUsuario.PROFESOR);
+            assertEquals(ids(esperadas), gestor.consultarTareas(TipoUsuario.PROFESOR,
+                    tareas -> tareas.map(Tarea::getId).collect(Collectors.toList())), nombre);
+
+            long urgentesActivas = esperadas.stream()
+                    .filter(t -> t.getPrioridad() == Prioridad.URGENTE && t.getEstado() == EstadoTarea.ACTIVA)
+                    .count();
+            assertEquals(urgentesActivas, (long) gestor.consultarTareas(null, tareas -> tareas
+                    .filter(t -> t.getPrioridad() == Prioridad.URGENTE && t.getEstado() == EstadoTarea.ACTIVA)
+                    .count()), nombre);
+
+            Map<EstadoTarea, Long> porEstado = gestor.consultarTareas(null,
+                    tareas -> tareas.collect(Collectors.groupingBy(Tarea::getEstado, Collectors.counting())));
+            assertEquals(gestor.contarTareas().contar(EstadoTarea.ACTIVA), porEstado.get(EstadoTarea.ACTIVA), nombre);
+            assertEquals(gestor.contarTareas().contar(EstadoTarea.COMPLETADA), porEstado.get(EstadoTarea.COMPLETADA), nombre);
+
+            assertEquals(0L, (long) gestor.consultarTareas(TipoUsuario.TRABAJADOR, tareas -> tareas.count()));
+        }
+    }
+
+    @Test
+    void deberiaEvaluarEnParaleloSoloPorEncimaDelUmbral() {
+        GestorTareasServicio pequenio = new GestorTareasServicio();
+        poblar(pequenio, 1_000);
+        boolean paralela = pequenio.consultarTareas(null, tareas -> tareas.isParallel());
+        assertFalse(paralela);
+
+        GestorTareasServicio grande = new GestorTareasServicio();
+        poblar(grande, TAREAS);
+        paralela = grande.consultarTareas(null, tareas -> tareas.isParallel());
+        boolean enElPool = grande.consultarTareas(null, tareas -> tareas
+                .allMatch(t -> Thread.currentThread().getName().startsWith("smarttask-consulta-")));
+        assertTrue(paralela);
+        assertTrue(enElPool);
+    }
+
+    @Test
+    void deberiaPropagarLosErroresDeLaConsulta() {
+        GestorTareasServicio gestor = new GestorTareasServicio();
+        poblar(gestor, TAREAS);
+
+        assertThrows(IllegalStateException.class, () -> gestor.consultarTareas(null, tareas -> tareas
+                .peek(t -> {
+                    throw new IllegalStateException("fallo");
+                })
+                .count()));
+    }
+
+}
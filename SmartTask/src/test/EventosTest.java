@@ -0,0 +1,180 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import interfaces.Accionable;
+import interfaces.OyenteTareas;
+import interfaces.Suscripcion;
+import modelo.LoteEventos;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoEvento;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import servicio.GestorTareasColumnar;
+import servicio.GestorTareasConcurrente;
+import servicio.GestorTareasPersistente;
+import servicio.GestorTareasServicio;
+import servicio.PoliticaSincronizacion;
+
+/**
+ * Pruebas de la suscripción a eventos de tareas.
+ */
+class EventosTest {
+
+    @TempDir
+    Path directorio;
+
+    /**
+     * Oyente que guarda los eventos recibidos como texto.
+     */
+    private static final class Registro implements OyenteTareas {
+
+        final List<String> eventos = Collections.synchronizedList(new ArrayList<>());
+        final List<Long> secuencias = Collections.synchronizedList(new ArrayList<>());
+        final AtomicLong perdidos = new AtomicLong();
+        volatile int loteMayor;
+
+        @Override
+        public void alRecibir(LoteEventos lote) {
+            loteMayor = Math.max(loteMayor, lote.getTamanio());
+            for (int i = 0; i < lote.getTamanio(); i++) {
+                eventos.add(lote.getTipo(i) + " " + lote.getTareaId(i) + " " + lote.getUsuarioId(i));
+                secuencias.add(lote.getSecuencia(i));
+            }
+        }
+
+        @Override
+        public void alPerder(long cantidad) {
+            perdidos.addAndGet(cantidad);
+        }
+    }
+
+    @Test
+    void deberiaNotificarLosCambiosDeTareas() throws IOException {
+        List<Accionable> gestores = List.of(new GestorTareasServicio(), new GestorTareasConcurrente(),
+                new GestorTareasColumnar(), new GestorTareasPersistente(directorio, PoliticaSincronizacion.POR_LOTES));
+
+        for (Accionable gestor : gestores) {
+            Usuario ana = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
+            gestor.crearTarea("Antes de suscribir", Prioridad.NORMAL);
+
+            Registro registro = new Registro();
+            Suscripcion suscripcion = gestor.suscribir(registro, 16);
+
+            Tarea t1 = gestor.crearTarea("Preparar clase", Prioridad.URGENTE);
+            gestor.agregarTareaAUsuario(ana.getId(), t1);
+            gestor.marcarTareaComoCompletada(ana.getId(), t1.getId());
+            gestor.marcarTareaComoCompletada(ana.getId(), t1.getId());
+            gestor.agregarTareasAUsuario(ana.getId(), List.of(gestor.crearTarea("Corregir", Prioridad.NORMAL)));
+            gestor.eliminarTareaDeUsuario(ana.getId(), t1.getId());
+            gestor.eliminarTareaDeUsuario(ana.getId(), t1.getId());
+            suscripcion.close();
+
+            int a = ana.getId();
+            int t = t1.getId();
+            assertEquals(List.of("CREADA " + t + " 0", "ASIGNADA " + t + " " + a, "COMPLETADA " + t + " " + a,
+                    "CREADA " + (t + 1) + " 0", "ASIGNADA " + (t + 1) + " " + a, "ELIMINADA " + t + " " + a),
+                    registro.eventos, gestor.getClass().getSimpleName());
+            assertEquals(6, suscripcion.getEntregados());
+            assertEquals(0, suscripcion.getPerdidos());
+
+            // Tras cerrar la suscripción no se entregan más eventos
+            gestor.crearTarea("Después", Prioridad.NORMAL);
+            assertEquals(6, registro.eventos.size());
+        }
+    }
+
+    @Test
+    void deberiaEntregarPorLotesSinPerderEventos() throws InterruptedException {
+        GestorTareasConcurrente gestor = new GestorTareasConcurrente();
+        Registro registro = new Registro();
+        Suscripcion suscripcion = gestor.suscribir(registro, 100);
+
+        List<Thread> hilos = new ArrayList<>();
+        for (int h = 0; h < 4; h++) {
+            Usuario usuario = gestor.crearUsuario("Usuario " + h, TipoUsuario.TRABAJADOR);
+            hilos.add(new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    gestor.agregarTareaAUsuario(usuario.getId(), gestor.crearTarea("Tarea", Prioridad.NORMAL));
+                }
+            }));
+        }
+        for (Thread hilo : hilos) {
+            hilo.start();
+        }
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+        suscripcion.close();
+
+        assertEquals(40_000, suscripcion.getEntregados() + suscripcion.getPerdidos());
+        assertEquals(suscripcion.getPerdidos(), registro.perdidos.get());
+        assertTrue(registro.loteMayor <= 100);
+        for (int i = 1; i < registro.secuencias.size(); i++) {
+            assertTrue(registro.secuencias.get(i) > registro.secuencias.get(i - 1));
+        }
+    }
+
+    @Test
+    void unOyenteLentoNoDeberiaBloquearAlGestor() throws InterruptedException {
+        GestorTareasServicio gestor = new GestorTareasServicio();
+        CountDownLatch bloqueado = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        AtomicLong recibidos = new AtomicLong();
+        AtomicLong perdidos = new AtomicLong();
+
+        Suscripcion suscripcion = gestor.suscribir(new OyenteTareas() {
+            @Override
+            public void alRecibir(LoteEventos lote) {
+                bloqueado.countDown();
+                try {
+                    liberar.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                recibidos.addAndGet(lote.getTamanio());
+            }
+
+            @Override
+            public void alPerder(long cantidad) {
+                perdidos.addAndGet(cantidad);
+            }
+        }, 64);
+
+        gestor.crearTarea("Primera", Prioridad.NORMAL);
+        assertTrue(bloqueado.await(10, TimeUnit.SECONDS));
+
+        // El búfer se llena varias veces mientras el oyente está bloqueado
+        for (int i = 0; i < 300_000; i++) {
+            gestor.crearTarea("Tarea " + i, Prioridad.NORMAL);
+        }
+        liberar.countDown();
+        suscripcion.close();
+
+        assertTrue(suscripcion.getPerdidos() > 0);
+        assertEquals(300_001, recibidos.get() + perdidos.get());
+        assertEquals(suscripcion.getPerdidos(), perdidos.get());
+    }
+
+    @Test
+    void deberiaValidarLaSuscripcion() {
+        GestorTareasServicio gestor = new GestorTareasServicio();
+
+        assertThrows(IllegalArgumentException.class, () -> gestor.suscribir(null, 10));
+        assertThrows(IllegalArgumentException.class, () -> gestor.suscribir(lote -> { }, 0));
+    }
+
+}
@@ -0,0 +1,106 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import modelo.EstadoTarea;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import servicio.GestorTareasColumnar;
+
+/**
+ * Pruebas unitarias para la clase GestorTareasColumnar.
+ */
+class GestorTareasColumnarTest {
+
+    @TempDir
+    Path directorio;
+
+    private GestorTareasColumnar gestor;
+
+    @BeforeEach
+    void setUp() {
+        gestor = new GestorTareasColumnar(directorio);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        gestor.close();
+    }
+
+    @Test
+    void deberiaGuardarYMaterializarTareas() {
+        Usuario usuario = gestor.crearUsuario("Vale", TipoUsuario.ESTUDIANTE);
+        Tarea tarea = gestor.crearTarea("Estudiar álgebra", Prioridad.URGENTE);
+
+        gestor.agregarTareaAUsuario(usuario.getId(), tarea);
+
+        List<Tarea> tareas = gestor.listarTareasDeUsuario(usuario.getId());
+        assertEquals(1, tareas.size());
+        assertEquals(tarea, tareas.get(0));
+        assertEquals("Estudiar álgebra", tareas.get(0).getDescripcion());
+        assertEquals(Prioridad.URGENTE, tareas.get(0).getPrioridad());
+    }
+
+    @Test
+    void deberiaMarcarYEliminarTareas() {
+        Usuario usuario = gestor.crearUsuario("Ana", TipoUsuario.TRABAJADOR);
+        Tarea t1 = gestor.crearTarea("Informe", Prioridad.NORMAL);
+        Tarea t2 = gestor.crearTarea("Correo", Prioridad.NORMAL);
+        gestor.agregarTareaAUsuario(usuario.getId(), t1);
+        gestor.agregarTareaAUsuario(usuario.getId(), t2);
+
+        assertTrue(gestor.marcarTareaComoCompletada(usuario.getId(), t1.getId()));
+        assertTrue(gestor.eliminarTareaDeUsuario(usuario.getId(), t2.getId()));
+        assertFalse(gestor.eliminarTareaDeUsuario(usuario.getId(), t2.getId()));
+        assertFalse(gestor.marcarTareaComoCompletada(999, t1.getId()));
+
+        List<Tarea> tareas = gestor.listarTareasDeUsuario(usuario.getId());
+        assertEquals(List.of(t1), tareas);
+        assertEquals(EstadoTarea.COMPLETADA, tareas.get(0).getEstado());
+        assertEquals(1, gestor.contarTareas().contar(EstadoTarea.COMPLETADA));
+        assertEquals(1, gestor.contarTareas().total());
+    }
+
+    @Test
+    void deberiaContarRecorriendoColumnas() {
+        Usuario profesor = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
+        Usuario estudiante = gestor.crearUsuario("Vale", TipoUsuario.ESTUDIANTE);
+        for (int i = 0; i < 200_000; i++) {
+            Usuario usuario = i % 2 == 0 ? profesor : estudiante;
+            gestor.agregarTareaAUsuario(usuario.getId(),
+                    gestor.crearTarea("Tarea " + i, i % 4 == 0 ? Prioridad.URGENTE : Prioridad.NORMAL));
+        }
+
+        assertEquals(200_000, gestor.contarTareas(null, null, null));
+        assertEquals(50_000, gestor.contarTareas(TipoUsuario.PROFESOR, EstadoTarea.ACTIVA, Prioridad.URGENTE));
+        assertEquals(0, gestor.contarTareas(TipoUsuario.ESTUDIANTE, null, Prioridad.URGENTE));
+        assertEquals(100_000, gestor.listarTareasPorTipoUsuario(TipoUsuario.ESTUDIANTE).size());
+    }
+
+    @Test
+    void deberiaEntregarColaDeTrabajoPorPrioridad() {
+        Usuario usuario = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
+        Tarea t1 = gestor.crearTarea("Leer", Prioridad.NORMAL);
+        Tarea t2 = gestor.crearTarea("Pagar", Prioridad.URGENTE);
+        gestor.agregarTareaAUsuario(usuario.getId(), t1);
+        gestor.agregarTareaAUsuario(usuario.getId(), t2);
+
+        assertEquals(t2, gestor.verSiguienteTarea(usuario.getId()));
+        assertEquals(t2, gestor.tomarSiguienteTarea());
+        assertEquals(t1, gestor.tomarSiguienteTarea());
+        assertNull(gestor.tomarSiguienteTarea());
+        assertTrue(gestor.liberarTarea(t2.getId()));
+        assertEquals(t2, gestor.verSiguienteTarea());
+    }
+
+}
@@ -0,0 +1,166 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import servicio.GestorTareasConcurrente;
+
+/**
+ * Pruebas de concurrencia para la clase GestorTareasConcurrente.
+ */
+class GestorTareasConcurrenteTest {
+
+    private static final int HILOS = 16;
+    private static final int TAREAS_POR_HILO = 5_000;
+
+    private GestorTareasConcurrente gestor;
+
+    @BeforeEach
+    void setUp() {
+        gestor = new GestorTareasConcurrente();
+    }
+
+    @Test
+    void noDeberiaPerderNiDuplicarIdsBajoConcurrencia() throws Exception {
+        List<Usuario> usuarios = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            usuarios.add(gestor.crearUsuario("Usuario " + i, TipoUsuario.values()[i % 3]));
+        }
+
+        ExecutorService ejecutor = Executors.newFixedThreadPool(HILOS);
+        CountDownLatch salida = new CountDownLatch(1);
+        List<Future<?>> resultados = new ArrayList<>();
+
+        for (int h = 0; h < HILOS; h++) {
+            final int hilo = h;
+            resultados.add(ejecutor.submit(() -> {
+                salida.await();
+                for (int i = 0; i < TAREAS_POR_HILO; i++) {
+                    Tarea tarea = gestor.crearTarea("Tarea " + i,
+                            i % 2 == 0 ? Prioridad.NORMAL : Prioridad.URGENTE);
+                    Usuario usuario = usuarios.get((hilo + i) % usuarios.size());
+                    gestor.agregarTareaAUsuario(usuario.getId(), tarea);
+                }
+                return null;
+            }));
+        }
+
+        salida.countDown();
+        for (Future<?> resultado : resultados) {
+            resultado.get();
+        }
+        ejecutor.shutdown();
+
+        Set<Integer> ids = new HashSet<>();
+        int total = 0;
+        for (Usuario usuario : usuarios) {
+            for (Tarea tarea : gestor.listarTareasDeUsuario(usuario.getId())) {
+                assertTrue(ids.add(tarea.getId()), "Id duplicado: " + tarea.getId());
+                total++;
+            }
+        }
+
+        assertEquals(HILOS * TAREAS_POR_HILO, total);
+        for (int id = 1; id <= total; id++) {
+            assertTrue(ids.contains(id), "Id perdido: " + id);
+        }
+    }
+
+    @Test
+    void deberiaCrearUsuariosConIdsUnicosBajoConcurrencia() throws Exception {
+        ExecutorService ejecutor = Executors.newFixedThreadPool(HILOS);
+        List<Future<?>> resultados = new ArrayList<>();
+
+        for (int h = 0; h < HILOS; h++) {
+            resultados.add(ejecutor.submit(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    gestor.crearUsuario("Vale", TipoUsuario.ESTUDIANTE);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> resultado : resultados) {
+            resultado.get();
+        }
+        ejecutor.shutdown();
+
+        List<Usuario> usuarios = gestor.listarUsuarios();
+        assertEquals(HILOS * 1_000, usuarios.size());
+        for (int i = 0; i < usuarios.size(); i++) {
+            assertEquals(i + 1, usuarios.get(i).getId());
+        }
+    }
+
+    @Test
+    void deberiaMarcarYEliminarTareas() {
+        Usuario usuario = gestor.crearUsuario("Ana", TipoUsuario.TRABAJADOR);
+        Tarea tarea = gestor.crearTarea("Enviar informe", Prioridad.URGENTE);
+        gestor.agregarTareaAUsuario(usuario.getId(), tarea);
+
+        assertTrue(gestor.marcarTareaComoCompletada(usuario.getId(), tarea.getId()));
+        assertEquals(1, gestor.listarTareasPorTipoUsuario(TipoUsuario.TRABAJADOR).size());
+        assertTrue(gestor.eliminarTareaDeUsuario(usuario.getId(), tarea.getId()));
+        assertTrue(gestor.listarTareasDeUsuario(usuario.getId()).isEmpty());
+    }
+
+    @Test
+    void unaTareaEliminadaMientrasSeAgregaNoDeberiaQuedarEnLaCola() throws Exception {
+        // Cada tarea se elimina en cuanto otro hilo termina de asignarla
+        ExecutorService ejecutor = Executors.newFixedThreadPool(HILOS);
+        List<Future<?>> resultados = new ArrayList<>();
+        for (int h = 0; h < HILOS / 2; h++) {
+            Usuario usuario = gestor.crearUsuario("Usuario " + h, TipoUsuario.TRABAJADOR);
+            List<Tarea> tareas = new ArrayList<>();
+            for (int i = 0; i < TAREAS_POR_HILO; i++) {
+                Tarea tarea = gestor.crearTarea("Tarea " + i, Prioridad.NORMAL);
+                tarea.setVenceEn(Long.MAX_VALUE);
+                tareas.add(tarea);
+            }
+
+            resultados.add(ejecutor.submit(() -> {
+                for (Tarea tarea : tareas) {
+                    gestor.agregarTareaAUsuario(usuario.getId(), tarea);
+                }
+            }));
+            resultados.add(ejecutor.submit(() -> {
+                for (Tarea tarea : tareas) {
+                    while (!gestor.eliminarTareaDeUsuario(usuario.getId(), tarea.getId())) {
+                        Thread.onSpinWait();
+                    }
+                }
+            }));
+        }
+        for (Future<?> resultado : resultados) {
+            resultado.get();
+        }
+        ejecutor.shutdown();
+
+        assertNull(gestor.verSiguienteTarea());
+        assertNull(gestor.tomarSiguienteTarea());
+        assertEquals(0, gestor.contarTareas().total());
+    }
+
+    @Test
+    void noDeberiaAgregarTareaAUsuarioInexistente() {
+        Tarea tarea = gestor.crearTarea("Algo", Prioridad.NORMAL);
+        assertThrows(IllegalArgumentException.class, () -> {
+            gestor.agregarTareaAUsuario(999, tarea);
+        });
+    }
+
+}
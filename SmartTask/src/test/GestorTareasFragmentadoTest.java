@@ -0,0 +1,341 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import interfaces.OyenteVencimientos;
+import interfaces.Suscripcion;
+import modelo.EstadoTarea;
+import modelo.Pagina;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import servicio.GestorTareasFragmentado;
+import servicio.ServidorFragmento;
+
+/**
+ * Pruebas del gestor repartido en fragmentos, en el mismo proceso y a
+ * través de sockets.
+ */
+class GestorTareasFragmentadoTest {
+
+    private static final InetAddress LOCAL = InetAddress.getLoopbackAddress();
+
+    /**
+     * Crea usuarios y tareas y comprueba el reparto, los listados globales y
+     * la cola, sin depender de en qué fragmento cae cada usuario.
+     */
+    private static void verificar(GestorTareasFragmentado gestor) {
+        List<Usuario> creados = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            TipoUsuario tipo = TipoUsuario.values()[i % TipoUsuario.values().length];
+            creados.add(gestor.crearUsuario("Usuario " + i, tipo));
+        }
+        Set<Integer> idsUsuarios = creados.stream().map(Usuario::getId).collect(Collectors.toSet());
+        assertEquals(60, idsUsuarios.size());
+
+        // Cada fragmento recibe usuarios y el dueño se deduce del id
+        Set<Integer> usados = new HashSet<>();
+        for (Usuario usuario : creados) {
+            usados.add(gestor.fragmentoDe(usuario.getId()));
+            assertEquals("Usuario " + creados.indexOf(usuario), gestor.buscarUsuario(usuario.getId()).getNombre());
+        }
+        assertEquals(gestor.getFragmentos(), usados.size());
+
+        Set<Integer> idsTareas = new HashSet<>();
+        for (Usuario usuario : creados) {
+            for (int i = 0; i < 3; i++) {
+                Prioridad prioridad = i == 0 ? Prioridad.URGENTE : Prioridad.NORMAL;
+                Tarea tarea = gestor.crearTarea("Revisar informe " + usuario.getId() + "-" + i, prioridad);
+                assertTrue(idsTareas.add(tarea.getId()));
+                gestor.agregarTareaAUsuario(usuario.getId(), tarea);
+            }
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> gestor.agregarTareaAUsuario(-5, gestor.crearTarea("Sin dueño", Prioridad.NORMAL)));
+
+        Usuario primero = creados.get(0);
+        int completada = gestor.listarTareasDeUsuario(primero.getId()).get(1).getId();
+        assertTrue(gestor.marcarTareaComoCompletada(primero.getId(), completada));
+        assertEquals(1, gestor.listarTareasDeUsuario(primero.getId(), EstadoTarea.COMPLETADA).size());
+        assertEquals(1, gestor.listarTareasDeUsuario(primero.getId(), Prioridad.URGENTE).size());
+        assertNull(gestor.listarTareasDeUsuario(-5));
+
+        // Listados globales en orden de id, completos y coherentes con la paginación
+        List<Integer> usuarios = gestor.listarUsuarios().stream().map(Usuario::getId).toList();
+        assertEquals(idsUsuarios.stream().sorted().toList(), usuarios);
+        assertEquals(usuarios, gestor.recorrerUsuarios().map(Usuario::getId).toList());
+
+        List<Tarea> deProfesores = gestor.listarTareasPorTipoUsuario(TipoUsuario.PROFESOR);
+        List<Tarea> esperadas = new ArrayList<>();
+        for (Usuario profesor : gestor.listarUsuariosPorTipo(TipoUsuario.PROFESOR)) {
+            // Cada usuario lista sus tareas por id aunque se crearan en fragmentos distintos
+            List<Tarea> propias = new ArrayList<>(gestor.listarTareasDeUsuario(profesor.getId()));
+            propias.sort(Comparator.comparingInt(Tarea::getId));
+            esperadas.addAll(propias);
+        }
+        assertEquals(ids(esperadas), ids(deProfesores));
+        assertEquals(ids(esperadas), ids(gestor.recorrerTareasPorTipoUsuario(TipoUsuario.PROFESOR).toList()));
+
+        List<Integer> paginadas = new ArrayList<>();
+        for (long cursor = Pagina.INICIO; cursor != Pagina.FIN;) {
+            Pagina<Tarea> pagina = gestor.listarTareasPorTipoUsuario(TipoUsuario.PROFESOR, cursor, 7);
+            assertTrue(pagina.getElementos().size() <= 7);
+            paginadas.addAll(ids(pagina.getElementos()));
+            cursor = pagina.getSiguiente();
+        }
+        assertEquals(ids(esperadas), paginadas);
+
+        assertEquals(180, gestor.contarTareas().total());
+        assertEquals(1, gestor.contarTareas().contar(EstadoTarea.COMPLETADA));
+        assertEquals(60, gestor.contarTareasPorTipoUsuario(TipoUsuario.PROFESOR).total());
+        assertEquals(3, gestor.contarTareasDeUsuario(primero.getId()).total());
+        assertEquals(180, (long) gestor.consultarTareas(null, tareas -> tareas.count()));
+
+        assertEquals(5, gestor.buscarTareas("informe", null, null, null, 5).size());
+        List<Tarea> urgentes = gestor.buscarTareas("revisar", EstadoTarea.ACTIVA, Prioridad.URGENTE, null, 100);
+        assertEquals(60, urgentes.size());
+        assertEquals(urgentes.stream().map(Tarea::getId).sorted().toList(), ids(urgentes));
+
+        // La cola global entrega primero las urgentes de todos los fragmentos
+        Set<Integer> tomadas = new HashSet<>();
+        for (int i = 0; i < 60; i++) {
+            Tarea tarea = gestor.tomarSiguienteTarea();
+            assertEquals(Prioridad.URGENTE, tarea.getPrioridad());
+            assertTrue(tomadas.add(tarea.getId()));
+        }
+        assertEquals(Prioridad.NORMAL, gestor.verSiguienteTarea().getPrioridad());
+        int devuelta = tomadas.iterator().next();
+        assertTrue(gestor.liberarTarea(devuelta));
+        assertEquals(devuelta, gestor.verSiguienteTarea().getId());
+
+        Usuario ultimo = creados.get(59);
+        int tareaId = gestor.listarTareasDeUsuario(ultimo.getId()).get(2).getId();
+        long ahora = System.currentTimeMillis();
+        assertTrue(gestor.fijarVencimiento(ultimo.getId(), tareaId, ahora + 60_000, 0));
+        List<List<Integer>> vencidas = new ArrayList<>();
+        OyenteVencimientos oyente = (usuarioId, tarea) -> vencidas.add(List.of(usuarioId, tarea.getId()));
+        assertEquals(1, gestor.revisarVencimientos(ahora + 120_000, oyente));
+        assertEquals(List.of(List.of(ultimo.getId(), tareaId)), vencidas);
+
+        assertTrue(gestor.eliminarTareaDeUsuario(ultimo.getId(), tareaId));
+        assertEquals(179, gestor.contarTareas().total());
+    }
+
+    private static List<Integer> ids(List<Tarea> tareas) {
+        return tareas.stream().map(Tarea::getId).toList();
+    }
+
+    @Test
+    void deberiaFuncionarConFragmentosEnElMismoProceso() throws IOException {
+        try (GestorTareasFragmentado gestor = new GestorTareasFragmentado(4)) {
+            verificar(gestor);
+        }
+        try (GestorTareasFragmentado gestor = new GestorTareasFragmentado(1)) {
+            verificar(gestor);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new GestorTareasFragmentado(0));
+    }
+
+    @Test
+    void losIdsDeberianSerUnicosYRepartirseDeFormaUniforme() throws IOException {
+        try (GestorTareasFragmentado gestor = new GestorTareasFragmentado(8)) {
+            Set<Integer> ids = new HashSet<>();
+            for (int i = 0; i < 2_000; i++) {
+                assertTrue(ids.add(gestor.crearUsuario("U" + i, TipoUsuario.ESTUDIANTE).getId()));
+            }
+
+            // El anillo reparte los ids casi por igual entre los fragmentos
+            int[] porFragmento = new int[8];
+            for (int id = 1; id <= 80_000; id++) {
+                porFragmento[gestor.fragmentoDe(id)]++;
+            }
+            for (int cantidad : porFragmento) {
+                assertTrue(cantidad > 7_000 && cantidad < 13_000, "Reparto desigual: " + cantidad);
+            }
+
+            // Las reservas de ids de tarea de distintos fragmentos no se solapan
+            Set<Integer> reservados = new HashSet<>();
+            for (int i = 0; i < 50; i++) {
+                int primero = gestor.reservarIdsTareas(100);
+                for (int id = primero; id < primero + 100; id++) {
+                    assertTrue(reservados.add(id));
+                }
+            }
+            assertTrue(reservados.add(gestor.crearTarea("Otra", Prioridad.NORMAL).getId()));
+        }
+    }
+
+    @Test
+    void losFragmentosLocalesDeberianDevolverCopias() throws IOException {
+        try (GestorTareasFragmentado gestor = new GestorTareasFragmentado(2)) {
+            Usuario ana = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
+            Tarea tarea = gestor.crearTarea("Preparar clase", Prioridad.NORMAL);
+            gestor.agregarTareaAUsuario(ana.getId(), tarea);
+
+            // Cambiar lo devuelto no cambia el fragmento, y cada consulta trae otra copia
+            Usuario leido = gestor.buscarUsuario(ana.getId());
+            assertNotSame(leido, gestor.buscarUsuario(ana.getId()));
+            leido.getTareas().get(0).marcarComoCompletada();
+            gestor.verSiguienteTarea().marcarComoCompletada();
+            gestor.buscarTareas("preparar", null, null, null, 10).get(0).marcarComoCompletada();
+
+            assertEquals(EstadoTarea.ACTIVA, gestor.listarTareasDeUsuario(ana.getId()).get(0).getEstado());
+            assertEquals(1, gestor.contarTareas().contar(EstadoTarea.ACTIVA));
+            assertEquals(tarea.getId(), gestor.tomarSiguienteTarea().getId());
+        }
+    }
+
+    @Test
+    void losRangosDeIdsDeTareaDeberianRepartirseTodosLosIdsPositivos() throws IOException {
+        try (GestorTareasFragmentado gestor = new GestorTareasFragmentado(1)) {
+            // Un solo fragmento dispone de todos los ids, no solo de los 2^24 primeros
+            int primero = gestor.reservarIdsTareas(Integer.MAX_VALUE / 2);
+            assertTrue(gestor.crearTarea("Otra", Prioridad.NORMAL).getId() > primero);
+        }
+        try (GestorTareasFragmentado gestor = new GestorTareasFragmentado(4)) {
+            for (int i = 0; i < 4; i++) {
+                gestor.reservarIdsTareas(1 << 26);
+            }
+            assertNotNull(gestor.crearTarea("Otra", Prioridad.NORMAL));
+        }
+    }
+
+    @Test
+    void deberiaAdmitirEscriturasConcurrentesEnVariosFragmentos() throws Exception {
+        try (GestorTareasFragmentado gestor = new GestorTareasFragmentado(4);
+                ExecutorService hilos = Executors.newFixedThreadPool(8)) {
+            List<Future<?>> pendientes = new ArrayList<>();
+            for (int h = 0; h < 8; h++) {
+                pendientes.add(hilos.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        Usuario usuario = gestor.crearUsuario("U", TipoUsuario.TRABAJADOR);
+                        gestor.agregarTareasAUsuario(usuario.getId(), List.of(
+                                gestor.crearTarea("a", Prioridad.NORMAL), gestor.crearTarea("b", Prioridad.URGENTE)));
+                        gestor.listarUsuarios(Pagina.INICIO, 10);
+                    }
+                }));
+            }
+            for (Future<?> pendiente : pendientes) {
+                pendiente.get();
+            }
+            assertEquals(1_600, gestor.listarUsuarios().size());
+            assertEquals(3_200, gestor.contarTareas().total());
+            assertEquals(3_200, gestor.listarTareasPorTipoUsuario(TipoUsuario.TRABAJADOR).stream()
+                    .map(Tarea::getId).distinct().count());
+        }
+    }
+
+    @Test
+    void variosDespachadoresDeberianTomarCadaTareaUnaVezYLasUrgentesPrimero() throws Exception {
+        try (GestorTareasFragmentado gestor = new GestorTareasFragmentado(4);
+                ExecutorService hilos = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 200; i++) {
+                Usuario usuario = gestor.crearUsuario("U" + i, TipoUsuario.TRABAJADOR);
+                gestor.agregarTareasAUsuario(usuario.getId(), List.of(
+                        gestor.crearTarea("a", Prioridad.NORMAL), gestor.crearTarea("b", Prioridad.URGENTE)));
+            }
+
+            List<Future<List<Tarea>>> pendientes = new ArrayList<>();
+            for (int h = 0; h < 8; h++) {
+                pendientes.add(hilos.submit(() -> {
+                    List<Tarea> propias = new ArrayList<>();
+                    for (Tarea tarea; (tarea = gestor.tomarSiguienteTarea()) != null;) {
+                        propias.add(tarea);
+                    }
+                    return propias;
+                }));
+            }
+
+            Set<Integer> tomadas = new HashSet<>();
+            for (Future<List<Tarea>> pendiente : pendientes) {
+                List<Tarea> propias = pendiente.get();
+                // Un despachador no recibe una normal mientras quede alguna urgente sin tomar
+                int primeraNormal = propias.stream().map(Tarea::getPrioridad).toList().indexOf(Prioridad.NORMAL);
+                if (primeraNormal >= 0) {
+                    assertTrue(propias.subList(primeraNormal, propias.size()).stream()
+                            .allMatch(tarea -> tarea.getPrioridad() == Prioridad.NORMAL));
+                }
+                for (Tarea tarea : propias) {
+                    assertTrue(tomadas.add(tarea.getId()));
+                }
+            }
+            assertEquals(400, tomadas.size());
+        }
+    }
+
+    @Test
+    void deberiaFuncionarConFragmentosRemotosEnOtraJvm() throws Exception {
+        // Dos fragmentos en este proceso y el tercero en una JVM aparte
+        Path java = Path.of(System.getProperty("java.home"), "bin", "java");
+        Path clases = Path.of(ServidorFragmento.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        Process proceso = new ProcessBuilder(java.toString(), "-cp", clases.toString(),
+                "servicio.ServidorFragmento", "2", "3")
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        try (ServidorFragmento cero = new ServidorFragmento(0, 3, new InetSocketAddress(LOCAL, 0));
+                ServidorFragmento uno = new ServidorFragmento(1, 3, new InetSocketAddress(LOCAL, 0))) {
+            BufferedReader salida = new BufferedReader(
+                    new InputStreamReader(proceso.getInputStream(), StandardCharsets.UTF_8));
+            int puertoRemoto = Integer.parseInt(salida.readLine().trim());
+
+            List<InetSocketAddress> direcciones = List.of(new InetSocketAddress(LOCAL, cero.getPuerto()),
+                    new InetSocketAddress(LOCAL, uno.getPuerto()), new InetSocketAddress(LOCAL, puertoRemoto));
+            try (GestorTareasFragmentado gestor = GestorTareasFragmentado.conectar(direcciones)) {
+                verificar(gestor);
+
+                // Los errores de argumentos cruzan el socket con su tipo
+                assertThrows(IllegalArgumentException.class, () -> gestor.listarTareasDeUsuario(1, -5, 10));
+                assertThrows(IllegalArgumentException.class, () -> gestor.suscribir(lote -> { }, 0));
+
+                // Los eventos del fragmento de la otra JVM llegan por el socket
+                List<String> eventos = Collections.synchronizedList(new ArrayList<>());
+                Suscripcion suscripcion = gestor.suscribir(lote -> {
+                    for (int i = 0; i < lote.getTamanio(); i++) {
+                        eventos.add(lote.getTipo(i) + " " + lote.getTareaId(i) + " " + lote.getUsuarioId(i));
+                    }
+                }, 10);
+                Usuario remoto;
+                do {
+                    remoto = gestor.crearUsuario("Remoto", TipoUsuario.ESTUDIANTE);
+                } while (gestor.fragmentoDe(remoto.getId()) != 2);
+                Tarea tarea = gestor.crearTarea("Por el socket", Prioridad.NORMAL);
+                gestor.agregarTareaAUsuario(remoto.getId(), tarea);
+                gestor.marcarTareaComoCompletada(remoto.getId(), tarea.getId());
+                suscripcion.close();
+
+                assertTrue(eventos.containsAll(List.of("ASIGNADA " + tarea.getId() + " " + remoto.getId(),
+                        "COMPLETADA " + tarea.getId() + " " + remoto.getId())), eventos.toString());
+                assertEquals(eventos.size(), suscripcion.getEntregados());
+            }
+
+            // Un servidor en otra posición del anillo se rechaza al conectar
+            assertThrows(IOException.class, () -> GestorTareasFragmentado.conectar(
+                    List.of(new InetSocketAddress(LOCAL, uno.getPuerto()))));
+        } finally {
+            proceso.getOutputStream().close();
+            proceso.waitFor();
+        }
+    }
+
+}
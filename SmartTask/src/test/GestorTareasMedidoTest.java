@@ -0,0 +1,187 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.junit.jupiter.api.Test;
+
+import modelo.Prioridad;
+import modelo.TipoUsuario;
+import servicio.GestorTareasConcurrente;
+import servicio.GestorTareasMedido;
+import servicio.GestorTareasMedido.Operacion;
+import servicio.GestorTareasServicio;
+import servicio.Histograma;
+
+/**
+ * Pruebas del histograma y del decorador de métricas.
+ */
+class GestorTareasMedidoTest {
+
+    @Test
+    void deberiaCalcularPercentilesConErrorRelativoAcotado() {
+        Random azar = new Random(7);
+        Histograma histograma = new Histograma(4);
+        long[] valores = new long[100_000];
+        for (int i = 0; i < valores.length; i++) {
+            valores[i] = (long) Math.pow(10, azar.nextDouble() * 9);
+            histograma.registrar(valores[i]);
+        }
+        Arrays.sort(valores);
+
+        Histograma.Resumen resumen = histograma.resumen();
+        assertEquals(valores.length, resumen.conteo());
+        for (double fraccion : new double[] { 0.01, 0.5, 0.9, 0.99, 0.999, 1 }) {
+            long exacto = valores[(int) Math.ceil(fraccion * valores.length) - 1];
+            long estimado = resumen.percentil(fraccion);
+            assertTrue(estimado >= exacto && estimado - exacto <= exacto / Histograma.SUBCUBETAS,
+                    fraccion + ": " + exacto + " frente a " + estimado);
+        }
+        assertEquals(resumen.percentil(1), resumen.maximo());
+        double media = Arrays.stream(valores).average().orElseThrow();
+        assertEquals(media, resumen.media(), media / Histograma.SUBCUBETAS);
+    }
+
+    @Test
+    void deberiaContarExactosLosValoresPequenosYAcotarLosExtremos() {
+        Histograma histograma = new Histograma();
+        for (long valor = 0; valor < Histograma.SUBCUBETAS; valor++) {
+            histograma.registrar(valor);
+        }
+        assertEquals(7, histograma.resumen().percentil(0.5));
+        assertEquals(Histograma.SUBCUBETAS - 1, histograma.resumen().maximo());
+
+        histograma.registrar(-5);
+        histograma.registrar(Long.MAX_VALUE);
+        assertEquals(Histograma.MAXIMO, histograma.resumen().maximo());
+        assertEquals(0, histograma.resumen().percentil(0));
+        assertThrows(IllegalArgumentException.class, () -> histograma.resumen().percentil(1.5));
+
+        histograma.reiniciar();
+        assertEquals(0, histograma.resumen().conteo());
+        assertEquals(0, histograma.resumen().percentil(0.99));
+        assertThrows(IllegalArgumentException.class, () -> new Histograma(0));
+    }
+
+    @Test
+    void deberiaNoPerderRegistrosDesdeVariosHilos() throws InterruptedException {
+        Histograma histograma = new Histograma();
+        int hilos = 8;
+        int porHilo = 100_000;
+        try (ExecutorService ejecutor = Executors.newFixedThreadPool(hilos)) {
+            for (int h = 0; h < hilos; h++) {
+                ejecutor.execute(() -> {
+                    for (int i = 0; i < porHilo; i++) {
+                        histograma.registrar(i);
+                    }
+                });
+            }
+        }
+        assertEquals((long) hilos * porHilo, histograma.resumen().conteo());
+    }
+
+    @Test
+    void deberiaMedirLlamadasErroresYTamanios() {
+        GestorTareasMedido gestor = new GestorTareasMedido(new GestorTareasServicio(), 1);
+        int ana = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR).getId();
+        int luis = gestor.crearUsuario("Luis", TipoUsuario.ESTUDIANTE).getId();
+        gestor.crearUsuario("Eva", TipoUsuario.TRABAJADOR);
+        for (int i = 0; i < 4; i++) {
+            gestor.agregarTareaAUsuario(ana, gestor.crearTarea("Tarea " + i, Prioridad.NORMAL));
+        }
+        gestor.agregarTareaAUsuario(luis, gestor.crearTarea("Estudiar", Prioridad.URGENTE));
+        gestor.marcarTareaComoCompletada(ana, 1);
+
+        assertEquals(4, gestor.listarTareasDeUsuario(ana).size());
+        assertNull(gestor.listarTareasDeUsuario(99));
+        assertThrows(IllegalArgumentException.class, () -> gestor.crearUsuario("", TipoUsuario.PROFESOR));
+
+        assertEquals(4, gestor.llamadas(Operacion.CREAR_USUARIO));
+        assertEquals(4, gestor.latencias(Operacion.CREAR_USUARIO).conteo());
+        assertEquals(1, gestor.errores(Operacion.CREAR_USUARIO));
+        assertEquals(5, gestor.latencias(Operacion.CREAR_TAREA).conteo());
+        assertEquals(2, gestor.tamanios(Operacion.LISTAR_TAREAS_DE_USUARIO).conteo());
+        assertEquals(4, gestor.tamanios(Operacion.LISTAR_TAREAS_DE_USUARIO).maximo());
+        assertEquals(0, gestor.latencias(Operacion.BUSCAR_TAREAS).conteo());
+        assertThrows(IllegalArgumentException.class, () -> gestor.tamanios(Operacion.CREAR_TAREA));
+        assertTrue(gestor.latencias(Operacion.CREAR_TAREA).percentil(0.5) > 0);
+
+        // Indicadores del contenido
+        assertEquals(3, gestor.getUsuarios());
+        assertEquals(4, gestor.getTareasActivas());
+        assertEquals(1, gestor.getTareasCompletadas());
+        assertEquals(0.2, gestor.getFraccionCompletadas(), 1e-9);
+        assertEquals(1, gestor.getTareasPorUsuarioP50());
+        assertEquals(4, gestor.getTareasPorUsuarioMaximo());
+
+        assertEquals(List.of("CREAR_USUARIO", "CREAR_TAREA", "AGREGAR_TAREA_A_USUARIO", "LISTAR_TAREAS_DE_USUARIO",
+                "MARCAR_TAREA_COMO_COMPLETADA"), List.copyOf(gestor.getLlamadas().keySet()));
+        assertEquals(1L, gestor.getErrores().get("CREAR_USUARIO"));
+        assertEquals(2.0, gestor.getTamanioMedio().get("LISTAR_TAREAS_DE_USUARIO"));
+
+        String volcado = gestor.volcar();
+        assertTrue(volcado.lines().anyMatch(linea -> linea.matches("CREAR_USUARIO\\s+4\\s+1\\s.*")), volcado);
+        assertTrue(volcado.contains("usuarios=3 tareas=5 activas=4 completadas=1 fraccion_completadas=0.200"), volcado);
+        assertFalse(volcado.contains("BUSCAR_TAREAS"));
+
+        gestor.reiniciar();
+        assertTrue(gestor.getLlamadas().isEmpty());
+        assertEquals(0, gestor.errores(Operacion.CREAR_USUARIO));
+        assertEquals(3, gestor.getUsuarios());
+    }
+
+    @Test
+    void deberiaContarTodasLasLlamadasYMedirSoloLaMuestra() {
+        GestorTareasMedido gestor = new GestorTareasMedido(new GestorTareasServicio());
+        int id = gestor.crearUsuario("Ana", TipoUsuario.TRABAJADOR).getId();
+        int llamadas = 80_000;
+        for (int i = 0; i < llamadas; i++) {
+            gestor.buscarUsuario(id);
+        }
+
+        assertEquals(llamadas, gestor.llamadas(Operacion.BUSCAR_USUARIO));
+        long medidas = gestor.latencias(Operacion.BUSCAR_USUARIO).conteo();
+        double esperadas = (double) llamadas / GestorTareasMedido.MUESTREO;
+        assertEquals(esperadas, medidas, esperadas * 0.1);
+        assertThrows(IllegalArgumentException.class, () -> new GestorTareasMedido(new GestorTareasServicio(), 3));
+        assertThrows(IllegalArgumentException.class, () -> new GestorTareasMedido(null));
+    }
+
+    @Test
+    void deberiaPublicarLasMetricasPorJmx() throws Exception {
+        MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+        GestorTareasMedido gestor = new GestorTareasMedido(new GestorTareasConcurrente());
+        ObjectName nombre;
+        try {
+            nombre = gestor.registrarJmx("prueba");
+            assertThrows(IllegalStateException.class, () -> gestor.registrarJmx("otro"));
+            try (GestorTareasMedido repetido = new GestorTareasMedido(new GestorTareasServicio())) {
+                assertThrows(IllegalArgumentException.class, () -> repetido.registrarJmx("prueba"));
+            }
+
+            int id = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR).getId();
+            gestor.agregarTareaAUsuario(id, gestor.crearTarea("Corregir", Prioridad.URGENTE));
+
+            assertEquals(1L, servidor.getAttribute(nombre, "Usuarios"));
+            assertEquals(1L, servidor.getAttribute(nombre, "TareasActivas"));
+            TabularData llamadas = (TabularData) servidor.getAttribute(nombre, "Llamadas");
+            assertEquals(3, llamadas.size());
+            String volcado = (String) servidor.invoke(nombre, "volcar", null, null);
+            assertTrue(volcado.contains("CREAR_TAREA"), volcado);
+        } finally {
+            gestor.close();
+        }
+        assertFalse(servidor.isRegistered(nombre));
+    }
+
+}
@@ -0,0 +1,159 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import modelo.EstadoTarea;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import servicio.GestorTareasPersistente;
+import servicio.PoliticaSincronizacion;
+
+/**
+ * Pruebas de recuperación del gestor persistente.
+ */
+class GestorTareasPersistenteTest {
+
+    @TempDir
+    Path directorio;
+
+    private void poblar(GestorTareasPersistente gestor) {
+        Usuario ana = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
+        Usuario vale = gestor.crearUsuario("Valentína", TipoUsuario.ESTUDIANTE);
+
+        Tarea t1 = gestor.crearTarea("Preparar clase", Prioridad.URGENTE);
+        Tarea t2 = gestor.crearTarea("Corregir exámenes", Prioridad.NORMAL);
+        Tarea t3 = gestor.crearTarea("Estudiar", Prioridad.NORMAL);
+        gestor.crearTarea("Sin asignar", Prioridad.NORMAL);
+
+        gestor.agregarTareaAUsuario(ana.getId(), t1);
+        gestor.agregarTareaAUsuario(ana.getId(), t2);
+        gestor.agregarTareaAUsuario(vale.getId(), t3);
+        gestor.marcarTareaComoCompletada(ana.getId(), t1.getId());
+        gestor.eliminarTareaDeUsuario(ana.getId(), t2.getId());
+    }
+
+    private void verificar(GestorTareasPersistente gestor) {
+        List<Usuario> usuarios = gestor.listarUsuarios();
+        assertEquals(2, usuarios.size());
+        assertEquals("Valentína", usuarios.get(1).getNombre());
+
+        List<Tarea> tareasAna = gestor.listarTareasDeUsuario(usuarios.get(0).getId());
+        assertEquals(1, tareasAna.size());
+        assertEquals(EstadoTarea.COMPLETADA, tareasAna.get(0).getEstado());
+        assertEquals(Prioridad.URGENTE, tareasAna.get(0).getPrioridad());
+        assertEquals("Estudiar", gestor.listarTareasDeUsuario(usuarios.get(1).getId()).get(0).getDescripcion());
+
+        // Los contadores continúan después de los ids ya usados
+        assertEquals(3, gestor.crearUsuario("Luis", TipoUsuario.TRABAJADOR).getId());
+        assertEquals(5, gestor.crearTarea("Nueva", Prioridad.NORMAL).getId());
+    }
+
+    @Test
+    void deberiaRecuperarEstadoReproduciendoElRegistro() throws IOException {
+        try (GestorTareasPersistente gestor = new GestorTareasPersistente(directorio, PoliticaSincronizacion.CADA_ESCRITURA)) {
+            poblar(gestor);
+        }
+
+        try (GestorTareasPersistente gestor = new GestorTareasPersistente(directorio, PoliticaSincronizacion.CADA_ESCRITURA)) {
+            verificar(gestor);
+        }
+    }
+
+    @Test
+    void deberiaRecuperarDesdeInstantaneaYCola() throws IOException {
+        try (GestorTareasPersistente gestor = new GestorTareasPersistente(directorio, PoliticaSincronizacion.POR_LOTES, 3)) {
+            poblar(gestor);
+        }
+
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            assertTrue(archivos.anyMatch(p -> p.getFileName().toString().startsWith("instantanea-")));
+        }
+
+        try (GestorTareasPersistente gestor = new GestorTareasPersistente(directorio, PoliticaSincronizacion.SISTEMA_OPERATIVO)) {
+            verificar(gestor);
+        }
+    }
+
+    @Test
+    void deberiaSeguirRegistrandoSiFallaLaInstantanea() throws IOException {
+        // Un directorio en la ruta del temporal hace fallar la escritura de la instantánea
+        Path bloqueo = Files.createDirectory(directorio.resolve("instantanea-000000000002.bin.tmp"));
+
+        try (GestorTareasPersistente gestor = new GestorTareasPersistente(directorio, PoliticaSincronizacion.CADA_ESCRITURA, 3)) {
+            poblar(gestor);
+            assertThrows(UncheckedIOException.class, gestor::crearInstantanea);
+        }
+
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            assertFalse(archivos.anyMatch(p -> p.getFileName().toString().endsWith(".bin")));
+        }
+        Files.delete(bloqueo);
+
+        try (GestorTareasPersistente gestor = new GestorTareasPersistente(directorio, PoliticaSincronizacion.CADA_ESCRITURA, 3)) {
+            verificar(gestor);
+        }
+    }
+
+    @Test
+    void deberiaRecuperarLasTareasReclamadas() throws IOException {
+        // Con 12 operaciones por instantánea, una reclamación queda en la instantánea y otra en el registro
+        try (GestorTareasPersistente gestor = new GestorTareasPersistente(directorio, PoliticaSincronizacion.CADA_ESCRITURA, 12)) {
+            Usuario ana = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
+            for (int i = 0; i < 4; i++) {
+                gestor.agregarTareaAUsuario(ana.getId(), gestor.crearTarea("Tarea " + i, Prioridad.NORMAL));
+            }
+            assertEquals(1, gestor.tomarSiguienteTarea().getId());
+            assertEquals(2, gestor.tomarSiguienteTarea().getId());
+            assertTrue(gestor.liberarTarea(1));
+            assertEquals(1, gestor.tomarSiguienteTarea(ana.getId()).getId());
+        }
+
+        try (GestorTareasPersistente gestor = new GestorTareasPersistente(directorio, PoliticaSincronizacion.CADA_ESCRITURA)) {
+            assertEquals(3, gestor.tomarSiguienteTarea().getId());
+            assertEquals(4, gestor.tomarSiguienteTarea().getId());
+            assertNull(gestor.tomarSiguienteTarea());
+            assertTrue(gestor.liberarTarea(1));
+            assertTrue(gestor.liberarTarea(2));
+        }
+    }
+
+    @Test
+    void deberiaIgnorarRegistroIncompletoAlFinal() throws IOException {
+        try (GestorTareasPersistente gestor = new GestorTareasPersistente(directorio, PoliticaSincronizacion.CADA_ESCRITURA)) {
+            poblar(gestor);
+        }
+
+        Path registro;
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            registro = archivos.filter(p -> p.getFileName().toString().startsWith("registro-"))
+                    .filter(p -> p.toFile().length() > 0)
+                    .findFirst()
+                    .orElseThrow();
+        }
+        try (FileChannel canal = FileChannel.open(registro, StandardOpenOption.WRITE)) {
+            // Simula una escritura interrumpida a mitad del último registro
+            canal.truncate(canal.size() - 3);
+        }
+
+        try (GestorTareasPersistente gestor = new GestorTareasPersistente(directorio, PoliticaSincronizacion.CADA_ESCRITURA)) {
+            Usuario ana = gestor.listarUsuarios().get(0);
+            // La eliminación perdida deja la tarea de nuevo en la lista
+            assertEquals(2, gestor.listarTareasDeUsuario(ana.getId()).size());
+        }
+    }
+
+}
@@ -0,0 +1,348 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.Test;
+
+import modelo.EstadoTarea;
+import modelo.FormatoIntercambio;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TareaNormal;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import servicio.GestorTareasReplica;
+import servicio.GestorTareasReplicado;
+
+/**
+ * Pruebas de la replicación por envío del registro de operaciones, con la
+ * réplica en el mismo proceso y en otra JVM.
+ */
+class GestorTareasReplicadoTest {
+
+    private static final InetAddress LOCAL = InetAddress.getLoopbackAddress();
+
+    private static final long ESPERA_MS = 30_000;
+
+    private static void esperar(BooleanSupplier condicion, String mensaje) throws InterruptedException {
+        long limite = System.currentTimeMillis() + ESPERA_MS;
+        while (!condicion.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < limite, mensaje);
+            Thread.sleep(10);
+        }
+    }
+
+    private static String exportar(GestorTareasReplicado gestor) throws IOException {
+        StringWriter salida = new StringWriter();
+        gestor.exportar(salida, FormatoIntercambio.JSON_LINES);
+        return salida.toString();
+    }
+
+    /**
+     * Hace algunas operaciones de cada tipo que se replica.
+     */
+    private static void operar(GestorTareasReplicado primario, int usuarios, long ahora) {
+        for (int i = 0; i < usuarios; i++) {
+            Usuario usuario = primario.crearUsuario("Usuario " + i, TipoUsuario.values()[i % TipoUsuario.values().length]);
+            List<Tarea> tareas = new ArrayList<>();
+            for (int j = 0; j < 5; j++) {
+                Tarea tarea = primario.crearTarea("Tarea " + i + "-" + j, Prioridad.values()[j % Prioridad.values().length]);
+                primario.agregarTareaAUsuario(usuario.getId(), tarea);
+                tareas.add(tarea);
+            }
+            primario.marcarTareaComoCompletada(usuario.getId(), tareas.get(0).getId());
+            primario.eliminarTareaDeUsuario(usuario.getId(), tareas.get(1).getId());
+            primario.fijarVencimiento(usuario.getId(), tareas.get(2).getId(), ahora + 3_600_000, 60_000);
+
+            int primero = primario.reservarIdsTareas(3);
+            List<Tarea> lote = new ArrayList<>();
+            for (int k = 0; k < 3; k++) {
+                lote.add(new TareaNormal(primero + k, "Lote " + i + "-" + k));
+            }
+            primario.agregarTareasAUsuario(usuario.getId(), lote);
+        }
+    }
+
+    @Test
+    void laReplicaConvergeEsDeSoloLecturaYSePuedePromover() throws Exception {
+        long ahora = System.currentTimeMillis();
+        GestorTareasReplicado primario = new GestorTareasReplicado(new InetSocketAddress(LOCAL, 0));
+        try {
+            operar(primario, 20, ahora);
+
+            try (GestorTareasReplica replica = new GestorTareasReplica(new InetSocketAddress(LOCAL, primario.getPuerto()))) {
+                operar(primario, 20, ahora);
+                esperar(() -> replica.getSecuenciaAplicada() == primario.getSecuencia(), "La réplica no converge");
+
+                // Sin historial recortado, la réplica se pone al día solo con lotes
+                assertEquals(0, replica.getInstantaneasAplicadas());
+                assertEquals(0, primario.getInstantaneasEnviadas());
+                assertEquals(0, replica.getRetrasoOperaciones());
+                esperar(() -> primario.getReplicas() == 1 && primario.getRetrasoReplicas() == 0,
+                        "El primario no recibe la confirmación");
+
+                assertEquals(primario.listarUsuarios().size(), replica.listarUsuarios().size());
+                for (Usuario usuario : primario.listarUsuarios()) {
+                    List<Tarea> esperadas = primario.listarTareasDeUsuario(usuario.getId());
+                    List<Tarea> replicadas = replica.listarTareasDeUsuario(usuario.getId());
+                    assertEquals(esperadas.size(), replicadas.size());
+                    for (int i = 0; i < esperadas.size(); i++) {
+                        Tarea esperada = esperadas.get(i);
+                        Tarea replicada = replicadas.get(i);
+                        assertEquals(esperada.getId(), replicada.getId());
+                        assertEquals(esperada.getDescripcion(), replicada.getDescripcion());
+                        assertEquals(esperada.getEstado(), replicada.getEstado());
+                        assertEquals(esperada.getCompletadaEn(), replicada.getCompletadaEn());
+                        assertEquals(esperada.getVenceEn(), replicada.getVenceEn());
+                    }
+                }
+                assertEquals(primario.contarTareas().total(), replica.contarTareas().total());
+                assertEquals(primario.contarTareas().contar(EstadoTarea.COMPLETADA),
+                        replica.contarTareas().contar(EstadoTarea.COMPLETADA));
+                assertEquals(primario.buscarTareas("Lote", null, null, null, 100).size(),
+                        replica.buscarTareas("Lote", null, null, null, 100).size());
+
+                // Las operaciones que modifican el estado se rechazan
+                int usuarioId = primario.listarUsuarios().get(0).getId();
+                assertThrows(UnsupportedOperationException.class, () -> replica.crearUsuario("X", TipoUsuario.ESTUDIANTE));
+                assertThrows(UnsupportedOperationException.class, () -> replica.crearTarea("X", Prioridad.URGENTE));
+                assertThrows(UnsupportedOperationException.class, () -> replica.eliminarTareaDeUsuario(usuarioId, 1));
+                assertThrows(UnsupportedOperationException.class, () -> replica.tomarSiguienteTarea());
+                assertThrows(UnsupportedOperationException.class, () -> replica.reservarIdsTareas(1));
+
+                // Sin operaciones, los lotes vacíos mantienen el retraso a cero
+                esperar(() -> replica.getSecuenciaPrimario() == primario.getSecuencia()
+                        && replica.getRetrasoOperaciones() == 0 && replica.getRetrasoMs() < 1_000,
+                        "La réplica no recibe los lotes vacíos");
+
+                long secuencia = primario.getSecuencia();
+                String estado = exportar(primario);
+                List<Usuario> usuarios = primario.listarUsuarios();
+                int siguienteTarea = primario.reservarIdsTareas(0);
+                primario.close();
+
+                // La réplica promovida continúa la secuencia y no repite ids
+                try (GestorTareasReplicado promovido = replica.promover(new InetSocketAddress(LOCAL, 0))) {
+                    assertEquals(secuencia, promovido.getSecuencia());
+                    assertEquals(estado, exportar(promovido));
+                    Usuario nuevo = promovido.crearUsuario("Nuevo", TipoUsuario.ESTUDIANTE);
+                    assertTrue(nuevo.getId() > usuarios.get(usuarios.size() - 1).getId());
+                    assertEquals(siguienteTarea, promovido.crearTarea("Nueva", Prioridad.URGENTE).getId());
+                    assertEquals(secuencia + 2, promovido.getSecuencia());
+                }
+            }
+        } finally {
+            primario.close();
+        }
+    }
+
+    @Test
+    void laReplicaConvergeEnLaColaDeTrabajoYLosEscalados() throws Exception {
+        long ahora = System.currentTimeMillis();
+        GestorTareasReplicado primario = new GestorTareasReplicado(new InetSocketAddress(LOCAL, 0));
+        try (GestorTareasReplica replica = new GestorTareasReplica(new InetSocketAddress(LOCAL, primario.getPuerto()))) {
+            Usuario usuario = primario.crearUsuario("Ana", TipoUsuario.PROFESOR);
+            List<Tarea> tareas = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                Tarea tarea = primario.crearTarea("Tarea " + i, Prioridad.NORMAL);
+                primario.agregarTareaAUsuario(usuario.getId(), tarea);
+                tareas.add(tarea);
+            }
+            Tarea proxima = tareas.get(5);
+            primario.fijarVencimiento(usuario.getId(), proxima.getId(), ahora + 3_600_000, 3_600_000);
+
+            Tarea tomada = primario.tomarSiguienteTarea();
+            Tarea liberada = primario.tomarSiguienteTarea(usuario.getId());
+            assertTrue(primario.liberarTarea(liberada.getId()));
+            assertEquals(1, primario.revisarVencimientos(ahora + 1_000, (u, t) -> { }));
+            assertEquals(proxima.getId(), primario.verSiguienteTarea().getId());
+
+            esperar(() -> replica.getSecuenciaAplicada() == primario.getSecuencia(), "La réplica no converge");
+            assertEquals(primario.verSiguienteTarea().getId(), replica.verSiguienteTarea().getId());
+            assertEquals(primario.verSiguienteTarea(usuario.getId()).getId(),
+                    replica.verSiguienteTarea(usuario.getId()).getId());
+            for (Tarea replicada : replica.listarTareasDeUsuario(usuario.getId())) {
+                assertEquals(replicada.getId() == proxima.getId(), replicada.isEscalada());
+            }
+
+            primario.close();
+            try (GestorTareasReplicado promovido = replica.promover(new InetSocketAddress(LOCAL, 0))) {
+                // La tarea tomada sigue reclamada y la liberada vuelve a salir tras la escalada
+                assertEquals(proxima.getId(), promovido.tomarSiguienteTarea().getId());
+                assertEquals(liberada.getId(), promovido.tomarSiguienteTarea().getId());
+                assertTrue(promovido.liberarTarea(tomada.getId()));
+            }
+        } finally {
+            primario.close();
+        }
+    }
+
+    @Test
+    void unaReplicaQueNoAlcanzaElHistorialRecibeUnaInstantanea() throws Exception {
+        long ahora = System.currentTimeMillis();
+        try (GestorTareasReplicado primario = new GestorTareasReplicado(new InetSocketAddress(LOCAL, 0), 4 * 1024)) {
+            operar(primario, 200, ahora);
+
+            // Se espera a que el historial descarte los primeros lotes
+            Thread.sleep(300);
+            try (GestorTareasReplica replica = new GestorTareasReplica(new InetSocketAddress(LOCAL, primario.getPuerto()))) {
+                esperar(() -> replica.getSecuenciaAplicada() == primario.getSecuencia(), "La réplica no converge");
+                assertTrue(primario.getInstantaneasEnviadas() >= 1);
+                assertTrue(replica.getInstantaneasAplicadas() >= 1);
+
+                // Después de la instantánea sigue con los lotes
+                operar(primario, 50, ahora);
+                esperar(() -> replica.getSecuenciaAplicada() == primario.getSecuencia(), "La réplica no converge");
+
+                StringWriter copia = new StringWriter();
+                replica.exportar(copia, FormatoIntercambio.JSON_LINES);
+                assertEquals(exportar(primario), copia.toString());
+                assertEquals(primario.contarTareas().total(), replica.contarTareas().total());
+            }
+        }
+    }
+
+    /**
+     * Lanza una réplica en otra JVM, escribe con varios hilos durante un
+     * rato y comprueba que la réplica alcanza el mismo estado.
+     */
+    @Test
+    void unaReplicaEnOtroProcesoConvergeBajoCargaSostenida() throws Exception {
+        try (GestorTareasReplicado primario = new GestorTareasReplicado(new InetSocketAddress(LOCAL, 0))) {
+            Path java = Path.of(System.getProperty("java.home"), "bin", "java");
+            Path clases = Path.of(GestorTareasReplica.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            Process proceso = new ProcessBuilder(java.toString(), "-cp", clases.toString(),
+                    "servicio.GestorTareasReplica", Integer.toString(primario.getPuerto()))
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+
+            try (Writer ordenes = new OutputStreamWriter(proceso.getOutputStream(), StandardCharsets.UTF_8);
+                    BufferedReader resumenes = new BufferedReader(
+                            new InputStreamReader(proceso.getInputStream(), StandardCharsets.UTF_8))) {
+                esperar(() -> primario.getReplicas() == 1, "La réplica no se conecta");
+
+                AtomicBoolean parar = new AtomicBoolean();
+                ExecutorService escritores = Executors.newFixedThreadPool(4);
+                List<Future<Integer>> resultados = new ArrayList<>();
+                for (int h = 0; h < 4; h++) {
+                    int semilla = h;
+                    resultados.add(escritores.submit(() -> escribir(primario, parar, semilla)));
+                }
+
+                // Durante la carga la réplica avanza
+                long anterior = 0;
+                for (int i = 0; i < 5; i++) {
+                    Thread.sleep(300);
+                    long aplicada = Long.parseLong(pedirResumen(ordenes, resumenes)[0]);
+                    assertTrue(aplicada >= anterior);
+                    anterior = aplicada;
+                }
+                assertTrue(anterior > 0);
+
+                parar.set(true);
+                int operaciones = 0;
+                for (Future<Integer> resultado : resultados) {
+                    operaciones += resultado.get();
+                }
+                escritores.shutdown();
+                assertTrue(operaciones > 1_000, "Carga insuficiente: " + operaciones);
+
+                CRC32 huella = new CRC32();
+                huella.update(exportar(primario).getBytes(StandardCharsets.UTF_8));
+                String esperado = primario.getSecuencia() + " 0 " + Long.toHexString(huella.getValue());
+
+                long limite = System.currentTimeMillis() + ESPERA_MS;
+                String[] resumen;
+                do {
+                    Thread.sleep(50);
+                    resumen = pedirResumen(ordenes, resumenes);
+                    assertTrue(System.currentTimeMillis() < limite, "La réplica no converge: " + String.join(" ", resumen));
+                } while (Long.parseLong(resumen[0]) < primario.getSecuencia());
+
+                assertEquals(esperado, String.join(" ", resumen));
+                esperar(() -> primario.getRetrasoReplicas() == 0, "El primario no recibe la confirmación");
+            } finally {
+                proceso.destroy();
+                proceso.waitFor();
+            }
+        }
+    }
+
+    private static String[] pedirResumen(Writer ordenes, BufferedReader resumenes) throws IOException {
+        ordenes.write("estado\n");
+        ordenes.flush();
+        String linea = resumenes.readLine();
+        assertNotNull(linea, "La réplica terminó");
+        return linea.split(" ");
+    }
+
+    /**
+     * Escribe operaciones variadas hasta que se pide parar.
+     *
+     * @return operaciones hechas
+     */
+    private static int escribir(GestorTareasReplicado primario, AtomicBoolean parar, int semilla) {
+        Random aleatorio = new Random(semilla);
+        List<Usuario> propios = new ArrayList<>();
+        List<Tarea> tareas = new ArrayList<>();
+        int operaciones = 0;
+
+        while (!parar.get()) {
+            if (propios.isEmpty() || aleatorio.nextInt(20) == 0) {
+                propios.add(primario.crearUsuario("Escritor " + semilla + "-" + propios.size(), TipoUsuario.ESTUDIANTE));
+            }
+            Usuario usuario = propios.get(aleatorio.nextInt(propios.size()));
+
+            switch (aleatorio.nextInt(4)) {
+                case 0, 1: {
+                    Tarea tarea = primario.crearTarea("Tarea " + operaciones, Prioridad.values()[aleatorio.nextInt(2)]);
+                    primario.agregarTareaAUsuario(usuario.getId(), tarea);
+                    tareas.add(tarea);
+                    break;
+                }
+                case 2:
+                    if (!tareas.isEmpty()) {
+                        Tarea tarea = tareas.get(aleatorio.nextInt(tareas.size()));
+                        for (Usuario dueno : propios) {
+                            if (primario.marcarTareaComoCompletada(dueno.getId(), tarea.getId())) {
+                                break;
+                            }
+                        }
+                    }
+                    break;
+                default: {
+                    int primero = primario.reservarIdsTareas(10);
+                    List<Tarea> lote = new ArrayList<>();
+                    for (int i = 0; i < 10; i++) {
+                        lote.add(new TareaNormal(primero + i, "Lote " + operaciones + "-" + i));
+                    }
+                    primario.agregarTareasAUsuario(usuario.getId(), lote);
+                    break;
+                }
+            }
+            operaciones++;
+        }
+        return operaciones;
+    }
+
+}
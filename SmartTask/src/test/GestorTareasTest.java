@@ -31,6 +31,24 @@ class GestorTareasTest {
         assertEquals(TipoUsuario.ESTUDIANTE, usuario.getTipo());
     }
     
+    @Test
+    void deberiaBuscarUsuarioPorId() {
+        Usuario u1 = gestor.crearUsuario("Vale", TipoUsuario.ESTUDIANTE);
+        Usuario u2 = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
+
+        assertSame(u1, gestor.buscarUsuario(u1.getId()));
+        assertSame(u2, gestor.buscarUsuario(u2.getId()));
+        assertNull(gestor.buscarUsuario(999));
+    }
+
+    @Test
+    void listarUsuariosDeberiaMantenerOrdenDeCreacion() {
+        Usuario u1 = gestor.crearUsuario("Vale", TipoUsuario.ESTUDIANTE);
+        Usuario u2 = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
+
+        assertEquals(List.of(u1, u2), gestor.listarUsuarios());
+    }
+    
     @Test
     void deberiaCrearProfesor() {
         Usuario usuario = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
@@ -136,6 +154,74 @@ class GestorTareasTest {
         assertEquals("Clase", tareasProfesores.get(0).getDescripcion());
     }
 
+    @Test
+    void listarTareasPorTipoUsuarioDeberiaReflejarCambiosYSerInmodificable() {
+        Usuario profesor = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
+        List<Tarea> tareasProfesores =
+                gestor.listarTareasPorTipoUsuario(TipoUsuario.PROFESOR);
+
+        Tarea tarea = gestor.crearTarea("Clase", Prioridad.NORMAL);
+        gestor.agregarTareaAUsuario(profesor.getId(), tarea);
+
+        assertEquals(List.of(tarea), tareasProfesores);
+        assertThrows(UnsupportedOperationException.class, () -> {
+            tareasProfesores.clear();
+        });
+    }
+
+    @Test
+    void deberiaListarUsuariosPorTipo() {
+        Usuario ana = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
+        gestor.crearUsuario("Vale", TipoUsuario.ESTUDIANTE);
+        Usuario luis = gestor.crearUsuario("Luis", TipoUsuario.PROFESOR);
+
+        assertEquals(List.of(ana, luis), gestor.listarUsuariosPorTipo(TipoUsuario.PROFESOR));
+        assertTrue(gestor.listarUsuariosPorTipo(TipoUsuario.TRABAJADOR).isEmpty());
+    }
+
+    @Test
+    void deberiaMantenerContadoresGlobalesPorTipoYPorUsuario() {
+        Usuario profesor = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
+        Usuario estudiante = gestor.crearUsuario("Vale", TipoUsuario.ESTUDIANTE);
+
+        Tarea t1 = gestor.crearTarea("Clase", Prioridad.URGENTE);
+        Tarea t2 = gestor.crearTarea("Corregir", Prioridad.NORMAL);
+        Tarea t3 = gestor.crearTarea("Estudiar", Prioridad.NORMAL);
+
+        gestor.agregarTareaAUsuario(profesor.getId(), t1);
+        gestor.agregarTareaAUsuario(profesor.getId(), t2);
+        gestor.agregarTareaAUsuario(estudiante.getId(), t3);
+        gestor.marcarTareaComoCompletada(profesor.getId(), t1.getId());
+        gestor.eliminarTareaDeUsuario(estudiante.getId(), t3.getId());
+
+        ContadorTareas global = gestor.contarTareas();
+        assertEquals(2, global.total());
+        assertEquals(1, global.contar(EstadoTarea.COMPLETADA));
+        assertEquals(1, global.contar(Prioridad.URGENTE));
+
+        assertEquals(2, gestor.contarTareasPorTipoUsuario(TipoUsuario.PROFESOR).total());
+        assertEquals(0, gestor.contarTareasPorTipoUsuario(TipoUsuario.ESTUDIANTE).total());
+        assertEquals(1, gestor.contarTareasDeUsuario(profesor.getId())
+                .contar(EstadoTarea.ACTIVA, Prioridad.NORMAL));
+        assertNull(gestor.contarTareasDeUsuario(999));
+    }
+
+    @Test
+    void deberiaListarTareasDeUsuarioPorEstadoYPrioridad() {
+        Usuario usuario = gestor.crearUsuario("Ana", TipoUsuario.TRABAJADOR);
+        Tarea t1 = gestor.crearTarea("Informe", Prioridad.URGENTE);
+        Tarea t2 = gestor.crearTarea("Correo", Prioridad.NORMAL);
+        Tarea t3 = gestor.crearTarea("Reunión", Prioridad.URGENTE);
+
+        gestor.agregarTareaAUsuario(usuario.getId(), t1);
+        gestor.agregarTareaAUsuario(usuario.getId(), t2);
+        gestor.agregarTareaAUsuario(usuario.getId(), t3);
+        gestor.marcarTareaComoCompletada(usuario.getId(), t1.getId());
+
+        assertEquals(List.of(t2, t3), gestor.listarTareasDeUsuario(usuario.getId(), EstadoTarea.ACTIVA));
+        assertEquals(List.of(t1), gestor.listarTareasDeUsuario(usuario.getId(), EstadoTarea.COMPLETADA));
+        assertEquals(List.of(t3, t1), gestor.listarTareasDeUsuario(usuario.getId(), Prioridad.URGENTE));
+        assertNull(gestor.listarTareasDeUsuario(999, Prioridad.URGENTE));
+    }
 
-    
 }
@@ -0,0 +1,138 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import modelo.EstadoTarea;
+import modelo.IndiceTareas;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import servicio.GestorTareasColumnar;
+import servicio.GestorTareasServicio;
+
+/**
+ * Pruebas del índice de descripciones y de la búsqueda de tareas.
+ */
+class IndiceTareasTest {
+
+    private IndiceTareas indice;
+
+    @BeforeEach
+    void setUp() {
+        indice = new IndiceTareas();
+        indice.agregar(1, 10, TipoUsuario.PROFESOR, Prioridad.NORMAL, EstadoTarea.ACTIVA, "Corregir EXÁMENES del grupo B");
+        indice.agregar(2, 10, TipoUsuario.PROFESOR, Prioridad.URGENTE, EstadoTarea.ACTIVA, "Corregir parcial");
+        indice.agregar(3, 20, TipoUsuario.ESTUDIANTE, Prioridad.NORMAL, EstadoTarea.COMPLETADA, "Estudiar para el examen");
+        indice.agregar(4, 20, TipoUsuario.ESTUDIANTE, Prioridad.URGENTE, EstadoTarea.ACTIVA, "Año académico: matrícula");
+    }
+
+    @Test
+    void deberiaDividirSinMayusculasNiTildes() {
+        assertEquals(List.of("ano", "academico", "matricula"), IndiceTareas.terminos("Año académico: matrícula"));
+        assertEquals(List.of("revision"), IndiceTareas.terminos("Revisión, revisión"));
+    }
+
+    @Test
+    void deberiaExigirTodosLosTerminos() {
+        assertArrayEquals(new int[] { 1 }, indice.buscar("corregir examenes", null, null, null, 10));
+        assertArrayEquals(new int[] { 4 }, indice.buscar("ACADÉMICO año", null, null, null, 10));
+        assertArrayEquals(new int[0], indice.buscar("corregir matricula", null, null, null, 10));
+        assertArrayEquals(new int[0], indice.buscar("inexistente", null, null, null, 10));
+    }
+
+    @Test
+    void deberiaAceptarAlternativasYPrefijos() {
+        assertArrayEquals(new int[] { 2, 1 }, indice.buscar("corregir examenes OR parcial", null, null, null, 10));
+        assertArrayEquals(new int[] { 1, 3 }, indice.buscar("exam*", null, null, null, 10));
+        assertArrayEquals(new int[] { 2, 4, 1 }, indice.buscar("corr* OR matr*", null, null, null, 10));
+    }
+
+    @Test
+    void unaPalabraConVariosTerminosDeberiaSerUnaSolaAlternativa() {
+        assertArrayEquals(new int[] { 2, 4 }, indice.buscar("parcial OR academico-matricula", null, null, null, 10));
+        assertArrayEquals(new int[] { 2, 4 }, indice.buscar("academico-matricula OR parcial", null, null, null, 10));
+        assertArrayEquals(new int[] { 2 }, indice.buscar("parcial OR academico-examenes", null, null, null, 10));
+        assertArrayEquals(new int[] { 4 }, indice.buscar("ano academico-matricula OR parcial", null, null, null, 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> indice.buscar("a-b-c OR d-e-f OR g-h-i OR j-k-l", null, null, null, 10));
+    }
+
+    @Test
+    void deberiaOrdenarComoLaColaYRespetarElLimite() {
+        assertArrayEquals(new int[] { 2, 4, 1, 3 }, indice.buscar("c* OR e* OR a*", null, null, null, 10));
+        assertArrayEquals(new int[] { 2 }, indice.buscar("c* OR e* OR a*", null, null, null, 1));
+        assertThrows(IllegalArgumentException.class, () -> indice.buscar("e*", null, null, null, 0));
+        assertThrows(IllegalArgumentException.class, () -> indice.buscar(" ¿? ", null, null, null, 5));
+    }
+
+    @Test
+    void deberiaFiltrarPorEstadoPrioridadYTipo() {
+        assertArrayEquals(new int[] { 3 }, indice.buscar("e*", EstadoTarea.COMPLETADA, null, null, 10));
+        assertArrayEquals(new int[] { 1 }, indice.buscar("corregir", null, Prioridad.NORMAL, null, 10));
+        assertArrayEquals(new int[] { 4 }, indice.buscar("a*", EstadoTarea.ACTIVA, Prioridad.URGENTE, TipoUsuario.ESTUDIANTE, 10));
+    }
+
+    @Test
+    void deberiaActualizarseAlCambiarQuitarYDepurar() {
+        indice.cambiarDescripcion(1, "Preparar clase");
+        indice.cambiarEstado(2, EstadoTarea.COMPLETADA);
+        assertTrue(indice.quitar(4));
+        assertFalse(indice.quitar(4));
+
+        assertArrayEquals(new int[] { 2 }, indice.buscar("corregir", null, null, null, 10));
+        assertArrayEquals(new int[] { 1 }, indice.buscar("clase", null, null, null, 10));
+        assertArrayEquals(new int[0], indice.buscar("matricula", null, null, null, 10));
+        assertArrayEquals(new int[] { 2 }, indice.buscar("corregir", EstadoTarea.COMPLETADA, null, null, 10));
+
+        // Suficientes cambios para forzar la depuración de entradas obsoletas
+        for (int i = 0; i < 3000; i++) {
+            indice.cambiarDescripcion(3, i % 2 == 0 ? "Repasar tema " + i : "Estudiar para el examen");
+        }
+        assertEquals(3, indice.size());
+        assertArrayEquals(new int[] { 3 }, indice.buscar("examen", null, null, null, 10));
+        assertArrayEquals(new int[] { 1, 2 }, indice.buscar("corregir OR clase", null, null, null, 10));
+    }
+
+    @Test
+    void usuarioVinculadoDeberiaMantenerElIndice() {
+        GestorTareasServicio gestor = new GestorTareasServicio();
+        Usuario ana = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
+        Tarea t1 = gestor.crearTarea("Revisión de notas", Prioridad.NORMAL);
+        Tarea t2 = gestor.crearTarea("Reunión de departamento", Prioridad.URGENTE);
+        gestor.agregarTareaAUsuario(ana.getId(), t1);
+        gestor.agregarTareaAUsuario(ana.getId(), t2);
+
+        assertEquals(List.of(t2, t1), gestor.buscarTareas("re*", null, null, null, 10));
+
+        t1.setDescripcion("Publicar calificaciones");
+        gestor.marcarTareaComoCompletada(ana.getId(), t2.getId());
+        assertEquals(List.of(t1), gestor.buscarTareas("calificaciones", null, null, TipoUsuario.PROFESOR, 10));
+        assertEquals(List.of(t2), gestor.buscarTareas("reunion", EstadoTarea.COMPLETADA, null, null, 10));
+        assertEquals(List.of(), gestor.buscarTareas("revision", null, null, null, 10));
+
+        gestor.eliminarTareaDeUsuario(ana.getId(), t2.getId());
+        assertEquals(List.of(), gestor.buscarTareas("reunion", null, null, null, 10));
+    }
+
+    @Test
+    void gestorColumnarDeberiaBuscarTareas() throws Exception {
+        try (GestorTareasColumnar gestor = new GestorTareasColumnar()) {
+            Usuario vale = gestor.crearUsuario("Vale", TipoUsuario.ESTUDIANTE);
+            Tarea tarea = gestor.crearTarea("Entregar práctica", Prioridad.URGENTE);
+            gestor.agregarTareaAUsuario(vale.getId(), tarea);
+
+            assertEquals(List.of(tarea), gestor.buscarTareas("practica", null, null, null, 5));
+            gestor.marcarTareaComoCompletada(vale.getId(), tarea.getId());
+            assertEquals(List.of(), gestor.buscarTareas("practica", EstadoTarea.ACTIVA, null, null, 5));
+            gestor.eliminarTareaDeUsuario(vale.getId(), tarea.getId());
+            assertEquals(List.of(), gestor.buscarTareas("practica", null, null, null, 5));
+        }
+    }
+
+}
@@ -0,0 +1,168 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import interfaces.Accionable;
+import modelo.EstadoTarea;
+import modelo.FormatoIntercambio;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import servicio.GestorTareasColumnar;
+import servicio.GestorTareasConcurrente;
+import servicio.GestorTareasPersistente;
+import servicio.GestorTareasServicio;
+import servicio.PoliticaSincronizacion;
+
+/**
+ * Pruebas de la carga masiva: reserva de ids, importación y exportación.
+ */
+class IntercambioTest {
+
+    @TempDir
+    Path directorio;
+
+    private static final String CSV =
+            "usuario,10,PROFESOR,Ana\n"
+            + "usuario,20,ESTUDIANTE,\"Pérez, Valentína\"\n"
+            + "tarea,10,1,URGENTE,ACTIVA,Preparar clase\n"
+            + "tarea,10,2,NORMAL,COMPLETADA,\"Corregir \"\"parcial\"\"\"\n"
+            + "\r\n"
+            + "tarea,20,3,NORMAL,ACTIVA,\"Estudiar\r\nen grupo\"\r\n";
+
+    @Test
+    void reservarIdsNoDeberiaRepetirIdentificadores() {
+        GestorTareasServicio gestor = new GestorTareasServicio();
+        gestor.crearTarea("Antes", Prioridad.NORMAL);
+
+        int primero = gestor.reservarIdsTareas(100);
+
+        assertEquals(2, primero);
+        assertEquals(102, gestor.crearTarea("Después", Prioridad.NORMAL).getId());
+        assertEquals(103, gestor.reservarIdsTareas(0));
+        assertThrows(IllegalArgumentException.class, () -> gestor.reservarIdsTareas(-1));
+        assertThrows(IllegalArgumentException.class, () -> gestor.reservarIdsTareas(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void agregarTareasAUsuarioDeberiaAsignarYEncolar() {
+        GestorTareasServicio gestor = new GestorTareasServicio();
+        Usuario ana = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
+        List<Tarea> tareas = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            tareas.add(gestor.crearTarea("Tarea " + i, i == 7 ? Prioridad.URGENTE : Prioridad.NORMAL));
+        }
+
+        gestor.agregarTareasAUsuario(ana.getId(), tareas);
+
+        assertEquals(tareas, gestor.listarTareasDeUsuario(ana.getId()));
+        assertEquals(20, gestor.contarTareas().total());
+        assertSame(tareas.get(7), gestor.verSiguienteTarea());
+        assertThrows(IllegalArgumentException.class, () -> gestor.agregarTareasAUsuario(999, tareas));
+    }
+
+    @Test
+    void deberiaImportarCsvConIdsNuevos() throws IOException {
+        GestorTareasServicio gestor = new GestorTareasServicio();
+        gestor.crearUsuario("Existente", TipoUsuario.TRABAJADOR);
+
+        int importadas = gestor.importar(new StringReader(CSV), FormatoIntercambio.CSV);
+
+        assertEquals(3, importadas);
+        List<Usuario> usuarios = gestor.listarUsuarios();
+        assertEquals(3, usuarios.size());
+        Usuario ana = usuarios.get(1);
+        Usuario vale = usuarios.get(2);
+        assertEquals("Ana", ana.getNombre());
+        assertEquals("Pérez, Valentína", vale.getNombre());
+        assertEquals(TipoUsuario.ESTUDIANTE, vale.getTipo());
+
+        List<Tarea> deAna = gestor.listarTareasDeUsuario(ana.getId());
+        assertEquals(2, deAna.size());
+        assertEquals("Corregir \"parcial\"", deAna.get(1).getDescripcion());
+        assertEquals(EstadoTarea.COMPLETADA, deAna.get(1).getEstado());
+        assertEquals(deAna.get(0).getId() + 1, deAna.get(1).getId());
+        assertEquals("Estudiar\r\nen grupo", gestor.listarTareasDeUsuario(vale.getId()).get(0).getDescripcion());
+        assertEquals(1, gestor.contarTareas().contar(EstadoTarea.COMPLETADA));
+        assertEquals("Preparar clase", gestor.verSiguienteTarea().getDescripcion());
+    }
+
+    @Test
+    void deberiaImportarTareasDeUsuariosExistentes() throws IOException {
+        GestorTareasServicio gestor = new GestorTareasServicio();
+        Usuario ana = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
+        String entrada = "{\"registro\":\"tarea\",\"usuario\":" + ana.getId()
+                + ",\"prioridad\":\"NORMAL\",\"estado\":\"ACTIVA\",\"descripcion\":\"Reuni\\u00f3n\"}\n";
+
+        assertEquals(1, gestor.importar(new StringReader(entrada), FormatoIntercambio.JSON_LINES));
+        assertEquals("Reunión", gestor.listarTareasDeUsuario(ana.getId()).get(0).getDescripcion());
+    }
+
+    @Test
+    void deberiaInformarLineaDelError() {
+        GestorTareasServicio gestor = new GestorTareasServicio();
+        String entrada = "usuario,1,PROFESOR,Ana\ntarea,1,1,ALTA,ACTIVA,Algo\n";
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> gestor.importar(new StringReader(entrada), FormatoIntercambio.CSV));
+        assertTrue(error.getMessage().startsWith("Línea 2:"), error.getMessage());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> gestor.importar(new StringReader("tarea,99,1,NORMAL,ACTIVA,Algo\n"), FormatoIntercambio.CSV));
+        assertThrows(IllegalArgumentException.class,
+                () -> gestor.importar(new StringReader("usuario,1,PROFESOR\n"), FormatoIntercambio.CSV));
+        assertThrows(IllegalArgumentException.class,
+                () -> gestor.importar(new StringReader("{\"registro\":\"usuario\",\"id\":1}\n"), FormatoIntercambio.JSON_LINES));
+    }
+
+    @Test
+    void exportarEImportarDeberiaConservarElContenido() throws IOException {
+        for (FormatoIntercambio formato : FormatoIntercambio.values()) {
+            List<Accionable> gestores = List.of(new GestorTareasServicio(), new GestorTareasConcurrente(),
+                    new GestorTareasColumnar());
+            for (Accionable origen : gestores) {
+                origen.importar(new StringReader(CSV), FormatoIntercambio.CSV);
+
+                StringWriter exportado = new StringWriter();
+                origen.exportar(exportado, formato);
+
+                GestorTareasServicio copia = new GestorTareasServicio();
+                copia.importar(new StringReader(exportado.toString()), formato);
+
+                StringWriter reexportado = new StringWriter();
+                copia.exportar(reexportado, formato);
+                assertEquals(exportado.toString(), reexportado.toString(), formato + " " + origen.getClass());
+            }
+        }
+    }
+
+    @Test
+    void gestorPersistenteDeberiaRecuperarLaImportacion() throws IOException {
+        String exportado;
+        try (GestorTareasPersistente gestor = new GestorTareasPersistente(directorio, PoliticaSincronizacion.POR_LOTES)) {
+            gestor.importar(new StringReader(CSV), FormatoIntercambio.CSV);
+            StringWriter salida = new StringWriter();
+            gestor.exportar(salida, FormatoIntercambio.CSV);
+            exportado = salida.toString();
+        }
+
+        try (GestorTareasPersistente gestor = new GestorTareasPersistente(directorio, PoliticaSincronizacion.POR_LOTES)) {
+            StringWriter salida = new StringWriter();
+            gestor.exportar(salida, FormatoIntercambio.CSV);
+            assertEquals(exportado, salida.toString());
+            assertEquals(4, gestor.crearTarea("Nueva", Prioridad.NORMAL).getId());
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import util.MapaEnteros;
+
+class MapaEnterosTest {
+
+	@Test
+	void getDeberiaRetornarNoEncontradoSiNoExiste() {
+	    MapaEnteros mapa = new MapaEnteros();
+	    assertEquals(MapaEnteros.NO_ENCONTRADO, mapa.get(5));
+	}
+
+	@Test
+	void putDeberiaReemplazarValorExistente() {
+	    MapaEnteros mapa = new MapaEnteros();
+	    mapa.put(1, 10);
+	    mapa.put(1, 20);
+
+	    assertEquals(1, mapa.size());
+	    assertEquals(20, mapa.get(1));
+	}
+
+	@Test
+	void deberiaConservarEntradasTrasRedimensionarYEliminar() {
+	    MapaEnteros mapa = new MapaEnteros();
+	    for (int i = 1; i <= 10_000; i++) {
+	        mapa.put(i, i * 2);
+	    }
+	    for (int i = 1; i <= 10_000; i += 2) {
+	        assertEquals(i * 2, mapa.remove(i));
+	    }
+
+	    assertEquals(5_000, mapa.size());
+	    for (int i = 1; i <= 10_000; i++) {
+	        assertEquals(i % 2 == 0 ? i * 2 : MapaEnteros.NO_ENCONTRADO, mapa.get(i));
+	    }
+	}
+
+	@Test
+	void putDeberiaLanzarExcepcionConValorReservado() {
+	    MapaEnteros mapa = new MapaEnteros();
+	    assertThrows(IllegalArgumentException.class, () -> {
+	        mapa.put(1, MapaEnteros.NO_ENCONTRADO);
+	    });
+	}
+
+	@Test
+	void capacidadMayorQueLaMaximaDeberiaLanzarExcepcion() {
+	    // Antes el cálculo desbordaba y el bucle no terminaba
+	    assertThrows(IllegalArgumentException.class, () -> new MapaEnteros(900_000_000));
+	    assertThrows(IllegalArgumentException.class, () -> new MapaEnteros().asegurarCapacidad(Integer.MAX_VALUE));
+	}
+
+}
@@ -0,0 +1,138 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+import main.ModoLote;
+import modelo.EstadoTarea;
+import modelo.Prioridad;
+import modelo.TipoUsuario;
+import servicio.GestorTareasServicio;
+
+/**
+ * Pruebas del modo por lotes de la consola.
+ */
+class ModoLoteTest {
+
+    private static String ejecutar(GestorTareasServicio gestor, String ordenes) throws IOException {
+        StringWriter salida = new StringWriter();
+        ModoLote.ejecutar(gestor, new StringReader(ordenes), salida);
+        return salida.toString().replace(System.lineSeparator(), "\n");
+    }
+
+    @Test
+    void deberiaEjecutarLasOrdenesYDarUnResultadoPorOrden() throws IOException {
+        GestorTareasServicio gestor = new GestorTareasServicio();
+        String ordenes = "# Alta de usuarios\n"
+                + "usuario PROFESOR   Ana Pérez  \n"
+                + "usuario\tESTUDIANTE\tLuis\r\n"
+                + "\n"
+                + "tarea 1 URGENTE Corregir examen, grupo B\n"
+                + "tarea 2 NORMAL Estudiar\n"
+                + "completar 1 1\n"
+                + "completar 1 9\n"
+                + "usuarios\n"
+                + "tareas 1\n"
+                + "tareas-tipo ESTUDIANTE\n"
+                + "eliminar 2 2\n"
+                + "usuarios-tipo ESTUDIANTE";
+
+        assertEquals("ok 1\n"
+                + "ok 2\n"
+                + "ok 1\n"
+                + "ok 2\n"
+                + "ok\n"
+                + "no\n"
+                + "usuario 1 PROFESOR 1 Ana Pérez\n"
+                + "usuario 2 ESTUDIANTE 1 Luis\n"
+                + "ok 2\n"
+                + "tarea 1 URGENTE COMPLETADA Corregir examen, grupo B\n"
+                + "ok 1\n"
+                + "tarea 2 NORMAL ACTIVA Estudiar\n"
+                + "ok 1\n"
+                + "ok\n"
+                + "usuario 2 ESTUDIANTE 0 Luis\n"
+                + "ok 1\n", ejecutar(gestor, ordenes));
+        assertEquals(1, gestor.contarTareas().contar(EstadoTarea.COMPLETADA));
+    }
+
+    @Test
+    void deberiaInformarLosErroresSinDetenerElLote() throws IOException {
+        GestorTareasServicio gestor = new GestorTareasServicio();
+        String ordenes = "usuario DIRECTOR Ana\n"
+                + "usuario PROFESOR\n"
+                + "tarea 7 NORMAL Sin usuario\n"
+                + "completar 1\n"
+                + "completar 1 x\n"
+                + "usuarios de más\n"
+                + "tareas 99\n"
+                + "saludar\n"
+                + "usuario TRABAJADOR Eva\n";
+        StringWriter salida = new StringWriter();
+
+        assertEquals(8, ModoLote.ejecutar(gestor, new StringReader(ordenes), salida));
+        String[] lineas = salida.toString().split(System.lineSeparator());
+        assertEquals(9, lineas.length);
+        for (int i = 0; i < 8; i++) {
+            assertTrue(lineas[i].startsWith("error " + (i + 1) + " "), lineas[i]);
+        }
+        assertEquals("ok 1", lineas[8]);
+        // La tarea sin usuario no consume un id
+        assertEquals(1, gestor.crearTarea("Primera", Prioridad.NORMAL).getId());
+        assertThrows(IllegalArgumentException.class, () -> ModoLote.ejecutar(gestor, null, salida));
+    }
+
+    @Test
+    void deberiaProcesarLotesGrandesConLineasLargas() throws IOException {
+        GestorTareasServicio gestor = new GestorTareasServicio();
+        int usuarios = 1_000;
+        int tareasPorUsuario = 200;
+        String larga = "x".repeat(100_000);
+
+        // Genera las órdenes al vuelo para no guardar el lote entero en memoria
+        Reader ordenes = new Reader() {
+            private final StringBuilder pendiente = new StringBuilder();
+            private int usuario;
+            private int tarea;
+
+            @Override
+            public int read(char[] destino, int desde, int cantidad) {
+                while (pendiente.length() < cantidad && usuario < usuarios) {
+                    if (tarea == 0) {
+                        pendiente.append("usuario TRABAJADOR Usuario ").append(usuario).append('\n');
+                    }
+                    pendiente.append("tarea ").append(usuario + 1).append(" NORMAL ")
+                            .append(usuario == 0 && tarea == 0 ? larga : "Tarea").append('\n');
+                    if (++tarea == tareasPorUsuario) {
+                        tarea = 0;
+                        usuario++;
+                    }
+                }
+                if (pendiente.length() == 0) {
+                    return -1;
+                }
+                int copiados = Math.min(cantidad, pendiente.length());
+                pendiente.getChars(0, copiados, destino, desde);
+                pendiente.delete(0, copiados);
+                return copiados;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        StringWriter salida = new StringWriter();
+        assertEquals(0, ModoLote.ejecutar(gestor, ordenes, salida));
+        assertEquals(usuarios * tareasPorUsuario, gestor.contarTareas().total());
+        assertEquals(usuarios, gestor.listarUsuariosPorTipo(TipoUsuario.TRABAJADOR).size());
+        assertEquals(larga, gestor.listarTareasDeUsuario(1).get(0).getDescripcion());
+    }
+
+}
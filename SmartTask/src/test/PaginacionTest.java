@@ -0,0 +1,169 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import interfaces.Accionable;
+import modelo.Pagina;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import servicio.GestorTareasColumnar;
+import servicio.GestorTareasConcurrente;
+import servicio.GestorTareasPersistente;
+import servicio.GestorTareasServicio;
+import servicio.PoliticaSincronizacion;
+
+/**
+ * Pruebas de los listados paginados y los recorridos por stream en todas
+ * las implementaciones.
+ */
+class PaginacionTest {
+
+    @TempDir
+    Path directorio;
+
+    private List<Accionable> gestores() throws IOException {
+        return List.of(new GestorTareasServicio(), new GestorTareasConcurrente(), new GestorTareasColumnar(),
+                new GestorTareasPersistente(directorio, PoliticaSincronizacion.POR_LOTES));
+    }
+
+    /**
+     * Crea siete usuarios alternando tipos y tres tareas para cada uno.
+     */
+    private static void poblar(Accionable gestor) {
+        TipoUsuario[] tipos = { TipoUsuario.PROFESOR, TipoUsuario.ESTUDIANTE };
+        for (int i = 0; i < 7; i++) {
+            Usuario usuario = gestor.crearUsuario("Usuario " + i, tipos[i % 2]);
+            for (int j = 0; j < 3; j++) {
+                gestor.agregarTareaAUsuario(usuario.getId(), gestor.crearTarea("Tarea " + i + "." + j, Prioridad.NORMAL));
+            }
+        }
+    }
+
+    private static List<Integer> ids(List<? extends Object> elementos) {
+        List<Integer> ids = new ArrayList<>();
+        for (Object elemento : elementos) {
+            ids.add(elemento instanceof Usuario u ? u.getId() : ((Tarea) elemento).getId());
+        }
+        return ids;
+    }
+
+    @Test
+    void deberiaRecorrerUsuariosPorPaginas() throws IOException {
+        for (Accionable gestor : gestores()) {
+            poblar(gestor);
+
+            List<Usuario> vistos = new ArrayList<>();
+            long cursor = Pagina.INICIO;
+            int paginas = 0;
+            while (cursor != Pagina.FIN) {
+                Pagina<Usuario> pagina = gestor.listarUsuarios(cursor, 3);
+                assertTrue(pagina.getElementos().size() <= 3);
+                vistos.addAll(pagina.getElementos());
+                cursor = pagina.getSiguiente();
+                paginas++;
+            }
+
+            assertEquals(ids(gestor.listarUsuarios()), ids(vistos), gestor.getClass().getSimpleName());
+            assertEquals(3, paginas);
+            assertTrue(gestor.listarUsuarios(Pagina.FIN, 3).esUltima());
+        }
+    }
+
+    @Test
+    void paginaLlenaPuedeIrSeguidaDeUnaVacia() throws IOException {
+        for (Accionable gestor : gestores()) {
+            poblar(gestor);
+
+            Pagina<Usuario> primera = gestor.listarUsuarios(Pagina.INICIO, 7);
+            assertFalse(primera.esUltima());
+
+            Pagina<Usuario> segunda = gestor.listarUsuarios(primera.getSiguiente(), 7);
+            assertTrue(segunda.getElementos().isEmpty());
+            assertTrue(segunda.esUltima());
+        }
+    }
+
+    @Test
+    void deberiaPaginarTareasDeUsuarioEstableAnteCambios() throws IOException {
+        for (Accionable gestor : gestores()) {
+            Usuario ana = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
+            List<Tarea> tareas = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                tareas.add(gestor.crearTarea("Tarea " + i, Prioridad.NORMAL));
+            }
+            // Se agregan desordenadas para comprobar el orden por id
+            for (int i = tareas.size() - 1; i >= 0; i--) {
+                gestor.agregarTareaAUsuario(ana.getId(), tareas.get(i));
+            }
+
+            Pagina<Tarea> primera = gestor.listarTareasDeUsuario(ana.getId(), Pagina.INICIO, 2);
+            assertEquals(ids(tareas.subList(0, 2)), ids(primera.getElementos()));
+
+            // Los cambios anteriores al cursor no desplazan las páginas siguientes
+            gestor.eliminarTareaDeUsuario(ana.getId(), tareas.get(0).getId());
+            gestor.eliminarTareaDeUsuario(ana.getId(), tareas.get(3).getId());
+            Tarea nueva = gestor.crearTarea("Nueva", Prioridad.URGENTE);
+            gestor.agregarTareaAUsuario(ana.getId(), nueva);
+
+            Pagina<Tarea> segunda = gestor.listarTareasDeUsuario(ana.getId(), primera.getSiguiente(), 3);
+            assertEquals(List.of(tareas.get(2).getId(), tareas.get(4).getId(), tareas.get(5).getId()),
+                    ids(segunda.getElementos()), gestor.getClass().getSimpleName());
+
+            Pagina<Tarea> tercera = gestor.listarTareasDeUsuario(ana.getId(), segunda.getSiguiente(), 3);
+            assertEquals(List.of(nueva.getId()), ids(tercera.getElementos()));
+            assertTrue(tercera.esUltima());
+
+            assertNull(gestor.listarTareasDeUsuario(999, Pagina.INICIO, 2));
+            assertThrows(IllegalArgumentException.class, () -> gestor.listarTareasDeUsuario(ana.getId(), Pagina.INICIO, 0));
+            assertThrows(IllegalArgumentException.class, () -> gestor.listarUsuarios(-2, 5));
+        }
+    }
+
+    @Test
+    void deberiaPaginarTareasPorTipoUsuario() throws IOException {
+        for (Accionable gestor : gestores()) {
+            poblar(gestor);
+
+            for (TipoUsuario tipo : TipoUsuario.values()) {
+                List<Tarea> vistas = new ArrayList<>();
+                long cursor = Pagina.INICIO;
+                while (cursor != Pagina.FIN) {
+                    Pagina<Tarea> pagina = gestor.listarTareasPorTipoUsuario(tipo, cursor, 2);
+                    vistas.addAll(pagina.getElementos());
+                    cursor = pagina.getSiguiente();
+                }
+                assertEquals(ids(gestor.listarTareasPorTipoUsuario(tipo)), ids(vistas),
+                        tipo + " " + gestor.getClass().getSimpleName());
+            }
+        }
+    }
+
+    @Test
+    void recorridosDeberianEntregarTodosLosElementos() throws IOException {
+        for (Accionable gestor : gestores()) {
+            Usuario ana = gestor.crearUsuario("Ana", TipoUsuario.TRABAJADOR);
+            for (int i = 0; i < 2500; i++) {
+                gestor.agregarTareaAUsuario(ana.getId(), gestor.crearTarea("Tarea " + i, Prioridad.NORMAL));
+            }
+            gestor.crearUsuario("Vale", TipoUsuario.ESTUDIANTE);
+
+            assertEquals(ids(gestor.listarUsuarios()), gestor.recorrerUsuarios().map(Usuario::getId).collect(Collectors.toList()));
+            assertEquals(ids(gestor.listarTareasPorTipoUsuario(TipoUsuario.TRABAJADOR)),
+                    gestor.recorrerTareasPorTipoUsuario(TipoUsuario.TRABAJADOR).map(Tarea::getId).collect(Collectors.toList()));
+            assertEquals(10, gestor.recorrerTareasPorTipoUsuario(TipoUsuario.TRABAJADOR).limit(10).count());
+            assertEquals(0, gestor.recorrerTareasPorTipoUsuario(TipoUsuario.PROFESOR).count());
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import servicio.GestorTareasServicio;
+
+/**
+ * Pruebas de la cola de trabajo expuesta por GestorTareasServicio.
+ */
+class PlanificadorTareasTest {
+
+    private GestorTareasServicio gestor;
+    private Usuario ana;
+    private Usuario vale;
+
+    @BeforeEach
+    void setUp() {
+        gestor = new GestorTareasServicio();
+        ana = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
+        vale = gestor.crearUsuario("Vale", TipoUsuario.ESTUDIANTE);
+    }
+
+    private Tarea agregar(Usuario usuario, String descripcion, Prioridad prioridad) {
+        Tarea tarea = gestor.crearTarea(descripcion, prioridad);
+        gestor.agregarTareaAUsuario(usuario.getId(), tarea);
+        return tarea;
+    }
+
+    @Test
+    void deberiaEntregarUrgentesPrimeroYLuegoPorOrdenDeCreacion() {
+        Tarea t1 = agregar(ana, "Leer", Prioridad.NORMAL);
+        Tarea t2 = agregar(vale, "Pagar", Prioridad.URGENTE);
+        Tarea t3 = agregar(ana, "Llamar", Prioridad.URGENTE);
+        Tarea t4 = agregar(vale, "Estudiar", Prioridad.NORMAL);
+
+        assertSame(t2, gestor.verSiguienteTarea());
+        assertSame(t2, gestor.tomarSiguienteTarea());
+        assertSame(t3, gestor.tomarSiguienteTarea());
+        assertSame(t1, gestor.tomarSiguienteTarea());
+        assertSame(t4, gestor.tomarSiguienteTarea());
+        assertNull(gestor.tomarSiguienteTarea());
+    }
+
+    @Test
+    void noDeberiaEntregarTareasCompletadasNiEliminadas() {
+        Tarea t1 = agregar(ana, "Pagar", Prioridad.URGENTE);
+        Tarea t2 = agregar(ana, "Llamar", Prioridad.URGENTE);
+        Tarea t3 = agregar(ana, "Leer", Prioridad.NORMAL);
+
+        gestor.marcarTareaComoCompletada(ana.getId(), t1.getId());
+        gestor.eliminarTareaDeUsuario(ana.getId(), t2.getId());
+
+        assertSame(t3, gestor.tomarSiguienteTarea(ana.getId()));
+        assertNull(gestor.verSiguienteTarea());
+    }
+
+    @Test
+    void deberiaSepararColasPorUsuario() {
+        Tarea t1 = agregar(ana, "Pagar", Prioridad.URGENTE);
+        Tarea t2 = agregar(vale, "Leer", Prioridad.NORMAL);
+
+        assertSame(t2, gestor.tomarSiguienteTarea(vale.getId()));
+        assertNull(gestor.verSiguienteTarea(vale.getId()));
+        assertSame(t1, gestor.verSiguienteTarea());
+    }
+
+    @Test
+    void liberarDeberiaDevolverTareaReclamadaALaCola() {
+        Tarea t1 = agregar(ana, "Pagar", Prioridad.URGENTE);
+
+        assertSame(t1, gestor.tomarSiguienteTarea());
+        assertNull(gestor.verSiguienteTarea());
+        assertTrue(gestor.liberarTarea(t1.getId()));
+        assertSame(t1, gestor.verSiguienteTarea(ana.getId()));
+        assertFalse(gestor.liberarTarea(t1.getId()));
+    }
+
+    @Test
+    void deberiaDescartarMuchasTareasObsoletas() {
+        for (int i = 0; i < 1_000; i++) {
+            Tarea tarea = agregar(ana, "Tarea " + i, Prioridad.URGENTE);
+            gestor.marcarTareaComoCompletada(ana.getId(), tarea.getId());
+        }
+        Tarea ultima = agregar(vale, "Leer", Prioridad.NORMAL);
+
+        assertSame(ultima, gestor.tomarSiguienteTarea());
+        assertNull(gestor.tomarSiguienteTarea());
+    }
+
+}
@@ -0,0 +1,137 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import servicio.RuedaTemporizadores;
+
+/**
+ * Pruebas de la rueda jerárquica de temporizadores.
+ */
+class RuedaTemporizadoresTest {
+
+    @Test
+    void deberiaDispararCadaTemporizadorUnaVezYNuncaAntesDeTiempo() {
+        Random azar = new Random(42);
+        RuedaTemporizadores rueda = new RuedaTemporizadores(10, 1_000);
+
+        // Instantes repartidos por todos los niveles de la rueda
+        Map<Long, Long> pendientes = new HashMap<>();
+        List<Integer> temporizadores = new ArrayList<>();
+        for (long dato = 0; dato < 20_000; dato++) {
+            long instante = 1_000 + (long) Math.pow(10, 1 + azar.nextDouble() * 8);
+            pendientes.put(dato, instante);
+            temporizadores.add(rueda.programar(instante, dato));
+        }
+        for (int i = 0; i < temporizadores.size(); i += 3) {
+            assertTrue(rueda.cancelar(temporizadores.get(i)));
+            assertFalse(rueda.cancelar(temporizadores.get(i)));
+            pendientes.remove((long) i);
+        }
+        assertEquals(pendientes.size(), rueda.size());
+
+        long[] anterior = { 0 };
+        long ahora = 1_000;
+        while (!pendientes.isEmpty()) {
+            ahora += 1 + (long) Math.pow(10, azar.nextDouble() * 7);
+            long limite = ahora;
+            rueda.avanzar(ahora, (instante, dato) -> {
+                assertEquals(pendientes.remove(dato), instante);
+                assertTrue(instante <= limite);
+                // Como mucho un tick de retraso respecto al avance anterior
+                assertTrue(instante > anterior[0] - 10);
+            });
+            anterior[0] = ahora;
+        }
+        assertEquals(0, rueda.size());
+    }
+
+    @Test
+    void deberiaDispararEnOrdenDeTick() {
+        RuedaTemporizadores rueda = new RuedaTemporizadores(1, 0);
+        for (long instante : new long[] { 5_000, 70, 300_000, 4_096, 1 }) {
+            rueda.programar(instante, instante);
+        }
+
+        List<Long> disparados = new ArrayList<>();
+        assertEquals(5, rueda.avanzar(1_000_000, (instante, dato) -> disparados.add(dato)));
+        assertEquals(List.of(1L, 70L, 4_096L, 5_000L, 300_000L), disparados);
+    }
+
+    @Test
+    void deberiaAdmitirInstantesPasadosYMasAllaDelAlcance() {
+        RuedaTemporizadores rueda = new RuedaTemporizadores(1, 0);
+        assertEquals(0, rueda.avanzar(500, (instante, dato) -> fail()));
+
+        long lejano = 1L << 40;
+        rueda.programar(lejano, 1);
+        rueda.programar(100, 2);
+
+        List<Long> disparados = new ArrayList<>();
+        assertEquals(1, rueda.avanzar(501, (instante, dato) -> disparados.add(dato)));
+        assertEquals(0, rueda.avanzar(lejano - 1, (instante, dato) -> fail()));
+        assertEquals(1, rueda.avanzar(lejano, (instante, dato) -> disparados.add(dato)));
+        assertEquals(List.of(2L, 1L), disparados);
+    }
+
+    @Test
+    void deberiaPermitirProgramarYCancelarDesdeElDisparo() {
+        RuedaTemporizadores rueda = new RuedaTemporizadores(1, 0);
+        int segundo = rueda.programar(64, 2);
+        rueda.programar(64, 1);
+
+        List<Long> disparados = new ArrayList<>();
+        rueda.avanzar(200, (instante, dato) -> {
+            disparados.add(dato);
+            if (dato == 1) {
+                rueda.cancelar(segundo);
+                // Cae en el mismo índice de ranura, pero una vuelta después
+                rueda.programar(128, 3);
+            }
+        });
+        assertEquals(List.of(1L, 3L), disparados);
+    }
+
+    @Test
+    void deberiaProgramarYCancelarMillonesDeTemporizadores() {
+        RuedaTemporizadores rueda = new RuedaTemporizadores(100, 0);
+        int cantidad = 2_000_000;
+        int[] temporizadores = new int[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            temporizadores[i] = rueda.programar(1_000L * (i % 100_000), i);
+        }
+        assertEquals(cantidad, rueda.size());
+
+        for (int i = 0; i < cantidad; i += 2) {
+            rueda.cancelar(temporizadores[i]);
+        }
+        int[] disparados = { 0 };
+        assertEquals(cantidad / 2, rueda.avanzar(Long.MAX_VALUE / 2, (instante, dato) -> {
+            assertEquals(1, dato % 2);
+            disparados[0]++;
+        }));
+        assertEquals(cantidad / 2, disparados[0]);
+    }
+
+    @Test
+    void deberiaValidarLosArgumentos() {
+        assertThrows(IllegalArgumentException.class, () -> new RuedaTemporizadores(0, 0));
+
+        RuedaTemporizadores rueda = new RuedaTemporizadores(1, 0);
+        int temporizador = rueda.programar(10, 7);
+        assertEquals(10, rueda.getInstante(temporizador));
+        assertEquals(7, rueda.getDato(temporizador));
+        assertTrue(rueda.cancelar(temporizador));
+        assertFalse(rueda.pendiente(temporizador));
+        assertFalse(rueda.cancelar(-1));
+        assertThrows(IllegalArgumentException.class, () -> rueda.getInstante(temporizador));
+    }
+
+}
@@ -0,0 +1,265 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import modelo.EstadoTarea;
+import modelo.TipoUsuario;
+import servicio.GestorTareasConcurrente;
+import servicio.GestorTareasMedido;
+import servidor.ServidorHttp;
+
+/**
+ * Pruebas de la API HTTP.
+ */
+class ServidorHttpTest {
+
+    private GestorTareasConcurrente gestor;
+    private ServidorHttp servidor;
+    private HttpClient cliente;
+
+    @BeforeEach
+    void iniciar() throws IOException {
+        gestor = new GestorTareasConcurrente();
+        servidor = new ServidorHttp(gestor, new InetSocketAddress("127.0.0.1", 0));
+        cliente = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void detener() {
+        cliente.close();
+        servidor.close();
+    }
+
+    private HttpResponse<String> enviar(String metodo, String ruta, String cuerpo) throws IOException, InterruptedException {
+        HttpRequest peticion = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + servidor.getPuerto() + ruta))
+                .method(metodo, cuerpo == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(cuerpo))
+                .build();
+        return cliente.send(peticion, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void deberiaCrearYConsultarUsuariosYTareas() throws IOException, InterruptedException {
+        HttpResponse<String> usuario = enviar("POST", "/usuarios", "{\"nombre\": \"Ana \\\"la\\\" Pérez\", \"tipo\": \"PROFESOR\"}");
+        assertEquals(201, usuario.statusCode());
+        assertEquals("{\"id\":1,\"tipo\":\"PROFESOR\",\"nombre\":\"Ana \\\"la\\\" Pérez\",\"tareas\":0}", usuario.body());
+        assertEquals(201, enviar("POST", "/usuarios", "{\"nombre\":\"Luis\",\"tipo\":\"ESTUDIANTE\"}").statusCode());
+
+        HttpResponse<String> tarea = enviar("POST", "/usuarios/1/tareas", "{\"descripcion\":\"Corregir\",\"prioridad\":\"URGENTE\"}");
+        assertEquals(201, tarea.statusCode());
+        assertTrue(tarea.body().startsWith("{\"id\":1,\"prioridad\":\"URGENTE\",\"estado\":\"ACTIVA\",\"descripcion\":\"Corregir\""), tarea.body());
+        assertEquals(201, enviar("POST", "/usuarios/2/tareas", "{\"descripcion\":\"Estudiar\",\"prioridad\":\"NORMAL\"}").statusCode());
+
+        assertTrue(enviar("GET", "/usuarios/1", null).body().endsWith("\"tareas\":1}"));
+        assertEquals(1, cuenta(enviar("GET", "/usuarios?tipo=ESTUDIANTE", null).body(), "\"id\""));
+        assertEquals(2, cuenta(enviar("GET", "/usuarios", null).body(), "\"id\""));
+        assertEquals(1, cuenta(enviar("GET", "/tareas?tipo=PROFESOR", null).body(), "Corregir"));
+        assertEquals(1, cuenta(enviar("GET", "/tareas/buscar?q=estud*", null).body(), "Estudiar"));
+        assertEquals(1, cuenta(enviar("GET", "/usuarios/2/tareas?prioridad=NORMAL", null).body(), "\"id\""));
+
+        assertEquals(204, enviar("POST", "/usuarios/1/tareas/1/completar", null).statusCode());
+        assertEquals(404, enviar("POST", "/usuarios/1/tareas/2/completar", null).statusCode());
+        assertEquals(1, cuenta(enviar("GET", "/usuarios/1/tareas?estado=COMPLETADA", null).body(), "\"id\""));
+        assertEquals(1, gestor.contarTareas().contar(EstadoTarea.COMPLETADA));
+        assertEquals("{\"total\":2,\"activas\":1,\"completadas\":1,\"normales\":1,\"urgentes\":1}",
+                enviar("GET", "/estadisticas", null).body());
+
+        assertEquals(204, enviar("DELETE", "/usuarios/2/tareas/2", null).statusCode());
+        assertEquals(404, enviar("DELETE", "/usuarios/2/tareas/2", null).statusCode());
+    }
+
+    @Test
+    void deberiaPublicarLasMetricasSiElGestorEstaMedido() throws IOException, InterruptedException {
+        assertEquals(404, enviar("GET", "/metricas", null).statusCode());
+
+        try (ServidorHttp medido = new ServidorHttp(new GestorTareasMedido(gestor), new InetSocketAddress("127.0.0.1", 0))) {
+            URI base = URI.create("http://127.0.0.1:" + medido.getPuerto());
+            cliente.send(HttpRequest.newBuilder(base.resolve("/usuarios/1")).build(), HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> metricas = cliente.send(HttpRequest.newBuilder(base.resolve("/metricas")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, metricas.statusCode());
+            assertTrue(metricas.headers().firstValue("Content-Type").orElse("").startsWith("text/plain"));
+            assertTrue(metricas.body().contains("BUSCAR_USUARIO"), metricas.body());
+        }
+    }
+
+    @Test
+    void deberiaTomarYLiberarTareasDeLaCola() throws IOException, InterruptedException {
+        enviar("POST", "/usuarios", "{\"nombre\":\"Ana\",\"tipo\":\"TRABAJADOR\"}");
+        enviar("POST", "/usuarios/1/tareas", "{\"descripcion\":\"Informe\",\"prioridad\":\"URGENTE\"}");
+
+        assertTrue(enviar("GET", "/cola/siguiente", null).body().contains("Informe"));
+        HttpResponse<String> tomada = enviar("POST", "/cola/tomar?usuario=1", null);
+        assertEquals(200, tomada.statusCode());
+        assertEquals(204, enviar("POST", "/cola/tomar", null).statusCode());
+        assertEquals(204, enviar("POST", "/cola/1/liberar", null).statusCode());
+        assertEquals(404, enviar("POST", "/cola/1/liberar", null).statusCode());
+        assertEquals(200, enviar("POST", "/cola/tomar", null).statusCode());
+    }
+
+    @Test
+    void deberiaResponderErroresConSuCodigo() throws IOException, InterruptedException {
+        assertEquals(404, enviar("GET", "/usuarios/7", null).statusCode());
+        assertEquals(404, enviar("GET", "/usuarios/x", null).statusCode());
+        assertEquals(404, enviar("GET", "/proyectos", null).statusCode());
+        assertEquals(405, enviar("PUT", "/usuarios", "{}").statusCode());
+        assertEquals(405, enviar("GET", "/cola/tomar", null).statusCode());
+        assertEquals(404, enviar("POST", "/usuarios/7/tareas", "{\"descripcion\":\"x\",\"prioridad\":\"NORMAL\"}").statusCode());
+
+        HttpResponse<String> tipo = enviar("POST", "/usuarios", "{\"nombre\":\"Ana\",\"tipo\":\"DIRECTOR\"}");
+        assertEquals(400, tipo.statusCode());
+        assertTrue(tipo.body().startsWith("{\"error\":"), tipo.body());
+        assertEquals(400, enviar("POST", "/usuarios", "{\"nombre\":\"Ana\"").statusCode());
+        assertEquals(400, enviar("POST", "/usuarios", "{\"tipo\":\"PROFESOR\"}").statusCode());
+        assertEquals(400, enviar("GET", "/tareas", null).statusCode());
+        assertEquals(400, enviar("GET", "/tareas/buscar?q=a&limite=muchas", null).statusCode());
+        assertTrue(gestor.listarUsuarios().isEmpty());
+    }
+
+    @Test
+    void deberiaResponderEnOrdenLasPeticionesEncadenadasEnUnaConexion() throws IOException {
+        gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
+        int peticiones = 50;
+        StringBuilder encadenadas = new StringBuilder();
+        for (int i = 0; i < peticiones; i++) {
+            String cuerpo = "{\"descripcion\":\"Tarea " + i + "\",\"prioridad\":\"NORMAL\"}";
+            encadenadas.append("POST /usuarios/1/tareas HTTP/1.1\r\nHost: prueba\r\nContent-Length: ")
+                    .append(cuerpo.getBytes(StandardCharsets.UTF_8).length).append("\r\n\r\n").append(cuerpo);
+        }
+        encadenadas.append("GET /estadisticas HTTP/1.1\r\nHost: prueba\r\n\r\n");
+
+        try (Socket conexion = new Socket("127.0.0.1", servidor.getPuerto())) {
+            // Todas las peticiones salen juntas, antes de leer ninguna respuesta
+            conexion.getOutputStream().write(encadenadas.toString().getBytes(StandardCharsets.UTF_8));
+            conexion.getOutputStream().flush();
+            InputStream entrada = conexion.getInputStream();
+
+            for (int i = 0; i < peticiones; i++) {
+                String respuesta = leerRespuesta(entrada);
+                assertTrue(respuesta.startsWith("HTTP/1.1 201"), respuesta);
+                assertTrue(respuesta.contains("\"id\":" + (i + 1) + ",") && respuesta.contains("Tarea " + i + "\""), respuesta);
+            }
+            assertTrue(leerRespuesta(entrada).endsWith("{\"total\":" + peticiones + ",\"activas\":" + peticiones
+                    + ",\"completadas\":0,\"normales\":" + peticiones + ",\"urgentes\":0}"));
+
+            // La conexión sigue abierta para otra petición
+            OutputStream salida = conexion.getOutputStream();
+            salida.write("GET /usuarios/1 HTTP/1.1\r\nHost: prueba\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+            assertTrue(leerRespuesta(entrada).contains("\"tareas\":" + peticiones));
+        }
+    }
+
+    @Test
+    void deberiaRechazarCuerposDemasiadoGrandes() throws IOException, InterruptedException {
+        try (Socket conexion = new Socket("127.0.0.1", servidor.getPuerto())) {
+            // Se responde por la longitud declarada, sin esperar al resto del cuerpo
+            conexion.getOutputStream().write(("POST /usuarios HTTP/1.1\r\nHost: prueba\r\nContent-Length: "
+                    + (ServidorHttp.CUERPO_MAXIMO + 1) + "\r\n\r\n{\"nombre\":").getBytes(StandardCharsets.UTF_8));
+            String respuesta = leerRespuesta(conexion.getInputStream());
+            assertTrue(respuesta.startsWith("HTTP/1.1 413"), respuesta);
+            assertTrue(respuesta.toLowerCase().contains("connection: close"), respuesta);
+        }
+
+        // Sin longitud declarada, el límite se comprueba al leer
+        HttpRequest porTrozos = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + servidor.getPuerto() + "/usuarios"))
+                .POST(HttpRequest.BodyPublishers.ofInputStream(() -> new ByteArrayInputStream(new byte[ServidorHttp.CUERPO_MAXIMO + 1])))
+                .build();
+        try {
+            assertEquals(413, cliente.send(porTrozos, HttpResponse.BodyHandlers.ofString()).statusCode());
+        } catch (IOException e) {
+            // El servidor puede cerrar la conexión mientras el cliente aún envía
+        }
+        assertEquals(0, gestor.listarUsuarios().size());
+        assertEquals(201, enviar("POST", "/usuarios", "{\"nombre\":\"Ana\",\"tipo\":\"PROFESOR\"}").statusCode());
+    }
+
+    @Test
+    void deberiaAtenderMuchasConexionesSimultaneas() throws Exception {
+        gestor.crearUsuario("Ana", TipoUsuario.TRABAJADOR);
+        int conexiones = 200;
+        int peticiones = 20;
+
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Integer>> resultados = new ArrayList<>();
+            for (int c = 0; c < conexiones; c++) {
+                resultados.add(hilos.submit(() -> {
+                    int creadas = 0;
+                    try (Socket conexion = new Socket("127.0.0.1", servidor.getPuerto())) {
+                        String cuerpo = "{\"descripcion\":\"Tarea\",\"prioridad\":\"NORMAL\"}";
+                        byte[] peticion = ("POST /usuarios/1/tareas HTTP/1.1\r\nHost: prueba\r\nContent-Length: "
+                                + cuerpo.length() + "\r\n\r\n" + cuerpo).getBytes(StandardCharsets.UTF_8);
+                        for (int i = 0; i < peticiones; i++) {
+                            conexion.getOutputStream().write(peticion);
+                            if (leerRespuesta(conexion.getInputStream()).startsWith("HTTP/1.1 201")) {
+                                creadas++;
+                            }
+                        }
+                    }
+                    return creadas;
+                }));
+            }
+            for (Future<Integer> resultado : resultados) {
+                assertEquals(peticiones, resultado.get());
+            }
+        }
+        assertEquals(conexiones * peticiones, gestor.contarTareas().total());
+    }
+
+    /**
+     * Lee una respuesta HTTP/1.1 con Content-Length, sin leer de más.
+     */
+    static String leerRespuesta(InputStream entrada) throws IOException {
+        ByteArrayOutputStream cabecera = new ByteArrayOutputStream();
+        while (true) {
+            int b = entrada.read();
+            if (b < 0) {
+                throw new IOException("Conexión cerrada");
+            }
+            cabecera.write(b);
+            byte[] leido = cabecera.toByteArray();
+            int n = leido.length;
+            if (n >= 4 && leido[n - 4] == '\r' && leido[n - 3] == '\n' && leido[n - 2] == '\r' && leido[n - 1] == '\n') {
+                break;
+            }
+        }
+
+        String texto = cabecera.toString(StandardCharsets.ISO_8859_1);
+        int longitud = 0;
+        for (String linea : texto.split("\r\n")) {
+            if (linea.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                longitud = Integer.parseInt(linea.substring(15).trim());
+            }
+        }
+        return texto + new String(entrada.readNBytes(longitud), StandardCharsets.UTF_8);
+    }
+
+    private static int cuenta(String texto, String buscado) {
+        int veces = 0;
+        for (int i = texto.indexOf(buscado); i >= 0; i = texto.indexOf(buscado, i + 1)) {
+            veces++;
+        }
+        return veces;
+    }
+
+}
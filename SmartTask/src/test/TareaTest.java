@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Test;
 import modelo.EstadoTarea;
 import  modelo.Tarea;
 import modelo.TareaNormal;
+import modelo.TareaUrgente;
 
 class TareaTest {
 
@@ -39,6 +40,37 @@ class TareaTest {
 	    assertEquals(EstadoTarea.COMPLETADA, tarea.getEstado());
 	}
 
+	@Test
+	void deberiaGuardarLosInstantesDeCreacionYFinalizacion() {
+	    Tarea tarea = new TareaNormal(1, "Test", 1_000);
+	    assertEquals(1_000, tarea.getCreadaEn());
+	    assertEquals(0, tarea.getCompletadaEn());
+
+	    tarea.marcarComoCompletada(5_000);
+	    tarea.marcarComoCompletada(9_000);
+	    assertEquals(5_000, tarea.getCompletadaEn());
+	}
+
+	@Test
+	void deberiaIndicarSiEstaVencidaYEscalarSoloSiEsNormalYActiva() {
+	    Tarea tarea = new TareaNormal(1, "Test");
+	    assertFalse(tarea.estaVencida(Long.MAX_VALUE));
+	    assertThrows(IllegalArgumentException.class, () -> tarea.setVenceEn(-1));
+
+	    tarea.setVenceEn(2_000);
+	    assertFalse(tarea.estaVencida(1_999));
+	    assertTrue(tarea.estaVencida(2_000));
+
+	    assertFalse(tarea.esUrgente());
+	    assertTrue(tarea.escalar());
+	    assertFalse(tarea.escalar());
+	    assertTrue(tarea.esUrgente());
+
+	    tarea.marcarComoCompletada();
+	    assertFalse(tarea.estaVencida(3_000));
+	    assertFalse(new TareaUrgente(2, "Urgente").escalar());
+	}
+
 	@Test
 	void equalsDeberiaSerTrueSiIdEsIgual() {
 	    Tarea t1 = new TareaNormal(1, "A");
@@ -61,4 +93,15 @@ class TareaTest {
 	    assertNotNull(tarea.toString());
 	}
 
+	@Test
+	void escribirDeberiaAgregarElMismoTextoQueToString() {
+	    Tarea tarea = new TareaUrgente(7, "Corregir examen");
+	    tarea.marcarComoCompletada();
+	    StringBuilder texto = new StringBuilder("> ");
+
+	    assertSame(texto, tarea.escribir(texto));
+	    assertEquals("> ID: 7 | Descripción: Corregir examen | Prioridad: URGENTE | Estado: COMPLETADA", texto.toString());
+	    assertEquals(texto.substring(2), tarea.toString());
+	}
+
 }
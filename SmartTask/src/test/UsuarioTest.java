@@ -4,7 +4,14 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+import modelo.EstadoTarea;
 import modelo.Estudiante;
+import modelo.Tarea;
+import modelo.TareaNormal;
 import modelo.Usuario;
 
 class UsuarioTest {
@@ -44,6 +51,97 @@ class UsuarioTest {
 	    assertFalse(usuario.eliminarTarea(99));
 	}
 
+	@Test
+	void eliminarTareaDeberiaConservarOrdenDeLasRestantes() {
+	    Usuario usuario = new Estudiante(1, "Vale");
+	    for (int i = 1; i <= 100; i++) {
+	        usuario.agregarTarea(new TareaNormal(i, "Tarea " + i));
+	    }
+	    for (int i = 1; i <= 100; i++) {
+	        if (i % 3 != 0) {
+	            assertTrue(usuario.eliminarTarea(i));
+	        }
+	    }
+
+	    List<Tarea> tareas = usuario.getTareas();
+	    assertEquals(33, tareas.size());
+	    for (int i = 0; i < tareas.size(); i++) {
+	        assertEquals((i + 1) * 3, tareas.get(i).getId());
+	    }
+	    assertEquals(30, usuario.buscarTarea(30).getId());
+	    assertNull(usuario.buscarTarea(31));
+	}
+
+	@Test
+	void agregarTareaNoDeberiaDuplicarMismoId() {
+	    Usuario usuario = new Estudiante(1, "Vale");
+	    usuario.agregarTarea(new TareaNormal(1, "A"));
+	    usuario.agregarTarea(new TareaNormal(1, "B"));
+
+	    assertEquals(1, usuario.getTareas().size());
+	    assertEquals("A", usuario.buscarTarea(1).getDescripcion());
+	}
+
+	@Test
+	void getTareasDeberiaReflejarCambiosYSerInmodificable() {
+	    Usuario usuario = new Estudiante(1, "Vale");
+	    List<Tarea> tareas = usuario.getTareas();
+	    usuario.agregarTarea(new TareaNormal(1, "A"));
+
+	    assertEquals(1, tareas.size());
+	    assertThrows(UnsupportedOperationException.class, () -> {
+	        tareas.add(new TareaNormal(2, "B"));
+	    });
+	}
+
+	@Test
+	void leerTareasConHuecosNoDeberiaCompactar() {
+	    Usuario usuario = new Estudiante(1, "Vale");
+	    for (int i = 1; i <= 6; i++) {
+	        usuario.agregarTarea(new TareaNormal(i, "T" + i));
+	    }
+	    usuario.eliminarTarea(2);
+	    usuario.eliminarTarea(5);
+	    List<Tarea> tareas = usuario.getTareas();
+	    Iterator<Tarea> abierto = tareas.iterator();
+
+	    // Las lecturas saltan los huecos sin invalidar los iteradores abiertos
+	    assertEquals(6, tareas.get(3).getId());
+	    assertEquals(List.of(1, 3, 4, 6), tareas.stream().map(Tarea::getId).toList());
+	    assertEquals(List.of(4, 6), usuario.tareasDespuesDe(3, 10).stream().map(Tarea::getId).toList());
+	    assertEquals(List.of(3), usuario.tareasDespuesDe(1, 1).stream().map(Tarea::getId).toList());
+	    assertEquals(1, abierto.next().getId());
+	    assertEquals(3, abierto.next().getId());
+	    // Con huecos el acceso por posición no es O(1)
+	    assertFalse(tareas instanceof RandomAccess);
+	}
+
+	@Test
+	void agregarTareaDeOtroUsuarioDeberiaLanzarExcepcion() {
+	    Usuario u1 = new Estudiante(1, "Vale");
+	    Usuario u2 = new Estudiante(2, "Ana");
+	    Tarea tarea = new TareaNormal(1, "A");
+	    u1.agregarTarea(tarea);
+
+	    assertThrows(IllegalArgumentException.class, () -> {
+	        u2.agregarTarea(tarea);
+	    });
+	}
+
+	@Test
+	void completarTareaDirectamenteDeberiaActualizarContador() {
+	    Usuario usuario = new Estudiante(1, "Vale");
+	    Tarea tarea = new TareaNormal(1, "A");
+	    usuario.agregarTarea(tarea);
+
+	    tarea.marcarComoCompletada();
+	    tarea.marcarComoCompletada();
+
+	    assertEquals(0, usuario.getContador().contar(EstadoTarea.ACTIVA));
+	    assertEquals(1, usuario.getContador().contar(EstadoTarea.COMPLETADA));
+	    assertFalse(usuario.tareasConEstado(EstadoTarea.ACTIVA).iterator().hasNext());
+	}
+
 	@Test
 	void equalsUsuarioDeberiaSerTrueSiIdEsIgual() {
 	    Usuario u1 = new Estudiante(1, "A");
@@ -58,4 +156,15 @@ class UsuarioTest {
 	    assertNotNull(usuario.toString());
 	}
 
+	@Test
+	void escribirDeberiaAgregarElMismoTextoQueToString() {
+	    Usuario usuario = new Estudiante(1, "Vale");
+	    usuario.agregarTarea(new TareaNormal(1, "A"));
+	    StringBuilder texto = new StringBuilder("> ");
+
+	    assertSame(texto, usuario.escribir(texto));
+	    assertEquals("> ID: 1 | Nombre: Vale | Tipo: Estudiante| Total tareas: 1", texto.toString());
+	    assertEquals(texto.substring(2), usuario.toString());
+	}
+
 }
@@ -0,0 +1,231 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import interfaces.Accionable;
+import interfaces.OyenteVencimientos;
+import modelo.EstadoTarea;
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import servicio.GestorTareasColumnar;
+import servicio.GestorTareasConcurrente;
+import servicio.GestorTareasPersistente;
+import servicio.GestorTareasServicio;
+import servicio.PoliticaSincronizacion;
+import servicio.VigilanteVencimientos;
+
+/**
+ * Pruebas de los vencimientos y escalados de tareas.
+ */
+class VencimientosTest {
+
+    private static final long MINUTO = 60_000;
+
+    @TempDir
+    Path directorio;
+
+    private List<Accionable> gestores() throws IOException {
+        return List.of(new GestorTareasServicio(), new GestorTareasConcurrente(), new GestorTareasColumnar(),
+                new GestorTareasPersistente(directorio, PoliticaSincronizacion.POR_LOTES));
+    }
+
+    /**
+     * Oyente que guarda los avisos como texto.
+     */
+    private static final class Avisos implements OyenteVencimientos {
+
+        final List<String> recibidos = new ArrayList<>();
+
+        @Override
+        public void alVencer(int usuarioId, Tarea tarea) {
+            recibidos.add("vence " + tarea.getId() + " " + usuarioId);
+        }
+
+        @Override
+        public void alEscalar(int usuarioId, Tarea tarea) {
+            assertTrue(tarea.isEscalada());
+            recibidos.add("escala " + tarea.getId() + " " + usuarioId);
+        }
+    }
+
+    @Test
+    void deberiaEscalarYAvisarDelVencimiento() throws IOException {
+        for (Accionable gestor : gestores()) {
+            String nombre = gestor.getClass().getSimpleName();
+            long ahora = System.currentTimeMillis();
+            Usuario ana = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR);
+
+            Tarea urgente = gestor.crearTarea("Pagar", Prioridad.URGENTE);
+            Tarea normal = gestor.crearTarea("Leer", Prioridad.NORMAL);
+            Tarea completada = gestor.crearTarea("Llamar", Prioridad.NORMAL);
+            for (Tarea tarea : List.of(urgente, normal, completada)) {
+                gestor.agregarTareaAUsuario(ana.getId(), tarea);
+            }
+            int a = ana.getId();
+
+            assertTrue(gestor.fijarVencimiento(a, urgente.getId(), ahora + 10 * MINUTO, 5 * MINUTO));
+            assertTrue(gestor.fijarVencimiento(a, normal.getId(), ahora + 10 * MINUTO, 5 * MINUTO));
+            assertTrue(gestor.fijarVencimiento(a, completada.getId(), ahora + MINUTO, 0));
+            assertFalse(gestor.fijarVencimiento(a, 9_999, ahora + MINUTO, 0));
+            gestor.marcarTareaComoCompletada(a, completada.getId());
+
+            Avisos avisos = new Avisos();
+            assertEquals(0, gestor.revisarVencimientos(ahora + 4 * MINUTO, avisos), nombre);
+            assertSame(Prioridad.URGENTE, gestor.verSiguienteTarea().getPrioridad());
+
+            // La normal pasa a atenderse como urgente, pero antes va la urgente por id
+            assertEquals(1, gestor.revisarVencimientos(ahora + 6 * MINUTO, avisos), nombre);
+            assertEquals(List.of("escala " + normal.getId() + " " + a), avisos.recibidos, nombre);
+            assertEquals(urgente.getId(), gestor.tomarSiguienteTarea().getId(), nombre);
+            Tarea siguiente = gestor.tomarSiguienteTarea();
+            assertEquals(normal.getId(), siguiente.getId(), nombre);
+            assertTrue(siguiente.isEscalada(), nombre);
+            assertEquals(Prioridad.NORMAL, siguiente.getPrioridad(), nombre);
+            assertEquals(2, gestor.contarTareasDeUsuario(a).contar(Prioridad.NORMAL), nombre);
+            assertTrue(gestor.liberarTarea(normal.getId()), nombre);
+            assertEquals(normal.getId(), gestor.verSiguienteTarea().getId(), nombre);
+
+            // Las dos vencen en el mismo tick, sin orden definido entre ellas
+            assertEquals(2, gestor.revisarVencimientos(ahora + 11 * MINUTO, avisos), nombre);
+            assertEquals(3, avisos.recibidos.size(), nombre);
+            assertTrue(avisos.recibidos.containsAll(List.of("vence " + urgente.getId() + " " + a,
+                    "vence " + normal.getId() + " " + a)), nombre);
+
+            // Cada aviso se entrega una sola vez
+            assertEquals(0, gestor.revisarVencimientos(ahora + 60 * MINUTO, avisos), nombre);
+
+            assertEquals(ahora + 10 * MINUTO, gestor.listarTareasDeUsuario(a).get(0).getVenceEn(), nombre);
+            if (gestor instanceof AutoCloseable cerrable) {
+                assertDoesNotThrow(cerrable::close);
+            }
+        }
+    }
+
+    @Test
+    void completarEliminarOQuitarElVencimientoDeberiaDejarDeVigilar() throws IOException {
+        for (Accionable gestor : gestores()) {
+            long ahora = System.currentTimeMillis();
+            int a = gestor.crearUsuario("Ana", TipoUsuario.TRABAJADOR).getId();
+            List<Tarea> tareas = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                Tarea tarea = gestor.crearTarea("Tarea " + i, Prioridad.NORMAL);
+                gestor.agregarTareaAUsuario(a, tarea);
+                gestor.fijarVencimiento(a, tarea.getId(), ahora + MINUTO, MINUTO / 2);
+                tareas.add(tarea);
+            }
+
+            gestor.marcarTareaComoCompletada(a, tareas.get(0).getId());
+            gestor.eliminarTareaDeUsuario(a, tareas.get(1).getId());
+            gestor.fijarVencimiento(a, tareas.get(2).getId(), 0, 0);
+
+            assertEquals(0, gestor.revisarVencimientos(ahora + 2 * MINUTO, (u, t) -> fail()));
+            assertEquals(0, gestor.listarTareasDeUsuario(a).get(1).getVenceEn());
+            if (gestor instanceof AutoCloseable cerrable) {
+                assertDoesNotThrow(cerrable::close);
+            }
+        }
+    }
+
+    @Test
+    void deberiaGuardarLosInstantesDeLasTareas() throws IOException {
+        for (Accionable gestor : gestores()) {
+            long antes = System.currentTimeMillis();
+            int a = gestor.crearUsuario("Ana", TipoUsuario.ESTUDIANTE).getId();
+            Tarea tarea = gestor.crearTarea("Estudiar", Prioridad.NORMAL);
+            gestor.agregarTareaAUsuario(a, tarea);
+            gestor.marcarTareaComoCompletada(a, tarea.getId());
+
+            Tarea guardada = gestor.listarTareasDeUsuario(a).get(0);
+            assertEquals(tarea.getCreadaEn(), guardada.getCreadaEn());
+            assertTrue(guardada.getCreadaEn() >= antes);
+            assertTrue(guardada.getCompletadaEn() >= guardada.getCreadaEn());
+            assertEquals(EstadoTarea.COMPLETADA, guardada.getEstado());
+            if (gestor instanceof AutoCloseable cerrable) {
+                assertDoesNotThrow(cerrable::close);
+            }
+        }
+    }
+
+    @Test
+    void elGestorPersistenteDeberiaRecuperarLosVencimientos() throws IOException {
+        long ahora = System.currentTimeMillis();
+        int a;
+        Tarea registrada;
+        Tarea enInstantanea;
+        Tarea completada;
+
+        try (GestorTareasPersistente gestor = new GestorTareasPersistente(directorio, PoliticaSincronizacion.POR_LOTES)) {
+            a = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR).getId();
+            enInstantanea = gestor.crearTarea("En la instantánea", Prioridad.NORMAL);
+            completada = gestor.crearTarea("Completada", Prioridad.NORMAL);
+            gestor.agregarTareaAUsuario(a, enInstantanea);
+            gestor.agregarTareaAUsuario(a, completada);
+            gestor.fijarVencimiento(a, enInstantanea.getId(), ahora + 10 * MINUTO, 5 * MINUTO);
+            gestor.marcarTareaComoCompletada(a, completada.getId());
+            gestor.crearInstantanea();
+
+            registrada = gestor.crearTarea("En el registro", Prioridad.NORMAL);
+            gestor.agregarTareaAUsuario(a, registrada);
+            gestor.fijarVencimiento(a, registrada.getId(), ahora + 20 * MINUTO, 5 * MINUTO);
+        }
+
+        try (GestorTareasPersistente gestor = new GestorTareasPersistente(directorio, PoliticaSincronizacion.POR_LOTES)) {
+            List<Tarea> tareas = gestor.listarTareasDeUsuario(a);
+            assertEquals(enInstantanea.getCreadaEn(), tareas.get(0).getCreadaEn());
+            assertEquals(completada.getCompletadaEn(), tareas.get(1).getCompletadaEn());
+            assertEquals(registrada.getCreadaEn(), tareas.get(2).getCreadaEn());
+
+            Avisos avisos = new Avisos();
+            gestor.revisarVencimientos(ahora + 6 * MINUTO, avisos);
+            assertEquals(List.of("escala " + enInstantanea.getId() + " " + a), avisos.recibidos);
+            gestor.revisarVencimientos(ahora + 21 * MINUTO, avisos);
+            assertEquals(List.of("escala " + enInstantanea.getId() + " " + a,
+                    "vence " + enInstantanea.getId() + " " + a,
+                    "escala " + registrada.getId() + " " + a,
+                    "vence " + registrada.getId() + " " + a), avisos.recibidos);
+        }
+    }
+
+    @Test
+    void elVigilanteDeberiaRevisarPeriodicamente() throws InterruptedException {
+        GestorTareasConcurrente gestor = new GestorTareasConcurrente();
+        int a = gestor.crearUsuario("Ana", TipoUsuario.TRABAJADOR).getId();
+        Tarea tarea = gestor.crearTarea("Entregar", Prioridad.URGENTE);
+        gestor.agregarTareaAUsuario(a, tarea);
+        gestor.fijarVencimiento(a, tarea.getId(), System.currentTimeMillis() + 50, 0);
+
+        CountDownLatch vencida = new CountDownLatch(1);
+        VigilanteVencimientos vigilante = new VigilanteVencimientos(gestor, (u, t) -> vencida.countDown(), 10);
+        try {
+            assertTrue(vencida.await(10, TimeUnit.SECONDS));
+        } finally {
+            vigilante.close();
+        }
+    }
+
+    @Test
+    void deberiaValidarLosArgumentos() {
+        GestorTareasServicio gestor = new GestorTareasServicio();
+        int a = gestor.crearUsuario("Ana", TipoUsuario.TRABAJADOR).getId();
+        Tarea tarea = gestor.crearTarea("Entregar", Prioridad.NORMAL);
+        gestor.agregarTareaAUsuario(a, tarea);
+
+        assertThrows(IllegalArgumentException.class, () -> gestor.fijarVencimiento(a, tarea.getId(), -1, 0));
+        assertThrows(IllegalArgumentException.class, () -> gestor.fijarVencimiento(a, tarea.getId(), 1, -1));
+        assertThrows(IllegalArgumentException.class, () -> gestor.revisarVencimientos(0, null));
+        assertThrows(IllegalArgumentException.class, () -> new VigilanteVencimientos(gestor, (u, t) -> { }, 0));
+    }
+
+}
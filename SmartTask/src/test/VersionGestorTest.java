@@ -0,0 +1,223 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import modelo.Prioridad;
+import modelo.Tarea;
+import modelo.TipoUsuario;
+import modelo.Usuario;
+import servicio.GestorTareasServicio;
+import servicio.VersionGestor;
+import util.VectorPersistente;
+
+/**
+ * Pruebas del vector persistente y de las lecturas por versiones del
+ * gestor.
+ */
+class VersionGestorTest {
+
+    @Test
+    void vectorDeberiaComportarseComoUnaListaConHuecosSinCambiarLasVersionesAnteriores() {
+        Random azar = new Random(11);
+        VectorPersistente<Integer> vector = VectorPersistente.vacio();
+        List<Integer> posiciones = new ArrayList<>();
+        List<VectorPersistente<Integer>> versiones = new ArrayList<>();
+        List<List<Integer>> esperadas = new ArrayList<>();
+
+        for (int paso = 0; paso < 5_000; paso++) {
+            if (posiciones.isEmpty() || azar.nextInt(3) > 0) {
+                vector = vector.agregar(paso);
+                posiciones.add(paso);
+            } else {
+                int posicion = azar.nextInt(posiciones.size());
+                vector = vector.quitar(posicion);
+                posiciones.set(posicion, null);
+            }
+            if (paso % 500 == 0) {
+                versiones.add(vector);
+                esperadas.add(sinHuecos(posiciones));
+            }
+        }
+
+        assertEquals(posiciones.size(), vector.posiciones());
+        assertEquals(sinHuecos(posiciones), vector);
+        List<Integer> esperada = sinHuecos(posiciones);
+        for (int i = 0; i < esperada.size(); i += 7) {
+            assertEquals(esperada.get(i), vector.get(i));
+        }
+        for (int i = 0; i < posiciones.size(); i++) {
+            assertEquals(posiciones.get(i), vector.enPosicion(i));
+        }
+        for (int v = 0; v < versiones.size(); v++) {
+            assertEquals(esperadas.get(v), new ArrayList<>(versiones.get(v)));
+        }
+
+        assertEquals(vector, VectorPersistente.de(posiciones.toArray(new Integer[0]), posiciones.size()));
+        assertSame(vector, vector.quitar(posiciones.size() + 100));
+        assertThrows(IndexOutOfBoundsException.class, () -> VectorPersistente.vacio().get(0));
+        assertThrows(IllegalArgumentException.class, () -> VectorPersistente.vacio().agregar(null));
+        assertThrows(UnsupportedOperationException.class, () -> VectorPersistente.<Integer>vacio().add(1));
+    }
+
+    @Test
+    void vectorDeberiaAsignarPosicionesLejanasDejandoHuecos() {
+        VectorPersistente<String> vector = VectorPersistente.<String>vacio().asignar(3, "a").asignar(100_000, "b");
+
+        assertEquals(100_001, vector.posiciones());
+        assertEquals(List.of("a", "b"), vector);
+        assertEquals("b", vector.get(1));
+        assertNull(vector.enPosicion(99_999));
+        assertNull(vector.enPosicion(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> vector.asignar(-1, "c"));
+    }
+
+    @Test
+    void deberiaLeerDeVersionesInmutablesSinCopiar() {
+        GestorTareasServicio gestor = new GestorTareasServicio(true);
+        int ana = gestor.crearUsuario("Ana", TipoUsuario.PROFESOR).getId();
+        int luis = gestor.crearUsuario("Luis", TipoUsuario.ESTUDIANTE).getId();
+        Tarea corregir = gestor.crearTarea("Corregir", Prioridad.URGENTE);
+        gestor.agregarTareaAUsuario(ana, corregir);
+        gestor.agregarTareasAUsuario(luis, List.of(gestor.crearTarea("Estudiar", Prioridad.NORMAL),
+                gestor.crearTarea("Repasar", Prioridad.NORMAL)));
+
+        VersionGestor anterior = gestor.version();
+        List<Usuario> usuarios = gestor.listarUsuarios();
+        List<Tarea> deAna = gestor.listarTareasDeUsuario(ana);
+        assertSame(usuarios, gestor.listarUsuarios());
+        assertSame(deAna, gestor.listarTareasDeUsuario(ana));
+        assertEquals(List.of(corregir), deAna);
+        assertEquals(2, gestor.listarTareasPorTipoUsuario(TipoUsuario.ESTUDIANTE).size());
+
+        gestor.eliminarTareaDeUsuario(ana, corregir.getId());
+        gestor.crearUsuario("Eva", TipoUsuario.PROFESOR);
+
+        // Lo ya leído no cambia; las lecturas nuevas ven los cambios
+        assertEquals(List.of(corregir), deAna);
+        assertEquals(2, usuarios.size());
+        assertEquals(1, anterior.usuariosPorTipo(TipoUsuario.PROFESOR).size());
+        assertTrue(gestor.listarTareasDeUsuario(ana).isEmpty());
+        assertEquals(3, gestor.listarUsuarios().size());
+        assertEquals(2, gestor.listarUsuariosPorTipo(TipoUsuario.PROFESOR).size());
+        assertTrue(gestor.version().getNumero() > anterior.getNumero());
+        assertNull(gestor.listarTareasDeUsuario(99));
+        assertNull(gestor.buscarUsuario(99));
+        assertThrows(UnsupportedOperationException.class, () -> gestor.listarUsuarios().clear());
+
+        assertThrows(IllegalStateException.class, () -> new GestorTareasServicio().version());
+    }
+
+    @Test
+    void deberiaListarLoMismoQueSinVersiones() {
+        GestorTareasServicio conVersiones = new GestorTareasServicio(true);
+        GestorTareasServicio sinVersiones = new GestorTareasServicio();
+        Random azar = new Random(3);
+
+        for (GestorTareasServicio gestor : List.of(conVersiones, sinVersiones)) {
+            azar.setSeed(3);
+            for (int u = 0; u < 30; u++) {
+                gestor.crearUsuario("Usuario " + u, TipoUsuario.values()[u % TipoUsuario.values().length]);
+            }
+            for (int i = 0; i < 3_000; i++) {
+                int usuario = azar.nextInt(30) + 1;
+                List<Tarea> tareas = gestor.listarTareasDeUsuario(usuario);
+                if (tareas.isEmpty() || azar.nextInt(4) > 0) {
+                    gestor.agregarTareaAUsuario(usuario, gestor.crearTarea("Tarea " + i, Prioridad.NORMAL));
+                } else {
+                    gestor.eliminarTareaDeUsuario(usuario, tareas.get(azar.nextInt(tareas.size())).getId());
+                }
+            }
+        }
+
+        assertEquals(sinVersiones.listarUsuarios(), conVersiones.listarUsuarios());
+        for (int u = 1; u <= 30; u++) {
+            assertEquals(ids(sinVersiones.listarTareasDeUsuario(u)), ids(conVersiones.listarTareasDeUsuario(u)));
+        }
+        for (TipoUsuario tipo : TipoUsuario.values()) {
+            assertEquals(ids(sinVersiones.listarTareasPorTipoUsuario(tipo)),
+                    ids(conVersiones.listarTareasPorTipoUsuario(tipo)));
+        }
+    }
+
+    @Test
+    void deberiaLeerSinErroresMientrasOtroHiloEscribe() throws Exception {
+        GestorTareasServicio gestor = new GestorTareasServicio(true);
+        int usuarios = 20;
+        for (int u = 0; u < usuarios; u++) {
+            gestor.crearUsuario("Usuario " + u, TipoUsuario.TRABAJADOR);
+        }
+        AtomicBoolean terminado = new AtomicBoolean();
+
+        try (ExecutorService ejecutor = Executors.newFixedThreadPool(5)) {
+            List<Future<Long>> lectores = new ArrayList<>();
+            for (int l = 0; l < 4; l++) {
+                lectores.add(ejecutor.submit(() -> {
+                    long lecturas = 0;
+                    Random azar = new Random();
+                    do {
+                        VersionGestor version = gestor.version();
+                        List<Tarea> tareas = version.tareasDeUsuario(azar.nextInt(usuarios) + 1);
+                        int recorridas = 0;
+                        for (Tarea tarea : tareas) {
+                            assertNotNull(tarea);
+                            recorridas++;
+                        }
+                        assertEquals(tareas.size(), recorridas);
+                        assertEquals(version.tareasPorTipoUsuario(TipoUsuario.TRABAJADOR).size(),
+                                version.tareasPorTipoUsuario(TipoUsuario.TRABAJADOR).stream().count());
+                        lecturas++;
+                    } while (!terminado.get());
+                    return lecturas;
+                }));
+            }
+
+            Future<?> escritor = ejecutor.submit(() -> {
+                Random azar = new Random(5);
+                for (int i = 0; i < 20_000; i++) {
+                    int usuario = azar.nextInt(usuarios) + 1;
+                    List<Tarea> tareas = gestor.listarTareasDeUsuario(usuario);
+                    if (tareas.size() < 50) {
+                        gestor.agregarTareaAUsuario(usuario, gestor.crearTarea("Tarea " + i, Prioridad.URGENTE));
+                    } else {
+                        gestor.eliminarTareaDeUsuario(usuario, tareas.get(azar.nextInt(tareas.size())).getId());
+                    }
+                }
+                terminado.set(true);
+            });
+
+            escritor.get();
+            for (Future<Long> lector : lectores) {
+                assertTrue(lector.get() > 0);
+            }
+        }
+    }
+
+    private static List<Integer> sinHuecos(List<Integer> posiciones) {
+        List<Integer> resultado = new ArrayList<>();
+        for (Integer valor : posiciones) {
+            if (valor != null) {
+                resultado.add(valor);
+            }
+        }
+        return resultado;
+    }
+
+    private static List<Integer> ids(List<Tarea> tareas) {
+        List<Integer> ids = new ArrayList<>();
+        for (Tarea tarea : tareas) {
+            ids.add(tarea.getId());
+        }
+        return ids;
+    }
+
+}
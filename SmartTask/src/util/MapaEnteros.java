@@ -0,0 +1,273 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Mapa de claves enteras a valores enteros basado en direccionamiento abierto.
+ * 
+ * <p>
+ * Se utiliza como índice por identificador (por ejemplo, id de usuario o de
+ * tarea hacia su posición en una lista). Trabaja directamente con tipos
+ * primitivos, por lo que no se crean objetos {@code Integer} en cada consulta.
+ * </p>
+ * 
+ * <p>
+ * Las colisiones se resuelven con sondeo lineal y el borrado desplaza hacia
+ * atrás los elementos siguientes, de modo que no quedan marcas de borrado.
+ * Esta clase no es segura para uso concurrente.
+ * </p>
+ */
+
+public final class MapaEnteros {
+	
+	/** Valor devuelto por {@link #get(int)} cuando la clave no existe */
+	public static final int NO_ENCONTRADO = -1;
+	
+	/** Capacidad inicial mínima de la tabla */
+	private static final int CAPACIDAD_MINIMA = 16;
+	
+	/** Capacidad máxima de la tabla, la mayor potencia de dos de un arreglo */
+	private static final int CAPACIDAD_MAXIMA = 1 << 30;
+	
+	/** Entradas que caben en la tabla de capacidad máxima */
+	private static final int ESPERADOS_MAXIMOS = umbralPara(CAPACIDAD_MAXIMA);
+	
+	/** Claves almacenadas en cada posición */
+	private int[] claves;
+	
+	/** Valores asociados a cada clave */
+	private int[] valores;
+	
+	/** Indica qué posiciones de la tabla están ocupadas */
+	private boolean[] ocupados;
+	
+	/** Número de entradas almacenadas */
+	private int tamanio;
+	
+	/** Máscara para calcular la posición (capacidad - 1) */
+	private int mascara;
+	
+	/** Número de entradas a partir del cual se duplica la tabla */
+	private int umbral;
+	
+	/**
+	 * Construye un mapa vacío con la capacidad mínima.
+	 */
+	public MapaEnteros() {
+		this(CAPACIDAD_MINIMA);
+	}
+	
+	/**
+	 * Construye un mapa vacío capaz de guardar la cantidad indicada de
+	 * entradas sin redimensionarse.
+	 * 
+	 * @param esperados número de entradas esperadas
+	 * @throws IllegalArgumentException si no caben en la tabla de capacidad
+	 * máxima
+	 */
+	public MapaEnteros(int esperados) {
+		inicializar(capacidadPara(esperados));
+	}
+	
+	/**
+	 * Agranda la tabla, si hace falta, para guardar la cantidad indicada de
+	 * entradas sin redimensionarse.
+	 * 
+	 * @param esperados número total de entradas esperadas
+	 * @throws IllegalArgumentException si no caben en la tabla de capacidad
+	 * máxima
+	 */
+	public void asegurarCapacidad(int esperados) {
+		int capacidad = capacidadPara(esperados);
+		if (capacidad > claves.length) {
+			redimensionar(capacidad);
+		}
+	}
+	
+	/**
+	 * Devuelve el valor asociado a una clave.
+	 * 
+	 * @param clave clave a buscar
+	 * @return valor asociado o {@link #NO_ENCONTRADO} si no existe
+	 */
+	public int get(int clave) {
+		int i = posicion(clave);
+		while (ocupados[i]) {
+			if (claves[i] == clave) {
+				return valores[i];
+			}
+			i = (i + 1) & mascara;
+		}
+		return NO_ENCONTRADO;
+	}
+	
+	/**
+	 * Indica si la clave está presente en el mapa.
+	 * 
+	 * @param clave clave a buscar
+	 * @return true si existe
+	 */
+	public boolean contiene(int clave) {
+		int i = posicion(clave);
+		while (ocupados[i]) {
+			if (claves[i] == clave) {
+				return true;
+			}
+			i = (i + 1) & mascara;
+		}
+		return false;
+	}
+	
+	/**
+	 * Asocia un valor a una clave, reemplazando el anterior si existía.
+	 * 
+	 * @param clave clave
+	 * @param valor valor (no puede ser {@link #NO_ENCONTRADO})
+	 * @throws IllegalArgumentException si el valor es {@link #NO_ENCONTRADO}
+	 * @throws IllegalStateException si la clave es nueva y la tabla de
+	 * capacidad máxima está llena
+	 */
+	public void put(int clave, int valor) {
+		if (valor == NO_ENCONTRADO) {
+			throw new IllegalArgumentException("Valor reservado.");
+		}
+		
+		int i = posicion(clave);
+		while (ocupados[i]) {
+			if (claves[i] == clave) {
+				valores[i] = valor;
+				return;
+			}
+			i = (i + 1) & mascara;
+		}
+		
+		if (tamanio == umbral && claves.length == CAPACIDAD_MAXIMA) {
+			throw new IllegalStateException("El mapa alcanzó su capacidad máxima.");
+		}
+		claves[i] = clave;
+		valores[i] = valor;
+		ocupados[i] = true;
+		
+		if (++tamanio > umbral) {
+			redimensionar(claves.length << 1);
+		}
+	}
+	
+	/**
+	 * Elimina una clave del mapa.
+	 * 
+	 * @param clave clave a eliminar
+	 * @return valor que tenía asociado o {@link #NO_ENCONTRADO} si no existía
+	 */
+	public int remove(int clave) {
+		int i = posicion(clave);
+		while (ocupados[i]) {
+			if (claves[i] == clave) {
+				int anterior = valores[i];
+				desplazarHaciaAtras(i);
+				tamanio--;
+				return anterior;
+			}
+			i = (i + 1) & mascara;
+		}
+		return NO_ENCONTRADO;
+	}
+	
+	/**
+	 * Elimina todas las entradas.
+	 */
+	public void clear() {
+		Arrays.fill(ocupados, false);
+		tamanio = 0;
+	}
+	
+	/**
+	 * Devuelve el número de entradas.
+	 * 
+	 * @return cantidad de claves almacenadas
+	 */
+	public int size() {
+		return tamanio;
+	}
+	
+	/**
+	 * Indica si el mapa está vacío.
+	 * 
+	 * @return true si no hay entradas
+	 */
+	public boolean isEmpty() {
+		return tamanio == 0;
+	}
+	
+	/**
+	 * Rellena el hueco dejado en {@code hueco} moviendo hacia atrás las
+	 * entradas del mismo grupo de sondeo que quedarían inalcanzables.
+	 */
+	private void desplazarHaciaAtras(int hueco) {
+		int i = (hueco + 1) & mascara;
+		while (ocupados[i]) {
+			int ideal = posicion(claves[i]);
+			// La entrada se mueve si el hueco está entre su posición ideal y la actual
+			if (((i - ideal) & mascara) >= ((i - hueco) & mascara)) {
+				claves[hueco] = claves[i];
+				valores[hueco] = valores[i];
+				hueco = i;
+			}
+			i = (i + 1) & mascara;
+		}
+		ocupados[hueco] = false;
+	}
+	
+	private int posicion(int clave) {
+		// Mezcla de bits para que claves consecutivas no formen grupos largos
+		int h = clave * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mascara;
+	}
+	
+	private void inicializar(int capacidad) {
+		claves = new int[capacidad];
+		valores = new int[capacidad];
+		ocupados = new boolean[capacidad];
+		mascara = capacidad - 1;
+		umbral = umbralPara(capacidad);
+	}
+	
+	/**
+	 * Calcula en long para que las tablas grandes no desborden.
+	 */
+	private static int umbralPara(int capacidad) {
+		return (int) ((long) capacidad * 3 / 4);
+	}
+	
+	private static int capacidadPara(int esperados) {
+		if (esperados > ESPERADOS_MAXIMOS) {
+			throw new IllegalArgumentException("Demasiadas entradas esperadas: " + esperados);
+		}
+		int capacidad = CAPACIDAD_MINIMA;
+		while (umbralPara(capacidad) < esperados) {
+			capacidad <<= 1;
+		}
+		return capacidad;
+	}
+	
+	private void redimensionar(int capacidad) {
+		int[] clavesAnteriores = claves;
+		int[] valoresAnteriores = valores;
+		boolean[] ocupadosAnteriores = ocupados;
+		
+		inicializar(capacidad);
+		
+		for (int j = 0; j < clavesAnteriores.length; j++) {
+			if (ocupadosAnteriores[j]) {
+				int i = posicion(clavesAnteriores[j]);
+				while (ocupados[i]) {
+					i = (i + 1) & mascara;
+				}
+				claves[i] = clavesAnteriores[j];
+				valores[i] = valoresAnteriores[j];
+				ocupados[i] = true;
+			}
+		}
+	}
+
+}
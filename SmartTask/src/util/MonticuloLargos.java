@@ -0,0 +1,136 @@
+package util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.LongPredicate;
+
+/**
+ * Montículo binario de mínimos sobre valores {@code long} primitivos.
+ * 
+ * <p>
+ * Permite usar claves compuestas (por ejemplo, prioridad e id en un mismo
+ * {@code long}) sin crear objetos por elemento. Esta clase no es segura para
+ * uso concurrente.
+ * </p>
+ */
+
+public final class MonticuloLargos {
+	
+	private long[] elementos;
+	private int tamanio;
+	
+	/**
+	 * Construye un montículo vacío.
+	 */
+	public MonticuloLargos() {
+		this.elementos = new long[16];
+	}
+	
+	/**
+	 * Agrega un valor.
+	 * 
+	 * @param valor valor a agregar
+	 */
+	public void agregar(long valor) {
+		if (tamanio == elementos.length) {
+			elementos = Arrays.copyOf(elementos, tamanio * 2);
+		}
+		
+		int i = tamanio++;
+		while (i > 0) {
+			int padre = (i - 1) >>> 1;
+			if (elementos[padre] <= valor) {
+				break;
+			}
+			elementos[i] = elementos[padre];
+			i = padre;
+		}
+		elementos[i] = valor;
+	}
+	
+	/**
+	 * Devuelve el mínimo sin sacarlo.
+	 * 
+	 * @return valor mínimo
+	 * @throws NoSuchElementException si está vacío
+	 */
+	public long minimo() {
+		if (tamanio == 0) {
+			throw new NoSuchElementException();
+		}
+		return elementos[0];
+	}
+	
+	/**
+	 * Saca y devuelve el mínimo.
+	 * 
+	 * @return valor mínimo
+	 * @throws NoSuchElementException si está vacío
+	 */
+	public long sacarMinimo() {
+		long minimo = minimo();
+		long ultimo = elementos[--tamanio];
+		if (tamanio > 0) {
+			hundir(0, ultimo);
+		}
+		return minimo;
+	}
+	
+	/**
+	 * Conserva solo los valores que cumplen la condición y reorganiza el
+	 * montículo en tiempo lineal.
+	 * 
+	 * @param condicion condición que deben cumplir los valores
+	 */
+	public void retener(LongPredicate condicion) {
+		int destino = 0;
+		for (int i = 0; i < tamanio; i++) {
+			if (condicion.test(elementos[i])) {
+				elementos[destino++] = elementos[i];
+			}
+		}
+		tamanio = destino;
+		
+		for (int i = (tamanio >>> 1) - 1; i >= 0; i--) {
+			hundir(i, elementos[i]);
+		}
+	}
+	
+	/**
+	 * Devuelve el número de valores.
+	 * 
+	 * @return cantidad de valores
+	 */
+	public int size() {
+		return tamanio;
+	}
+	
+	/**
+	 * Indica si está vacío.
+	 * 
+	 * @return true si no hay valores
+	 */
+	public boolean isEmpty() {
+		return tamanio == 0;
+	}
+	
+	/**
+	 * Coloca el valor en la posición i y lo baja hasta su lugar.
+	 */
+	private void hundir(int i, long valor) {
+		int mitad = tamanio >>> 1;
+		while (i < mitad) {
+			int hijo = 2 * i + 1;
+			if (hijo + 1 < tamanio && elementos[hijo + 1] < elementos[hijo]) {
+				hijo++;
+			}
+			if (valor <= elementos[hijo]) {
+				break;
+			}
+			elementos[i] = elementos[hijo];
+			i = hijo;
+		}
+		elementos[i] = valor;
+	}
+
+}
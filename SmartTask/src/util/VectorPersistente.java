@@ -0,0 +1,353 @@
+package util;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Vector inmutable y persistente: cada modificación devuelve un vector
+ * nuevo que comparte con el anterior todo lo que no cambió.
+ * 
+ * <p>
+ * Los elementos se guardan en un árbol de 32 ramas por nodo, indexado por
+ * los bits de la posición, así que asignar una posición copia solo los
+ * nodos del camino hasta ella (a lo sumo siete arreglos de 32 referencias)
+ * y el resto del árbol se comparte. Las versiones anteriores no cambian
+ * nunca, por lo que pueden leerse desde cualquier hilo sin sincronización.
+ * </p>
+ * 
+ * <p>
+ * Una posición puede quedar vacía (null) sin desplazar las siguientes,
+ * lo que permite borrar en O(log n). Como lista, el vector solo muestra
+ * las posiciones ocupadas, en orden: cada nodo interno guarda cuántos
+ * elementos hay bajo cada rama para localizar el i-ésimo sin recorrer los
+ * anteriores. Sin huecos, {@link #get(int)} es un acceso directo por
+ * posición.
+ * </p>
+ * 
+ * @param <E> tipo de los elementos
+ */
+
+public final class VectorPersistente<E> extends AbstractList<E> implements RandomAccess {
+	
+	private static final int BITS = 5;
+	private static final int ANCHO = 1 << BITS;
+	private static final int MASCARA = ANCHO - 1;
+	
+	private static final VectorPersistente<Object> VACIO = new VectorPersistente<>(null, 0, 0, 0);
+	
+	/**
+	 * Nodo del árbol. En las hojas, {@code hijos} son los elementos y
+	 * {@code vivos} es null; en los nodos internos, {@code hijos} son
+	 * nodos (null si la rama no tiene posiciones) y {@code vivos} cuenta
+	 * los elementos de cada rama.
+	 */
+	private static final class Nodo {
+		
+		final Object[] hijos;
+		final int[] vivos;
+		
+		Nodo(Object[] hijos, int[] vivos) {
+			this.hijos = hijos;
+			this.vivos = vivos;
+		}
+	}
+	
+	/** Raíz del árbol, o null si el vector no tiene posiciones */
+	private final Nodo raiz;
+	
+	/** Desplazamiento de bits del nivel de la raíz: 0 si la raíz es una hoja */
+	private final int desplazamiento;
+	
+	/** Posiciones del vector, ocupadas o no */
+	private final int posiciones;
+	
+	/** Posiciones ocupadas */
+	private final int tamanio;
+	
+	private VectorPersistente(Nodo raiz, int desplazamiento, int posiciones, int tamanio) {
+		this.raiz = raiz;
+		this.desplazamiento = desplazamiento;
+		this.posiciones = posiciones;
+		this.tamanio = tamanio;
+	}
+	
+	/**
+	 * Devuelve el vector vacío.
+	 * 
+	 * @param <E> tipo de los elementos
+	 * @return vector sin posiciones
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> VectorPersistente<E> vacio() {
+		return (VectorPersistente<E>) VACIO;
+	}
+	
+	/**
+	 * Construye un vector con las primeras posiciones del arreglo, en O(n)
+	 * y sin pasar por versiones intermedias. Los null quedan como huecos.
+	 * 
+	 * @param <E> tipo de los elementos
+	 * @param elementos elementos por posición (no se conserva el arreglo)
+	 * @param cantidad posiciones a copiar
+	 * @return vector nuevo
+	 * @throws IllegalArgumentException si la cantidad no está entre 0 y la
+	 * longitud del arreglo
+	 */
+	public static <E> VectorPersistente<E> de(E[] elementos, int cantidad) {
+		if (cantidad < 0 || cantidad > elementos.length) {
+			throw new IllegalArgumentException("Cantidad no válida: " + cantidad);
+		}
+		if (cantidad == 0) {
+			return vacio();
+		}
+		
+		// Hojas
+		int nodos = (cantidad + MASCARA) >>> BITS;
+		Nodo[] nivel = new Nodo[nodos];
+		int[] vivos = new int[nodos];
+		for (int n = 0; n < nodos; n++) {
+			Object[] hoja = new Object[ANCHO];
+			int desde = n << BITS;
+			int hasta = Math.min(cantidad, desde + ANCHO);
+			System.arraycopy(elementos, desde, hoja, 0, hasta - desde);
+			for (int i = 0; i < hasta - desde; i++) {
+				if (hoja[i] != null) {
+					vivos[n]++;
+				}
+			}
+			nivel[n] = new Nodo(hoja, null);
+		}
+		
+		// Niveles internos, de abajo hacia arriba
+		int desplazamiento = 0;
+		while (nodos > 1) {
+			int padres = (nodos + MASCARA) >>> BITS;
+			Nodo[] superior = new Nodo[padres];
+			int[] vivosSuperior = new int[padres];
+			for (int p = 0; p < padres; p++) {
+				Object[] hijos = new Object[ANCHO];
+				int[] vivosHijos = new int[ANCHO];
+				int desde = p << BITS;
+				int hasta = Math.min(nodos, desde + ANCHO);
+				System.arraycopy(nivel, desde, hijos, 0, hasta - desde);
+				System.arraycopy(vivos, desde, vivosHijos, 0, hasta - desde);
+				for (int i = 0; i < hasta - desde; i++) {
+					vivosSuperior[p] += vivosHijos[i];
+				}
+				superior[p] = new Nodo(hijos, vivosHijos);
+			}
+			nivel = superior;
+			vivos = vivosSuperior;
+			nodos = padres;
+			desplazamiento += BITS;
+		}
+		return new VectorPersistente<>(nivel[0], desplazamiento, cantidad, vivos[0]);
+	}
+	
+	/**
+	 * Devuelve un vector con el elemento agregado en una posición nueva al
+	 * final.
+	 * 
+	 * @param elemento elemento a agregar (no puede ser null)
+	 * @return vector nuevo
+	 * @throws IllegalArgumentException si el elemento es null
+	 */
+	public VectorPersistente<E> agregar(E elemento) {
+		if (elemento == null) {
+			throw new IllegalArgumentException("El elemento no puede ser null.");
+		}
+		return asignar(posiciones, elemento);
+	}
+	
+	/**
+	 * Devuelve un vector con la posición indicada vacía, sin desplazar las
+	 * siguientes.
+	 * 
+	 * @param posicion posición a vaciar
+	 * @return vector nuevo, o este mismo si la posición ya estaba vacía
+	 * @throws IndexOutOfBoundsException si la posición es negativa
+	 */
+	public VectorPersistente<E> quitar(int posicion) {
+		return asignar(posicion, null);
+	}
+	
+	/**
+	 * Devuelve un vector con el elemento en la posición indicada. Si la
+	 * posición está más allá del final, las intermedias quedan vacías.
+	 * 
+	 * @param posicion posición a asignar
+	 * @param elemento elemento, o null para vaciar la posición
+	 * @return vector nuevo, o este mismo si la posición ya tenía ese elemento
+	 * @throws IndexOutOfBoundsException si la posición es negativa
+	 */
+	public VectorPersistente<E> asignar(int posicion, E elemento) {
+		if (posicion < 0) {
+			throw new IndexOutOfBoundsException("Posición negativa: " + posicion);
+		}
+		
+		E anterior = enPosicion(posicion);
+		if (anterior == elemento) {
+			return this;
+		}
+		int diferencia = (elemento != null ? 1 : 0) - (anterior != null ? 1 : 0);
+		
+		Nodo nuevaRaiz = raiz;
+		int nuevoDesplazamiento = desplazamiento;
+		if (nuevaRaiz == null) {
+			nuevaRaiz = new Nodo(new Object[ANCHO], null);
+		}
+		
+		// Se agregan niveles hasta que la raíz alcance la posición
+		while ((posicion >>> nuevoDesplazamiento) > MASCARA) {
+			Object[] hijos = new Object[ANCHO];
+			int[] vivos = new int[ANCHO];
+			hijos[0] = nuevaRaiz;
+			vivos[0] = tamanio;
+			nuevaRaiz = new Nodo(hijos, vivos);
+			nuevoDesplazamiento += BITS;
+		}
+		
+		nuevaRaiz = asignar(nuevaRaiz, nuevoDesplazamiento, posicion, elemento, diferencia);
+		return new VectorPersistente<>(nuevaRaiz, nuevoDesplazamiento, Math.max(posiciones, posicion + 1),
+				tamanio + diferencia);
+	}
+	
+	/** Copia el camino hasta la posición y asigna el elemento en la hoja */
+	private static Nodo asignar(Nodo nodo, int desplazamiento, int posicion, Object elemento, int diferencia) {
+		if (desplazamiento == 0) {
+			Object[] hoja = nodo == null ? new Object[ANCHO] : nodo.hijos.clone();
+			hoja[posicion & MASCARA] = elemento;
+			return new Nodo(hoja, null);
+		}
+		
+		Object[] hijos = nodo == null ? new Object[ANCHO] : nodo.hijos.clone();
+		int[] vivos = nodo == null ? new int[ANCHO] : nodo.vivos.clone();
+		int rama = (posicion >>> desplazamiento) & MASCARA;
+		hijos[rama] = asignar((Nodo) hijos[rama], desplazamiento - BITS, posicion, elemento, diferencia);
+		vivos[rama] += diferencia;
+		return new Nodo(hijos, vivos);
+	}
+	
+	/**
+	 * Devuelve el elemento de una posición, contando los huecos.
+	 * 
+	 * @param posicion posición a consultar
+	 * @return elemento, o null si la posición está vacía o fuera del vector
+	 */
+	@SuppressWarnings("unchecked")
+	public E enPosicion(int posicion) {
+		if (posicion < 0 || posicion >= posiciones) {
+			return null;
+		}
+		Object[] hoja = hoja(posicion);
+		return hoja == null ? null : (E) hoja[posicion & MASCARA];
+	}
+	
+	/** Hoja que contiene la posición, o null si su rama no existe */
+	private Object[] hoja(int posicion) {
+		Nodo nodo = raiz;
+		for (int d = desplazamiento; d > 0 && nodo != null; d -= BITS) {
+			nodo = (Nodo) nodo.hijos[(posicion >>> d) & MASCARA];
+		}
+		return nodo == null ? null : nodo.hijos;
+	}
+	
+	/**
+	 * Devuelve la cantidad de posiciones, incluidas las vacías.
+	 * 
+	 * @return posiciones del vector
+	 */
+	public int posiciones() {
+		return posiciones;
+	}
+	
+	/**
+	 * Devuelve el i-ésimo elemento sin contar los huecos.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		Objects.checkIndex(index, tamanio);
+		if (tamanio == posiciones) {
+			return enPosicion(index);
+		}
+		
+		Nodo nodo = raiz;
+		int resto = index;
+		for (int d = desplazamiento; d > 0; d -= BITS) {
+			int rama = 0;
+			while (resto >= nodo.vivos[rama]) {
+				resto -= nodo.vivos[rama++];
+			}
+			nodo = (Nodo) nodo.hijos[rama];
+		}
+		
+		for (Object elemento : nodo.hijos) {
+			if (elemento != null && resto-- == 0) {
+				return (E) elemento;
+			}
+		}
+		throw new IllegalStateException("Conteos del vector inconsistentes.");
+	}
+	
+	/**
+	 * Devuelve la cantidad de elementos, sin contar los huecos.
+	 */
+	@Override
+	public int size() {
+		return tamanio;
+	}
+	
+	/**
+	 * Recorre los elementos hoja por hoja, saltando los huecos.
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterador();
+	}
+	
+	private final class Iterador implements Iterator<E> {
+		
+		private int posicion;
+		private Object[] hoja;
+		private Object siguiente;
+		
+		Iterador() {
+			avanzar();
+		}
+		
+		@Override
+		public boolean hasNext() {
+			return siguiente != null;
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public E next() {
+			if (siguiente == null) {
+				throw new NoSuchElementException();
+			}
+			Object actual = siguiente;
+			avanzar();
+			return (E) actual;
+		}
+		
+		private void avanzar() {
+			siguiente = null;
+			while (siguiente == null && posicion < posiciones) {
+				if ((posicion & MASCARA) == 0 || hoja == null) {
+					hoja = hoja(posicion);
+					if (hoja == null) {
+						posicion = (posicion | MASCARA) + 1;
+						continue;
+					}
+				}
+				siguiente = hoja[posicion++ & MASCARA];
+			}
+		}
+	}
+
+}